@@ -49,6 +49,7 @@ public class DemoMasterScene extends Scene {
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Materials", MaterialDemo::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Lighting", LightingDemo::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Object Load", ObjLoadDemo::new));
+        linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Mesh Load Comparison", MeshLoadComparisonDemo::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Text", TextDemo::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Text Re-write", TextRewriteDemo::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "SpotLight", SpotLightDemo::new));
@@ -0,0 +1,254 @@
+package com.crispin.demos.InstancingDemos;
+
+import android.opengl.Matrix;
+
+import com.crispin.crispinmobile.Crispin;
+import com.crispin.crispinmobile.Geometry.Geometry;
+import com.crispin.crispinmobile.Geometry.Scale3D;
+import com.crispin.crispinmobile.Geometry.Vec2;
+import com.crispin.crispinmobile.Geometry.Vec3;
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.DefaultMesh.CubeMesh;
+import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
+import com.crispin.crispinmobile.Rendering.Utilities.Camera;
+import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
+import com.crispin.crispinmobile.Rendering.Utilities.InstanceRenderer;
+import com.crispin.crispinmobile.Rendering.Utilities.LightGroup;
+import com.crispin.crispinmobile.Rendering.Utilities.StreamingBuffer;
+import com.crispin.crispinmobile.UserInterface.Button;
+import com.crispin.crispinmobile.UserInterface.Font;
+import com.crispin.crispinmobile.UserInterface.Pointer;
+import com.crispin.crispinmobile.UserInterface.Text;
+import com.crispin.crispinmobile.UserInterface.TouchEvent;
+import com.crispin.crispinmobile.UserInterface.TouchType;
+import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.Scene;
+import com.crispin.crispinmobile.Utilities.TextureCache;
+import com.crispin.demos.R;
+import com.crispin.demos.Util;
+
+import java.nio.FloatBuffer;
+import java.util.Locale;
+import java.util.Random;
+
+// Measures the frame time of moving every instance each frame with the model matrices uploaded to
+// one buffer (glBufferData every frame) or streamed through a fenced ring of buffer regions. The
+// average and worst frame time of each combination of upload mode and instance count are shown
+// and logged.
+public class InstanceStreamingDemo extends Scene {
+    private static final String TAG = "InstanceStreamingDemo";
+    private final int[] INSTANCE_COUNTS = { 10000, 50000 };
+    private final Scale3D GENERATION_AREA_SIZE = new Scale3D(30.0f, 30.0f, 100.0f);
+    private final int NUM_FLOATS_MATRIX = 16;
+    private final int NUM_FLOATS_COLOUR = 4;
+
+    // Frames to skip after a change before measuring, and the number of frames to measure
+    private final int WARM_UP_FRAMES = 30;
+    private final int SAMPLE_FRAMES = 300;
+
+    private final InstanceRenderer instanceRenderer;
+    private final float[] modelMatrices;
+    private final FloatBuffer modelMatrixBuffer;
+    private final LightGroup lightGroup;
+    private final Camera camera;
+
+    private boolean streaming;
+    private int countIndex;
+
+    // Frame time measurement
+    private long lastFrameNs;
+    private int measuredFrames;
+    private long totalFrameNs;
+    private long worstFrameNs;
+
+    // The result of each combination, indexed by [streaming][count]
+    private final String[][] results;
+
+    // UI
+    private Camera2D uiCamera;
+    private Button toggleStreaming;
+    private Button toggleCount;
+    private Button homeButton;
+    private Text typeText;
+    private Text fpsText;
+    private Text[] resultTexts;
+
+    public InstanceStreamingDemo() {
+        Crispin.setBackgroundColour(Colour.BLACK);
+        streaming = true;
+        results = new String[2][INSTANCE_COUNTS.length];
+        initUI();
+
+        camera = new Camera();
+        camera.setPosition(new Vec3(0.0f, 0f, GENERATION_AREA_SIZE.l));
+
+        lightGroup = new LightGroup();
+        DirectionalLight directionalLight = new DirectionalLight(0.0f, -1.0f, 0.0f);
+        directionalLight.setAmbientStrength(0.4f);
+        directionalLight.setDiffuseStrength(1.0f);
+        directionalLight.setSpecularStrength(0.4f);
+        lightGroup.add(directionalLight);
+
+        final int maxInstances = INSTANCE_COUNTS[INSTANCE_COUNTS.length - 1];
+        modelMatrices = new float[NUM_FLOATS_MATRIX * maxInstances];
+        modelMatrixBuffer = FloatBuffer.wrap(modelMatrices);
+        float[] colourData = new float[NUM_FLOATS_COLOUR * maxInstances];
+        Random r = new Random();
+        for(int i = 0; i < maxInstances; i++) {
+            int matrixOffset = NUM_FLOATS_MATRIX * i;
+            int colourOffset = NUM_FLOATS_COLOUR * i;
+            float x = (r.nextFloat() * GENERATION_AREA_SIZE.w) - (GENERATION_AREA_SIZE.w / 2.0f);
+            float y = (r.nextFloat() * GENERATION_AREA_SIZE.h) - (GENERATION_AREA_SIZE.h / 2.0f);
+            float z = (r.nextFloat() * GENERATION_AREA_SIZE.l) - (GENERATION_AREA_SIZE.l / 2.0f);
+            float scale = (1.0f + r.nextFloat()) / 32f;
+
+            Matrix.setIdentityM(modelMatrices, matrixOffset);
+            Matrix.translateM(modelMatrices, matrixOffset, x, y, z);
+            Matrix.rotateM(modelMatrices, matrixOffset, r.nextFloat() * 360.0f, 0.4f, 0.6f, 0.8f);
+            Matrix.scaleM(modelMatrices, matrixOffset, scale, scale, scale);
+            colourData[colourOffset] = r.nextFloat();
+            colourData[colourOffset + 1] = r.nextFloat();
+            colourData[colourOffset + 2] = r.nextFloat();
+            colourData[colourOffset + 3] = 1.0f;
+        }
+
+        instanceRenderer = new InstanceRenderer(new CubeMesh(true, true), true, modelMatrices,
+                colourData);
+        instanceRenderer.setTexture(TextureCache.loadTexture(R.drawable.crate_texture));
+        instanceRenderer.setLightGroup(lightGroup);
+        instanceRenderer.setStreaming(streaming);
+
+        restartMeasurement();
+    }
+
+    private void initUI() {
+        uiCamera = new Camera2D();
+
+        Font font = new Font(R.raw.aileron_regular, 48);
+        int heightAndPadding = 10 + font.getSize();
+        typeText = new Text(font, "", false, true, Crispin.getSurfaceWidth() - 20);
+        typeText.setPosition(10, Crispin.getSurfaceHeight() - heightAndPadding);
+        typeText.setColour(Colour.WHITE);
+
+        fpsText = new Text(font, Crispin.getFps() + "FPS", false, true,
+                Crispin.getSurfaceWidth() - 20);
+        fpsText.setPosition(10, Crispin.getSurfaceHeight() - (heightAndPadding * 2));
+        fpsText.setColour(Colour.WHITE);
+
+        resultTexts = new Text[2 * INSTANCE_COUNTS.length];
+        for(int i = 0; i < resultTexts.length; i++) {
+            resultTexts[i] = new Text(font, "", false, true, Crispin.getSurfaceWidth() - 20);
+            resultTexts[i].setPosition(10, Crispin.getSurfaceHeight() -
+                    (heightAndPadding * (3 + i)));
+            resultTexts[i].setColour(Colour.WHITE);
+        }
+
+        homeButton = Util.createBackButton(InstancingDemoSelectionScene::new);
+        toggleStreaming = Util.createStyledButton("Toggle Streaming", 10, 230, e -> {
+            if(e.getEvent() == TouchEvent.Event.CLICK) {
+                streaming = !streaming;
+                instanceRenderer.setStreaming(streaming);
+                restartMeasurement();
+            }
+        });
+
+        toggleCount = Util.createStyledButton("Toggle Count", 10, 450, e -> {
+            if(e.getEvent() == TouchEvent.Event.CLICK) {
+                countIndex = (countIndex + 1) % INSTANCE_COUNTS.length;
+                restartMeasurement();
+            }
+        });
+    }
+
+    private void restartMeasurement() {
+        measuredFrames = -WARM_UP_FRAMES;
+        totalFrameNs = 0;
+        worstFrameNs = 0;
+        lastFrameNs = 0;
+        typeText.setText(getModeName(streaming) + ", " + INSTANCE_COUNTS[countIndex] +
+                " moving instances");
+        updateResultTexts();
+    }
+
+    private String getModeName(boolean streaming) {
+        return streaming ? "Streamed ring" : "glBufferData";
+    }
+
+    private void updateResultTexts() {
+        for(int mode = 0; mode < 2; mode++) {
+            for(int count = 0; count < INSTANCE_COUNTS.length; count++) {
+                final String result = results[mode][count];
+                resultTexts[mode * INSTANCE_COUNTS.length + count].setText(
+                        getModeName(mode == 1) + ", " + INSTANCE_COUNTS[count] + ": " +
+                                (result == null ? "not measured" : result));
+            }
+        }
+    }
+
+    // Record the time since the last frame, and the result once enough frames are measured
+    private void measureFrame() {
+        final long now = System.nanoTime();
+        if(lastFrameNs != 0 && measuredFrames++ >= 0) {
+            final long frameNs = now - lastFrameNs;
+            totalFrameNs += frameNs;
+            worstFrameNs = Math.max(worstFrameNs, frameNs);
+
+            if(measuredFrames == SAMPLE_FRAMES) {
+                final String result = String.format(Locale.US, "%.2f ms average, %.2f ms worst",
+                        totalFrameNs / (SAMPLE_FRAMES * 1000000.0),
+                        worstFrameNs / 1000000.0);
+                results[streaming ? 1 : 0][countIndex] = result;
+                Logger.info(TAG + ": " + getModeName(streaming) + ", " +
+                        INSTANCE_COUNTS[countIndex] + " instances: " + result + ", streaming waits in last frame: " +
+                        StreamingBuffer.getFrameWaitCount());
+                updateResultTexts();
+                measuredFrames = 0;
+                totalFrameNs = 0;
+                worstFrameNs = 0;
+            }
+        }
+        lastFrameNs = now;
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        measureFrame();
+        fpsText.setText(Crispin.getFps() + "FPS");
+
+        final int count = INSTANCE_COUNTS[countIndex];
+        for(int i = 0; i < count; i++) {
+            Matrix.rotateM(modelMatrices, NUM_FLOATS_MATRIX * i, deltaTime, 0.4f, 0.6f, 0.8f);
+        }
+        instanceRenderer.uploadModelMatrices(modelMatrixBuffer, count);
+    }
+
+    @Override
+    public void render() {
+        instanceRenderer.render(camera);
+
+        typeText.draw(uiCamera);
+        fpsText.draw(uiCamera);
+        for(int i = 0; i < resultTexts.length; i++) {
+            resultTexts[i].draw(uiCamera);
+        }
+        toggleStreaming.draw(uiCamera);
+        toggleCount.draw(uiCamera);
+        homeButton.draw(uiCamera);
+    }
+
+    Vec2 downPos = new Vec2();
+    @Override
+    public void touch(TouchType touchType, Pointer pointer) {
+        Vec2 position = new Vec2(pointer.getPosition());
+
+        switch (touchType) {
+            case DOWN:
+                downPos = position;
+                break;
+            case MOVE:
+                camera.translate(0.0f, 0.0f, Geometry.getVectorBetween(downPos, position).y/50.0f);
+                downPos = position;
+                break;
+        }
+    }
+}
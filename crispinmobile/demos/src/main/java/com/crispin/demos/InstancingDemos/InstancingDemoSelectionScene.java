@@ -51,6 +51,8 @@ public class InstancingDemoSelectionScene extends Scene {
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Back", DemoMasterScene::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Instance Rendering", InstancingDemo::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Instance Vs Batch Rendering", InstancingVsBatchDemo::new));
+        linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "RenderBatch Benchmark", RenderBatchBenchmarkDemo::new));
+        linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Instance Streaming", InstanceStreamingDemo::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Instance Rendering 2D", InstancingDemo2D::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Instance Rendering 3D", InstancingDemo3D::new));
         linearLayout.add(Util.createDemoButton(BUTTON_SIZE, "Instance Lighting Test", InstancingLightingTest::new));
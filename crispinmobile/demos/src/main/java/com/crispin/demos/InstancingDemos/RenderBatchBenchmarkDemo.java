@@ -0,0 +1,234 @@
+package com.crispin.demos.InstancingDemos;
+
+import com.crispin.crispinmobile.Crispin;
+import com.crispin.crispinmobile.Geometry.Geometry;
+import com.crispin.crispinmobile.Geometry.Scale3D;
+import com.crispin.crispinmobile.Geometry.Vec2;
+import com.crispin.crispinmobile.Geometry.Vec3;
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Data.Texture;
+import com.crispin.crispinmobile.Rendering.DefaultMesh.CubeMesh;
+import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
+import com.crispin.crispinmobile.Rendering.Models.ModelProperties;
+import com.crispin.crispinmobile.Rendering.Shaders.LightingTextureShader;
+import com.crispin.crispinmobile.Rendering.Utilities.Camera;
+import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
+import com.crispin.crispinmobile.Rendering.Utilities.InstanceBuffer;
+import com.crispin.crispinmobile.Rendering.Utilities.LightGroup;
+import com.crispin.crispinmobile.Rendering.Utilities.RenderBatch;
+import com.crispin.crispinmobile.UserInterface.Button;
+import com.crispin.crispinmobile.UserInterface.Font;
+import com.crispin.crispinmobile.UserInterface.Pointer;
+import com.crispin.crispinmobile.UserInterface.Text;
+import com.crispin.crispinmobile.UserInterface.TouchEvent;
+import com.crispin.crispinmobile.UserInterface.TouchType;
+import com.crispin.crispinmobile.Utilities.Scene;
+import com.crispin.crispinmobile.Utilities.TextureCache;
+import com.crispin.demos.R;
+import com.crispin.demos.Util;
+
+import java.util.Random;
+
+// Compares the auto-instanced render batch to drawing the same objects one at a time, while all,
+// some or none of the objects move. The objects use four textures so the instanced batch makes
+// four draw calls.
+public class RenderBatchBenchmarkDemo extends Scene {
+    private final int NUM_OBJECTS = 10000;
+    private final Scale3D GENERATION_AREA_SIZE = new Scale3D(30.0f, 30.0f, 100.0f);
+    private final int[] TEXTURES = { R.drawable.crate_texture, R.drawable.brick_tile,
+            R.drawable.dirt_tile, R.drawable.grass_tile };
+
+    // How many of the objects move each frame
+    private enum UpdateMode {
+        ALL("All Moving"),
+        SOME("1% Moving"),
+        NONE("Static");
+
+        final String name;
+
+        UpdateMode(String name) {
+            this.name = name;
+        }
+    }
+
+    // The same objects are in both batches
+    private final RenderBatch instancedBatch;
+    private final RenderBatch perObjectBatch;
+    private final ModelProperties[] modelProperties;
+    private final float[] rotationSpeeds;
+
+    private final LightGroup lightGroup;
+    private final Camera camera;
+
+    private boolean renderInstanced;
+    private UpdateMode updateMode;
+    private int nextMovingObject;
+
+    // UI
+    private Camera2D uiCamera;
+    private Button toggleRenderingTechnique;
+    private Button toggleUpdate;
+    private Button homeButton;
+    private Text typeText;
+    private Text fpsText;
+    private Text statsText;
+
+    public RenderBatchBenchmarkDemo() {
+        Crispin.setBackgroundColour(Colour.BLACK);
+        renderInstanced = true;
+        updateMode = UpdateMode.ALL;
+        initUI();
+
+        camera = new Camera();
+        camera.setPosition(new Vec3(0.0f, 0f, GENERATION_AREA_SIZE.l));
+
+        lightGroup = new LightGroup();
+        DirectionalLight directionalLight = new DirectionalLight(0.0f, -1.0f, 0.0f);
+        directionalLight.setAmbientStrength(0.4f);
+        directionalLight.setDiffuseStrength(1.0f);
+        directionalLight.setSpecularStrength(0.4f);
+        lightGroup.add(directionalLight);
+
+        CubeMesh mesh = new CubeMesh(true, true);
+        instancedBatch = new RenderBatch(mesh, true);
+        instancedBatch.setCamera(camera);
+        instancedBatch.setLightGroup(lightGroup);
+
+        perObjectBatch = new RenderBatch(mesh, true);
+        perObjectBatch.setShader(new LightingTextureShader());
+        perObjectBatch.setCamera(camera);
+        perObjectBatch.setLightGroup(lightGroup);
+
+        Texture[] textures = new Texture[TEXTURES.length];
+        for(int i = 0; i < TEXTURES.length; i++) {
+            textures[i] = TextureCache.loadTexture(TEXTURES[i]);
+        }
+
+        modelProperties = new ModelProperties[NUM_OBJECTS];
+        rotationSpeeds = new float[NUM_OBJECTS];
+        Random r = new Random();
+        for(int i = 0; i < NUM_OBJECTS; i++) {
+            float x = (r.nextFloat() * GENERATION_AREA_SIZE.w) - (GENERATION_AREA_SIZE.w / 2.0f);
+            float y = (r.nextFloat() * GENERATION_AREA_SIZE.h) - (GENERATION_AREA_SIZE.h / 2.0f);
+            float z = (r.nextFloat() * GENERATION_AREA_SIZE.l) - (GENERATION_AREA_SIZE.l / 2.0f);
+            float scale = (1.0f + r.nextFloat()) / 32f;
+            Colour colour = new Colour(r.nextFloat(), r.nextFloat(), r.nextFloat());
+
+            ModelProperties mp = new ModelProperties(new Material(textures[i % textures.length],
+                    colour));
+            mp.setPosition(x, y, z);
+            mp.setRotation(r.nextFloat() * 360.0f, 0.4f, 0.6f, 0.8f);
+            mp.setScale(scale);
+            instancedBatch.add(mp);
+            perObjectBatch.add(mp);
+            modelProperties[i] = mp;
+            rotationSpeeds[i] = 0.5f + r.nextFloat();
+        }
+
+        updateRenderInfoText();
+    }
+
+    private void initUI() {
+        uiCamera = new Camera2D();
+
+        Font font = new Font(R.raw.aileron_regular, 48);
+        int heightAndPadding = 10 + font.getSize();
+        typeText = new Text(font, "", false, true, Crispin.getSurfaceWidth() - 20);
+        typeText.setPosition(10, Crispin.getSurfaceHeight() - heightAndPadding);
+        typeText.setColour(Colour.WHITE);
+
+        fpsText = new Text(font, Crispin.getFps() + "FPS", false, true,
+                Crispin.getSurfaceWidth() - 20);
+        fpsText.setPosition(10, Crispin.getSurfaceHeight() - (heightAndPadding * 2));
+        fpsText.setColour(Colour.WHITE);
+
+        statsText = new Text(font, "", false, true, Crispin.getSurfaceWidth() - 20);
+        statsText.setPosition(10, Crispin.getSurfaceHeight() - (heightAndPadding * 3));
+        statsText.setColour(Colour.WHITE);
+
+        homeButton = Util.createBackButton(InstancingDemoSelectionScene::new);
+        toggleRenderingTechnique = Util.createStyledButton("Toggle Renderer", 10, 230, e -> {
+            if(e.getEvent() == TouchEvent.Event.CLICK) {
+                renderInstanced = !renderInstanced;
+                updateRenderInfoText();
+            }
+        });
+
+        toggleUpdate = Util.createStyledButton("Toggle Update", 10, 450, e -> {
+            if(e.getEvent() == TouchEvent.Event.CLICK) {
+                updateMode = UpdateMode.values()[(updateMode.ordinal() + 1) %
+                        UpdateMode.values().length];
+                updateRenderInfoText();
+            }
+        });
+    }
+
+    private void updateRenderInfoText() {
+        typeText.setText((renderInstanced ? "Instanced RenderBatch" : "Per-object RenderBatch") +
+                " (" + updateMode.name + ")");
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        fpsText.setText(Crispin.getFps() + "FPS, " + NUM_OBJECTS + " objects");
+        statsText.setText("Draw calls: " + (renderInstanced ? instancedBatch.getGroupCount() :
+                NUM_OBJECTS) + ", instances uploaded: " + InstanceBuffer.getFrameUploadCount());
+
+        switch (updateMode) {
+            case ALL:
+                for(int i = 0; i < NUM_OBJECTS; i++) {
+                    rotate(i, deltaTime);
+                }
+                break;
+            case SOME:
+                // Move a different hundredth of the objects each frame
+                final int count = NUM_OBJECTS / 100;
+                for(int i = 0; i < count; i++) {
+                    rotate(nextMovingObject, deltaTime);
+                    nextMovingObject = (nextMovingObject + 1) % NUM_OBJECTS;
+                }
+                break;
+            case NONE:
+                break;
+        }
+    }
+
+    private void rotate(int index, float deltaTime) {
+        ModelProperties mp = modelProperties[index];
+        mp.setRotation(mp.getRotation().angle + rotationSpeeds[index] * deltaTime, 0.4f, 0.6f,
+                0.8f);
+    }
+
+    @Override
+    public void render() {
+        if(renderInstanced) {
+            instancedBatch.render();
+        } else {
+            perObjectBatch.render();
+        }
+
+        typeText.draw(uiCamera);
+        fpsText.draw(uiCamera);
+        statsText.draw(uiCamera);
+        toggleRenderingTechnique.draw(uiCamera);
+        toggleUpdate.draw(uiCamera);
+        homeButton.draw(uiCamera);
+    }
+
+    Vec2 downPos = new Vec2();
+    @Override
+    public void touch(TouchType touchType, Pointer pointer) {
+        Vec2 position = new Vec2(pointer.getPosition());
+
+        switch (touchType) {
+            case DOWN:
+                downPos = position;
+                break;
+            case MOVE:
+                camera.translate(0.0f, 0.0f, Geometry.getVectorBetween(downPos, position).y/50.0f);
+                downPos = position;
+                break;
+        }
+    }
+}
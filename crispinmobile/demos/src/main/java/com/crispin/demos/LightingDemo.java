@@ -209,6 +209,12 @@ public class LightingDemo extends Scene {
 
     @Override
     public void update(float deltaTime) {
+        // The models are loaded in the background, wait for them before starting the demo
+        if (torus == null || lightBulb == null) {
+            stageStartMs = System.currentTimeMillis();
+            return;
+        }
+
         updateTextFade(deltaTime);
 
         switch (currentStage) {
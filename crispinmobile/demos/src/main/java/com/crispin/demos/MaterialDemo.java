@@ -88,13 +88,17 @@ public class MaterialDemo extends Scene {
 
         float lightX = (float) Math.sin(lightXCount);
         float lightZ = (float) Math.cos(lightZCount);
-        lightBulb.setPosition(lightX, 1.0f, lightZ);
-        pointLight.setPosition(lightBulb.getPosition());
+        pointLight.setPosition(lightX, 1.0f, lightZ);
+        if (lightBulb != null) {
+            lightBulb.setPosition(pointLight.getPosition());
+        }
 
         float light2X = (float) Math.sin(lightXCount + Math.PI);
         float light2Z = (float) Math.cos(lightZCount + Math.PI);
-        lightBulb2.setPosition(light2X, 1.0f, light2Z);
-        pointLight2.setPosition(lightBulb2.getPosition());
+        pointLight2.setPosition(light2X, 1.0f, light2Z);
+        if (lightBulb2 != null) {
+            lightBulb2.setPosition(pointLight2.getPosition());
+        }
 
         if (torus != null) {
             if (System.currentTimeMillis() - materialSetTimeMs > MATERIAL_TIME_MS) {
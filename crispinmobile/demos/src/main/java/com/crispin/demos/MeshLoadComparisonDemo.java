@@ -0,0 +1,152 @@
+package com.crispin.demos;
+
+import com.crispin.crispinmobile.Crispin;
+import com.crispin.crispinmobile.Geometry.Vec3;
+import com.crispin.crispinmobile.MeshLoading.BinaryMeshLoader;
+import com.crispin.crispinmobile.MeshLoading.MeshData;
+import com.crispin.crispinmobile.MeshLoading.OBJModelLoader;
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
+import com.crispin.crispinmobile.Rendering.Models.Model;
+import com.crispin.crispinmobile.Rendering.Utilities.Camera;
+import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
+import com.crispin.crispinmobile.Rendering.Utilities.LightGroup;
+import com.crispin.crispinmobile.UserInterface.Button;
+import com.crispin.crispinmobile.UserInterface.Font;
+import com.crispin.crispinmobile.UserInterface.Pointer;
+import com.crispin.crispinmobile.UserInterface.Text;
+import com.crispin.crispinmobile.UserInterface.TouchType;
+import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.Scene;
+
+import java.util.HashMap;
+
+// Compares how long it takes to load the demo models from OBJ files with the OBJModelLoader against
+// loading the same models from binary mesh files (generated at build time by the
+// 'convertDemoMeshes' task) with the BinaryMeshLoader.
+public class MeshLoadComparisonDemo extends Scene {
+    private static final String TAG = "MeshLoadComparisonDemo";
+
+    // Names of the compared models
+    private static final String[] MODEL_NAMES = {
+            "cube",
+            "sphere",
+            "torus_uv",
+            "monkey",
+            "lightbulb",
+            "torch"
+    };
+
+    // OBJ resource of each model
+    private static final int[] OBJ_RESOURCES = {
+            R.raw.cube,
+            R.raw.sphere,
+            R.raw.torus_uv,
+            R.raw.monkey,
+            R.raw.lightbulb,
+            R.raw.torch
+    };
+
+    // Binary mesh resource of each model
+    private static final int[] BINARY_RESOURCES = {
+            R.raw.cube_mesh,
+            R.raw.sphere_mesh,
+            R.raw.torus_uv_mesh,
+            R.raw.monkey_mesh,
+            R.raw.lightbulb_mesh,
+            R.raw.torch_mesh
+    };
+
+    private static final int NANOSECONDS_TO_MICROSECONDS_DIVIDE = 1000;
+
+    // UI Camera
+    private final Camera2D camera2D;
+    // Back Button
+    private final Button backButton;
+    // Load time results of each model
+    private final Text[] resultText;
+    // Monkey model (loaded from the binary mesh file)
+    private Model monkey;
+    // Monkey model rotation
+    private float rotation;
+    // Camera for 3D model rendering
+    private final Camera modelCamera;
+    // Light the scene
+    private final LightGroup lights;
+
+    public MeshLoadComparisonDemo() {
+        camera2D = new Camera2D();
+        backButton = Util.createBackButton(DemoMasterScene::new);
+
+        lights = new LightGroup();
+        lights.add(new DirectionalLight(0f, 0f, -1f));
+
+        Font font = new Font(R.raw.aileron_regular, 36);
+        final int lineHeight = 10 + font.getSize();
+        resultText = new Text[MODEL_NAMES.length + 1];
+        resultText[0] = new Text(font, "Model: OBJ / Binary load time", false, true,
+                Crispin.getSurfaceWidth() - 20);
+
+        long totalObjTime = 0;
+        long totalBinaryTime = 0;
+        for(int i = 0; i < MODEL_NAMES.length; i++) {
+            // Each model is loaded for the first time by each loader (cold start)
+            long timeStart = System.nanoTime();
+            OBJModelLoader.read(OBJ_RESOURCES[i], null);
+            long timeMiddle = System.nanoTime();
+            HashMap<String, MeshData> meshes = BinaryMeshLoader.readToMap(BINARY_RESOURCES[i]);
+            long timeEnd = System.nanoTime();
+
+            final long objTime = (timeMiddle - timeStart) / NANOSECONDS_TO_MICROSECONDS_DIVIDE;
+            final long binaryTime = (timeEnd - timeMiddle) / NANOSECONDS_TO_MICROSECONDS_DIVIDE;
+            totalObjTime += objTime;
+            totalBinaryTime += binaryTime;
+
+            String result = MODEL_NAMES[i] + ": " + objTime + "us / " + binaryTime + "us";
+            Logger.debug(TAG, result);
+            resultText[i + 1] = new Text(font, result, false, true,
+                    Crispin.getSurfaceWidth() - 20);
+
+            if(meshes.containsKey("monkey")) {
+                monkey = new Model(meshes.get("monkey").mesh);
+                monkey.setColour(1.0f, 0.5f, 0.31f);
+                monkey.setScale(0.5f);
+            }
+        }
+        Logger.debug(TAG, "Total: " + totalObjTime + "us / " + totalBinaryTime + "us");
+
+        for(int i = 0; i < resultText.length; i++) {
+            resultText[i].setPosition(10, Crispin.getSurfaceHeight() - (lineHeight * (i + 1)));
+            resultText[i].setColour(Colour.WHITE);
+        }
+
+        // Create the model camera and move it forward in-front of the origin
+        modelCamera = new Camera();
+        modelCamera.setPosition(new Vec3(0.0f, 0.0f, 3.0f));
+    }
+
+    @Override
+    public void update(float deltaTime) {
+        rotation += 0.5f * deltaTime;
+        if (monkey != null) {
+            monkey.setRotation(rotation, 0.0f, 1.0f, 0.0f);
+        }
+    }
+
+    @Override
+    public void render() {
+        if (monkey != null) {
+            monkey.render(modelCamera, lights);
+        }
+
+        for(int i = 0; i < resultText.length; i++) {
+            resultText[i].draw(camera2D);
+        }
+        backButton.draw(camera2D);
+    }
+
+    @Override
+    public void touch(TouchType touchType, Pointer pointer) {
+
+    }
+}
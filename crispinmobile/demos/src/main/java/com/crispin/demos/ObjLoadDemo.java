@@ -10,7 +10,7 @@ import com.crispin.crispinmobile.UserInterface.Button;
 import com.crispin.crispinmobile.UserInterface.Pointer;
 import com.crispin.crispinmobile.UserInterface.TouchType;
 import com.crispin.crispinmobile.MeshLoading.MeshData;
-import com.crispin.crispinmobile.MeshLoading.OBJModelLoader;
+import com.crispin.crispinmobile.Utilities.OBJModelCache;
 import com.crispin.crispinmobile.Utilities.Scene;
 
 import java.util.HashMap;
@@ -46,7 +46,9 @@ public class ObjLoadDemo extends Scene {
 //            this.monkey.setScale(0.5f);
 //        });
 
-        HashMap<String, MeshData> meshes = OBJModelLoader.read(R.raw.monkey);
+        // Load through the model cache so that the monkey is only built once when the demo is
+        // re-opened
+        HashMap<String, MeshData> meshes = OBJModelCache.read(R.raw.monkey);
         monkey = new Model(meshes.get("monkey").mesh);
         monkey.setColour(1.0f, 0.5f, 0.31f);
         monkey.setScale(0.5f);
@@ -17,7 +17,7 @@ import com.crispin.crispinmobile.UserInterface.Pointer;
 import com.crispin.crispinmobile.UserInterface.TouchType;
 import com.crispin.crispinmobile.Rendering.Utilities.RenderBatch;
 import com.crispin.crispinmobile.MeshLoading.MeshData;
-import com.crispin.crispinmobile.MeshLoading.OBJModelLoader;
+import com.crispin.crispinmobile.Utilities.OBJModelCache;
 import com.crispin.crispinmobile.Utilities.Scene;
 import com.crispin.crispinmobile.Utilities.TextureCache;
 
@@ -59,7 +59,7 @@ public class RenderBatchDemo extends Scene {
         renderBatch = new RenderBatch();
         renderBatch.setCamera(camera);
 
-        HashMap<String, MeshData> meshes = OBJModelLoader.read(R.raw.torus_uv);
+        HashMap<String, MeshData> meshes = OBJModelCache.read(R.raw.torus_uv);
         renderBatch.setMesh(meshes.get("torus").mesh);
         renderBatch.setShader(shader);
         renderBatch.setLightGroup(lightGroup);
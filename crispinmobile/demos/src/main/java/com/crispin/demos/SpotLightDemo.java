@@ -84,7 +84,9 @@ public class SpotLightDemo extends Scene {
         float lightZ = (float)Math.sin(lightZCount);
 
         spotLight.setPosition(lightX, 1.0f, lightZ);
-        torch.setPosition(spotLight.getPosition());
+        if (torch != null) {
+            torch.setPosition(spotLight.getPosition());
+        }
         lightBulbLight.setPosition(Geometry.plus(spotLight.getPosition(), new Vec3(0.0f, -0.5f, 0.3f)));
 
         camera3D.setPosition(lightX, 0.8f, lightZ);
@@ -97,7 +99,9 @@ public class SpotLightDemo extends Scene {
             torch.render(camera3D, lightBulbGroup);
         }
 
-        torus.render(camera3D, lightGroup);
+        if (torus != null) {
+            torus.render(camera3D, lightGroup);
+        }
 
         backButton.draw(camera2D);
     }
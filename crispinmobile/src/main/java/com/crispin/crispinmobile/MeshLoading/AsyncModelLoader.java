@@ -0,0 +1,87 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Utilities.GLUploadQueue;
+import com.crispin.crispinmobile.Utilities.LoadListener;
+import com.crispin.crispinmobile.Utilities.WorkerExecutor;
+
+import java.util.ArrayList;
+
+/**
+ * Loads OBJ models in the background so that a scene can continue to update and render whilst its
+ * models load (e.g. to present a loading bar). The model file is read, parsed and built into
+ * vertex data on a background thread (see WorkerExecutor). The meshes are then created on the GL
+ * thread through the GLUploadQueue, which limits how much is uploaded per frame so that loading
+ * does not cause frames to be dropped. Models are loaded through the OBJModelCache, so a model
+ * that has already been loaded is shared rather than loaded again. Loads that are still running
+ * when the scene changes are cancelled. The class is comprised of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see ModelLoadTask
+ * @see GLUploadQueue
+ * @see OBJModelLoader
+ * @see com.crispin.crispinmobile.Utilities.OBJModelCache
+ * @since 1.0
+ */
+public class AsyncModelLoader {
+    // Loads that have been started and may not have finished
+    private static final ArrayList<ModelLoadTask> tasks = new ArrayList<>();
+
+    /**
+     * Load an OBJ model in the background
+     *
+     * @param resourceId         The OBJ model file resource ID
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @param loadListener       Listener that is notified of the progress and result of the load
+     *                           on the GL thread, or <code>null</code>
+     * @return Handle to the load that can be used to wait for the result or cancel the load
+     * @see OBJModelLoader#read(int, MeshLoadProperties)
+     * @since 1.0
+     */
+    public static synchronized ModelLoadTask load(int resourceId,
+                                                  MeshLoadProperties meshLoadProperties,
+                                                  LoadListener loadListener) {
+        removeFinishedTasks();
+        ModelLoadTask task = new ModelLoadTask(resourceId, meshLoadProperties, loadListener);
+        tasks.add(task);
+        WorkerExecutor.execute(task);
+        return task;
+    }
+
+    public static ModelLoadTask load(int resourceId, LoadListener loadListener) {
+        return load(resourceId, null, loadListener);
+    }
+
+    /**
+     * Cancel all of the loads that have not finished. Called by the SceneManager when the scene
+     * changes as the models were requested by the previous scene.
+     *
+     * @since 1.0
+     */
+    public static synchronized void cancelAll() {
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).cancel(false);
+        }
+        tasks.clear();
+    }
+
+    /**
+     * Get the number of loads that have not finished
+     *
+     * @return The number of loads in progress
+     * @since 1.0
+     */
+    public static synchronized int getPendingCount() {
+        removeFinishedTasks();
+        return tasks.size();
+    }
+
+    private static void removeFinishedTasks() {
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            if (tasks.get(i).isDone()) {
+                tasks.remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A mesh entry parsed from a binary mesh file. The vertex, index and outline data are slices of
+ * the file buffer and are in the layout expected by graphics memory.
+ *
+ * @see BinaryMeshFormat
+ * @since 1.0
+ */
+public class BinaryMeshEntry {
+    public String name;
+    public String materialLibrary;
+    public String materialName;
+
+    // Ordinal of the render method (see BinaryMeshFormat.RENDER_*)
+    public int renderMethod;
+
+    public int elementsPerPosition;
+    public int elementsPerTexel;
+    public int elementsPerNormal;
+    public int elementsPerTangent;
+    public int elementsPerBitangent;
+    public int vertexCount;
+
+    // Number of bytes per index (BinaryMeshFormat.NO_INDICES if the mesh is not indexed)
+    public int indexSize;
+    public int indexCount;
+    public int flags;
+
+    // 2D bound box (x, y, w, h) or null if the entry does not have one
+    public float[] boundBox;
+
+    // The xy positions of every face corner or null if the entry does not have them
+    public ByteBuffer outline;
+
+    // Interleaved vertex data (position, texel, normal, tangent, bi-tangent)
+    public ByteBuffer vertexData;
+
+    // Index data or null if the mesh is not indexed
+    public ByteBuffer indexData;
+
+    /**
+     * Get the number of bytes between the start of each vertex
+     *
+     * @return The vertex stride in bytes
+     * @since 1.0
+     */
+    public int getStride() {
+        return (elementsPerPosition + elementsPerTexel + elementsPerNormal + elementsPerTangent +
+                elementsPerBitangent) * BinaryMeshFormat.BYTES_PER_VALUE;
+    }
+
+    /**
+     * Copy the outline positions into a float array
+     *
+     * @return The xy positions of every face corner, or null if the entry does not have an outline
+     * @since 1.0
+     */
+    public float[] getOutline() {
+        if(outline == null) {
+            return null;
+        }
+
+        float[] positions = new float[outline.remaining() / BinaryMeshFormat.BYTES_PER_VALUE];
+        outline.duplicate().order(outline.order()).asFloatBuffer().get(positions);
+        return positions;
+    }
+
+    /**
+     * Copy the positions of the vertices into a float array
+     *
+     * @return The position of every vertex (elementsPerPosition values each)
+     * @since 1.0
+     */
+    public float[] getPositions() {
+        final int valuesPerVertex = getStride() / BinaryMeshFormat.BYTES_PER_VALUE;
+        FloatBuffer vertices = vertexData.duplicate().order(vertexData.order()).asFloatBuffer();
+        float[] positions = new float[vertexCount * elementsPerPosition];
+        for(int v = 0; v < vertexCount; v++) {
+            for(int i = 0; i < elementsPerPosition; i++) {
+                positions[v * elementsPerPosition + i] = vertices.get(v * valuesPerVertex + i);
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,145 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Describes the binary mesh format (.cmesh) and parses the mesh entries out of a file that has been
+ * read or memory mapped into a byte buffer. The format stores the data of each mesh in the same
+ * layout that is used in graphics memory so that it can be uploaded without any processing. All
+ * values are little-endian and every section is aligned to four bytes.
+ * <p>
+ * Header: magic ('CMSH'), version, mesh count.
+ * <p>
+ * Mesh entry: name, material library and material name (byte length then UTF-8 bytes, a length
+ * of -1 is a null string), render method, elements per position/texel/normal/tangent/bi-tangent,
+ * vertex count, index size (0 if the mesh is not indexed), index count, flags, optional bound box
+ * (x, y, w, h), optional outline (float count then xy floats of every face corner), interleaved
+ * vertex data and index data.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BinaryMeshWriter
+ * @see BinaryMeshLoader
+ * @since 1.0
+ */
+public class BinaryMeshFormat {
+    // The first four bytes of a binary mesh file ('CMSH' in little-endian)
+    public static final int MAGIC = 0x48534D43;
+
+    // The version of the format that is written and can be read
+    public static final int VERSION = 1;
+
+    // File extension of binary mesh files
+    public static final String FILE_EXTENSION = ".cmesh";
+
+    // Flag set if the mesh entry contains a 2D bound box
+    public static final int FLAG_BOUND_BOX = 0x01;
+
+    // Flag set if the mesh entry contains the xy positions of every face corner (used to build
+    // shadow meshes and hitboxes)
+    public static final int FLAG_OUTLINE = 0x02;
+
+    // String length written for null strings
+    public static final int NULL_STRING = -1;
+
+    // Index size of a mesh that is not indexed
+    public static final int NO_INDICES = 0;
+
+    // Render method values (the ordinals of Mesh.RenderMethod)
+    public static final int RENDER_POINTS = 0;
+    public static final int RENDER_LINES = 1;
+    public static final int RENDER_TRIANGLES = 2;
+
+    // The number of bytes in an int or float value
+    static final int BYTES_PER_VALUE = 4;
+
+    // Character set of the strings in the file
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Parse the mesh entries of a binary mesh file. The vertex and index data of the returned
+     * entries are slices of the given buffer so no mesh data is copied.
+     *
+     * @param buffer Buffer containing the whole file (e.g. memory mapped)
+     * @return List of the mesh entries in the file
+     * @throws IllegalArgumentException If the buffer does not contain a supported binary mesh file
+     * @since 1.0
+     */
+    public static ArrayList<BinaryMeshEntry> parse(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if(buffer.remaining() < BYTES_PER_VALUE * 3 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary mesh file");
+        }
+
+        final int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary mesh version: " + version);
+        }
+
+        final int meshCount = buffer.getInt();
+        ArrayList<BinaryMeshEntry> entries = new ArrayList<>(meshCount);
+        for(int i = 0; i < meshCount; i++) {
+            BinaryMeshEntry entry = new BinaryMeshEntry();
+            entry.name = getString(buffer);
+            entry.materialLibrary = getString(buffer);
+            entry.materialName = getString(buffer);
+            entry.renderMethod = buffer.getInt();
+            entry.elementsPerPosition = buffer.getInt();
+            entry.elementsPerTexel = buffer.getInt();
+            entry.elementsPerNormal = buffer.getInt();
+            entry.elementsPerTangent = buffer.getInt();
+            entry.elementsPerBitangent = buffer.getInt();
+            entry.vertexCount = buffer.getInt();
+            entry.indexSize = buffer.getInt();
+            entry.indexCount = buffer.getInt();
+            entry.flags = buffer.getInt();
+
+            if((entry.flags & FLAG_BOUND_BOX) != 0) {
+                entry.boundBox = new float[4];
+                for(int n = 0; n < entry.boundBox.length; n++) {
+                    entry.boundBox[n] = buffer.getFloat();
+                }
+            }
+
+            if((entry.flags & FLAG_OUTLINE) != 0) {
+                final int outlineFloats = buffer.getInt();
+                entry.outline = slice(buffer, outlineFloats * BYTES_PER_VALUE);
+            }
+
+            entry.vertexData = slice(buffer, entry.vertexCount * entry.getStride());
+            if(entry.indexSize != NO_INDICES) {
+                entry.indexData = slice(buffer, entry.indexCount * entry.indexSize);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    // The number of bytes that need to be added to the size to align it to four bytes
+    static int padding(int size) {
+        return (BYTES_PER_VALUE - (size % BYTES_PER_VALUE)) % BYTES_PER_VALUE;
+    }
+
+    // Get a slice of the next bytes in the buffer and move past them (and their padding)
+    private static ByteBuffer slice(ByteBuffer buffer, int size) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(buffer.position() + size);
+        buffer.position(buffer.position() + size + padding(size));
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if(length == NULL_STRING) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        buffer.position(buffer.position() + padding(length));
+        return new String(bytes, UTF_8);
+    }
+}
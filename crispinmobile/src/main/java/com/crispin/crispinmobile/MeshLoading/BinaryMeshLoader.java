@@ -0,0 +1,260 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import static android.opengl.GLES30.GL_UNSIGNED_INT;
+import static android.opengl.GLES30.GL_UNSIGNED_SHORT;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+
+import com.crispin.crispinmobile.Crispin;
+import com.crispin.crispinmobile.Physics.BoundBox2D;
+import com.crispin.crispinmobile.Physics.HitboxPolygon;
+import com.crispin.crispinmobile.Rendering.Models.ShadowMeshUtil;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.FileResourceReader;
+import com.crispin.crispinmobile.Utilities.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Loads meshes from binary mesh files that have been converted from OBJ models by the
+ * BinaryMeshWriter. The file is memory mapped and the vertex and index data of each mesh is
+ * uploaded straight from the mapped file, so unlike OBJModelLoader there is no parsing or
+ * intermediate float arrays. Raw resources should not be compressed in the APK for mapping to be
+ * possible (add the extension to <code>aaptOptions.noCompress</code>), compressed resources are
+ * read into a direct buffer instead. The class is comprised of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BinaryMeshFormat
+ * @see BinaryMeshWriter
+ * @see OBJModelLoader
+ * @since 1.0
+ */
+public class BinaryMeshLoader {
+    // Tag used in logging output
+    private static final String TAG = "BinaryMeshLoader";
+
+    // The number to divide nanoseconds by to get milliseconds
+    private static final int NANOSECONDS_TO_MILLISECONDS_DIVIDE = 1000000;
+
+    /**
+     * Read a binary mesh file from a resource ID
+     *
+     * @param resourceId         The binary mesh file resource ID
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @return Array of mesh data containing name, material and mesh
+     * @see Mesh
+     * @since 1.0
+     */
+    public static ArrayList<MeshData> read(int resourceId, MeshLoadProperties meshLoadProperties) {
+        try {
+            long start = System.nanoTime();
+            ByteBuffer buffer = map(resourceId);
+            return process(buffer, meshLoadProperties, start);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /**
+     * Read a binary mesh file from a file (e.g. one that has been downloaded)
+     *
+     * @param file               The binary mesh file
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @return Array of mesh data containing name, material and mesh
+     * @see Mesh
+     * @since 1.0
+     */
+    public static ArrayList<MeshData> read(File file, MeshLoadProperties meshLoadProperties) {
+        try {
+            long start = System.nanoTime();
+            ByteBuffer buffer = map(file);
+            return process(buffer, meshLoadProperties, start);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
+    public static HashMap<String, MeshData> read(int resourceId) {
+        return readToMap(resourceId, null);
+    }
+
+    /**
+     * Read a binary mesh file from a resource ID
+     *
+     * @param resourceId         The binary mesh file resource ID
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @return HashMap of mesh data allowing easy retrieval of specific mesh names
+     * @see Mesh
+     * @since 1.0
+     */
+    public static HashMap<String, MeshData> readToMap(int resourceId,
+                                                      MeshLoadProperties meshLoadProperties) {
+        ArrayList<MeshData> meshes = read(resourceId, meshLoadProperties);
+        HashMap<String, MeshData> map = new HashMap<>();
+        for(int i = 0; i < meshes.size(); i++) {
+            MeshData meshData = meshes.get(i);
+            map.put(meshData.name, meshData);
+        }
+        return map;
+    }
+
+    public static HashMap<String, MeshData> readToMap(int resourceId) {
+        return readToMap(resourceId, null);
+    }
+
+    /**
+     * Memory map a raw resource. If the resource has been compressed in the APK it can not be
+     * mapped, so it is read into a direct buffer instead.
+     *
+     * @param resourceId The raw resource ID
+     * @return A buffer containing the contents of the resource
+     * @throws IOException If the resource could not be read
+     * @since 1.0
+     */
+    public static ByteBuffer map(int resourceId) throws IOException {
+        Resources resources = Crispin.getApplicationContext().getResources();
+        AssetFileDescriptor fileDescriptor;
+        try {
+            fileDescriptor = resources.openRawResourceFd(resourceId);
+        } catch (Resources.NotFoundException e) {
+            fileDescriptor = null;
+        }
+
+        if(fileDescriptor == null) {
+            Logger.debug(TAG, "Resource " + resourceId + " is compressed and can not be " +
+                    "mapped, add the file extension to aaptOptions.noCompress");
+            InputStream inputStream = resources.openRawResource(resourceId);
+            byte[] bytes;
+            try {
+                bytes = FileResourceReader.readBytes(inputStream);
+            } finally {
+                inputStream.close();
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            buffer.put(bytes);
+            buffer.position(0);
+            return buffer;
+        }
+
+        // The descriptor is of the APK, the resource is at an offset in the file. The mapping
+        // remains valid after the channel has been closed.
+        FileInputStream inputStream = fileDescriptor.createInputStream();
+        try {
+            return inputStream.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    fileDescriptor.getStartOffset(), fileDescriptor.getLength());
+        } finally {
+            inputStream.close();
+            fileDescriptor.close();
+        }
+    }
+
+    /**
+     * Memory map a file
+     *
+     * @param file The file to map
+     * @return A buffer containing the contents of the file
+     * @throws IOException If the file could not be mapped
+     * @since 1.0
+     */
+    public static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static ArrayList<MeshData> process(ByteBuffer buffer,
+                                               MeshLoadProperties meshLoadProperties, long start) {
+        long buildStart = System.nanoTime();
+        ArrayList<BinaryMeshEntry> entries = BinaryMeshFormat.parse(buffer);
+
+        boolean loadAll = meshLoadProperties != null && meshLoadProperties.loadAll;
+        boolean createBoundBox = meshLoadProperties != null && meshLoadProperties.createBoundBox;
+        ArrayList<MeshData> meshes = new ArrayList<>(entries.size());
+        for(int i = 0; i < entries.size(); i++) {
+            BinaryMeshEntry entry = entries.get(i);
+            MeshLoadProperty meshLoadProperty = OBJModelLoader.getLoadProperty(
+                    meshLoadProperties, entry.name, loadAll);
+            if(meshLoadProperty == null) {
+                continue;
+            }
+
+            MeshData meshData = new MeshData();
+            meshData.name = entry.name;
+            meshData.materialName = entry.materialName;
+            meshData.materialLibrary = entry.materialLibrary;
+
+            if(meshLoadProperty.loadMesh || loadAll) {
+                meshData.mesh = createMesh(entry);
+
+                float[] positions = entry.getPositions();
+                meshData.boundBox3D = OBJModelLoader.createBoundBox3D(positions,
+                        entry.elementsPerPosition);
+                meshData.boundSphere = OBJModelLoader.createBoundSphere(positions,
+                        entry.elementsPerPosition);
+                meshData.mesh.boundBox3D = meshData.boundBox3D;
+                meshData.mesh.boundSphere = meshData.boundSphere;
+            }
+
+            if(meshLoadProperty.loadShadowMesh || meshLoadProperty.createHitbox) {
+                float[] outline = entry.getOutline();
+                if(outline == null) {
+                    Logger.error(TAG, "Mesh '" + entry.name + "' was converted without an " +
+                            "outline, a shadow mesh or hitbox can not be created");
+                } else {
+                    if(meshLoadProperty.loadShadowMesh) {
+                        meshData.shadowMesh = ShadowMeshUtil.createShadowMesh2D(outline);
+                    }
+
+                    if(meshLoadProperty.createHitbox) {
+                        meshData.hitboxPolygon = new HitboxPolygon(outline);
+                    }
+                }
+            }
+
+            if((meshLoadProperty.createBoundbox || createBoundBox) && entry.boundBox != null) {
+                meshData.boundBox2D = new BoundBox2D(entry.boundBox[0], entry.boundBox[1],
+                        entry.boundBox[2], entry.boundBox[3]);
+            }
+
+            meshes.add(meshData);
+        }
+
+        long end = System.nanoTime();
+        Logger.debug(TAG, "Model Loaded in: " + ((end - start) / NANOSECONDS_TO_MILLISECONDS_DIVIDE) +
+                "ms (map: " + ((buildStart - start) / NANOSECONDS_TO_MILLISECONDS_DIVIDE) +
+                "ms, build: " + ((end - buildStart) / NANOSECONDS_TO_MILLISECONDS_DIVIDE) + "ms)");
+        return meshes;
+    }
+
+    // Upload the vertex and index data of an entry directly from the file buffer
+    private static Mesh createMesh(BinaryMeshEntry entry) {
+        final int indexType = entry.indexSize == Mesh.BYTES_PER_SHORT ? GL_UNSIGNED_SHORT :
+                GL_UNSIGNED_INT;
+        return new Mesh(entry.vertexData, entry.indexData, indexType,
+                Mesh.RenderMethod.values()[entry.renderMethod], entry.elementsPerPosition,
+                entry.elementsPerTexel, entry.elementsPerNormal, entry.elementsPerTangent,
+                entry.elementsPerBitangent);
+    }
+}
@@ -0,0 +1,300 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * Converts OBJ models into the binary mesh format so that they can be loaded without parsing at
+ * runtime. The vertex data of each object is resolved into unique vertices, interleaved and has
+ * its tangents calculated exactly as it would be by OBJModelLoader. The class does not depend on
+ * Android so that it can be run offline, for example from the 'convertMeshes' Gradle task:
+ * <p>
+ * <code>BinaryMeshWriter [-outlines] [-suffix &lt;suffix&gt;] &lt;input .obj file or
+ * directory&gt; &lt;output directory&gt;</code>
+ * <p>
+ * The '-outlines' option stores the xy positions of every face corner so that shadow meshes and
+ * hitboxes can be created when loading. The suffix is added to the output file names (raw
+ * resources can not share a name with the OBJ file they were converted from).
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BinaryMeshFormat
+ * @see BinaryMeshLoader
+ * @since 1.0
+ */
+public class BinaryMeshWriter {
+    // File extension of OBJ model files
+    private static final String OBJ_FILE_EXTENSION = ".obj";
+
+    // The number of values in a 2D bound box (x, y, w, h)
+    private static final int BOUND_BOX_VALUES = 4;
+
+    // Number of header values in a mesh entry (render method, five element counts, vertex count,
+    // index size, index count and flags)
+    private static final int ENTRY_HEADER_VALUES = 10;
+
+    /**
+     * Write the objects of parsed OBJ data to a stream in the binary mesh format
+     *
+     * @param data          The parsed OBJ data
+     * @param writeOutlines If the xy position of every face corner should be stored (required to
+     *                      create shadow meshes and hitboxes when loading)
+     * @param outputStream  The stream to write to
+     * @return The number of meshes written
+     * @throws IOException If the stream could not be written to
+     * @since 1.0
+     */
+    public static int write(OBJData data, boolean writeOutlines, OutputStream outputStream)
+            throws IOException {
+        VertexIndexMap vertexIndexMap = new VertexIndexMap(data.getPositionCount());
+        ArrayList<ByteBuffer> entries = new ArrayList<>(data.objects.size());
+        for(int i = 0; i < data.objects.size(); i++) {
+            OBJObjectData object = data.objects.get(i);
+            if(object.cornerCount > 0) {
+                entries.add(createEntry(data, object, vertexIndexMap, writeOutlines));
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(BinaryMeshFormat.BYTES_PER_VALUE * 3)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(BinaryMeshFormat.MAGIC);
+        header.putInt(BinaryMeshFormat.VERSION);
+        header.putInt(entries.size());
+        outputStream.write(header.array());
+
+        for(int i = 0; i < entries.size(); i++) {
+            outputStream.write(entries.get(i).array());
+        }
+        return entries.size();
+    }
+
+    /**
+     * Convert an OBJ file into a binary mesh file
+     *
+     * @param objFile       The OBJ file to convert
+     * @param meshFile      The binary mesh file to write
+     * @param writeOutlines If the xy position of every face corner should be stored
+     * @return The number of meshes written
+     * @throws IOException If the OBJ file could not be read or the mesh file could not be written
+     * @since 1.0
+     */
+    public static int convert(File objFile, File meshFile, boolean writeOutlines)
+            throws IOException {
+        byte[] bytes = new byte[(int)objFile.length()];
+        DataInputStream inputStream = new DataInputStream(new FileInputStream(objFile));
+        try {
+            inputStream.readFully(bytes);
+        } finally {
+            inputStream.close();
+        }
+
+        OutputStream outputStream = new FileOutputStream(meshFile);
+        try {
+            return write(OBJParser.parse(bytes), writeOutlines, outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Convert OBJ files into binary mesh files
+     *
+     * @param args [-outlines] [-suffix &lt;suffix&gt;] &lt;input .obj file or directory&gt;
+     *             &lt;output directory&gt;
+     * @since 1.0
+     */
+    public static void main(String[] args) throws IOException {
+        boolean writeOutlines = false;
+        String suffix = "";
+        ArrayList<String> paths = new ArrayList<>();
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-outlines")) {
+                writeOutlines = true;
+            } else if(args[i].equals("-suffix") && i + 1 < args.length) {
+                suffix = args[++i];
+            } else {
+                paths.add(args[i]);
+            }
+        }
+
+        if(paths.size() != 2) {
+            System.err.println("Usage: BinaryMeshWriter [-outlines] [-suffix <suffix>] " +
+                    "<input .obj file or directory> <output directory>");
+            System.exit(1);
+            return;
+        }
+
+        File input = new File(paths.get(0));
+        File outputDirectory = new File(paths.get(1));
+        if(!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Failed to create output directory: " + outputDirectory);
+        }
+
+        File[] objFiles = input.isDirectory() ? input.listFiles() : new File[]{input};
+        if(objFiles == null) {
+            throw new IOException("Failed to list input directory: " + input);
+        }
+
+        for(File objFile : objFiles) {
+            String fileName = objFile.getName();
+            if(!fileName.toLowerCase().endsWith(OBJ_FILE_EXTENSION)) {
+                continue;
+            }
+
+            String meshName = fileName.substring(0, fileName.length() -
+                    OBJ_FILE_EXTENSION.length()) + suffix + BinaryMeshFormat.FILE_EXTENSION;
+            File meshFile = new File(outputDirectory, meshName);
+            int meshes = convert(objFile, meshFile, writeOutlines);
+            System.out.println(fileName + " -> " + meshName + " (" + meshes + " meshes, " +
+                    objFile.length() + " -> " + meshFile.length() + " bytes)");
+        }
+    }
+
+    // Resolve an object into a mesh entry of the binary mesh format
+    private static ByteBuffer createEntry(OBJData data, OBJObjectData object,
+                                          VertexIndexMap vertexIndexMap, boolean writeOutline) {
+        IndexedGeometry geometry = data.resolveIndexed(object, vertexIndexMap);
+        VertexData vertexData = new VertexData(geometry.positions, geometry.texels,
+                geometry.normals, geometry.indices, geometry.positionComponents,
+                geometry.texelComponents, geometry.normalComponents);
+
+        int indexSize = BinaryMeshFormat.NO_INDICES;
+        int indexCount = 0;
+        if(vertexData.indices != null) {
+            indexSize = vertexData.vertexCount <= Mesh.MAX_SHORT_INDEXED_VERTICES ?
+                    Mesh.BYTES_PER_SHORT : Mesh.BYTES_PER_INT;
+            indexCount = vertexData.indices.length;
+        }
+
+        int flags = 0;
+        float[] boundBox = null;
+        if(vertexData.elementsPerPosition >= 2) {
+            flags |= BinaryMeshFormat.FLAG_BOUND_BOX;
+            boundBox = createBoundBox(geometry.positions, vertexData.elementsPerPosition);
+        }
+
+        float[] outline = null;
+        if(writeOutline && vertexData.elementsPerPosition >= 2) {
+            flags |= BinaryMeshFormat.FLAG_OUTLINE;
+            outline = toXY(geometry.getExpandedPositions(), vertexData.elementsPerPosition);
+        }
+
+        byte[] name = toBytes(object.name);
+        byte[] materialLibrary = toBytes(object.materialLibrary);
+        byte[] materialName = toBytes(object.materialName);
+        final int indexBytes = indexCount * indexSize;
+        final int size = stringSize(name) + stringSize(materialLibrary) +
+                stringSize(materialName) +
+                (ENTRY_HEADER_VALUES * BinaryMeshFormat.BYTES_PER_VALUE) +
+                (boundBox == null ? 0 : BOUND_BOX_VALUES * BinaryMeshFormat.BYTES_PER_VALUE) +
+                (outline == null ? 0 : (outline.length + 1) * BinaryMeshFormat.BYTES_PER_VALUE) +
+                (vertexData.vertices.length * BinaryMeshFormat.BYTES_PER_VALUE) +
+                indexBytes + BinaryMeshFormat.padding(indexBytes);
+
+        ByteBuffer entry = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        putString(entry, name);
+        putString(entry, materialLibrary);
+        putString(entry, materialName);
+        entry.putInt(getRenderMethod(object.verticesPerFace));
+        entry.putInt(vertexData.elementsPerPosition);
+        entry.putInt(vertexData.elementsPerTexel);
+        entry.putInt(vertexData.elementsPerNormal);
+        entry.putInt(vertexData.elementsPerTangent);
+        entry.putInt(vertexData.elementsPerBitangent);
+        entry.putInt(vertexData.vertexCount);
+        entry.putInt(indexSize);
+        entry.putInt(indexCount);
+        entry.putInt(flags);
+
+        if(boundBox != null) {
+            putFloats(entry, boundBox);
+        }
+
+        if(outline != null) {
+            entry.putInt(outline.length);
+            putFloats(entry, outline);
+        }
+
+        putFloats(entry, vertexData.vertices);
+        for(int i = 0; i < indexCount; i++) {
+            if(indexSize == Mesh.BYTES_PER_SHORT) {
+                entry.putShort((short)vertexData.indices[i]);
+            } else {
+                entry.putInt(vertexData.indices[i]);
+            }
+        }
+        return entry;
+    }
+
+    // Same render methods as OBJModelLoader (faces have already been triangulated)
+    private static int getRenderMethod(int verticesPerFace) {
+        switch (verticesPerFace) {
+            case 1:
+                return BinaryMeshFormat.RENDER_POINTS;
+            case 2:
+                return BinaryMeshFormat.RENDER_LINES;
+            default:
+                return BinaryMeshFormat.RENDER_TRIANGLES;
+        }
+    }
+
+    // Create the 2D bound box (x, y, w, h) of the position data
+    private static float[] createBoundBox(float[] positions, int elementsPerPosition) {
+        float lx = positions[0];
+        float hx = positions[0];
+        float ly = positions[1];
+        float hy = positions[1];
+        for(int i = elementsPerPosition; i < positions.length; i += elementsPerPosition) {
+            lx = Math.min(lx, positions[i]);
+            hx = Math.max(hx, positions[i]);
+            ly = Math.min(ly, positions[i + 1]);
+            hy = Math.max(hy, positions[i + 1]);
+        }
+        return new float[]{lx, ly, hx - lx, hy - ly};
+    }
+
+    // Copy the x and y components of the position data
+    private static float[] toXY(float[] positions, int elementsPerPosition) {
+        float[] xy = new float[(positions.length / elementsPerPosition) * 2];
+        for(int i = 0, xyI = 0; i < positions.length; i += elementsPerPosition, xyI += 2) {
+            xy[xyI] = positions[i];
+            xy[xyI + 1] = positions[i + 1];
+        }
+        return xy;
+    }
+
+    private static void putFloats(ByteBuffer buffer, float[] values) {
+        buffer.asFloatBuffer().put(values);
+        buffer.position(buffer.position() + (values.length * BinaryMeshFormat.BYTES_PER_VALUE));
+    }
+
+    private static byte[] toBytes(String string) {
+        return string == null ? null : string.getBytes(BinaryMeshFormat.UTF_8);
+    }
+
+    private static int stringSize(byte[] string) {
+        return BinaryMeshFormat.BYTES_PER_VALUE + (string == null ? 0 :
+                string.length + BinaryMeshFormat.padding(string.length));
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] string) {
+        if(string == null) {
+            buffer.putInt(BinaryMeshFormat.NULL_STRING);
+            return;
+        }
+
+        buffer.putInt(string.length);
+        buffer.put(string);
+        buffer.position(buffer.position() + BinaryMeshFormat.padding(string.length));
+    }
+}
@@ -1,7 +0,0 @@
-package com.crispin.crispinmobile.MeshLoading;
-
-public class FaceIndexData {
-    public int[] positionIndices;
-    public int[] texelIndices;
-    public int[] normalIndices;
-}
\ No newline at end of file
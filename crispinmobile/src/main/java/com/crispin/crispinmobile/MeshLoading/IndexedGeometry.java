@@ -0,0 +1,74 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+/**
+ * Compact vertex data of a single object with an index buffer. Each unique combination of position,
+ * texel and normal is stored once and the indices describe the faces. If no vertices are shared the
+ * indices are <code>null</code> and the vertices are in draw order.
+ *
+ * @see OBJData#resolveIndexed(OBJObjectData, VertexIndexMap)
+ * @since 1.0
+ */
+public class IndexedGeometry {
+    public final float[] positions;
+    public final float[] texels;
+    public final float[] normals;
+    public final int[] indices;
+    public final int positionComponents;
+    public final int texelComponents;
+    public final int normalComponents;
+    public final int verticesPerFace;
+
+    public IndexedGeometry(float[] positions, float[] texels, float[] normals, int[] indices,
+                           int positionComponents, int texelComponents, int normalComponents,
+                           int verticesPerFace) {
+        this.positions = positions;
+        this.texels = texels;
+        this.normals = normals;
+        this.indices = indices;
+        this.positionComponents = positionComponents;
+        this.texelComponents = texelComponents;
+        this.normalComponents = normalComponents;
+        this.verticesPerFace = verticesPerFace;
+    }
+
+    /**
+     * Get the number of unique vertices
+     *
+     * @return The number of vertices in the vertex arrays
+     * @since 1.0
+     */
+    public int getVertexCount() {
+        return positionComponents == 0 ? 0 : positions.length / positionComponents;
+    }
+
+    /**
+     * Get the number of vertices that are drawn (the number of face corners)
+     *
+     * @return The number of indices, or the vertex count if the geometry is not indexed
+     * @since 1.0
+     */
+    public int getElementCount() {
+        return indices == null ? getVertexCount() : indices.length;
+    }
+
+    /**
+     * Get the position data with one entry per face corner (as if the geometry was not indexed).
+     * This is required by algorithms that work on a list of faces such as shadow mesh and hitbox
+     * generation.
+     *
+     * @return Position data in draw order
+     * @since 1.0
+     */
+    public float[] getExpandedPositions() {
+        if(indices == null) {
+            return positions;
+        }
+
+        float[] expanded = new float[indices.length * positionComponents];
+        for(int i = 0; i < indices.length; i++) {
+            System.arraycopy(positions, indices[i] * positionComponents, expanded,
+                    i * positionComponents, positionComponents);
+        }
+        return expanded;
+    }
+}
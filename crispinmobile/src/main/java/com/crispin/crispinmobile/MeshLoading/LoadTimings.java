@@ -0,0 +1,153 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+/**
+ * Time spent in each stage of loading a model. Stages that run on background threads in parallel
+ * (e.g. decoding several textures at once) add up the time of every thread, so the stages can add
+ * up to more than the total (wall clock) time of the load. Stages can be added to from any thread.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see ModelLoadTask
+ * @see MaterialPrefetcher
+ * @since 1.0
+ */
+public class LoadTimings {
+    // Reading the model file in to memory
+    public static final int READ = 0;
+
+    // Reading and parsing the material template libraries
+    public static final int MATERIAL_LIBRARY = 1;
+
+    // Decoding the texture maps referenced by the material libraries
+    public static final int TEXTURE_DECODE = 2;
+
+    // Parsing the model file
+    public static final int PARSE = 3;
+
+    // Building the vertex data, hitboxes and bounds of the meshes
+    public static final int BUILD = 4;
+
+    // Waiting for the material libraries and textures once the meshes have been built
+    public static final int MATERIAL_WAIT = 5;
+
+    // Uploading the decoded textures to graphics memory
+    public static final int TEXTURE_UPLOAD = 6;
+
+    // Uploading the meshes to graphics memory
+    public static final int MESH_UPLOAD = 7;
+
+    // The number of stages
+    public static final int NUM_STAGES = 8;
+
+    // The names of the stages used in the summary
+    private static final String[] STAGE_NAMES = {
+            "read", "mtl", "texture decode", "parse", "build", "material wait",
+            "texture upload", "mesh upload"
+    };
+
+    // The number to divide nanoseconds by to get milliseconds
+    private static final float NANOSECONDS_TO_MILLISECONDS_DIVIDE = 1000000.0f;
+
+    // Time spent in each stage in nanoseconds
+    private final long[] stageNanos;
+
+    // The time that the load started and finished
+    private long startNanos;
+    private long endNanos;
+
+    /**
+     * Create timings for a load that starts now
+     *
+     * @since 1.0
+     */
+    public LoadTimings() {
+        stageNanos = new long[NUM_STAGES];
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Add time to a stage
+     *
+     * @param stage The stage (e.g. <code>LoadTimings.PARSE</code>)
+     * @param nanos The time spent in nanoseconds
+     * @since 1.0
+     */
+    public synchronized void add(int stage, long nanos) {
+        stageNanos[stage] += nanos;
+    }
+
+    /**
+     * Add the time since a start time to a stage
+     *
+     * @param stage      The stage (e.g. <code>LoadTimings.PARSE</code>)
+     * @param startNanos The time that the work started, from <code>System.nanoTime</code>
+     * @return The current time, so that it can be used as the start of the next stage
+     * @since 1.0
+     */
+    public long addSince(int stage, long startNanos) {
+        final long now = System.nanoTime();
+        add(stage, now - startNanos);
+        return now;
+    }
+
+    /**
+     * Mark the load as finished
+     *
+     * @since 1.0
+     */
+    public synchronized void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Get the time spent in a stage
+     *
+     * @param stage The stage (e.g. <code>LoadTimings.PARSE</code>)
+     * @return The time in milliseconds
+     * @since 1.0
+     */
+    public synchronized float getStageMs(int stage) {
+        return stageNanos[stage] / NANOSECONDS_TO_MILLISECONDS_DIVIDE;
+    }
+
+    /**
+     * Get the wall clock time of the load, from creation until it finished (or until now if it
+     * has not finished)
+     *
+     * @return The time in milliseconds
+     * @since 1.0
+     */
+    public synchronized float getTotalMs() {
+        final long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return (end - startNanos) / NANOSECONDS_TO_MILLISECONDS_DIVIDE;
+    }
+
+    /**
+     * Get a summary of the total time and the time of each stage that took any time
+     *
+     * @return The summary, e.g. "12.5ms (read: 1.0ms, parse: 8.2ms, build: 3.3ms)"
+     * @since 1.0
+     */
+    @Override
+    public synchronized String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(formatMs(getTotalMs())).append(" (");
+        boolean first = true;
+        for(int stage = 0; stage < NUM_STAGES; stage++) {
+            if(stageNanos[stage] != 0) {
+                if(!first) {
+                    builder.append(", ");
+                }
+                builder.append(STAGE_NAMES[stage]).append(": ")
+                        .append(formatMs(getStageMs(stage)));
+                first = false;
+            }
+        }
+        return builder.append(')').toString();
+    }
+
+    // Format milliseconds with one decimal place
+    private static String formatMs(float ms) {
+        return (Math.round(ms * 10.0f) / 10.0f) + "ms";
+    }
+}
@@ -0,0 +1,318 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Data.Texture;
+import com.crispin.crispinmobile.Rendering.Data.TextureResource;
+import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.TextureCache;
+import com.crispin.crispinmobile.Utilities.WorkerExecutor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Load the materials of a model while its geometry is being parsed. As soon as the name of a
+ * material template library is known (usually from the 'mtllib' line at the top of the model
+ * file) the library is read and parsed on a background thread, then every texture map that it
+ * references is decoded on a background thread of its own. This happens in parallel with the
+ * parsing and building of the geometry, so once the meshes have been built the textures are
+ * usually ready. Only the upload of the decoded pixels (glTexImage2D) and the creation of the
+ * materials are left for the GL thread.
+ * <p>
+ * Textures that are already in the TextureCache are not uploaded again, and textures that are
+ * uploaded are registered with it. The time spent in each stage is added to the timings of the
+ * load.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see MaterialTemplateLibraryLoader
+ * @see LoadTimings
+ * @since 1.0
+ */
+public class MaterialPrefetcher {
+    // Tag used in logging output
+    private static final String TAG = "MaterialPrefetcher";
+
+    // Timings of the load that the materials are part of
+    private final LoadTimings timings;
+
+    // The material libraries by file name, in the order that they were requested
+    private final LinkedHashMap<String, Future<MaterialTemplateLibrary>> libraries;
+
+    // The decoded texture maps by file name
+    private final LinkedHashMap<String, Future<TextureResource.DecodedImage>> images;
+
+    // The materials of each library by file name, created on the GL thread
+    private final HashMap<String, HashMap<String, Material>> materials;
+
+    // The parsed libraries and decoded images once they have been waited for
+    private final LinkedHashMap<String, MaterialTemplateLibrary> loadedLibraries;
+    private final LinkedHashMap<String, TextureResource.DecodedImage> loadedImages;
+
+    // Textures that were uploaded by the prefetcher (not already cached) by resource ID
+    private final HashMap<Integer, Texture> uploadedTextures;
+
+    // If the prefetcher has been released, after which nothing more is loaded
+    private boolean released;
+
+    /**
+     * Create a prefetcher for the materials of one model
+     *
+     * @param timings Timings of the load that the stages are added to
+     * @since 1.0
+     */
+    public MaterialPrefetcher(LoadTimings timings) {
+        this.timings = timings;
+        this.libraries = new LinkedHashMap<>();
+        this.images = new LinkedHashMap<>();
+        this.materials = new HashMap<>();
+        this.loadedLibraries = new LinkedHashMap<>();
+        this.loadedImages = new LinkedHashMap<>();
+        this.uploadedTextures = new HashMap<>();
+    }
+
+    /**
+     * Start loading a material template library and its texture maps in the background. Requests
+     * for a library that is already loading are ignored.
+     *
+     * @param materialLibrary The file name of the library from the model file, or
+     *                        <code>null</code>
+     * @since 1.0
+     */
+    public synchronized void prefetch(final String materialLibrary) {
+        if(released || materialLibrary == null || materialLibrary.isEmpty() ||
+                libraries.containsKey(materialLibrary)) {
+            return;
+        }
+
+        libraries.put(materialLibrary, WorkerExecutor.submit(() -> loadLibrary(materialLibrary)));
+    }
+
+    /**
+     * Start loading the material template libraries of every object that was parsed. Libraries
+     * that were not found before the geometry (e.g. an 'mtllib' line part way through the file)
+     * are only started here.
+     *
+     * @param data The parsed OBJ data
+     * @since 1.0
+     */
+    public void prefetch(OBJData data) {
+        for(int i = 0; i < data.objects.size(); i++) {
+            prefetch(data.objects.get(i).materialLibrary);
+        }
+    }
+
+    /**
+     * Wait for the libraries to be parsed and the textures to be decoded. The background work
+     * does not use OpenGL, so this can be called from any thread.
+     *
+     * @return The number of bytes of the decoded textures that are to be uploaded
+     * @since 1.0
+     */
+    public int await() {
+        final long start = System.nanoTime();
+
+        // The textures are only requested by the library tasks, so every texture has been
+        // requested once the libraries have loaded
+        for(Map.Entry<String, Future<MaterialTemplateLibrary>> entry : getLibraries()) {
+            final MaterialTemplateLibrary library = get(entry.getValue(), entry.getKey());
+            if(library != null) {
+                synchronized(this) {
+                    if(!released) {
+                        loadedLibraries.put(entry.getKey(), library);
+                    }
+                }
+            }
+        }
+
+        int bytes = 0;
+        for(Map.Entry<String, Future<TextureResource.DecodedImage>> entry : getImages()) {
+            final TextureResource.DecodedImage image = get(entry.getValue(), entry.getKey());
+            if(image != null) {
+                synchronized(this) {
+                    if(!released) {
+                        loadedImages.put(entry.getKey(), image);
+                        bytes += image.pixels.capacity();
+                    }
+                }
+            }
+        }
+
+        timings.addSince(LoadTimings.MATERIAL_WAIT, start);
+        return bytes;
+    }
+
+    /**
+     * Upload the decoded textures and create the materials of the libraries. Must be called on the
+     * GL thread after <code>await</code>.
+     *
+     * @since 1.0
+     */
+    public synchronized void upload() {
+        if(released) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final HashMap<String, Texture> textures = new HashMap<>();
+        for(Map.Entry<String, TextureResource.DecodedImage> entry : loadedImages.entrySet()) {
+            final TextureResource.DecodedImage image = entry.getValue();
+            Texture texture = TextureCache.getTexture(image.resourceId);
+            if(texture == null) {
+                texture = new TextureResource(image);
+                uploadedTextures.put(image.resourceId, texture);
+            }
+            textures.put(entry.getKey(), texture);
+        }
+        loadedImages.clear();
+
+        for(Map.Entry<String, MaterialTemplateLibrary> entry : loadedLibraries.entrySet()) {
+            final HashMap<String, Material> libraryMaterials = new HashMap<>();
+            for(MaterialData materialData : entry.getValue().values()) {
+                libraryMaterials.put(materialData.name, createMaterial(materialData, textures));
+            }
+            materials.put(entry.getKey(), libraryMaterials);
+        }
+        timings.addSince(LoadTimings.TEXTURE_UPLOAD, start);
+    }
+
+    /**
+     * Stop loading the materials and free everything that has been loaded, such as when the load
+     * of the model is cancelled. Libraries and textures that are still loading are cancelled, and
+     * the textures that <code>upload</code> created are removed from the TextureCache and graphics
+     * memory. Must be called on the GL thread if <code>upload</code> has been called.
+     *
+     * @since 1.0
+     */
+    public synchronized void release() {
+        released = true;
+        for(Future<MaterialTemplateLibrary> library : libraries.values()) {
+            library.cancel(false);
+        }
+
+        for(Future<TextureResource.DecodedImage> image : images.values()) {
+            image.cancel(false);
+        }
+
+        loadedLibraries.clear();
+        loadedImages.clear();
+        materials.clear();
+        for(Map.Entry<Integer, Texture> entry : uploadedTextures.entrySet()) {
+            TextureCache.removeTexture(entry.getKey(), entry.getValue());
+        }
+        uploadedTextures.clear();
+    }
+
+    /**
+     * Get a material created by <code>upload</code>
+     *
+     * @param materialLibrary The file name of the library
+     * @param materialName    The name of the material in the library
+     * @return The material, or <code>null</code> if there is no such material
+     * @since 1.0
+     */
+    public Material getMaterial(String materialLibrary, String materialName) {
+        final HashMap<String, Material> libraryMaterials = materialLibrary == null ? null :
+                materials.get(materialLibrary);
+        return libraryMaterials == null || materialName == null ? null :
+                libraryMaterials.get(materialName);
+    }
+
+    /**
+     * Set the material of each mesh from the library and material name that its object uses
+     *
+     * @param meshes The meshes
+     * @since 1.0
+     */
+    public void applyMaterials(ArrayList<MeshData> meshes) {
+        for(int i = 0; i < meshes.size(); i++) {
+            final MeshData meshData = meshes.get(i);
+            meshData.material = getMaterial(meshData.materialLibrary, meshData.materialName);
+        }
+    }
+
+    // Read and parse a library, then start decoding its texture maps (background thread)
+    private MaterialTemplateLibrary loadLibrary(String materialLibrary) {
+        final long start = System.nanoTime();
+        final MaterialTemplateLibrary library = MaterialTemplateLibraryLoader.read(
+                materialLibrary);
+        timings.addSince(LoadTimings.MATERIAL_LIBRARY, start);
+
+        if(library != null) {
+            final ArrayList<String> textureMaps =
+                    MaterialTemplateLibraryLoader.getTextureMaps(library);
+            for(int i = 0; i < textureMaps.size(); i++) {
+                prefetchImage(textureMaps.get(i));
+            }
+        }
+        return library;
+    }
+
+    private synchronized void prefetchImage(final String textureMap) {
+        if(!released && !images.containsKey(textureMap)) {
+            images.put(textureMap, WorkerExecutor.submit(() -> decodeImage(textureMap)));
+        }
+    }
+
+    // Find and decode a texture map (background thread)
+    private TextureResource.DecodedImage decodeImage(String textureMap) {
+        final long start = System.nanoTime();
+        int resourceId = MaterialTemplateLibraryLoader.getResourceId(textureMap,
+                MaterialTemplateLibraryLoader.RESOURCE_TYPE_DRAWABLE);
+        if(resourceId == MaterialTemplateLibraryLoader.NO_RESOURCE) {
+            resourceId = MaterialTemplateLibraryLoader.getResourceId(textureMap,
+                    MaterialTemplateLibraryLoader.RESOURCE_TYPE_RAW);
+        }
+
+        if(resourceId == MaterialTemplateLibraryLoader.NO_RESOURCE) {
+            Logger.error(TAG, "No resource found for texture map '" + textureMap + "'");
+            return null;
+        }
+
+        final TextureResource.DecodedImage image = TextureResource.decode(resourceId);
+        timings.addSince(LoadTimings.TEXTURE_DECODE, start);
+        return image;
+    }
+
+    private static Material createMaterial(MaterialData materialData,
+                                           HashMap<String, Texture> textures) {
+        final Material material = new Material(new Colour(materialData.diffuseColour));
+        material.setTexture(textures.get(materialData.diffuseTextureMap));
+        material.setSpecularMap(textures.get(materialData.specularColourTextureMap));
+        material.setNormalMap(textures.get(materialData.normalTextureMap));
+        if(materialData.specularExponent > 0.0f) {
+            material.shininess = materialData.specularExponent;
+        }
+        return material;
+    }
+
+    private synchronized ArrayList<Map.Entry<String, Future<MaterialTemplateLibrary>>>
+            getLibraries() {
+        return new ArrayList<>(libraries.entrySet());
+    }
+
+    private synchronized ArrayList<Map.Entry<String, Future<TextureResource.DecodedImage>>>
+            getImages() {
+        return new ArrayList<>(images.entrySet());
+    }
+
+    // Wait for a result, logging an error and returning null if its task failed
+    private static <T> T get(Future<T> future, String fileName) {
+        try {
+            return WorkerExecutor.get(future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Logger.error(TAG, "Failed to load '" + fileName + "': " + e.getCause());
+        } catch (CancellationException e) {
+            // Released whilst loading
+        }
+        return null;
+    }
+}
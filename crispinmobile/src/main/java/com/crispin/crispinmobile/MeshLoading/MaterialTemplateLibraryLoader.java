@@ -5,15 +5,21 @@ import android.content.res.Resources;
 import com.crispin.crispinmobile.Crispin;
 import com.crispin.crispinmobile.Rendering.Data.Colour;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.FileResourceReader;
 import com.crispin.crispinmobile.Utilities.Logger;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
 
 /**
- * Read material template library files (.mtl)
+ * Read material template library files (.mtl). Files named in a model (e.g. 'mtllib cube.mtl' or
+ * 'map_Kd textures/brick.png') are found as Android resources by their file name without the
+ * directory or extension, so 'cube.mtl' is read from the raw resource 'cube' and 'brick.png' from
+ * the drawable (or raw) resource 'brick'.
  *
  * @author Christian Benner
  * @version %I%, %G%
@@ -39,6 +45,18 @@ public class MaterialTemplateLibraryLoader {
     private static final String TYPE_SPECULAR_HIGHLIGHT_COMPONENT = "map_Ns";
     private static final String TYPE_NORMAL_TEXTURE_MAP = "norm";
 
+    // The name of the character set of the files
+    private static final String CHARSET = "UTF-8";
+
+    // Resource type that material template libraries are stored as
+    public static final String RESOURCE_TYPE_RAW = "raw";
+
+    // Resource type that texture maps are stored as
+    public static final String RESOURCE_TYPE_DRAWABLE = "drawable";
+
+    // Returned when a file has no resource
+    public static final int NO_RESOURCE = 0;
+
     /**
      * Read an material template library resource
      *
@@ -76,6 +94,114 @@ public class MaterialTemplateLibraryLoader {
         return null;
     }
 
+    /**
+     * Read a material template library by the file name used in a model file (e.g. 'cube.mtl')
+     *
+     * @param fileName The file name of the material template library
+     * @return The materials in the library, or <code>null</code> if it could not be read
+     * @since 1.0
+     */
+    public static MaterialTemplateLibrary read(String fileName) {
+        final int resourceId = getResourceId(fileName, RESOURCE_TYPE_RAW);
+        if(resourceId == NO_RESOURCE) {
+            Logger.error(TAG, "No raw resource found for material template library '" +
+                    fileName + "'");
+            return null;
+        }
+
+        try {
+            Resources resources = Crispin.getApplicationContext().getResources();
+            InputStream inputStream = resources.openRawResource(resourceId);
+            try {
+                return parse(FileResourceReader.readBytes(inputStream));
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            Logger.error(TAG, "Failed to read material template library '" + fileName + "': " +
+                    e);
+        }
+        return null;
+    }
+
+    /**
+     * Parse the contents of a material template library file
+     *
+     * @param bytes The contents of the file
+     * @return The materials in the library
+     * @throws IOException If the contents could not be read
+     * @since 1.0
+     */
+    public static MaterialTemplateLibrary parse(byte[] bytes) throws IOException {
+        return process(new BufferedReader(new StringReader(new String(bytes, CHARSET))));
+    }
+
+    /**
+     * Get the file names of the texture maps that the materials of a library use. Each file is
+     * only listed once even if more than one material uses it.
+     *
+     * @param materialTemplateLibrary The materials
+     * @return The file names of the ambient, diffuse, specular and normal texture maps
+     * @since 1.0
+     */
+    public static ArrayList<String> getTextureMaps(
+            MaterialTemplateLibrary materialTemplateLibrary) {
+        final ArrayList<String> textureMaps = new ArrayList<>();
+        for(MaterialData materialData : materialTemplateLibrary.values()) {
+            addTextureMap(textureMaps, materialData.ambientTextureMap);
+            addTextureMap(textureMaps, materialData.diffuseTextureMap);
+            addTextureMap(textureMaps, materialData.specularColourTextureMap);
+            addTextureMap(textureMaps, materialData.normalTextureMap);
+        }
+        return textureMaps;
+    }
+
+    /**
+     * Get the name of the Android resource that a file is stored as. The directory and extension
+     * are removed, the name is made lower case and characters that are not allowed in a resource
+     * name are replaced with underscores.
+     *
+     * @param fileName The file name (e.g. 'Textures/Brick-Wall.png')
+     * @return The resource name (e.g. 'brick_wall')
+     * @since 1.0
+     */
+    public static String getResourceName(String fileName) {
+        String name = fileName.trim().replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1);
+        final int extension = name.indexOf('.');
+        if(extension > 0) {
+            name = name.substring(0, extension);
+        }
+
+        final StringBuilder builder = new StringBuilder(name.length());
+        for(int i = 0; i < name.length(); i++) {
+            final char c = Character.toLowerCase(name.charAt(i));
+            final boolean valid = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+            builder.append(valid ? c : '_');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Find the resource that a file is stored as
+     *
+     * @param fileName The file name used in the model or material template library
+     * @param type     The resource type (e.g. <code>RESOURCE_TYPE_RAW</code>)
+     * @return The resource ID, or <code>NO_RESOURCE</code> if there is no resource
+     * @since 1.0
+     */
+    public static int getResourceId(String fileName, String type) {
+        final Resources resources = Crispin.getApplicationContext().getResources();
+        return resources.getIdentifier(getResourceName(fileName), type,
+                Crispin.getApplicationContext().getPackageName());
+    }
+
+    private static void addTextureMap(ArrayList<String> textureMaps, String textureMap) {
+        if(textureMap != null && !textureMap.isEmpty() && !textureMaps.contains(textureMap)) {
+            textureMaps.add(textureMap);
+        }
+    }
+
     private static Colour parseColour(String[] split, int startIndex) {
         if(split.length - startIndex < 3) {
             Logger.error(TAG, "Expected 3 colour components for ambient colour");
@@ -92,8 +218,14 @@ public class MaterialTemplateLibraryLoader {
         MaterialTemplateLibrary materialTemplateLibrary = new MaterialTemplateLibrary();
 
         MaterialData temp = null;
-        while (reader.ready()) {
-            String[] split = reader.readLine().split(" ");
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] split = line.trim().split("\\s+");
+            if (temp == null && !split[TYPE_INDEX].equals(TYPE_NEW_MATERIAL)) {
+                // Comments and statements before the first material
+                continue;
+            }
+
             switch (split[TYPE_INDEX]) {
                 case TYPE_NEW_MATERIAL:
                     temp = new MaterialData();
@@ -113,19 +245,19 @@ public class MaterialTemplateLibraryLoader {
                     temp.specularExponent = Float.parseFloat(split[1]);
                     break;
                 case TYPE_AMBIENT_TEXTURE_MAP:
-                    temp.ambientTextureMap = split[1];
+                    temp.ambientTextureMap = split[split.length - 1];
                     break;
                 case TYPE_DIFFUSE_TEXTURE_MAP:
-                    temp.diffuseTextureMap = split[1];
+                    temp.diffuseTextureMap = split[split.length - 1];
                     break;
                 case TYPE_SPECULAR_COLOUR_TEXTURE_MAP:
-                    temp.specularColourTextureMap = split[1];
+                    temp.specularColourTextureMap = split[split.length - 1];
                     break;
                 case TYPE_SPECULAR_HIGHLIGHT_COMPONENT:
-                    temp.specularHighlightComponent = split[1];
+                    temp.specularHighlightComponent = split[split.length - 1];
                     break;
                 case TYPE_NORMAL_TEXTURE_MAP:
-                    temp.normalTextureMap = split[1];
+                    temp.normalTextureMap = split[split.length - 1];
                     break;
             }
         }
@@ -133,10 +265,6 @@ public class MaterialTemplateLibraryLoader {
         return materialTemplateLibrary;
     }
 
-    private static MaterialTemplateLibrary process(byte[] reader) throws IOException {
-        return null;
-    }
-
     private static float[] getFloats(String[] split, int index) {
         if (split.length - index <= 0) {
             return new float[]{};
@@ -1,15 +1,38 @@
 package com.crispin.crispinmobile.MeshLoading;
 
 import com.crispin.crispinmobile.Physics.BoundBox2D;
+import com.crispin.crispinmobile.Physics.BoundBox3D;
+import com.crispin.crispinmobile.Physics.BoundSphere;
 import com.crispin.crispinmobile.Physics.HitboxPolygon;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 
 public class MeshData {
     public String name;
     public Mesh mesh;
     public Mesh shadowMesh;
+
+    // Simplified levels of detail of the mesh from most to least detailed, or null if none were
+    // generated (see LODGroup)
+    public Mesh[] lods;
+
+    // Radius of a sphere around the origin of the mesh that contains all of its vertices
+    public float boundingRadius;
     public HitboxPolygon hitboxPolygon;
     public String materialLibrary;
     public String materialName;
+
+    // The material from the material library of the model, or null unless the model was loaded
+    // with loadMaterials (see MaterialPrefetcher)
+    public Material material;
     public BoundBox2D boundBox2D;
+
+    // Bounds of the mesh vertices in model space, computed for every loaded mesh
+    public BoundBox3D boundBox3D;
+    public BoundSphere boundSphere;
+
+    // Vertex data of the mesh kept on the CPU after upload, or null unless the mesh was loaded with
+    // keepVertexData (see StaticBatchBuilder)
+    public VertexData vertexData;
 }
\ No newline at end of file
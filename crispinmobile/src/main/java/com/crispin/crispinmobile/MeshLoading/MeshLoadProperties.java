@@ -1,8 +1,75 @@
 package com.crispin.crispinmobile.MeshLoading;
 
 import java.util.HashMap;
+import java.util.Map;
 
 public class MeshLoadProperties extends HashMap<String, MeshLoadProperty> {
     public boolean loadAll;
     public boolean createBoundBox;
-}
\ No newline at end of file
+
+    // Parse the file and resolve the meshes on multiple threads (see ParallelOBJParser)
+    public boolean parallel;
+
+    // Parse the file in chunks and build each mesh as soon as it has been parsed, without reading
+    // the whole file into memory (see StreamingOBJParser)
+    public boolean streaming;
+
+    // Store the vertices in the compact layout of half floats and packed normals (see
+    // VertexLayout)
+    public boolean compactVertices;
+
+    // The number of simplified levels of detail to generate for each mesh, each with half of the
+    // triangles of the last (see MeshSimplifier)
+    public int lodLevels;
+
+    // Keep the vertex data of each mesh in MeshData after it has been uploaded so that it can be
+    // merged in to a static batch (see StaticBatchBuilder)
+    public boolean keepVertexData;
+
+    // Load the material template library of the model and decode its textures in the background
+    // whilst the geometry is parsed, setting the material of each mesh (see MaterialPrefetcher)
+    public boolean loadMaterials;
+
+    public MeshLoadProperties() {
+
+    }
+
+    // Deep copy so that the copy is not affected by later changes to the original (e.g. when the
+    // properties are used as a cache key)
+    public MeshLoadProperties(MeshLoadProperties other) {
+        super(other.size());
+        for (Map.Entry<String, MeshLoadProperty> entry : other.entrySet()) {
+            put(entry.getKey(), entry.getValue() == null ? null :
+                    new MeshLoadProperty(entry.getValue()));
+        }
+        this.loadAll = other.loadAll;
+        this.createBoundBox = other.createBoundBox;
+        this.parallel = other.parallel;
+        this.streaming = other.streaming;
+        this.compactVertices = other.compactVertices;
+        this.lodLevels = other.lodLevels;
+        this.keepVertexData = other.keepVertexData;
+        this.loadMaterials = other.loadMaterials;
+    }
+
+    // The parallel and streaming flags are not compared because they do not change the meshes that
+    // are loaded
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof MeshLoadProperties) || !super.equals(o)) {
+            return false;
+        }
+
+        MeshLoadProperties other = (MeshLoadProperties) o;
+        return loadAll == other.loadAll && createBoundBox == other.createBoundBox &&
+                compactVertices == other.compactVertices && lodLevels == other.lodLevels &&
+                keepVertexData == other.keepVertexData && loadMaterials == other.loadMaterials;
+    }
+
+    @Override
+    public int hashCode() {
+        return (super.hashCode() * 31) + (loadAll ? 1 : 0) + (createBoundBox ? 2 : 0) +
+                (compactVertices ? 4 : 0) + (keepVertexData ? 8 : 0) + (loadMaterials ? 16 : 0) +
+                (lodLevels * 32);
+    }
+}
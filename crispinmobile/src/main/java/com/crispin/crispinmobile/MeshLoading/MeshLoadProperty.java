@@ -5,4 +5,36 @@ public class MeshLoadProperty {
     public boolean loadShadowMesh;
     public boolean createHitbox;
     public boolean createBoundbox;
-}
\ No newline at end of file
+
+    public MeshLoadProperty() {
+
+    }
+
+    public MeshLoadProperty(MeshLoadProperty other) {
+        this.loadMesh = other.loadMesh;
+        this.loadShadowMesh = other.loadShadowMesh;
+        this.createHitbox = other.createHitbox;
+        this.createBoundbox = other.createBoundbox;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof MeshLoadProperty)) {
+            return false;
+        }
+
+        MeshLoadProperty other = (MeshLoadProperty) o;
+        return loadMesh == other.loadMesh && loadShadowMesh == other.loadShadowMesh &&
+                createHitbox == other.createHitbox && createBoundbox == other.createBoundbox;
+    }
+
+    @Override
+    public int hashCode() {
+        return (loadMesh ? 1 : 0) | (loadShadowMesh ? 2 : 0) | (createHitbox ? 4 : 0) |
+                (createBoundbox ? 8 : 0);
+    }
+}
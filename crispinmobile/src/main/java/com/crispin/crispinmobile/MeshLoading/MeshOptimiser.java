@@ -0,0 +1,269 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Utilities.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Reorders the triangles and vertices of indexed meshes so that they render faster. Triangles are
+ * drawn in the order of the OBJ file, which rarely re-uses the vertices in the post-transform
+ * vertex cache of the GPU, so shared vertices are shaded multiple times.
+ * <p>
+ * The triangles are reordered with Tipsify (Sander, Nehab and Barczak, 2007). It fans around a
+ * vertex, emitting all of its remaining triangles, then moves to a neighbouring vertex that is
+ * still in the cache. It runs in linear time, making it suitable for load time. The vertices are
+ * then reordered in to the order that the triangles first use them, so that vertex fetches move
+ * through memory in order.
+ * <p>
+ * The optimisation only changes the order of the data, the triangles drawn are the same. The class
+ * does not depend on OpenGL and is comprised of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see VertexCacheStatistics
+ * @see OBJModelLoader
+ * @since 1.0
+ */
+public class MeshOptimiser {
+    // Tag used in logging output
+    private static final String TAG = "MeshOptimiser";
+
+    // The size of vertex cache to optimise for. Post-transform caches of mobile GPUs vary in size
+    // (and some are not FIFO) but an order that is good for a small cache is good for a larger one.
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    // The number of vertices that make up a face
+    private static final int POINTS_PER_FACE = 3;
+
+    // Represents that there is no vertex left to fan around
+    private static final int NO_VERTEX = -1;
+
+    /**
+     * Optimise indexed triangle geometry for the vertex cache and vertex fetch. Geometry that is not
+     * an indexed triangle list is returned unchanged.
+     *
+     * @param geometry  The geometry to optimise
+     * @param cacheSize The size of vertex cache to optimise for
+     * @return The optimised geometry
+     * @since 1.0
+     */
+    public static IndexedGeometry optimise(IndexedGeometry geometry, int cacheSize) {
+        if(geometry.indices == null || geometry.verticesPerFace != POINTS_PER_FACE) {
+            return geometry;
+        }
+
+        final int vertexCount = geometry.getVertexCount();
+        int[] indices = reorderTriangles(geometry.indices, vertexCount, cacheSize);
+        return reorderVertices(geometry, indices);
+    }
+
+    public static IndexedGeometry optimise(IndexedGeometry geometry) {
+        return optimise(geometry, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Optimise indexed triangle geometry and log the vertex cache statistics before and after (if
+     * debug logging is enabled)
+     *
+     * @param name      The name of the mesh used in the log
+     * @param geometry  The geometry to optimise
+     * @param cacheSize The size of vertex cache to optimise for
+     * @return The optimised geometry
+     * @since 1.0
+     */
+    public static IndexedGeometry optimise(String name, IndexedGeometry geometry, int cacheSize) {
+        if(!Logger.isDebugLoggingEnabled() || geometry.indices == null ||
+                geometry.verticesPerFace != POINTS_PER_FACE) {
+            return optimise(geometry, cacheSize);
+        }
+
+        final int vertexCount = geometry.getVertexCount();
+        VertexCacheStatistics before = VertexCacheStatistics.measure(geometry.indices,
+                vertexCount, cacheSize);
+        IndexedGeometry optimised = optimise(geometry, cacheSize);
+        VertexCacheStatistics after = VertexCacheStatistics.measure(optimised.indices,
+                vertexCount, cacheSize);
+        Logger.debug(TAG, "Mesh '" + name + "' vertex cache (" + cacheSize + " entries): " +
+                before + " -> " + after);
+        return optimised;
+    }
+
+    /**
+     * Reorder triangles for the post-transform vertex cache using Tipsify
+     *
+     * @param indices     The triangle list indices
+     * @param vertexCount The number of vertices that the indices reference
+     * @param cacheSize   The size of vertex cache to optimise for
+     * @return New triangle list indices with the same triangles in a cache friendly order
+     * @since 1.0
+     */
+    public static int[] reorderTriangles(int[] indices, int vertexCount, int cacheSize) {
+        final int triangleCount = indices.length / POINTS_PER_FACE;
+        final int elementCount = triangleCount * POINTS_PER_FACE;
+
+        // Triangles that use each vertex, stored as one array with an offset per vertex
+        final int[] adjacencyOffsets = new int[vertexCount + 1];
+        for(int i = 0; i < elementCount; i++) {
+            adjacencyOffsets[indices[i] + 1]++;
+        }
+        for(int v = 0; v < vertexCount; v++) {
+            adjacencyOffsets[v + 1] += adjacencyOffsets[v];
+        }
+
+        final int[] adjacency = new int[elementCount];
+        final int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+        for(int i = 0; i < elementCount; i++) {
+            adjacency[fill[indices[i]]++] = i / POINTS_PER_FACE;
+        }
+
+        // The number of triangles that each vertex is used by that have not been emitted
+        final int[] liveTriangles = new int[vertexCount];
+        for(int v = 0; v < vertexCount; v++) {
+            liveTriangles[v] = adjacencyOffsets[v + 1] - adjacencyOffsets[v];
+        }
+
+        // The time that each vertex entered the cache. Time starts after the cache size so that no
+        // vertex is in the cache to begin with.
+        final int[] cacheTime = new int[vertexCount];
+        int time = cacheSize + 1;
+
+        final boolean[] emitted = new boolean[triangleCount];
+        final int[] output = new int[indices.length];
+        int outputSize = 0;
+
+        // Recently used vertices to fall back to when the fanning vertex has no live neighbours
+        final int[] deadEndStack = new int[elementCount];
+        int deadEndSize = 0;
+
+        // Vertices of the triangles emitted around the current fanning vertex
+        int[] candidates = new int[64];
+
+        // The next vertex to check when both the candidates and the dead end stack are exhausted
+        int cursor = 0;
+
+        int fanningVertex = vertexCount == 0 ? NO_VERTEX : 0;
+        while(fanningVertex != NO_VERTEX) {
+            int candidateCount = 0;
+            final int end = adjacencyOffsets[fanningVertex + 1];
+            for(int a = adjacencyOffsets[fanningVertex]; a < end; a++) {
+                final int triangle = adjacency[a];
+                if(emitted[triangle]) {
+                    continue;
+                }
+                emitted[triangle] = true;
+
+                if(candidateCount + POINTS_PER_FACE > candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidates.length * 2);
+                }
+
+                for(int c = 0; c < POINTS_PER_FACE; c++) {
+                    final int vertex = indices[triangle * POINTS_PER_FACE + c];
+                    output[outputSize++] = vertex;
+                    deadEndStack[deadEndSize++] = vertex;
+                    candidates[candidateCount++] = vertex;
+                    liveTriangles[vertex]--;
+
+                    // Only vertices that are not in the cache enter it
+                    if(time - cacheTime[vertex] > cacheSize) {
+                        cacheTime[vertex] = time++;
+                    }
+                }
+            }
+
+            // Prefer the candidate that has been in the cache longest but will still be in it
+            // after its remaining triangles have been emitted
+            fanningVertex = NO_VERTEX;
+            int bestPriority = -1;
+            for(int c = 0; c < candidateCount; c++) {
+                final int vertex = candidates[c];
+                if(liveTriangles[vertex] <= 0) {
+                    continue;
+                }
+
+                int priority = 0;
+                if(time - cacheTime[vertex] + 2 * liveTriangles[vertex] <= cacheSize) {
+                    priority = time - cacheTime[vertex];
+                }
+
+                if(priority > bestPriority) {
+                    bestPriority = priority;
+                    fanningVertex = vertex;
+                }
+            }
+
+            if(fanningVertex == NO_VERTEX) {
+                // Dead end, continue from the most recently used vertex that has live triangles
+                while(deadEndSize > 0 && fanningVertex == NO_VERTEX) {
+                    final int vertex = deadEndStack[--deadEndSize];
+                    if(liveTriangles[vertex] > 0) {
+                        fanningVertex = vertex;
+                    }
+                }
+
+                // Otherwise the next vertex in order that has live triangles
+                while(cursor < vertexCount && fanningVertex == NO_VERTEX) {
+                    if(liveTriangles[cursor] > 0) {
+                        fanningVertex = cursor;
+                    }
+                    cursor++;
+                }
+            }
+        }
+
+        // Any indices that do not make up a whole triangle are kept at the end
+        System.arraycopy(indices, elementCount, output, outputSize, indices.length - elementCount);
+        return output;
+    }
+
+    /**
+     * Reorder the vertices of geometry in to the order that the indices first use them. Vertices
+     * that are not used are moved to the end.
+     *
+     * @param geometry The geometry containing the vertices to reorder
+     * @param indices  The indices to reorder the vertices by (e.g. the result of
+     *                 <code>reorderTriangles</code>)
+     * @return New geometry with the vertices reordered and the indices remapped
+     * @since 1.0
+     */
+    public static IndexedGeometry reorderVertices(IndexedGeometry geometry, int[] indices) {
+        final int vertexCount = geometry.getVertexCount();
+        final int[] remap = new int[vertexCount];
+        Arrays.fill(remap, NO_VERTEX);
+
+        int next = 0;
+        final int[] remappedIndices = new int[indices.length];
+        for(int i = 0; i < indices.length; i++) {
+            final int vertex = indices[i];
+            if(remap[vertex] == NO_VERTEX) {
+                remap[vertex] = next++;
+            }
+            remappedIndices[i] = remap[vertex];
+        }
+
+        for(int v = 0; v < vertexCount; v++) {
+            if(remap[v] == NO_VERTEX) {
+                remap[v] = next++;
+            }
+        }
+
+        return new IndexedGeometry(
+                reorder(geometry.positions, geometry.positionComponents, remap),
+                reorder(geometry.texels, geometry.texelComponents, remap),
+                reorder(geometry.normals, geometry.normalComponents, remap),
+                remappedIndices, geometry.positionComponents, geometry.texelComponents,
+                geometry.normalComponents, geometry.verticesPerFace);
+    }
+
+    // Move the components of each vertex to its new position
+    private static float[] reorder(float[] data, int components, int[] remap) {
+        if(data == null || components == 0) {
+            return data;
+        }
+
+        final float[] reordered = new float[data.length];
+        for(int v = 0; v < remap.length; v++) {
+            System.arraycopy(data, v * components, reordered, remap[v] * components, components);
+        }
+        return reordered;
+    }
+}
@@ -0,0 +1,703 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Simplifies indexed triangle geometry by collapsing edges in the order of least quadric error
+ * (Garland and Heckbert, 1997). Each position accumulates the planes of the triangles around it as
+ * a quadric, so the error of moving a position is the sum of its squared distances to those
+ * planes. Open borders add planes perpendicular to their triangles so that the outline of a mesh
+ * is kept.
+ * <p>
+ * Edges are collapsed in to one of their end points (a half edge collapse) rather than an
+ * optimal new position. This is slightly less accurate but no new vertices are created, so the
+ * texels and normals of the remaining vertices stay valid. Vertices that share a position but not
+ * texels or normals (seams) are simplified together. Collapses that would flip a triangle are
+ * rejected.
+ * <p>
+ * A simplifier keeps its state between calls so levels of detail can be generated in one pass,
+ * each call continuing from the previous level. The result only depends on the input geometry
+ * (ties are broken on position index) so simplification is deterministic. The class does not
+ * depend on OpenGL.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see MeshOptimiser
+ * @see OBJModelLoader
+ * @since 1.0
+ */
+public class MeshSimplifier {
+    // The fraction of triangles kept in each level of detail
+    public static final float DEFAULT_LOD_RATIO = 0.5f;
+
+    // The number of vertices that make up a face
+    private static final int POINTS_PER_FACE = 3;
+
+    // The number of unique values in a symmetric 4x4 quadric matrix
+    private static final int QUADRIC_VALUES = 10;
+
+    // Represents that a vertex or position has not been assigned
+    private static final int NONE = -1;
+
+    // Ratio of the area of a triangle after a collapse to its area before, below which the
+    // triangle is considered to have become degenerate
+    private static final double MIN_AREA_RATIO = 1e-6;
+
+    // A candidate collapse of one position in to another
+    private static class Collapse implements Comparable<Collapse> {
+        final double error;
+        final int from;
+        final int to;
+        final int fromVersion;
+        final int toVersion;
+
+        Collapse(double error, int from, int to, int fromVersion, int toVersion) {
+            this.error = error;
+            this.from = from;
+            this.to = to;
+            this.fromVersion = fromVersion;
+            this.toVersion = toVersion;
+        }
+
+        @Override
+        public int compareTo(Collapse other) {
+            if(error != other.error) {
+                return error < other.error ? -1 : 1;
+            }
+            if(from != other.from) {
+                return from < other.from ? -1 : 1;
+            }
+            return Integer.compare(to, other.to);
+        }
+    }
+
+    // The geometry being simplified
+    private final IndexedGeometry geometry;
+
+    // The vertex used by each triangle corner (updated as positions are collapsed)
+    private final int[] corners;
+
+    // If each triangle is still part of the mesh
+    private final boolean[] triangleAlive;
+
+    // The welded position of each vertex
+    private final int[] vertexPosition;
+
+    // The coordinates of each welded position
+    private final double[] positions;
+
+    // The vertices at each welded position, stored as one array with an offset per position
+    private final int[] positionVertexOffsets;
+    private final int[] positionVertices;
+
+    // The triangles that use each position (may include triangles that are no longer alive)
+    private final int[][] positionTriangles;
+    private final int[] positionTriangleCount;
+
+    // The quadric of each position
+    private final double[] quadrics;
+
+    // If each position is on an open border of the mesh
+    private final boolean[] border;
+
+    // If each position has been collapsed in to another
+    private final boolean[] collapsed;
+
+    // Incremented each time the quadric of a position changes, so that queued collapses from
+    // before the change can be recognised
+    private final int[] version;
+
+    // The collapse that last queued each position, used to avoid queueing a collapse twice
+    private final int[] queuedBy;
+
+    // Candidate collapses ordered by error
+    private final PriorityQueue<Collapse> queue;
+
+    // The number of triangles that are alive
+    private int triangleCount;
+
+    // The largest error of the collapses so far (distance from the original surface)
+    private float error;
+
+    // The number of collapses so far
+    private int collapseCount;
+
+    /**
+     * Construct a simplifier for indexed triangle geometry
+     *
+     * @param geometry The geometry to simplify. Must be an indexed triangle list.
+     * @since 1.0
+     */
+    public MeshSimplifier(IndexedGeometry geometry) {
+        if(geometry.indices == null || geometry.verticesPerFace != POINTS_PER_FACE) {
+            throw new IllegalArgumentException("Only indexed triangle geometry can be simplified");
+        }
+
+        this.geometry = geometry;
+        this.triangleCount = geometry.indices.length / POINTS_PER_FACE;
+        this.corners = Arrays.copyOf(geometry.indices, triangleCount * POINTS_PER_FACE);
+        this.triangleAlive = new boolean[triangleCount];
+        Arrays.fill(triangleAlive, true);
+
+        // Weld the vertices that share a position
+        final int vertexCount = geometry.getVertexCount();
+        this.vertexPosition = new int[vertexCount];
+        final int positionCount = weld(geometry, vertexPosition);
+        this.positions = new double[positionCount * 3];
+        final int components = geometry.positionComponents;
+        for(int v = vertexCount - 1; v >= 0; v--) {
+            final int p = vertexPosition[v];
+            for(int i = 0; i < Math.min(components, 3); i++) {
+                positions[p * 3 + i] = geometry.positions[v * components + i];
+            }
+        }
+
+        this.positionVertexOffsets = new int[positionCount + 1];
+        for(int v = 0; v < vertexCount; v++) {
+            positionVertexOffsets[vertexPosition[v] + 1]++;
+        }
+        for(int p = 0; p < positionCount; p++) {
+            positionVertexOffsets[p + 1] += positionVertexOffsets[p];
+        }
+        this.positionVertices = new int[vertexCount];
+        final int[] fill = Arrays.copyOf(positionVertexOffsets, positionCount);
+        for(int v = 0; v < vertexCount; v++) {
+            positionVertices[fill[vertexPosition[v]]++] = v;
+        }
+
+        this.positionTriangleCount = new int[positionCount];
+        for(int i = 0; i < corners.length; i++) {
+            positionTriangleCount[vertexPosition[corners[i]]]++;
+        }
+        this.positionTriangles = new int[positionCount][];
+        for(int p = 0; p < positionCount; p++) {
+            positionTriangles[p] = new int[positionTriangleCount[p]];
+            positionTriangleCount[p] = 0;
+        }
+        for(int i = 0; i < corners.length; i++) {
+            final int p = vertexPosition[corners[i]];
+            positionTriangles[p][positionTriangleCount[p]++] = i / POINTS_PER_FACE;
+        }
+
+        this.quadrics = new double[positionCount * QUADRIC_VALUES];
+        this.border = new boolean[positionCount];
+        this.collapsed = new boolean[positionCount];
+        this.version = new int[positionCount];
+        this.queuedBy = new int[positionCount];
+        Arrays.fill(queuedBy, NONE);
+        addTriangleQuadrics();
+        addBorderQuadrics();
+
+        this.queue = new PriorityQueue<>();
+        for(int p = 0; p < positionCount; p++) {
+            queueCollapses(p, p + 1);
+        }
+    }
+
+    /**
+     * Generate levels of detail for indexed triangle geometry. Each level has the given ratio of
+     * the triangles of the previous level, unless the error limit is reached first, in which case
+     * fewer levels are returned.
+     *
+     * @param geometry The geometry to simplify
+     * @param levels   The number of levels to generate (not including the original geometry)
+     * @param ratio    The fraction of triangles to keep in each level
+     * @param maxError The largest distance from the original surface allowed
+     * @return The simplified geometry of each level from most to least detailed
+     * @since 1.0
+     */
+    public static IndexedGeometry[] generateLODs(IndexedGeometry geometry, int levels, float ratio,
+                                                 float maxError) {
+        MeshSimplifier simplifier = new MeshSimplifier(geometry);
+        IndexedGeometry[] lods = new IndexedGeometry[levels];
+        int count = 0;
+        int target = simplifier.getTriangleCount();
+        for(int l = 0; l < levels; l++) {
+            final int previous = simplifier.getTriangleCount();
+            target = (int)(target * ratio);
+            final IndexedGeometry lod = simplifier.simplify(target, maxError);
+
+            // Stop once a level no longer reduces the number of triangles (or removes all of them)
+            if(simplifier.getTriangleCount() >= previous || simplifier.getTriangleCount() == 0) {
+                break;
+            }
+            lods[count++] = lod;
+        }
+        return Arrays.copyOf(lods, count);
+    }
+
+    /**
+     * Collapse edges until the number of triangles is at or below the target, or until the next
+     * collapse would exceed the maximum error. Continues from the result of the previous call.
+     *
+     * @param targetTriangles The number of triangles to reduce the geometry to
+     * @param maxError        The largest distance from the original surface allowed
+     * @return The simplified geometry, containing only the vertices that are still used
+     * @since 1.0
+     */
+    public IndexedGeometry simplify(int targetTriangles, float maxError) {
+        final double maxQuadricError = (double)maxError * maxError;
+        while(triangleCount > targetTriangles && !queue.isEmpty()) {
+            final Collapse collapse = queue.peek();
+            if(collapse.error > maxQuadricError) {
+                break;
+            }
+            queue.poll();
+
+            // Skip collapses that were queued before either position changed
+            if(collapsed[collapse.from] || collapsed[collapse.to] ||
+                    version[collapse.from] != collapse.fromVersion ||
+                    version[collapse.to] != collapse.toVersion) {
+                continue;
+            }
+
+            if(isValid(collapse.from, collapse.to)) {
+                collapse(collapse.from, collapse.to);
+                error = Math.max(error, (float)Math.sqrt(Math.max(0.0, collapse.error)));
+            }
+        }
+        return getGeometry();
+    }
+
+    /**
+     * Get the number of triangles left after simplification
+     *
+     * @return The number of triangles
+     * @since 1.0
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Get the error of the simplification so far. No position has moved further than this
+     * distance from any of the planes of the original triangles around it.
+     *
+     * @return The largest error of the collapses performed
+     * @since 1.0
+     */
+    public float getError() {
+        return error;
+    }
+
+    /**
+     * Get the simplified geometry. Vertices are kept in their original order with the unused
+     * vertices removed.
+     *
+     * @return The geometry after the collapses so far
+     * @since 1.0
+     */
+    public IndexedGeometry getGeometry() {
+        final int vertexCount = geometry.getVertexCount();
+        final int[] remap = new int[vertexCount];
+        Arrays.fill(remap, NONE);
+        for(int t = 0; t < triangleAlive.length; t++) {
+            if(triangleAlive[t]) {
+                for(int c = 0; c < POINTS_PER_FACE; c++) {
+                    remap[corners[t * POINTS_PER_FACE + c]] = 0;
+                }
+            }
+        }
+
+        int used = 0;
+        for(int v = 0; v < vertexCount; v++) {
+            if(remap[v] != NONE) {
+                remap[v] = used++;
+            }
+        }
+
+        final int[] indices = new int[triangleCount * POINTS_PER_FACE];
+        int i = 0;
+        for(int t = 0; t < triangleAlive.length; t++) {
+            if(triangleAlive[t]) {
+                for(int c = 0; c < POINTS_PER_FACE; c++) {
+                    indices[i++] = remap[corners[t * POINTS_PER_FACE + c]];
+                }
+            }
+        }
+
+        return new IndexedGeometry(
+                compact(geometry.positions, geometry.positionComponents, remap, used),
+                compact(geometry.texels, geometry.texelComponents, remap, used),
+                compact(geometry.normals, geometry.normalComponents, remap, used),
+                indices, geometry.positionComponents, geometry.texelComponents,
+                geometry.normalComponents, POINTS_PER_FACE);
+    }
+
+    // Assign the same position index to vertices with identical positions. Positions are numbered
+    // in the order that they first appear.
+    private static int weld(IndexedGeometry geometry, int[] vertexPosition) {
+        final int vertexCount = geometry.getVertexCount();
+        final int components = geometry.positionComponents;
+        final float[] data = geometry.positions;
+
+        // Open addressing hash table of the first vertex with each position
+        int tableSize = 1;
+        while(tableSize < vertexCount * 2) {
+            tableSize <<= 1;
+        }
+        final int[] table = new int[tableSize];
+        Arrays.fill(table, NONE);
+
+        int positionCount = 0;
+        for(int v = 0; v < vertexCount; v++) {
+            int hash = 0;
+            for(int i = 0; i < components; i++) {
+                // Add zero so that -0 and 0 hash the same
+                hash = hash * 31 + Float.floatToIntBits(data[v * components + i] + 0.0f);
+            }
+            hash ^= hash >>> 16;
+
+            int slot = hash & (tableSize - 1);
+            while(table[slot] != NONE && !samePosition(data, components, table[slot], v)) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+
+            if(table[slot] == NONE) {
+                table[slot] = v;
+                vertexPosition[v] = positionCount++;
+            } else {
+                vertexPosition[v] = vertexPosition[table[slot]];
+            }
+        }
+        return positionCount;
+    }
+
+    private static boolean samePosition(float[] data, int components, int a, int b) {
+        for(int i = 0; i < components; i++) {
+            if(data[a * components + i] != data[b * components + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Add the plane of each triangle to the quadrics of its positions
+    private void addTriangleQuadrics() {
+        final double[] normal = new double[3];
+        for(int t = 0; t < triangleAlive.length; t++) {
+            final int p0 = vertexPosition[corners[t * POINTS_PER_FACE]];
+            final int p1 = vertexPosition[corners[t * POINTS_PER_FACE + 1]];
+            final int p2 = vertexPosition[corners[t * POINTS_PER_FACE + 2]];
+            if(!triangleNormal(p0, p1, p2, normal) || !normalise(normal)) {
+                continue;
+            }
+
+            final double d = -dot(normal, p0);
+            addPlane(p0, normal, d);
+            addPlane(p1, normal, d);
+            addPlane(p2, normal, d);
+        }
+    }
+
+    // Find the edges that only one triangle uses (the open borders of the mesh). Each border edge
+    // adds a plane through the edge, perpendicular to its triangle, to both of its positions so
+    // that moving the edge inwards or outwards has an error.
+    private void addBorderQuadrics() {
+        final int edgeCount = triangleAlive.length * POINTS_PER_FACE;
+        final long[] edges = new long[edgeCount];
+        for(int i = 0; i < edgeCount; i++) {
+            final int triangle = i / POINTS_PER_FACE;
+            final int a = vertexPosition[corners[i]];
+            final int b = vertexPosition[corners[triangle * POINTS_PER_FACE +
+                    (i + 1) % POINTS_PER_FACE]];
+            edges[i] = edgeKey(a, b);
+        }
+        final long[] sorted = edges.clone();
+        Arrays.sort(sorted);
+
+        final double[] normal = new double[3];
+        final double[] edge = new double[3];
+        final double[] plane = new double[3];
+        for(int i = 0; i < edgeCount; i++) {
+            // Binary search finds any one of the equal keys, so check either side of it
+            final int found = Arrays.binarySearch(sorted, edges[i]);
+            final boolean shared = (found > 0 && sorted[found - 1] == edges[i]) ||
+                    (found + 1 < edgeCount && sorted[found + 1] == edges[i]);
+            if(shared) {
+                continue;
+            }
+
+            final int triangle = i / POINTS_PER_FACE;
+            final int a = vertexPosition[corners[i]];
+            final int b = vertexPosition[corners[triangle * POINTS_PER_FACE +
+                    (i + 1) % POINTS_PER_FACE]];
+            if(a == b || !triangleNormal(vertexPosition[corners[triangle * POINTS_PER_FACE]],
+                    vertexPosition[corners[triangle * POINTS_PER_FACE + 1]],
+                    vertexPosition[corners[triangle * POINTS_PER_FACE + 2]], normal)) {
+                continue;
+            }
+
+            for(int c = 0; c < 3; c++) {
+                edge[c] = positions[b * 3 + c] - positions[a * 3 + c];
+            }
+            cross(edge, normal, plane);
+            if(!normalise(plane)) {
+                continue;
+            }
+
+            final double d = -dot(plane, a);
+            addPlane(a, plane, d);
+            addPlane(b, plane, d);
+            border[a] = true;
+            border[b] = true;
+        }
+    }
+
+    // A key that is the same for both directions of an edge
+    private static long edgeKey(int a, int b) {
+        return a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+    }
+
+    // Add the plane (nx, ny, nz, d) to the quadric of a position
+    private void addPlane(int position, double[] n, double d) {
+        final int q = position * QUADRIC_VALUES;
+        quadrics[q] += n[0] * n[0];
+        quadrics[q + 1] += n[0] * n[1];
+        quadrics[q + 2] += n[0] * n[2];
+        quadrics[q + 3] += n[0] * d;
+        quadrics[q + 4] += n[1] * n[1];
+        quadrics[q + 5] += n[1] * n[2];
+        quadrics[q + 6] += n[1] * d;
+        quadrics[q + 7] += n[2] * n[2];
+        quadrics[q + 8] += n[2] * d;
+        quadrics[q + 9] += d * d;
+    }
+
+    // The sum of the squared distances from a position to the planes of two quadrics
+    private double quadricError(int a, int b, int position) {
+        final int qa = a * QUADRIC_VALUES;
+        final int qb = b * QUADRIC_VALUES;
+        final double x = positions[position * 3];
+        final double y = positions[position * 3 + 1];
+        final double z = positions[position * 3 + 2];
+        return (quadrics[qa] + quadrics[qb]) * x * x +
+                2.0 * (quadrics[qa + 1] + quadrics[qb + 1]) * x * y +
+                2.0 * (quadrics[qa + 2] + quadrics[qb + 2]) * x * z +
+                2.0 * (quadrics[qa + 3] + quadrics[qb + 3]) * x +
+                (quadrics[qa + 4] + quadrics[qb + 4]) * y * y +
+                2.0 * (quadrics[qa + 5] + quadrics[qb + 5]) * y * z +
+                2.0 * (quadrics[qa + 6] + quadrics[qb + 6]) * y +
+                (quadrics[qa + 7] + quadrics[qb + 7]) * z * z +
+                2.0 * (quadrics[qa + 8] + quadrics[qb + 8]) * z +
+                (quadrics[qa + 9] + quadrics[qb + 9]);
+    }
+
+    // Queue the collapses of a position in to each of its neighbours and of each neighbour in to
+    // the position. Neighbours with a lower index than the minimum are skipped, so that each edge
+    // is only queued once when every position is queued.
+    private void queueCollapses(int position, int minNeighbour) {
+        collapseCount++;
+        final int[] triangles = positionTriangles[position];
+        for(int i = 0; i < positionTriangleCount[position]; i++) {
+            final int triangle = triangles[i];
+            if(!triangleAlive[triangle]) {
+                continue;
+            }
+
+            for(int c = 0; c < POINTS_PER_FACE; c++) {
+                final int neighbour = vertexPosition[corners[triangle * POINTS_PER_FACE + c]];
+                if(neighbour == position || neighbour < minNeighbour ||
+                        queuedBy[neighbour] == collapseCount) {
+                    continue;
+                }
+                queuedBy[neighbour] = collapseCount;
+                queue.add(new Collapse(quadricError(position, neighbour, neighbour), position,
+                        neighbour, version[position], version[neighbour]));
+                queue.add(new Collapse(quadricError(position, neighbour, position), neighbour,
+                        position, version[neighbour], version[position]));
+            }
+        }
+    }
+
+    // Check that collapsing a position in to another would not flip or degenerate any triangle,
+    // and that a position on a border only moves along the border
+    private boolean isValid(int from, int to) {
+        final double[] before = new double[3];
+        final double[] after = new double[3];
+        int sharedTriangles = 0;
+        final int[] triangles = positionTriangles[from];
+        for(int i = 0; i < positionTriangleCount[from]; i++) {
+            final int triangle = triangles[i];
+            if(!triangleAlive[triangle]) {
+                continue;
+            }
+
+            final int p0 = vertexPosition[corners[triangle * POINTS_PER_FACE]];
+            final int p1 = vertexPosition[corners[triangle * POINTS_PER_FACE + 1]];
+            final int p2 = vertexPosition[corners[triangle * POINTS_PER_FACE + 2]];
+            if(p0 == to || p1 == to || p2 == to) {
+                // The triangle is removed by the collapse
+                sharedTriangles++;
+                continue;
+            }
+
+            triangleNormal(p0, p1, p2, before);
+            triangleNormal(p0 == from ? to : p0, p1 == from ? to : p1, p2 == from ? to : p2,
+                    after);
+            final double beforeLengthSq = dot(before, before);
+            final double afterLengthSq = dot(after, after);
+            if(dot(before, after) <= 0.0 || afterLengthSq < beforeLengthSq * MIN_AREA_RATIO) {
+                return false;
+            }
+        }
+
+        // The positions are no longer joined by an edge
+        if(sharedTriangles == 0) {
+            return false;
+        }
+
+        // Border positions can only collapse along a border edge (used by one triangle)
+        return !border[from] || sharedTriangles == 1;
+    }
+
+    // Collapse a position in to another. Triangles that use both positions are removed and the
+    // corners of the other triangles are moved to the vertex at the new position with the most
+    // similar texel and normal.
+    private void collapse(int from, int to) {
+        final int[] triangles = positionTriangles[from];
+        for(int i = 0; i < positionTriangleCount[from]; i++) {
+            final int triangle = triangles[i];
+            if(!triangleAlive[triangle]) {
+                continue;
+            }
+
+            boolean usesTarget = false;
+            for(int c = 0; c < POINTS_PER_FACE; c++) {
+                usesTarget |= vertexPosition[corners[triangle * POINTS_PER_FACE + c]] == to;
+            }
+
+            if(usesTarget) {
+                triangleAlive[triangle] = false;
+                triangleCount--;
+                continue;
+            }
+
+            for(int c = 0; c < POINTS_PER_FACE; c++) {
+                final int corner = triangle * POINTS_PER_FACE + c;
+                if(vertexPosition[corners[corner]] == from) {
+                    corners[corner] = findClosestVertex(to, corners[corner]);
+                }
+            }
+            addTriangle(to, triangle);
+        }
+
+        for(int i = 0; i < QUADRIC_VALUES; i++) {
+            quadrics[to * QUADRIC_VALUES + i] += quadrics[from * QUADRIC_VALUES + i];
+        }
+        border[to] |= border[from];
+        collapsed[from] = true;
+        positionTriangles[from] = null;
+        positionTriangleCount[from] = 0;
+        version[to]++;
+        removeDeadTriangles(to);
+        queueCollapses(to, 0);
+    }
+
+    // Find the vertex at a position whose texel and normal are closest to those of another vertex
+    private int findClosestVertex(int position, int vertex) {
+        int closest = NONE;
+        double closestDistance = Double.MAX_VALUE;
+        for(int i = positionVertexOffsets[position]; i < positionVertexOffsets[position + 1];
+            i++) {
+            final int candidate = positionVertices[i];
+            final double distance =
+                    distanceSq(geometry.texels, geometry.texelComponents, vertex, candidate) +
+                    distanceSq(geometry.normals, geometry.normalComponents, vertex, candidate);
+            if(distance < closestDistance) {
+                closestDistance = distance;
+                closest = candidate;
+            }
+        }
+        return closest;
+    }
+
+    private static double distanceSq(float[] data, int components, int a, int b) {
+        if(data == null) {
+            return 0.0;
+        }
+
+        double distance = 0.0;
+        for(int i = 0; i < components; i++) {
+            final double difference = data[a * components + i] - data[b * components + i];
+            distance += difference * difference;
+        }
+        return distance;
+    }
+
+    private void addTriangle(int position, int triangle) {
+        if(positionTriangleCount[position] == positionTriangles[position].length) {
+            positionTriangles[position] = Arrays.copyOf(positionTriangles[position],
+                    Math.max(4, positionTriangles[position].length * 2));
+        }
+        positionTriangles[position][positionTriangleCount[position]++] = triangle;
+    }
+
+    private void removeDeadTriangles(int position) {
+        final int[] triangles = positionTriangles[position];
+        int count = 0;
+        for(int i = 0; i < positionTriangleCount[position]; i++) {
+            if(triangleAlive[triangles[i]]) {
+                triangles[count++] = triangles[i];
+            }
+        }
+        positionTriangleCount[position] = count;
+    }
+
+    // The (un-normalised) normal of a triangle, false if the triangle has no area
+    private boolean triangleNormal(int p0, int p1, int p2, double[] normal) {
+        final double e1x = positions[p1 * 3] - positions[p0 * 3];
+        final double e1y = positions[p1 * 3 + 1] - positions[p0 * 3 + 1];
+        final double e1z = positions[p1 * 3 + 2] - positions[p0 * 3 + 2];
+        final double e2x = positions[p2 * 3] - positions[p0 * 3];
+        final double e2y = positions[p2 * 3 + 1] - positions[p0 * 3 + 1];
+        final double e2z = positions[p2 * 3 + 2] - positions[p0 * 3 + 2];
+        normal[0] = e1y * e2z - e1z * e2y;
+        normal[1] = e1z * e2x - e1x * e2z;
+        normal[2] = e1x * e2y - e1y * e2x;
+        return normal[0] != 0.0 || normal[1] != 0.0 || normal[2] != 0.0;
+    }
+
+    private static void cross(double[] a, double[] b, double[] result) {
+        result[0] = a[1] * b[2] - a[2] * b[1];
+        result[1] = a[2] * b[0] - a[0] * b[2];
+        result[2] = a[0] * b[1] - a[1] * b[0];
+    }
+
+    private static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    private double dot(double[] n, int position) {
+        return n[0] * positions[position * 3] + n[1] * positions[position * 3 + 1] +
+                n[2] * positions[position * 3 + 2];
+    }
+
+    private static boolean normalise(double[] v) {
+        final double length = Math.sqrt(dot(v, v));
+        if(length == 0.0) {
+            return false;
+        }
+        v[0] /= length;
+        v[1] /= length;
+        v[2] /= length;
+        return true;
+    }
+
+    // Copy the components of the used vertices in to a new array
+    private static float[] compact(float[] data, int components, int[] remap, int used) {
+        if(data == null || components == 0) {
+            return data;
+        }
+
+        final float[] compacted = new float[used * components];
+        for(int v = 0; v < remap.length; v++) {
+            if(remap[v] != NONE) {
+                System.arraycopy(data, v * components, compacted, remap[v] * components,
+                        components);
+            }
+        }
+        return compacted;
+    }
+}
@@ -0,0 +1,622 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.GLUploadQueue;
+import com.crispin.crispinmobile.Utilities.LoadListener;
+import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.OBJModelCache;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handle to a model that is being loaded by the AsyncModelLoader. The model file is read, parsed
+ * and built into vertex data on a background thread, then each mesh is uploaded to graphics memory
+ * through the GLUploadQueue. The task can be cancelled at any point, meshes that have already been
+ * uploaded are removed from graphics memory.
+ * <p>
+ * Models are loaded through the OBJModelCache. A model that is already cached (or that is being
+ * loaded by someone else) is not loaded again, the task waits for it and completes with the
+ * shared meshes. The loaded model holds a reference in the cache, release it with
+ * <code>OBJModelCache.release</code> once it is no longer needed. Cancelling the task drops the
+ * reference.
+ * <p>
+ * The result can be waited for with <code>get</code>. On the GL thread, waiting runs the queued
+ * uploads straight away (ignoring the upload budget) because they would otherwise never run. Use a
+ * LoadListener to be notified of the result on the GL thread without stalling it.
+ * <p>
+ * If the properties ask for materials to be loaded, the material library is loaded and its
+ * textures are decoded in the background whilst the file is parsed (see MaterialPrefetcher), and
+ * the textures are uploaded before the meshes. The time spent in each stage is recorded in the
+ * timings of the task and logged once the model has loaded.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see AsyncModelLoader
+ * @see LoadListener
+ * @see LoadTimings
+ * @see OBJModelCache
+ * @since 1.0
+ */
+public class ModelLoadTask implements Future<ArrayList<MeshData>>, Runnable {
+    // Tag used in logging output
+    private static final String TAG = "ModelLoadTask";
+
+    // Progress once the file has been read
+    private static final float READ_PROGRESS = 0.1f;
+
+    // Progress once the file has been parsed
+    private static final float PARSE_PROGRESS = 0.3f;
+
+    // Progress once the vertex data has been built, the uploads make up the rest
+    private static final float BUILD_PROGRESS = 0.5f;
+
+    // The task is waiting for or running on the background thread
+    private static final int STATE_LOADING = 0;
+
+    // The meshes are being uploaded
+    private static final int STATE_UPLOADING = 1;
+
+    // The model has loaded
+    private static final int STATE_COMPLETE = 2;
+
+    // The task has been cancelled
+    private static final int STATE_CANCELLED = 3;
+
+    // The model failed to load
+    private static final int STATE_FAILED = 4;
+
+    // How often the GL thread runs the queued uploads whilst it waits for the model to load
+    private static final long GL_THREAD_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // The OBJ model file resource ID
+    private final int resourceId;
+
+    // Properties of the meshes to load (copied so that later changes do not affect the load)
+    private final MeshLoadProperties meshLoadProperties;
+
+    // Listener to the events of the load, or null
+    private final LoadListener loadListener;
+
+    // The loaded meshes in the order of the model file
+    private final ArrayList<MeshData> meshes = new ArrayList<>();
+
+    // The model in the OBJModelCache, held until the task is done
+    private OBJModelCache.Lookup lookup;
+
+    // If the meshes are shared with the cache rather than uploaded by the task
+    private boolean cached;
+
+    // The current state of the task
+    private int state = STATE_LOADING;
+
+    // Fraction of the model that has loaded
+    private volatile float progress;
+
+    // The reason that the model failed to load
+    private Throwable failure;
+
+    // The number of meshes that are still to be uploaded
+    private int remainingUploads;
+
+    // The number of bytes that have been uploaded and that are to be uploaded
+    private int uploadedBytes;
+    private int totalUploadBytes;
+
+    // Time spent in each stage of the load
+    private final LoadTimings timings;
+
+    // Loads the materials of the model, or null if materials are not loaded
+    private volatile MaterialPrefetcher materialPrefetcher;
+
+    /**
+     * Create a task to load an OBJ model. The task is started by the AsyncModelLoader.
+     *
+     * @param resourceId         The OBJ model file resource ID
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @param loadListener       Listener to the events of the load, or <code>null</code>
+     * @since 1.0
+     */
+    ModelLoadTask(int resourceId, MeshLoadProperties meshLoadProperties,
+                  LoadListener loadListener) {
+        this.resourceId = resourceId;
+        this.meshLoadProperties = meshLoadProperties == null ? null :
+                new MeshLoadProperties(meshLoadProperties);
+        this.loadListener = loadListener;
+        this.timings = new LoadTimings();
+    }
+
+    /**
+     * Read, parse and build the model. Called on a background thread by the AsyncModelLoader.
+     *
+     * @since 1.0
+     */
+    @Override
+    public void run() {
+        boolean queued = false;
+        try {
+            if (isCancelled() || !lookUp()) {
+                return;
+            }
+
+            long time = System.nanoTime();
+            byte[] bytes = OBJModelLoader.readResource(resourceId);
+            time = timings.addSince(LoadTimings.READ, time);
+            setProgress(READ_PROGRESS);
+            if (isCancelled()) {
+                return;
+            }
+
+            // Start loading the materials before the geometry is parsed
+            if (meshLoadProperties != null && meshLoadProperties.loadMaterials) {
+                materialPrefetcher = new MaterialPrefetcher(timings);
+                materialPrefetcher.prefetch(OBJParser.findMaterialLibrary(bytes));
+                time = timings.addSince(LoadTimings.MATERIAL_LIBRARY, time);
+            }
+
+            boolean parallel = meshLoadProperties != null && meshLoadProperties.parallel;
+            ParallelOBJParser parallelParser = parallel ? ParallelOBJParser.getDefault() : null;
+            OBJData data = parallel ? parallelParser.parse(bytes) : OBJParser.parse(bytes);
+            time = timings.addSince(LoadTimings.PARSE, time);
+            setProgress(PARSE_PROGRESS);
+            if (isCancelled()) {
+                return;
+            }
+
+            if (materialPrefetcher != null) {
+                materialPrefetcher.prefetch(data);
+            }
+
+            boolean loadAll = meshLoadProperties != null && meshLoadProperties.loadAll;
+            ArrayList<PendingMeshData> pendingMeshes = OBJModelLoader.build(data,
+                    meshLoadProperties, loadAll, parallelParser);
+            timings.addSince(LoadTimings.BUILD, time);
+            setProgress(BUILD_PROGRESS);
+
+            int textureBytes = materialPrefetcher == null ? 0 : materialPrefetcher.await();
+            queued = queueUploads(pendingMeshes, textureBytes);
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            // Nothing was uploaded, so the materials can be released on this thread
+            if (!queued && materialPrefetcher != null) {
+                materialPrefetcher.release();
+            }
+        }
+    }
+
+    // Look the model up in the cache. Returns true if the task has to load the model, false if
+    // the model was already loaded by someone else (or the task has been cancelled).
+    private boolean lookUp() {
+        while (true) {
+            final OBJModelCache.Lookup modelLookup = OBJModelCache.lookup(resourceId,
+                    meshLoadProperties);
+            synchronized (this) {
+                if (state == STATE_LOADING) {
+                    lookup = modelLookup;
+                } else {
+                    release(modelLookup);
+                    return false;
+                }
+            }
+
+            if (modelLookup.isReserved()) {
+                return true;
+            }
+
+            // The other load was cancelled, so the model is looked up again
+            final ArrayList<MeshData> cachedMeshes = modelLookup.await();
+            if (modelLookup.isCancelled()) {
+                continue;
+            }
+
+            if (cachedMeshes == null) {
+                fail(new IOException("Model " + resourceId + " failed to load"));
+                return false;
+            }
+
+            synchronized (this) {
+                if (state != STATE_LOADING) {
+                    return false;
+                }
+
+                cached = true;
+                meshes.addAll(cachedMeshes);
+            }
+
+            // There is nothing to upload, the task completes on the GL thread
+            queueUploads(new ArrayList<>(), 0);
+            return false;
+        }
+    }
+
+    /**
+     * Get the time spent in each stage of the load. The total time includes the time spent waiting
+     * for a loader thread.
+     *
+     * @return The timings of the load
+     * @since 1.0
+     */
+    public LoadTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Get the OBJ model file resource ID
+     *
+     * @return The resource ID of the model
+     * @since 1.0
+     */
+    public int getResourceId() {
+        return resourceId;
+    }
+
+    /**
+     * Get the fraction of the model that has loaded. Reading and parsing the file makes up the
+     * first half, uploading the meshes the second half.
+     *
+     * @return The progress from 0 to 1
+     * @since 1.0
+     */
+    public float getProgress() {
+        return progress;
+    }
+
+    /**
+     * Cancel the load. The background work is stopped at the next step, queued uploads are skipped
+     * and meshes and textures that have already been uploaded are removed from graphics memory (on
+     * the GL thread). The reference to the model in the OBJModelCache is dropped straight away.
+     *
+     * @param mayInterruptIfRunning Not used, the background thread is never interrupted
+     * @return True if the task was cancelled, false if it had already finished
+     * @since 1.0
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final OBJModelCache.Lookup cancelledLookup;
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+
+            state = STATE_CANCELLED;
+            cancelledLookup = lookup;
+            lookup = null;
+            notifyAll();
+        }
+
+        // Released before returning so that the scene that cancelled the load no longer holds it
+        if (cancelledLookup != null) {
+            release(cancelledLookup);
+        }
+
+        GLUploadQueue.queueEvent(() -> {
+            synchronized (this) {
+                destroyMeshes();
+            }
+
+            final MaterialPrefetcher prefetcher = materialPrefetcher;
+            if (prefetcher != null) {
+                prefetcher.release();
+            }
+
+            if (loadListener != null) {
+                loadListener.onCancel();
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == STATE_CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state == STATE_COMPLETE || state == STATE_CANCELLED || state == STATE_FAILED;
+    }
+
+    /**
+     * Wait for the model to load. If called on the GL thread, the queued uploads are run whilst
+     * waiting.
+     *
+     * @return The mesh data of the model
+     * @throws InterruptedException If the thread was interrupted whilst waiting
+     * @throws ExecutionException   If the model failed to load
+     * @since 1.0
+     */
+    @Override
+    public ArrayList<MeshData> get() throws InterruptedException, ExecutionException {
+        awaitDone(false, 0L);
+        synchronized (this) {
+            return getResult();
+        }
+    }
+
+    @Override
+    public ArrayList<MeshData> get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!awaitDone(true, unit.toNanos(timeout))) {
+            throw new TimeoutException("Model " + resourceId + " has not loaded");
+        }
+
+        synchronized (this) {
+            return getResult();
+        }
+    }
+
+    // Wait until the task is done, or the timeout has passed if timed. The uploads of the task run
+    // on the GL thread, so on the GL thread they are run here instead of waiting for them. The
+    // background work may be waiting for the uploads of another load of the model, so the GL
+    // thread keeps running the queued uploads until the task is done.
+    private boolean awaitDone(boolean timed, long timeoutNanos) throws InterruptedException {
+        final boolean glThread = GLUploadQueue.isGLThread();
+        final long end = System.nanoTime() + timeoutNanos;
+        while (true) {
+            synchronized (this) {
+                if (isDone()) {
+                    return true;
+                }
+
+                final long remainingNanos = end - System.nanoTime();
+                if (timed && remainingNanos <= 0) {
+                    return false;
+                }
+
+                // Woken up once the uploads have been queued (or the task is done)
+                if (!glThread) {
+                    if (timed) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                    } else {
+                        wait();
+                    }
+                    continue;
+                }
+
+                if (state == STATE_LOADING) {
+                    TimeUnit.NANOSECONDS.timedWait(this, timed ?
+                            Math.min(remainingNanos, GL_THREAD_WAIT_NANOS) :
+                            GL_THREAD_WAIT_NANOS);
+                }
+            }
+
+            GLUploadQueue.drain();
+        }
+    }
+
+    // Queue the texture upload then an upload per mesh, or the completion if there is no mesh to
+    // upload. Returns false if the task has been cancelled and nothing was queued.
+    private boolean queueUploads(ArrayList<PendingMeshData> pendingMeshes,
+                                 final int textureBytes) {
+        synchronized (this) {
+            if (state != STATE_LOADING) {
+                return false;
+            }
+
+            state = STATE_UPLOADING;
+            remainingUploads = pendingMeshes.size();
+            for (int i = 0; i < pendingMeshes.size(); i++) {
+                totalUploadBytes += pendingMeshes.get(i).getSizeBytes();
+            }
+        }
+
+        if (pendingMeshes.isEmpty()) {
+            GLUploadQueue.add(new GLUploadQueue.Upload() {
+                @Override
+                public int getSizeBytes() {
+                    return 0;
+                }
+
+                @Override
+                public void upload() {
+                    complete();
+                }
+            });
+            notifyUploadsQueued();
+            return true;
+        }
+
+        // The queue is in order, so the materials are created before the meshes are uploaded
+        if (materialPrefetcher != null) {
+            GLUploadQueue.add(new GLUploadQueue.Upload() {
+                @Override
+                public int getSizeBytes() {
+                    return isCancelled() ? 0 : textureBytes;
+                }
+
+                @Override
+                public void upload() {
+                    if (!isCancelled()) {
+                        materialPrefetcher.upload();
+                    }
+                }
+            });
+        }
+
+        for (int i = 0; i < pendingMeshes.size(); i++) {
+            final PendingMeshData pendingMesh = pendingMeshes.get(i);
+            GLUploadQueue.add(new GLUploadQueue.Upload() {
+                @Override
+                public int getSizeBytes() {
+                    // Skipped uploads do not use any of the frame budget
+                    return isCancelled() ? 0 : pendingMesh.getSizeBytes();
+                }
+
+                @Override
+                public void upload() {
+                    uploadMesh(pendingMesh);
+                }
+            });
+        }
+        notifyUploadsQueued();
+        return true;
+    }
+
+    // Wake up a GL thread that is waiting for the result so that it can run the uploads
+    private synchronized void notifyUploadsQueued() {
+        notifyAll();
+    }
+
+    // Upload a mesh (GL thread only)
+    private void uploadMesh(PendingMeshData pendingMesh) {
+        if (isCancelled()) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        MeshData meshData = pendingMesh.upload();
+        if (materialPrefetcher != null) {
+            meshData.material = materialPrefetcher.getMaterial(meshData.materialLibrary,
+                    meshData.materialName);
+        }
+        timings.addSince(LoadTimings.MESH_UPLOAD, start);
+
+        boolean last;
+        synchronized (this) {
+            if (state == STATE_CANCELLED) {
+                // Cancelled during the upload, the cancel event may have already run
+                destroy(meshData);
+                return;
+            }
+
+            meshes.add(meshData);
+            uploadedBytes += pendingMesh.getSizeBytes();
+            last = --remainingUploads == 0;
+        }
+
+        if (last) {
+            complete();
+        } else {
+            float uploadProgress = totalUploadBytes == 0 ? 1.0f :
+                    (float) uploadedBytes / totalUploadBytes;
+            progress = BUILD_PROGRESS + (1.0f - BUILD_PROGRESS) * uploadProgress;
+            if (loadListener != null) {
+                loadListener.onProgress(progress);
+            }
+        }
+    }
+
+    // Mark the task as complete, publish the model to the cache if the task loaded it and notify
+    // the listener (GL thread only). The reference to the model passes on to the result.
+    private void complete() {
+        final OBJModelCache.Lookup completedLookup;
+        synchronized (this) {
+            if (state != STATE_UPLOADING) {
+                return;
+            }
+
+            state = STATE_COMPLETE;
+            progress = 1.0f;
+            completedLookup = lookup;
+            lookup = null;
+            notifyAll();
+        }
+
+        if (completedLookup != null && completedLookup.isReserved()) {
+            completedLookup.publish(meshes);
+        }
+
+        timings.finish();
+        Logger.debug(TAG, "Model " + resourceId + (cached ? " loaded from the cache in " :
+                " loaded in ") + timings);
+
+        if (loadListener != null) {
+            loadListener.onProgress(1.0f);
+            loadListener.onLoadModel(meshes);
+        }
+    }
+
+    // Mark the task as failed and notify the listener
+    private void fail(Throwable throwable) {
+        final OBJModelCache.Lookup failedLookup;
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+
+            state = STATE_FAILED;
+            failure = throwable;
+            failedLookup = lookup;
+            lookup = null;
+            notifyAll();
+        }
+
+        // A model that failed to load is removed from the cache so that it can be tried again
+        if (failedLookup != null) {
+            if (failedLookup.isReserved()) {
+                failedLookup.publish(null);
+            } else {
+                failedLookup.release();
+            }
+        }
+
+        Logger.error(TAG, "Failed to load model " + resourceId + ": " + throwable);
+        if (loadListener != null) {
+            GLUploadQueue.queueEvent(loadListener::onFail);
+        }
+    }
+
+    // Report progress of the background work on the GL thread
+    private void setProgress(final float progress) {
+        this.progress = progress;
+        if (loadListener != null) {
+            GLUploadQueue.queueEvent(() -> {
+                if (!isDone()) {
+                    loadListener.onProgress(progress);
+                }
+            });
+        }
+    }
+
+    private ArrayList<MeshData> getResult() throws ExecutionException {
+        if (state == STATE_CANCELLED) {
+            throw new CancellationException("Load of model " + resourceId + " was cancelled");
+        } else if (state == STATE_FAILED) {
+            throw new ExecutionException(failure);
+        }
+        return meshes;
+    }
+
+    // Remove the meshes that have been uploaded from graphics memory (GL thread only). Meshes that
+    // are shared with the cache are left to it.
+    private void destroyMeshes() {
+        if (!cached) {
+            for (int i = 0; i < meshes.size(); i++) {
+                destroy(meshes.get(i));
+            }
+        }
+        meshes.clear();
+    }
+
+    // Drop the reference to the model, giving up the load of the model if the task reserved it
+    private static void release(OBJModelCache.Lookup modelLookup) {
+        if (modelLookup.isReserved()) {
+            modelLookup.cancel();
+        } else {
+            modelLookup.release();
+        }
+    }
+
+    private static void destroy(MeshData meshData) {
+        if (meshData.mesh != null) {
+            meshData.mesh.destroy();
+        }
+
+        if (meshData.shadowMesh != null) {
+            meshData.shadowMesh.destroy();
+        }
+
+        if (meshData.lods != null) {
+            for (Mesh lod : meshData.lods) {
+                lod.destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Utilities.GrowableFloatArray;
+import com.crispin.crispinmobile.Utilities.GrowableIntArray;
+
+import java.util.ArrayList;
+
+/**
+ * The raw result of parsing an OBJ file. Vertex attributes are stored in flat primitive arrays
+ * exactly as they appear in the file. Faces are stored as a flat array of face corners where each
+ * corner is made up of three zero based indices (position, texel and normal). Indices that are not
+ * present in the file are set to <code>OBJParser.UNDEFINED_INDEX</code>.
+ *
+ * @see OBJParser
+ * @see OBJObjectData
+ * @since 1.0
+ */
+public class OBJData {
+    // Number of integers that make up a face corner (position, texel and normal index)
+    public static final int INDICES_PER_CORNER = 3;
+
+    // Offset of the position index in a face corner
+    public static final int CORNER_POSITION = 0;
+
+    // Offset of the texel index in a face corner
+    public static final int CORNER_TEXEL = 1;
+
+    // Offset of the normal index in a face corner
+    public static final int CORNER_NORMAL = 2;
+
+    public final GrowableFloatArray positions;
+    public final GrowableFloatArray texels;
+    public final GrowableFloatArray normals;
+    public final GrowableIntArray faceIndices;
+    public final ArrayList<OBJObjectData> objects;
+    public int positionComponents;
+    public int texelComponents;
+    public int normalComponents;
+
+    /**
+     * Create an empty OBJ data object with an initial capacity based on the size of the file it is
+     * going to hold
+     *
+     * @param fileSizeBytes The size of the OBJ file in bytes (used to estimate array capacities)
+     * @since 1.0
+     */
+    public OBJData(int fileSizeBytes) {
+        // Rough estimates of the amount of data based on the file size so that the arrays rarely
+        // have to grow. A vertex line is at least ~20 bytes and a face line ~20 bytes.
+        int estimate = Math.max(fileSizeBytes / 32, 64);
+        this.positions = new GrowableFloatArray(estimate);
+        this.texels = new GrowableFloatArray(estimate / 2);
+        this.normals = new GrowableFloatArray(estimate / 2);
+        this.faceIndices = new GrowableIntArray(estimate);
+        this.objects = new ArrayList<>();
+    }
+
+    public OBJData() {
+        this(0);
+    }
+
+    /**
+     * Get the number of position vertices that have been parsed
+     *
+     * @return The number of positions
+     * @since 1.0
+     */
+    public int getPositionCount() {
+        return positionComponents == 0 ? 0 : positions.size() / positionComponents;
+    }
+
+    /**
+     * Get the number of texel vertices that have been parsed
+     *
+     * @return The number of texels
+     * @since 1.0
+     */
+    public int getTexelCount() {
+        return texelComponents == 0 ? 0 : texels.size() / texelComponents;
+    }
+
+    /**
+     * Get the number of normal vertices that have been parsed
+     *
+     * @return The number of normals
+     * @since 1.0
+     */
+    public int getNormalCount() {
+        return normalComponents == 0 ? 0 : normals.size() / normalComponents;
+    }
+
+    /**
+     * Resolve the faces of an object into compact vertex arrays and an index buffer. Unique
+     * (position, texel, normal) index triples are found using the vertex index map so that shared
+     * vertices are only stored once. If every face corner is unique the geometry is returned
+     * without indices.
+     *
+     * @param object         The object to resolve
+     * @param vertexIndexMap Map used to find unique vertices (cleared before use, can be re-used
+     *                       between objects)
+     * @return The indexed geometry of the object
+     * @since 1.0
+     */
+    public IndexedGeometry resolveIndexed(OBJObjectData object, VertexIndexMap vertexIndexMap) {
+        final int numCorners = object.cornerCount;
+        final int[] corners = faceIndices.getData();
+        final int[] indices = new int[numCorners];
+
+        // The first face corner that references each unique vertex
+        final int[] uniqueCorners = new int[numCorners];
+        int numUnique = 0;
+
+        vertexIndexMap.clear();
+        for(int c = 0; c < numCorners; c++) {
+            int corner = (object.cornerStart + c) * INDICES_PER_CORNER;
+            int index = vertexIndexMap.putIfAbsent(corners[corner + CORNER_POSITION],
+                    corners[corner + CORNER_TEXEL], corners[corner + CORNER_NORMAL], numUnique);
+            if(index == numUnique) {
+                uniqueCorners[numUnique++] = corner;
+            }
+            indices[c] = index;
+        }
+
+        final int positionCount = getPositionCount();
+        final int texelCount = getTexelCount();
+        final int normalCount = getNormalCount();
+        float[] positionBuffer = new float[positionComponents * numUnique];
+        float[] texelBuffer = new float[texelComponents * numUnique];
+        float[] normalBuffer = new float[normalComponents * numUnique];
+        for(int v = 0; v < numUnique; v++) {
+            int corner = uniqueCorners[v];
+            copyVertex(positions.getData(), corners[corner + CORNER_POSITION], positionCount,
+                    positionComponents, positionBuffer, v * positionComponents);
+            copyVertex(texels.getData(), corners[corner + CORNER_TEXEL], texelCount,
+                    texelComponents, texelBuffer, v * texelComponents);
+            copyVertex(normals.getData(), corners[corner + CORNER_NORMAL], normalCount,
+                    normalComponents, normalBuffer, v * normalComponents);
+        }
+
+        return new IndexedGeometry(positionBuffer, texelBuffer, normalBuffer,
+                numUnique == numCorners ? null : indices, positionComponents, texelComponents,
+                normalComponents, object.verticesPerFace);
+    }
+
+    // Copy the components of a vertex to a buffer. Undefined or out of range indices leave the
+    // destination as zero.
+    private static void copyVertex(float[] source, int index, int count, int componentsPerVertex,
+                                   float[] destination, int destinationIndex) {
+        if(componentsPerVertex == 0 || index < 0 || index >= count) {
+            return;
+        }
+
+        System.arraycopy(source, index * componentsPerVertex, destination, destinationIndex,
+                componentsPerVertex);
+    }
+
+    /**
+     * Get the total number of face corners across all objects
+     *
+     * @return The number of face corners
+     * @since 1.0
+     */
+    public int getCornerCount() {
+        return faceIndices.size() / INDICES_PER_CORNER;
+    }
+}
@@ -4,33 +4,61 @@ import android.content.res.Resources;
 
 import com.crispin.crispinmobile.Crispin;
 import com.crispin.crispinmobile.Physics.BoundBox2D;
+import com.crispin.crispinmobile.Physics.BoundBox3D;
+import com.crispin.crispinmobile.Physics.BoundSphere;
 import com.crispin.crispinmobile.Physics.HitboxPolygon;
 import com.crispin.crispinmobile.Rendering.Data.RenderObjectData;
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
 import com.crispin.crispinmobile.Rendering.Models.ShadowMeshUtil;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.FileResourceReader;
 import com.crispin.crispinmobile.Utilities.Logger;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
  * Designed to read OBJ model files and produce a RenderObject that can be drawn on a
- * scene. OBJ models loaded with the class must have triangulated faces. It also doesn't support
- * multiple OBJ models within one file. The class is comprised of static only functions.
+ * scene. The file is tokenized at byte level by the OBJParser and each object in the file is
+ * resolved into its own mesh. Large files can be parsed and resolved on multiple threads by setting
+ * <code>MeshLoadProperties.parallel</code>. The class is comprised of static only functions.
  *
  * @author Christian Benner
  * @version %I%, %G%
  * @see Mesh
+ * @see OBJParser
  * @since 1.0
  */
 public class OBJModelLoader {
     // Tag used in logging output
     private static final String TAG = "OBJModelLoader";
 
+    /**
+     * Reads the raw resources that models are loaded from. Allows the loaders to be tested without
+     * an application context.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        byte[] readResource(int resourceId) throws IOException;
+    }
+
+    // The backend that reads the resources of the application
+    private static class ResourcesBackend implements Backend {
+        @Override
+        public byte[] readResource(int resourceId) throws IOException {
+            Resources resources = Crispin.getApplicationContext().getResources();
+            InputStream inputStream = resources.openRawResource(resourceId);
+            try {
+                return FileResourceReader.readBytes(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
     // Identifier for face data
     private static final byte FACE = 0x01;
 
@@ -130,6 +158,13 @@ public class OBJModelLoader {
     // One face data separator in the face data
     private static final int ONE_FACE_DATA_SEPARATOR = 1;
 
+    // Reads the model resources
+    private static volatile Backend backend = new ResourcesBackend();
+
+    // The largest error allowed when simplifying levels of detail, as a fraction of the bounding
+    // radius of the mesh
+    private static final float LOD_MAX_RELATIVE_ERROR = 0.05f;
+
     /**
      * Read an OBJ file from a resource ID
      *
@@ -144,14 +179,7 @@ public class OBJModelLoader {
             // Measure how long it takes to load load and read the model file
             long start = System.nanoTime();
 
-            Resources resources = Crispin.getApplicationContext().getResources();
-            InputStream inputStream;
-            inputStream = resources.openRawResource(resourceId);
-            inputStream.reset();
-
-            byte[] theFile = new byte[inputStream.available()];
-            inputStream.read(theFile);
-            Mesh ro = processObj(theFile);
+            Mesh ro = processObj(readResource(resourceId));
 
             // End of time measurement
             long end = System.nanoTime();
@@ -168,294 +196,290 @@ public class OBJModelLoader {
         return null;
     }
 
-    private static final int TYPE_INDEX = 0;
-    private static final String TYPE_VERTEX_POSITION = "v";
-    private static final String TYPE_VERTEX_NORMAL = "vn";
-    private static final String TYPE_VERTEX_TEXEL = "vt";
-    private static final String TYPE_COMMENT = "#";
-    private static final String TYPE_NEW_OBJECT = "o";
-    private static final String TYPE_SMOOTH_FACES_FLAG = "s";
-    private static final String TYPE_FACE = "f";
-    private static final String TYPE_DEFINE_MATERIAL_LIBRARY = "mtllib";
-    private static final String TYPE_USE_MATERIAL = "usemtl";
-    private static final int FACE_ELEMENT_POS_INDEX = 0;
-    private static final int FACE_ELEMENT_TEXEL_INDEX = 1;
-    private static final int FACE_ELEMENT_NORMAL_INDEX = 2;
-    private static final int UNDEFINED_INDEX = -1;
-
-    private static float[] getFloats(String[] split, int index) {
-        if (split.length - index <= 0) {
-            return new float[]{};
+    // Properties allow specific meshes and shadow meshes to be loaded. If a parallel parser is
+    // provided, the objects are resolved on its threads. If a material prefetcher is provided, its
+    // textures are uploaded before the meshes and the meshes are given their materials.
+    private static ArrayList<MeshData> process(OBJData data, MeshLoadProperties properties,
+                                               boolean loadAll, ParallelOBJParser parallelParser,
+                                               MaterialPrefetcher materialPrefetcher,
+                                               LoadTimings timings) {
+        long time = System.nanoTime();
+        ArrayList<PendingMeshData> pendingMeshes = build(data, properties, loadAll,
+                parallelParser);
+        timings.addSince(LoadTimings.BUILD, time);
+
+        if(materialPrefetcher != null) {
+            materialPrefetcher.await();
+            materialPrefetcher.upload();
         }
 
-        float[] floats = new float[split.length - index];
-        for (int i = index, n = 0; i < split.length; i++, n++) {
-            floats[n] = Float.parseFloat(split[i]);
+        time = System.nanoTime();
+        ArrayList<MeshData> meshes = new ArrayList<>(pendingMeshes.size());
+        for(int i = 0; i < pendingMeshes.size(); i++) {
+            meshes.add(pendingMeshes.get(i).upload());
         }
-        return floats;
+        timings.addSince(LoadTimings.MESH_UPLOAD, time);
+
+        if(materialPrefetcher != null) {
+            materialPrefetcher.applyMaterials(meshes);
+        }
+        return meshes;
     }
 
-    public static FaceIndexData parseFaceElements(String[] split, int index) {
-        FaceIndexData face = new FaceIndexData();
-        for (int i = index, n = 0; i < split.length; i++, n++) {
-            String[] vertexElements = split[i].split("/");
-            if(i == index) {
-                face.positionIndices = new int[split.length - index];
-                face.texelIndices = new int[split.length - index];
-                face.normalIndices = new int[split.length - index];
+    /**
+     * Build the vertex data, hitboxes and bound boxes of the objects in an OBJ file without
+     * uploading anything to graphics memory. This does not require OpenGL so can be done on any
+     * thread.
+     *
+     * @param data           The parsed OBJ data
+     * @param properties     Properties of the meshes to load, or <code>null</code> to load every
+     *                       mesh
+     * @param loadAll        If meshes that are not in the properties should be loaded
+     * @param parallelParser Parser to resolve the objects on, or <code>null</code> to resolve them
+     *                       on the calling thread
+     * @return The mesh data of each object and the vertex data to upload
+     * @since 1.0
+     */
+    static ArrayList<PendingMeshData> build(OBJData data, MeshLoadProperties properties,
+                                            boolean loadAll, ParallelOBJParser parallelParser) {
+        boolean propertiesProvided = properties != null;
+        boolean createBoundBox = propertiesProvided && properties.createBoundBox;
+        boolean compactVertices = propertiesProvided && properties.compactVertices;
+        int lodLevels = propertiesProvided ? properties.lodLevels : 0;
+        boolean keepVertexData = propertiesProvided && properties.keepVertexData;
+
+        // Find the objects to load
+        ArrayList<OBJObjectData> objects = new ArrayList<>(data.objects.size());
+        ArrayList<MeshLoadProperty> objectProperties = new ArrayList<>(data.objects.size());
+        for(int o = 0; o < data.objects.size(); o++) {
+            OBJObjectData object = data.objects.get(o);
+            MeshLoadProperty meshLoadProperty = getLoadProperty(properties, object.name, loadAll);
+            if(meshLoadProperty != null && object.cornerCount != 0) {
+                objects.add(object);
+                objectProperties.add(meshLoadProperty);
             }
+        }
 
-            if (FACE_ELEMENT_POS_INDEX < vertexElements.length && !vertexElements[FACE_ELEMENT_POS_INDEX].isEmpty()) {
-                face.positionIndices[n] = Integer.parseInt(vertexElements[FACE_ELEMENT_POS_INDEX]);
-            }
-            if (FACE_ELEMENT_TEXEL_INDEX < vertexElements.length && !vertexElements[FACE_ELEMENT_TEXEL_INDEX].isEmpty()) {
-                face.texelIndices[n] = Integer.parseInt(vertexElements[FACE_ELEMENT_TEXEL_INDEX]);
-            }
-            if (FACE_ELEMENT_NORMAL_INDEX < vertexElements.length && !vertexElements[FACE_ELEMENT_NORMAL_INDEX].isEmpty()) {
-                face.normalIndices[n] = Integer.parseInt(vertexElements[FACE_ELEMENT_NORMAL_INDEX]);
-            }
+        // Resolve the face corners into unique vertices and indices. Without a parallel parser
+        // each object is resolved as it is processed, re-using the vertex index map.
+        IndexedGeometry[] geometries = parallelParser == null ? null :
+                parallelParser.resolveIndexed(data, objects);
+        VertexIndexMap vertexIndexMap = parallelParser == null ?
+                new VertexIndexMap(data.getPositionCount()) : null;
+
+        // Process objects
+        ArrayList<PendingMeshData> meshes = new ArrayList<>(objects.size());
+        for(int o = 0; o < objects.size(); o++) {
+            OBJObjectData object = objects.get(o);
+            IndexedGeometry geometry = geometries == null ?
+                    data.resolveIndexed(object, vertexIndexMap) : geometries[o];
+            meshes.add(buildObject(data, object, geometry, objectProperties.get(o), loadAll,
+                    createBoundBox, compactVertices, lodLevels, keepVertexData));
         }
-        return face;
-    }
 
-    private static ArrayList<MeshData> process(BufferedReader reader, boolean loadAll) throws IOException {
-        return process(reader, null, loadAll);
+        return meshes;
     }
 
-    // Properties allow specific meshes and shadow meshes to be loaded
-    private static ArrayList<MeshData> process(BufferedReader reader, MeshLoadProperties properties, boolean loadAll) throws IOException {
-        boolean propertiesProvided = properties != null;
-
-        class ObjectData {
-            String name;
-            String materialLibrary;
-            String materialName;
-            ArrayList<FaceIndexData> faceIndices = new ArrayList<>();
+    // Build the vertex data, hitbox and bound box of a resolved object
+    private static PendingMeshData buildObject(OBJData data, OBJObjectData object,
+                                               IndexedGeometry geometry,
+                                               MeshLoadProperty meshLoadProperty, boolean loadAll,
+                                               boolean createBoundBox, boolean compactVertices,
+                                               int lodLevels, boolean keepVertexData) {
+        final int positionComponentsPerVertex = data.positionComponents;
+        final int texelComponentsPerVertex = data.texelComponents;
+        final int normalComponentsPerVertex = data.normalComponents;
+
+        float[] positionBuffer = geometry.positions;
+
+        // Set the render method depending on how many vertices make up a face (faces with more
+        // than three vertices have already been triangulated by the parser)
+        Mesh.RenderMethod renderMethod = Mesh.RenderMethod.TRIANGLES;
+        switch (object.verticesPerFace) {
+            case ONE_FACE_DATA_ELEMENT:
+                renderMethod = Mesh.RenderMethod.POINTS;
+                break;
+            case TWO_FACE_DATA_ELEMENTS:
+                renderMethod = Mesh.RenderMethod.LINES;
+                break;
+            case THREE_FACE_DATA_ELEMENTS:
+                renderMethod = Mesh.RenderMethod.TRIANGLES;
+                break;
+            default:
+                Logger.error(TAG, "Unsupported number of face data per vertex: " + object.verticesPerFace);
+                break;
         }
 
-        ArrayList<float[]> positionData = new ArrayList<>();
-        ArrayList<float[]> texelData = new ArrayList<>();
-        ArrayList<float[]> normalData = new ArrayList<>();
-        ArrayList<ObjectData> objectData = new ArrayList<>();
-        ObjectData temp = null;
-        int positionComponentsPerVertex = 0;
-        int texelComponentsPerVertex = 0;
-        int normalComponentsPerVertex = 0;
-        int verticesPerFace = 0;
-        String materialLibrary = "";
-
-        while (reader.ready()) {
-            String[] split = reader.readLine().split(" ");
-            switch (split[TYPE_INDEX]) {
-                case TYPE_NEW_OBJECT:
-                    temp = new ObjectData();
-                    objectData.add(temp);
-
-                    if(split.length > 1) {
-                        temp.name = split[1];
-                        Logger.debug(TAG, "Constructing new model from OBJ format '" + temp.name + "'");
-                    } else {
-                        Logger.debug(TAG, "Constructing new model from OBJ format");
-                    }
-                    break;
-                case TYPE_VERTEX_POSITION:
-                    float[] vertexPosData = getFloats(split, TYPE_INDEX + 1);
-                    positionComponentsPerVertex = vertexPosData.length;
-                    positionData.add(vertexPosData);
-                    break;
-                case TYPE_VERTEX_TEXEL:
-                    float[] vertexTexelData = getFloats(split, TYPE_INDEX + 1);
-                    texelComponentsPerVertex = vertexTexelData.length;
-                    texelData.add(vertexTexelData);
-                    break;
-                case TYPE_VERTEX_NORMAL:
-                    float[] vertexNormalData = getFloats(split, TYPE_INDEX + 1);
-                    normalComponentsPerVertex = vertexNormalData.length;
-                    normalData.add(vertexNormalData);
-                    break;
-                case TYPE_FACE:
-                    if (temp == null) {
-                        temp = new ObjectData();
-                        objectData.add(temp);
-                    }
+        MeshData meshData = new MeshData();
+        meshData.name = object.name;
+        meshData.materialName = object.materialName;
+        meshData.materialLibrary = object.materialLibrary;
+
+        VertexData vertexData = null;
+        VertexData[] lodVertexData = null;
+        if(meshLoadProperty.loadMesh || loadAll) {
+            meshData.boundingRadius = calculateBoundingRadius(geometry.positions,
+                    positionComponentsPerVertex);
+            meshData.boundBox3D = createBoundBox3D(geometry.positions,
+                    positionComponentsPerVertex);
+            meshData.boundSphere = createBoundSphere(geometry.positions,
+                    positionComponentsPerVertex);
+
+            // Simplify the levels of detail from the original geometry, then optimise each
+            if(lodLevels > 0 && geometry.indices != null &&
+                    geometry.verticesPerFace == THREE_FACE_DATA_ELEMENTS) {
+                lodVertexData = buildLODs(object.name, geometry, lodLevels,
+                        meshData.boundingRadius * LOD_MAX_RELATIVE_ERROR);
+            }
 
-                    FaceIndexData faceIndexData = parseFaceElements(split, TYPE_INDEX + 1);
-                    verticesPerFace = faceIndexData.positionIndices.length;
-                    temp.faceIndices.add(faceIndexData);
-                    break;
-                case TYPE_DEFINE_MATERIAL_LIBRARY:
-                    materialLibrary = split[1];
-                    break;
-                case TYPE_USE_MATERIAL:
-                    temp.materialName = split[1];
-                    temp.materialLibrary = materialLibrary;
-                    break;
-                // Ignore
-                case TYPE_COMMENT:
-                case TYPE_SMOOTH_FACES_FLAG:
-                    break;
+            // Reorder the triangles and vertices for the vertex cache and vertex fetch
+            geometry = MeshOptimiser.optimise(object.name, geometry,
+                    MeshOptimiser.DEFAULT_CACHE_SIZE);
+            positionBuffer = geometry.positions;
+
+            vertexData = new VertexData(positionBuffer, geometry.texels, geometry.normals,
+                    geometry.indices, positionComponentsPerVertex, texelComponentsPerVertex,
+                    normalComponentsPerVertex);
+            logBufferReduction(object, vertexData);
+            if(keepVertexData) {
+                meshData.vertexData = vertexData;
             }
         }
 
-        // Process objects
-        ArrayList<MeshData> meshes = new ArrayList<>();
-        for(int o = 0; o < objectData.size(); o++) {
-            ObjectData object = objectData.get(o);
+        float[] shadowVertices = null;
+        if(meshLoadProperty.loadShadowMesh || meshLoadProperty.createHitbox || meshLoadProperty.createBoundbox || createBoundBox) {
+            // Shadow meshes and hitboxes are built from a list of faces so require the position
+            // data of every face corner
+            if(meshLoadProperty.loadShadowMesh || meshLoadProperty.createHitbox) {
+                positionBuffer = geometry.getExpandedPositions();
+            }
+            int positionBufferSize = positionBuffer.length;
+
+            // If there is a Z component, we need to create a new buffer that contains only x
+            // and y components
+            if(positionComponentsPerVertex == 3) {
+                float[] xyPositionBuffer = new float[(positionBufferSize / 3) * 2];
+                for(int i = 0, xyI = 0; i < positionBufferSize; i += 3, xyI += 2) {
+                    xyPositionBuffer[xyI] = positionBuffer[i];
+                    xyPositionBuffer[xyI + 1] = positionBuffer[i + 1];
+                    // do not copy z component
+                }
 
-            MeshLoadProperty meshLoadProperty;
+                if(meshLoadProperty.loadShadowMesh) {
+                    shadowVertices = ShadowMeshUtil.createShadowVertices2D(xyPositionBuffer);
+                }
 
-            // If properties have been provided and the object name is not in the property map,
-            // we don't want to load it
-            if(propertiesProvided) {
-                if(properties.containsKey(object.name)) {
-                    meshLoadProperty = properties.get(object.name);
+                if(meshLoadProperty.createHitbox) {
+                    meshData.hitboxPolygon = new HitboxPolygon(xyPositionBuffer);
+                }
 
-                    // If the property specifies not to load either mesh, skip
-                    if(!meshLoadProperty.loadMesh && !meshLoadProperty.loadShadowMesh) {
-                        continue;
-                    }
-                } else if(loadAll) {
-                    // If the model property was not found but load all is specified, then load mesh
-                    // only (as default)
-                    meshLoadProperty = new MeshLoadProperty();
-                    meshLoadProperty.loadMesh = true;
-                    meshLoadProperty.loadShadowMesh = false;
-                } else {
-                    continue;
+                if(meshLoadProperty.createBoundbox || createBoundBox) {
+                    // todo: at the moment this is only 2D bound box for x, y
+                    meshData.boundBox2D = createBoundBox2D(positionBuffer, positionComponentsPerVertex);
                 }
             } else {
-                // No mesh properties, by default only load the mesh not shadow mesh
-                meshLoadProperty = new MeshLoadProperty();
-                meshLoadProperty.loadMesh = true;
-                meshLoadProperty.loadShadowMesh = false;
-            }
-
-            if(object.faceIndices.size() == 0) {
-                continue;
-            }
-
-            int numFaces = object.faceIndices.size();
-            int numVerticesPerFace = verticesPerFace;
-            int positionBufferSize = positionComponentsPerVertex * numVerticesPerFace * numFaces;
-            int texelBufferSize = texelComponentsPerVertex * numVerticesPerFace * numFaces;
-            int normalBufferSize = normalComponentsPerVertex * numVerticesPerFace * numFaces;
-
-            float[] positionBuffer = new float[positionBufferSize];
-            float[] texelBuffer = new float[texelBufferSize];
-            float[] normalBuffer = new float[normalBufferSize];
-
-            // Process each face on the object
-            for(int f = 0; f < object.faceIndices.size(); f++) {
-                FaceIndexData face = object.faceIndices.get(f);
-                int positionBufferIndexFaceStart = (f * numVerticesPerFace * positionComponentsPerVertex);
-                int texelBufferIndexFaceStart = (f * numVerticesPerFace * texelComponentsPerVertex);
-                int normalBufferIndexFaceStart = (f * numVerticesPerFace * normalComponentsPerVertex);
-
-                // Resolve face position data and store in buffer
-                for(int i = 0; i < face.positionIndices.length; i++) {
-                    int positionBufferVertexIndexStart = (i * positionComponentsPerVertex);
-                    float[] vertex = positionData.get(face.positionIndices[i] - 1);
-                    for(int n = 0; n < vertex.length; n++) {
-                        positionBuffer[positionBufferIndexFaceStart + positionBufferVertexIndexStart + n] = vertex[n];
-                    }
+                if(meshLoadProperty.loadShadowMesh) {
+                    shadowVertices = ShadowMeshUtil.createShadowVertices2D(positionBuffer);
                 }
 
-                // Resolve face texel data and store in buffer
-                if(texelComponentsPerVertex > 0) {
-                    for (int i = 0; i < face.texelIndices.length; i++) {
-                        int texelBufferVertexIndexStart = (i * texelComponentsPerVertex);
-                        float[] texel = texelData.get(face.texelIndices[i] - 1);
-                        for (int n = 0; n < texel.length; n++) {
-                            texelBuffer[texelBufferIndexFaceStart + texelBufferVertexIndexStart + n] = texel[n];
-                        }
-                    }
+                if(meshLoadProperty.createHitbox) {
+                    meshData.hitboxPolygon = new HitboxPolygon(positionBuffer);
                 }
 
-                // Resolve face normal data and store in buffer
-                if(normalComponentsPerVertex > 0) {
-                    for(int i = 0; i < face.normalIndices.length; i++) {
-                        int normalBufferVertexIndexStart = (i * normalComponentsPerVertex);
-                        float[] normal = normalData.get(face.normalIndices[i] - 1);
-                        for(int n = 0; n < normal.length; n++) {
-                            normalBuffer[normalBufferIndexFaceStart + normalBufferVertexIndexStart + n] = normal[n];
-                        }
-                    }
+                if(meshLoadProperty.createBoundbox || createBoundBox) {
+                    meshData.boundBox2D = createBoundBox2D(positionBuffer, positionComponentsPerVertex);
                 }
             }
+        }
 
-            // Set the render method depending on how much face data appears in a line
-            Mesh.RenderMethod renderMethod = Mesh.RenderMethod.TRIANGLES;;
-            switch (numVerticesPerFace) {
-                case ONE_FACE_DATA_ELEMENT:
-                    renderMethod = Mesh.RenderMethod.POINTS;
-                    break;
-                case TWO_FACE_DATA_ELEMENTS:
-                    renderMethod = Mesh.RenderMethod.LINES;
-                    break;
-                case THREE_FACE_DATA_ELEMENTS:
-                    renderMethod = Mesh.RenderMethod.TRIANGLES;
-                    break;
-                case FOUR_FACE_DATA_ELEMENTS:
-                    // todo: resolve this by supporting GLES30 (which limits the amount of devices supported) or by resolving QUADS into 2 triangles)
-                    Logger.error(TAG, "QUADS are not supported as they require GLES30");
-                    break;
-                default:
-                    Logger.error(TAG, "Unsupported number of face data per vertex: " + numVerticesPerFace);
-                    break;
-            }
-
-            MeshData meshData = new MeshData();
-            meshData.name = object.name;
-            meshData.materialName = object.materialName;
-            meshData.materialLibrary = object.materialLibrary;
+        VertexData shadowVertexData = shadowVertices == null ? null :
+                new VertexData(shadowVertices, null, null, null, 3, 0, 0);
+        return new PendingMeshData(meshData, vertexData, renderMethod, shadowVertexData,
+                compactVertices, lodVertexData);
+    }
 
-            if(meshLoadProperty.loadMesh || loadAll) {
-                meshData.mesh = new Mesh(positionBuffer, texelBuffer, normalBuffer, renderMethod,
-                        positionComponentsPerVertex, texelComponentsPerVertex, normalComponentsPerVertex);
+    /**
+     * Get the load property of a mesh. If properties have been provided and the mesh name is not in
+     * the property map, the mesh is only loaded if load all is specified.
+     *
+     * @param properties The mesh load properties, or <code>null</code> to load every mesh
+     * @param name       The name of the mesh
+     * @param loadAll    If meshes that are not in the property map should be loaded
+     * @return The load property of the mesh, or <code>null</code> if the mesh should not be loaded
+     * @since 1.0
+     */
+    static MeshLoadProperty getLoadProperty(MeshLoadProperties properties, String name,
+                                            boolean loadAll) {
+        MeshLoadProperty meshLoadProperty;
+        if(properties != null) {
+            if(properties.containsKey(name)) {
+                meshLoadProperty = properties.get(name);
+
+                // If the property specifies not to load either mesh, skip
+                if(!meshLoadProperty.loadMesh && !meshLoadProperty.loadShadowMesh) {
+                    return null;
+                }
+            } else if(loadAll) {
+                // If the model property was not found but load all is specified, then load mesh
+                // only (as default)
+                meshLoadProperty = new MeshLoadProperty();
+                meshLoadProperty.loadMesh = true;
+                meshLoadProperty.loadShadowMesh = false;
+            } else {
+                return null;
             }
+        } else {
+            // No mesh properties, by default only load the mesh not shadow mesh
+            meshLoadProperty = new MeshLoadProperty();
+            meshLoadProperty.loadMesh = true;
+            meshLoadProperty.loadShadowMesh = false;
+        }
+        return meshLoadProperty;
+    }
 
-            if(meshLoadProperty.loadShadowMesh || meshLoadProperty.createHitbox || meshLoadProperty.createBoundbox || properties.createBoundBox) {
-                // If there is a Z component, we need to create a new buffer that contains only x
-                // and y components
-                if(positionComponentsPerVertex == 3) {
-                    float[] xyPositionBuffer = new float[(positionBufferSize / 3) * 2];
-                    for(int i = 0, xyI = 0; i < positionBufferSize; i += 3, xyI += 2) {
-                        xyPositionBuffer[xyI] = positionBuffer[i];
-                        xyPositionBuffer[xyI + 1] = positionBuffer[i + 1];
-                        // do not copy z component
-                    }
-
-                    if(meshLoadProperty.loadShadowMesh) {
-                        meshData.shadowMesh = ShadowMeshUtil.createShadowMesh2D(xyPositionBuffer);
-                    }
-
-                    if(meshLoadProperty.createHitbox) {
-                        meshData.hitboxPolygon = new HitboxPolygon(xyPositionBuffer);
-                    }
-
-                    if(meshLoadProperty.createBoundbox || properties.createBoundBox) {
-                        // todo: at the moment this is only 2D bound box for x, y
-                        meshData.boundBox2D = createBoundBox2D(positionBuffer, positionComponentsPerVertex);
-                    }
-                } else {
-                    if(meshLoadProperty.loadShadowMesh) {
-                        meshData.shadowMesh = ShadowMeshUtil.createShadowMesh2D(positionBuffer);
-                    }
+    // Generate the vertex data of the levels of detail of indexed triangle geometry
+    private static VertexData[] buildLODs(String name, IndexedGeometry geometry, int levels,
+                                          float maxError) {
+        IndexedGeometry[] lods = MeshSimplifier.generateLODs(geometry, levels,
+                MeshSimplifier.DEFAULT_LOD_RATIO, maxError);
+        VertexData[] lodVertexData = new VertexData[lods.length];
+        StringBuilder triangleCounts = new StringBuilder();
+        for(int i = 0; i < lods.length; i++) {
+            IndexedGeometry lod = MeshOptimiser.optimise(lods[i]);
+            lodVertexData[i] = new VertexData(lod.positions, lod.texels, lod.normals, lod.indices,
+                    lod.positionComponents, lod.texelComponents, lod.normalComponents);
+            triangleCounts.append(" -> ").append(lod.indices.length / THREE_FACE_DATA_ELEMENTS);
+        }
 
-                    if(meshLoadProperty.createHitbox) {
-                        meshData.hitboxPolygon = new HitboxPolygon(positionBuffer);
-                    }
+        Logger.debug(TAG, "Mesh '" + name + "' levels of detail: " +
+                geometry.indices.length / THREE_FACE_DATA_ELEMENTS + triangleCounts +
+                " triangles");
+        return lodVertexData;
+    }
 
-                    if(meshLoadProperty.createBoundbox || properties.createBoundBox) {
-                        meshData.boundBox2D = createBoundBox2D(positionBuffer, positionComponentsPerVertex);
-                    }
-                }
+    // The distance of the furthest vertex from the origin of the mesh
+    private static float calculateBoundingRadius(float[] positions, int elementsPerPosition) {
+        float radiusSq = 0.0f;
+        for(int i = 0; i + elementsPerPosition <= positions.length; i += elementsPerPosition) {
+            float lengthSq = 0.0f;
+            for(int c = 0; c < elementsPerPosition; c++) {
+                lengthSq += positions[i + c] * positions[i + c];
             }
-
-            meshes.add(meshData);
+            radiusSq = Math.max(radiusSq, lengthSq);
         }
+        return (float)Math.sqrt(radiusSq);
+    }
 
-        return meshes;
+    // Log how much smaller the vertex buffer is compared to storing every face corner as its own
+    // vertex
+    private static void logBufferReduction(OBJObjectData object, VertexData vertexData) {
+        final int expandedBytes = object.cornerCount * vertexData.getStride();
+        final int indexedBytes = vertexData.getSizeBytes();
+        final int reduction = expandedBytes == 0 ? 0 :
+                (int)(100L * (expandedBytes - indexedBytes) / expandedBytes);
+        Logger.debug(TAG, "Mesh '" + object.name + "': " + object.cornerCount + " face vertices, " +
+                vertexData.vertexCount + " unique. Buffer size " + expandedBytes + " bytes -> " +
+                indexedBytes + " bytes (" + reduction + "% smaller)");
     }
 
     /**
@@ -486,55 +510,36 @@ public class OBJModelLoader {
         return new BoundBox2D(lx, ly, hx - lx, hy - ly);
     }
 
-    /* todo: implement 3D bound box with a 3D HitboxCube
-    public static HitboxRectangle createBoundBox3D(float[] positionBuffer, int positionComponentsPerVertex) {
-        // Iterate through the position buffer and discover what the lowest and highest values are
-        // for the object.
-        float lx = 0f;
-        float hx = 0f;
-        float ly = 0f;
-        float hy = 0f;
-        float lz = 0f;
-        float hz = 0f;
-
-        for(int i = 0; i < positionBuffer.length; i += positionComponentsPerVertex) {
-            float x = positionBuffer[i];
-            float y = positionBuffer[i + 1];
-            float z = positionComponentsPerVertex >= 3 ? positionBuffer[i + 2] : 0f;
-
-            if(i == 0) {
-                lx = x;
-                hx = x;
-                ly = y;
-                hy = y;
-                lz = z;
-                hz = z;
-                continue;
-            }
-
-            if(x < lx) {
-                lx = x;
-            }
-            if(x > hx) {
-                hx = x;
-            }
-            if(y < ly) {
-                ly = y;
-            }
-            if(y > hy) {
-                hy = y;
-            }
-            if(z < lz) {
-                lz = z;
-            }
-            if(z > hz) {
-                hz = z;
-            }
-        }
+    /**
+     * Create a 3D bound box for the given position buffer
+     *
+     * @param positionBuffer              Position data
+     * @param positionComponentsPerVertex Number of components per vertex i.e. 3 for xyz
+     * @return The smallest axis aligned box containing the positions
+     * @since 1.0
+     */
+    public static BoundBox3D createBoundBox3D(float[] positionBuffer,
+                                              int positionComponentsPerVertex) {
+        return BoundBox3D.create(positionBuffer, 0, positionComponentsPerVertex,
+                positionComponentsPerVertex,
+                positionBuffer.length / positionComponentsPerVertex);
+    }
 
-        return new HitboxRectangle(lx, ly, hx - lx, hy - ly);
+    /**
+     * Create a bounding sphere for the given position buffer
+     *
+     * @param positionBuffer              Position data
+     * @param positionComponentsPerVertex Number of components per vertex i.e. 3 for xyz
+     * @return A sphere containing the positions
+     * @see BoundSphere#create(float[], int, int, int, int)
+     * @since 1.0
+     */
+    public static BoundSphere createBoundSphere(float[] positionBuffer,
+                                                int positionComponentsPerVertex) {
+        return BoundSphere.create(positionBuffer, 0, positionComponentsPerVertex,
+                positionComponentsPerVertex,
+                positionBuffer.length / positionComponentsPerVertex);
     }
-    */
 
     /**
      * Read an OBJ file from a resource ID
@@ -547,22 +552,46 @@ public class OBJModelLoader {
     public static ArrayList<MeshData> read(int resourceId, MeshLoadProperties meshLoadProperties) {
         // Attempt to open and read an OBJ file
         try {
-            // Measure how long it takes to load load and read the model file
-            long start = System.nanoTime();
+            if(meshLoadProperties != null && meshLoadProperties.streaming) {
+                Resources resources = Crispin.getApplicationContext().getResources();
+                InputStream inputStream = resources.openRawResource(resourceId);
+                try {
+                    return read(inputStream, meshLoadProperties);
+                } finally {
+                    inputStream.close();
+                }
+            }
 
-            Resources resources = Crispin.getApplicationContext().getResources();
-            InputStream inputStream;
-            inputStream = resources.openRawResource(resourceId);
-            inputStream.reset();
+            // Measure how long each stage of loading the model takes
+            LoadTimings timings = new LoadTimings();
+            long time = System.nanoTime();
 
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-            ArrayList<MeshData> meshes = process(reader, meshLoadProperties, meshLoadProperties.loadAll);
+            byte[] bytes = readResource(resourceId);
+            time = timings.addSince(LoadTimings.READ, time);
 
-            // End of time measurement
-            long end = System.nanoTime();
+            // Start loading the materials so that they load whilst the geometry is parsed
+            MaterialPrefetcher materialPrefetcher = null;
+            if(meshLoadProperties != null && meshLoadProperties.loadMaterials) {
+                materialPrefetcher = new MaterialPrefetcher(timings);
+                materialPrefetcher.prefetch(OBJParser.findMaterialLibrary(bytes));
+                time = timings.addSince(LoadTimings.MATERIAL_LIBRARY, time);
+            }
+
+            boolean parallel = meshLoadProperties != null && meshLoadProperties.parallel;
+            ParallelOBJParser parallelParser = parallel ? ParallelOBJParser.getDefault() : null;
+            OBJData data = parallel ? parallelParser.parse(bytes) : OBJParser.parse(bytes);
+            timings.addSince(LoadTimings.PARSE, time);
+            if(materialPrefetcher != null) {
+                materialPrefetcher.prefetch(data);
+            }
+
+            boolean loadAll = meshLoadProperties != null && meshLoadProperties.loadAll;
+            ArrayList<MeshData> meshes = process(data, meshLoadProperties, loadAll,
+                    parallelParser, materialPrefetcher, timings);
 
             // Log time taken to load the OBJ model
-            Logger.debug(TAG, "Model Loaded in: " + ((end - start) / NANOSECONDS_TO_MILLISECONDS_DIVIDE) + "ms");
+            timings.finish();
+            Logger.debug(TAG, "Model " + resourceId + " loaded in " + timings);
 
             return meshes;
         } catch (Exception e) {
@@ -572,6 +601,88 @@ public class OBJModelLoader {
         return null;
     }
 
+
+    /**
+     * Read an OBJ file from a stream without reading the whole file into memory. The file is parsed
+     * in fixed size chunks by the StreamingOBJParser and each object is built and uploaded as soon
+     * as it has been parsed, so only the vertices of the file and the faces of one object are held
+     * in memory at a time. Must be called on the GL thread.
+     *
+     * @param inputStream        The stream containing the OBJ file (not closed)
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @return Array of mesh data containing name, material and mesh
+     * @throws IOException If the stream could not be read
+     * @see StreamingOBJParser
+     * @since 1.0
+     */
+    public static ArrayList<MeshData> read(InputStream inputStream,
+                                           final MeshLoadProperties meshLoadProperties)
+            throws IOException {
+        long start = System.nanoTime();
+        final boolean loadAll = meshLoadProperties != null && meshLoadProperties.loadAll;
+        final boolean createBoundBox = meshLoadProperties != null &&
+                meshLoadProperties.createBoundBox;
+        final boolean compactVertices = meshLoadProperties != null &&
+                meshLoadProperties.compactVertices;
+        final int lodLevels = meshLoadProperties == null ? 0 : meshLoadProperties.lodLevels;
+        final boolean keepVertexData = meshLoadProperties != null &&
+                meshLoadProperties.keepVertexData;
+        final ArrayList<MeshData> meshes = new ArrayList<>();
+        final MaterialPrefetcher materialPrefetcher = meshLoadProperties != null &&
+                meshLoadProperties.loadMaterials ? new MaterialPrefetcher(new LoadTimings()) :
+                null;
+        StreamingOBJParser.parse(inputStream, (data, object) -> {
+            // The material libraries load whilst the rest of the file is streamed
+            if(materialPrefetcher != null) {
+                materialPrefetcher.prefetch(object.materialLibrary);
+            }
+
+            MeshLoadProperty meshLoadProperty = getLoadProperty(meshLoadProperties, object.name,
+                    loadAll);
+            if(meshLoadProperty != null) {
+                IndexedGeometry geometry = data.resolveIndexed(object,
+                        new VertexIndexMap(object.cornerCount));
+                meshes.add(buildObject(data, object, geometry, meshLoadProperty, loadAll,
+                        createBoundBox, compactVertices, lodLevels, keepVertexData).upload());
+            }
+        });
+
+        if(materialPrefetcher != null) {
+            materialPrefetcher.await();
+            materialPrefetcher.upload();
+            materialPrefetcher.applyMaterials(meshes);
+        }
+
+        long end = System.nanoTime();
+        Logger.debug(TAG, "Model Streamed in: " + ((end - start) /
+                NANOSECONDS_TO_MILLISECONDS_DIVIDE) + "ms");
+        return meshes;
+    }
+
+    /**
+     * Read all of the bytes of a raw resource
+     *
+     * @param resourceId The raw resource ID
+     * @return The contents of the resource
+     * @throws IOException If the resource could not be read
+     * @since 1.0
+     */
+    static byte[] readResource(int resourceId) throws IOException {
+        return backend.readResource(resourceId);
+    }
+
+    /**
+     * Set the backend that reads the model resources. Intended for unit tests that run without an
+     * application context.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        OBJModelLoader.backend = backend;
+    }
+
     public static HashMap<String, MeshData> read(int resourceId) {
         return readToMap(resourceId, null);
     }
@@ -598,24 +709,6 @@ public class OBJModelLoader {
         return readToMap(resourceId, null);
     }
 
-    private static boolean isNumericChar(byte c) {
-        return (c >= ASCII_0 && c <= ASCII_9) || c == ASCII_POINT || c == ASCII_MINUS;
-    }
-
-    private static int findFloatEndIndex(byte[] bytes, int startIndex) {
-        // Find the end index of the number
-        for (int n = startIndex; n < bytes.length; n++) {
-            if (!isNumericChar(bytes[n])) {
-                return n;
-            }
-        }
-        return bytes.length - 1;
-    }
-
-    private static float indexRangeToFloat(byte[] bytes, int startIndex, int endIndex) {
-        return Float.parseFloat(new String(bytes, startIndex, endIndex - startIndex));
-    }
-
     /**
      * Process the OBJ model
      *
@@ -0,0 +1,25 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+/**
+ * Describes a single object ('o' block) within parsed OBJ data. The face data of the object is not
+ * copied, instead the object references a range of face corners in the shared face index array of
+ * the OBJData that it belongs to.
+ *
+ * @see OBJData
+ * @see OBJParser
+ * @since 1.0
+ */
+public class OBJObjectData {
+    public String name;
+    public String materialLibrary;
+    public String materialName;
+
+    // Index of the first face corner of the object in OBJData.faceIndices (in corners, not ints)
+    public int cornerStart;
+
+    // Number of face corners that belong to the object
+    public int cornerCount;
+
+    // Number of vertices per face after triangulation (1 for points, 2 for lines, 3 for triangles)
+    public int verticesPerFace;
+}
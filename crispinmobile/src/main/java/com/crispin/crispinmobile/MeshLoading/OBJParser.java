@@ -0,0 +1,713 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Utilities.GrowableFloatArray;
+import com.crispin.crispinmobile.Utilities.GrowableIntArray;
+
+import java.nio.charset.Charset;
+
+/**
+ * OBJParser is a byte level tokenizer for the OBJ model format. It scans the raw bytes of a file
+ * once and parses floats and face indices in place (without creating strings or splitting lines)
+ * straight into primitive arrays. The only objects created whilst parsing are the object, material
+ * library and material names.
+ *
+ * Faces with more than three vertices are triangulated as a fan so quads and convex polygons can be
+ * loaded. Negative (relative) face indices are resolved at parse time.
+ *
+ * The parser does not depend on the Android framework or OpenGL so it can be used off the GL
+ * thread and in unit tests.
+ *
+ * Large files can be split into chunks of complete lines and parsed on multiple threads by the
+ * ParallelOBJParser.
+ *
+ * @see OBJData
+ * @see OBJModelLoader
+ * @see ParallelOBJParser
+ * @since 1.0
+ */
+public class OBJParser {
+    // Value of a face index that was not present in the file (e.g. texel index in 'f 1//1')
+    public static final int UNDEFINED_INDEX = -1;
+
+    // The maximum number of components stored per vertex attribute (e.g. x, y, z, w)
+    private static final int MAX_VERTEX_COMPONENTS = 4;
+
+    // The maximum number of significant digits that are accumulated into the mantissa of a float.
+    // Any more digits cannot be represented by a float anyway.
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+
+    // Limit the exponent that is parsed so that it cannot overflow an integer
+    private static final int MAX_EXPONENT = 1000;
+
+    // Exact double representations of powers of ten
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+            1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // ASCII value of hash-tag character (this appears before comments)
+    private static final byte ASCII_HASHTAG = 0x23;
+
+    // ASCII value of the 'f' character
+    private static final byte ASCII_F = 0x66;
+
+    // ASCII value of the 'v' character
+    private static final byte ASCII_V = 0x76;
+
+    // ASCII value of the 't' character
+    private static final byte ASCII_T = 0x74;
+
+    // ASCII value of the 'n' character
+    private static final byte ASCII_N = 0x6E;
+
+    // ASCII value of the 'o' character
+    private static final byte ASCII_O = 0x6F;
+
+    // ASCII value of the 'm' character
+    private static final byte ASCII_M = 0x6D;
+
+    // ASCII value of the 'u' character
+    private static final byte ASCII_U = 0x75;
+
+    // ASCII value of the 'e' character
+    private static final byte ASCII_LOWER_E = 0x65;
+
+    // ASCII value of the 'E' character
+    private static final byte ASCII_UPPER_E = 0x45;
+
+    // ASCII value of the space character
+    private static final byte ASCII_SPACE = 0x20;
+
+    // ASCII value of the tab character
+    private static final byte ASCII_TAB = 0x09;
+
+    // ASCII value of the '0' character
+    private static final byte ASCII_0 = 0x30;
+
+    // ASCII value of the '9' character
+    private static final byte ASCII_9 = 0x39;
+
+    // ASCII value of the '.' character
+    private static final byte ASCII_POINT = 0x2E;
+
+    // ASCII value of the '-' character
+    private static final byte ASCII_MINUS = 0x2D;
+
+    // ASCII value of the '+' character
+    private static final byte ASCII_PLUS = 0x2B;
+
+    // ASCII value of the '/' character
+    private static final byte ASCII_FORWARD_SLASH = 0x2F;
+
+    // ASCII value of the new line character
+    private static final byte ASCII_NEW_LINE = 0x0A;
+
+    // ASCII value of the carriage return character
+    private static final byte ASCII_CARRIAGE_RETURN = 0x0D;
+
+    // Keyword that defines a material template library
+    private static final byte[] KEYWORD_MATERIAL_LIBRARY = {'m', 't', 'l', 'l', 'i', 'b'};
+
+    // Keyword that selects a material from the material template library
+    private static final byte[] KEYWORD_USE_MATERIAL = {'u', 's', 'e', 'm', 't', 'l'};
+
+    // Character set used to decode object and material names
+    private static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+    // Offset added to negative (relative) face indices that are resolved against the vertex
+    // counts of a chunk. The counts of the preceding chunks are only known when the chunks are
+    // merged, so the indices are stored relative to the start of the chunk in a range that can not
+    // be confused with absolute or undefined indices.
+    static final int CHUNK_RELATIVE_OFFSET = Integer.MIN_VALUE / 2;
+
+    // The data that the parser is writing to
+    private final OBJData data;
+
+    // Scratch storage for the components of a vertex whilst a line is being parsed
+    private final float[] components;
+
+    // The object that faces are currently being added to
+    private OBJObjectData currentObject;
+
+    // The last material library that was defined
+    private String materialLibrary;
+
+    // If the parser is parsing a chunk of a file rather than the whole file
+    private final boolean chunk;
+
+    // The object created for faces or materials that appear in a chunk before any object is
+    // defined. These belong to the last object of the previous chunk.
+    private OBJObjectData continuationObject;
+
+    // If any relative face indices have been stored relative to the chunk
+    private boolean hasChunkRelativeIndices;
+
+    // The bytes that are being parsed, the current position and the end of the range
+    private byte[] bytes;
+    private int cursor;
+    private int end;
+
+    /**
+     * Create an OBJ parser. The parser can be fed multiple ranges of complete lines using
+     * <code>parseLines</code> and the result retrieved using <code>getData</code>.
+     *
+     * @param sizeHint The expected size of the OBJ file in bytes (used to pre-size arrays)
+     * @since 1.0
+     */
+    public OBJParser(int sizeHint) {
+        this(sizeHint, false);
+    }
+
+    /**
+     * Create an OBJ parser for a chunk of a file (a range of complete lines). The state that
+     * depends on the preceding chunks (material library, current object and the vertex counts used
+     * to resolve relative indices) is left unresolved so that it can be fixed when the chunks are
+     * merged.
+     *
+     * @param sizeHint The size of the chunk in bytes (used to pre-size arrays)
+     * @param chunk    True if the parser is parsing a chunk of a file
+     * @see ParallelOBJParser
+     * @since 1.0
+     */
+    OBJParser(int sizeHint, boolean chunk) {
+        this.data = new OBJData(sizeHint);
+        this.components = new float[MAX_VERTEX_COMPONENTS];
+        this.chunk = chunk;
+        this.materialLibrary = chunk ? null : "";
+    }
+
+    public OBJParser() {
+        this(0);
+    }
+
+    /**
+     * Parse an entire OBJ file
+     *
+     * @param bytes The OBJ file as an array of bytes
+     * @return The parsed OBJ data
+     * @since 1.0
+     */
+    public static OBJData parse(byte[] bytes) {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parse a range of bytes that contains an OBJ file
+     *
+     * @param bytes  The array containing the OBJ file
+     * @param offset The index of the first byte of the file
+     * @param length The number of bytes in the file
+     * @return The parsed OBJ data
+     * @since 1.0
+     */
+    public static OBJData parse(byte[] bytes, int offset, int length) {
+        OBJParser parser = new OBJParser(length);
+        parser.parseLines(bytes, offset, offset + length);
+        return parser.getData();
+    }
+
+    /**
+     * Find the material template library of an OBJ file without parsing its geometry, so that the
+     * materials can be loaded while the geometry is parsed. Only the statements before the first
+     * vertex or face are read, which is where exporters put the 'mtllib' line.
+     *
+     * @param bytes The OBJ file as an array of bytes
+     * @return The file name of the material template library, or <code>null</code> if there is
+     *         none before the geometry
+     * @since 1.0
+     */
+    public static String findMaterialLibrary(byte[] bytes) {
+        OBJParser parser = new OBJParser(0);
+        parser.bytes = bytes;
+        parser.cursor = 0;
+        parser.end = bytes.length;
+
+        String materialLibrary = null;
+        while(parser.cursor < parser.end && materialLibrary == null) {
+            parser.skipWhitespace();
+            if(!parser.isLineEnd()) {
+                final byte first = bytes[parser.cursor];
+                if(first == ASCII_V || first == ASCII_F) {
+                    break;
+                }
+
+                if(first == ASCII_M && parser.isKeyword(KEYWORD_MATERIAL_LIBRARY)) {
+                    parser.cursor += KEYWORD_MATERIAL_LIBRARY.length;
+                    materialLibrary = parser.readName();
+                }
+            }
+            parser.skipLine();
+        }
+
+        parser.bytes = null;
+        return materialLibrary;
+    }
+
+    /**
+     * Parse a range of bytes. The range should only contain complete lines (a line that is split
+     * across two calls will be parsed as two separate lines).
+     *
+     * @param bytes The byte array to parse
+     * @param start The index of the first byte to parse
+     * @param end   The index after the last byte to parse
+     * @since 1.0
+     */
+    public void parseLines(byte[] bytes, int start, int end) {
+        this.bytes = bytes;
+        this.cursor = start;
+        this.end = end;
+
+        while(cursor < end) {
+            parseLine();
+        }
+
+        // Don't hold on to the file
+        this.bytes = null;
+    }
+
+    /**
+     * Get the data that has been parsed
+     *
+     * @return The parsed OBJ data
+     * @since 1.0
+     */
+    public OBJData getData() {
+        return data;
+    }
+
+    // Parse the line at the cursor and move the cursor to the beginning of the next line
+    private void parseLine() {
+        skipWhitespace();
+        if(isLineEnd()) {
+            skipLine();
+            return;
+        }
+
+        switch (bytes[cursor]) {
+            case ASCII_V:
+                if(isWhitespace(cursor + 1)) {
+                    cursor += 1;
+                    data.positionComponents = addVertex(data.positions, data.positionComponents);
+                } else if(byteAt(cursor + 1) == ASCII_T && isWhitespace(cursor + 2)) {
+                    cursor += 2;
+                    data.texelComponents = addVertex(data.texels, data.texelComponents);
+                } else if(byteAt(cursor + 1) == ASCII_N && isWhitespace(cursor + 2)) {
+                    cursor += 2;
+                    data.normalComponents = addVertex(data.normals, data.normalComponents);
+                }
+                break;
+            case ASCII_F:
+                if(isWhitespace(cursor + 1)) {
+                    cursor += 1;
+                    addFace();
+                }
+                break;
+            case ASCII_O:
+                if(isWhitespace(cursor + 1)) {
+                    cursor += 1;
+                    beginObject(readName());
+                }
+                break;
+            case ASCII_M:
+                if(isKeyword(KEYWORD_MATERIAL_LIBRARY)) {
+                    cursor += KEYWORD_MATERIAL_LIBRARY.length;
+                    materialLibrary = readName();
+                }
+                break;
+            case ASCII_U:
+                if(isKeyword(KEYWORD_USE_MATERIAL)) {
+                    cursor += KEYWORD_USE_MATERIAL.length;
+                    useMaterial(readName());
+                }
+                break;
+            case ASCII_HASHTAG:
+            default:
+                // Comments, smoothing groups and unsupported statements are ignored
+                break;
+        }
+
+        skipLine();
+    }
+
+    /**
+     * Start a new object. All faces that follow will belong to the object until another object is
+     * started.
+     *
+     * @param name The name of the object (may be null)
+     * @since 1.0
+     */
+    protected void beginObject(String name) {
+        currentObject = new OBJObjectData();
+        currentObject.name = name;
+        currentObject.cornerStart = data.getCornerCount();
+        data.objects.add(currentObject);
+    }
+
+    /**
+     * Get the object that faces are currently being added to, creating one if the file has not
+     * defined an object yet
+     *
+     * @return The current object
+     * @since 1.0
+     */
+    protected OBJObjectData getCurrentObject() {
+        if(currentObject == null) {
+            beginObject(null);
+            if(chunk) {
+                continuationObject = currentObject;
+            }
+        }
+        return currentObject;
+    }
+
+    /**
+     * Get the last material library defined in the chunk
+     *
+     * @return The material library, or null if the chunk did not define one
+     * @since 1.0
+     */
+    String getMaterialLibrary() {
+        return materialLibrary;
+    }
+
+    /**
+     * Get the object that contains the faces and materials at the start of the chunk that appear
+     * before any object is defined
+     *
+     * @return The continuation object, or null if the chunk did not begin with faces or materials
+     * @since 1.0
+     */
+    OBJObjectData getContinuationObject() {
+        return continuationObject;
+    }
+
+    /**
+     * Check if any relative face indices have been stored relative to the start of the chunk (see
+     * <code>CHUNK_RELATIVE_OFFSET</code>)
+     *
+     * @return True if the face indices need to be resolved when merging
+     * @since 1.0
+     */
+    boolean hasChunkRelativeIndices() {
+        return hasChunkRelativeIndices;
+    }
+
+    // Apply a material to the current object
+    private void useMaterial(String materialName) {
+        OBJObjectData object = getCurrentObject();
+        object.materialName = materialName;
+        object.materialLibrary = materialLibrary;
+    }
+
+    // Parse the components of a vertex line and add them to the target array. All vertices of the
+    // same type must have the same number of components so the first vertex decides the number of
+    // components and any following vertices are padded or truncated to match.
+    private int addVertex(GrowableFloatArray target, int componentsPerVertex) {
+        int numComponents = 0;
+        while(true) {
+            skipWhitespace();
+            if(isLineEnd()) {
+                break;
+            }
+
+            if(isNumericChar(bytes[cursor])) {
+                float value = readFloat();
+                if(numComponents < MAX_VERTEX_COMPONENTS) {
+                    components[numComponents++] = value;
+                }
+            }
+
+            // Skip anything that could not be parsed as part of the number
+            skipToken();
+        }
+
+        if(componentsPerVertex == 0) {
+            componentsPerVertex = numComponents;
+        }
+
+        for(int i = 0; i < componentsPerVertex; i++) {
+            target.add(i < numComponents ? components[i] : 0f);
+        }
+        return componentsPerVertex;
+    }
+
+    // Parse a face line and add its corners to the face indices. Faces with more than 3 vertices
+    // are split into a fan of triangles.
+    private void addFace() {
+        final OBJObjectData object = getCurrentObject();
+        final GrowableIntArray faceIndices = data.faceIndices;
+        final int positionCount = data.getPositionCount();
+        final int texelCount = data.getTexelCount();
+        final int normalCount = data.getNormalCount();
+
+        int numVertices = 0;
+        int firstPosition = UNDEFINED_INDEX;
+        int firstTexel = UNDEFINED_INDEX;
+        int firstNormal = UNDEFINED_INDEX;
+        int previousPosition = UNDEFINED_INDEX;
+        int previousTexel = UNDEFINED_INDEX;
+        int previousNormal = UNDEFINED_INDEX;
+
+        while(true) {
+            skipWhitespace();
+            if(isLineEnd()) {
+                break;
+            }
+
+            if(!isIndexChar(bytes[cursor])) {
+                skipToken();
+                continue;
+            }
+
+            // Vertex formats: 'p', 'p/t', 'p//n' and 'p/t/n'
+            int position = resolveIndex(readInt(), positionCount);
+            int texel = UNDEFINED_INDEX;
+            int normal = UNDEFINED_INDEX;
+            if(byteAt(cursor) == ASCII_FORWARD_SLASH) {
+                cursor++;
+                if(isIndexChar(byteAt(cursor))) {
+                    texel = resolveIndex(readInt(), texelCount);
+                }
+
+                if(byteAt(cursor) == ASCII_FORWARD_SLASH) {
+                    cursor++;
+                    if(isIndexChar(byteAt(cursor))) {
+                        normal = resolveIndex(readInt(), normalCount);
+                    }
+                }
+            }
+            skipToken();
+
+            // Beyond the third vertex, every vertex creates a new triangle with the first and the
+            // previous vertex
+            if(numVertices >= 3) {
+                addCorner(faceIndices, firstPosition, firstTexel, firstNormal);
+                addCorner(faceIndices, previousPosition, previousTexel, previousNormal);
+            } else if(numVertices == 0) {
+                firstPosition = position;
+                firstTexel = texel;
+                firstNormal = normal;
+            }
+
+            addCorner(faceIndices, position, texel, normal);
+            previousPosition = position;
+            previousTexel = texel;
+            previousNormal = normal;
+            numVertices++;
+        }
+
+        if(numVertices == 0) {
+            return;
+        }
+
+        object.cornerCount += numVertices > 3 ? (numVertices - 2) * 3 : numVertices;
+        object.verticesPerFace = Math.min(numVertices, 3);
+    }
+
+    private static void addCorner(GrowableIntArray faceIndices, int position, int texel,
+                                  int normal) {
+        faceIndices.add(position);
+        faceIndices.add(texel);
+        faceIndices.add(normal);
+    }
+
+    // Convert a one based (or negative relative) OBJ index to a zero based index
+    private int resolveIndex(int index, int count) {
+        if(index > 0) {
+            return index - 1;
+        } else if(index < 0) {
+            if(chunk) {
+                hasChunkRelativeIndices = true;
+                return CHUNK_RELATIVE_OFFSET + count + index;
+            }
+            return count + index;
+        }
+        return UNDEFINED_INDEX;
+    }
+
+    // Parse a float in place starting at the cursor. The cursor is left on the first byte that is
+    // not part of the number.
+    private float readFloat() {
+        boolean negative = false;
+        if(bytes[cursor] == ASCII_MINUS) {
+            negative = true;
+            cursor++;
+        } else if(bytes[cursor] == ASCII_PLUS) {
+            cursor++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int significantDigits = 0;
+
+        // Integer part
+        while(cursor < end && isDigit(bytes[cursor])) {
+            if(significantDigits < MAX_SIGNIFICANT_DIGITS) {
+                mantissa = (mantissa * 10) + (bytes[cursor] - ASCII_0);
+                if(mantissa != 0) {
+                    significantDigits++;
+                }
+            } else {
+                exponent++;
+            }
+            cursor++;
+        }
+
+        // Fraction part
+        if(cursor < end && bytes[cursor] == ASCII_POINT) {
+            cursor++;
+            while(cursor < end && isDigit(bytes[cursor])) {
+                if(significantDigits < MAX_SIGNIFICANT_DIGITS) {
+                    mantissa = (mantissa * 10) + (bytes[cursor] - ASCII_0);
+                    if(mantissa != 0) {
+                        significantDigits++;
+                    }
+                    exponent--;
+                }
+                cursor++;
+            }
+        }
+
+        // Exponent part (e.g. 1.5e-3)
+        if(cursor < end && (bytes[cursor] == ASCII_LOWER_E || bytes[cursor] == ASCII_UPPER_E)) {
+            cursor++;
+            boolean negativeExponent = false;
+            if(byteAt(cursor) == ASCII_MINUS) {
+                negativeExponent = true;
+                cursor++;
+            } else if(byteAt(cursor) == ASCII_PLUS) {
+                cursor++;
+            }
+
+            int explicitExponent = 0;
+            while(cursor < end && isDigit(bytes[cursor])) {
+                if(explicitExponent < MAX_EXPONENT) {
+                    explicitExponent = (explicitExponent * 10) + (bytes[cursor] - ASCII_0);
+                }
+                cursor++;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double value = mantissa;
+        if(exponent < 0) {
+            value /= -exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[-exponent] :
+                    Math.pow(10.0, -exponent);
+        } else if(exponent > 0) {
+            value *= exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[exponent] :
+                    Math.pow(10.0, exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    // Parse an integer in place starting at the cursor. The cursor is left on the first byte that
+    // is not part of the number.
+    private int readInt() {
+        boolean negative = false;
+        if(bytes[cursor] == ASCII_MINUS) {
+            negative = true;
+            cursor++;
+        } else if(bytes[cursor] == ASCII_PLUS) {
+            cursor++;
+        }
+
+        int value = 0;
+        while(cursor < end && isDigit(bytes[cursor])) {
+            value = (value * 10) + (bytes[cursor] - ASCII_0);
+            cursor++;
+        }
+        return negative ? -value : value;
+    }
+
+    // Read the remainder of the line as a name (leading and trailing whitespace is removed)
+    private String readName() {
+        skipWhitespace();
+        int start = cursor;
+        while(!isLineEnd()) {
+            cursor++;
+        }
+
+        int nameEnd = cursor;
+        while(nameEnd > start && isWhitespaceByte(bytes[nameEnd - 1])) {
+            nameEnd--;
+        }
+
+        if(nameEnd == start) {
+            return null;
+        }
+        return new String(bytes, start, nameEnd - start, NAME_CHARSET);
+    }
+
+    // Check if the bytes at the cursor are the given keyword followed by whitespace
+    private boolean isKeyword(byte[] keyword) {
+        if(cursor + keyword.length >= end) {
+            return false;
+        }
+
+        for(int i = 0; i < keyword.length; i++) {
+            if(bytes[cursor + i] != keyword[i]) {
+                return false;
+            }
+        }
+        return isWhitespace(cursor + keyword.length);
+    }
+
+    // Move the cursor to the beginning of the next line
+    private void skipLine() {
+        while(cursor < end && bytes[cursor] != ASCII_NEW_LINE) {
+            cursor++;
+        }
+        cursor++;
+    }
+
+    // Move the cursor past any spaces or tabs
+    private void skipWhitespace() {
+        while(cursor < end && isWhitespaceByte(bytes[cursor])) {
+            cursor++;
+        }
+    }
+
+    // Move the cursor to the next whitespace or line end
+    private void skipToken() {
+        while(!isLineEnd() && !isWhitespaceByte(bytes[cursor])) {
+            cursor++;
+        }
+    }
+
+    private boolean isLineEnd() {
+        return cursor >= end || bytes[cursor] == ASCII_NEW_LINE ||
+                bytes[cursor] == ASCII_CARRIAGE_RETURN;
+    }
+
+    // Check if the byte at an index is whitespace or the end of the line. A statement identifier
+    // must be followed by one of these (e.g. 'v 1.0' vs 'vt 1.0' vs 'vp 1.0').
+    private boolean isWhitespace(int index) {
+        if(index >= end) {
+            return true;
+        }
+
+        byte b = bytes[index];
+        return isWhitespaceByte(b) || b == ASCII_NEW_LINE || b == ASCII_CARRIAGE_RETURN;
+    }
+
+    // Get the byte at an index or zero if the index is outside of the parse range
+    private byte byteAt(int index) {
+        return index < end ? bytes[index] : 0;
+    }
+
+    private static boolean isWhitespaceByte(byte b) {
+        return b == ASCII_SPACE || b == ASCII_TAB;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= ASCII_0 && c <= ASCII_9;
+    }
+
+    private static boolean isIndexChar(byte c) {
+        return isDigit(c) || c == ASCII_MINUS || c == ASCII_PLUS;
+    }
+
+    private static boolean isNumericChar(byte c) {
+        return isDigit(c) || c == ASCII_POINT || c == ASCII_MINUS || c == ASCII_PLUS;
+    }
+}
@@ -0,0 +1,352 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Utilities.GrowableFloatArray;
+import com.crispin.crispinmobile.Utilities.GrowableIntArray;
+import com.crispin.crispinmobile.Utilities.WorkerExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Parses OBJ files on multiple threads. The file is split into chunks at line boundaries and each
+ * chunk is parsed by its own OBJParser. Vertex and face records do not depend on each other until
+ * the faces are resolved, so the per chunk arrays are simply concatenated in file order when the
+ * chunks are merged. The state that spans chunks is fixed during the merge:
+ * <ul>
+ *     <li>Relative (negative) face indices are offset by the vertex counts of the preceding
+ *     chunks</li>
+ *     <li>Faces and materials at the start of a chunk are added to the last object of the
+ *     preceding chunk</li>
+ *     <li>Materials use the last material library defined in a preceding chunk</li>
+ * </ul>
+ * The result is identical to parsing the file with a single OBJParser. Objects can also be
+ * resolved into indexed geometry in parallel. The work runs on the threads of the WorkerExecutor.
+ *
+ * @see OBJParser
+ * @see OBJModelLoader
+ * @since 1.0
+ */
+public class ParallelOBJParser {
+    // Files (or chunks) smaller than this are not worth splitting
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 256 * 1024;
+
+    // Objects with fewer face corners than this in total are resolved on the calling thread.
+    // Resolving costs roughly 60ns per corner, so this is a few milliseconds of work, well above
+    // the cost of handing a group to another thread and allocating its vertex index map.
+    public static final int DEFAULT_MIN_PARALLEL_CORNERS = 64 * 1024;
+
+    // ASCII value of the new line character
+    private static final byte ASCII_NEW_LINE = 0x0A;
+
+    // Parser shared by the loaders, created on first use
+    private static ParallelOBJParser defaultParser;
+
+    // The number of parts that files and objects are split in to
+    private final int numThreads;
+
+    // The minimum size of a chunk in bytes
+    private final int minChunkSize;
+
+    // The minimum number of face corners to resolve on multiple threads
+    private final int minParallelCorners;
+
+    /**
+     * Create a parallel OBJ parser
+     *
+     * @param numThreads         The number of parts to split the work in to
+     * @param minChunkSize       The minimum size of a chunk in bytes. Files smaller than two
+     *                           chunks are parsed on the calling thread.
+     * @param minParallelCorners The minimum number of face corners to resolve on multiple
+     *                           threads. Fewer corners are resolved on the calling thread.
+     * @since 1.0
+     */
+    public ParallelOBJParser(int numThreads, int minChunkSize, int minParallelCorners) {
+        this.numThreads = Math.max(numThreads, 1);
+        this.minChunkSize = Math.max(minChunkSize, 1);
+        this.minParallelCorners = Math.max(minParallelCorners, 1);
+    }
+
+    public ParallelOBJParser(int numThreads, int minChunkSize) {
+        this(numThreads, minChunkSize, DEFAULT_MIN_PARALLEL_CORNERS);
+    }
+
+    public ParallelOBJParser(int numThreads) {
+        this(numThreads, DEFAULT_MIN_CHUNK_SIZE);
+    }
+
+    /**
+     * Get the parser shared by the loaders. It splits the work in to a part per available
+     * processor.
+     *
+     * @return The default parallel OBJ parser
+     * @since 1.0
+     */
+    public static synchronized ParallelOBJParser getDefault() {
+        if(defaultParser == null) {
+            defaultParser = new ParallelOBJParser(WorkerExecutor.getParallelism());
+        }
+        return defaultParser;
+    }
+
+    /**
+     * Get the number of parts that the parser splits the work in to
+     *
+     * @return The number of threads that the work is split across
+     * @since 1.0
+     */
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Parse an entire OBJ file
+     *
+     * @param bytes The OBJ file as an array of bytes
+     * @return The parsed OBJ data
+     * @since 1.0
+     */
+    public OBJData parse(byte[] bytes) {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parse a range of bytes that contains an OBJ file
+     *
+     * @param bytes  The array containing the OBJ file
+     * @param offset The index of the first byte of the file
+     * @param length The number of bytes in the file
+     * @return The parsed OBJ data
+     * @since 1.0
+     */
+    public OBJData parse(final byte[] bytes, int offset, int length) {
+        final int numChunks = Math.min(numThreads, length / minChunkSize);
+        if(numChunks <= 1) {
+            return OBJParser.parse(bytes, offset, length);
+        }
+
+        // Split the file at the first line break after each chunk boundary
+        final int end = offset + length;
+        ArrayList<Callable<OBJParser>> chunks = new ArrayList<>(numChunks);
+        int chunkStart = offset;
+        for(int i = 1; i <= numChunks && chunkStart < end; i++) {
+            int chunkEnd = i == numChunks ? end : offset + (int)((long)length * i / numChunks);
+            while(chunkEnd < end && bytes[chunkEnd - 1] != ASCII_NEW_LINE) {
+                chunkEnd++;
+            }
+
+            final int start = chunkStart;
+            final int stop = Math.max(chunkEnd, chunkStart);
+            chunks.add(() -> parseChunk(bytes, start, stop));
+            chunkStart = stop;
+        }
+
+        ArrayList<OBJParser> parsers = WorkerExecutor.invokeAll(chunks, "parsing OBJ");
+        return merge(parsers);
+    }
+
+    /**
+     * Resolve objects into indexed geometry in parallel. The objects are split into consecutive
+     * groups with a similar number of face corners, and each group is resolved on its own thread
+     * with its own vertex index map that is re-used for every object in the group. If there are
+     * fewer face corners than the minimum for parallel resolving, every object is resolved on the
+     * calling thread.
+     *
+     * @param data    The parsed OBJ data
+     * @param objects The objects to resolve
+     * @return The indexed geometry of each object (in the same order as the objects)
+     * @see OBJData#resolveIndexed(OBJObjectData, VertexIndexMap)
+     * @since 1.0
+     */
+    public IndexedGeometry[] resolveIndexed(final OBJData data, final List<OBJObjectData> objects) {
+        final IndexedGeometry[] geometries = new IndexedGeometry[objects.size()];
+        int totalCorners = 0;
+        for(int i = 0; i < objects.size(); i++) {
+            totalCorners += objects.get(i).cornerCount;
+        }
+
+        final int numGroups = Math.min(numThreads, objects.size());
+        if(numGroups <= 1 || totalCorners < minParallelCorners) {
+            resolveGroup(data, objects, 0, objects.size(), geometries);
+            return geometries;
+        }
+
+        // Split the objects where the running corner count passes each share of the total
+        final int[] groupStarts = new int[numGroups + 1];
+        int group = 1;
+        long corners = 0;
+        for(int i = 0; i < objects.size() && group < numGroups; i++) {
+            corners += objects.get(i).cornerCount;
+            if(corners * numGroups >= (long)totalCorners * group) {
+                groupStarts[group++] = i + 1;
+            }
+        }
+        while(group <= numGroups) {
+            groupStarts[group++] = objects.size();
+        }
+
+        // Each group writes only to its own range of the result array
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(numGroups);
+        for(int g = 0; g < numGroups; g++) {
+            final int start = groupStarts[g];
+            final int end = groupStarts[g + 1];
+            if(start < end) {
+                tasks.add(() -> {
+                    resolveGroup(data, objects, start, end, geometries);
+                    return null;
+                });
+            }
+        }
+        WorkerExecutor.invokeAll(tasks, "resolving OBJ");
+        return geometries;
+    }
+
+    // Parse a chunk of a file with indices relative to the start of the chunk
+    private static OBJParser parseChunk(byte[] bytes, int start, int stop) {
+        OBJParser parser = new OBJParser(stop - start, true);
+        parser.parseLines(bytes, start, stop);
+        return parser;
+    }
+
+    // Resolve a range of objects, re-using one vertex index map sized for the largest object
+    private static void resolveGroup(OBJData data, List<OBJObjectData> objects, int start,
+                                     int end, IndexedGeometry[] geometries) {
+        int maxCorners = 0;
+        for(int i = start; i < end; i++) {
+            maxCorners = Math.max(maxCorners, objects.get(i).cornerCount);
+        }
+
+        // Most corners share a vertex, so the map is sized for the positions and grows if needed
+        VertexIndexMap vertexIndexMap = new VertexIndexMap(Math.min(maxCorners,
+                data.getPositionCount()));
+        for(int i = start; i < end; i++) {
+            geometries[i] = data.resolveIndexed(objects.get(i), vertexIndexMap);
+        }
+    }
+
+    // Merge the data of the chunk parsers (in file order) into one
+    private static OBJData merge(ArrayList<OBJParser> parsers) {
+        int positionsSize = 0;
+        int texelsSize = 0;
+        int normalsSize = 0;
+        int faceIndicesSize = 0;
+        for(int i = 0; i < parsers.size(); i++) {
+            OBJData data = parsers.get(i).getData();
+            positionsSize += data.positions.size();
+            texelsSize += data.texels.size();
+            normalsSize += data.normals.size();
+            faceIndicesSize += data.faceIndices.size();
+        }
+
+        OBJData merged = new OBJData();
+        merged.positions.ensureCapacity(positionsSize);
+        merged.texels.ensureCapacity(texelsSize);
+        merged.normals.ensureCapacity(normalsSize);
+        merged.faceIndices.ensureCapacity(faceIndicesSize);
+
+        // The material library and object carried over from the preceding chunks
+        String materialLibrary = "";
+        OBJObjectData currentObject = null;
+
+        for(int i = 0; i < parsers.size(); i++) {
+            OBJParser parser = parsers.get(i);
+            OBJData data = parser.getData();
+
+            // Counts of the preceding chunks
+            final int cornerOffset = merged.getCornerCount();
+            final int positionOffset = merged.getPositionCount();
+            final int texelOffset = merged.getTexelCount();
+            final int normalOffset = merged.getNormalCount();
+
+            merged.positionComponents = appendVertices(merged.positions,
+                    merged.positionComponents, data.positions, data.positionComponents);
+            merged.texelComponents = appendVertices(merged.texels, merged.texelComponents,
+                    data.texels, data.texelComponents);
+            merged.normalComponents = appendVertices(merged.normals, merged.normalComponents,
+                    data.normals, data.normalComponents);
+
+            if(parser.hasChunkRelativeIndices()) {
+                appendFaceIndices(merged.faceIndices, data.faceIndices, positionOffset,
+                        texelOffset, normalOffset);
+            } else {
+                merged.faceIndices.add(data.faceIndices.getData(), 0, data.faceIndices.size());
+            }
+
+            for(int o = 0; o < data.objects.size(); o++) {
+                OBJObjectData object = data.objects.get(o);
+                if(object.materialName != null && object.materialLibrary == null) {
+                    object.materialLibrary = materialLibrary;
+                }
+
+                if(object == parser.getContinuationObject() && currentObject != null) {
+                    // The corners directly follow the corners of the current object
+                    currentObject.cornerCount += object.cornerCount;
+                    if(object.cornerCount != 0) {
+                        currentObject.verticesPerFace = object.verticesPerFace;
+                    }
+
+                    if(object.materialName != null) {
+                        currentObject.materialName = object.materialName;
+                        currentObject.materialLibrary = object.materialLibrary;
+                    }
+                } else {
+                    object.cornerStart += cornerOffset;
+                    merged.objects.add(object);
+                    currentObject = object;
+                }
+            }
+
+            if(parser.getMaterialLibrary() != null) {
+                materialLibrary = parser.getMaterialLibrary();
+            }
+        }
+        return merged;
+    }
+
+    // Append vertices to a target array. If the first chunk with vertices has a different number of
+    // components, the vertices are padded or truncated like the OBJParser does within a file.
+    private static int appendVertices(GrowableFloatArray target, int targetComponents,
+                                      GrowableFloatArray source, int sourceComponents) {
+        if(sourceComponents == 0) {
+            return targetComponents;
+        }
+
+        if(targetComponents == 0 || targetComponents == sourceComponents) {
+            target.add(source.getData(), 0, source.size());
+            return sourceComponents;
+        }
+
+        final float[] sourceData = source.getData();
+        for(int i = 0; i < source.size(); i += sourceComponents) {
+            for(int c = 0; c < targetComponents; c++) {
+                target.add(c < sourceComponents ? sourceData[i + c] : 0f);
+            }
+        }
+        return targetComponents;
+    }
+
+    // Append face indices, resolving indices that are relative to the start of the chunk
+    private static void appendFaceIndices(GrowableIntArray target, GrowableIntArray source,
+                                          int positionOffset, int texelOffset, int normalOffset) {
+        final int[] sourceData = source.getData();
+        for(int i = 0; i < source.size(); i++) {
+            int index = sourceData[i];
+            if(index < OBJParser.UNDEFINED_INDEX) {
+                int offset;
+                switch (i % OBJData.INDICES_PER_CORNER) {
+                    case OBJData.CORNER_POSITION:
+                        offset = positionOffset;
+                        break;
+                    case OBJData.CORNER_TEXEL:
+                        offset = texelOffset;
+                        break;
+                    default:
+                        offset = normalOffset;
+                        break;
+                }
+                index = index - OBJParser.CHUNK_RELATIVE_OFFSET + offset;
+            }
+            target.add(index);
+        }
+    }
+}
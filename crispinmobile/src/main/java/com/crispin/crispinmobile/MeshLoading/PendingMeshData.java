@@ -0,0 +1,94 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+
+/**
+ * Mesh data that has been built on the CPU but not yet uploaded to graphics memory. Building the
+ * vertex data does not require OpenGL so it can be done on any thread, the upload must then be done
+ * on the GL thread. Everything apart from the meshes (name, material, hitbox and bound box) is
+ * already set in the mesh data.
+ *
+ * @see OBJModelLoader
+ * @see AsyncModelLoader
+ * @since 1.0
+ */
+class PendingMeshData {
+    // The mesh data that the meshes are set in once they have been uploaded
+    final MeshData meshData;
+
+    // Vertex data of the mesh, or null if the mesh is not loaded
+    final VertexData vertexData;
+
+    // The method to render the mesh
+    final Mesh.RenderMethod renderMethod;
+
+    // Vertex data of the shadow mesh, or null if the shadow mesh is not loaded
+    final VertexData shadowVertexData;
+
+    // If the mesh is stored in the compact vertex layout
+    final boolean compact;
+
+    // Vertex data of each level of detail, or null if no levels of detail were generated
+    final VertexData[] lodVertexData;
+
+    PendingMeshData(MeshData meshData, VertexData vertexData, Mesh.RenderMethod renderMethod,
+                    VertexData shadowVertexData, boolean compact, VertexData[] lodVertexData) {
+        this.meshData = meshData;
+        this.vertexData = vertexData;
+        this.renderMethod = renderMethod;
+        this.shadowVertexData = shadowVertexData;
+        this.compact = compact;
+        this.lodVertexData = lodVertexData;
+    }
+
+    /**
+     * Get the number of bytes that will be uploaded to graphics memory
+     *
+     * @return The size of the vertex and index data of the mesh, its levels of detail and the
+     * shadow mesh in bytes
+     * @since 1.0
+     */
+    int getSizeBytes() {
+        int size = (vertexData == null ? 0 : vertexData.getSizeBytes(compact)) +
+                (shadowVertexData == null ? 0 : shadowVertexData.getSizeBytes());
+        if(lodVertexData != null) {
+            for(VertexData lod : lodVertexData) {
+                size += lod.getSizeBytes(compact);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Create the meshes in graphics memory. Must be called on the GL thread.
+     *
+     * @return The mesh data with its meshes set
+     * @since 1.0
+     */
+    MeshData upload() {
+        if(vertexData != null) {
+            meshData.mesh = new Mesh(vertexData, renderMethod, compact);
+            setBounds(meshData.mesh);
+        }
+
+        // The levels of detail share the bounds of the full detail mesh (they are no larger)
+        if(lodVertexData != null) {
+            meshData.lods = new Mesh[lodVertexData.length];
+            for(int i = 0; i < lodVertexData.length; i++) {
+                meshData.lods[i] = new Mesh(lodVertexData[i], renderMethod, compact);
+                setBounds(meshData.lods[i]);
+            }
+        }
+
+        if(shadowVertexData != null) {
+            meshData.shadowMesh = new Mesh(shadowVertexData, Mesh.RenderMethod.TRIANGLES);
+        }
+        return meshData;
+    }
+
+    private void setBounds(Mesh mesh) {
+        mesh.boundBox3D = meshData.boundBox3D;
+        mesh.boundSphere = meshData.boundSphere;
+    }
+}
@@ -0,0 +1,168 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Parses an OBJ file from an input stream in fixed size chunks without reading the whole file into
+ * memory. The stream is read into a buffer that is re-used for every chunk, complete lines are
+ * parsed and a line that is split by the end of the buffer is carried over to the next chunk.
+ * <p>
+ * Each object is passed to a sink as soon as it is complete (when the next object begins or the
+ * stream ends) and its faces are then discarded. Vertices are shared by every object in an OBJ file
+ * (faces can reference any earlier vertex) so the vertex arrays are kept for the whole parse, but
+ * the file text and the faces of completed objects are not. The memory used whilst parsing is
+ * therefore bounded by the vertices of the file plus the faces of its largest object, rather than
+ * the size of the file.
+ *
+ * @see OBJParser
+ * @see OBJModelLoader
+ * @since 1.0
+ */
+public class StreamingOBJParser extends OBJParser {
+    /**
+     * Receives the objects of an OBJ file as they are parsed
+     *
+     * @since 1.0
+     */
+    public interface ObjectSink {
+        /**
+         * Called when an object has been parsed. The OBJ data contains every vertex parsed so far
+         * but only the faces of the object, and is only valid until the method returns (the faces
+         * are discarded afterwards). The object can be resolved using
+         * <code>data.resolveIndexed(object, vertexIndexMap)</code>.
+         *
+         * @param data   The parsed OBJ data
+         * @param object The completed object
+         * @since 1.0
+         */
+        void onObject(OBJData data, OBJObjectData object);
+    }
+
+    // The default size of the read buffer in bytes
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // ASCII value of the new line character
+    private static final byte ASCII_NEW_LINE = 0x0A;
+
+    // The sink that the completed objects are passed to
+    private final ObjectSink sink;
+
+    // Buffer that the stream is read into (only grows if a single line is longer than it)
+    private byte[] buffer;
+
+    // The object that faces are currently being added to
+    private OBJObjectData pendingObject;
+
+    /**
+     * Create a streaming OBJ parser
+     *
+     * @param sink       The sink that the completed objects are passed to
+     * @param bufferSize The size of the read buffer in bytes
+     * @since 1.0
+     */
+    public StreamingOBJParser(ObjectSink sink, int bufferSize) {
+        super(bufferSize);
+        this.sink = sink;
+        this.buffer = new byte[Math.max(bufferSize, 1)];
+    }
+
+    public StreamingOBJParser(ObjectSink sink) {
+        this(sink, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Parse an OBJ file from a stream, passing each object to a sink as it completes
+     *
+     * @param inputStream The stream to parse (not closed)
+     * @param sink        The sink that the completed objects are passed to
+     * @throws IOException If the stream could not be read
+     * @since 1.0
+     */
+    public static void parse(InputStream inputStream, ObjectSink sink) throws IOException {
+        new StreamingOBJParser(sink).parse(inputStream);
+    }
+
+    /**
+     * Parse an OBJ file from a stream. Each object is passed to the sink as it completes, the last
+     * one once the end of the stream is reached.
+     *
+     * @param inputStream The stream to parse (not closed)
+     * @throws IOException If the stream could not be read
+     * @since 1.0
+     */
+    public void parse(InputStream inputStream) throws IOException {
+        // The number of bytes in the buffer (a partial line carried over from the last chunk plus
+        // the bytes that have been read)
+        int size = 0;
+        int read;
+        while ((read = inputStream.read(buffer, size, buffer.length - size)) != -1) {
+            size += read;
+
+            // Parse up to the end of the last complete line in the buffer
+            int lineEnd = size;
+            while (lineEnd > 0 && buffer[lineEnd - 1] != ASCII_NEW_LINE) {
+                lineEnd--;
+            }
+
+            if (lineEnd == 0) {
+                // A line is longer than the buffer
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                continue;
+            }
+
+            parseLines(buffer, 0, lineEnd);
+            size -= lineEnd;
+            System.arraycopy(buffer, lineEnd, buffer, 0, size);
+        }
+
+        // The last line may not end with a new line
+        if (size != 0) {
+            parseLines(buffer, 0, size);
+        }
+
+        emitPendingObject();
+    }
+
+    /**
+     * Get the size of the read buffer
+     *
+     * @return The size of the read buffer in bytes
+     * @since 1.0
+     */
+    public int getBufferSize() {
+        return buffer.length;
+    }
+
+    /**
+     * Pass the current object to the sink before starting the next one
+     *
+     * @param name The name of the object (may be null)
+     * @since 1.0
+     */
+    @Override
+    protected void beginObject(String name) {
+        emitPendingObject();
+        super.beginObject(name);
+        pendingObject = getData().objects.get(getData().objects.size() - 1);
+    }
+
+    // Pass the current object to the sink and discard its faces
+    private void emitPendingObject() {
+        if (pendingObject == null) {
+            return;
+        }
+
+        OBJData data = getData();
+        if (pendingObject.cornerCount != 0) {
+            sink.onObject(data, pendingObject);
+        }
+
+        data.objects.clear();
+        data.faceIndices.clear();
+        pendingObject = null;
+    }
+}
@@ -3,33 +3,33 @@ package com.crispin.crispinmobile.MeshLoading;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 import com.crispin.crispinmobile.Utilities.LoadListener;
 
+import java.util.ArrayList;
+
 
 /**
- * A class that is currently under development. It is used to load OBJ models on another thread (in
- * the background) so that they can be added into a scene in real time. This reduces the load time
- * at the beginning of a scene but not all models may be visible so it is recommended to instead
- * present a loading bar whilst the threaded models load. The class uses the OBJModelLoader to load
- * OBJ models and does it on another thread so that it doesn't lag or pause the main loop.
+ * Used to load OBJ models on another thread (in the background) so that they can be added into a
+ * scene in real time. This reduces the load time at the beginning of a scene but not all models may
+ * be visible so it is recommended to instead present a loading bar whilst the threaded models load.
+ * The class uses the AsyncModelLoader to read and build the model on a background thread and
+ * upload it on the GL thread, so that it doesn't lag or pause the main loop. The load listener is
+ * called on the GL thread once the model has loaded.
  *
  * @author Christian Benner
  * @version %I%, %G%
  * @see Mesh
- * @see OBJModelLoader
+ * @see AsyncModelLoader
  * @since 1.0
  */
 public class ThreadedOBJLoader implements Runnable {
     // The resource ID of the model
     private final int resourceId;
 
-    // The render object
-    private Mesh mesh;
-
-    // Whether or not the model has been loaded or not
-    private boolean complete = false;
-
     // LoadEvent that gets called when the OBJ has loaded
     private final LoadListener loadListener;
 
+    // The load of the model, or null if it has not been started
+    private ModelLoadTask task;
+
     /**
      * Create an ThreadedOBJLoader obj to load an OBJ model on another thread
      *
@@ -45,24 +45,38 @@ public class ThreadedOBJLoader implements Runnable {
     /**
      * Load a model on another thread without having to create the ThreadedOBJLoader object
      *
-     * @param resourceId The OBJ model file resource ID
+     * @param resourceId   The OBJ model file resource ID
+     * @param loadListener The load listener that listens to load events
+     * @return The loader that can be used to check if the model has loaded
      * @since 1.0
      */
-    public static void loadModel(int resourceId, LoadListener loadListener) {
+    public static ThreadedOBJLoader loadModel(int resourceId, LoadListener loadListener) {
         ThreadedOBJLoader threadedModelLoader = new ThreadedOBJLoader(resourceId, loadListener);
         threadedModelLoader.run();
+        return threadedModelLoader;
     }
 
     /**
-     * Overridden from the thread base class
+     * Start loading the model in the background. Returns straight away.
      *
      * @since 1.0
      */
     @Override
-    public void run() {
-        mesh = OBJModelLoader.readObjFile(resourceId);
-        this.loadListener.onLoad(mesh);
-        complete = true;
+    public synchronized void run() {
+        if (task == null) {
+            task = AsyncModelLoader.load(resourceId, loadListener);
+        }
+    }
+
+    /**
+     * Cancel the load of the model
+     *
+     * @since 1.0
+     */
+    public synchronized void cancel() {
+        if (task != null) {
+            task.cancel(false);
+        }
     }
 
     /**
@@ -71,17 +85,36 @@ public class ThreadedOBJLoader implements Runnable {
      * @return The state of the model loading. True if the model has finished loading, else false
      * @since 1.0
      */
-    public boolean isComplete() {
-        return this.complete;
+    public synchronized boolean isComplete() {
+        return task != null && task.isDone() && !task.isCancelled();
+    }
+
+    /**
+     * Get the fraction of the model that has loaded
+     *
+     * @return The progress from 0 to 1
+     * @since 1.0
+     */
+    public synchronized float getProgress() {
+        return task == null ? 0.0f : task.getProgress();
     }
 
     /**
      * Get the render object that is loaded
      *
-     * @return The state of the model loading. True if the model has finished loading, else false
+     * @return The first mesh of the model, or <code>null</code> if the model has not loaded
      * @since 1.0
      */
-    public Mesh getMesh() {
-        return mesh;
+    public synchronized Mesh getMesh() {
+        if (!isComplete()) {
+            return null;
+        }
+
+        try {
+            ArrayList<MeshData> meshes = task.get();
+            return meshes.isEmpty() ? null : meshes.get(0).mesh;
+        } catch (Exception e) {
+            return null;
+        }
     }
 }
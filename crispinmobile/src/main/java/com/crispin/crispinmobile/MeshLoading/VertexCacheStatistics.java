@@ -0,0 +1,101 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+/**
+ * Measures how well the triangles of an indexed mesh re-use the post-transform vertex cache of the
+ * GPU. The cache is simulated as a FIFO of a given size: drawing a vertex that is not in the cache
+ * is a miss (the vertex shader runs for it) and pushes it in to the cache, evicting the oldest
+ * vertex once full.
+ * <p>
+ * ACMR (average cache miss ratio) is the number of misses per triangle. It is 3 if no vertices are
+ * re-used and approaches 0.5 for a large regular grid. ATVR (average transform to vertex ratio) is
+ * the number of misses per unique vertex, with 1 being ideal (each vertex is shaded once), so it
+ * does not depend on the mesh topology like ACMR does.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see MeshOptimiser
+ * @since 1.0
+ */
+public class VertexCacheStatistics {
+    // The number of vertices that make up a face
+    private static final int POINTS_PER_FACE = 3;
+
+    // The number of vertices that the cache holds
+    public final int cacheSize;
+
+    // The number of vertices that were not in the cache when drawn
+    public final int misses;
+
+    // The number of triangles drawn
+    public final int triangleCount;
+
+    // The number of unique vertices drawn
+    public final int vertexCount;
+
+    private VertexCacheStatistics(int cacheSize, int misses, int triangleCount, int vertexCount) {
+        this.cacheSize = cacheSize;
+        this.misses = misses;
+        this.triangleCount = triangleCount;
+        this.vertexCount = vertexCount;
+    }
+
+    /**
+     * Simulate drawing the triangles of an index buffer through a FIFO vertex cache
+     *
+     * @param indices     The triangle list indices
+     * @param vertexCount The number of vertices that the indices reference
+     * @param cacheSize   The number of vertices that the cache holds
+     * @return The cache statistics of the index buffer
+     * @since 1.0
+     */
+    public static VertexCacheStatistics measure(int[] indices, int vertexCount, int cacheSize) {
+        // The value of the insertion counter when each vertex entered the cache. A vertex is in
+        // the cache if fewer than cacheSize vertices have been inserted since.
+        final long[] insertedAt = new long[vertexCount];
+        final boolean[] used = new boolean[vertexCount];
+        long insertions = 0;
+        int misses = 0;
+        int uniqueVertices = 0;
+        final int elementCount = (indices.length / POINTS_PER_FACE) * POINTS_PER_FACE;
+        for(int i = 0; i < elementCount; i++) {
+            final int vertex = indices[i];
+            if(!used[vertex]) {
+                used[vertex] = true;
+                uniqueVertices++;
+            } else if(insertions - insertedAt[vertex] < cacheSize) {
+                continue;
+            }
+
+            insertedAt[vertex] = insertions++;
+            misses++;
+        }
+
+        return new VertexCacheStatistics(cacheSize, misses, elementCount / POINTS_PER_FACE,
+                uniqueVertices);
+    }
+
+    /**
+     * Get the average cache miss ratio
+     *
+     * @return The number of cache misses per triangle
+     * @since 1.0
+     */
+    public float getACMR() {
+        return triangleCount == 0 ? 0.0f : (float)misses / triangleCount;
+    }
+
+    /**
+     * Get the average transform to vertex ratio
+     *
+     * @return The number of cache misses per unique vertex
+     * @since 1.0
+     */
+    public float getATVR() {
+        return vertexCount == 0 ? 0.0f : (float)misses / vertexCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ACMR %.3f, ATVR %.3f", getACMR(), getATVR());
+    }
+}
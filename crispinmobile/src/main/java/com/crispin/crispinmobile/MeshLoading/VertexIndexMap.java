@@ -0,0 +1,146 @@
+package com.crispin.crispinmobile.MeshLoading;
+
+import java.util.Arrays;
+
+/**
+ * A primitive open addressing hash map from a (position, texel, normal) index triple to a vertex
+ * index. It is used to find the unique vertices of a mesh so that shared vertices are only stored
+ * once in the vertex buffer. No objects are created when adding or looking up vertices.
+ *
+ * @see OBJModelLoader
+ * @since 1.0
+ */
+public class VertexIndexMap {
+    // The value of a slot that does not contain a vertex
+    private static final int EMPTY = -1;
+
+    // Number of ints that make up a key
+    private static final int KEY_SIZE = 3;
+
+    // The map is grown when it is more than half full to keep probe sequences short
+    private static final int MAX_LOAD_FACTOR_DIVIDE = 2;
+
+    // The keys stored as a flat array of (position, texel, normal) triples
+    private int[] keys;
+
+    // The vertex index stored in each slot (or EMPTY)
+    private int[] values;
+
+    // Mask used to wrap an index around the capacity (capacity is a power of two)
+    private int mask;
+
+    // The number of vertices in the map
+    private int size;
+
+    /**
+     * Create a vertex index map that can hold the expected number of vertices without growing
+     *
+     * @param expectedVertices The expected number of unique vertices
+     * @since 1.0
+     */
+    public VertexIndexMap(int expectedVertices) {
+        allocate(capacityFor(expectedVertices));
+    }
+
+    /**
+     * Get the index of a vertex, adding it to the map with the given index if it is not present
+     *
+     * @param position The position index of the vertex
+     * @param texel    The texel index of the vertex
+     * @param normal   The normal index of the vertex
+     * @param index    The index to assign to the vertex if it is not already in the map
+     * @return The existing index of the vertex, or <code>index</code> if it has just been added
+     * @since 1.0
+     */
+    public int putIfAbsent(int position, int texel, int normal, int index) {
+        if(size >= values.length / MAX_LOAD_FACTOR_DIVIDE) {
+            rehash(values.length * 2);
+        }
+
+        int slot = hash(position, texel, normal) & mask;
+        while(values[slot] != EMPTY) {
+            int key = slot * KEY_SIZE;
+            if(keys[key] == position && keys[key + 1] == texel && keys[key + 2] == normal) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        insert(slot, position, texel, normal, index);
+        return index;
+    }
+
+    /**
+     * Get the number of vertices in the map
+     *
+     * @return The number of unique vertices that have been added
+     * @since 1.0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all of the vertices from the map. The capacity is retained so that the map can be
+     * re-used for another mesh without allocating.
+     *
+     * @since 1.0
+     */
+    public void clear() {
+        Arrays.fill(values, EMPTY);
+        size = 0;
+    }
+
+    private void insert(int slot, int position, int texel, int normal, int index) {
+        int key = slot * KEY_SIZE;
+        keys[key] = position;
+        keys[key + 1] = texel;
+        keys[key + 2] = normal;
+        values[slot] = index;
+        size++;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity * KEY_SIZE];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        for(int i = 0; i < oldValues.length; i++) {
+            if(oldValues[i] != EMPTY) {
+                int key = i * KEY_SIZE;
+                int position = oldKeys[key];
+                int texel = oldKeys[key + 1];
+                int normal = oldKeys[key + 2];
+                int slot = hash(position, texel, normal) & mask;
+                while(values[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                insert(slot, position, texel, normal, oldValues[i]);
+            }
+        }
+    }
+
+    // The smallest power of two capacity that keeps the load factor below the maximum
+    private static int capacityFor(int expectedVertices) {
+        int capacity = 16;
+        while(capacity < expectedVertices * MAX_LOAD_FACTOR_DIVIDE) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(int position, int texel, int normal) {
+        int h = position * 0x9E3779B1;
+        h = (h ^ (h >>> 16)) + (texel * 0x85EBCA6B);
+        h = (h ^ (h >>> 13)) + (normal * 0xC2B2AE35);
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,145 @@
+package com.crispin.crispinmobile.Physics;
+
+import com.crispin.crispinmobile.Rendering.Utilities.ModelMatrix;
+
+/**
+ * An axis aligned bound box in three dimensions, described by its lowest corner (x, y, z) and its
+ * size (w, h, l). Bound boxes are computed for each mesh when it is loaded and can be transformed
+ * in to world space by a model matrix every frame without allocating, for visibility tests and
+ * broad phase collision.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BoundSphere
+ * @see BoundBox2D
+ * @since 1.0
+ */
+public class BoundBox3D {
+    public float x;
+    public float y;
+    public float z;
+    public float w;
+    public float h;
+    public float l;
+
+    public BoundBox3D(float x, float y, float z, float w, float h, float l) {
+        set(x, y, z, w, h, l);
+    }
+
+    public BoundBox3D(BoundBox3D other) {
+        this(other.x, other.y, other.z, other.w, other.h, other.l);
+    }
+
+    public BoundBox3D() {
+        this(0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f);
+    }
+
+    public void set(float x, float y, float z, float w, float h, float l) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        this.h = h;
+        this.l = l;
+    }
+
+    /**
+     * Create the smallest bound box that contains a set of vertices
+     *
+     * @param vertices The vertex data
+     * @param offset   The index of the position of the first vertex
+     * @param stride   The number of floats from the start of one vertex to the next
+     * @param elements The number of elements in each position (2 or 3, z is 0 for 2D positions)
+     * @param count    The number of vertices
+     * @return The bound box of the vertices (at the origin with no size if there are none)
+     * @since 1.0
+     */
+    public static BoundBox3D create(float[] vertices, int offset, int stride, int elements,
+                                    int count) {
+        if(count == 0) {
+            return new BoundBox3D();
+        }
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float maxZ = -Float.MAX_VALUE;
+        for(int v = 0, i = offset; v < count; v++, i += stride) {
+            final float x = vertices[i];
+            final float y = vertices[i + 1];
+            final float z = elements >= 3 ? vertices[i + 2] : 0.0f;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+        return new BoundBox3D(minX, minY, minZ, maxX - minX, maxY - minY, maxZ - minZ);
+    }
+
+    public boolean collidesWith(BoundBox3D other) {
+        return x < other.x + other.w &&
+                x + w > other.x &&
+                y < other.y + other.h &&
+                y + h > other.y &&
+                z < other.z + other.l &&
+                z + l > other.z;
+    }
+
+    public boolean collidesWith(BoundSphere sphere) {
+        return sphere.collidesWith(this);
+    }
+
+    public boolean contains(float px, float py, float pz) {
+        return px >= x && px <= x + w && py >= y && py <= y + h && pz >= z && pz <= z + l;
+    }
+
+    /**
+     * Transform the bound box by a model matrix and store the axis aligned box that contains the
+     * result. Each axis of the new box is the transformed centre plus the absolute values of the
+     * matrix multiplied by the half size (Arvo, 1990), so the eight corners do not need to be
+     * transformed. Nothing is allocated so this can be called every frame.
+     *
+     * @param modelMatrix The model matrix (an affine transformation)
+     * @param result      The bound box to store the result in (can be this bound box)
+     * @return The result bound box
+     * @since 1.0
+     */
+    public BoundBox3D transform(ModelMatrix modelMatrix, BoundBox3D result) {
+        final float[] m = modelMatrix.getFloats();
+        final float halfW = w * 0.5f;
+        final float halfH = h * 0.5f;
+        final float halfL = l * 0.5f;
+        final float centerX = x + halfW;
+        final float centerY = y + halfH;
+        final float centerZ = z + halfL;
+
+        // The matrix is column major, element (row, column) is at column * 4 + row
+        final float newCenterX = m[0] * centerX + m[4] * centerY + m[8] * centerZ + m[12];
+        final float newCenterY = m[1] * centerX + m[5] * centerY + m[9] * centerZ + m[13];
+        final float newCenterZ = m[2] * centerX + m[6] * centerY + m[10] * centerZ + m[14];
+        final float newHalfW = Math.abs(m[0]) * halfW + Math.abs(m[4]) * halfH +
+                Math.abs(m[8]) * halfL;
+        final float newHalfH = Math.abs(m[1]) * halfW + Math.abs(m[5]) * halfH +
+                Math.abs(m[9]) * halfL;
+        final float newHalfL = Math.abs(m[2]) * halfW + Math.abs(m[6]) * halfH +
+                Math.abs(m[10]) * halfL;
+
+        result.set(newCenterX - newHalfW, newCenterY - newHalfH, newCenterZ - newHalfL,
+                newHalfW * 2.0f, newHalfH * 2.0f, newHalfL * 2.0f);
+        return result;
+    }
+
+    public BoundBox3D transform(ModelMatrix modelMatrix) {
+        return transform(modelMatrix, new BoundBox3D());
+    }
+
+    @Override
+    public String toString() {
+        return "BoundBox3D{x:" + x + ", y:" + y + ", z:" + z + ", w:" + w + ", h:" + h + ", l:" +
+                l + "}";
+    }
+}
@@ -0,0 +1,212 @@
+package com.crispin.crispinmobile.Physics;
+
+import com.crispin.crispinmobile.Rendering.Utilities.ModelMatrix;
+
+/**
+ * A bounding sphere in three dimensions. Bound spheres are computed for each mesh when it is
+ * loaded and can be transformed in to world space by a model matrix every frame without
+ * allocating. A sphere is cheaper to test than a bound box (e.g. against the planes of a view
+ * frustum) and does not grow as the object rotates.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see BoundBox3D
+ * @since 1.0
+ */
+public class BoundSphere {
+    public float x;
+    public float y;
+    public float z;
+    public float radius;
+
+    public BoundSphere(float x, float y, float z, float radius) {
+        set(x, y, z, radius);
+    }
+
+    public BoundSphere(BoundSphere other) {
+        this(other.x, other.y, other.z, other.radius);
+    }
+
+    public BoundSphere() {
+        this(0.0f, 0.0f, 0.0f, 0.0f);
+    }
+
+    public void set(float x, float y, float z, float radius) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.radius = radius;
+    }
+
+    /**
+     * Create a bounding sphere that contains a set of vertices. The centre is found with Ritter's
+     * algorithm (1990): a sphere is fitted between two distant vertices and then grown to include
+     * any vertex outside of it. The centre of the bound box of the vertices is also tried and
+     * whichever centre gives the smaller sphere is used. The radius is then the exact distance to
+     * the furthest vertex so every vertex is inside the sphere.
+     *
+     * @param vertices The vertex data
+     * @param offset   The index of the position of the first vertex
+     * @param stride   The number of floats from the start of one vertex to the next
+     * @param elements The number of elements in each position (2 or 3, z is 0 for 2D positions)
+     * @param count    The number of vertices
+     * @return A sphere containing the vertices (at the origin with no radius if there are none)
+     * @since 1.0
+     */
+    public static BoundSphere create(float[] vertices, int offset, int stride, int elements,
+                                     int count) {
+        if(count == 0) {
+            return new BoundSphere();
+        }
+
+        // Find a vertex far from the first, then the vertex furthest from that
+        final int a = findFurthest(vertices, offset, stride, elements, count, vertices[offset],
+                vertices[offset + 1], getZ(vertices, offset, elements));
+        final float ax = vertices[a];
+        final float ay = vertices[a + 1];
+        final float az = getZ(vertices, a, elements);
+        final int b = findFurthest(vertices, offset, stride, elements, count, ax, ay, az);
+        final float bx = vertices[b];
+        final float by = vertices[b + 1];
+        final float bz = getZ(vertices, b, elements);
+
+        double centerX = (ax + bx) * 0.5;
+        double centerY = (ay + by) * 0.5;
+        double centerZ = (az + bz) * 0.5;
+        double radius = Math.sqrt(distanceSq(ax, ay, az, centerX, centerY, centerZ));
+
+        // Grow the sphere towards each vertex outside of it, keeping the far side in place
+        for(int v = 0, i = offset; v < count; v++, i += stride) {
+            final float x = vertices[i];
+            final float y = vertices[i + 1];
+            final float z = getZ(vertices, i, elements);
+            final double distance = Math.sqrt(distanceSq(x, y, z, centerX, centerY, centerZ));
+            if(distance > radius) {
+                final double newRadius = (radius + distance) * 0.5;
+                final double move = (newRadius - radius) / distance;
+                centerX += (x - centerX) * move;
+                centerY += (y - centerY) * move;
+                centerZ += (z - centerZ) * move;
+                radius = newRadius;
+            }
+        }
+
+        // The radius is measured from the centre as it is stored
+        final float ritterCenterX = (float)centerX;
+        final float ritterCenterY = (float)centerY;
+        final float ritterCenterZ = (float)centerZ;
+        final float ritterRadius = findRadius(vertices, offset, stride, elements, count,
+                ritterCenterX, ritterCenterY, ritterCenterZ);
+
+        BoundBox3D box = BoundBox3D.create(vertices, offset, stride, elements, count);
+        final float boxCenterX = box.x + box.w * 0.5f;
+        final float boxCenterY = box.y + box.h * 0.5f;
+        final float boxCenterZ = box.z + box.l * 0.5f;
+        final float boxRadius = findRadius(vertices, offset, stride, elements, count, boxCenterX,
+                boxCenterY, boxCenterZ);
+
+        if(boxRadius < ritterRadius) {
+            return new BoundSphere(boxCenterX, boxCenterY, boxCenterZ, boxRadius);
+        }
+        return new BoundSphere(ritterCenterX, ritterCenterY, ritterCenterZ, ritterRadius);
+    }
+
+    public boolean collidesWith(BoundSphere other) {
+        final float dx = other.x - x;
+        final float dy = other.y - y;
+        final float dz = other.z - z;
+        final float radii = radius + other.radius;
+        return dx * dx + dy * dy + dz * dz < radii * radii;
+    }
+
+    public boolean collidesWith(BoundBox3D box) {
+        // The distance from the centre to the closest point of the box
+        final float dx = x - Math.max(box.x, Math.min(x, box.x + box.w));
+        final float dy = y - Math.max(box.y, Math.min(y, box.y + box.h));
+        final float dz = z - Math.max(box.z, Math.min(z, box.z + box.l));
+        return dx * dx + dy * dy + dz * dz < radius * radius;
+    }
+
+    public boolean contains(float px, float py, float pz) {
+        final float dx = px - x;
+        final float dy = py - y;
+        final float dz = pz - z;
+        return dx * dx + dy * dy + dz * dz <= radius * radius;
+    }
+
+    /**
+     * Transform the sphere by a model matrix. The centre is transformed and the radius is scaled
+     * by the largest scale of the matrix, so the result still contains the object if it is
+     * scaled differently on each axis. Nothing is allocated so this can be called every frame.
+     *
+     * @param modelMatrix The model matrix (an affine transformation)
+     * @param result      The sphere to store the result in (can be this sphere)
+     * @return The result sphere
+     * @since 1.0
+     */
+    public BoundSphere transform(ModelMatrix modelMatrix, BoundSphere result) {
+        final float[] m = modelMatrix.getFloats();
+
+        // The matrix is column major, the length of each column is the scale along that axis
+        final float scaleXSq = m[0] * m[0] + m[1] * m[1] + m[2] * m[2];
+        final float scaleYSq = m[4] * m[4] + m[5] * m[5] + m[6] * m[6];
+        final float scaleZSq = m[8] * m[8] + m[9] * m[9] + m[10] * m[10];
+        final float scale = (float)Math.sqrt(Math.max(scaleXSq, Math.max(scaleYSq, scaleZSq)));
+
+        result.set(m[0] * x + m[4] * y + m[8] * z + m[12],
+                m[1] * x + m[5] * y + m[9] * z + m[13],
+                m[2] * x + m[6] * y + m[10] * z + m[14],
+                radius * scale);
+        return result;
+    }
+
+    public BoundSphere transform(ModelMatrix modelMatrix) {
+        return transform(modelMatrix, new BoundSphere());
+    }
+
+    // The index of the vertex furthest from a point
+    private static int findFurthest(float[] vertices, int offset, int stride, int elements,
+                                    int count, float px, float py, float pz) {
+        int furthest = offset;
+        double furthestDistance = -1.0;
+        for(int v = 0, i = offset; v < count; v++, i += stride) {
+            final double distance = distanceSq(vertices[i], vertices[i + 1],
+                    getZ(vertices, i, elements), px, py, pz);
+            if(distance > furthestDistance) {
+                furthestDistance = distance;
+                furthest = i;
+            }
+        }
+        return furthest;
+    }
+
+    // The distance from a centre to the furthest vertex
+    private static float findRadius(float[] vertices, int offset, int stride, int elements,
+                                    int count, double centerX, double centerY, double centerZ) {
+        double radiusSq = 0.0;
+        for(int v = 0, i = offset; v < count; v++, i += stride) {
+            radiusSq = Math.max(radiusSq, distanceSq(vertices[i], vertices[i + 1],
+                    getZ(vertices, i, elements), centerX, centerY, centerZ));
+        }
+
+        // Round up so that the furthest vertex is not outside because of float precision
+        return Math.nextUp((float)Math.sqrt(radiusSq));
+    }
+
+    private static float getZ(float[] vertices, int index, int elements) {
+        return elements >= 3 ? vertices[index + 2] : 0.0f;
+    }
+
+    private static double distanceSq(double ax, double ay, double az, double bx, double by,
+                                     double bz) {
+        final double dx = ax - bx;
+        final double dy = ay - by;
+        final double dz = az - bz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundSphere{x:" + x + ", y:" + y + ", z:" + z + ", radius:" + radius + "}";
+    }
+}
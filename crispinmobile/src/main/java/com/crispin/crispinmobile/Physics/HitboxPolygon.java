@@ -10,9 +10,11 @@ public class HitboxPolygon implements Hitbox {
     private float[] data;
     private float[] transformedPoints;
 
-    // These lines are only initialised when attempting to render for the first time. Rendering will
-    // likely only occur in debugging scenarios to show hitboxes in development.
-    private Line[] lines;
+    // The outline is only initialised when attempting to render for the first time. Rendering will
+    // likely only occur in debugging scenarios to show hitboxes in development. All of the edges
+    // are drawn as one line list whose vertices are only updated when the points move.
+    private Line outline;
+    private boolean outlineDirty;
 
     // A reference to the points that should be used (either data or transformedPoints)
     float[] points;
@@ -30,6 +32,7 @@ public class HitboxPolygon implements Hitbox {
 
         // Allocate now so it does not need to be allocate every collision calculation
         this.axes = new float[data.length];
+        this.outlineDirty = true;
         calculateAxes();
     }
 
@@ -89,24 +92,22 @@ public class HitboxPolygon implements Hitbox {
         centerX /= numPoints;
         centerY /= numPoints;
 
+        outlineDirty = true;
         calculateAxes();
     }
 
     public void render(Camera2D camera2D) {
-        if (lines == null) {
-            // Initialise lines for debugging
-            this.lines = new Line[points.length / 2];
-            for (int i = 0; i < lines.length; i++) {
-                lines[i] = new Line();
-                lines[i].setColour(Colour.BLUE);
-            }
+        if (outline == null) {
+            // Initialise the outline for debugging
+            outline = new Line();
+            outline.setColour(Colour.BLUE);
         }
 
-        for (int i = 0; i < points.length; i += 2) {
-            int next = (i + 2) % points.length;
-            lines[i / 2].setPoints(points[i], points[i + 1], points[next], points[next + 1]);
-            lines[i / 2].render(camera2D);
+        if (outlineDirty) {
+            outline.setLoop(points);
+            outlineDirty = false;
         }
+        outline.render(camera2D);
     }
 
     private void calculateAxes() {
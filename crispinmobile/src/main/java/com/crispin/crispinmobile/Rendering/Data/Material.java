@@ -81,6 +81,10 @@ public class Material {
     // Ignore normal data in rendering
     private boolean ignoreNormalData;
 
+    // Incremented whenever a property changes so that render batches know when to look at the
+    // instances that use the material again
+    private int version;
+
     /**
      * Construct the material object. Includes all of the material data elements. The constructor
      * sets the texture, uv multiplier and colour of the material.
@@ -244,6 +248,7 @@ public class Material {
      */
     public void setIgnorePositionData(boolean state) {
         ignorePositionData = state;
+        markChanged();
     }
 
     /**
@@ -264,6 +269,7 @@ public class Material {
      */
     public void setIgnoreTexelData(boolean state) {
         ignoreTexelData = state;
+        markChanged();
     }
 
     /**
@@ -284,6 +290,7 @@ public class Material {
      */
     public void setIgnoreNormalData(boolean state) {
         ignoreNormalData = state;
+        markChanged();
     }
 
     /**
@@ -308,6 +315,7 @@ public class Material {
     public void setUvMultiplier(float sMultiplier, float tMultiplier) {
         this.uvMultiplier.w = sMultiplier;
         this.uvMultiplier.h = tMultiplier;
+        markChanged();
     }
 
     /**
@@ -332,6 +340,7 @@ public class Material {
     public void setUvMultiplier(Scale2D uvMultiplier) {
         this.uvMultiplier.w = uvMultiplier.w;
         this.uvMultiplier.h = uvMultiplier.h;
+        markChanged();
     }
 
     /**
@@ -346,6 +355,7 @@ public class Material {
     public void setUvOffset(float sOffset, float tOffset) {
         this.uvOffset.x = sOffset;
         this.uvOffset.y = tOffset;
+        markChanged();
     }
 
     /**
@@ -370,6 +380,7 @@ public class Material {
     public void setUvOffset(Vec2 uvOffset) {
         this.uvOffset.x = uvOffset.x;
         this.uvOffset.y = uvOffset.y;
+        markChanged();
     }
 
     /**
@@ -392,6 +403,7 @@ public class Material {
      */
     public void setTexture(Texture texture) {
         this.texture = texture;
+        markChanged();
     }
 
     /**
@@ -424,6 +436,7 @@ public class Material {
      */
     public void setDiffuseMap(final Texture texture) {
         this.diffuseMap = texture;
+        markChanged();
     }
 
     /**
@@ -445,6 +458,7 @@ public class Material {
      */
     public void setSpecularMap(final Texture texture) {
         this.specularMap = texture;
+        markChanged();
     }
 
     /**
@@ -477,6 +491,7 @@ public class Material {
      */
     public void setNormalMap(Texture texture) {
         this.normalMap = texture;
+        markChanged();
     }
 
     /**
@@ -503,5 +518,57 @@ public class Material {
         this.colour.green = colour.green;
         this.colour.blue = colour.blue;
         this.colour.alpha = colour.alpha;
+        markChanged();
+    }
+
+    /**
+     * Get the version of the material. The version changes whenever a property of the material is
+     * changed through one of its methods.
+     *
+     * @return The version of the material
+     * @since 1.0
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Mark the material as changed so that render batches and instance buffers read its properties
+     * again. Must be called after changing one of the public fields directly of a material that is
+     * drawn in a render batch.
+     *
+     * @since 1.0
+     */
+    public void markChanged() {
+        version++;
+    }
+
+    /**
+     * Check if the material can be drawn in the same instanced draw call as another material. This
+     * is the case if everything but the colour is the same, because the colour can be given to
+     * each instance while the rest of the material is shared by all of them.
+     *
+     * @param other The other material
+     * @return <code>true</code> if the materials only differ in colour, else <code>false</code>
+     * @since 1.0
+     */
+    public boolean isInstanceCompatible(final Material other) {
+        if(other == this) {
+            return true;
+        }
+
+        return texture == other.texture && diffuseMap == other.diffuseMap &&
+                specularMap == other.specularMap && normalMap == other.normalMap &&
+                uvMultiplier.w == other.uvMultiplier.w && uvMultiplier.h == other.uvMultiplier.h &&
+                uvOffset.x == other.uvOffset.x && uvOffset.y == other.uvOffset.y &&
+                isSameRGB(ambientStrength, other.ambientStrength) &&
+                isSameRGB(diffuseStrength, other.diffuseStrength) &&
+                isSameRGB(specularStrength, other.specularStrength) &&
+                shininess == other.shininess;
+    }
+
+    // Check if the red, green and blue channels of two colours are the same
+    private static boolean isSameRGB(final Colour a, final Colour b) {
+        return a.red == b.red && a.green == b.green && a.blue == b.blue;
     }
 }
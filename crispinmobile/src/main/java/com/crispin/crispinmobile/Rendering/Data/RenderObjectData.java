@@ -2,14 +2,22 @@ package com.crispin.crispinmobile.Rendering.Data;
 
 import com.crispin.crispinmobile.Rendering.Models.Model;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.GrowableFloatArray;
+import com.crispin.crispinmobile.Utilities.GrowableIntArray;
 import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.StagingArena;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 
 
 /**
  * RenderObjectData is a class designed to build vertex data based on position, texel, normal and
  * face data. This makes it suitable for building vertex data for the GPU from OBJ data formats.
+ * <p>
+ * The data is collected in growable primitive arrays so that adding a component does not box or
+ * allocate. When the data is processed, the vertices are written straight in to a direct buffer in
+ * the interleaved layout used in graphics memory (position, texel then normal per vertex), so no
+ * intermediate float arrays are created.
  *
  * @author Christian Benner
  * @version %I%, %G%
@@ -60,16 +68,16 @@ public class RenderObjectData {
     private static final int INVALID_ATTRIBUTE_INDEX = -1;
 
     // Array holding the position vertex data
-    private final ArrayList<Float> positionDataArray;
+    private final GrowableFloatArray positionDataArray;
 
     // Array holding the texel vertex data
-    private final ArrayList<Float> texelDataArray;
+    private final GrowableFloatArray texelDataArray;
 
     // Array holding the normal vertex data
-    private final ArrayList<Float> normalDataArray;
+    private final GrowableFloatArray normalDataArray;
 
     // Array holding the face data
-    private final ArrayList<Integer> faceDataArray;
+    private final GrowableIntArray faceDataArray;
 
     // The type of face data that is to be loaded
     private FaceData faceData;
@@ -104,10 +112,10 @@ public class RenderObjectData {
      * @since 1.0
      */
     public RenderObjectData() {
-        positionDataArray = new ArrayList<>();
-        texelDataArray = new ArrayList<>();
-        normalDataArray = new ArrayList<>();
-        faceDataArray = new ArrayList<>();
+        positionDataArray = new GrowableFloatArray();
+        texelDataArray = new GrowableFloatArray();
+        normalDataArray = new GrowableFloatArray();
+        faceDataArray = new GrowableIntArray();
         faceData = FaceData.NONE;
         renderMethod = Mesh.RenderMethod.NONE;
         positionStartIndex = UNUSED_DATA_ELEMENT;
@@ -240,9 +248,7 @@ public class RenderObjectData {
      * @since 1.0
      */
     public void addPositionData(float[] positionData) {
-        for(int i = 0; i < positionData.length; i++) {
-            positionDataArray.add(positionData[i]);
-        }
+        positionDataArray.add(positionData, 0, positionData.length);
     }
 
     /**
@@ -262,9 +268,7 @@ public class RenderObjectData {
      * @since 1.0
      */
     public void addTexelData(float[] texelData) {
-        for(int i = 0; i < texelData.length; i++) {
-            texelDataArray.add(texelData[i]);
-        }
+        texelDataArray.add(texelData, 0, texelData.length);
     }
 
     /**
@@ -284,9 +288,7 @@ public class RenderObjectData {
      * @since 1.0
      */
     public void addNormalData(float[] normalData) {
-        for(int i = 0; i < normalData.length; i++) {
-            normalDataArray.add(normalData[i]);
-        }
+        normalDataArray.add(normalData, 0, normalData.length);
     }
 
     /**
@@ -300,77 +302,105 @@ public class RenderObjectData {
     }
 
     /**
-     * Process the data. The function produces the vertex data based on positional, texel and normal
-     * face data.
+     * Get the number of vertices that the face data describes
      *
-     * @return A Mesh built from the processed data
+     * @return The number of vertices
      * @since 1.0
      */
-    public Mesh processData() {
-        final int NUMBER_OF_FACE_DATA = faceDataArray.size() / dataStride;
-
-        final int NUMBER_OF_POSITION_ELEMENTS = numberOfPositionComponents;
-        final int POSITION_BUFFER_SIZE = NUMBER_OF_POSITION_ELEMENTS * NUMBER_OF_FACE_DATA;
-
-        final int NUMBER_OF_TEXEL_ELEMENTS = numberOfTexelComponents;
-        final int TEXEL_BUFFER_SIZE = texelStartIndex == INVALID_ATTRIBUTE_INDEX ? 0 :
-                NUMBER_OF_TEXEL_ELEMENTS * NUMBER_OF_FACE_DATA;
-
-        final int NUMBER_OF_NORMAL_ELEMENTS = numberOfNormalComponents;
-        final int NORMAL_BUFFER_SIZE = normalStartIndex == INVALID_ATTRIBUTE_INDEX ? 0 :
-                NUMBER_OF_NORMAL_ELEMENTS * NUMBER_OF_FACE_DATA;
+    public int getVertexCount() {
+        return dataStride == 0 ? 0 : faceDataArray.size() / dataStride;
+    }
 
-        // Create a float buffer for all of the vertex data
-        float[] positionDataBuffer = new float[POSITION_BUFFER_SIZE];
-        float[] texelDataBuffer = new float[TEXEL_BUFFER_SIZE];
-        float[] normalDataBuffer = new float[NORMAL_BUFFER_SIZE];
+    /**
+     * Get the size of an interleaved vertex
+     *
+     * @return The size of a vertex in bytes
+     * @since 1.0
+     */
+    public int getVertexSize() {
+        return (numberOfPositionComponents + getNumTexelComponents() +
+                getNumNormalComponents()) * Mesh.BYTES_PER_FLOAT;
+    }
 
-        int positionDataBufferIndex = 0;
-        int texelDataBufferIndex = 0;
-        int normalDataBufferIndex = 0;
+    /**
+     * Write the vertices that the face data describes in to a buffer in the interleaved layout
+     * (position, texel then normal per vertex). The vertices are written from the position of the
+     * buffer, which is moved to the end of the vertices. The buffer must have at least
+     * <code>getVertexCount() * getVertexSize()</code> bytes remaining.
+     *
+     * @param buffer The buffer to write the vertices to, usually a direct buffer in native byte
+     *               order so that it can be uploaded without a copy
+     * @since 1.0
+     */
+    public void writeVertices(ByteBuffer buffer) {
+        final int numberOfPositionElements = numberOfPositionComponents;
+        final int numberOfTexelElements = getNumTexelComponents();
+        final int numberOfNormalElements = getNumNormalComponents();
 
-        // Determine how many elements the face data includes
-        int faceDataStride = 1;
-        if(texelStartIndex != INVALID_ATTRIBUTE_INDEX) {
-            faceDataStride++;
-        }
-        if(normalStartIndex != INVALID_ATTRIBUTE_INDEX) {
-            faceDataStride++;
-        }
+        final float[] positions = positionDataArray.getData();
+        final float[] texels = texelDataArray.getData();
+        final float[] normals = normalDataArray.getData();
+        final int[] faces = faceDataArray.getData();
+        final int faceDataSize = faceDataArray.size();
 
         // Iterate through the face data adding each position, texel and normal data for each
         // vertex. This should result in a data structure of:
         // v0: posX, posY, posZ, texU, texV, normX, normY, normZ
         // v1: posX, posY, posZ, texU, texV, normX, normY, normZ
-        for (int fi = 0; fi < faceDataArray.size(); fi += faceDataStride) {
+        for(int fi = 0; fi < faceDataSize; fi += dataStride) {
             // Add the vertex positions
-            for (int pi = 0; pi < NUMBER_OF_POSITION_ELEMENTS; pi++) {
-                positionDataBuffer[positionDataBufferIndex] = positionDataArray.get(((
-                        faceDataArray.get(fi + positionStartIndex) + FACE_DATA_INDEX_OFFSET) *
-                        NUMBER_OF_POSITION_ELEMENTS) + pi);
-                positionDataBufferIndex++;
+            final int position = (faces[fi + positionStartIndex] + FACE_DATA_INDEX_OFFSET) *
+                    numberOfPositionElements;
+            for(int pi = 0; pi < numberOfPositionElements; pi++) {
+                buffer.putFloat(positions[position + pi]);
             }
 
             // Add the vertex texel data
-            for (int ti = 0; ti < NUMBER_OF_TEXEL_ELEMENTS; ti++) {
-                texelDataBuffer[texelDataBufferIndex] = texelDataArray.get((((
-                        faceDataArray.get(fi + texelStartIndex) + FACE_DATA_INDEX_OFFSET) *
-                        NUMBER_OF_TEXEL_ELEMENTS) + ti));
-                texelDataBufferIndex++;
+            if(numberOfTexelElements != 0) {
+                final int texel = (faces[fi + texelStartIndex] + FACE_DATA_INDEX_OFFSET) *
+                        numberOfTexelElements;
+                for(int ti = 0; ti < numberOfTexelElements; ti++) {
+                    buffer.putFloat(texels[texel + ti]);
+                }
             }
 
             // Add the vertex normal data
-            for (int ni = 0; ni < NUMBER_OF_NORMAL_ELEMENTS; ni++) {
-                normalDataBuffer[normalDataBufferIndex] = normalDataArray.get((((
-                        faceDataArray.get(fi + normalStartIndex) + FACE_DATA_INDEX_OFFSET) *
-                        NUMBER_OF_NORMAL_ELEMENTS) + ni));
-                normalDataBufferIndex++;
+            if(numberOfNormalElements != 0) {
+                final int normal = (faces[fi + normalStartIndex] + FACE_DATA_INDEX_OFFSET) *
+                        numberOfNormalElements;
+                for(int ni = 0; ni < numberOfNormalElements; ni++) {
+                    buffer.putFloat(normals[normal + ni]);
+                }
             }
         }
+    }
+
+    /**
+     * Process the data. The function produces the vertex data based on positional, texel and normal
+     * face data. The vertices are written straight in to staging memory and uploaded from there.
+     *
+     * @return A Mesh built from the processed data
+     * @since 1.0
+     */
+    public Mesh processData() {
+        final ByteBuffer vertices = StagingArena.allocate(getVertexCount() * getVertexSize());
+        final int start = vertices.position();
+        writeVertices(vertices);
+        vertices.position(start);
+
+        return new Mesh(vertices, null, 0, Mesh.RenderMethod.TRIANGLES,
+                numberOfPositionComponents, getNumTexelComponents(), getNumNormalComponents(), 0,
+                0);
+    }
+
+    // The number of texel components in a vertex, zero if the face data has no texels
+    private int getNumTexelComponents() {
+        return texelStartIndex == INVALID_ATTRIBUTE_INDEX ? 0 : numberOfTexelComponents;
+    }
 
-        return new Mesh(positionDataBuffer, texelDataBuffer, normalDataBuffer,
-                Mesh.RenderMethod.TRIANGLES, numberOfPositionComponents, numberOfTexelComponents,
-                numberOfNormalComponents);
+    // The number of normal components in a vertex, zero if the face data has no normals
+    private int getNumNormalComponents() {
+        return normalStartIndex == INVALID_ATTRIBUTE_INDEX ? 0 : numberOfNormalComponents;
     }
 
     /**
@@ -0,0 +1,441 @@
+package com.crispin.crispinmobile.Rendering.Data;
+
+import com.crispin.crispinmobile.MeshLoading.MeshData;
+import com.crispin.crispinmobile.Rendering.Utilities.ModelMatrix;
+import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.WorkerExecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+
+/**
+ * Merges static triangle meshes that share a material into one set of vertex data per material,
+ * so that a scene made of many small objects can be drawn with one draw call per material. The
+ * vertices of each piece are transformed in to world space by its model matrix: positions by the
+ * whole matrix, normals by the inverse transpose and tangents/bi-tangents by the rotation and
+ * scale, all re-normalised. Pieces with a mirroring matrix have the winding of their triangles
+ * reversed so that they still face outwards.
+ * <p>
+ * Pieces are grouped by material (the same instance) and vertex layout. Each piece keeps the
+ * range of indices that it occupies in its batch so that it can be hidden later (see
+ * <code>Batch.getDrawRanges</code>). Pieces are written to separate parts of the merged arrays so
+ * large batches are transformed on multiple threads. The class does not depend on OpenGL.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see com.crispin.crispinmobile.Rendering.Utilities.StaticBatch
+ * @since 1.0
+ */
+public class StaticBatchBuilder {
+    // Tag used in logging output
+    private static final String TAG = "StaticBatchBuilder";
+
+    // Batches with fewer vertices than this are merged on the calling thread
+    public static final int PARALLEL_MIN_VERTICES = 16384;
+
+    // The number of vertices that make up a face
+    private static final int POINTS_PER_FACE = 3;
+
+    // Vectors with a squared length below this are left as they are (e.g. zero tangents)
+    private static final float EPSILON = 1e-12f;
+
+    /**
+     * The merged vertex data of the pieces that share a material
+     *
+     * @since 1.0
+     */
+    public static class Batch {
+        // The material of every piece in the batch
+        public final Material material;
+
+        // The merged vertex data in world space (always indexed)
+        public final VertexData vertexData;
+
+        // The ID of each piece in the batch, in the order that they are stored
+        public final int[] pieces;
+
+        // The first index of each piece
+        public final int[] firstIndex;
+
+        // The number of indices of each piece
+        public final int[] indexCount;
+
+        Batch(Material material, VertexData vertexData, int[] pieces, int[] firstIndex,
+              int[] indexCount) {
+            this.material = material;
+            this.vertexData = vertexData;
+            this.pieces = pieces;
+            this.firstIndex = firstIndex;
+            this.indexCount = indexCount;
+        }
+
+        /**
+         * Get the ranges of indices that draw the visible pieces. The pieces are stored one after
+         * the other, so visible pieces that are next to each other are drawn with one range.
+         *
+         * @param visible Visibility of each piece in the order of <code>pieces</code>
+         * @param first   Output first index of each range (at least one element per piece)
+         * @param count   Output number of indices of each range (at least one element per piece)
+         * @return The number of ranges
+         * @since 1.0
+         */
+        public int getDrawRanges(boolean[] visible, int[] first, int[] count) {
+            int ranges = 0;
+            boolean previousVisible = false;
+            for(int p = 0; p < pieces.length; p++) {
+                if(!visible[p]) {
+                    previousVisible = false;
+                    continue;
+                }
+
+                if(previousVisible) {
+                    count[ranges - 1] += indexCount[p];
+                } else {
+                    first[ranges] = firstIndex[p];
+                    count[ranges] = indexCount[p];
+                    ranges++;
+                }
+                previousVisible = true;
+            }
+            return ranges;
+        }
+    }
+
+    // A piece to merge
+    private static class Entry {
+        final int id;
+        final VertexData vertexData;
+        final float[] matrix;
+        final Material material;
+
+        // Where the piece is written in its batch
+        float[] targetVertices;
+        int[] targetIndices;
+        int vertexOffset;
+        int indexOffset;
+
+        Entry(int id, VertexData vertexData, float[] matrix, Material material) {
+            this.id = id;
+            this.vertexData = vertexData;
+            this.matrix = matrix;
+            this.material = material;
+        }
+
+        int getIndexCount() {
+            return vertexData.indices == null ? vertexData.vertexCount :
+                    vertexData.indices.length;
+        }
+    }
+
+    // Pieces can only be merged if they share a material instance and vertex layout
+    private static class BatchKey {
+        final Material material;
+        final int[] layout;
+
+        BatchKey(Material material, VertexData vertexData) {
+            this.material = material;
+            this.layout = new int[]{vertexData.elementsPerPosition, vertexData.elementsPerTexel,
+                    vertexData.elementsPerNormal, vertexData.elementsPerTangent,
+                    vertexData.elementsPerBitangent};
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof BatchKey)) {
+                return false;
+            }
+
+            BatchKey other = (BatchKey) o;
+            return material == other.material && Arrays.equals(layout, other.layout);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(material) * 31 + Arrays.hashCode(layout);
+        }
+    }
+
+    // The pieces that have been added
+    private final ArrayList<Entry> entries;
+
+    public StaticBatchBuilder() {
+        entries = new ArrayList<>();
+    }
+
+    /**
+     * Add a piece of loaded mesh data. The mesh must have been loaded with
+     * <code>MeshLoadProperties.keepVertexData</code> so that its vertex data is still available.
+     *
+     * @param meshData    The mesh data of the piece
+     * @param modelMatrix The transformation of the piece in to world space
+     * @param material    The material of the piece
+     * @return The ID of the piece, or -1 if it has no vertex data
+     * @since 1.0
+     */
+    public int add(MeshData meshData, ModelMatrix modelMatrix, Material material) {
+        if(meshData.vertexData == null) {
+            Logger.error(TAG, "Mesh '" + meshData.name + "' has no vertex data, load it with " +
+                    "keepVertexData to batch it");
+            return -1;
+        }
+        return add(meshData.vertexData, modelMatrix, material);
+    }
+
+    /**
+     * Add a piece of triangle vertex data. The model matrix is copied so it can be changed after
+     * adding.
+     *
+     * @param vertexData  The vertex data of the piece (triangles, indexed or in draw order)
+     * @param modelMatrix The transformation of the piece in to world space
+     * @param material    The material of the piece
+     * @return The ID of the piece, or -1 if it could not be added
+     * @since 1.0
+     */
+    public int add(VertexData vertexData, ModelMatrix modelMatrix, Material material) {
+        if(vertexData.elementsPerPosition < 2) {
+            Logger.error(TAG, "Vertex data without positions cannot be batched");
+            return -1;
+        }
+
+        final int id = entries.size();
+        entries.add(new Entry(id, vertexData, modelMatrix.getFloats().clone(), material));
+        return id;
+    }
+
+    /**
+     * Get the number of pieces that have been added
+     *
+     * @return The number of pieces
+     * @since 1.0
+     */
+    public int getPieceCount() {
+        return entries.size();
+    }
+
+    /**
+     * Merge the pieces. Batches with at least <code>PARALLEL_MIN_VERTICES</code> vertices in total
+     * are merged on multiple threads.
+     *
+     * @return A batch for each material and vertex layout, in the order they were first added
+     * @since 1.0
+     */
+    public ArrayList<Batch> build() {
+        int vertices = 0;
+        for(int i = 0; i < entries.size(); i++) {
+            vertices += entries.get(i).vertexData.vertexCount;
+        }
+        return build(vertices < PARALLEL_MIN_VERTICES ? 1 :
+                WorkerExecutor.getParallelism());
+    }
+
+    /**
+     * Merge the pieces on a given number of threads
+     *
+     * @param threads The number of threads to merge the pieces on
+     * @return A batch for each material and vertex layout, in the order they were first added
+     * @since 1.0
+     */
+    public ArrayList<Batch> build(int threads) {
+        LinkedHashMap<BatchKey, ArrayList<Entry>> groups = new LinkedHashMap<>();
+        for(int i = 0; i < entries.size(); i++) {
+            final Entry entry = entries.get(i);
+            final BatchKey key = new BatchKey(entry.material, entry.vertexData);
+            ArrayList<Entry> group = groups.get(key);
+            if(group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(entry);
+        }
+
+        // Allocate the merged arrays and find where each piece is written
+        final ArrayList<Batch> batches = new ArrayList<>(groups.size());
+        int totalVertices = 0;
+        for(ArrayList<Entry> group : groups.values()) {
+            final VertexData layout = group.get(0).vertexData;
+            final int[] pieces = new int[group.size()];
+            final int[] firstIndex = new int[group.size()];
+            final int[] indexCount = new int[group.size()];
+            int vertexCount = 0;
+            int indexTotal = 0;
+            for(int p = 0; p < group.size(); p++) {
+                final Entry entry = group.get(p);
+                entry.vertexOffset = vertexCount;
+                entry.indexOffset = indexTotal;
+                pieces[p] = entry.id;
+                firstIndex[p] = indexTotal;
+                indexCount[p] = entry.getIndexCount();
+                vertexCount += entry.vertexData.vertexCount;
+                indexTotal += indexCount[p];
+            }
+
+            final float[] vertices = new float[vertexCount * layout.getElementsPerVertex()];
+            final int[] indices = new int[indexTotal];
+            for(int p = 0; p < group.size(); p++) {
+                group.get(p).targetVertices = vertices;
+                group.get(p).targetIndices = indices;
+            }
+            totalVertices += vertexCount;
+
+            batches.add(new Batch(group.get(0).material, new VertexData(vertices, indices,
+                    layout.elementsPerPosition, layout.elementsPerTexel,
+                    layout.elementsPerNormal, layout.elementsPerTangent,
+                    layout.elementsPerBitangent), pieces, firstIndex, indexCount));
+        }
+
+        if(threads <= 1 || entries.size() <= 1) {
+            merge(0, entries.size());
+            return batches;
+        }
+
+        // Split the pieces in to ranges with a similar number of vertices. Every piece is written
+        // to its own part of the merged arrays so the ranges do not need to synchronise.
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(threads);
+        int start = 0;
+        long vertices = 0;
+        for(int t = 0; t < threads && start < entries.size(); t++) {
+            final long target = (long)totalVertices * (t + 1) / threads;
+            int end = start;
+            while(end < entries.size() && (vertices < target || end == start ||
+                    t == threads - 1)) {
+                vertices += entries.get(end).vertexData.vertexCount;
+                end++;
+            }
+
+            final int rangeStart = start;
+            final int rangeEnd = end;
+            tasks.add(() -> {
+                merge(rangeStart, rangeEnd);
+                return null;
+            });
+            start = end;
+        }
+        WorkerExecutor.invokeAll(tasks, "merging static batch");
+        return batches;
+    }
+
+    // Merge a range of the pieces
+    private void merge(int start, int end) {
+        for(int i = start; i < end; i++) {
+            final Entry entry = entries.get(i);
+            merge(entry, entry.targetVertices, entry.targetIndices);
+        }
+    }
+
+    // Transform the vertices of a piece and write them and its indices in to the merged arrays
+    private static void merge(Entry entry, float[] vertices, int[] indices) {
+        final VertexData source = entry.vertexData;
+        final float[] m = entry.matrix;
+        final int elementsPerPosition = source.elementsPerPosition;
+        final int elementsPerTexel = source.elementsPerTexel;
+        final int elementsPerNormal = source.elementsPerNormal;
+        final int elementsPerTangent = source.elementsPerTangent;
+        final int elementsPerBitangent = source.elementsPerBitangent;
+        final int elementsPerVertex = source.getElementsPerVertex();
+
+        // The matrix is column major, element (row, column) is at column * 4 + row. Normals are
+        // transformed by the inverse transpose of the upper 3x3, which is the cofactor matrix
+        // divided by the determinant. The length is normalised afterwards so only the sign of the
+        // determinant is needed.
+        final float c00 = m[5] * m[10] - m[6] * m[9];
+        final float c01 = m[6] * m[8] - m[4] * m[10];
+        final float c02 = m[4] * m[9] - m[5] * m[8];
+        final float c10 = m[9] * m[2] - m[10] * m[1];
+        final float c11 = m[10] * m[0] - m[8] * m[2];
+        final float c12 = m[8] * m[1] - m[9] * m[0];
+        final float c20 = m[1] * m[6] - m[2] * m[5];
+        final float c21 = m[2] * m[4] - m[0] * m[6];
+        final float c22 = m[0] * m[5] - m[1] * m[4];
+        final float determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        final boolean mirrored = determinant < 0.0f;
+        final float sign = mirrored ? -1.0f : 1.0f;
+
+        final float[] src = source.vertices;
+        int s = 0;
+        int d = entry.vertexOffset * elementsPerVertex;
+        for(int v = 0; v < source.vertexCount; v++) {
+            final float x = src[s];
+            final float y = src[s + 1];
+            final float z = elementsPerPosition >= 3 ? src[s + 2] : 0.0f;
+            vertices[d] = m[0] * x + m[4] * y + m[8] * z + m[12];
+            vertices[d + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+            if(elementsPerPosition >= 3) {
+                vertices[d + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+            }
+            for(int e = 3; e < elementsPerPosition; e++) {
+                vertices[d + e] = src[s + e];
+            }
+            s += elementsPerPosition;
+            d += elementsPerPosition;
+
+            System.arraycopy(src, s, vertices, d, elementsPerTexel);
+            s += elementsPerTexel;
+            d += elementsPerTexel;
+
+            if(elementsPerNormal == 3) {
+                final float nx = src[s];
+                final float ny = src[s + 1];
+                final float nz = src[s + 2];
+                normalise(vertices, d, sign * (c00 * nx + c01 * ny + c02 * nz),
+                        sign * (c10 * nx + c11 * ny + c12 * nz),
+                        sign * (c20 * nx + c21 * ny + c22 * nz));
+            } else {
+                System.arraycopy(src, s, vertices, d, elementsPerNormal);
+            }
+            s += elementsPerNormal;
+            d += elementsPerNormal;
+
+            transformDirection(m, src, s, vertices, d, elementsPerTangent);
+            s += elementsPerTangent;
+            d += elementsPerTangent;
+
+            transformDirection(m, src, s, vertices, d, elementsPerBitangent);
+            s += elementsPerBitangent;
+            d += elementsPerBitangent;
+        }
+
+        // Offset the indices to the position of the vertices in the batch, reversing the winding
+        // of mirrored pieces
+        final int[] sourceIndices = source.indices;
+        final int indexCount = entry.getIndexCount();
+        final int vertexOffset = entry.vertexOffset;
+        for(int i = 0, o = entry.indexOffset; i < indexCount; i++, o++) {
+            int corner = i;
+            if(mirrored && indexCount % POINTS_PER_FACE == 0) {
+                final int faceCorner = i % POINTS_PER_FACE;
+                corner = faceCorner == 0 ? i : i - faceCorner + POINTS_PER_FACE - faceCorner;
+            }
+            indices[o] = vertexOffset + (sourceIndices == null ? corner : sourceIndices[corner]);
+        }
+    }
+
+    // Transform a direction (tangent or bi-tangent) by the upper 3x3 of the matrix
+    private static void transformDirection(float[] m, float[] src, int s, float[] vertices, int d,
+                                           int elements) {
+        if(elements != 3) {
+            System.arraycopy(src, s, vertices, d, elements);
+            return;
+        }
+
+        final float x = src[s];
+        final float y = src[s + 1];
+        final float z = src[s + 2];
+        normalise(vertices, d, m[0] * x + m[4] * y + m[8] * z, m[1] * x + m[5] * y + m[9] * z,
+                m[2] * x + m[6] * y + m[10] * z);
+    }
+
+    private static void normalise(float[] target, int i, float x, float y, float z) {
+        final float lengthSq = x * x + y * y + z * z;
+        if(lengthSq > EPSILON) {
+            final float inverseLength = 1.0f / (float)Math.sqrt(lengthSq);
+            x *= inverseLength;
+            y *= inverseLength;
+            z *= inverseLength;
+        }
+        target[i] = x;
+        target[i + 1] = y;
+        target[i + 2] = z;
+    }
+}
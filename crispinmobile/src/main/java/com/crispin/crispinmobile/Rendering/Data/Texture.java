@@ -2,8 +2,8 @@ package com.crispin.crispinmobile.Rendering.Data;
 
 import static android.opengl.GLES30.GL_INVALID_VALUE;
 import static android.opengl.GLES30.glDeleteTextures;
-import static android.opengl.GLES30.glGenTextures;
 
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 import com.crispin.crispinmobile.Utilities.TextureCache;
 
@@ -70,6 +70,7 @@ public abstract class Texture {
 
         // Remove the texture from video memory
         glDeleteTextures(1, TEMP_BUFFER, 0);
+        GLStateCache.onTextureDeleted(TEMP_BUFFER[0]);
 
         glTextureID = GL_INVALID_VALUE;
     }
@@ -7,8 +7,6 @@ import static android.opengl.GLES30.GL_TEXTURE_MIN_FILTER;
 import static android.opengl.GLES30.GL_TEXTURE_WRAP_S;
 import static android.opengl.GLES30.GL_TEXTURE_WRAP_T;
 import static android.opengl.GLES30.GL_UNPACK_ALIGNMENT;
-import static android.opengl.GLES30.glBindTexture;
-import static android.opengl.GLES30.glDeleteTextures;
 import static android.opengl.GLES30.glGenTextures;
 import static android.opengl.GLES30.glGenerateMipmap;
 import static android.opengl.GLES30.glPixelStorei;
@@ -20,11 +18,13 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 
 import com.crispin.crispinmobile.Crispin;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 import com.crispin.crispinmobile.Utilities.Logger;
 import com.crispin.crispinmobile.Utilities.TextureCache;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Texture class contains texture data and information about that texture such as width and height.
@@ -69,6 +69,32 @@ public class TextureResource extends Texture {
     // ByteBuffer containing the texture bitmap data
     private final ByteBuffer buffer;
 
+    /**
+     * The pixels of an image resource that has been decoded ahead of its upload. Decoding can be
+     * done on any thread so that only the upload is left for the GL thread.
+     *
+     * @see #decode(int)
+     * @since 1.0
+     */
+    public static class DecodedImage {
+        // The resource ID of the image file
+        public final int resourceId;
+
+        // The size of the image in pixels
+        public final int width;
+        public final int height;
+
+        // The pixels of the image in the layout that is uploaded
+        public final ByteBuffer pixels;
+
+        DecodedImage(int resourceId, int width, int height, ByteBuffer pixels) {
+            this.resourceId = resourceId;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
     /**
      * Create a texture object using a resource ID and texture options
      *
@@ -136,6 +162,59 @@ public class TextureResource extends Texture {
         loadTexture(buffer);
     }
 
+    /**
+     * Create a texture object from an image resource that has already been decoded. Only the
+     * upload to graphics memory is done, so this is the part of loading a texture that has to
+     * happen on the GL thread. The texture is reloaded from its resource if the context is lost.
+     *
+     * @param image   The decoded image resource
+     * @param options Parameters to apply to the texture
+     * @see #decode(int)
+     * @since 1.0
+     */
+    public TextureResource(DecodedImage image, TextureOptions options) {
+        this.resourceId = image.resourceId;
+        this.width = image.width;
+        this.height = image.height;
+        this.options = options;
+        buffer = null;
+
+        loadTexture(image.pixels);
+    }
+
+    /**
+     * Create a texture object from an image resource that has already been decoded. Default
+     * options/parameters will be used.
+     *
+     * @param image The decoded image resource
+     * @see #decode(int)
+     * @since 1.0
+     */
+    public TextureResource(DecodedImage image) {
+        this(image, DEFAULT_OPTIONS);
+    }
+
+    /**
+     * Decode an image resource ready to be uploaded as a texture. Does not use OpenGL so can be
+     * called on any thread.
+     *
+     * @param resourceId The resource ID of the image file
+     * @return The decoded image, or <code>null</code> if the resource could not be decoded
+     * @since 1.0
+     */
+    public static DecodedImage decode(int resourceId) {
+        final Bitmap bitmap = resourceToBitmap(resourceId);
+        if (bitmap == null) {
+            Logger.error(TAG, "Failed to decode texture resource: ID[" + resourceId + "]");
+            return null;
+        }
+
+        final DecodedImage image = new DecodedImage(resourceId, bitmap.getWidth(),
+                bitmap.getHeight(), bitmapToBuffer(bitmap));
+        bitmap.recycle();
+        return image;
+    }
+
     /**
      * Create a texture object using a resource ID of an image file. Default options/parameters will
      * be used.
@@ -181,7 +260,8 @@ public class TextureResource extends Texture {
      * @since 1.0
      */
     private static ByteBuffer bitmapToBuffer(Bitmap bitmap) {
-        ByteBuffer byteBuffer = ByteBuffer.allocate(bitmap.getByteCount());
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(bitmap.getByteCount())
+                .order(ByteOrder.nativeOrder());
         bitmap.copyPixelsToBuffer(byteBuffer);
         byteBuffer.rewind();
         return byteBuffer;
@@ -196,7 +276,8 @@ public class TextureResource extends Texture {
      * @since 1.0
      */
     private static ByteBuffer arrayToBuffer(byte[] byteArray) {
-        ByteBuffer byteBuffer = ByteBuffer.allocate(byteArray.length);
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(byteArray.length)
+                .order(ByteOrder.nativeOrder());
         byteBuffer.put(byteArray);
         byteBuffer.rewind();
         return byteBuffer;
@@ -246,7 +327,7 @@ public class TextureResource extends Texture {
 
         glTextureID = glTextureId[0];
 
-        glBindTexture(GL_TEXTURE_2D, glTextureID);
+        GLStateCache.bindTexture(GL_TEXTURE_2D, glTextureID);
 
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, options.minFilter);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, options.magFilter);
@@ -268,7 +349,7 @@ public class TextureResource extends Texture {
         }
 
         glGenerateMipmap(GL_TEXTURE_2D);
-        glBindTexture(GL_TEXTURE_2D, 0);
+        GLStateCache.bindTexture(GL_TEXTURE_2D, 0);
 
         // Register the texture with the shader cache
         TextureCache.registerTexture(resourceId, this);
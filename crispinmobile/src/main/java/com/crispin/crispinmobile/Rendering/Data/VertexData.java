@@ -0,0 +1,272 @@
+package com.crispin.crispinmobile.Rendering.Data;
+
+/**
+ * VertexData holds the interleaved vertex data of a mesh before it is uploaded to graphics memory.
+ * Position, texel and normal data is combined into one array and tangents/bi-tangents are
+ * calculated when the data supports normal mapping. The class does not depend on OpenGL so that
+ * vertex data can also be built offline (e.g. when converting models to the binary mesh format).
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see com.crispin.crispinmobile.Rendering.Utilities.Mesh
+ * @since 1.0
+ */
+public class VertexData {
+    // The number of bytes in a float
+    private static final int BYTES_PER_FLOAT = 4;
+
+    // The number of bytes in a short
+    private static final int BYTES_PER_SHORT = 2;
+
+    // The number of bytes in an int
+    private static final int BYTES_PER_INT = 4;
+
+    // The highest number of vertices that can be indexed with unsigned shorts
+    private static final int MAX_SHORT_INDEXED_VERTICES = 65536;
+
+    // Interleaved vertex data (position, texel, normal, tangent, bi-tangent)
+    public final float[] vertices;
+
+    // Vertex indices, or null if the vertices are in draw order
+    public final int[] indices;
+
+    // The number of elements that are in the position data
+    public final int elementsPerPosition;
+
+    // The number of elements that are in the texel data
+    public final int elementsPerTexel;
+
+    // The number of elements that are in the normal data
+    public final int elementsPerNormal;
+
+    // The number of elements that are in the tangent data
+    public final int elementsPerTangent;
+
+    // The number of elements that are in the bi-tangent data
+    public final int elementsPerBitangent;
+
+    // Number of vertices
+    public final int vertexCount;
+
+    /**
+     * Create vertex data from multiple buffers containing different forms of vertex data. For the
+     * buffers that you are not providing data for, put <code>null</code>.
+     *
+     * @param positionBuffer      Float buffer containing the position data
+     * @param texelBuffer         Float buffer containing the texel data, or <code>null</code> if
+     *                            no texel data is being provided
+     * @param normalBuffer        Float buffer containing the normal data, or <code>null</code> if
+     *                            no normal data is being provided
+     * @param indexBuffer         Int buffer containing the vertex indices, or <code>null</code> if
+     *                            the vertex data is in draw order
+     * @param elementsPerPosition The number of components the position data is comprised of
+     * @param elementsPerTexel    The number of components that the texel data is comprised of
+     * @param elementsPerNormal   The number components that the normal data is comprised of
+     * @since 1.0
+     */
+    public VertexData(float[] positionBuffer, float[] texelBuffer, float[] normalBuffer,
+                      int[] indexBuffer, int elementsPerPosition, int elementsPerTexel,
+                      int elementsPerNormal) {
+        this.indices = indexBuffer;
+        this.elementsPerPosition = positionBuffer == null ? 0 : elementsPerPosition;
+        this.elementsPerTexel = texelBuffer == null ? 0 : elementsPerTexel;
+        this.elementsPerNormal = normalBuffer == null ? 0 : elementsPerNormal;
+
+        // Normal maps require tangent and bi-tangents to be calculated for each face in order to
+        // point the normals on the map in the correct direction. To have a functioning normal map
+        // you must have texture co-ordinates provided and normals on the mesh.
+        float[] tangents = null;
+        float[] bitangents = null;
+        if(this.elementsPerPosition == 3 && this.elementsPerTexel == 2 &&
+                this.elementsPerNormal == 3) {
+            int numVertices = positionBuffer.length / elementsPerPosition;
+            elementsPerTangent = 3;
+            elementsPerBitangent = 3;
+            tangents = new float[numVertices * elementsPerTangent];
+            bitangents = new float[numVertices * elementsPerBitangent];
+            TangentSpaceBuilder.build(positionBuffer, elementsPerPosition, texelBuffer,
+                    elementsPerTexel, normalBuffer, elementsPerNormal, indexBuffer, numVertices,
+                    tangents, bitangents);
+        } else {
+            elementsPerTangent = 0;
+            elementsPerBitangent = 0;
+        }
+
+        // Turn the individual component data into vertex data
+        vertices = toVertexData(positionBuffer, texelBuffer, normalBuffer, tangents, bitangents,
+                this.elementsPerPosition, this.elementsPerTexel, this.elementsPerNormal,
+                elementsPerTangent, elementsPerBitangent);
+        final int elementsPerVertex = getElementsPerVertex();
+        vertexCount = elementsPerVertex == 0 ? 0 : vertices.length / elementsPerVertex;
+    }
+
+    /**
+     * Create vertex data from data that is already interleaved (position, texel, normal, tangent,
+     * bi-tangent). The tangent space is not rebuilt.
+     *
+     * @param vertices             Interleaved vertex data
+     * @param indices              Vertex indices, or <code>null</code> if the vertices are in draw
+     *                             order
+     * @param elementsPerPosition  The number of components the position data is comprised of
+     * @param elementsPerTexel     The number of components that the texel data is comprised of
+     * @param elementsPerNormal    The number components that the normal data is comprised of
+     * @param elementsPerTangent   The number components that the tangent data is comprised of
+     * @param elementsPerBitangent The number components that the bi-tangent data is comprised of
+     * @see StaticBatchBuilder
+     * @since 1.0
+     */
+    public VertexData(float[] vertices, int[] indices, int elementsPerPosition,
+                      int elementsPerTexel, int elementsPerNormal, int elementsPerTangent,
+                      int elementsPerBitangent) {
+        this.vertices = vertices;
+        this.indices = indices;
+        this.elementsPerPosition = elementsPerPosition;
+        this.elementsPerTexel = elementsPerTexel;
+        this.elementsPerNormal = elementsPerNormal;
+        this.elementsPerTangent = elementsPerTangent;
+        this.elementsPerBitangent = elementsPerBitangent;
+        final int elementsPerVertex = getElementsPerVertex();
+        vertexCount = elementsPerVertex == 0 ? 0 : vertices.length / elementsPerVertex;
+    }
+
+    /**
+     * Get the number of floats that make up one vertex
+     *
+     * @return The number of floats per vertex
+     * @since 1.0
+     */
+    public int getElementsPerVertex() {
+        return elementsPerPosition + elementsPerTexel + elementsPerNormal + elementsPerTangent +
+                elementsPerBitangent;
+    }
+
+    /**
+     * Get the number of bytes between the start of each vertex
+     *
+     * @return The vertex stride in bytes
+     * @since 1.0
+     */
+    public int getStride() {
+        return getElementsPerVertex() * BYTES_PER_FLOAT;
+    }
+
+    /**
+     * Get the number of bytes that the vertex and index data will occupy in graphics memory. Indices
+     * are stored as unsigned shorts when the vertex count allows it.
+     *
+     * @return The size of the vertex and index buffers in bytes
+     * @since 1.0
+     */
+    public int getSizeBytes() {
+        return getSizeBytes(false);
+    }
+
+    /**
+     * Get the number of bytes that the vertex and index data will occupy in graphics memory when
+     * stored in the float or compact vertex layout
+     *
+     * @param compact True for the size in the compact vertex layout, false for floats
+     * @return The size of the vertex and index buffers in bytes
+     * @see VertexLayout
+     * @since 1.0
+     */
+    public int getSizeBytes(boolean compact) {
+        int size = compact ? vertexCount * new VertexLayout(this, true).stride :
+                vertices.length * BYTES_PER_FLOAT;
+        if(indices != null) {
+            size += indices.length * (vertexCount <= MAX_SHORT_INDEXED_VERTICES ?
+                    BYTES_PER_SHORT : BYTES_PER_INT);
+        }
+        return size;
+    }
+
+    /**
+     * Turn position, texel and normal buffers into one vertex data buffer. Provide null to buffers
+     * that you do not wish to provide.
+     *
+     * @param positionBuffer        Array of floats containing position data (or null if not in use)
+     * @param texelBuffer           Array of floats containing texel data (or null if not in use)
+     * @param normalBuffer          Array of floats containing normal data (or null if not in use)
+     * @param tangentBuffer         Array of floats containing tangent data (or null if not in use)
+     * @param bitangentBuffer       Array of floats containing bi-tangent data (or null if not in use)
+     * @param elementsPerPosition   Number of elements per position data e.g. XY = 2 and XYZ = 3
+     * @param elementsPerTexel      Number of elements per texel data e.g. ST = 2
+     * @param elementsPerNormal     Number of elements per normal data e.g. XY = 2 and XYZ = 3
+     * @param elementsPerTangent    Number of elements per tangent data e.g. XY = 2 and XYZ = 3
+     * @param elementsPerBiTangent  Number of elements per bi-tangent data e.g. XY = 2 and XYZ = 3
+     * @return                      Array of floats representing vertex data. The data structure of
+     *                              the array is:
+     *                                  v0: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
+     *                                  v1: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
+     *                                  v2: ...
+     * @since                       1.0
+     */
+    private static float[] toVertexData(float[] positionBuffer, float[] texelBuffer, float[] normalBuffer,
+                                        float[] tangentBuffer, float[] bitangentBuffer,
+                                        int elementsPerPosition, int elementsPerTexel,
+                                        int elementsPerNormal, int elementsPerTangent,
+                                        int elementsPerBiTangent) {
+        final int posBufferLength = positionBuffer == null ? 0 : positionBuffer.length;
+        final int texBufferLength = texelBuffer == null ? 0 : texelBuffer.length;
+        final int norBufferLength = normalBuffer == null ? 0 : normalBuffer.length;
+        final int tanBufferLength = tangentBuffer == null ? 0 : tangentBuffer.length;
+        final int btnBufferLength = bitangentBuffer == null ? 0 : bitangentBuffer.length;
+        final int vertexBufferLength = posBufferLength + texBufferLength + norBufferLength + tanBufferLength + btnBufferLength;
+
+        // Copy the data into the vertex data buffer. This should result in a data structure of:
+        // v0: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
+        // v1: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
+        float[] vertexData = new float[vertexBufferLength];
+        int stride = elementsPerPosition + elementsPerTexel + elementsPerNormal + elementsPerTangent + elementsPerBiTangent;
+        int posBufferIndex = 0;
+        int texBufferIndex = 0;
+        int norBufferIndex = 0;
+        int tanBufferIndex = 0;
+        int btnBufferIndex = 0;
+
+        for(int i = 0; i < vertexBufferLength; i += stride) {
+            int offset = 0;
+            if(positionBuffer != null) {
+                for (int pi = 0; pi < elementsPerPosition; pi++) {
+                    vertexData[i + pi] = positionBuffer[posBufferIndex];
+                    posBufferIndex++;
+                }
+                offset += elementsPerPosition;
+            }
+
+            if(texelBuffer != null) {
+                for(int ti = 0; ti < elementsPerTexel; ti++) {
+                    vertexData[i + offset + ti] = texelBuffer[texBufferIndex];
+                    texBufferIndex++;
+                }
+                offset += elementsPerTexel;
+            }
+
+            if(normalBuffer != null) {
+                for (int ni = 0; ni < elementsPerNormal; ni++) {
+                    vertexData[i + offset + ni] = normalBuffer[norBufferIndex];
+                    norBufferIndex++;
+                }
+                offset += elementsPerNormal;
+            }
+
+            if(tangentBuffer != null) {
+                for (int ri = 0; ri < elementsPerTangent; ri++) {
+                    vertexData[i + offset + ri] = tangentBuffer[tanBufferIndex];
+                    tanBufferIndex++;
+                }
+                offset += elementsPerTangent;
+            }
+
+            if(bitangentBuffer != null) {
+                for (int bi = 0; bi < elementsPerBiTangent; bi++) {
+                    vertexData[i + offset + bi] = bitangentBuffer[btnBufferIndex];
+                    btnBufferIndex++;
+                }
+                offset += elementsPerBiTangent;
+            }
+        }
+
+        return vertexData;
+    }
+}
@@ -0,0 +1,199 @@
+package com.crispin.crispinmobile.Rendering.Data;
+
+/**
+ * VertexLayout describes how each attribute of a vertex (position, texel, normal, tangent and
+ * bi-tangent) is stored in graphics memory: the type and number of components it is submitted as
+ * and its offset from the start of the vertex. The attributes are always in that order.
+ * <p>
+ * The default layout stores every component as a 32-bit float. The compact layout stores positions
+ * and texels as half floats, and normals, tangents and bi-tangents as signed normalised
+ * 2_10_10_10 integers, roughly halving the size of each vertex (32 bytes down to 16 bytes for a
+ * position, texel and normal vertex). Half floats have 11 bits of precision, so positions of large
+ * models (far from the origin) and texels that tile many times lose detail. Attributes are padded to
+ * 4 byte boundaries, a three component half float position is therefore stored with a fourth
+ * component of 1.
+ * <p>
+ * The type constants are the values of the OpenGL ES enums so that layouts can be created without
+ * OpenGL.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see VertexData
+ * @see VertexPacker
+ * @since 1.0
+ */
+public class VertexLayout {
+    // GL_FLOAT: 32-bit float components
+    public static final int TYPE_FLOAT = 0x1406;
+
+    // GL_HALF_FLOAT: 16-bit float components
+    public static final int TYPE_HALF_FLOAT = 0x140B;
+
+    // GL_INT_2_10_10_10_REV: three 10-bit and one 2-bit signed component packed in to 32 bits
+    public static final int TYPE_INT_2_10_10_10_REV = 0x8D9F;
+
+    // Position attribute
+    public static final int POSITION = 0;
+
+    // Texture co-ordinate attribute
+    public static final int TEXEL = 1;
+
+    // Normal attribute
+    public static final int NORMAL = 2;
+
+    // Tangent attribute
+    public static final int TANGENT = 3;
+
+    // Bi-tangent attribute
+    public static final int BITANGENT = 4;
+
+    // The number of attributes in a vertex
+    public static final int NUM_ATTRIBUTES = 5;
+
+    // The number of bytes in a float
+    private static final int BYTES_PER_FLOAT = 4;
+
+    // The number of bytes in a half float
+    private static final int BYTES_PER_HALF_FLOAT = 2;
+
+    // The number of bytes in a packed 2_10_10_10 value
+    private static final int BYTES_PER_PACKED = 4;
+
+    // The number of components that a packed 2_10_10_10 value must be submitted as
+    private static final int PACKED_COMPONENTS = 4;
+
+    // If the layout is compact (half float and packed attributes)
+    public final boolean compact;
+
+    // The number of bytes between the start of each vertex
+    public final int stride;
+
+    // The number of float components of each attribute in the vertex data
+    private final int[] elements;
+
+    // The number of components each attribute is submitted as
+    private final int[] components;
+
+    // The type of each attribute
+    private final int[] types;
+
+    // The offset of each attribute from the start of the vertex in bytes
+    private final int[] offsets;
+
+    /**
+     * Create a vertex layout
+     *
+     * @param elementsPerPosition  The number of components the position data is comprised of
+     * @param elementsPerTexel     The number of components that the texel data is comprised of
+     * @param elementsPerNormal    The number components that the normal data is comprised of
+     * @param elementsPerTangent   The number components that the tangent data is comprised of
+     * @param elementsPerBitangent The number components that the bi-tangent data is comprised of
+     * @param compact              True to use the compact layout, false to use floats
+     * @since 1.0
+     */
+    public VertexLayout(int elementsPerPosition, int elementsPerTexel, int elementsPerNormal,
+                        int elementsPerTangent, int elementsPerBitangent, boolean compact) {
+        this.compact = compact;
+        elements = new int[]{elementsPerPosition, elementsPerTexel, elementsPerNormal,
+                elementsPerTangent, elementsPerBitangent};
+        components = new int[NUM_ATTRIBUTES];
+        types = new int[NUM_ATTRIBUTES];
+        offsets = new int[NUM_ATTRIBUTES];
+
+        int offset = 0;
+        for(int attribute = 0; attribute < NUM_ATTRIBUTES; attribute++) {
+            final int count = elements[attribute];
+            offsets[attribute] = offset;
+            if(count == 0) {
+                continue;
+            }
+
+            if(!compact) {
+                types[attribute] = TYPE_FLOAT;
+                components[attribute] = count;
+                offset += count * BYTES_PER_FLOAT;
+            } else if(attribute >= NORMAL && count == 3) {
+                // Direction vectors are unit length so fit in to signed normalised components
+                types[attribute] = TYPE_INT_2_10_10_10_REV;
+                components[attribute] = PACKED_COMPONENTS;
+                offset += BYTES_PER_PACKED;
+            } else {
+                // Pad to an even number of half floats to keep the attributes 4 byte aligned
+                types[attribute] = TYPE_HALF_FLOAT;
+                components[attribute] = count + (count & 1);
+                offset += components[attribute] * BYTES_PER_HALF_FLOAT;
+            }
+        }
+        stride = offset;
+    }
+
+    /**
+     * Create the layout of some vertex data
+     *
+     * @param vertexData The vertex data
+     * @param compact    True to use the compact layout, false to use floats
+     * @since 1.0
+     */
+    public VertexLayout(VertexData vertexData, boolean compact) {
+        this(vertexData.elementsPerPosition, vertexData.elementsPerTexel,
+                vertexData.elementsPerNormal, vertexData.elementsPerTangent,
+                vertexData.elementsPerBitangent, compact);
+    }
+
+    /**
+     * Get the number of float components of an attribute in the vertex data
+     *
+     * @param attribute The attribute (e.g. <code>POSITION</code>)
+     * @return The number of components in the vertex data, zero if the vertex does not have the
+     *         attribute
+     * @since 1.0
+     */
+    public int getElements(int attribute) {
+        return elements[attribute];
+    }
+
+    /**
+     * Get the number of components an attribute is submitted to the shader as. This can be more
+     * than the number of elements in the vertex data because of padding.
+     *
+     * @param attribute The attribute (e.g. <code>POSITION</code>)
+     * @return The number of components
+     * @since 1.0
+     */
+    public int getComponents(int attribute) {
+        return components[attribute];
+    }
+
+    /**
+     * Get the type of an attribute
+     *
+     * @param attribute The attribute (e.g. <code>POSITION</code>)
+     * @return The type of the attribute (e.g. <code>TYPE_HALF_FLOAT</code>)
+     * @since 1.0
+     */
+    public int getType(int attribute) {
+        return types[attribute];
+    }
+
+    /**
+     * Check if an attribute is stored as normalised integers, mapped to -1 to 1 in the shader
+     *
+     * @param attribute The attribute (e.g. <code>POSITION</code>)
+     * @return True if the attribute is normalised, else false
+     * @since 1.0
+     */
+    public boolean isNormalised(int attribute) {
+        return types[attribute] == TYPE_INT_2_10_10_10_REV;
+    }
+
+    /**
+     * Get the offset of an attribute from the start of the vertex
+     *
+     * @param attribute The attribute (e.g. <code>POSITION</code>)
+     * @return The offset in bytes
+     * @since 1.0
+     */
+    public int getOffset(int attribute) {
+        return offsets[attribute];
+    }
+}
@@ -0,0 +1,242 @@
+package com.crispin.crispinmobile.Rendering.Data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * VertexPacker converts vertex data in to the types of a vertex layout: half floats and signed
+ * normalised 2_10_10_10 integers. The conversions follow the OpenGL ES 3.0 specification so that
+ * the values unpacked here are the values the shaders receive. The class does not depend on OpenGL
+ * and is comprised of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see VertexLayout
+ * @since 1.0
+ */
+public class VertexPacker {
+    // The number of bytes in a float
+    private static final int BYTES_PER_FLOAT = 4;
+
+    // The number of bytes in a half float
+    private static final int BYTES_PER_HALF_FLOAT = 2;
+
+    // The largest value of a signed 10-bit component
+    private static final int MAX_10_BIT = 511;
+
+    // The largest value of a signed 2-bit component
+    private static final int MAX_2_BIT = 1;
+
+    // The number of bits in each packed component
+    private static final int COMPONENT_BITS = 10;
+
+    // The number of bits in the fourth (w) packed component
+    private static final int W_COMPONENT_BITS = 2;
+
+    // Index of the fourth (w) component
+    private static final int W_COMPONENT = 3;
+
+    /**
+     * Convert a float to a half float (IEEE 754 binary16), rounding to the nearest value. Values
+     * that are too large become infinity and values that are too small become zero.
+     *
+     * @param value The float value
+     * @return The bits of the half float
+     * @since 1.0
+     */
+    public static short toHalf(float value) {
+        final int bits = Float.floatToRawIntBits(value);
+        final int sign = (bits >>> 16) & 0x8000;
+        final int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        // Infinity and NaN (keeping NaN a NaN)
+        if(exponent == 0xFF) {
+            return (short)(sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+
+        final int halfExponent = exponent - 127 + 15;
+        if(halfExponent >= 0x1F) {
+            return (short)(sign | 0x7C00);
+        }
+
+        int half;
+        int remainder;
+        int halfway;
+        if(halfExponent <= 0) {
+            // Too small for a normal half float, store as a sub-normal or zero
+            if(halfExponent < -10) {
+                return (short)sign;
+            }
+
+            mantissa |= 0x800000;
+            final int shift = 14 - halfExponent;
+            half = mantissa >> shift;
+            remainder = mantissa & ((1 << shift) - 1);
+            halfway = 1 << (shift - 1);
+        } else {
+            half = (halfExponent << 10) | (mantissa >> 13);
+            remainder = mantissa & 0x1FFF;
+            halfway = 0x1000;
+        }
+
+        // Round to nearest, ties to even (a carry in to the exponent is still correct)
+        if(remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+            half++;
+        }
+        return (short)(sign | half);
+    }
+
+    /**
+     * Convert a half float (IEEE 754 binary16) to a float. Every half float can be represented
+     * exactly.
+     *
+     * @param half The bits of the half float
+     * @return The float value
+     * @since 1.0
+     */
+    public static float toFloat(short half) {
+        final int bits = half & 0xFFFF;
+        final int sign = (bits & 0x8000) << 16;
+        final int exponent = (bits >>> 10) & 0x1F;
+        final int mantissa = bits & 0x3FF;
+        if(exponent == 0) {
+            // Zero or sub-normal
+            final float value = mantissa / (float)(1 << 24);
+            return sign == 0 ? value : -value;
+        } else if(exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * Pack four values in to a signed normalised 2_10_10_10 integer (GL_INT_2_10_10_10_REV). X is
+     * stored in the lowest 10 bits, followed by Y, Z and then W in the highest 2 bits. Values are
+     * clamped to -1 to 1.
+     *
+     * @param x The X value
+     * @param y The Y value
+     * @param z The Z value
+     * @param w The W value (only -1, 0 or 1 can be represented)
+     * @return The packed value
+     * @since 1.0
+     */
+    public static int packNormalised(float x, float y, float z, float w) {
+        return (toSignedNormalised(x, MAX_10_BIT) & 0x3FF) |
+                ((toSignedNormalised(y, MAX_10_BIT) & 0x3FF) << COMPONENT_BITS) |
+                ((toSignedNormalised(z, MAX_10_BIT) & 0x3FF) << (2 * COMPONENT_BITS)) |
+                ((toSignedNormalised(w, MAX_2_BIT) & 0x3) << (3 * COMPONENT_BITS));
+    }
+
+    /**
+     * Unpack a component of a signed normalised 2_10_10_10 integer as the shader receives it
+     *
+     * @param packed    The packed value
+     * @param component The component to unpack (0 to 3 for X, Y, Z and W)
+     * @return The value of the component from -1 to 1
+     * @since 1.0
+     */
+    public static float unpackNormalised(int packed, int component) {
+        final int bits = component == W_COMPONENT ? W_COMPONENT_BITS : COMPONENT_BITS;
+        final int shift = component * COMPONENT_BITS;
+
+        // Shift the component to the top of the int and back again to sign extend it
+        final int value = (packed << (Integer.SIZE - shift - bits)) >> (Integer.SIZE - bits);
+        return Math.max(-1.0f, (float)value / ((1 << (bits - 1)) - 1));
+    }
+
+    /**
+     * Pack vertex data in to a vertex layout. The buffer is direct and in native byte order so
+     * that it can be uploaded to graphics memory.
+     *
+     * @param vertexData The vertex data to pack
+     * @param layout     The layout to pack the vertex data in to, must have been created with the
+     *                   same attributes as the vertex data
+     * @return Buffer containing the packed vertices
+     * @since 1.0
+     */
+    public static ByteBuffer pack(VertexData vertexData, VertexLayout layout) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(vertexData.vertexCount * layout.stride)
+                .order(ByteOrder.nativeOrder());
+        return pack(vertexData, layout, buffer);
+    }
+
+    /**
+     * Pack vertex data in to a vertex layout, writing it to an existing buffer (e.g. staging
+     * memory) from its position. The position of the buffer is not changed.
+     *
+     * @param vertexData The vertex data to pack
+     * @param layout     The layout to pack the vertex data in to, must have been created with the
+     *                   same attributes as the vertex data
+     * @param buffer     Buffer in native byte order with room for the packed vertices
+     * @return The buffer
+     * @see com.crispin.crispinmobile.Utilities.StagingArena
+     * @since 1.0
+     */
+    public static ByteBuffer pack(VertexData vertexData, VertexLayout layout, ByteBuffer buffer) {
+        final float[] vertices = vertexData.vertices;
+        final int elementsPerVertex = vertexData.getElementsPerVertex();
+        final int stride = layout.stride;
+        final int start = buffer.position();
+
+        for(int v = 0; v < vertexData.vertexCount; v++) {
+            int source = v * elementsPerVertex;
+            final int vertexStart = start + v * stride;
+            for(int attribute = 0; attribute < VertexLayout.NUM_ATTRIBUTES; attribute++) {
+                final int elements = layout.getElements(attribute);
+                if(elements == 0) {
+                    continue;
+                }
+
+                final int position = vertexStart + layout.getOffset(attribute);
+                switch (layout.getType(attribute)) {
+                    case VertexLayout.TYPE_FLOAT:
+                        for(int i = 0; i < elements; i++) {
+                            buffer.putFloat(position + (i * BYTES_PER_FLOAT),
+                                    vertices[source + i]);
+                        }
+                        break;
+                    case VertexLayout.TYPE_HALF_FLOAT:
+                        final int components = layout.getComponents(attribute);
+                        for(int i = 0; i < components; i++) {
+                            // Padding takes the value the shader would default the component to
+                            final float value = i < elements ? vertices[source + i] :
+                                    (i == W_COMPONENT ? 1.0f : 0.0f);
+                            buffer.putShort(position + (i * BYTES_PER_HALF_FLOAT),
+                                    toHalf(value));
+                        }
+                        break;
+                    case VertexLayout.TYPE_INT_2_10_10_10_REV:
+                        buffer.putInt(position, packDirection(vertices[source],
+                                vertices[source + 1], vertices[source + 2]));
+                        break;
+                }
+                source += elements;
+            }
+        }
+
+        return buffer;
+    }
+
+    // Pack a direction vector, normalising it first so that none of its components are clamped
+    // (the shaders normalise the vectors they receive so the length does not matter)
+    private static int packDirection(float x, float y, float z) {
+        final float lengthSq = x * x + y * y + z * z;
+        if(lengthSq > 0.0f) {
+            final float inverseLength = 1.0f / (float)Math.sqrt(lengthSq);
+            x *= inverseLength;
+            y *= inverseLength;
+            z *= inverseLength;
+        }
+        return packNormalised(x, y, z, 0.0f);
+    }
+
+    // Convert a value from -1 to 1 to a signed integer from -max to max
+    private static int toSignedNormalised(float value, int max) {
+        if(Float.isNaN(value)) {
+            return 0;
+        }
+        return Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * max);
+    }
+}
@@ -1,5 +1,6 @@
 package com.crispin.crispinmobile.Rendering.DefaultMesh;
 
+import com.crispin.crispinmobile.Rendering.Models.ShadowMeshUtil;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 
 /**
@@ -56,4 +57,15 @@ public class SquareMesh extends Mesh {
                 RenderMethod.TRIANGLES, NUMBER_POSITION_COMPONENTS,
                 textureSupport ? NUMBER_TEXEL_COMPONENTS : 0, 0);
     }
+
+    /**
+     * Create the 2D shadow mesh of a square
+     *
+     * @return A new shadow mesh
+     * @see ShadowMeshUtil
+     * @since 1.0
+     */
+    public static Mesh createShadowMesh() {
+        return ShadowMeshUtil.createShadowMesh2D(POSITION_DATA);
+    }
 }
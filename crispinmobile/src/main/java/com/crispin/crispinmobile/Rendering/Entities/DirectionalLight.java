@@ -47,6 +47,10 @@ public class DirectionalLight {
     // an objects surface can appear with varying levels of shininess)
     public float specularStrength;
 
+    // Incremented whenever a property changes so that shaders can skip uploading the light if it
+    // has not changed since it was last uploaded
+    private int version;
+
     /**
      * Construct a directional light with a given direction and colour
      *
@@ -171,6 +175,7 @@ public class DirectionalLight {
         this.dx = dx;
         this.dy = dy;
         this.dz = dz;
+        markChanged();
     }
 
     /**
@@ -183,6 +188,7 @@ public class DirectionalLight {
     public void setDirection(float dx, float dy) {
         this.dx = dx;
         this.dy = dy;
+        markChanged();
     }
 
     /**
@@ -205,6 +211,7 @@ public class DirectionalLight {
         dx = direction.x;
         dy = direction.y;
         dz = direction.z;
+        markChanged();
     }
 
     /**
@@ -216,6 +223,7 @@ public class DirectionalLight {
     public void setDirection(Vec2 direction) {
         dx = direction.x;
         dy = direction.y;
+        markChanged();
     }
 
     /**
@@ -240,6 +248,7 @@ public class DirectionalLight {
         this.red = red;
         this.green = green;
         this.blue = blue;
+        markChanged();
     }
 
     /**
@@ -262,6 +271,7 @@ public class DirectionalLight {
         red = colour.red;
         green = colour.green;
         blue = colour.blue;
+        markChanged();
     }
 
     /**
@@ -282,6 +292,7 @@ public class DirectionalLight {
      */
     public void setDiffuseStrength(float diffuseStrength) {
         this.diffuseStrength = diffuseStrength;
+        markChanged();
     }
 
     /**
@@ -302,6 +313,7 @@ public class DirectionalLight {
      */
     public void setAmbientStrength(float ambientStrength) {
         this.ambientStrength = ambientStrength;
+        markChanged();
     }
 
     /**
@@ -322,5 +334,27 @@ public class DirectionalLight {
      */
     public void setSpecularStrength(float specularStrength) {
         this.specularStrength = specularStrength;
+        markChanged();
+    }
+
+    /**
+     * Get the version of the light. The version changes whenever a property of the light is
+     * changed through one of its methods.
+     *
+     * @return The version of the light
+     * @since 1.0
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Mark the light as changed so that its properties are uploaded to shaders again. Must be
+     * called after changing one of the public fields directly.
+     *
+     * @since 1.0
+     */
+    public void markChanged() {
+        version++;
     }
 }
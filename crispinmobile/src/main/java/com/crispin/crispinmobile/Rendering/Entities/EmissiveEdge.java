@@ -61,6 +61,10 @@ public class EmissiveEdge {
     public float linearAttenuation;
     public float quadraticAttenuation;
 
+    // Incremented whenever a property changes so that shaders can skip uploading the emissive edge
+    // if it has not changed since it was last uploaded
+    private int version;
+
     /**
      * Construct an emissive edge with a given position and colour
      *
@@ -212,6 +216,7 @@ public class EmissiveEdge {
         this.bx = bx;
         this.by = by;
         this.bz = bz;
+        markChanged();
     }
 
     /**
@@ -228,6 +233,7 @@ public class EmissiveEdge {
         this.ay = ay;
         this.bx = bx;
         this.by = by;
+        markChanged();
     }
 
     /**
@@ -244,6 +250,7 @@ public class EmissiveEdge {
         bx = pointB.x;
         by = pointB.y;
         bz = pointB.z;
+        markChanged();
     }
 
     /**
@@ -258,6 +265,7 @@ public class EmissiveEdge {
         ay = pointA.y;
         bx = pointB.x;
         by = pointB.y;
+        markChanged();
     }
 
     /**
@@ -272,6 +280,7 @@ public class EmissiveEdge {
         this.ax = ax;
         this.ay = ay;
         this.az = az;
+        markChanged();
     }
 
     /**
@@ -284,6 +293,7 @@ public class EmissiveEdge {
     public void setPositionA(float ax, float ay) {
         this.ax = ax;
         this.ay = ay;
+        markChanged();
     }
 
     /**
@@ -296,6 +306,7 @@ public class EmissiveEdge {
         ax = pointA.x;
         ay = pointA.y;
         az = pointA.z;
+        markChanged();
     }
 
     /**
@@ -307,6 +318,7 @@ public class EmissiveEdge {
     public void setPositionA(Vec2 pointA) {
         ax = pointA.x;
         ay = pointA.y;
+        markChanged();
     }
 
     /**
@@ -321,6 +333,7 @@ public class EmissiveEdge {
         this.bx = bx;
         this.by = by;
         this.bz = bz;
+        markChanged();
     }
 
     /**
@@ -333,6 +346,7 @@ public class EmissiveEdge {
     public void setPositionB(float bx, float by) {
         this.bx = bx;
         this.by = by;
+        markChanged();
     }
 
     /**
@@ -345,6 +359,7 @@ public class EmissiveEdge {
         bx = pointB.x;
         by = pointB.y;
         bz = pointB.z;
+        markChanged();
     }
 
     /**
@@ -356,6 +371,7 @@ public class EmissiveEdge {
     public void setPositionB(Vec2 pointB) {
         bx = pointB.x;
         by = pointB.y;
+        markChanged();
     }
 
     /**
@@ -413,6 +429,7 @@ public class EmissiveEdge {
         this.bx += x;
         this.by += y;
         this.bz += z;
+        markChanged();
     }
 
     /**
@@ -427,6 +444,7 @@ public class EmissiveEdge {
         this.ay += y;
         this.bx += x;
         this.by += y;
+        markChanged();
     }
 
     /**
@@ -442,6 +460,7 @@ public class EmissiveEdge {
         this.bx += translateVector.x;
         this.by += translateVector.y;
         this.bz += translateVector.z;
+        markChanged();
     }
 
     /**
@@ -455,6 +474,7 @@ public class EmissiveEdge {
         this.ay += translateVector.y;
         this.bx += translateVector.x;
         this.by += translateVector.y;
+        markChanged();
     }
 
     /**
@@ -469,6 +489,7 @@ public class EmissiveEdge {
         this.red = red;
         this.green = green;
         this.blue = blue;
+        markChanged();
     }
 
     /**
@@ -491,6 +512,7 @@ public class EmissiveEdge {
         red = colour.red;
         green = colour.green;
         blue = colour.blue;
+        markChanged();
     }
 
     /**
@@ -511,6 +533,7 @@ public class EmissiveEdge {
      */
     public void setDiffuseStrength(float diffuseStrength) {
         this.diffuseStrength = diffuseStrength;
+        markChanged();
     }
 
     /**
@@ -531,6 +554,7 @@ public class EmissiveEdge {
      */
     public void setAmbientStrength(float ambientStrength) {
         this.ambientStrength = ambientStrength;
+        markChanged();
     }
 
     /**
@@ -551,6 +575,7 @@ public class EmissiveEdge {
      */
     public void setSpecularStrength(float specularStrength) {
         this.specularStrength = specularStrength;
+        markChanged();
     }
 
     /**
@@ -571,6 +596,7 @@ public class EmissiveEdge {
      */
     public void setConstantAttenuation(float constantAttenuation) {
         this.constantAttenuation = constantAttenuation;
+        markChanged();
     }
 
     /**
@@ -591,6 +617,7 @@ public class EmissiveEdge {
      */
     public void setLinearAttenuation(float linearAttenuation) {
         this.linearAttenuation = linearAttenuation;
+        markChanged();
     }
 
     /**
@@ -611,5 +638,27 @@ public class EmissiveEdge {
      */
     public void setQuadraticAttenuation(float quadraticAttenuation) {
         this.quadraticAttenuation = quadraticAttenuation;
+        markChanged();
+    }
+
+    /**
+     * Get the version of the emissive edge. The version changes whenever a property of the emissive
+     * edge is changed through one of its methods.
+     *
+     * @return The version of the emissive edge
+     * @since 1.0
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Mark the emissive edge as changed so that its properties are uploaded to shaders again. Must
+     * be called after changing one of the public fields directly.
+     *
+     * @since 1.0
+     */
+    public void markChanged() {
+        version++;
     }
 }
@@ -58,6 +58,10 @@ public class PointLight {
     public float linearAttenuation;
     public float quadraticAttenuation;
 
+    // Incremented whenever a property changes so that shaders can skip uploading the light if it
+    // has not changed since it was last uploaded
+    private int version;
+
     /**
      * Construct a point light with a given position and colour
      *
@@ -185,6 +189,7 @@ public class PointLight {
         this.x = x;
         this.y = y;
         this.z = z;
+        markChanged();
     }
 
     /**
@@ -197,6 +202,7 @@ public class PointLight {
     public void setPosition(float x, float y) {
         this.x = x;
         this.y = y;
+        markChanged();
     }
 
     /**
@@ -219,6 +225,7 @@ public class PointLight {
         x = position.x;
         y = position.y;
         z = position.z;
+        markChanged();
     }
 
     /**
@@ -230,6 +237,7 @@ public class PointLight {
     public void setPosition(Vec2 position) {
         x = position.x;
         y = position.y;
+        markChanged();
     }
 
     /**
@@ -254,6 +262,7 @@ public class PointLight {
         this.x += x;
         this.y += y;
         this.z += z;
+        markChanged();
     }
 
     /**
@@ -266,6 +275,7 @@ public class PointLight {
     public void translate(float x, float y) {
         this.x += x;
         this.y += y;
+        markChanged();
     }
 
     /**
@@ -278,6 +288,7 @@ public class PointLight {
         this.x += translateVector.x;
         this.y += translateVector.y;
         this.z += translateVector.z;
+        markChanged();
     }
 
     /**
@@ -289,6 +300,7 @@ public class PointLight {
     public void translate(Vec2 translateVector) {
         this.x += translateVector.x;
         this.y += translateVector.y;
+        markChanged();
     }
 
     /**
@@ -303,6 +315,7 @@ public class PointLight {
         this.red = red;
         this.green = green;
         this.blue = blue;
+        markChanged();
     }
 
     /**
@@ -325,6 +338,7 @@ public class PointLight {
         red = colour.red;
         green = colour.green;
         blue = colour.blue;
+        markChanged();
     }
 
     /**
@@ -345,6 +359,7 @@ public class PointLight {
      */
     public void setDiffuseStrength(float diffuseStrength) {
         this.diffuseStrength = diffuseStrength;
+        markChanged();
     }
 
     /**
@@ -365,6 +380,7 @@ public class PointLight {
      */
     public void setAmbientStrength(float ambientStrength) {
         this.ambientStrength = ambientStrength;
+        markChanged();
     }
 
     /**
@@ -385,6 +401,7 @@ public class PointLight {
      */
     public void setSpecularStrength(float specularStrength) {
         this.specularStrength = specularStrength;
+        markChanged();
     }
 
     /**
@@ -405,6 +422,7 @@ public class PointLight {
      */
     public void setConstantAttenuation(float constantAttenuation) {
         this.constantAttenuation = constantAttenuation;
+        markChanged();
     }
 
     /**
@@ -425,6 +443,7 @@ public class PointLight {
      */
     public void setLinearAttenuation(float linearAttenuation) {
         this.linearAttenuation = linearAttenuation;
+        markChanged();
     }
 
     /**
@@ -445,5 +464,27 @@ public class PointLight {
      */
     public void setQuadraticAttenuation(float quadraticAttenuation) {
         this.quadraticAttenuation = quadraticAttenuation;
+        markChanged();
+    }
+
+    /**
+     * Get the version of the light. The version changes whenever a property of the light is
+     * changed through one of its methods.
+     *
+     * @return The version of the light
+     * @since 1.0
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Mark the light as changed so that its properties are uploaded to shaders again. Must be
+     * called after changing one of the public fields directly.
+     *
+     * @since 1.0
+     */
+    public void markChanged() {
+        version++;
     }
 }
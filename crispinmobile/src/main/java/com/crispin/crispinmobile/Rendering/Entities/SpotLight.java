@@ -73,6 +73,10 @@ public class SpotLight {
     // Outer size of the light beam (when to finish fading out the radius)
     public float outerSize;
 
+    // Incremented whenever a property changes so that shaders can skip uploading the light if it
+    // has not changed since it was last uploaded
+    private int version;
+
     public SpotLight(float x, float y, float z, float dx, float dy, float dz) {
         this.x = x;
         this.y = y;
@@ -137,6 +141,7 @@ public class SpotLight {
         this.x = x;
         this.y = y;
         this.z = z;
+        markChanged();
     }
 
     /**
@@ -149,6 +154,7 @@ public class SpotLight {
     public void setPosition(float x, float y) {
         this.x = x;
         this.y = y;
+        markChanged();
     }
 
     /**
@@ -171,6 +177,7 @@ public class SpotLight {
         x = position.x;
         y = position.y;
         z = position.z;
+        markChanged();
     }
 
     /**
@@ -182,6 +189,7 @@ public class SpotLight {
     public void setPosition(Vec2 position) {
         x = position.x;
         y = position.y;
+        markChanged();
     }
 
     /**
@@ -206,6 +214,7 @@ public class SpotLight {
         this.dx = dx;
         this.dy = dy;
         this.dz = dz;
+        markChanged();
     }
 
     /**
@@ -218,6 +227,7 @@ public class SpotLight {
     public void setDirection(float dx, float dy) {
         this.dx = dx;
         this.dy = dy;
+        markChanged();
     }
 
     /**
@@ -240,6 +250,7 @@ public class SpotLight {
         dx = direction.x;
         dy = direction.y;
         dz = direction.z;
+        markChanged();
     }
 
     /**
@@ -251,6 +262,7 @@ public class SpotLight {
     public void setDirection(Vec2 direction) {
         dx = direction.x;
         dy = direction.y;
+        markChanged();
     }
 
     /**
@@ -275,6 +287,7 @@ public class SpotLight {
         this.red = red;
         this.green = green;
         this.blue = blue;
+        markChanged();
     }
 
     /**
@@ -297,6 +310,7 @@ public class SpotLight {
         red = colour.red;
         green = colour.green;
         blue = colour.blue;
+        markChanged();
     }
 
     /**
@@ -317,6 +331,7 @@ public class SpotLight {
      */
     public void setDiffuseStrength(float diffuseStrength) {
         this.diffuseStrength = diffuseStrength;
+        markChanged();
     }
 
     /**
@@ -337,6 +352,7 @@ public class SpotLight {
      */
     public void setAmbientStrength(float ambientStrength) {
         this.ambientStrength = ambientStrength;
+        markChanged();
     }
 
     /**
@@ -357,6 +373,7 @@ public class SpotLight {
      */
     public void setSpecularStrength(float specularStrength) {
         this.specularStrength = specularStrength;
+        markChanged();
     }
 
     /**
@@ -377,6 +394,7 @@ public class SpotLight {
      */
     public void setConstantAttenuation(float constantAttenuation) {
         this.constantAttenuation = this.constantAttenuation;
+        markChanged();
     }
 
     /**
@@ -397,6 +415,7 @@ public class SpotLight {
      */
     public void setLinearAttenuation(float linearAttenuation) {
         this.linearAttenuation = linearAttenuation;
+        markChanged();
     }
 
     /**
@@ -417,5 +436,27 @@ public class SpotLight {
      */
     public void setQuadraticAttenuation(float quadraticAttenuation) {
         this.quadraticAttenuation = quadraticAttenuation;
+        markChanged();
+    }
+
+    /**
+     * Get the version of the light. The version changes whenever a property of the light is
+     * changed through one of its methods.
+     *
+     * @return The version of the light
+     * @since 1.0
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Mark the light as changed so that its properties are uploaded to shaders again. Must be
+     * called after changing one of the public fields directly.
+     *
+     * @since 1.0
+     */
+    public void markChanged() {
+        version++;
     }
 }
@@ -0,0 +1,166 @@
+package com.crispin.crispinmobile.Rendering.Models;
+
+import static android.opengl.GLES30.GL_DEPTH_TEST;
+
+import com.crispin.crispinmobile.Geometry.Geometry;
+import com.crispin.crispinmobile.Geometry.Vec2;
+import com.crispin.crispinmobile.R;
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Shaders.LineShader;
+import com.crispin.crispinmobile.Rendering.Shaders.Shader;
+import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
+import com.crispin.crispinmobile.Rendering.Utilities.DynamicMesh;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Rendering.Utilities.Util;
+import com.crispin.crispinmobile.Utilities.ShaderCache;
+
+/**
+ * BezierCurveMesh renders a quadratic or cubic bezier curve as a 2D ribbon of a given width. The
+ * curve is sampled at a fixed number of steps and each sample adds two vertices (one either side of
+ * the curve) to a triangle strip. The vertices are stored in a dynamic mesh, so moving the curve
+ * re-writes the vertex buffer in place instead of creating a new mesh.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see DynamicMesh
+ * @see Geometry#createBezierCurve(Vec2, Vec2, Vec2, int)
+ * @since 1.0
+ */
+public class BezierCurveMesh {
+    // The number of components in a vertex position
+    private static final int NUM_DIMS = 2;
+
+    // The number of vertices added to the strip for each point on the curve
+    private static final int VERTICES_PER_POINT = 2;
+
+    // Shader that the curve is drawn with
+    private final Shader lineShader;
+
+    // The vertices of the curve
+    private final DynamicMesh mesh;
+
+    // The number of line segments that the curve is split in to
+    private final int steps;
+
+    // The width of the ribbon
+    private float width;
+
+    // The colour of the curve
+    private Colour colour;
+
+    /**
+     * Create a bezier curve mesh. Set the curve with <code>setCurve</code> before rendering.
+     *
+     * @param steps The number of line segments to split the curve in to (at least one)
+     * @param width The width of the curve
+     * @since 1.0
+     */
+    public BezierCurveMesh(int steps, float width) {
+        this.steps = Math.max(steps, 1);
+        this.width = width;
+        this.colour = new Colour(Colour.WHITE);
+
+        if(ShaderCache.existsInCache(R.raw.line_vert, R.raw.line_frag)) {
+            lineShader = ShaderCache.getShader(R.raw.line_vert, R.raw.line_frag);
+        } else {
+            lineShader = new LineShader();
+        }
+
+        mesh = new DynamicMesh(Mesh.RenderMethod.TRIANGLE_STRIP, NUM_DIMS,
+                (this.steps + 1) * VERTICES_PER_POINT);
+    }
+
+    /**
+     * Set the curve to a quadratic bezier curve with one anchor point
+     *
+     * @param start  The start of the curve
+     * @param anchor The anchor point
+     * @param end    The end of the curve
+     * @since 1.0
+     */
+    public void setCurve(Vec2 start, Vec2 anchor, Vec2 end) {
+        setPoints(Geometry.createBezierCurve(start, anchor, end, steps));
+    }
+
+    /**
+     * Set the curve to a cubic bezier curve with two anchor points
+     *
+     * @param start   The start of the curve
+     * @param anchor  The first anchor point
+     * @param anchor2 The second anchor point
+     * @param end     The end of the curve
+     * @since 1.0
+     */
+    public void setCurve(Vec2 start, Vec2 anchor, Vec2 anchor2, Vec2 end) {
+        setPoints(Geometry.createBezierCurve(start, anchor, anchor2, end, steps));
+    }
+
+    /**
+     * Set the points that the curve passes through. The vertex buffer is updated when the curve is
+     * next rendered.
+     *
+     * @param curvePoints The points along the curve, at least two
+     * @since 1.0
+     */
+    public void setPoints(Vec2[] curvePoints) {
+        mesh.setVertices(Util.bezierCurveToMeshPositionComponents(curvePoints, width));
+    }
+
+    /**
+     * Set the width of the curve. Takes effect when the curve is next set.
+     *
+     * @param width The width of the curve
+     * @since 1.0
+     */
+    public void setWidth(float width) {
+        this.width = width;
+    }
+
+    /**
+     * Set the colour of the curve
+     *
+     * @param colour The colour
+     * @since 1.0
+     */
+    public void setColour(Colour colour) {
+        this.colour = colour;
+    }
+
+    /**
+     * Render the curve
+     *
+     * @param camera The 2D camera to render the curve with
+     * @since 1.0
+     */
+    public void render(Camera2D camera) {
+        // Check if depth is enabled, and disable it
+        final boolean DEPTH_ENABLED = GLStateCache.isEnabled(GL_DEPTH_TEST);
+        if(DEPTH_ENABLED) {
+            GLStateCache.disable(GL_DEPTH_TEST);
+        }
+
+        lineShader.enable();
+        lineShader.setUniform4f(lineShader.materialHandles.colourUniformHandle, colour.red,
+                colour.green, colour.blue, colour.alpha);
+        lineShader.setUniformMatrix4(lineShader.getMatrixUniformHandle(),
+                camera.getOrthoMatrix(), 0);
+
+        mesh.bind(lineShader.getPositionAttributeHandle(), -1, -1);
+        mesh.draw();
+
+        // If depth was enabled before calling the function then re-enable it
+        if(DEPTH_ENABLED) {
+            GLStateCache.enable(GL_DEPTH_TEST);
+        }
+    }
+
+    /**
+     * Delete the vertex buffer of the curve
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        mesh.destroy();
+    }
+}
@@ -2,168 +2,20 @@ package com.crispin.crispinmobile.Rendering.Models;
 
 import com.crispin.crispinmobile.Rendering.Data.Material;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.DefaultMeshCache;
 
 /**
  * Cube class is a default 3D model of a cube. It is a render object and therefor can be drawn to
- * the display. It contains texture, colour and positional data.
+ * the display. It contains texture, colour and positional data. The mesh is shared with every other
+ * cube that has the same data types.
  *
  * @author Christian Benner
  * @version %I%, %G%
  * @see Mesh
+ * @see DefaultMeshCache
  * @since 1.0
  */
 public class Cube extends Model {
-    // The number of position components in the position data (3 because its XYZ)
-    private static final byte NUMBER_POSITION_COMPONENTS = 3;
-
-    // The number of texel components in the texel data (2 because its ST)
-    private static final byte NUMBER_TEXEL_COMPONENTS = 2;
-
-    // The number of normal components in the normal data (3 because its xyz)
-    private static final byte NUMBER_NORMAL_COMPONENTS = 3;
-
-    // The render method to draw the data with (triangles because that's how the data is
-    // constructed)
-    private static final Mesh.RenderMethod RENDER_METHOD = Mesh.RenderMethod.TRIANGLES;
-
-    // Position vertex data that contains XYZ components
-    private static final float[] POSITION_DATA =
-            {
-                    -1.0f, -1.0f, -1.0f,
-                    -1.0f, -1.0f, 1.0f,
-                    -1.0f, 1.0f, 1.0f,
-                    1.0f, 1.0f, -1.0f,
-                    -1.0f, -1.0f, -1.0f,
-                    -1.0f, 1.0f, -1.0f,
-
-                    1.0f, -1.0f, 1.0f,
-                    -1.0f, -1.0f, -1.0f,
-                    1.0f, -1.0f, -1.0f,
-                    1.0f, 1.0f, -1.0f,
-                    1.0f, -1.0f, -1.0f,
-                    -1.0f, -1.0f, -1.0f,
-
-                    -1.0f, -1.0f, -1.0f,
-                    -1.0f, 1.0f, 1.0f,
-                    -1.0f, 1.0f, -1.0f,
-                    1.0f, -1.0f, 1.0f,
-                    -1.0f, -1.0f, 1.0f,
-                    -1.0f, -1.0f, -1.0f,
-
-                    -1.0f, 1.0f, 1.0f,
-                    -1.0f, -1.0f, 1.0f,
-                    1.0f, -1.0f, 1.0f,
-                    1.0f, 1.0f, 1.0f,
-                    1.0f, -1.0f, -1.0f,
-                    1.0f, 1.0f, -1.0f,
-
-                    1.0f, -1.0f, -1.0f,
-                    1.0f, 1.0f, 1.0f,
-                    1.0f, -1.0f, 1.0f,
-                    1.0f, 1.0f, 1.0f,
-                    1.0f, 1.0f, -1.0f,
-                    -1.0f, 1.0f, -1.0f,
-
-                    1.0f, 1.0f, 1.0f,
-                    -1.0f, 1.0f, -1.0f,
-                    -1.0f, 1.0f, 1.0f,
-                    1.0f, 1.0f, 1.0f,
-                    -1.0f, 1.0f, 1.0f,
-                    1.0f, -1.0f, 1.0f,
-            };
-
-    // Texel vertex data that contains ST components
-    private static final float[] TEXEL_DATA =
-            {
-                    0.0f, 1.0f,
-                    1.0f, 1.0f,
-                    1.0f, 0.0f,
-                    0.0f, 0.0f,
-                    1.0f, 1.0f,
-                    1.0f, 0.0f,
-
-                    0.0f, 1.0f,
-                    1.0f, 0.0f,
-                    1.0f, 1.0f,
-                    0.0f, 0.0f,
-                    0.0f, 1.0f,
-                    1.0f, 1.0f,
-
-                    0.0f, 1.0f,
-                    1.0f, 0.0f,
-                    0.0f, 0.0f,
-                    0.0f, 1.0f,
-                    0.0f, 0.0f,
-                    1.0f, 0.0f,
-
-                    0.0f, 0.0f,
-                    0.0f, 1.0f,
-                    1.0f, 1.0f,
-                    0.0f, 0.0f,
-                    1.0f, 1.0f,
-                    1.0f, 0.0f,
-
-                    1.0f, 1.0f,
-                    0.0f, 0.0f,
-                    0.0f, 1.0f,
-                    1.0f, 0.0f,
-                    0.0f, 0.0f,
-                    0.0f, 1.0f,
-
-                    1.0f, 0.0f,
-                    0.0f, 1.0f,
-                    1.0f, 1.0f,
-                    1.0f, 0.0f,
-                    0.0f, 0.0f,
-                    1.0f, 1.0f,
-            };
-
-    // Normal vertex data that contains XYZ components
-    private static final float[] NORMAL_DATA =
-            {
-                    -1.0f, 0.0f, 0.0f,
-                    -1.0f, 0.0f, 0.0f,
-                    -1.0f, 0.0f, 0.0f,
-                    0.0f, 0.0f, -1.0f,
-                    0.0f, 0.0f, -1.0f,
-                    0.0f, 0.0f, -1.0f,
-
-                    0.0f, -1.0f, 0.0f,
-                    0.0f, -1.0f, 0.0f,
-                    0.0f, -1.0f, 0.0f,
-                    0.0f, 0.0f, -1.0f,
-                    0.0f, 0.0f, -1.0f,
-                    0.0f, 0.0f, -1.0f,
-
-                    -1.0f, 0.0f, 0.0f,
-                    -1.0f, 0.0f, 0.0f,
-                    -1.0f, 0.0f, 0.0f,
-                    0.0f, -1.0f, 0.0f,
-                    0.0f, -1.0f, 0.0f,
-                    0.0f, -1.0f, 0.0f,
-
-                    0.0f, 0.0f, 1.0f,
-                    0.0f, 0.0f, 1.0f,
-                    0.0f, 0.0f, 1.0f,
-                    1.0f, 0.0f, 0.0f,
-                    1.0f, 0.0f, 0.0f,
-                    1.0f, 0.0f, 0.0f,
-
-                    1.0f, 0.0f, 0.0f,
-                    1.0f, 0.0f, 0.0f,
-                    1.0f, 0.0f, 0.0f,
-                    0.0f, 1.0f, 0.0f,
-                    0.0f, 1.0f, 0.0f,
-                    0.0f, 1.0f, 0.0f,
-
-                    0.0f, 1.0f, 0.0f,
-                    0.0f, 1.0f, 0.0f,
-                    0.0f, 1.0f, 0.0f,
-                    0.0f, 0.0f, 1.0f,
-                    0.0f, 0.0f, 1.0f,
-                    0.0f, 0.0f, 1.0f
-            };
-
     /**
      * Create a cube with specifically allowed data types. This means that on creation of the object
      * that a controllable amount of vertex data is submitted to a buffer. This can prove efficient
@@ -178,10 +30,7 @@ public class Cube extends Model {
      */
     public Cube(Material material, boolean renderTexels, boolean renderNormals,
                 boolean renderColour) {
-        super(POSITION_DATA, renderTexels ? TEXEL_DATA : null, renderNormals ? NORMAL_DATA : null,
-                RENDER_METHOD, NUMBER_POSITION_COMPONENTS,
-                renderTexels ? NUMBER_TEXEL_COMPONENTS : 0,
-                renderNormals ? NUMBER_NORMAL_COMPONENTS : 0, material);
+        super(DefaultMeshCache.getCube(renderTexels, renderNormals), material);
     }
 
     /**
@@ -227,4 +76,18 @@ public class Cube extends Model {
     public Cube() {
         this(new Material(), true, false, false);
     }
+
+    /**
+     * Release the reference to the shared cube mesh. The cube must not be rendered afterwards.
+     * Destroying the cube more than once has no further effect.
+     *
+     * @since 1.0
+     */
+    @Override
+    public void destroy() {
+        if(mesh != null) {
+            DefaultMeshCache.release(mesh);
+            mesh = null;
+        }
+    }
 }
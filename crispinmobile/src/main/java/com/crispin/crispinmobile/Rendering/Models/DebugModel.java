@@ -1,16 +1,8 @@
 package com.crispin.crispinmobile.Rendering.Models;
 
 import static android.opengl.GLES30.GL_LINES;
-import static android.opengl.GLES30.GL_POINTS;
-import static android.opengl.GLES30.GL_TEXTURE_2D;
-import static android.opengl.GLES30.GL_TRIANGLES;
-import static android.opengl.GLES30.glBindTexture;
 import static android.opengl.GLES30.glDrawArrays;
-import static android.opengl.GLES30.glUniform1i;
-import static android.opengl.GLES30.glUniform3f;
-import static android.opengl.GLES30.glUniformMatrix4fv;
 
-import android.opengl.GLES30;
 import android.opengl.Matrix;
 
 import com.crispin.crispinmobile.Geometry.Rotation2D;
@@ -32,6 +24,7 @@ import com.crispin.crispinmobile.Rendering.Shaders.UniformColourShader;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
 import com.crispin.crispinmobile.Rendering.Utilities.DebugMesh;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 import com.crispin.crispinmobile.Rendering.Utilities.LightGroup;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 import com.crispin.crispinmobile.Rendering.Utilities.ModelMatrix;
@@ -86,45 +79,33 @@ public class DebugModel extends Model {
             Matrix.multiplyMM(modelViewProjectionMatrix, 0, camera.getPerspectiveMatrix(), 0,
                     modelViewMatrix, 0);
 
-            glUniformMatrix4fv(shader.getMatrixUniformHandle(), UNIFORM_UPLOAD_COUNT_SINGLE, false,
+            debugMeshShader.setUniformMatrix4(shader.getMatrixUniformHandle(),
                     modelViewProjectionMatrix, 0);
         }
 
         if (shader.validHandle(shader.getViewPositionUniformHandle())) {
             final Vec3 cameraPos = camera.getPosition();
-            glUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x, cameraPos.y,
-                    cameraPos.z);
+            debugMeshShader.setUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x,
+                    cameraPos.y, cameraPos.z);
         }
 
         if (shader.validHandle(shader.getProjectionMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getProjectionMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    camera.getPerspectiveMatrix(),
-                    0);
+            debugMeshShader.setUniformMatrix4(shader.getProjectionMatrixUniformHandle(),
+                    camera.getPerspectiveMatrix(), 0);
         }
 
         if (shader.validHandle(shader.getViewMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getViewMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    camera.getViewMatrix(),
-                    0);
+            debugMeshShader.setUniformMatrix4(shader.getViewMatrixUniformHandle(),
+                    camera.getViewMatrix(), 0);
         }
 
         if (shader.validHandle(shader.getModelMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getModelMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    modelMatrix.getFloats(),
-                    0);
+            debugMeshShader.setUniformMatrix4(shader.getModelMatrixUniformHandle(),
+                    modelMatrix.getFloats(), 0);
         }
 
-        GLES30.glBindVertexArray(debugMesh.normalLinesVao);
+        GLStateCache.bindVertexArray(debugMesh.normalLinesVao);
         glDrawArrays(GL_LINES, 0, debugMesh.normalLinesVertexCount);
-        GLES30.glBindVertexArray(0);
-
-        debugMeshShader.disable();
     }
 
     public void render(Camera camera) {
@@ -1,33 +1,8 @@
 package com.crispin.crispinmobile.Rendering.Models;
 
-import static android.opengl.GLES20.GL_ARRAY_BUFFER;
 import static android.opengl.GLES20.GL_DEPTH_TEST;
-import static android.opengl.GLES20.GL_FLOAT;
-import static android.opengl.GLES20.GL_LINES;
-import static android.opengl.GLES20.GL_POINTS;
-import static android.opengl.GLES20.GL_STATIC_DRAW;
-import static android.opengl.GLES20.GL_STREAM_DRAW;
-import static android.opengl.GLES20.GL_TEXTURE_2D;
-import static android.opengl.GLES20.GL_TRIANGLES;
-import static android.opengl.GLES20.glBindBuffer;
-import static android.opengl.GLES20.glBindTexture;
-import static android.opengl.GLES20.glBufferData;
-import static android.opengl.GLES20.glBufferSubData;
-import static android.opengl.GLES20.glDisableVertexAttribArray;
-import static android.opengl.GLES20.glDrawArrays;
-import static android.opengl.GLES20.glEnable;
-import static android.opengl.GLES20.glEnableVertexAttribArray;
-import static android.opengl.GLES20.glGenBuffers;
 import static android.opengl.GLES20.glLineWidth;
-import static android.opengl.GLES20.glUniform4f;
-import static android.opengl.GLES20.glUniformMatrix4fv;
-import static android.opengl.GLES20.glVertexAttribPointer;
-import static android.opengl.GLES30.GL_INVALID_INDEX;
-import static android.opengl.GLES30.glBindVertexArray;
-import static android.opengl.GLES30.glGenVertexArrays;
-import static com.crispin.crispinmobile.Rendering.Utilities.Mesh.BYTES_PER_FLOAT;
-
-import android.opengl.GLES30;
+
 import android.opengl.Matrix;
 
 import com.crispin.crispinmobile.Geometry.Vec2;
@@ -37,11 +12,11 @@ import com.crispin.crispinmobile.Rendering.Shaders.LineShader;
 import com.crispin.crispinmobile.Rendering.Shaders.Shader;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
 import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Utilities.DynamicMesh;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 import com.crispin.crispinmobile.Utilities.ShaderCache;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 
 public class Line {
     // todo:
@@ -53,23 +28,18 @@ public class Line {
 
     //
 
-    // Number of uniform elements to upload in a GLSL uniform upload
-    private static final int UNIFORM_UPLOAD_COUNT = 1;
     private static final int NUM_DIMS = 2;
     private static final int NUM_VERTICES_PER_LINE = 2;
     // The number of elements in a 4x4 view matrix
     private final int NUM_VALUES_PER_VIEW_MATRIX = 16;
     private final Vec2 pointOne;
     private final Vec2 pointTwo;
-    private final float[] positionBuffer = new float[NUM_DIMS * NUM_VERTICES_PER_LINE];
     private final Shader lineShader;
     private float lineWidth;
-    // Float buffer that holds all the line co-ordinate data
-    private FloatBuffer vertexBuffer;
     private Material material;
 
-    private int vao;
-    private int vbo;
+    // The vertices of the line, updated in place when the points move
+    private final DynamicMesh mesh;
 
     public Line() {
         pointOne = new Vec2();
@@ -84,22 +54,8 @@ public class Line {
 
         material = new Material();
 
-        // Generate VAO
-        int[] vaoTemp = new int[1];
-        glGenVertexArrays(1, vaoTemp, 0);
-        vao = vaoTemp[0];
-
-        // Generate VBO
-        int[] vboTemp = new int[1];
-        glGenBuffers(1, vboTemp, 0);
-        vbo = vboTemp[0];
-
-        glBindVertexArray(vao);
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glVertexAttribPointer(lineShader.getPositionAttributeHandle(), 2, GL_FLOAT, false, 2 * BYTES_PER_FLOAT, 0);
-        glEnableVertexAttribArray(lineShader.getPositionAttributeHandle());
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+        mesh = new DynamicMesh(Mesh.RenderMethod.LINES, NUM_DIMS, NUM_VERTICES_PER_LINE);
+        mesh.setVertexCount(NUM_VERTICES_PER_LINE);
 
         setPoints(new Vec2(0.0f, 0.0f), new Vec2(0.0f, 0.0f));
     }
@@ -130,64 +86,72 @@ public class Line {
         pointTwo.x = x2;
         pointTwo.y = y2;
 
+        // The vertices are uploaded when the line is next rendered
+        mesh.setVertexCount(NUM_VERTICES_PER_LINE);
+        final float[] positionBuffer = mesh.getVertices();
         positionBuffer[0] = x1;
         positionBuffer[1] = y1;
         positionBuffer[2] = x2;
         positionBuffer[3] = y2;
-
-        // Initialise a vertex byte buffer for the shape float array
-        final ByteBuffer VERTICES_BYTE_BUFFER = ByteBuffer.allocateDirect(
-                positionBuffer.length * BYTES_PER_FLOAT);
-
-        // Use the devices hardware's native byte order
-        VERTICES_BYTE_BUFFER.order(ByteOrder.nativeOrder());
-
-        // Create a Float buffer from the ByteBuffer
-        vertexBuffer = VERTICES_BYTE_BUFFER.asFloatBuffer();
-
-        // Add the array of floats to the buffer
-        vertexBuffer.put(positionBuffer);
-
-        // Set buffer to read the first co-ordinate
-        vertexBuffer.position(0);
-
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, positionBuffer.length * BYTES_PER_FLOAT, vertexBuffer, GL_STATIC_DRAW);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        mesh.markDirty(0, NUM_VERTICES_PER_LINE);
     }
 
     public void setPoints(Vec2 p1, Vec2 p2) {
         setPoints(p1.x, p1.y, p2.x, p2.y);
     }
 
+    /**
+     * Draw a closed loop of line segments between points instead of a single line (e.g. the
+     * outline of a polygon). Every segment is drawn in one draw call from the same vertex buffer.
+     *
+     * @param points The points of the loop as XY pairs
+     * @since 1.0
+     */
+    public void setLoop(float[] points) {
+        final int numPoints = points.length / NUM_DIMS;
+        mesh.setVertexCount(numPoints * NUM_VERTICES_PER_LINE);
+
+        // Each segment runs from a point to the next, the last joining back to the first
+        final float[] positionBuffer = mesh.getVertices();
+        for (int i = 0, v = 0; i < points.length; i += NUM_DIMS) {
+            final int next = (i + NUM_DIMS) % points.length;
+            positionBuffer[v++] = points[i];
+            positionBuffer[v++] = points[i + 1];
+            positionBuffer[v++] = points[next];
+            positionBuffer[v++] = points[next + 1];
+        }
+        mesh.markDirty(0, mesh.getVertexCount());
+    }
+
     public void render(Camera2D camera) {
         // Check if depth is enabled, and disable it
-        final boolean DEPTH_ENABLED = GLES30.glIsEnabled(GL_DEPTH_TEST);
+        final boolean DEPTH_ENABLED = GLStateCache.isEnabled(GL_DEPTH_TEST);
         if(DEPTH_ENABLED) {
-            GLES30.glDisable(GL_DEPTH_TEST);
+            GLStateCache.disable(GL_DEPTH_TEST);
         }
 
         lineShader.enable();
         glLineWidth(10);
 
-        glUniform4f(lineShader.materialHandles.colourUniformHandle, material.colour.red,
-                material.colour.green, material.colour.blue, material.colour.alpha);
+        lineShader.setUniform4f(lineShader.materialHandles.colourUniformHandle,
+                material.colour.red, material.colour.green, material.colour.blue,
+                material.colour.alpha);
 
-        glUniformMatrix4fv(lineShader.getMatrixUniformHandle(), UNIFORM_UPLOAD_COUNT, false,
+        lineShader.setUniformMatrix4(lineShader.getMatrixUniformHandle(),
                 camera.getOrthoMatrix(), 0);
 
-        vertexBuffer.position(0);
-
-        GLES30.glBindVertexArray(vao);
-        glDrawArrays(GL_LINES, 0, 2);
-        GLES30.glBindVertexArray(0);
+        mesh.bind(lineShader.getPositionAttributeHandle(), -1, -1);
+        mesh.draw();
 
         glLineWidth(1.0f);
-        lineShader.disable();
 
         // If depth was enabled before calling the function then re-enable it
         if (DEPTH_ENABLED) {
-            glEnable(GL_DEPTH_TEST);
+            GLStateCache.enable(GL_DEPTH_TEST);
         }
     }
+
+    public void destroy() {
+        mesh.destroy();
+    }
 }
@@ -1,25 +1,10 @@
 package com.crispin.crispinmobile.Rendering.Models;
 
-import static android.opengl.GLES20.GL_TRIANGLE_FAN;
-import static android.opengl.GLES20.GL_TRIANGLE_STRIP;
-import static android.opengl.GLES30.GL_DEPTH_TEST;
-import static android.opengl.GLES30.glEnable;
 import static android.opengl.GLES30.glLineWidth;
-import static android.opengl.GLES30.glUniform2f;
-import static android.opengl.GLES30.glUniform4f;
 import static android.opengl.GLES30.GL_LINES;
-import static android.opengl.GLES30.GL_POINTS;
-import static android.opengl.GLES30.GL_TEXTURE_2D;
-import static android.opengl.GLES30.GL_TRIANGLES;
-import static android.opengl.GLES30.glBindTexture;
-import static android.opengl.GLES30.glDrawArrays;
-import static android.opengl.GLES30.glUniform1i;
-import static android.opengl.GLES30.glUniform3f;
-import static android.opengl.GLES30.glUniformMatrix4fv;
 
 import static com.crispin.crispinmobile.Rendering.Shaders.Shader.UNDEFINED_HANDLE;
 
-import android.opengl.GLES30;
 import android.opengl.Matrix;
 
 import com.crispin.crispinmobile.Crispin;
@@ -35,10 +20,6 @@ import com.crispin.crispinmobile.Physics.HitboxCircle;
 import com.crispin.crispinmobile.Physics.HitboxPolygon;
 import com.crispin.crispinmobile.Rendering.Data.Colour;
 import com.crispin.crispinmobile.Rendering.Data.Texture;
-import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
-import com.crispin.crispinmobile.Rendering.Entities.EmissiveEdge;
-import com.crispin.crispinmobile.Rendering.Entities.PointLight;
-import com.crispin.crispinmobile.Rendering.Entities.SpotLight;
 import com.crispin.crispinmobile.Rendering.Shaders.LightingShader;
 import com.crispin.crispinmobile.Rendering.Shaders.LightingTextureShader;
 import com.crispin.crispinmobile.Rendering.Shaders.Shader;
@@ -46,16 +27,18 @@ import com.crispin.crispinmobile.Rendering.Shaders.TextureShader;
 import com.crispin.crispinmobile.Rendering.Shaders.UniformColourShader;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
+import com.crispin.crispinmobile.Rendering.Utilities.LODGroup;
 import com.crispin.crispinmobile.Rendering.Utilities.LightGroup;
 import com.crispin.crispinmobile.Rendering.Data.Material;
 import com.crispin.crispinmobile.Rendering.Utilities.ModelMatrix;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Rendering.Utilities.RenderKey;
+import com.crispin.crispinmobile.Rendering.Utilities.RenderQueue;
 import com.crispin.crispinmobile.Utilities.Logger;
 import com.crispin.crispinmobile.Utilities.ShaderCache;
 
-import java.util.ArrayList;
 
-public class Model {
+public class Model implements RenderQueue.Packet {
     // Tag used in logging output
     private static final String TAG = "Model";
 
@@ -110,6 +93,12 @@ public class Model {
     // Hitbox
     private Hitbox hitbox;
 
+    // Levels of detail of the mesh, or null if the mesh is always rendered at full detail
+    private LODGroup lodGroup;
+
+    // The level of detail that was last rendered
+    private int lodLevel;
+
     public Model(Mesh mesh, Material material) {
         this.mesh = mesh;
         this.modelMatrix = new ModelMatrix();
@@ -182,6 +171,65 @@ public class Model {
         }
     }
 
+    /**
+     * Release the resources held by the model. The model must not be rendered afterwards. The
+     * mesh given to a model may be shared with other models (for example an OBJ model from the
+     * cache), so the base model leaves it to its owner. Models that take a reference to a shared
+     * mesh, such as squares and cubes, release it here.
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+    }
+
+    /**
+     * Render the model using levels of detail. Each frame that the model is rendered with a 3D
+     * camera, the level is selected from the size that the model appears on the screen.
+     *
+     * @param lodGroup The levels of detail, or <code>null</code> to stop using levels of detail
+     *                 and keep the current mesh
+     * @see LODGroup
+     * @since 1.0
+     */
+    public void setLODGroup(LODGroup lodGroup) {
+        this.lodGroup = lodGroup;
+        this.lodLevel = 0;
+        if(lodGroup != null) {
+            setMesh(lodGroup.getLevel(0));
+        }
+    }
+
+    public LODGroup getLODGroup() {
+        return lodGroup;
+    }
+
+    /**
+     * Get the level of detail that was last rendered
+     *
+     * @return The level of detail (0 is full detail)
+     * @since 1.0
+     */
+    public int getLODLevel() {
+        return lodLevel;
+    }
+
+    // Switch to the level of detail for the size of the model on the screen. The bounding sphere is
+    // around the position of the model, scaled by the largest scale.
+    private void updateLODLevel(Camera camera) {
+        if(lodGroup == null) {
+            return;
+        }
+
+        final float maxScale = Math.max(Math.abs(scale.w), Math.max(Math.abs(scale.h),
+                Math.abs(scale.l)));
+        final int level = lodGroup.selectLevel(lodLevel, camera, position.x, position.y,
+                position.z, maxScale);
+        if(level != lodLevel) {
+            lodLevel = level;
+            setMesh(lodGroup.getLevel(level));
+        }
+    }
+
     public ModelMatrix getModelMatrix() {
         updateModelMatrix();
         return modelMatrix;
@@ -754,6 +802,7 @@ public class Model {
      */
     public void setAlpha(float alpha) {
         this.material.colour.alpha = alpha;
+        this.material.markChanged();
     }
 
     /**
@@ -828,6 +877,25 @@ public class Model {
         return shader;
     }
 
+    /**
+     * Draw the mesh once its VAO has been bound and the uniforms have been set. Draws the whole
+     * mesh with its render method (uses the index buffer if the mesh has one). Override to draw
+     * part of the mesh.
+     *
+     * @since 1.0
+     */
+    protected void drawMesh() {
+        mesh.draw();
+    }
+
+    // Bind the VAO of the mesh, pointing it at the attribute locations of the shader if the mesh
+    // was last used with a different shader (the mesh may be shared between models)
+    private void bindMesh() {
+        mesh.bind(shader.positionAttributeHandle, shader.textureAttributeHandle,
+                shader.normalAttributeHandle, shader.tangentAttributeHandle,
+                shader.bitangentAttributeHandle);
+    }
+
     public void render(Camera2D camera, final LightGroup lightGroup) {
         updateModelMatrix();
 
@@ -837,90 +905,67 @@ public class Model {
         }
 
         shader.enable();
-        setLightUniforms(lightGroup);
+        shader.setLightUniforms(lightGroup);
+        setModelUniforms(camera);
+        setViewUniforms(camera);
 
-        if (shader.validHandle(shader.getMatrixUniformHandle())) {
-            float[] modelViewMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
-            Matrix.multiplyMM(modelViewMatrix, 0, camera.getOrthoMatrix(), 0,
-                    modelMatrix.getFloats(), 0);
+        // Set all material uniforms
+        shader.setMaterialUniforms(material);
 
-            glUniformMatrix4fv(shader.getMatrixUniformHandle(), UNIFORM_UPLOAD_COUNT_SINGLE, false,
-                    modelViewMatrix, 0);
-        }
+        bindMesh();
+        drawMesh();
 
-        if (shader.validHandle(shader.getProjectionMatrixUniformHandle())) {
-            float[] emptyMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
-            Matrix.setIdentityM(emptyMatrix, 0);
-            glUniformMatrix4fv(shader.getProjectionMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    emptyMatrix,
-                    0);
+        if(renderWireframe) {
+            drawWireframe();
         }
+    }
 
-        if (shader.validHandle(shader.getViewMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getViewMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    camera.getOrthoMatrix(),
-                    0);
-        }
+    public void render(Camera2D camera) {
+        render(camera, null);
+    }
 
-        if (shader.validHandle(shader.getModelMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getModelMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    modelMatrix.getFloats(),
-                    0);
-        }
+    public void render(Camera camera, final LightGroup lightGroup) {
+        updateModelMatrix();
 
-        if (shader.validHandle(shader.getViewDimensionUniformHandle())) {
-            glUniform2f(shader.getViewDimensionUniformHandle(), Crispin.getSurfaceWidth(), Crispin.getSurfaceHeight());
+        // If the shader is null, create a shader for the object
+        if (shader == null) {
+            updateShader();
         }
 
+        updateLODLevel(camera);
+
+        shader.enable();
+        shader.setLightUniforms(lightGroup);
+
         // Set all material uniforms
         shader.setMaterialUniforms(material);
 
-        GLES30.glBindVertexArray(mesh.vao);
-        // Draw the vertex data with the specified render method
-        switch (mesh.renderMethod) {
-            case POINTS:
-                glDrawArrays(GL_POINTS, 0, mesh.vertexCount);
-                break;
-            case LINES:
-                glDrawArrays(GL_LINES, 0, mesh.vertexCount);
-                break;
-            case TRIANGLES:
-                glDrawArrays(GL_TRIANGLES, 0, mesh.vertexCount);
-                break;
-            case TRIANGLE_FAN:
-                glDrawArrays(GL_TRIANGLE_FAN, 0, mesh.vertexCount);
-                break;
-            case TRIANGLE_STRIP:
-                glDrawArrays(GL_TRIANGLE_STRIP, 0, mesh.vertexCount);
-                break;
-        }
-        glBindTexture(GL_TEXTURE_2D, 0);
+        setModelUniforms(camera);
+        setViewUniforms(camera);
+
+        bindMesh();
+        drawMesh();
 
         if(renderWireframe) {
-            if (shader.materialHandles.colourUniformHandle != UNDEFINED_HANDLE) {
-                glUniform4f(shader.materialHandles.colourUniformHandle, 0f, 0f, 0f, material.colour.alpha);
-            }
-            glLineWidth(wireframeLineWidth);
-            glDrawArrays(GL_LINES, 0, mesh.vertexCount);
-            glDrawArrays(GL_LINES, 1, mesh.vertexCount);
+            drawWireframe();
         }
-
-        GLES30.glBindVertexArray(0);
-
-        shader.disable();
     }
 
-    public void render(Camera2D camera) {
+    public void render(Camera camera) {
         render(camera, null);
     }
 
-    public void render(Camera camera, final LightGroup lightGroup) {
+    /**
+     * Submit the model to a render queue instead of rendering it straight away. The model is drawn
+     * with the camera and lights of the queue when the queue is executed. Models that are not fully
+     * opaque are submitted as translucent so that they are drawn back-to-front after the opaque
+     * models of the layer.
+     *
+     * @param queue The render queue
+     * @see RenderQueue
+     * @since 1.0
+     */
+    public void submit(RenderQueue queue) {
         updateModelMatrix();
 
         // If the shader is null, create a shader for the object
@@ -928,134 +973,152 @@ public class Model {
             updateShader();
         }
 
-        shader.enable();
-        setLightUniforms(lightGroup);
+        if(queue.getCamera() != null) {
+            updateLODLevel(queue.getCamera());
+        }
 
-        // Set all material uniforms
-        shader.setMaterialUniforms(material);
+        final int depth = queue.getDepth(position.x, position.y, position.z);
+        if(material.colour.alpha < 1.0f) {
+            queue.submit(RenderKey.translucent(queue.getLayer(), depth), this);
+        } else {
+            final Texture texture = material.getTexture();
+            queue.submit(RenderKey.opaque(queue.getLayer(), shader.getProgramId(),
+                    texture == null ? 0 : texture.getGlTextureID(), mesh.vao, depth), this);
+        }
+    }
 
-        // Support for shaders that only take in matrix (like uniform colour shader)
-        if (shader.validHandle(shader.getMatrixUniformHandle())) {
-            float[] modelViewMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
-            Matrix.multiplyMM(modelViewMatrix, 0, camera.getViewMatrix(), 0,
-                    modelMatrix.getFloats(), 0);
+    /**
+     * Draw the model as part of an executing render queue. Only the state that differs from the
+     * previous packet in the queue is set.
+     *
+     * @param queue The render queue that is executing
+     * @since 1.0
+     */
+    @Override
+    public void draw(RenderQueue queue) {
+        final Camera camera = queue.getCamera();
+        final Camera2D camera2D = queue.getCamera2D();
+
+        // The camera and lights are the same for every draw in the queue, so they only need to be
+        // set when the shader changes
+        if(queue.useShader(shader)) {
+            shader.setLightUniforms(queue.getLightGroup());
+            if(camera != null) {
+                setViewUniforms(camera);
+            } else {
+                setViewUniforms(camera2D);
+            }
+        }
 
-            float[] modelViewProjectionMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
-            Matrix.multiplyMM(modelViewProjectionMatrix, 0, camera.getPerspectiveMatrix(), 0,
-                    modelViewMatrix, 0);
+        if(queue.useMaterial(material)) {
+            shader.setMaterialUniforms(material);
+        }
 
-            glUniformMatrix4fv(shader.getMatrixUniformHandle(), UNIFORM_UPLOAD_COUNT_SINGLE, false,
-                    modelViewProjectionMatrix, 0);
+        if(camera != null) {
+            setModelUniforms(camera);
+        } else {
+            setModelUniforms(camera2D);
         }
 
-        if (shader.validHandle(shader.getViewPositionUniformHandle())) {
-            final Vec3 cameraPos = camera.getPosition();
-            glUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x, cameraPos.y,
-                    cameraPos.z);
+        if(queue.useMesh(mesh)) {
+            bindMesh();
         }
+        drawMesh();
 
+        if(renderWireframe) {
+            drawWireframe();
+            queue.invalidateMaterial();
+        }
+    }
+
+    // Draw the edges of the mesh in black over the top of the mesh
+    private void drawWireframe() {
+        if (shader.materialHandles.colourUniformHandle != UNDEFINED_HANDLE) {
+            shader.setUniform4f(shader.materialHandles.colourUniformHandle, 0f, 0f, 0f,
+                    material.colour.alpha);
+        }
+        glLineWidth(wireframeLineWidth);
+        mesh.draw(GL_LINES, 0, mesh.getElementCount());
+        mesh.draw(GL_LINES, 1, mesh.getElementCount() - 1);
+    }
+
+    // Set the uniforms that depend on the 2D camera but not the model
+    private void setViewUniforms(Camera2D camera) {
         if (shader.validHandle(shader.getProjectionMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getProjectionMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    camera.getPerspectiveMatrix(),
-                    0);
+            float[] emptyMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
+            Matrix.setIdentityM(emptyMatrix, 0);
+            shader.setUniformMatrix4(shader.getProjectionMatrixUniformHandle(), emptyMatrix, 0);
         }
 
         if (shader.validHandle(shader.getViewMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getViewMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    camera.getViewMatrix(),
+            shader.setUniformMatrix4(shader.getViewMatrixUniformHandle(), camera.getOrthoMatrix(),
                     0);
         }
 
-        if (shader.validHandle(shader.getModelMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getModelMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    modelMatrix.getFloats(),
-                    0);
+        if (shader.validHandle(shader.getViewDimensionUniformHandle())) {
+            shader.setUniform2f(shader.getViewDimensionUniformHandle(), Crispin.getSurfaceWidth(),
+                    Crispin.getSurfaceHeight());
         }
+    }
 
-        if (shader.validHandle(shader.getViewDimensionUniformHandle())) {
-            glUniform2f(shader.getViewDimensionUniformHandle(), Crispin.getSurfaceWidth(), Crispin.getSurfaceHeight());
+    // Set the uniforms that depend on the model when drawn with a 2D camera
+    private void setModelUniforms(Camera2D camera) {
+        if (shader.validHandle(shader.getMatrixUniformHandle())) {
+            float[] modelViewMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
+            Matrix.multiplyMM(modelViewMatrix, 0, camera.getOrthoMatrix(), 0,
+                    modelMatrix.getFloats(), 0);
+
+            shader.setUniformMatrix4(shader.getMatrixUniformHandle(), modelViewMatrix, 0);
         }
 
-        GLES30.glBindVertexArray(mesh.vao);
-        // Draw the vertex data with the specified render method
-        switch (mesh.renderMethod) {
-            case POINTS:
-                glDrawArrays(GL_POINTS, 0, mesh.vertexCount);
-                break;
-            case LINES:
-                glDrawArrays(GL_LINES, 0, mesh.vertexCount);
-                break;
-            case TRIANGLES:
-                glDrawArrays(GL_TRIANGLES, 0, mesh.vertexCount);
-                break;
+        if (shader.validHandle(shader.getModelMatrixUniformHandle())) {
+            shader.setUniformMatrix4(shader.getModelMatrixUniformHandle(),
+                    modelMatrix.getFloats(), 0);
         }
+    }
 
-        glBindTexture(GL_TEXTURE_2D, 0);
+    // Set the uniforms that depend on the 3D camera but not the model
+    private void setViewUniforms(Camera camera) {
+        if (shader.validHandle(shader.getViewPositionUniformHandle())) {
+            final Vec3 cameraPos = camera.getPosition();
+            shader.setUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x, cameraPos.y,
+                    cameraPos.z);
+        }
 
-        if(renderWireframe) {
-            if (shader.materialHandles.colourUniformHandle != UNDEFINED_HANDLE) {
-                glUniform4f(shader.materialHandles.colourUniformHandle, 0f, 0f, 0f, material.colour.alpha);
-            }
-            glLineWidth(wireframeLineWidth);
-            glDrawArrays(GL_LINES, 0, mesh.vertexCount);
-            glDrawArrays(GL_LINES, 1, mesh.vertexCount);
+        if (shader.validHandle(shader.getProjectionMatrixUniformHandle())) {
+            shader.setUniformMatrix4(shader.getProjectionMatrixUniformHandle(),
+                    camera.getPerspectiveMatrix(), 0);
         }
-        GLES30.glBindVertexArray(0);
 
-        shader.disable();
-    }
+        if (shader.validHandle(shader.getViewMatrixUniformHandle())) {
+            shader.setUniformMatrix4(shader.getViewMatrixUniformHandle(), camera.getViewMatrix(),
+                    0);
+        }
 
-    public void render(Camera camera) {
-        render(camera, null);
+        if (shader.validHandle(shader.getViewDimensionUniformHandle())) {
+            shader.setUniform2f(shader.getViewDimensionUniformHandle(), Crispin.getSurfaceWidth(),
+                    Crispin.getSurfaceHeight());
+        }
     }
 
-    private void setLightUniforms(LightGroup lightGroup) {
-        if (lightGroup != null) {
-            final DirectionalLight directionalLight = lightGroup.getDirectionalLight();
-            if (directionalLight != null) {
-                shader.setDirectionalLightUniforms(directionalLight);
-            } else {
-                shader.clearDirectionalLightUniforms();
-            }
+    // Set the uniforms that depend on the model when drawn with a 3D camera
+    private void setModelUniforms(Camera camera) {
+        // Support for shaders that only take in matrix (like uniform colour shader)
+        if (shader.validHandle(shader.getMatrixUniformHandle())) {
+            float[] modelViewMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
+            Matrix.multiplyMM(modelViewMatrix, 0, camera.getViewMatrix(), 0,
+                    modelMatrix.getFloats(), 0);
 
-            // Point lights
-            final ArrayList<PointLight> pointLights = lightGroup.getPointLights();
-            if (shader.validHandle(shader.getNumPointLightsUniformHandle())) {
-                glUniform1i(shader.getNumPointLightsUniformHandle(), pointLights.size());
-            }
-            // Iterate through point lights, uploading each to the shader
-            for (int i = 0; i < pointLights.size() && i < shader.getMaxPointLights(); i++) {
-                final PointLight pointLight = pointLights.get(i);
-                shader.setPointLightUniforms(i, pointLight);
-            }
+            float[] modelViewProjectionMatrix = new float[NUM_VALUES_PER_VIEW_MATRIX];
+            Matrix.multiplyMM(modelViewProjectionMatrix, 0, camera.getPerspectiveMatrix(), 0,
+                    modelViewMatrix, 0);
 
-            // Emissive edges
-            final ArrayList<EmissiveEdge> emissiveEdges = lightGroup.getEmissiveEdges();
-            if (shader.validHandle(shader.getNumEmissiveEdgesUniformHandle())) {
-                glUniform1i(shader.getNumEmissiveEdgesUniformHandle(), emissiveEdges.size());
-            }
-            // Iterate through emissive edges, uploading each to the shader
-            for (int i = 0; i < emissiveEdges.size() && i < shader.getMaxEmissiveEdges(); i++) {
-                final EmissiveEdge emissiveEdge = emissiveEdges.get(i);
-                shader.setEmissiveEdgeUniforms(i, emissiveEdge);
-            }
+            shader.setUniformMatrix4(shader.getMatrixUniformHandle(), modelViewProjectionMatrix, 0);
+        }
 
-            // Spot lights
-            final ArrayList<SpotLight> spotLights = lightGroup.getSpotLights();
-            if (shader.validHandle(shader.getNumSpotLightsUniformHandle())) {
-                glUniform1i(shader.getNumSpotLightsUniformHandle(), spotLights.size());
-            }
-            // Iterate through spot lights, uploading each to the shader
-            for (int i = 0; i < spotLights.size() && i < shader.getMaxSpotLights(); i++) {
-                final SpotLight spotLight = spotLights.get(i);
-                shader.setSpotLightUniforms(i, spotLight);
-            }
+        if (shader.validHandle(shader.getModelMatrixUniformHandle())) {
+            shader.setUniformMatrix4(shader.getModelMatrixUniformHandle(),
+                    modelMatrix.getFloats(), 0);
         }
     }
 
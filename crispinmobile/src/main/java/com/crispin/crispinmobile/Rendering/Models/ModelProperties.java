@@ -35,6 +35,9 @@ public class ModelProperties {
     // Model matrix requires update
     private boolean modelMatrixUpdate;
 
+    // Changes each time the position, rotation or scale changes
+    private int version;
+
     public ModelProperties(Material material) {
         this.material = material;
         modelMatrix = new ModelMatrix();
@@ -69,7 +72,7 @@ public class ModelProperties {
         this.position.x = x;
         this.position.y = y;
         this.position.z = z;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -82,7 +85,7 @@ public class ModelProperties {
     public void setPosition(float x, float y) {
         this.position.x = x;
         this.position.y = y;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -114,7 +117,7 @@ public class ModelProperties {
     public void setPosition(Vec2 position) {
         this.position.x = position.x;
         this.position.y = position.y;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -129,7 +132,7 @@ public class ModelProperties {
         this.scale.w = w;
         this.scale.h = h;
         this.scale.l = l;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -142,7 +145,7 @@ public class ModelProperties {
     public void setScale(float w, float h) {
         this.scale.w = w;
         this.scale.h = h;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -153,7 +156,7 @@ public class ModelProperties {
      */
     public void setScaleX(float x) {
         this.scale.w = x;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -164,7 +167,7 @@ public class ModelProperties {
      */
     public void setScaleY(float y) {
         this.scale.h = y;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -175,7 +178,7 @@ public class ModelProperties {
      */
     public void setScaleZ(float z) {
         this.scale.l = z;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -242,7 +245,7 @@ public class ModelProperties {
         this.rotation.x = x;
         this.rotation.y = y;
         this.rotation.z = z;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -267,7 +270,7 @@ public class ModelProperties {
         this.rotation.angle = angle;
         this.rotation.x = x;
         this.rotation.y = y;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -341,7 +344,7 @@ public class ModelProperties {
         this.rotationPointAngle.x = rotationX;
         this.rotationPointAngle.y = rotationY;
         this.rotationPointAngle.z = rotationZ;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -352,7 +355,7 @@ public class ModelProperties {
      */
     public void translate(Vec3 point) {
         this.position.translate(point);
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -367,7 +370,7 @@ public class ModelProperties {
         this.position.x += x;
         this.position.y += y;
         this.position.z += z;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -379,7 +382,7 @@ public class ModelProperties {
     public void translate(Vec2 point) {
         this.position.x += point.x;
         this.position.y += point.y;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -392,7 +395,7 @@ public class ModelProperties {
     public void translate(float x, float y) {
         this.position.x += x;
         this.position.y += y;
-        modelMatrixUpdate = true;
+        onTransformChanged();
     }
 
     /**
@@ -465,6 +468,7 @@ public class ModelProperties {
      */
     public void setAlpha(float alpha) {
         this.material.colour.alpha = alpha;
+        this.material.markChanged();
     }
 
     /**
@@ -489,6 +493,20 @@ public class ModelProperties {
         this.material.setColour(colour);
     }
 
+    /**
+     * Get the version of the transformation. The version changes whenever the position, rotation
+     * or scale is changed, so it can be compared to a version from before to find out if the model
+     * matrix has changed without updating it. Changes to the colour are tracked by the version of
+     * the material.
+     *
+     * @return The version of the transformation
+     * @see Material#getVersion()
+     * @since 1.0
+     */
+    public int getVersion() {
+        return version;
+    }
+
     /**
      * Get the model matrix. If a model property has changed since, it will be updated first
      *
@@ -522,4 +540,10 @@ public class ModelProperties {
         modelMatrix.scale(scale);
         modelMatrixUpdate = false;
     }
-}
\ No newline at end of file
+
+    // Mark the model matrix for update and move to the next version
+    private void onTransformChanged() {
+        modelMatrixUpdate = true;
+        version++;
+    }
+}
@@ -5,10 +5,12 @@ import com.crispin.crispinmobile.Rendering.Data.Colour;
 import com.crispin.crispinmobile.Rendering.Data.Material;
 import com.crispin.crispinmobile.Rendering.Data.Texture;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.DefaultMeshCache;
 
 /**
  * Square class is a default render object model that allows you to render a 2-dimensional square.
- * It contains position and texture data.
+ * It contains position and texture data. The mesh is shared with every other square that has the
+ * same data types.
  *
  * @author Christian Benner
  * @version %I%, %G%
@@ -21,40 +23,6 @@ public class Square extends Model {
     // Default bound box for a square (transform this with the model matrix to match shape)
     public static BoundBox2D SQUARE_BOUND_BOX = new BoundBox2D(0f, 0f, 1f, 1f);
 
-    // The number of position components in the position data (2 because its XYZ)
-    private static final byte NUMBER_POSITION_COMPONENTS = 2;
-
-    // The number of texel components in the texel data (2 because its ST)
-    private static final byte NUMBER_TEXEL_COMPONENTS = 2;
-
-    // Position vertex data that contains XY components
-    private static final float[] POSITION_DATA =
-            {
-                    0.0f, 1.0f,
-                    0.0f, 0.0f,
-                    1.0f, 0.0f,
-                    1.0f, 1.0f,
-                    0.0f, 1.0f,
-                    1.0f, 0.0f
-            };
-
-    // Texel vertex data that contains ST components
-    private static final float[] TEXEL_DATA =
-            {
-                    0.0f, 0.0f,
-                    0.0f, 1.0f,
-                    1.0f, 1.0f,
-                    1.0f, 0.0f,
-                    0.0f, 0.0f,
-                    1.0f, 1.0f
-            };
-
-    // Normal vertex data that contains XYZ components
-    private static final float[] NORMAL_DATA =
-            {
-
-            };
-
     /**
      * Create a square with specifically allowed data types. This allows you to limit what data is
      * uploaded to the GPU and rendered. This means that a vertex buffer of the minimum size is
@@ -67,10 +35,7 @@ public class Square extends Model {
      * @since 1.0
      */
     public Square(Material material, boolean renderTexels) {
-        super(POSITION_DATA, renderTexels ? TEXEL_DATA : null, null,
-                Mesh.RenderMethod.TRIANGLES, NUMBER_POSITION_COMPONENTS,
-                renderTexels ? NUMBER_TEXEL_COMPONENTS : 0,
-                (byte)0, material);
+        super(DefaultMeshCache.getSquare(renderTexels), material);
     }
 
     /**
@@ -142,9 +107,29 @@ public class Square extends Model {
         this(new Material(), true);
     }
 
+    /**
+     * Release the reference to the shared square mesh. The square must not be rendered afterwards.
+     * Destroying the square more than once has no further effect.
+     *
+     * @since 1.0
+     */
+    @Override
+    public void destroy() {
+        if(mesh != null) {
+            DefaultMeshCache.release(mesh);
+            mesh = null;
+        }
+    }
+
+    /**
+     * Get the shared 2D shadow mesh of a square. The mesh is shared, so it must not be destroyed
+     * by the caller.
+     *
+     * @return The shadow mesh
+     * @see DefaultMeshCache
+     * @since 1.0
+     */
     public static Mesh getShadowMesh() {
-        return new Mesh(ShadowMeshUtil.createShadowVertices2D(POSITION_DATA), null,
-                null, Mesh.RenderMethod.TRIANGLES, 3, 0,
-                0);
+        return DefaultMeshCache.getSquareShadow();
     }
 }
@@ -1,11 +1,10 @@
 package com.crispin.crispinmobile.Rendering.Shaders.Handles;
 
-import static android.opengl.GLES20.glUniform1f;
-import static android.opengl.GLES20.glUniform3f;
 import static com.crispin.crispinmobile.Rendering.Shaders.Shader.UNDEFINED_HANDLE;
 
 import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
 import com.crispin.crispinmobile.Rendering.Entities.PointLight;
+import com.crispin.crispinmobile.Rendering.Shaders.UniformCache;
 
 /**
  * DirectionalLightHandles stores all GLSL shader uniform handles associated to DirectionalLight
@@ -34,55 +33,85 @@ public class DirectionalLightHandles {
     // Specular strength uniform handle
     public int specularUniformHandle = UNDEFINED_HANDLE;
 
+    // The directional light that was last uploaded and its version at the time
+    private DirectionalLight appliedDirectionalLight;
+    private int appliedVersion;
+
     /**
      * Upload uniform data to each uniform handle from the properties of a given DirectionalLight
      *
-     * @param light DirectionalLight to upload properties from
+     * @param uniforms The uniform cache of the shader program
+     * @param light    DirectionalLight to upload properties from
      * @author Christian Benner
      * @version %I%, %G%
      * @since 1.0
      */
-    public void setUniforms(final DirectionalLight light) {
+    public void setUniforms(final UniformCache uniforms, final DirectionalLight light) {
+        // Skip the upload if the same directional light has not changed since it was last uploaded
+        if (light == appliedDirectionalLight && light.getVersion() == appliedVersion) {
+            return;
+        }
+        appliedDirectionalLight = light;
+        appliedVersion = light.getVersion();
+
         if (directionUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(directionUniformHandle, light.dx, light.dy, light.dz);
+            uniforms.set3f(directionUniformHandle, light.dx, light.dy, light.dz);
         }
 
         if (colourUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(colourUniformHandle, light.red, light.green, light.blue);
+            uniforms.set3f(colourUniformHandle, light.red, light.green, light.blue);
         }
 
         if (ambientUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(ambientUniformHandle, light.ambientStrength);
+            uniforms.set1f(ambientUniformHandle, light.ambientStrength);
         }
 
         if (diffuseUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(diffuseUniformHandle, light.diffuseStrength);
+            uniforms.set1f(diffuseUniformHandle, light.diffuseStrength);
         }
 
         if (specularUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(specularUniformHandle, light.specularStrength);
+            uniforms.set1f(specularUniformHandle, light.specularStrength);
         }
     }
 
-    public void clearUniforms() {
+    /**
+     * Upload zero to each uniform handle so that the shader is not lit by a directional light
+     *
+     * @param uniforms The uniform cache of the shader program
+     * @since 1.0
+     */
+    public void clearUniforms(final UniformCache uniforms) {
+        appliedDirectionalLight = null;
+
         if (directionUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(directionUniformHandle, 0f, 0f, 0f);
+            uniforms.set3f(directionUniformHandle, 0f, 0f, 0f);
         }
 
         if (colourUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(colourUniformHandle, 0f, 0f, 0f);
+            uniforms.set3f(colourUniformHandle, 0f, 0f, 0f);
         }
 
         if (ambientUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(ambientUniformHandle, 0f);
+            uniforms.set1f(ambientUniformHandle, 0f);
         }
 
         if (diffuseUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(diffuseUniformHandle, 0f);
+            uniforms.set1f(diffuseUniformHandle, 0f);
         }
 
         if (specularUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(specularUniformHandle, 0f);
+            uniforms.set1f(specularUniformHandle, 0f);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Forget the directional light that was last uploaded so that the next call to
+     * <code>setUniforms</code> uploads its properties
+     *
+     * @since 1.0
+     */
+    public void invalidate() {
+        appliedDirectionalLight = null;
+    }
+}
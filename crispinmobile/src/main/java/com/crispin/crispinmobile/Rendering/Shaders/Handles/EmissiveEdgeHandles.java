@@ -1,11 +1,10 @@
 package com.crispin.crispinmobile.Rendering.Shaders.Handles;
 
-import static android.opengl.GLES20.glUniform1f;
-import static android.opengl.GLES20.glUniform3f;
 import static com.crispin.crispinmobile.Rendering.Shaders.Shader.UNDEFINED_HANDLE;
 
 import com.crispin.crispinmobile.Rendering.Entities.EmissiveEdge;
 import com.crispin.crispinmobile.Rendering.Entities.PointLight;
+import com.crispin.crispinmobile.Rendering.Shaders.UniformCache;
 
 /**
  * EmissiveEdgeHandles stores all GLSL shader uniform handles associated to EmissiveEdge properties
@@ -46,49 +45,71 @@ public class EmissiveEdgeHandles {
     // Attenuation quadratic variable uniform handle
     public int quadraticUniformHandle = UNDEFINED_HANDLE;
 
+    // The emissive edge that was last uploaded and its version at the time
+    private EmissiveEdge appliedEmissiveEdge;
+    private int appliedVersion;
+
     /**
      * Upload uniform data to each uniform handle from the properties of a given EmissiveEdge
      *
+     * @param uniforms     The uniform cache of the shader program
      * @param emissiveEdge EmissiveEdge to upload properties from
      * @author Christian Benner
      * @version %I%, %G%
      * @since 1.0
      */
-    public void setUniforms(EmissiveEdge emissiveEdge) {
+    public void setUniforms(UniformCache uniforms, EmissiveEdge emissiveEdge) {
+        // Skip the upload if the same emissive edge has not changed since it was last uploaded
+        if (emissiveEdge == appliedEmissiveEdge && emissiveEdge.getVersion() == appliedVersion) {
+            return;
+        }
+        appliedEmissiveEdge = emissiveEdge;
+        appliedVersion = emissiveEdge.getVersion();
+
         if (positionPointAUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(positionPointAUniformHandle, emissiveEdge.ax, emissiveEdge.ay, emissiveEdge.az);
+            uniforms.set3f(positionPointAUniformHandle, emissiveEdge.ax, emissiveEdge.ay, emissiveEdge.az);
         }
 
         if (positionPointBUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(positionPointBUniformHandle, emissiveEdge.bx, emissiveEdge.by, emissiveEdge.bz);
+            uniforms.set3f(positionPointBUniformHandle, emissiveEdge.bx, emissiveEdge.by, emissiveEdge.bz);
         }
 
         if (colourUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(colourUniformHandle, emissiveEdge.red, emissiveEdge.green, emissiveEdge.blue);
+            uniforms.set3f(colourUniformHandle, emissiveEdge.red, emissiveEdge.green, emissiveEdge.blue);
         }
 
         if (ambientUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(ambientUniformHandle, emissiveEdge.ambientStrength);
+            uniforms.set1f(ambientUniformHandle, emissiveEdge.ambientStrength);
         }
 
         if (diffuseUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(diffuseUniformHandle, emissiveEdge.diffuseStrength);
+            uniforms.set1f(diffuseUniformHandle, emissiveEdge.diffuseStrength);
         }
 
         if (specularUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(specularUniformHandle, emissiveEdge.specularStrength);
+            uniforms.set1f(specularUniformHandle, emissiveEdge.specularStrength);
         }
 
         if (constantUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(constantUniformHandle, emissiveEdge.constantAttenuation);
+            uniforms.set1f(constantUniformHandle, emissiveEdge.constantAttenuation);
         }
 
         if (linearUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(linearUniformHandle, emissiveEdge.linearAttenuation);
+            uniforms.set1f(linearUniformHandle, emissiveEdge.linearAttenuation);
         }
 
         if (quadraticUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(quadraticUniformHandle, emissiveEdge.quadraticAttenuation);
+            uniforms.set1f(quadraticUniformHandle, emissiveEdge.quadraticAttenuation);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Forget the emissive edge that was last uploaded so that the next call to
+     * <code>setUniforms</code> uploads its properties
+     *
+     * @since 1.0
+     */
+    public void invalidate() {
+        appliedEmissiveEdge = null;
+    }
+}
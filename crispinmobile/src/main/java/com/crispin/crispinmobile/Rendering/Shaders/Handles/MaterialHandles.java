@@ -1,19 +1,11 @@
 package com.crispin.crispinmobile.Rendering.Shaders.Handles;
 
-import static android.opengl.GLES30.GL_TEXTURE0;
-import static android.opengl.GLES30.GL_TEXTURE1;
-import static android.opengl.GLES30.GL_TEXTURE2;
 import static android.opengl.GLES30.GL_TEXTURE_2D;
-import static android.opengl.GLES30.glActiveTexture;
-import static android.opengl.GLES30.glBindTexture;
-import static android.opengl.GLES30.glUniform1f;
-import static android.opengl.GLES30.glUniform1i;
-import static android.opengl.GLES30.glUniform2f;
-import static android.opengl.GLES30.glUniform3f;
-import static android.opengl.GLES30.glUniform4f;
 import static com.crispin.crispinmobile.Rendering.Shaders.Shader.UNDEFINED_HANDLE;
 
 import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Shaders.UniformCache;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 
 
 /**
@@ -61,69 +53,80 @@ public class MaterialHandles {
     public int shininessUniformHandle = UNDEFINED_HANDLE;
 
     /**
-     * Upload uniform data to each uniform handle from the properties of a given material
+     * Upload uniform data to each uniform handle from the properties of a given material. The
+     * properties are read on every call because the public fields of a material can be written
+     * directly; values the program already has are skipped by the uniform cache.
      *
+     * @param uniforms The uniform cache of the shader program
      * @param material Material to upload properties from
      * @author Christian Benner
      * @version %I%, %G%
      * @since 1.0
      */
-    public void setUniforms(final Material material) {
+    public void setUniforms(final UniformCache uniforms, final Material material) {
+        if (textureUniformHandle != UNDEFINED_HANDLE && material.hasTexture()) {
+            GLStateCache.bindTexture(0, GL_TEXTURE_2D, material.texture.getGlTextureID());
+        }
+
+        if (diffuseMapUniformHandle != UNDEFINED_HANDLE && material.hasDiffuseMap()) {
+            GLStateCache.bindTexture(1, GL_TEXTURE_2D, material.diffuseMap.getGlTextureID());
+        }
+
+        if (specularMapUniformHandle != UNDEFINED_HANDLE && material.hasSpecularMap()) {
+            GLStateCache.bindTexture(1, GL_TEXTURE_2D, material.specularMap.getGlTextureID());
+        }
+
+        if (normalMapUniformHandle != UNDEFINED_HANDLE && material.hasNormalMap()) {
+            GLStateCache.bindTexture(2, GL_TEXTURE_2D, material.normalMap.getGlTextureID());
+        }
+
         if (colourUniformHandle != UNDEFINED_HANDLE) {
-            glUniform4f(colourUniformHandle, material.colour.red, material.colour.green,
+            uniforms.set4f(colourUniformHandle, material.colour.red, material.colour.green,
                     material.colour.blue, material.colour.alpha);
         }
 
         if (uvMultiplierUniformHandle != UNDEFINED_HANDLE) {
-            glUniform2f(uvMultiplierUniformHandle, material.uvMultiplier.w,
+            uniforms.set2f(uvMultiplierUniformHandle, material.uvMultiplier.w,
                     material.uvMultiplier.h);
         }
 
         if (uvOffsetUniformHandle != UNDEFINED_HANDLE) {
-            glUniform2f(uvOffsetUniformHandle, material.uvOffset.x, material.uvOffset.y);
+            uniforms.set2f(uvOffsetUniformHandle, material.uvOffset.x, material.uvOffset.y);
         }
 
         if (textureUniformHandle != UNDEFINED_HANDLE && material.hasTexture()) {
-            glActiveTexture(GL_TEXTURE0);
-            glBindTexture(GL_TEXTURE_2D, material.texture.getGlTextureID());
-            glUniform1i(textureUniformHandle, 0);
+            uniforms.set1i(textureUniformHandle, 0);
         }
 
         if (diffuseMapUniformHandle != UNDEFINED_HANDLE && material.hasDiffuseMap()) {
-            glActiveTexture(GL_TEXTURE1);
-            glBindTexture(GL_TEXTURE_2D, material.diffuseMap.getGlTextureID());
-            glUniform1i(diffuseMapUniformHandle, 1);
+            uniforms.set1i(diffuseMapUniformHandle, 1);
         }
 
         if (specularMapUniformHandle != UNDEFINED_HANDLE && material.hasSpecularMap()) {
-            glActiveTexture(GL_TEXTURE1);
-            glBindTexture(GL_TEXTURE_2D, material.specularMap.getGlTextureID());
-            glUniform1i(specularMapUniformHandle, 1);
+            uniforms.set1i(specularMapUniformHandle, 1);
         }
 
         if (normalMapUniformHandle != UNDEFINED_HANDLE && material.hasNormalMap()) {
-            glActiveTexture(GL_TEXTURE2);
-            glBindTexture(GL_TEXTURE_2D, material.normalMap.getGlTextureID());
-            glUniform1i(normalMapUniformHandle, 2);
+            uniforms.set1i(normalMapUniformHandle, 2);
         }
 
         if (ambientUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(ambientUniformHandle, material.ambientStrength.red,
+            uniforms.set3f(ambientUniformHandle, material.ambientStrength.red,
                     material.ambientStrength.green, material.ambientStrength.blue);
         }
 
         if (diffuseUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(diffuseUniformHandle, material.diffuseStrength.red,
+            uniforms.set3f(diffuseUniformHandle, material.diffuseStrength.red,
                     material.diffuseStrength.green, material.diffuseStrength.blue);
         }
 
         if (specularUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(specularUniformHandle, material.specularStrength.red,
+            uniforms.set3f(specularUniformHandle, material.specularStrength.red,
                     material.specularStrength.green, material.specularStrength.blue);
         }
 
         if (shininessUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(shininessUniformHandle, material.shininess);
+            uniforms.set1f(shininessUniformHandle, material.shininess);
         }
     }
 }
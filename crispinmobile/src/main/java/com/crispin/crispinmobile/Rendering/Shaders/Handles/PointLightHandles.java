@@ -1,10 +1,9 @@
 package com.crispin.crispinmobile.Rendering.Shaders.Handles;
 
-import static android.opengl.GLES20.glUniform1f;
-import static android.opengl.GLES20.glUniform3f;
 import static com.crispin.crispinmobile.Rendering.Shaders.Shader.UNDEFINED_HANDLE;
 
 import com.crispin.crispinmobile.Rendering.Entities.PointLight;
+import com.crispin.crispinmobile.Rendering.Shaders.UniformCache;
 
 /**
  * PointLightHandles stores all GLSL shader uniform handles associated to PointLight properties such
@@ -42,45 +41,67 @@ public class PointLightHandles {
     // Attenuation quadratic variable uniform handle
     public int quadraticUniformHandle = UNDEFINED_HANDLE;
 
+    // The point light that was last uploaded and its version at the time
+    private PointLight appliedPointLight;
+    private int appliedVersion;
+
     /**
      * Upload uniform data to each uniform handle from the properties of a given PointLight
      *
-     * @param light PointLight to upload properties from
+     * @param uniforms The uniform cache of the shader program
+     * @param light    PointLight to upload properties from
      * @author Christian Benner
      * @version %I%, %G%
      * @since 1.0
      */
-    public void setUniforms(PointLight light) {
+    public void setUniforms(UniformCache uniforms, PointLight light) {
+        // Skip the upload if the same point light has not changed since it was last uploaded
+        if (light == appliedPointLight && light.getVersion() == appliedVersion) {
+            return;
+        }
+        appliedPointLight = light;
+        appliedVersion = light.getVersion();
+
         if (positionUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(positionUniformHandle, light.x, light.y, light.z);
+            uniforms.set3f(positionUniformHandle, light.x, light.y, light.z);
         }
 
         if (colourUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(colourUniformHandle, light.red, light.green, light.blue);
+            uniforms.set3f(colourUniformHandle, light.red, light.green, light.blue);
         }
 
         if (ambientUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(ambientUniformHandle, light.ambientStrength);
+            uniforms.set1f(ambientUniformHandle, light.ambientStrength);
         }
 
         if (diffuseUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(diffuseUniformHandle, light.diffuseStrength);
+            uniforms.set1f(diffuseUniformHandle, light.diffuseStrength);
         }
 
         if (specularUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(specularUniformHandle, light.specularStrength);
+            uniforms.set1f(specularUniformHandle, light.specularStrength);
         }
 
         if (constantUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(constantUniformHandle, light.constantAttenuation);
+            uniforms.set1f(constantUniformHandle, light.constantAttenuation);
         }
 
         if (linearUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(linearUniformHandle, light.linearAttenuation);
+            uniforms.set1f(linearUniformHandle, light.linearAttenuation);
         }
 
         if (quadraticUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(quadraticUniformHandle, light.quadraticAttenuation);
+            uniforms.set1f(quadraticUniformHandle, light.quadraticAttenuation);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Forget the point light that was last uploaded so that the next call to
+     * <code>setUniforms</code> uploads its properties
+     *
+     * @since 1.0
+     */
+    public void invalidate() {
+        appliedPointLight = null;
+    }
+}
@@ -1,10 +1,9 @@
 package com.crispin.crispinmobile.Rendering.Shaders.Handles;
 
-import static android.opengl.GLES30.glUniform1f;
-import static android.opengl.GLES30.glUniform3f;
 import static com.crispin.crispinmobile.Rendering.Shaders.Shader.UNDEFINED_HANDLE;
 
 import com.crispin.crispinmobile.Rendering.Entities.SpotLight;
+import com.crispin.crispinmobile.Rendering.Shaders.UniformCache;
 
 /**
  * SpotLightHandles stores all GLSL shader uniform handles associated to SpotLight properties such
@@ -50,57 +49,79 @@ public class SpotLightHandles {
     // Outer size of the light (when to end fading out the light radius of the light)
     public int outerSizeUniformHandle = UNDEFINED_HANDLE;
 
+    // The spot light that was last uploaded and its version at the time
+    private SpotLight appliedSpotLight;
+    private int appliedVersion;
+
     /**
      * Upload uniform data to each uniform handle from the properties of a given SpotLight
      *
-     * @param light SpotLight to upload properties from
+     * @param uniforms The uniform cache of the shader program
+     * @param light    SpotLight to upload properties from
      * @author Christian Benner
      * @version %I%, %G%
      * @since 1.0
      */
-    public void setUniforms(SpotLight light) {
+    public void setUniforms(UniformCache uniforms, SpotLight light) {
+        // Skip the upload if the same spot light has not changed since it was last uploaded
+        if (light == appliedSpotLight && light.getVersion() == appliedVersion) {
+            return;
+        }
+        appliedSpotLight = light;
+        appliedVersion = light.getVersion();
+
         if (positionUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(positionUniformHandle, light.x, light.y, light.z);
+            uniforms.set3f(positionUniformHandle, light.x, light.y, light.z);
         }
 
         if (directionUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(directionUniformHandle, light.dx, light.dy, light.dz);
+            uniforms.set3f(directionUniformHandle, light.dx, light.dy, light.dz);
         }
 
         if (colourUniformHandle != UNDEFINED_HANDLE) {
-            glUniform3f(colourUniformHandle, light.red, light.green, light.blue);
+            uniforms.set3f(colourUniformHandle, light.red, light.green, light.blue);
         }
 
         if (ambientUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(ambientUniformHandle, light.ambientStrength);
+            uniforms.set1f(ambientUniformHandle, light.ambientStrength);
         }
 
         if (diffuseUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(diffuseUniformHandle, light.diffuseStrength);
+            uniforms.set1f(diffuseUniformHandle, light.diffuseStrength);
         }
 
         if (specularUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(specularUniformHandle, light.specularStrength);
+            uniforms.set1f(specularUniformHandle, light.specularStrength);
         }
 
         if (constantUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(constantUniformHandle, light.constantAttenuation);
+            uniforms.set1f(constantUniformHandle, light.constantAttenuation);
         }
 
         if (linearUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(linearUniformHandle, light.linearAttenuation);
+            uniforms.set1f(linearUniformHandle, light.linearAttenuation);
         }
 
         if (quadraticUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(quadraticUniformHandle, light.quadraticAttenuation);
+            uniforms.set1f(quadraticUniformHandle, light.quadraticAttenuation);
         }
 
         if (sizeUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(sizeUniformHandle, light.size);
+            uniforms.set1f(sizeUniformHandle, light.size);
         }
 
         if (outerSizeUniformHandle != UNDEFINED_HANDLE) {
-            glUniform1f(outerSizeUniformHandle, light.outerSize);
+            uniforms.set1f(outerSizeUniformHandle, light.outerSize);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Forget the spot light that was last uploaded so that the next call to
+     * <code>setUniforms</code> uploads its properties
+     *
+     * @since 1.0
+     */
+    public void invalidate() {
+        appliedSpotLight = null;
+    }
+}
@@ -1,6 +1,5 @@
 package com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders;
 
-import static android.opengl.GLES20.glUniform2f;
 
 import com.crispin.crispinmobile.Geometry.Vec2;
 import com.crispin.crispinmobile.R;
@@ -43,7 +42,7 @@ public class InstanceShadowShader2D extends Shader {
 
     public void setLightPos(Vec2 lightPos) {
         super.enable();
-        glUniform2f(lightPositionUniformHandle, lightPos.x, lightPos.y);
+        setUniform2f(lightPositionUniformHandle, lightPos.x, lightPos.y);
         super.disable();
     }
 }
@@ -3,6 +3,7 @@ package com.crispin.crispinmobile.Rendering.Shaders;
 import static android.opengl.GLES30.GL_COMPILE_STATUS;
 import static android.opengl.GLES30.GL_FRAGMENT_SHADER;
 import static android.opengl.GLES30.GL_INFO_LOG_LENGTH;
+import static android.opengl.GLES30.GL_INVALID_INDEX;
 import static android.opengl.GLES30.GL_INVALID_VALUE;
 import static android.opengl.GLES30.GL_LINK_STATUS;
 import static android.opengl.GLES30.GL_TRUE;
@@ -18,10 +19,11 @@ import static android.opengl.GLES30.glGetProgramInfoLog;
 import static android.opengl.GLES30.glGetProgramiv;
 import static android.opengl.GLES30.glGetShaderInfoLog;
 import static android.opengl.GLES30.glGetShaderiv;
+import static android.opengl.GLES30.glGetUniformBlockIndex;
 import static android.opengl.GLES30.glGetUniformLocation;
 import static android.opengl.GLES30.glLinkProgram;
 import static android.opengl.GLES30.glShaderSource;
-import static android.opengl.GLES30.glUseProgram;
+import static android.opengl.GLES30.glUniformBlockBinding;
 
 import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
 import com.crispin.crispinmobile.Rendering.Entities.EmissiveEdge;
@@ -33,10 +35,15 @@ import com.crispin.crispinmobile.Rendering.Shaders.Handles.MaterialHandles;
 import com.crispin.crispinmobile.Rendering.Shaders.Handles.PointLightHandles;
 import com.crispin.crispinmobile.Rendering.Shaders.Handles.SpotLightHandles;
 import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+import com.crispin.crispinmobile.Rendering.Utilities.LightGroup;
+import com.crispin.crispinmobile.Rendering.Utilities.LightUniformBuffer;
 import com.crispin.crispinmobile.Utilities.FileResourceReader;
 import com.crispin.crispinmobile.Utilities.Logger;
 import com.crispin.crispinmobile.Utilities.ShaderCache;
 
+import java.util.ArrayList;
+
 /**
  * Shader class is used to load and compile and manage GLSL shader programs from a file or
  * string. It can be used to load vertex/fragment shader programs. The class is designed to be
@@ -134,6 +141,13 @@ public class Shader {
     // The ID of the OpenGL program
     protected int programId;
 
+    // The values of the program uniforms, so that setting a value that has not changed is skipped
+    private final UniformCache uniformCache;
+
+    // The index of the light uniform block in the program, or GL_INVALID_INDEX if the program does
+    // not declare it
+    private int lightBlockIndex;
+
     /**
      * Shader constructor. Create and compile the GLSL shader in Open GL ES memory and then register
      * it in the shader cache.
@@ -148,9 +162,11 @@ public class Shader {
         this.name = name;
         this.vertexShaderCode = vertexShaderCode;
         this.fragmentShaderCode = fragmentShaderCode;
+        this.uniformCache = new UniformCache();
 
         // Create a new shader program using the vertex shader code and fragment shader code
         programId = createProgram(name, vertexShaderCode, fragmentShaderCode);
+        initLightBlock();
 
         // Set the default values of all of the different handles to undefined
         positionAttributeHandle = UNDEFINED_HANDLE;
@@ -386,7 +402,17 @@ public class Shader {
      * @since 1.0
      */
     public void enable() {
-        glUseProgram(programId);
+        GLStateCache.useProgram(programId);
+    }
+
+    /**
+     * Get the ID of the OpenGL program
+     *
+     * @return Integer ID of the program
+     * @since 1.0
+     */
+    public int getProgramId() {
+        return programId;
     }
 
     /**
@@ -395,7 +421,7 @@ public class Shader {
      * @since 1.0
      */
     public void disable() {
-        glUseProgram(0);
+        GLStateCache.useProgram(0);
     }
 
     /**
@@ -406,6 +432,10 @@ public class Shader {
      */
     public void reconstruct() {
         programId = createProgram(name, vertexShaderCode, fragmentShaderCode);
+        initLightBlock();
+
+        // The uniforms of the new program have their default values
+        invalidateUniforms();
     }
 
     /**
@@ -415,6 +445,7 @@ public class Shader {
      */
     public void destroy() {
         glDeleteProgram(programId);
+        GLStateCache.onProgramDeleted(programId);
         programId = GL_INVALID_VALUE;
     }
 
@@ -605,6 +636,10 @@ public class Shader {
      * @since 1.0
      */
     public int getMaxPointLights() {
+        if (hasLightBlock()) {
+            return LightUniformBuffer.MAX_POINT_LIGHTS;
+        }
+
         if (pointLightHandles == null) {
             return 0;
         }
@@ -619,6 +654,10 @@ public class Shader {
      * @since 1.0
      */
     public int getMaxEmissiveEdges() {
+        if (hasLightBlock()) {
+            return LightUniformBuffer.MAX_EMISSIVE_EDGES;
+        }
+
         if (emissiveEdgeHandles == null) {
             return 0;
         }
@@ -633,6 +672,10 @@ public class Shader {
      * @since 1.0
      */
     public int getMaxSpotLights() {
+        if (hasLightBlock()) {
+            return LightUniformBuffer.MAX_SPOT_LIGHTS;
+        }
+
         if (spotLightHandles == null) {
             return 0;
         }
@@ -640,6 +683,72 @@ public class Shader {
         return spotLightHandles.length;
     }
 
+    /**
+     * Check if the program declares the light uniform block. The lights of these shaders are read
+     * from the uniform buffer of the light group instead of separate uniforms.
+     *
+     * @return True if the program declares the light uniform block, else false
+     * @see LightUniformBuffer
+     * @since 1.0
+     */
+    public boolean hasLightBlock() {
+        return lightBlockIndex != GL_INVALID_INDEX;
+    }
+
+    /**
+     * Set the lights to draw with. If the program declares the light uniform block, the uniform
+     * buffer of the light group is bound (it is only uploaded if the lights have changed).
+     * Otherwise the uniforms of each light are set through the light handles of the shader. The
+     * shader must be enabled.
+     *
+     * @param lightGroup The lights to draw with, or <code>null</code> for no lights
+     * @since 1.0
+     */
+    public void setLightUniforms(LightGroup lightGroup) {
+        if (hasLightBlock()) {
+            LightUniformBuffer.bind(lightGroup);
+            return;
+        }
+
+        if (lightGroup == null) {
+            return;
+        }
+
+        final DirectionalLight directionalLight = lightGroup.getDirectionalLight();
+        if (directionalLight != null) {
+            setDirectionalLightUniforms(directionalLight);
+        } else {
+            clearDirectionalLightUniforms();
+        }
+
+        // Point lights
+        final ArrayList<PointLight> pointLights = lightGroup.getPointLights();
+        if (validHandle(numPointLightsUniformHandle)) {
+            setUniform1i(numPointLightsUniformHandle, pointLights.size());
+        }
+        for (int i = 0; i < pointLights.size() && i < getMaxPointLights(); i++) {
+            setPointLightUniforms(i, pointLights.get(i));
+        }
+
+        // Emissive edges
+        final ArrayList<EmissiveEdge> emissiveEdges = lightGroup.getEmissiveEdges();
+        if (validHandle(numEmissiveEdgesUniformHandle)) {
+            setUniform1i(numEmissiveEdgesUniformHandle, emissiveEdges.size());
+        }
+        for (int i = 0; i < emissiveEdges.size() && i < getMaxEmissiveEdges(); i++) {
+            setEmissiveEdgeUniforms(i, emissiveEdges.get(i));
+        }
+
+        // Spot lights
+        final ArrayList<SpotLight> spotLights = lightGroup.getSpotLights();
+        if (validHandle(numSpotLightsUniformHandle)) {
+            setUniform1i(numSpotLightsUniformHandle, spotLights.size());
+        }
+        for (int i = 0; i < spotLights.size() && i < getMaxSpotLights(); i++) {
+            setSpotLightUniforms(i, spotLights.get(i));
+        }
+    }
+
     /**
      * Set all the uniforms for a directional light
      *
@@ -647,7 +756,7 @@ public class Shader {
      */
     public void setDirectionalLightUniforms(DirectionalLight directionalLight) {
         if (directionalLightHandles != null) {
-            directionalLightHandles.setUniforms(directionalLight);
+            directionalLightHandles.setUniforms(uniformCache, directionalLight);
         }
     }
 
@@ -658,7 +767,7 @@ public class Shader {
      */
     public void clearDirectionalLightUniforms() {
         if (directionalLightHandles != null) {
-            directionalLightHandles.clearUniforms();
+            directionalLightHandles.clearUniforms(uniformCache);
         }
     }
 
@@ -669,7 +778,7 @@ public class Shader {
      */
     public void setPointLightUniforms(int index, PointLight pointLight) {
         if (pointLightHandles != null && index < pointLightHandles.length) {
-            pointLightHandles[index].setUniforms(pointLight);
+            pointLightHandles[index].setUniforms(uniformCache, pointLight);
         }
     }
 
@@ -680,7 +789,7 @@ public class Shader {
      */
     public void setEmissiveEdgeUniforms(int index, EmissiveEdge emissiveEdge) {
         if (emissiveEdgeHandles != null && index < emissiveEdgeHandles.length) {
-            emissiveEdgeHandles[index].setUniforms(emissiveEdge);
+            emissiveEdgeHandles[index].setUniforms(uniformCache, emissiveEdge);
         }
     }
 
@@ -691,7 +800,7 @@ public class Shader {
      */
     public void setSpotLightUniforms(int index, SpotLight spotLight) {
         if (spotLightHandles != null && index < spotLightHandles.length) {
-            spotLightHandles[index].setUniforms(spotLight);
+            spotLightHandles[index].setUniforms(uniformCache, spotLight);
         }
     }
 
@@ -702,7 +811,147 @@ public class Shader {
      */
     public void setMaterialUniforms(Material material) {
         if (materialHandles != null) {
-            materialHandles.setUniforms(material);
+            materialHandles.setUniforms(uniformCache, material);
+        }
+    }
+
+    /**
+     * Forget all of the uniform values and lights that have been uploaded to the program
+     * so that they are all uploaded again
+     *
+     * @since 1.0
+     */
+    public void invalidateUniforms() {
+        uniformCache.invalidate();
+
+        if (directionalLightHandles != null) {
+            directionalLightHandles.invalidate();
+        }
+
+        invalidateHandles(pointLightHandles);
+        invalidateHandles(emissiveEdgeHandles);
+        invalidateHandles(spotLightHandles);
+    }
+
+    /**
+     * Get the uniform cache of the program
+     *
+     * @return The uniform cache
+     * @since 1.0
+     */
+    public UniformCache getUniformCache() {
+        return uniformCache;
+    }
+
+    /**
+     * Set an int (or sampler) uniform of the program. The upload is skipped if the uniform already
+     * has the value. The shader must be enabled.
+     *
+     * @param handle The uniform handle
+     * @param x      The value
+     * @since 1.0
+     */
+    public void setUniform1i(int handle, int x) {
+        uniformCache.set1i(handle, x);
+    }
+
+    /**
+     * Set a float uniform of the program. The upload is skipped if the uniform already has the
+     * value. The shader must be enabled.
+     *
+     * @param handle The uniform handle
+     * @param x      The value
+     * @since 1.0
+     */
+    public void setUniform1f(int handle, float x) {
+        uniformCache.set1f(handle, x);
+    }
+
+    /**
+     * Set a vec2 uniform of the program. The upload is skipped if the uniform already has the
+     * value. The shader must be enabled.
+     *
+     * @param handle The uniform handle
+     * @param x      The x value
+     * @param y      The y value
+     * @since 1.0
+     */
+    public void setUniform2f(int handle, float x, float y) {
+        uniformCache.set2f(handle, x, y);
+    }
+
+    /**
+     * Set a vec3 uniform of the program. The upload is skipped if the uniform already has the
+     * value. The shader must be enabled.
+     *
+     * @param handle The uniform handle
+     * @param x      The x value
+     * @param y      The y value
+     * @param z      The z value
+     * @since 1.0
+     */
+    public void setUniform3f(int handle, float x, float y, float z) {
+        uniformCache.set3f(handle, x, y, z);
+    }
+
+    /**
+     * Set a vec4 uniform of the program. The upload is skipped if the uniform already has the
+     * value. The shader must be enabled.
+     *
+     * @param handle The uniform handle
+     * @param x      The x value
+     * @param y      The y value
+     * @param z      The z value
+     * @param w      The w value
+     * @since 1.0
+     */
+    public void setUniform4f(int handle, float x, float y, float z, float w) {
+        uniformCache.set4f(handle, x, y, z, w);
+    }
+
+    /**
+     * Set a mat4 uniform of the program. The upload is skipped if the uniform already has the
+     * value. The shader must be enabled.
+     *
+     * @param handle The uniform handle
+     * @param matrix Array containing the matrix (column major)
+     * @param offset The index of the first value of the matrix in the array
+     * @since 1.0
+     */
+    public void setUniformMatrix4(int handle, float[] matrix, int offset) {
+        uniformCache.setMatrix4(handle, matrix, offset);
+    }
+
+    // Link the light uniform block of the program (if it declares one) to the binding point that
+    // the light buffers are bound to
+    private void initLightBlock() {
+        lightBlockIndex = glGetUniformBlockIndex(programId, LightUniformBuffer.BLOCK_NAME);
+        if (lightBlockIndex != GL_INVALID_INDEX) {
+            glUniformBlockBinding(programId, lightBlockIndex, LightUniformBuffer.BINDING);
+        }
+    }
+
+    private static void invalidateHandles(PointLightHandles[] handles) {
+        if (handles != null) {
+            for (PointLightHandles handle : handles) {
+                handle.invalidate();
+            }
+        }
+    }
+
+    private static void invalidateHandles(EmissiveEdgeHandles[] handles) {
+        if (handles != null) {
+            for (EmissiveEdgeHandles handle : handles) {
+                handle.invalidate();
+            }
+        }
+    }
+
+    private static void invalidateHandles(SpotLightHandles[] handles) {
+        if (handles != null) {
+            for (SpotLightHandles handle : handles) {
+                handle.invalidate();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,7 @@
 package com.crispin.crispinmobile.Rendering.Shaders.TwoDimensional;
 
 import com.crispin.crispinmobile.R;
-import com.crispin.crispinmobile.Rendering.Shaders.Handles.DirectionalLightHandles;
-import com.crispin.crispinmobile.Rendering.Shaders.Handles.EmissiveEdgeHandles;
 import com.crispin.crispinmobile.Rendering.Shaders.Handles.MaterialHandles;
-import com.crispin.crispinmobile.Rendering.Shaders.Handles.PointLightHandles;
 import com.crispin.crispinmobile.Rendering.Shaders.Shader;
 
 /**
@@ -23,12 +20,6 @@ public class LightingEdgeEmissionShader2D extends Shader {
     // The resource ID of the fragment file
     public static final int FRAGMENT_FILE = R.raw.lighting_edge_emission_frag_2d;
 
-    // Maximum number of point lights supported by the shader
-    private static final int MAX_NUM_POINT_LIGHTS = 10;
-
-    // Maximum number of emissive edges supported by the shader
-    private static final int MAX_NUM_EMISSIVE_EDGES = 10;
-
     // Tag for the logger
     private static final String TAG = "LightingEdgeEmissionShader2D";
 
@@ -49,55 +40,5 @@ public class LightingEdgeEmissionShader2D extends Shader {
 
         viewMatrixUniformHandle = getUniform("uView");
         modelMatrixUniformHandle = getUniform("uModel");
-
-        // Fragment uniforms
-        numPointLightsUniformHandle = getUniform("uNumPointLights");
-        numEmissiveEdgesUniformHandle = getUniform("uNumEmissiveEdges");
-
-        final String parent = "uDirectionalLight.";
-        DirectionalLightHandles directionalLightHandles = new DirectionalLightHandles();
-        directionalLightHandles.directionUniformHandle = getUniform(parent + "direction");
-        directionalLightHandles.colourUniformHandle = getUniform(parent + "colour");
-        directionalLightHandles.ambientUniformHandle = getUniform(parent + "ambient");
-        directionalLightHandles.diffuseUniformHandle = getUniform(parent + "diffuse");
-        directionalLightHandles.specularUniformHandle = getUniform(parent + "specular");
-        super.directionalLightHandles = directionalLightHandles;
-        initPointLightHandles();
-        initEmissiveEdgeHandles();
-    }
-
-    private void initPointLightHandles() {
-        super.pointLightHandles = new PointLightHandles[MAX_NUM_POINT_LIGHTS];
-        for (int i = 0; i < MAX_NUM_POINT_LIGHTS; i++) {
-            final String parent = "uPointLights[" + i + "].";
-            PointLightHandles pointLightHandles = new PointLightHandles();
-            pointLightHandles.positionUniformHandle = getUniform(parent + "position");
-            pointLightHandles.colourUniformHandle = getUniform(parent + "colour");
-            pointLightHandles.ambientUniformHandle = getUniform(parent + "ambient");
-            pointLightHandles.diffuseUniformHandle = getUniform(parent + "diffuse");
-            pointLightHandles.specularUniformHandle = getUniform(parent + "specular");
-            pointLightHandles.constantUniformHandle = getUniform(parent + "constant");
-            pointLightHandles.linearUniformHandle = getUniform(parent + "linear");
-            pointLightHandles.quadraticUniformHandle = getUniform(parent + "quadratic");
-            super.pointLightHandles[i] = pointLightHandles;
-        }
-    }
-
-    private void initEmissiveEdgeHandles() {
-        super.emissiveEdgeHandles = new EmissiveEdgeHandles[MAX_NUM_EMISSIVE_EDGES];
-        for (int i = 0; i < MAX_NUM_EMISSIVE_EDGES; i++) {
-            final String parent = "uEmissiveEdges[" + i + "].";
-            EmissiveEdgeHandles emissiveEdgeHandles = new EmissiveEdgeHandles();
-            emissiveEdgeHandles.positionPointAUniformHandle = getUniform(parent + "pointA");
-            emissiveEdgeHandles.positionPointBUniformHandle = getUniform(parent + "pointB");
-            emissiveEdgeHandles.colourUniformHandle = getUniform(parent + "colour");
-            emissiveEdgeHandles.ambientUniformHandle = getUniform(parent + "ambient");
-            emissiveEdgeHandles.diffuseUniformHandle = getUniform(parent + "diffuse");
-            emissiveEdgeHandles.specularUniformHandle = getUniform(parent + "specular");
-            emissiveEdgeHandles.constantUniformHandle = getUniform(parent + "constant");
-            emissiveEdgeHandles.linearUniformHandle = getUniform(parent + "linear");
-            emissiveEdgeHandles.quadraticUniformHandle = getUniform(parent + "quadratic");
-            super.emissiveEdgeHandles[i] = emissiveEdgeHandles;
-        }
     }
 }
@@ -1,17 +1,11 @@
 package com.crispin.crispinmobile.Rendering.Shaders.TwoDimensional;
 
-import static android.opengl.GLES20.glActiveTexture;
-import static android.opengl.GLES20.glBindTexture;
-import static android.opengl.GLES20.glUniform1i;
 import static android.opengl.GLES30.GL_TEXTURE_2D_ARRAY;
 
-import android.opengl.GLES30;
-
 import com.crispin.crispinmobile.R;
-import com.crispin.crispinmobile.Rendering.Shaders.Handles.DirectionalLightHandles;
 import com.crispin.crispinmobile.Rendering.Shaders.Handles.MaterialHandles;
-import com.crispin.crispinmobile.Rendering.Shaders.Handles.PointLightHandles;
 import com.crispin.crispinmobile.Rendering.Shaders.Shader;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 
 /**
  * LightingShadowShader2D is a built in shader designed to render 2D objects with lighting that can
@@ -29,9 +23,6 @@ public class LightingShadowShader2D extends Shader {
     // The resource ID of the fragment file
     public static final int FRAGMENT_FILE = R.raw.lighting_shadows_frag_2d;
 
-    // Maximum number of point lights supported by the shader
-    private static final int MAX_NUM_POINT_LIGHTS = 10;
-
     // Tag for the logger
     private static final String TAG = "LightingShadowShader2D";
 
@@ -56,43 +47,12 @@ public class LightingShadowShader2D extends Shader {
         modelMatrixUniformHandle = getUniform("uModel");
 
         shadowTextureUniformHandle = getUniform("uShadow");
-
-        // Fragment uniforms
-        numPointLightsUniformHandle = getUniform("uNumPointLights");
-
-        final String parent = "uDirectionalLight.";
-        DirectionalLightHandles directionalLightHandles = new DirectionalLightHandles();
-        directionalLightHandles.directionUniformHandle = getUniform(parent + "direction");
-        directionalLightHandles.colourUniformHandle = getUniform(parent + "colour");
-        directionalLightHandles.ambientUniformHandle = getUniform(parent + "ambient");
-        directionalLightHandles.diffuseUniformHandle = getUniform(parent + "diffuse");
-        directionalLightHandles.specularUniformHandle = getUniform(parent + "specular");
-        super.directionalLightHandles = directionalLightHandles;
-        initPointLightHandles();
     }
 
     public void setShadowTexture(int textureHandle) {
         super.enable();
-        glActiveTexture(GLES30.GL_TEXTURE3);
-        glBindTexture(GL_TEXTURE_2D_ARRAY, textureHandle);
-        glUniform1i(shadowTextureUniformHandle, 3);
+        GLStateCache.bindTexture(3, GL_TEXTURE_2D_ARRAY, textureHandle);
+        setUniform1i(shadowTextureUniformHandle, 3);
         super.disable();
     }
-
-    private void initPointLightHandles() {
-        super.pointLightHandles = new PointLightHandles[MAX_NUM_POINT_LIGHTS];
-        for (int i = 0; i < MAX_NUM_POINT_LIGHTS; i++) {
-            final String parent = "uPointLights[" + i + "].";
-            PointLightHandles pointLightHandles = new PointLightHandles();
-            pointLightHandles.positionUniformHandle = getUniform(parent + "position");
-            pointLightHandles.colourUniformHandle = getUniform(parent + "colour");
-            pointLightHandles.ambientUniformHandle = getUniform(parent + "ambient");
-            pointLightHandles.diffuseUniformHandle = getUniform(parent + "diffuse");
-            pointLightHandles.specularUniformHandle = getUniform(parent + "specular");
-            pointLightHandles.constantUniformHandle = getUniform(parent + "constant");
-            pointLightHandles.linearUniformHandle = getUniform(parent + "linear");
-            pointLightHandles.quadraticUniformHandle = getUniform(parent + "quadratic");
-            super.pointLightHandles[i] = pointLightHandles;
-        }
-    }
 }
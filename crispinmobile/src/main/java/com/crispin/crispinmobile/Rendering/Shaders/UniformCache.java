@@ -0,0 +1,367 @@
+package com.crispin.crispinmobile.Rendering.Shaders;
+
+import android.opengl.GLES30;
+
+/**
+ * UniformCache keeps a CPU side copy of the uniform values of a shader program, by uniform
+ * location. Uniform values belong to the program and stay set until they are changed, so when a
+ * value is set to what the program already has, the glUniform call is skipped. Values are compared
+ * by their bits, so a value that is only equal as a float (e.g. -0.0 and 0.0) is still uploaded.
+ * <p>
+ * The program of the cache must be in use when a value is set. Locations that have not been set
+ * through the cache are unknown, so the first value is always uploaded. The cache must be
+ * invalidated when the program is re-linked (e.g. after the OpenGL ES context is re-created) as
+ * the program values are reset.
+ * <p>
+ * The number of uniform uploads that were issued and skipped in the last frame are recorded so
+ * that they can be shown with the frame statistics.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see Shader
+ * @since 1.0
+ */
+public class UniformCache {
+    /**
+     * The OpenGL ES calls that the cache makes. Allows the cache to be tested without an OpenGL ES
+     * context.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        void uniform1i(int location, int x);
+
+        void uniform1f(int location, float x);
+
+        void uniform2f(int location, float x, float y);
+
+        void uniform3f(int location, float x, float y, float z);
+
+        void uniform4f(int location, float x, float y, float z, float w);
+
+        void uniformMatrix4fv(int location, float[] matrix, int offset);
+    }
+
+    // The backend that makes calls to OpenGL ES
+    private static class GLES30Backend implements Backend {
+        @Override
+        public void uniform1i(int location, int x) {
+            GLES30.glUniform1i(location, x);
+        }
+
+        @Override
+        public void uniform1f(int location, float x) {
+            GLES30.glUniform1f(location, x);
+        }
+
+        @Override
+        public void uniform2f(int location, float x, float y) {
+            GLES30.glUniform2f(location, x, y);
+        }
+
+        @Override
+        public void uniform3f(int location, float x, float y, float z) {
+            GLES30.glUniform3f(location, x, y, z);
+        }
+
+        @Override
+        public void uniform4f(int location, float x, float y, float z, float w) {
+            GLES30.glUniform4f(location, x, y, z, w);
+        }
+
+        @Override
+        public void uniformMatrix4fv(int location, float[] matrix, int offset) {
+            GLES30.glUniformMatrix4fv(location, 1, false, matrix, offset);
+        }
+    }
+
+    // Locations above this are not cached (locations are normally numbered from 0 by the driver)
+    private static final int MAX_CACHED_LOCATION = 1023;
+
+    // The number of values in a 4x4 matrix
+    private static final int MATRIX_SIZE = 16;
+
+    // Value of the flag after the values of a location once they have been uploaded
+    private static final int KNOWN = 1;
+
+    private static Backend backend = new GLES30Backend();
+
+    // Uploads issued and skipped in the current frame and the last frame
+    private static int currentFrameIssued;
+    private static int currentFrameSkipped;
+    private static int frameIssued;
+    private static int frameSkipped;
+
+    // The bits of the values at each location followed by a flag that is KNOWN once they have been
+    // uploaded, or null if the location has not been set
+    private int[][] values;
+
+    /**
+     * Create an empty uniform cache
+     *
+     * @since 1.0
+     */
+    public UniformCache() {
+        values = new int[0][];
+    }
+
+    /**
+     * Set an int (or sampler) uniform
+     *
+     * @param location The uniform location
+     * @param x        The value
+     * @since 1.0
+     */
+    public void set1i(int location, int x) {
+        final int[] slot = getSlot(location, 1);
+        if(slot != null) {
+            if(slot[1] == KNOWN && slot[0] == x) {
+                currentFrameSkipped++;
+                return;
+            }
+            slot[0] = x;
+            slot[1] = KNOWN;
+        }
+
+        backend.uniform1i(location, x);
+        currentFrameIssued++;
+    }
+
+    /**
+     * Set a float uniform
+     *
+     * @param location The uniform location
+     * @param x        The value
+     * @since 1.0
+     */
+    public void set1f(int location, float x) {
+        final int[] slot = getSlot(location, 1);
+        if(slot != null) {
+            final int bx = Float.floatToRawIntBits(x);
+            if(slot[1] == KNOWN && slot[0] == bx) {
+                currentFrameSkipped++;
+                return;
+            }
+            slot[0] = bx;
+            slot[1] = KNOWN;
+        }
+
+        backend.uniform1f(location, x);
+        currentFrameIssued++;
+    }
+
+    /**
+     * Set a vec2 uniform
+     *
+     * @param location The uniform location
+     * @param x        The x value
+     * @param y        The y value
+     * @since 1.0
+     */
+    public void set2f(int location, float x, float y) {
+        final int[] slot = getSlot(location, 2);
+        if(slot != null) {
+            final int bx = Float.floatToRawIntBits(x);
+            final int by = Float.floatToRawIntBits(y);
+            if(slot[2] == KNOWN && slot[0] == bx && slot[1] == by) {
+                currentFrameSkipped++;
+                return;
+            }
+            slot[0] = bx;
+            slot[1] = by;
+            slot[2] = KNOWN;
+        }
+
+        backend.uniform2f(location, x, y);
+        currentFrameIssued++;
+    }
+
+    /**
+     * Set a vec3 uniform
+     *
+     * @param location The uniform location
+     * @param x        The x value
+     * @param y        The y value
+     * @param z        The z value
+     * @since 1.0
+     */
+    public void set3f(int location, float x, float y, float z) {
+        final int[] slot = getSlot(location, 3);
+        if(slot != null) {
+            final int bx = Float.floatToRawIntBits(x);
+            final int by = Float.floatToRawIntBits(y);
+            final int bz = Float.floatToRawIntBits(z);
+            if(slot[3] == KNOWN && slot[0] == bx && slot[1] == by && slot[2] == bz) {
+                currentFrameSkipped++;
+                return;
+            }
+            slot[0] = bx;
+            slot[1] = by;
+            slot[2] = bz;
+            slot[3] = KNOWN;
+        }
+
+        backend.uniform3f(location, x, y, z);
+        currentFrameIssued++;
+    }
+
+    /**
+     * Set a vec4 uniform
+     *
+     * @param location The uniform location
+     * @param x        The x value
+     * @param y        The y value
+     * @param z        The z value
+     * @param w        The w value
+     * @since 1.0
+     */
+    public void set4f(int location, float x, float y, float z, float w) {
+        final int[] slot = getSlot(location, 4);
+        if(slot != null) {
+            final int bx = Float.floatToRawIntBits(x);
+            final int by = Float.floatToRawIntBits(y);
+            final int bz = Float.floatToRawIntBits(z);
+            final int bw = Float.floatToRawIntBits(w);
+            if(slot[4] == KNOWN && slot[0] == bx && slot[1] == by && slot[2] == bz &&
+                    slot[3] == bw) {
+                currentFrameSkipped++;
+                return;
+            }
+            slot[0] = bx;
+            slot[1] = by;
+            slot[2] = bz;
+            slot[3] = bw;
+            slot[4] = KNOWN;
+        }
+
+        backend.uniform4f(location, x, y, z, w);
+        currentFrameIssued++;
+    }
+
+    /**
+     * Set a mat4 uniform (column major, not transposed)
+     *
+     * @param location The uniform location
+     * @param matrix   Array containing the matrix
+     * @param offset   The index of the first value of the matrix in the array
+     * @since 1.0
+     */
+    public void setMatrix4(int location, float[] matrix, int offset) {
+        final int[] slot = getSlot(location, MATRIX_SIZE);
+        if(slot != null) {
+            boolean changed = slot[MATRIX_SIZE] != KNOWN;
+            for(int i = 0; i < MATRIX_SIZE; i++) {
+                final int bits = Float.floatToRawIntBits(matrix[offset + i]);
+                if(slot[i] != bits) {
+                    slot[i] = bits;
+                    changed = true;
+                }
+            }
+
+            if(!changed) {
+                currentFrameSkipped++;
+                return;
+            }
+            slot[MATRIX_SIZE] = KNOWN;
+        }
+
+        backend.uniformMatrix4fv(location, matrix, offset);
+        currentFrameIssued++;
+    }
+
+    /**
+     * Forget all of the values so that the next value set at each location is uploaded. Must be
+     * called when the program is re-linked.
+     *
+     * @since 1.0
+     */
+    public void invalidate() {
+        values = new int[0][];
+    }
+
+    /**
+     * Set the backend that makes the OpenGL ES calls. Intended for unit tests that run without an
+     * OpenGL ES context.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        UniformCache.backend = backend;
+    }
+
+    /**
+     * Record the counts of the frame that has finished. Called by the scene manager after each
+     * frame.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        frameIssued = currentFrameIssued;
+        frameSkipped = currentFrameSkipped;
+        currentFrameIssued = 0;
+        currentFrameSkipped = 0;
+    }
+
+    /**
+     * Get the number of uniform uploads that were issued to OpenGL ES in the last frame
+     *
+     * @return The number of issued uploads in the last frame
+     * @since 1.0
+     */
+    public static int getFrameIssuedCount() {
+        return frameIssued;
+    }
+
+    /**
+     * Get the number of uniform uploads that were skipped because the value had not changed in
+     * the last frame
+     *
+     * @return The number of skipped uploads in the last frame
+     * @since 1.0
+     */
+    public static int getFrameSkippedCount() {
+        return frameSkipped;
+    }
+
+    /**
+     * Get the number of uniform uploads that have been issued in the current frame
+     *
+     * @return The number of issued uploads in the current frame
+     * @since 1.0
+     */
+    public static int getIssuedCount() {
+        return currentFrameIssued;
+    }
+
+    /**
+     * Get the number of uniform uploads that have been skipped in the current frame
+     *
+     * @return The number of skipped uploads in the current frame
+     * @since 1.0
+     */
+    public static int getSkippedCount() {
+        return currentFrameSkipped;
+    }
+
+    // Get the stored value bits of a location, creating them (not yet known) if the location has
+    // not been set. Returns null for locations that are not cached.
+    private int[] getSlot(int location, int size) {
+        if(location < 0 || location > MAX_CACHED_LOCATION) {
+            return null;
+        }
+
+        if(location >= values.length) {
+            final int[][] grown = new int[Math.max(location + 1, values.length * 2)][];
+            System.arraycopy(values, 0, grown, 0, values.length);
+            values = grown;
+        }
+
+        int[] slot = values[location];
+        if(slot == null || slot.length != size + 1) {
+            slot = new int[size + 1];
+            values[location] = slot;
+        }
+        return slot;
+    }
+}
@@ -5,11 +5,11 @@ import static android.opengl.GLES20.GL_STATIC_DRAW;
 import static android.opengl.GLES20.glBindBuffer;
 import static android.opengl.GLES20.glBufferData;
 import static android.opengl.GLES20.glGenBuffers;
-import static android.opengl.GLES30.glBindVertexArray;
 import static android.opengl.GLES30.glGenVertexArrays;
 
 import com.crispin.crispinmobile.Geometry.Geometry;
 import com.crispin.crispinmobile.Geometry.Vec3;
+import com.crispin.crispinmobile.Utilities.StagingArena;
 
 import java.nio.FloatBuffer;
 
@@ -68,13 +68,11 @@ public class DebugMesh extends Mesh {
                 glGenBuffers(1, vboTemp, 0);
                 normalLinesVbo = vboTemp[0];
 
-                FloatBuffer vd = FloatBuffer.allocate(normalLinesVertexData.length);
-                vd.put(normalLinesVertexData);
-                vd.position(0);
-                glBindVertexArray(normalLinesVao);
+                FloatBuffer vd = StagingArena.stage(normalLinesVertexData);
+                GLStateCache.bindVertexArray(normalLinesVao);
                 glBindBuffer(GL_ARRAY_BUFFER, normalLinesVbo);
                 glBufferData(GL_ARRAY_BUFFER, normalLinesVertexData.length * BYTES_PER_FLOAT, vd, GL_STATIC_DRAW);
-                glBindVertexArray(0);
+                GLStateCache.bindVertexArray(0);
                 glBindBuffer(GL_ARRAY_BUFFER, 0);
             }
         }
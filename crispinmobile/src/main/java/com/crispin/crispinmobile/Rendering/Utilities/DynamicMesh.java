@@ -0,0 +1,417 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import static android.opengl.GLES30.GL_ARRAY_BUFFER;
+import static android.opengl.GLES30.GL_DYNAMIC_DRAW;
+import static android.opengl.GLES30.GL_FLOAT;
+import static android.opengl.GLES30.GL_STREAM_DRAW;
+import static android.opengl.GLES30.glBindBuffer;
+import static android.opengl.GLES30.glBufferData;
+import static android.opengl.GLES30.glBufferSubData;
+import static android.opengl.GLES30.glDeleteBuffers;
+import static android.opengl.GLES30.glDeleteVertexArrays;
+import static android.opengl.GLES30.glDisableVertexAttribArray;
+import static android.opengl.GLES30.glDrawArrays;
+import static android.opengl.GLES30.glEnableVertexAttribArray;
+import static android.opengl.GLES30.glGenBuffers;
+import static android.opengl.GLES30.glGenVertexArrays;
+import static android.opengl.GLES30.glVertexAttribPointer;
+import static com.crispin.crispinmobile.Rendering.Utilities.Mesh.BYTES_PER_FLOAT;
+
+import com.crispin.crispinmobile.Utilities.StagingArena;
+
+import java.util.Arrays;
+
+/**
+ * DynamicMesh is a mesh whose vertices are expected to change after it has been created, for
+ * example lines, curves and debug geometry that follow moving objects. Unlike Mesh, which uploads
+ * its vertices once in to a GL_STATIC_DRAW buffer, the vertex buffer of a dynamic mesh is created
+ * with GL_DYNAMIC_DRAW (or GL_STREAM_DRAW for data that changes every frame) and is kept for the
+ * life of the mesh.
+ * <p>
+ * The vertices are kept in a float array that can be modified directly. Changes are marked as a
+ * dirty range of vertices and uploaded when the mesh is next drawn. If only part of the vertices
+ * changed, just that range is uploaded with glBufferSubData. If every vertex changed, the buffer
+ * is orphaned first (its storage is re-specified with no data) so that the driver can hand out
+ * fresh memory instead of waiting for draws that still read the old vertices. The buffer is only
+ * re-created with a larger size when the vertex count grows beyond its capacity.
+ * <p>
+ * The number of buffer re-creations (orphans and growth) and partial updates in the last frame are
+ * recorded so that they can be shown with the frame statistics.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see Mesh
+ * @since 1.0
+ */
+public class DynamicMesh {
+    // Usage for vertices that are modified now and again and drawn many times
+    public static final int USAGE_DYNAMIC = GL_DYNAMIC_DRAW;
+
+    // Usage for vertices that are modified every time they are drawn
+    public static final int USAGE_STREAM = GL_STREAM_DRAW;
+
+    // The attributes that a dynamic mesh can have
+    private static final int POSITION = 0;
+    private static final int TEXEL = 1;
+    private static final int NORMAL = 2;
+    private static final int NUM_ATTRIBUTES = 3;
+
+    // Location of an attribute that is not pointed at a shader attribute
+    private static final int INVALID_ATTRIBUTE = -1;
+
+    // Buffer re-creations and partial updates in the current frame and the last frame
+    private static int currentFrameRecreations;
+    private static int currentFrameUpdates;
+    private static int frameRecreations;
+    private static int frameUpdates;
+
+    // The method to draw the vertices with
+    public final Mesh.RenderMethod renderMethod;
+
+    // The number of components of each attribute
+    public final int elementsPerPosition;
+    public final int elementsPerTexel;
+    public final int elementsPerNormal;
+
+    // The number of floats in a vertex and the size of a vertex in bytes
+    public final int floatsPerVertex;
+    public final int stride;
+
+    // GL_DYNAMIC_DRAW or GL_STREAM_DRAW
+    private final int usage;
+
+    // The shader attribute locations that the vertex array was last pointed at, and the locations
+    // that were enabled
+    private final int[] attributeLocations;
+    private final int[] enabledLocations;
+
+    // The vertices (may be larger than the number of vertices drawn)
+    private float[] vertices;
+
+    // The number of vertices to draw
+    private int vertexCount;
+
+    // The number of vertices that the vertex buffer has space for
+    private int bufferCapacity;
+
+    // The range of vertices that has changed since the last upload [dirtyStart, dirtyEnd)
+    private int dirtyStart;
+    private int dirtyEnd;
+
+    private int vao;
+    private int vbo;
+
+    /**
+     * Create a dynamic mesh. The vertex buffer is created straight away with space for the given
+     * number of vertices, so the OpenGL context must be current.
+     *
+     * @param renderMethod        The method to render the data (e.g. lines or a triangle strip)
+     * @param elementsPerPosition The number of components the position data is comprised of
+     * @param elementsPerTexel    The number of components that the texel data is comprised of
+     * @param elementsPerNormal   The number components that the normal data is comprised of
+     * @param capacity            The number of vertices to make space for
+     * @param usage               <code>USAGE_DYNAMIC</code> or <code>USAGE_STREAM</code>
+     * @since 1.0
+     */
+    public DynamicMesh(Mesh.RenderMethod renderMethod, int elementsPerPosition,
+                       int elementsPerTexel, int elementsPerNormal, int capacity, int usage) {
+        this.renderMethod = renderMethod;
+        this.elementsPerPosition = elementsPerPosition;
+        this.elementsPerTexel = elementsPerTexel;
+        this.elementsPerNormal = elementsPerNormal;
+        this.floatsPerVertex = elementsPerPosition + elementsPerTexel + elementsPerNormal;
+        this.stride = floatsPerVertex * BYTES_PER_FLOAT;
+        this.usage = usage;
+        this.attributeLocations = new int[NUM_ATTRIBUTES];
+        this.enabledLocations = new int[NUM_ATTRIBUTES];
+        Arrays.fill(attributeLocations, INVALID_ATTRIBUTE);
+        Arrays.fill(enabledLocations, INVALID_ATTRIBUTE);
+        this.vertices = new float[Math.max(capacity, 1) * floatsPerVertex];
+        this.vertexCount = 0;
+        clearDirty();
+
+        int[] vaoTemp = new int[1];
+        glGenVertexArrays(1, vaoTemp, 0);
+        vao = vaoTemp[0];
+
+        int[] vboTemp = new int[1];
+        glGenBuffers(1, vboTemp, 0);
+        vbo = vboTemp[0];
+        createStorage(getCapacity());
+    }
+
+    /**
+     * Create a dynamic mesh of positions only with <code>USAGE_DYNAMIC</code>
+     *
+     * @param renderMethod        The method to render the data (e.g. lines or a triangle strip)
+     * @param elementsPerPosition The number of components the position data is comprised of
+     * @param capacity            The number of vertices to make space for
+     * @since 1.0
+     */
+    public DynamicMesh(Mesh.RenderMethod renderMethod, int elementsPerPosition, int capacity) {
+        this(renderMethod, elementsPerPosition, 0, 0, capacity, USAGE_DYNAMIC);
+    }
+
+    /**
+     * Get the vertices. The array can be modified directly as long as the modified range is then
+     * passed to <code>markDirty</code>. The array is replaced if the capacity grows.
+     *
+     * @return The interleaved vertices (position, texel then normal per vertex)
+     * @since 1.0
+     */
+    public float[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Get the number of vertices that are drawn
+     *
+     * @return The vertex count
+     * @since 1.0
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Get the number of vertices that there is space for without growing
+     *
+     * @return The capacity in vertices
+     * @since 1.0
+     */
+    public int getCapacity() {
+        return vertices.length / floatsPerVertex;
+    }
+
+    /**
+     * Set the number of vertices that are drawn, growing the capacity if needed. Vertices added by
+     * growing the count are marked as dirty.
+     *
+     * @param vertexCount The new vertex count
+     * @since 1.0
+     */
+    public void setVertexCount(int vertexCount) {
+        ensureCapacity(vertexCount);
+        if(vertexCount > this.vertexCount) {
+            markDirty(this.vertexCount, vertexCount - this.vertexCount);
+        }
+        this.vertexCount = vertexCount;
+    }
+
+    /**
+     * Replace all of the vertices. The buffer is orphaned when the vertices are next uploaded.
+     *
+     * @param vertexData  The interleaved vertices
+     * @param vertexCount The number of vertices in the data
+     * @since 1.0
+     */
+    public void setVertices(float[] vertexData, int vertexCount) {
+        ensureCapacity(vertexCount);
+        System.arraycopy(vertexData, 0, vertices, 0, vertexCount * floatsPerVertex);
+        this.vertexCount = vertexCount;
+        markDirty(0, vertexCount);
+    }
+
+    /**
+     * Replace all of the vertices. The buffer is orphaned when the vertices are next uploaded.
+     *
+     * @param vertexData The interleaved vertices
+     * @since 1.0
+     */
+    public void setVertices(float[] vertexData) {
+        setVertices(vertexData, vertexData.length / floatsPerVertex);
+    }
+
+    /**
+     * Replace a range of the vertices. Only the range is uploaded unless every vertex has changed.
+     *
+     * @param firstVertex The first vertex to replace
+     * @param vertexData  The interleaved vertices to replace the range with
+     * @param offset      The index of the first float of the vertices in the data
+     * @param count       The number of vertices to replace
+     * @since 1.0
+     */
+    public void updateVertices(int firstVertex, float[] vertexData, int offset, int count) {
+        if(firstVertex + count > vertexCount) {
+            setVertexCount(firstVertex + count);
+        }
+        System.arraycopy(vertexData, offset, vertices, firstVertex * floatsPerVertex,
+                count * floatsPerVertex);
+        markDirty(firstVertex, count);
+    }
+
+    /**
+     * Mark a range of vertices as changed so that it is uploaded before the next draw
+     *
+     * @param firstVertex The first vertex that changed
+     * @param count       The number of vertices that changed
+     * @since 1.0
+     */
+    public void markDirty(int firstVertex, int count) {
+        dirtyStart = Math.min(dirtyStart, firstVertex);
+        dirtyEnd = Math.max(dirtyEnd, firstVertex + count);
+    }
+
+    /**
+     * Upload the vertices that have changed. Called by <code>draw</code>, so only needed to upload
+     * ahead of time.
+     *
+     * @since 1.0
+     */
+    public void upload() {
+        dirtyEnd = Math.min(dirtyEnd, vertexCount);
+        if(dirtyStart >= dirtyEnd) {
+            clearDirty();
+            return;
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        if(getCapacity() > bufferCapacity) {
+            // The vertex buffer is too small so it is re-created at the new capacity, losing the
+            // vertices that had not changed
+            createStorage(getCapacity());
+            currentFrameRecreations++;
+            dirtyStart = 0;
+            dirtyEnd = vertexCount;
+        } else if(dirtyStart == 0 && dirtyEnd == vertexCount) {
+            // Every vertex is being replaced, so orphan the old storage rather than wait for the
+            // draws that may still be reading it
+            createStorage(bufferCapacity);
+            currentFrameRecreations++;
+        }
+
+        final int count = dirtyEnd - dirtyStart;
+        glBufferSubData(GL_ARRAY_BUFFER, dirtyStart * stride, count * stride,
+                StagingArena.stage(vertices, dirtyStart * floatsPerVertex,
+                        count * floatsPerVertex));
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        currentFrameUpdates++;
+        clearDirty();
+    }
+
+    /**
+     * Bind the VAO of the mesh for drawing with a shader. The attribute pointers are only set if
+     * the VAO was last pointed at different attribute locations.
+     *
+     * @param posAttribLoc    Position attribute location in shader
+     * @param texelAttribLoc  Texel attribute location in shader, or -1
+     * @param normalAttribLoc Normal attribute location in shader, or -1
+     * @since 1.0
+     */
+    public void bind(int posAttribLoc, int texelAttribLoc, int normalAttribLoc) {
+        GLStateCache.bindVertexArray(vao);
+        if(attributeLocations[POSITION] == posAttribLoc &&
+                attributeLocations[TEXEL] == texelAttribLoc &&
+                attributeLocations[NORMAL] == normalAttribLoc) {
+            return;
+        }
+
+        for(int i = 0; i < NUM_ATTRIBUTES; i++) {
+            if(enabledLocations[i] != INVALID_ATTRIBUTE) {
+                glDisableVertexAttribArray(enabledLocations[i]);
+                enabledLocations[i] = INVALID_ATTRIBUTE;
+            }
+        }
+
+        attributeLocations[POSITION] = posAttribLoc;
+        attributeLocations[TEXEL] = texelAttribLoc;
+        attributeLocations[NORMAL] = normalAttribLoc;
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        setAttributePointer(POSITION, posAttribLoc, elementsPerPosition, 0);
+        setAttributePointer(TEXEL, texelAttribLoc, elementsPerTexel, elementsPerPosition);
+        setAttributePointer(NORMAL, normalAttribLoc, elementsPerNormal,
+                elementsPerPosition + elementsPerTexel);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Upload any changed vertices and draw the mesh with its render method. The VAO of the mesh
+     * must be bound before calling.
+     *
+     * @since 1.0
+     */
+    public void draw() {
+        upload();
+        if(vertexCount != 0 && renderMethod != Mesh.RenderMethod.NONE) {
+            glDrawArrays(Mesh.getGLRenderMethod(renderMethod), 0, vertexCount);
+        }
+    }
+
+    /**
+     * Delete the vertex buffer and vertex array of the mesh
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        int[] buffers = {vbo};
+        glDeleteBuffers(1, buffers, 0);
+        int[] arrays = {vao};
+        glDeleteVertexArrays(1, arrays, 0);
+        GLStateCache.onVertexArrayDeleted(vao);
+        vbo = 0;
+        vao = 0;
+    }
+
+    /**
+     * Record the counts of the frame that has finished. Called by the scene manager after each
+     * frame.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        frameRecreations = currentFrameRecreations;
+        frameUpdates = currentFrameUpdates;
+        currentFrameRecreations = 0;
+        currentFrameUpdates = 0;
+    }
+
+    /**
+     * Get the number of times that the storage of a dynamic vertex buffer was re-created (orphaned
+     * or grown) in the last frame
+     *
+     * @return The number of buffer re-creations in the last frame
+     * @since 1.0
+     */
+    public static int getFrameRecreationCount() {
+        return frameRecreations;
+    }
+
+    /**
+     * Get the number of dynamic vertex buffer uploads in the last frame
+     *
+     * @return The number of uploads in the last frame
+     * @since 1.0
+     */
+    public static int getFrameUpdateCount() {
+        return frameUpdates;
+    }
+
+    // Grow the vertex array to hold a number of vertices. The vertex buffer grows on next upload.
+    private void ensureCapacity(int capacity) {
+        if(capacity > getCapacity()) {
+            final int newCapacity = Math.max(capacity, getCapacity() + (getCapacity() >> 1));
+            vertices = Arrays.copyOf(vertices, newCapacity * floatsPerVertex);
+        }
+    }
+
+    // Specify new (empty) storage for the vertex buffer
+    private void createStorage(int capacity) {
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, capacity * stride, null, usage);
+        bufferCapacity = capacity;
+    }
+
+    private void setAttributePointer(int attribute, int location, int components, int offset) {
+        if(location != INVALID_ATTRIBUTE && components != 0) {
+            glVertexAttribPointer(location, components, GL_FLOAT, false, stride,
+                    offset * BYTES_PER_FLOAT);
+            glEnableVertexAttribArray(location);
+            enabledLocations[attribute] = location;
+        }
+    }
+
+    private void clearDirty() {
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = 0;
+    }
+}
@@ -0,0 +1,587 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import static android.opengl.GLES30.GL_BLEND;
+import static android.opengl.GLES30.GL_CULL_FACE;
+import static android.opengl.GLES30.GL_DEPTH_TEST;
+import static android.opengl.GLES30.GL_TEXTURE0;
+import static android.opengl.GLES30.GL_TEXTURE_2D;
+import static android.opengl.GLES30.GL_TEXTURE_2D_ARRAY;
+import static android.opengl.GLES30.GL_UNIFORM_BUFFER;
+
+import android.opengl.GLES30;
+
+import java.util.Arrays;
+
+/**
+ * GLStateCache keeps a shadow copy of the OpenGL ES state that the engine changes the most: the
+ * program in use, the bound vertex array, the textures bound to each texture unit, the buffers
+ * bound to each uniform buffer binding point, whether blending, depth testing and face culling are
+ * enabled, and the viewport. Every engine draw path
+ * changes this state through the cache, and any call that would set the state to what it already
+ * is gets skipped. This also means that the state can be read from the cache instead of asking
+ * the driver with a synchronous query like glIsEnabled.
+ * <p>
+ * State that has not been set through the cache since the context was created is unknown, so the
+ * first call always goes to OpenGL ES. The cache must be invalidated when a new context is created
+ * (the scene manager does this when the surface is created) and told when a program, vertex array,
+ * texture or buffer is deleted, as OpenGL ES changes the bindings of deleted objects itself.
+ * <p>
+ * The number of calls that were issued and skipped in the last frame are recorded so that they can
+ * be shown with the frame statistics. The class consists of static only functions and must only be
+ * used on the GL thread.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class GLStateCache {
+    /**
+     * The OpenGL ES calls that the cache makes. Allows the cache to be tested without an OpenGL ES
+     * context.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        void useProgram(int program);
+
+        void bindVertexArray(int vertexArray);
+
+        void activeTexture(int textureUnit);
+
+        void bindTexture(int target, int texture);
+
+        void enable(int capability);
+
+        void disable(int capability);
+
+        boolean isEnabled(int capability);
+
+        void viewport(int x, int y, int width, int height);
+
+        void bindBufferBase(int target, int index, int buffer);
+    }
+
+    // The backend that makes calls to OpenGL ES
+    private static class GLES30Backend implements Backend {
+        @Override
+        public void useProgram(int program) {
+            GLES30.glUseProgram(program);
+        }
+
+        @Override
+        public void bindVertexArray(int vertexArray) {
+            GLES30.glBindVertexArray(vertexArray);
+        }
+
+        @Override
+        public void activeTexture(int textureUnit) {
+            GLES30.glActiveTexture(textureUnit);
+        }
+
+        @Override
+        public void bindTexture(int target, int texture) {
+            GLES30.glBindTexture(target, texture);
+        }
+
+        @Override
+        public void enable(int capability) {
+            GLES30.glEnable(capability);
+        }
+
+        @Override
+        public void disable(int capability) {
+            GLES30.glDisable(capability);
+        }
+
+        @Override
+        public boolean isEnabled(int capability) {
+            return GLES30.glIsEnabled(capability);
+        }
+
+        @Override
+        public void viewport(int x, int y, int width, int height) {
+            GLES30.glViewport(x, y, width, height);
+        }
+
+        @Override
+        public void bindBufferBase(int target, int index, int buffer) {
+            GLES30.glBindBufferBase(target, index, buffer);
+        }
+    }
+
+    // The number of texture units that bindings are tracked for. OpenGL ES 3.0 guarantees at least
+    // 16 units for fragment shaders. Units beyond this are not cached.
+    public static final int MAX_TEXTURE_UNITS = 16;
+
+    // The number of uniform buffer binding points that bindings are tracked for. OpenGL ES 3.0
+    // guarantees at least 24. Binding points beyond this are not cached.
+    public static final int MAX_UNIFORM_BUFFER_BINDINGS = 24;
+
+    // Value of a binding that is not known
+    private static final int UNKNOWN = -1;
+
+    // The texture targets that bindings are tracked for
+    private static final int TARGET_2D = 0;
+    private static final int TARGET_2D_ARRAY = 1;
+    private static final int NUM_TARGETS = 2;
+
+    // The capabilities that are tracked
+    private static final int CAP_BLEND = 0;
+    private static final int CAP_DEPTH_TEST = 1;
+    private static final int CAP_CULL_FACE = 2;
+    private static final int NUM_CAPABILITIES = 3;
+
+    // States of a tracked capability
+    private static final byte CAP_UNKNOWN = 0;
+    private static final byte CAP_ENABLED = 1;
+    private static final byte CAP_DISABLED = 2;
+
+    private static Backend backend = new GLES30Backend();
+
+    // The shadow state
+    private static int program = UNKNOWN;
+    private static int vertexArray = UNKNOWN;
+    private static int activeTextureUnit = UNKNOWN;
+    private static final int[] textures = new int[MAX_TEXTURE_UNITS * NUM_TARGETS];
+    private static final int[] uniformBuffers = new int[MAX_UNIFORM_BUFFER_BINDINGS];
+    private static final byte[] capabilities = new byte[NUM_CAPABILITIES];
+    private static final int[] viewport = new int[4];
+    private static boolean viewportKnown;
+
+    // Calls issued and skipped in the current frame and the last frame
+    private static int currentFrameIssued;
+    private static int currentFrameSkipped;
+    private static int frameIssued;
+    private static int frameSkipped;
+
+    static {
+        Arrays.fill(textures, UNKNOWN);
+        Arrays.fill(uniformBuffers, UNKNOWN);
+    }
+
+    /**
+     * Use a program, skipping the call if it is already in use
+     *
+     * @param program The ID of the program, or 0 for no program
+     * @since 1.0
+     */
+    public static void useProgram(int program) {
+        if(GLStateCache.program == program) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        backend.useProgram(program);
+        GLStateCache.program = program;
+        currentFrameIssued++;
+    }
+
+    /**
+     * Bind a vertex array, skipping the call if it is already bound
+     *
+     * @param vertexArray The ID of the vertex array, or 0 for no vertex array
+     * @since 1.0
+     */
+    public static void bindVertexArray(int vertexArray) {
+        if(GLStateCache.vertexArray == vertexArray) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        backend.bindVertexArray(vertexArray);
+        GLStateCache.vertexArray = vertexArray;
+        currentFrameIssued++;
+    }
+
+    /**
+     * Get the vertex array that is bound
+     *
+     * @return The ID of the vertex array, or -1 if it is not known
+     * @since 1.0
+     */
+    public static int getVertexArray() {
+        return vertexArray;
+    }
+
+    /**
+     * Get the program that is in use
+     *
+     * @return The ID of the program, or -1 if it is not known
+     * @since 1.0
+     */
+    public static int getProgram() {
+        return program;
+    }
+
+    /**
+     * Make a texture unit active, skipping the call if it is already active. Texture calls that act
+     * on the active unit (e.g. glTexParameteri) should bind their texture with
+     * <code>bindTexture(int, int)</code> after this.
+     *
+     * @param unit The index of the texture unit (0 for GL_TEXTURE0)
+     * @since 1.0
+     */
+    public static void activeTexture(int unit) {
+        if(activeTextureUnit == unit) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        backend.activeTexture(GL_TEXTURE0 + unit);
+        activeTextureUnit = unit;
+        currentFrameIssued++;
+    }
+
+    /**
+     * Bind a texture to the active texture unit, skipping the call if it is already bound there.
+     * After this call the texture is bound to the active unit, so it can be used to upload or
+     * change the texture.
+     *
+     * @param target  The texture target, e.g. GL_TEXTURE_2D
+     * @param texture The ID of the texture, or 0 for no texture
+     * @since 1.0
+     */
+    public static void bindTexture(int target, int texture) {
+        final int index = getTextureIndex(activeTextureUnit, target);
+        if(index == UNKNOWN) {
+            // The active unit or the target is not tracked
+            backend.bindTexture(target, texture);
+            currentFrameIssued++;
+            return;
+        }
+
+        if(textures[index] == texture) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        backend.bindTexture(target, texture);
+        textures[index] = texture;
+        currentFrameIssued++;
+    }
+
+    /**
+     * Bind a texture to a texture unit for drawing. If the texture is already bound to the unit
+     * nothing is changed (not even the active unit), otherwise the unit is made active and the
+     * texture bound.
+     *
+     * @param unit    The index of the texture unit (0 for GL_TEXTURE0)
+     * @param target  The texture target, e.g. GL_TEXTURE_2D
+     * @param texture The ID of the texture, or 0 for no texture
+     * @since 1.0
+     */
+    public static void bindTexture(int unit, int target, int texture) {
+        final int index = getTextureIndex(unit, target);
+        if(index != UNKNOWN && textures[index] == texture) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        activeTexture(unit);
+        bindTexture(target, texture);
+    }
+
+    /**
+     * Bind a buffer to a uniform buffer binding point, skipping the call if it is already bound
+     * there. Note that glBindBufferBase also binds the buffer to the GL_UNIFORM_BUFFER target,
+     * which is not tracked.
+     *
+     * @param index  The index of the binding point
+     * @param buffer The ID of the buffer, or 0 for no buffer
+     * @since 1.0
+     */
+    public static void bindUniformBuffer(int index, int buffer) {
+        final boolean tracked = index >= 0 && index < MAX_UNIFORM_BUFFER_BINDINGS;
+        if(tracked && uniformBuffers[index] == buffer) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        backend.bindBufferBase(GL_UNIFORM_BUFFER, index, buffer);
+        if(tracked) {
+            uniformBuffers[index] = buffer;
+        }
+        currentFrameIssued++;
+    }
+
+    /**
+     * Enable a capability, skipping the call if it is already enabled. Only GL_BLEND,
+     * GL_DEPTH_TEST and GL_CULL_FACE are cached, other capabilities are always enabled.
+     *
+     * @param capability The capability, e.g. GL_DEPTH_TEST
+     * @since 1.0
+     */
+    public static void enable(int capability) {
+        setEnabled(capability, true);
+    }
+
+    /**
+     * Disable a capability, skipping the call if it is already disabled. Only GL_BLEND,
+     * GL_DEPTH_TEST and GL_CULL_FACE are cached, other capabilities are always disabled.
+     *
+     * @param capability The capability, e.g. GL_DEPTH_TEST
+     * @since 1.0
+     */
+    public static void disable(int capability) {
+        setEnabled(capability, false);
+    }
+
+    /**
+     * Enable or disable a capability, skipping the call if it is already in that state
+     *
+     * @param capability The capability, e.g. GL_DEPTH_TEST
+     * @param enabled    True to enable the capability, false to disable it
+     * @since 1.0
+     */
+    public static void setEnabled(int capability, boolean enabled) {
+        final int index = getCapabilityIndex(capability);
+        final byte state = enabled ? CAP_ENABLED : CAP_DISABLED;
+        if(index != UNKNOWN && capabilities[index] == state) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        if(enabled) {
+            backend.enable(capability);
+        } else {
+            backend.disable(capability);
+        }
+
+        if(index != UNKNOWN) {
+            capabilities[index] = state;
+        }
+        currentFrameIssued++;
+    }
+
+    /**
+     * Check if a capability is enabled. For cached capabilities the driver is only asked if the
+     * state is not known yet.
+     *
+     * @param capability The capability, e.g. GL_DEPTH_TEST
+     * @return True if the capability is enabled, else false
+     * @since 1.0
+     */
+    public static boolean isEnabled(int capability) {
+        final int index = getCapabilityIndex(capability);
+        if(index != UNKNOWN && capabilities[index] != CAP_UNKNOWN) {
+            currentFrameSkipped++;
+            return capabilities[index] == CAP_ENABLED;
+        }
+
+        final boolean enabled = backend.isEnabled(capability);
+        if(index != UNKNOWN) {
+            capabilities[index] = enabled ? CAP_ENABLED : CAP_DISABLED;
+        }
+        currentFrameIssued++;
+        return enabled;
+    }
+
+    /**
+     * Set the viewport, skipping the call if it is already set to the same rectangle
+     *
+     * @param x      The x position of the lower left corner
+     * @param y      The y position of the lower left corner
+     * @param width  The width of the viewport
+     * @param height The height of the viewport
+     * @since 1.0
+     */
+    public static void viewport(int x, int y, int width, int height) {
+        if(viewportKnown && viewport[0] == x && viewport[1] == y && viewport[2] == width &&
+                viewport[3] == height) {
+            currentFrameSkipped++;
+            return;
+        }
+
+        backend.viewport(x, y, width, height);
+        viewport[0] = x;
+        viewport[1] = y;
+        viewport[2] = width;
+        viewport[3] = height;
+        viewportKnown = true;
+        currentFrameIssued++;
+    }
+
+    /**
+     * Get the viewport that was last set through the cache
+     *
+     * @param out Array of at least four values to write the x, y, width and height to
+     * @return True if the viewport is known and was written to the array, else false
+     * @since 1.0
+     */
+    public static boolean getViewport(int[] out) {
+        if(!viewportKnown) {
+            return false;
+        }
+
+        System.arraycopy(viewport, 0, out, 0, viewport.length);
+        return true;
+    }
+
+    /**
+     * Forget the program if it is deleted. Call after deleting a program.
+     *
+     * @param program The ID of the deleted program
+     * @since 1.0
+     */
+    public static void onProgramDeleted(int program) {
+        // The program stays in use until another is used, but its ID may be given to a new program
+        if(GLStateCache.program == program) {
+            GLStateCache.program = UNKNOWN;
+        }
+    }
+
+    /**
+     * Update the binding of a deleted vertex array. Call after deleting a vertex array.
+     *
+     * @param vertexArray The ID of the deleted vertex array
+     * @since 1.0
+     */
+    public static void onVertexArrayDeleted(int vertexArray) {
+        // Deleting the bound vertex array binds 0
+        if(GLStateCache.vertexArray == vertexArray) {
+            GLStateCache.vertexArray = 0;
+        }
+    }
+
+    /**
+     * Update the bindings of a deleted texture. Call after deleting a texture.
+     *
+     * @param texture The ID of the deleted texture
+     * @since 1.0
+     */
+    public static void onTextureDeleted(int texture) {
+        // Deleting a bound texture binds 0 to every unit that it was bound to
+        for(int i = 0; i < textures.length; i++) {
+            if(textures[i] == texture) {
+                textures[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Update the bindings of a deleted buffer. Call after deleting a buffer.
+     *
+     * @param buffer The ID of the deleted buffer
+     * @since 1.0
+     */
+    public static void onBufferDeleted(int buffer) {
+        // Deleting a bound buffer binds 0 to every binding point that it was bound to
+        for(int i = 0; i < uniformBuffers.length; i++) {
+            if(uniformBuffers[i] == buffer) {
+                uniformBuffers[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Forget all of the state so that the next call of each type goes to OpenGL ES. Must be called
+     * when a new context is created, or after code that changes the state without the cache.
+     *
+     * @since 1.0
+     */
+    public static void invalidate() {
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        activeTextureUnit = UNKNOWN;
+        Arrays.fill(textures, UNKNOWN);
+        Arrays.fill(uniformBuffers, UNKNOWN);
+        Arrays.fill(capabilities, CAP_UNKNOWN);
+        viewportKnown = false;
+    }
+
+    /**
+     * Set the backend that makes the OpenGL ES calls. The state is invalidated. Intended for unit
+     * tests that run without an OpenGL ES context.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        GLStateCache.backend = backend;
+        invalidate();
+    }
+
+    /**
+     * Record the counts of the frame that has finished. Called by the scene manager after each
+     * frame.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        frameIssued = currentFrameIssued;
+        frameSkipped = currentFrameSkipped;
+        currentFrameIssued = 0;
+        currentFrameSkipped = 0;
+    }
+
+    /**
+     * Get the number of state calls that were issued to OpenGL ES in the last frame
+     *
+     * @return The number of issued calls in the last frame
+     * @since 1.0
+     */
+    public static int getFrameIssuedCount() {
+        return frameIssued;
+    }
+
+    /**
+     * Get the number of state calls that were skipped because they would not have changed the
+     * state in the last frame
+     *
+     * @return The number of skipped calls in the last frame
+     * @since 1.0
+     */
+    public static int getFrameSkippedCount() {
+        return frameSkipped;
+    }
+
+    /**
+     * Get the number of state calls that have been issued to OpenGL ES in the current frame
+     *
+     * @return The number of issued calls in the current frame
+     * @since 1.0
+     */
+    public static int getIssuedCount() {
+        return currentFrameIssued;
+    }
+
+    /**
+     * Get the number of state calls that have been skipped in the current frame
+     *
+     * @return The number of skipped calls in the current frame
+     * @since 1.0
+     */
+    public static int getSkippedCount() {
+        return currentFrameSkipped;
+    }
+
+    // Get the index of the binding of a target on a texture unit, or UNKNOWN if it is not tracked
+    private static int getTextureIndex(int unit, int target) {
+        if(unit < 0 || unit >= MAX_TEXTURE_UNITS) {
+            return UNKNOWN;
+        }
+
+        switch (target) {
+            case GL_TEXTURE_2D:
+                return unit * NUM_TARGETS + TARGET_2D;
+            case GL_TEXTURE_2D_ARRAY:
+                return unit * NUM_TARGETS + TARGET_2D_ARRAY;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    // Get the index of a tracked capability, or UNKNOWN if it is not tracked
+    private static int getCapabilityIndex(int capability) {
+        switch (capability) {
+            case GL_BLEND:
+                return CAP_BLEND;
+            case GL_DEPTH_TEST:
+                return CAP_DEPTH_TEST;
+            case GL_CULL_FACE:
+                return CAP_CULL_FACE;
+            default:
+                return UNKNOWN;
+        }
+    }
+}
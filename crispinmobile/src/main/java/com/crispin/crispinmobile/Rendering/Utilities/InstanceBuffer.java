@@ -0,0 +1,461 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import static android.opengl.GLES30.GL_ARRAY_BUFFER;
+import static android.opengl.GLES30.GL_DYNAMIC_DRAW;
+
+import android.opengl.GLES30;
+
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Models.ModelProperties;
+import com.crispin.crispinmobile.Utilities.StagingArena;
+
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+
+/**
+ * InstanceBuffer keeps the per-instance attributes of a set of model properties in a vertex buffer
+ * so that they can be drawn with one instanced draw call. Each instance takes 20 floats: the four
+ * columns of the model matrix followed by the RGBA colour of the material.
+ * <p>
+ * The model properties are stored in a dense array. Removing one moves the last one in to its
+ * place, so there are never any gaps to skip over. When the buffer is updated, the version of each
+ * model properties and its material are compared to the versions from the last update, and only
+ * the instances that have changed are copied and uploaded (with one glBufferSubData call for each
+ * run of neighbouring instances that have changed). A scene where most objects stand still only
+ * pays for the few that move.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RenderBatch
+ * @see ModelProperties#getVersion()
+ * @since 1.0
+ */
+public class InstanceBuffer {
+    /**
+     * The OpenGL ES buffer calls that the instance buffer makes. Allows the buffer to be tested
+     * without an OpenGL ES context.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        int genBuffer();
+
+        void bufferData(int buffer, int size, FloatBuffer data);
+
+        void bufferSubData(int buffer, int offset, int size, FloatBuffer data);
+
+        void deleteBuffer(int buffer);
+    }
+
+    // The backend that makes calls to OpenGL ES
+    private static class GLES30Backend implements Backend {
+        @Override
+        public int genBuffer() {
+            final int[] buffer = new int[1];
+            GLES30.glGenBuffers(1, buffer, 0);
+            return buffer[0];
+        }
+
+        @Override
+        public void bufferData(int buffer, int size, FloatBuffer data) {
+            GLES30.glBindBuffer(GL_ARRAY_BUFFER, buffer);
+            GLES30.glBufferData(GL_ARRAY_BUFFER, size, data, GL_DYNAMIC_DRAW);
+        }
+
+        @Override
+        public void bufferSubData(int buffer, int offset, int size, FloatBuffer data) {
+            GLES30.glBindBuffer(GL_ARRAY_BUFFER, buffer);
+            GLES30.glBufferSubData(GL_ARRAY_BUFFER, offset, size, data);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            GLES30.glDeleteBuffers(1, new int[]{buffer}, 0);
+        }
+    }
+
+    // The number of floats in the model matrix and colour of an instance
+    public static final int NUM_FLOATS_MATRIX = 16;
+    public static final int NUM_FLOATS_COLOUR = 4;
+    public static final int NUM_FLOATS_INSTANCE = NUM_FLOATS_MATRIX + NUM_FLOATS_COLOUR;
+
+    // The size of an instance in bytes (the stride of the instance attributes)
+    public static final int STRIDE = NUM_FLOATS_INSTANCE * 4;
+
+    // The offsets of the model matrix and colour of an instance in bytes
+    public static final int MATRIX_OFFSET = 0;
+    public static final int COLOUR_OFFSET = NUM_FLOATS_MATRIX * 4;
+
+    // The number of instances that there is room for before the arrays first grow
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Value of a buffer that has not been created
+    private static final int NO_BUFFER = 0;
+
+    private static Backend backend = new GLES30Backend();
+
+    // Incremented when the OpenGL ES context is lost so that buffers know to create themselves
+    // again
+    private static int contextGeneration;
+
+    // The number of instances uploaded in the current and last frame
+    private static int currentFrameUploads;
+    private static int frameUploads;
+
+    // The model properties of each instance
+    private ModelProperties[] properties;
+
+    // The versions of the model properties, their material and the material version at the last
+    // update
+    private int[] versions;
+    private Material[] materials;
+    private int[] materialVersions;
+
+    // Instances that have been added or moved since the last update
+    private boolean[] moved;
+
+    // The attributes of each instance, as uploaded to the buffer
+    private float[] data;
+
+    // The number of instances
+    private int size;
+
+    // The index of each model properties in the dense array
+    private final HashMap<ModelProperties, Integer> indices;
+
+    // The OpenGL ES buffer, the context generation it was created in and the number of instances
+    // that it has room for
+    private int bufferId;
+    private int bufferGeneration;
+    private int bufferCapacity;
+
+    /**
+     * Create an empty instance buffer. The OpenGL ES buffer is created on the first update.
+     *
+     * @since 1.0
+     */
+    public InstanceBuffer() {
+        properties = new ModelProperties[INITIAL_CAPACITY];
+        versions = new int[INITIAL_CAPACITY];
+        materials = new Material[INITIAL_CAPACITY];
+        materialVersions = new int[INITIAL_CAPACITY];
+        moved = new boolean[INITIAL_CAPACITY];
+        data = new float[INITIAL_CAPACITY * NUM_FLOATS_INSTANCE];
+        indices = new HashMap<>();
+        bufferId = NO_BUFFER;
+    }
+
+    /**
+     * Add model properties to the end of the buffer. Adding model properties that are already in
+     * the buffer does nothing.
+     *
+     * @param modelProperties The model properties to add
+     * @since 1.0
+     */
+    public void add(ModelProperties modelProperties) {
+        if(indices.containsKey(modelProperties)) {
+            return;
+        }
+
+        if(size == properties.length) {
+            grow();
+        }
+
+        properties[size] = modelProperties;
+        materials[size] = null;
+        moved[size] = true;
+        indices.put(modelProperties, size);
+        size++;
+    }
+
+    /**
+     * Remove model properties from the buffer. The last instance is moved in to its place.
+     *
+     * @param modelProperties The model properties to remove
+     * @return <code>true</code> if the model properties were in the buffer, else
+     *         <code>false</code>
+     * @since 1.0
+     */
+    public boolean remove(ModelProperties modelProperties) {
+        final Integer index = indices.remove(modelProperties);
+        if(index == null) {
+            return false;
+        }
+
+        final int last = size - 1;
+        if(index != last) {
+            properties[index] = properties[last];
+            versions[index] = versions[last];
+            materials[index] = materials[last];
+            materialVersions[index] = materialVersions[last];
+            moved[index] = true;
+            indices.put(properties[index], index);
+        }
+
+        properties[last] = null;
+        materials[last] = null;
+        size = last;
+        return true;
+    }
+
+    /**
+     * Remove all of the model properties. The OpenGL ES buffer is kept for reuse.
+     *
+     * @since 1.0
+     */
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            properties[i] = null;
+            materials[i] = null;
+        }
+        indices.clear();
+        size = 0;
+    }
+
+    /**
+     * Check if the buffer contains model properties
+     *
+     * @param modelProperties The model properties
+     * @return <code>true</code> if the model properties are in the buffer, else <code>false</code>
+     * @since 1.0
+     */
+    public boolean contains(ModelProperties modelProperties) {
+        return indices.containsKey(modelProperties);
+    }
+
+    /**
+     * Get the number of instances
+     *
+     * @return The number of instances
+     * @since 1.0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the model properties of an instance
+     *
+     * @param index The index of the instance (0 to size - 1)
+     * @return The model properties
+     * @since 1.0
+     */
+    public ModelProperties get(int index) {
+        return properties[index];
+    }
+
+    /**
+     * Check if the material of an instance has been replaced or changed since the last update.
+     * This is <code>true</code> for instances that have been added since the last update.
+     *
+     * @param index The index of the instance (0 to size - 1)
+     * @return <code>true</code> if the material has been replaced or changed, else
+     *         <code>false</code>
+     * @since 1.0
+     */
+    public boolean hasMaterialChanged(int index) {
+        final Material material = properties[index].material;
+        return material != materials[index] || material.getVersion() != materialVersions[index];
+    }
+
+    /**
+     * Copy the instances that have changed since the last update and upload them to the OpenGL ES
+     * buffer. The whole buffer is uploaded if it had to be created or grown.
+     *
+     * @since 1.0
+     */
+    public void update() {
+        final boolean recreate = bufferId == NO_BUFFER || bufferGeneration != contextGeneration ||
+                bufferCapacity < size;
+
+        int runStart = -1;
+        for(int i = 0; i < size; i++) {
+            if(copyIfChanged(i)) {
+                if(runStart == -1) {
+                    runStart = i;
+                }
+            } else if(runStart != -1) {
+                if(!recreate) {
+                    upload(runStart, i);
+                }
+                runStart = -1;
+            }
+        }
+
+        if(recreate) {
+            recreateBuffer();
+        } else if(runStart != -1) {
+            upload(runStart, size);
+        }
+    }
+
+    /**
+     * Get the OpenGL ES buffer. Only valid after the buffer has been updated.
+     *
+     * @return The ID of the OpenGL ES buffer
+     * @since 1.0
+     */
+    public int getBuffer() {
+        return bufferId;
+    }
+
+    /**
+     * Get the attributes of the instances as they were last uploaded
+     *
+     * @return Array containing the model matrix and colour of each instance
+     * @since 1.0
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /**
+     * Delete the OpenGL ES buffer. The buffer is created again if it is updated after.
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        if(bufferId != NO_BUFFER && bufferGeneration == contextGeneration) {
+            backend.deleteBuffer(bufferId);
+        }
+        bufferId = NO_BUFFER;
+        bufferCapacity = 0;
+    }
+
+    /**
+     * Forget all of the instance buffers because the OpenGL ES context has been lost. Each buffer
+     * is created and uploaded again the next time that it is updated. Called by the scene manager
+     * when the surface is created.
+     *
+     * @since 1.0
+     */
+    public static void invalidateAll() {
+        contextGeneration++;
+    }
+
+    /**
+     * Set the backend that makes the OpenGL ES calls. Intended for unit tests that run without an
+     * OpenGL ES context.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        InstanceBuffer.backend = backend;
+        invalidateAll();
+    }
+
+    /**
+     * Record the number of instances uploaded in the frame that has finished. Called by the scene
+     * manager after each frame.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        frameUploads = currentFrameUploads;
+        currentFrameUploads = 0;
+    }
+
+    /**
+     * Get the number of instances uploaded in the last frame
+     *
+     * @return The number of instances uploaded in the last frame
+     * @since 1.0
+     */
+    public static int getFrameUploadCount() {
+        return frameUploads;
+    }
+
+    /**
+     * Get the number of instances uploaded in the current frame
+     *
+     * @return The number of instances uploaded in the current frame
+     * @since 1.0
+     */
+    public static int getUploadCount() {
+        return currentFrameUploads;
+    }
+
+    // Copy the model matrix and colour of an instance if it has been added, moved or changed since
+    // the last update
+    private boolean copyIfChanged(int index) {
+        final ModelProperties modelProperties = properties[index];
+        final boolean transformChanged = moved[index] ||
+                modelProperties.getVersion() != versions[index];
+        final boolean materialChanged = moved[index] || hasMaterialChanged(index);
+        if(!transformChanged && !materialChanged) {
+            return false;
+        }
+
+        final int offset = index * NUM_FLOATS_INSTANCE;
+        if(transformChanged) {
+            System.arraycopy(modelProperties.getModelMatrix().getFloats(), 0, data, offset,
+                    NUM_FLOATS_MATRIX);
+            versions[index] = modelProperties.getVersion();
+        }
+
+        // Only the colour of the material is per-instance
+        final Material material = modelProperties.material;
+        final Colour colour = material.colour;
+        data[offset + NUM_FLOATS_MATRIX] = colour.red;
+        data[offset + NUM_FLOATS_MATRIX + 1] = colour.green;
+        data[offset + NUM_FLOATS_MATRIX + 2] = colour.blue;
+        data[offset + NUM_FLOATS_MATRIX + 3] = colour.alpha;
+        materials[index] = material;
+        materialVersions[index] = material.getVersion();
+        moved[index] = false;
+        return true;
+    }
+
+    // Upload the instances from start (inclusive) to end (exclusive)
+    private void upload(int start, int end) {
+        final int count = end - start;
+        backend.bufferSubData(bufferId, start * STRIDE, count * STRIDE,
+                StagingArena.stage(data, start * NUM_FLOATS_INSTANCE,
+                        count * NUM_FLOATS_INSTANCE));
+        currentFrameUploads += count;
+    }
+
+    // Create the OpenGL ES buffer with room for every instance that the arrays can hold and upload
+    // all of the instances
+    private void recreateBuffer() {
+        if(bufferId == NO_BUFFER || bufferGeneration != contextGeneration) {
+            bufferId = backend.genBuffer();
+            bufferGeneration = contextGeneration;
+        }
+
+        bufferCapacity = properties.length;
+        backend.bufferData(bufferId, bufferCapacity * STRIDE,
+                StagingArena.stage(data, 0, bufferCapacity * NUM_FLOATS_INSTANCE));
+        currentFrameUploads += size;
+    }
+
+    // Double the size of the arrays
+    private void grow() {
+        final int capacity = properties.length * 2;
+        final ModelProperties[] newProperties = new ModelProperties[capacity];
+        System.arraycopy(properties, 0, newProperties, 0, size);
+        properties = newProperties;
+
+        final Material[] newMaterials = new Material[capacity];
+        System.arraycopy(materials, 0, newMaterials, 0, size);
+        materials = newMaterials;
+
+        final int[] newVersions = new int[capacity];
+        System.arraycopy(versions, 0, newVersions, 0, size);
+        versions = newVersions;
+
+        final int[] newMaterialVersions = new int[capacity];
+        System.arraycopy(materialVersions, 0, newMaterialVersions, 0, size);
+        materialVersions = newMaterialVersions;
+
+        final boolean[] newMoved = new boolean[capacity];
+        System.arraycopy(moved, 0, newMoved, 0, size);
+        moved = newMoved;
+
+        final float[] newData = new float[capacity * NUM_FLOATS_INSTANCE];
+        System.arraycopy(data, 0, newData, 0, size * NUM_FLOATS_INSTANCE);
+        data = newData;
+    }
+}
@@ -3,26 +3,19 @@ package com.crispin.crispinmobile.Rendering.Utilities;
 import static android.opengl.GLES20.GL_DEPTH_TEST;
 import static android.opengl.GLES20.GL_STREAM_DRAW;
 import static android.opengl.GLES20.glBufferSubData;
-import static android.opengl.GLES20.glUniform2f;
-import static android.opengl.GLES20.glUniform3f;
 import static android.opengl.GLES30.GL_ARRAY_BUFFER;
 import static android.opengl.GLES30.GL_CULL_FACE;
 import static android.opengl.GLES30.GL_FLOAT;
-import static android.opengl.GLES30.GL_TRIANGLES;
 import static android.opengl.GLES30.glBindBuffer;
-import static android.opengl.GLES30.glBindVertexArray;
 import static android.opengl.GLES30.glBufferData;
-import static android.opengl.GLES30.glDrawArraysInstanced;
-import static android.opengl.GLES30.glEnable;
+import static android.opengl.GLES30.glDeleteBuffers;
+import static android.opengl.GLES30.glDeleteVertexArrays;
 import static android.opengl.GLES30.glEnableVertexAttribArray;
 import static android.opengl.GLES30.glGenBuffers;
-import static android.opengl.GLES30.glUniform1i;
-import static android.opengl.GLES30.glUniformMatrix4fv;
 import static android.opengl.GLES30.glVertexAttribDivisor;
 import static android.opengl.GLES30.glVertexAttribPointer;
 import static com.crispin.crispinmobile.Rendering.Shaders.Shader.UNDEFINED_HANDLE;
 
-import android.opengl.GLES30;
 import android.opengl.Matrix;
 
 import com.crispin.crispinmobile.Crispin;
@@ -30,9 +23,6 @@ import com.crispin.crispinmobile.Geometry.Vec3;
 import com.crispin.crispinmobile.Rendering.Data.Colour;
 import com.crispin.crispinmobile.Rendering.Data.Material;
 import com.crispin.crispinmobile.Rendering.Data.Texture;
-import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
-import com.crispin.crispinmobile.Rendering.Entities.PointLight;
-import com.crispin.crispinmobile.Rendering.Entities.SpotLight;
 import com.crispin.crispinmobile.Rendering.Models.ModelProperties;
 import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceColourLightingShader;
 import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceColourLightingShader2D;
@@ -48,12 +38,14 @@ import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceLight
 import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceTextureShader;
 import com.crispin.crispinmobile.Rendering.Shaders.Shader;
 import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.StagingArena;
 import com.crispin.crispinmobile.Utilities.TextureCache;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
+import java.util.Arrays;
 
-public class InstanceRenderer {
+public class InstanceRenderer implements RenderQueue.Packet {
     private static final String TAG = "InstanceRenderer";
 
     protected final int NUM_BYTES_FLOAT = 4;
@@ -77,6 +69,27 @@ public class InstanceRenderer {
     private int colourVBO;
     private boolean customShader;
 
+    // Ring that the model matrices are streamed through and the VAO of each of its regions, or
+    // null if the matrices are not streamed
+    private StreamingBuffer stream;
+    private int[] streamVAOs;
+
+    // The matrices of the ModelMatrix and ModelProperties uploads, gathered so that they can be
+    // written straight in to a mapped stream region or staged without copying them in between
+    private float[][] uploadMatrices;
+
+    // Levels of detail of the mesh, or null if the mesh is always rendered at full detail
+    private LODGroup lodGroup;
+    private int lodLevel;
+
+    // Bounding sphere of the instance positions and the largest scale of an instance, used to
+    // select the level of detail
+    private float instanceCentreX;
+    private float instanceCentreY;
+    private float instanceCentreZ;
+    private float instanceSpread;
+    private float instanceScale;
+
     public InstanceRenderer(Mesh mesh, boolean lightingSupport, boolean instancedColour) {
         this.mesh = mesh;
         if(lightingSupport) {
@@ -106,7 +119,7 @@ public class InstanceRenderer {
         }
 
         determineShader();
-        setVertexAttributeArrays();
+        setAttributes();
     }
 
     public InstanceRenderer(Mesh mesh, boolean lightingSupport, ModelMatrix[] modelMatrices) {
@@ -150,70 +163,408 @@ public class InstanceRenderer {
     public void setShader(Shader shader) {
         customShader = true;
         this.shader = shader;
-        setVertexAttributeArrays();
+        setAttributes();
+    }
+
+    /**
+     * Stream the model matrices through a ring of buffer regions instead of re-allocating the
+     * buffer on every upload. Use when the matrices are uploaded every frame (e.g. thousands of
+     * moving instances). Each upload maps the next region of the ring without synchronising
+     * (GL_MAP_UNSYNCHRONIZED_BIT), and a fence placed after each draw stops a region from being
+     * written while the GPU may still be reading it. Each region has its own VAO with the
+     * attributes set up once, so uploads and draws do not set any attribute pointers.
+     * <p>
+     * The matrices uploaded before the mode was changed are not kept, so they should be uploaded
+     * again. Colours are not streamed.
+     *
+     * @param streaming <code>true</code> to stream the model matrices, <code>false</code> to
+     *                  upload them to one buffer (the default)
+     * @see StreamingBuffer
+     * @since 1.0
+     */
+    public void setStreaming(boolean streaming) {
+        if(streaming == (stream != null)) {
+            return;
+        }
+
+        if(streaming) {
+            stream = new StreamingBuffer();
+            streamVAOs = new int[stream.getRegionCount()];
+        } else {
+            deleteStreamVAOs();
+            stream.destroy();
+            stream = null;
+            streamVAOs = null;
+        }
+        instances = 0;
+    }
+
+    /**
+     * Check if the model matrices are streamed
+     *
+     * @return <code>true</code> if the model matrices are streamed, else <code>false</code>
+     * @see #setStreaming(boolean)
+     * @since 1.0
+     */
+    public boolean isStreaming() {
+        return stream != null;
     }
 
     public void uploadModelMatrices(FloatBuffer buffer, int instances) {
+        // Heap buffers would be copied again by OpenGL so are staged in direct memory (streamed
+        // matrices are copied straight in to the mapped region instead)
+        if(buffer.isDirect() || stream != null) {
+            buffer.position(0);
+        } else {
+            buffer = StagingArena.stage(buffer, NUM_FLOATS_MATRIX * instances);
+        }
+        uploadStagedModelMatrices(buffer, instances);
+    }
+
+    // Upload model matrices from a direct buffer (or any buffer when streaming), starting at its
+    // position. The attribute pointers already point at the buffer so are not set again.
+    private void uploadStagedModelMatrices(FloatBuffer buffer, int instances) {
+        if(stream != null) {
+            streamModelMatrices(buffer, instances);
+        } else {
+            this.instances = instances;
+            glBindBuffer(GL_ARRAY_BUFFER, matricesVBO);
+            glBufferData(GL_ARRAY_BUFFER, NUM_BYTES_MATRIX * instances, buffer, GL_STREAM_DRAW);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+        }
+        updateInstanceBounds(buffer, instances);
+    }
+
+    // Write model matrices in to the next region of the stream
+    private void streamModelMatrices(FloatBuffer buffer, int instances) {
+        final FloatBuffer mapped = mapStream(instances);
+        if(mapped == null) {
+            return;
+        }
+
+        final FloatBuffer source = buffer.duplicate();
+        source.limit(source.position() + NUM_FLOATS_MATRIX * instances);
+        mapped.put(source);
+        stream.unmap();
         this.instances = instances;
-        buffer.position(0);
+    }
 
-        glBindBuffer(GL_ARRAY_BUFFER, matricesVBO);
-        glBufferData(GL_ARRAY_BUFFER, NUM_BYTES_MATRIX * instances, buffer, GL_STREAM_DRAW);
+    // Map the next region of the stream for a number of instances. Only the VAOs of the regions
+    // have to be set up again, and only if the regions had to grow. Returns null if there is
+    // nothing to write or the region could not be mapped, otherwise the region must be unmapped.
+    private FloatBuffer mapStream(int instances) {
+        if(instances == 0) {
+            this.instances = 0;
+            return null;
+        }
+
+        final int bytes = NUM_BYTES_MATRIX * instances;
+        if(stream.reserve(bytes)) {
+            deleteStreamVAOs();
+        }
+
+        final ByteBuffer mapped = stream.map(bytes);
+        return mapped == null ? null : mapped.asFloatBuffer();
+    }
+
+    /**
+     * Render the instances using levels of detail. Each frame that the instances are rendered with
+     * a 3D camera, one level is selected for all of them from the size that the nearest possible
+     * instance appears on the screen (so large fields of instances spread over a wide area should
+     * be split between multiple renderers to benefit).
+     *
+     * @param lodGroup The levels of detail of the mesh, or <code>null</code> to stop using levels
+     *                 of detail and keep the current mesh
+     * @see LODGroup
+     * @since 1.0
+     */
+    public void setLODGroup(LODGroup lodGroup) {
+        this.lodGroup = lodGroup;
+        this.lodLevel = 0;
+        if(lodGroup != null) {
+            setLevelMesh(lodGroup.getLevel(0));
+        }
+    }
+
+    // Render a different mesh (level of detail) with the same instance data. The attributes are
+    // stored in the vertex array of each mesh so have to be set again.
+    private void setLevelMesh(Mesh levelMesh) {
+        if(levelMesh == mesh) {
+            return;
+        }
+
+        mesh = levelMesh;
+        setAttributes();
+    }
 
-        glBindVertexArray(mesh.vao);
+    // Set all of the attribute pointers for the mesh and shader. The VAOs of the stream regions
+    // are set up again when they are next drawn.
+    private void setAttributes() {
+        setVertexAttributeArrays();
+        setModelMatrixAttributes();
+        if(instancedColour) {
+            setColourAttributes();
+        }
+        deleteStreamVAOs();
+    }
+
+    // Get the VAO to draw the current stream region with, setting it up the first time
+    private int getStreamVAO() {
+        final int region = stream.getRegion();
+        if(streamVAOs[region] == 0) {
+            final int vao = mesh.createVertexArray(shader.positionAttributeHandle,
+                    shader.textureAttributeHandle,
+                    lightingSupport ? shader.normalAttributeHandle : UNDEFINED_HANDLE,
+                    shader.tangentAttributeHandle, shader.bitangentAttributeHandle);
+            setMatrixPointers(stream.getBuffer(), stream.getRegionOffset(region));
+            if(instancedColour) {
+                setColourPointer();
+            }
+            GLStateCache.bindVertexArray(0);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+            streamVAOs[region] = vao;
+        }
+        return streamVAOs[region];
+    }
+
+    // Delete the VAOs of the stream regions so that they are set up again
+    private void deleteStreamVAOs() {
+        if(streamVAOs == null) {
+            return;
+        }
+
+        for(int i = 0; i < streamVAOs.length; i++) {
+            if(streamVAOs[i] != 0) {
+                GLStateCache.onVertexArrayDeleted(streamVAOs[i]);
+                glDeleteVertexArrays(1, streamVAOs, i);
+                streamVAOs[i] = 0;
+            }
+        }
+    }
+
+    // Point the model matrix attributes of the mesh at the matrices buffer
+    private void setModelMatrixAttributes() {
+        GLStateCache.bindVertexArray(mesh.vao);
+        setMatrixPointers(matricesVBO, 0);
+        GLStateCache.bindVertexArray(0);
+    }
+
+    // Point the model matrix attributes of the bound VAO at a buffer, starting at an offset
+    private void setMatrixPointers(int buffer, int offset) {
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
         int h = shader.modelMatrixAttributeHandle;
         glEnableVertexAttribArray(h);
-        glVertexAttribPointer(h, 4, GL_FLOAT, false, NUM_BYTES_MATRIX, 0);
+        glVertexAttribPointer(h, 4, GL_FLOAT, false, NUM_BYTES_MATRIX, offset);
         glEnableVertexAttribArray(h + 1);
-        glVertexAttribPointer(h + 1, 4, GL_FLOAT, false, NUM_BYTES_MATRIX, NUM_BYTES_VEC4);
+        glVertexAttribPointer(h + 1, 4, GL_FLOAT, false, NUM_BYTES_MATRIX,
+                offset + NUM_BYTES_VEC4);
         glEnableVertexAttribArray(h + 2);
-        glVertexAttribPointer(h + 2, 4, GL_FLOAT, false, NUM_BYTES_MATRIX, 2 * NUM_BYTES_VEC4);
+        glVertexAttribPointer(h + 2, 4, GL_FLOAT, false, NUM_BYTES_MATRIX,
+                offset + 2 * NUM_BYTES_VEC4);
         glEnableVertexAttribArray(h + 3);
-        glVertexAttribPointer(h + 3, 4, GL_FLOAT, false, NUM_BYTES_MATRIX, 3 * NUM_BYTES_VEC4);
+        glVertexAttribPointer(h + 3, 4, GL_FLOAT, false, NUM_BYTES_MATRIX,
+                offset + 3 * NUM_BYTES_VEC4);
 
         glVertexAttribDivisor(h, 1);
         glVertexAttribDivisor(h + 1, 1);
         glVertexAttribDivisor(h + 2, 1);
         glVertexAttribDivisor(h + 3, 1);
+    }
+
+    // Point the colour attribute of the mesh at the colour buffer
+    private void setColourAttributes() {
+        GLStateCache.bindVertexArray(mesh.vao);
+        setColourPointer();
+        GLStateCache.bindVertexArray(0);
+    }
+
+    // Point the colour attribute of the bound VAO at the colour buffer
+    private void setColourPointer() {
+        glBindBuffer(GL_ARRAY_BUFFER, colourVBO);
+
+        int h = shader.colourAttributeHandle;
+        glEnableVertexAttribArray(h);
+        glVertexAttribPointer(h, 4, GL_FLOAT, false, NUM_BYTES_COLOUR, 0);
+        glVertexAttribDivisor(h, 1);
+    }
+
+    // Find the bounding sphere of the instance positions (the translation of each matrix) and the
+    // largest scale (the length of the longest axis of each matrix)
+    private void updateInstanceBounds(FloatBuffer buffer, int instances) {
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float maxZ = -Float.MAX_VALUE;
+        final int start = buffer.position();
+        for(int i = 0; i < instances; i++) {
+            final int m = start + i * NUM_FLOATS_MATRIX;
+            minX = Math.min(minX, buffer.get(m + 12));
+            minY = Math.min(minY, buffer.get(m + 13));
+            minZ = Math.min(minZ, buffer.get(m + 14));
+            maxX = Math.max(maxX, buffer.get(m + 12));
+            maxY = Math.max(maxY, buffer.get(m + 13));
+            maxZ = Math.max(maxZ, buffer.get(m + 14));
+        }
+
+        setInstanceCentre(instances, minX, minY, minZ, maxX, maxY, maxZ);
+        for(int i = 0; i < instances; i++) {
+            includeInstance(buffer, start + i * NUM_FLOATS_MATRIX);
+        }
+    }
+
+    // Find the instance bounds of matrices that have been gathered in to the upload matrices
+    private void updateInstanceBounds(int instances) {
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float maxZ = -Float.MAX_VALUE;
+        for(int i = 0; i < instances; i++) {
+            final float[] m = uploadMatrices[i];
+            minX = Math.min(minX, m[12]);
+            minY = Math.min(minY, m[13]);
+            minZ = Math.min(minZ, m[14]);
+            maxX = Math.max(maxX, m[12]);
+            maxY = Math.max(maxY, m[13]);
+            maxZ = Math.max(maxZ, m[14]);
+        }
+
+        setInstanceCentre(instances, minX, minY, minZ, maxX, maxY, maxZ);
+        for(int i = 0; i < instances; i++) {
+            final float[] m = uploadMatrices[i];
+            includeInstance(m[12], m[13], m[14], m[0], m[1], m[2], m[4], m[5], m[6], m[8], m[9],
+                    m[10]);
+        }
+    }
+
+    // Centre the instance bounds on the box around the instance positions, and reset the spread
+    // and scale so that they can be grown to include each instance
+    private void setInstanceCentre(int instances, float minX, float minY, float minZ, float maxX,
+                                   float maxY, float maxZ) {
+        instanceCentreX = instances == 0 ? 0.0f : (minX + maxX) / 2.0f;
+        instanceCentreY = instances == 0 ? 0.0f : (minY + maxY) / 2.0f;
+        instanceCentreZ = instances == 0 ? 0.0f : (minZ + maxZ) / 2.0f;
+        instanceSpread = 0.0f;
+        instanceScale = 0.0f;
+    }
 
-        glBindVertexArray(0);
+    // Grow the instance bounds to include the instance with the matrix at the given offset
+    private void includeInstance(FloatBuffer buffer, int offset) {
+        includeInstance(buffer.get(offset + 12), buffer.get(offset + 13),
+                buffer.get(offset + 14), buffer.get(offset), buffer.get(offset + 1),
+                buffer.get(offset + 2), buffer.get(offset + 4), buffer.get(offset + 5),
+                buffer.get(offset + 6), buffer.get(offset + 8), buffer.get(offset + 9),
+                buffer.get(offset + 10));
+    }
+
+    // Grow the instance bounds to include an instance with the given translation and axes
+    private void includeInstance(float tx, float ty, float tz, float ax, float ay, float az,
+                                 float bx, float by, float bz, float cx, float cy, float cz) {
+        final float dx = tx - instanceCentreX;
+        final float dy = ty - instanceCentreY;
+        final float dz = tz - instanceCentreZ;
+        instanceSpread = Math.max(instanceSpread, (float)Math.sqrt(dx * dx + dy * dy + dz * dz));
+        instanceScale = Math.max(instanceScale, (float)Math.sqrt(ax * ax + ay * ay + az * az));
+        instanceScale = Math.max(instanceScale, (float)Math.sqrt(bx * bx + by * by + bz * bz));
+        instanceScale = Math.max(instanceScale, (float)Math.sqrt(cx * cx + cy * cy + cz * cz));
+    }
+
+    // Switch to the level of detail for the size of the nearest possible instance on the screen
+    private void updateLODLevel(Camera camera) {
+        if(lodGroup == null) {
+            return;
+        }
+
+        final Vec3 cameraPosition = camera.getPosition();
+        final float dx = instanceCentreX - cameraPosition.x;
+        final float dy = instanceCentreY - cameraPosition.y;
+        final float dz = instanceCentreZ - cameraPosition.z;
+        final float distance = Math.max(0.0f, (float)Math.sqrt(dx * dx + dy * dy + dz * dz) -
+                instanceSpread);
+        final int level = lodGroup.selectLevel(lodLevel, LODGroup.getProjectedSize(
+                camera.getFieldOfView(), lodGroup.getBoundingRadius() * instanceScale, distance));
+        if(level != lodLevel) {
+            lodLevel = level;
+            setLevelMesh(lodGroup.getLevel(level));
+        }
     }
 
     public void uploadModelMatrices(float[] modelMatrices) {
         int count = modelMatrices.length / NUM_FLOATS_MATRIX;
-        uploadModelMatrices(FloatBuffer.wrap(modelMatrices), count);
+
+        // Streamed matrices are copied straight in to the mapped region
+        uploadStagedModelMatrices(stream != null ? FloatBuffer.wrap(modelMatrices) :
+                StagingArena.stage(modelMatrices, 0, count * NUM_FLOATS_MATRIX), count);
     }
 
     public void uploadModelMatrices(ModelMatrix[] modelMatrices) {
         int count = modelMatrices.length;
-
-        FloatBuffer buffer = FloatBuffer.allocate(NUM_FLOATS_MATRIX * count);
+        final float[][] matrices = getUploadMatrices(count);
         for(int i = 0; i < count; i++) {
-            buffer.put(modelMatrices[i].getFloats());
+            matrices[i] = modelMatrices[i].getFloats();
         }
-
-        uploadModelMatrices(buffer, count);
+        uploadGatheredModelMatrices(count);
     }
 
     public void uploadModelMatrices(ModelProperties[] modelProperties) {
         int count = modelProperties.length;
-
-        FloatBuffer buffer = FloatBuffer.allocate(NUM_FLOATS_MATRIX * count);
+        final float[][] matrices = getUploadMatrices(count);
         for(int i = 0; i < count; i++) {
-            buffer.put(modelProperties[i].getModelMatrix().getFloats());
+            matrices[i] = modelProperties[i].getModelMatrix().getFloats();
         }
+        uploadGatheredModelMatrices(count);
+    }
 
-        uploadModelMatrices(buffer, count);
+    // Get an array that can hold a number of matrices to upload
+    private float[][] getUploadMatrices(int count) {
+        if(uploadMatrices == null || uploadMatrices.length < count) {
+            uploadMatrices = new float[count][];
+        }
+        return uploadMatrices;
+    }
+
+    // Upload the matrices that have been gathered in to the upload matrices. Streamed matrices are
+    // written straight in to the mapped region, otherwise they are staged in direct memory.
+    private void uploadGatheredModelMatrices(int count) {
+        if(stream == null) {
+            FloatBuffer buffer = StagingArena.allocateFloats(NUM_FLOATS_MATRIX * count);
+            final int start = buffer.position();
+            for(int i = 0; i < count; i++) {
+                buffer.put(uploadMatrices[i]);
+            }
+            buffer.position(start);
+            uploadStagedModelMatrices(buffer, count);
+        } else {
+            final FloatBuffer mapped = mapStream(count);
+            if(mapped != null) {
+                for(int i = 0; i < count; i++) {
+                    mapped.put(uploadMatrices[i]);
+                }
+                stream.unmap();
+                instances = count;
+            }
+            updateInstanceBounds(count);
+        }
+
+        // Do not keep the matrices of the caller alive
+        Arrays.fill(uploadMatrices, 0, count, null);
     }
 
     public void uploadModelMatrix(ModelMatrix modelMatrix, int index) {
-        FloatBuffer buffer = FloatBuffer.allocate(NUM_FLOATS_MATRIX);
-        buffer.put(modelMatrix.getFloats());
-        buffer.position(0);
+        if(stream != null) {
+            Logger.error(TAG, "Single model matrices cannot be uploaded while streaming");
+            return;
+        }
+
+        FloatBuffer buffer = StagingArena.stage(modelMatrix.getFloats());
 
         glBindBuffer(GL_ARRAY_BUFFER, matricesVBO);
         glBufferSubData(GL_ARRAY_BUFFER, index * NUM_BYTES_MATRIX, NUM_BYTES_MATRIX, buffer);
         glBindBuffer(GL_ARRAY_BUFFER, 0);
+        includeInstance(buffer, buffer.position());
 //        glBindVertexArray(mesh.vao);
 //        int h = shader.modelMatrixAttributeHandle;
 //        glEnableVertexAttribArray(h);
@@ -230,7 +581,7 @@ public class InstanceRenderer {
 //        glVertexAttribDivisor(h + 2, 1);
 //        glVertexAttribDivisor(h + 3, 1);
 
-        glBindVertexArray(0);
+        GLStateCache.bindVertexArray(0);
     }
 
     public void uploadColourData(FloatBuffer colourBuffer, int instances) {
@@ -240,38 +591,77 @@ public class InstanceRenderer {
             return;
         }
 
-        colourBuffer.position(0);
+        // Heap buffers would be copied again by OpenGL so are staged in direct memory
+        if(colourBuffer.isDirect()) {
+            colourBuffer.position(0);
+        } else {
+            colourBuffer = StagingArena.stage(colourBuffer, NUM_FLOATS_COLOUR * instances);
+        }
+        uploadStagedColourData(colourBuffer, instances);
+    }
 
+    // Upload colours from a direct buffer, starting at its position
+    private void uploadStagedColourData(FloatBuffer colourBuffer, int instances) {
         // Upload data
         glBindBuffer(GL_ARRAY_BUFFER, colourVBO);
         glBufferData(GL_ARRAY_BUFFER, NUM_BYTES_COLOUR * instances, colourBuffer, GL_STREAM_DRAW);
-
-        // Bind vertex attribs
-        glBindVertexArray(mesh.vao);
-
-        int h = shader.colourAttributeHandle;
-        glEnableVertexAttribArray(h);
-        glVertexAttribPointer(h, 4, GL_FLOAT, false, NUM_BYTES_COLOUR, 0);
-        glVertexAttribDivisor(h, 1);
-        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
     }
 
     public void uploadColourData(float[] colours) {
         int count = colours.length / NUM_FLOATS_COLOUR;
-        uploadColourData(FloatBuffer.wrap(colours), count);
+        if(!instancedColour) {
+            Logger.error(TAG, "Colour per-instance rendering not enabled but colour buffer provided");
+            return;
+        }
+        uploadStagedColourData(StagingArena.stage(colours, 0, count * NUM_FLOATS_COLOUR), count);
     }
 
     public void uploadColourData(Colour[] colours) {
         int count = colours.length;
-        FloatBuffer colourBuffer = FloatBuffer.allocate(NUM_FLOATS_COLOUR * count);
+        if(!instancedColour) {
+            Logger.error(TAG, "Colour per-instance rendering not enabled but colour buffer provided");
+            return;
+        }
+
+        FloatBuffer colourBuffer = StagingArena.allocateFloats(NUM_FLOATS_COLOUR * count);
+        final int start = colourBuffer.position();
         for(int i = 0; i < count; i++) {
             colourBuffer.put(colours[i].red);
             colourBuffer.put(colours[i].green);
             colourBuffer.put(colours[i].blue);
             colourBuffer.put(colours[i].alpha);
         }
+        colourBuffer.position(start);
+
+        uploadStagedColourData(colourBuffer, count);
+    }
+
+    /**
+     * Delete the OpenGL ES buffers of the instance data, and the ring, fences and vertex arrays
+     * used to stream the model matrices. The mesh and shader are not owned by the renderer so are
+     * not deleted. The renderer cannot be used after it has been destroyed.
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        if(stream != null) {
+            deleteStreamVAOs();
+            stream.destroy();
+            stream = null;
+            streamVAOs = null;
+        }
 
-        uploadColourData(colourBuffer, count);
+        final int[] buffers = {matricesVBO, colourVBO};
+        final int count = instancedColour ? 2 : 1;
+        for(int i = 0; i < count; i++) {
+            GLStateCache.onBufferDeleted(buffers[i]);
+        }
+        glDeleteBuffers(count, buffers, 0);
+        matricesVBO = 0;
+        colourVBO = 0;
+        instances = 0;
+        uploadMatrices = null;
     }
 
     public void setLightGroup(LightGroup lightGroup) {
@@ -279,15 +669,15 @@ public class InstanceRenderer {
     }
 
     public void setGlobalColour(Colour colour) {
-        this.material.colour = new Colour(colour);
+        this.material.setColour(colour);
     }
 
     public void setTexture(Texture texture) {
-        this.material.texture = texture;
+        this.material.setTexture(texture);
     }
 
     public void setTexture(int texture) {
-        this.material.texture = TextureCache.loadTexture(texture);
+        this.material.setTexture(TextureCache.loadTexture(texture));
     }
 
     public void setMaterial(Material material) {
@@ -295,41 +685,78 @@ public class InstanceRenderer {
     }
 
     public void render(Camera camera) {
+        updateLODLevel(camera);
         shader.enable();
 
-        glEnable(GL_CULL_FACE);
+        GLStateCache.enable(GL_CULL_FACE);
 
         setUniforms(camera.getPerspectiveMatrix(), camera.getViewMatrix(), camera.getPosition());
 
-        // Draw instances
-        glBindVertexArray(mesh.vao);
-        glDrawArraysInstanced(GL_TRIANGLES, 0, mesh.vertexCount, instances);
-        glBindVertexArray(0);
-
-        shader.disable();
+        drawInstances();
     }
 
     public void render(Camera2D camera2D) {
         // Check if depth is enabled, and disable it
-        final boolean DEPTH_ENABLED = GLES30.glIsEnabled(GL_DEPTH_TEST);
+        final boolean DEPTH_ENABLED = GLStateCache.isEnabled(GL_DEPTH_TEST);
         if(DEPTH_ENABLED) {
-            GLES30.glDisable(GL_DEPTH_TEST);
+            GLStateCache.disable(GL_DEPTH_TEST);
         }
 
         shader.enable();
 
         setUniforms(camera2D.getOrthoMatrix(), default2DViewMatrix);
 
-        // Draw instances
-        glBindVertexArray(mesh.vao);
-        glDrawArraysInstanced(GL_TRIANGLES, 0, mesh.vertexCount, instances);
-        glBindVertexArray(0);
-
-        shader.disable();
+        drawInstances();
 
         // If depth was enabled before calling the function then re-enable it
         if (DEPTH_ENABLED) {
-            glEnable(GL_DEPTH_TEST);
+            GLStateCache.enable(GL_DEPTH_TEST);
+        }
+    }
+
+    /**
+     * Submit the instances to a render queue instead of rendering them straight away. The instances
+     * are drawn with the camera of the queue when the queue is executed, and are ordered with other
+     * draws that use the same shader, texture and mesh.
+     *
+     * @param queue The render queue
+     * @see RenderQueue
+     * @since 1.0
+     */
+    public void submit(RenderQueue queue) {
+        final Texture texture = material.getTexture();
+        queue.submit(RenderKey.opaque(queue.getLayer(), shader.getProgramId(),
+                texture == null ? 0 : texture.getGlTextureID(), mesh.vao, 0), this);
+    }
+
+    /**
+     * Draw the instances as part of an executing render queue
+     *
+     * @param queue The render queue that is executing
+     * @since 1.0
+     */
+    @Override
+    public void draw(RenderQueue queue) {
+        if(queue.getCamera() != null) {
+            render(queue.getCamera());
+        } else {
+            render(queue.getCamera2D());
+        }
+
+        // Rendering enables and disables the shader itself
+        queue.invalidateState();
+    }
+
+    // Draw the instances from the matrices buffer, or from the current region of the stream
+    // followed by a fence so that the region is not written again until the GPU has read it
+    private void drawInstances() {
+        if(stream == null) {
+            GLStateCache.bindVertexArray(mesh.vao);
+            mesh.drawInstanced(instances);
+        } else if(instances > 0) {
+            GLStateCache.bindVertexArray(getStreamVAO());
+            mesh.drawInstanced(instances);
+            stream.fence();
         }
     }
 
@@ -389,7 +816,7 @@ public class InstanceRenderer {
     private void setUniforms(float[] projectionMatrix, float[] viewMatrix, Vec3 viewPosition) {
         if (shader.validHandle(shader.getViewPositionUniformHandle())) {
             final Vec3 cameraPos = viewPosition;
-            glUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x, cameraPos.y,
+            shader.setUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x, cameraPos.y,
                     cameraPos.z);
         }
 
@@ -397,38 +824,11 @@ public class InstanceRenderer {
     }
 
     private void setUniforms(float[] projectionMatrix, float[] viewMatrix) {
-        if (lightGroup != null) {
-            final DirectionalLight directionalLight = lightGroup.getDirectionalLight();
-            if (directionalLight != null) {
-                shader.setDirectionalLightUniforms(directionalLight);
-            }
-
-            final ArrayList<PointLight> pointLights = lightGroup.getPointLights();
-            if (shader.validHandle(shader.getNumPointLightsUniformHandle())) {
-                glUniform1i(shader.getNumPointLightsUniformHandle(), pointLights.size());
-            }
-
-            // Iterate through point lights, uploading each to the shader
-            for (int i = 0; i < pointLights.size() && i < shader.getMaxPointLights(); i++) {
-                final PointLight pointLight = pointLights.get(i);
-                shader.setPointLightUniforms(i, pointLight);
-            }
-
-            final ArrayList<SpotLight> spotLights = lightGroup.getSpotLights();
-            if (shader.validHandle(shader.getNumSpotLightsUniformHandle())) {
-                glUniform1i(shader.getNumSpotLightsUniformHandle(), spotLights.size());
-            }
-
-            // Iterate through spot lights, uploading each to the shader
-            for (int i = 0; i < spotLights.size() && i < shader.getMaxSpotLights(); i++) {
-                final SpotLight spotLight = spotLights.get(i);
-                shader.setSpotLightUniforms(i, spotLight);
-            }
-        }
+        shader.setLightUniforms(lightGroup);
 
         // View dimension should be set to the view width, height
         if (shader.validHandle(shader.getViewDimensionUniformHandle())) {
-            glUniform2f(shader.getViewDimensionUniformHandle(), Crispin.getSurfaceWidth(),
+            shader.setUniform2f(shader.getViewDimensionUniformHandle(), Crispin.getSurfaceWidth(),
                     Crispin.getSurfaceHeight());
         }
 
@@ -436,44 +836,18 @@ public class InstanceRenderer {
         shader.setMaterialUniforms(material);
 
         // Set view matrices
-        glUniformMatrix4fv(shader.getProjectionMatrixUniformHandle(),1,false, projectionMatrix, 0);
-        glUniformMatrix4fv(shader.getViewMatrixUniformHandle(), 1, false, viewMatrix, 0);
+        shader.setUniformMatrix4(shader.getProjectionMatrixUniformHandle(), projectionMatrix, 0);
+        shader.setUniformMatrix4(shader.getViewMatrixUniformHandle(), viewMatrix, 0);
     }
 
+    // The mesh sets the pointers using the type of each attribute in its vertex layout. The
+    // normals are only used if lighting is enabled.
     private void setVertexAttributeArrays() {
-        glBindVertexArray(mesh.vao);
-        glBindBuffer(GL_ARRAY_BUFFER, mesh.vbo);
-
-        if(shader.textureAttributeHandle != UNDEFINED_HANDLE && mesh.elementsPerTexel != 0) {
-            glVertexAttribPointer(shader.textureAttributeHandle , mesh.elementsPerTexel, GL_FLOAT,
-                    false, mesh.stride, mesh.texelDataOffset * NUM_BYTES_FLOAT);
-            glEnableVertexAttribArray(shader.textureAttributeHandle);
-        }
-
-        if(shader.normalAttributeHandle != UNDEFINED_HANDLE && lightingSupport) {
-            glVertexAttribPointer(shader.normalAttributeHandle, mesh.elementsPerNormal, GL_FLOAT,
-                    false, mesh.stride, mesh.normalDataOffset * NUM_BYTES_FLOAT);
-            glEnableVertexAttribArray(shader.normalAttributeHandle);
-        }
-
-        if(shader.tangentAttributeHandle != UNDEFINED_HANDLE && mesh.elementsPerTangent != 0) {
-            glVertexAttribPointer(shader.tangentAttributeHandle, mesh.elementsPerTangent, GL_FLOAT,
-                    false, mesh.stride, mesh.tangentDataOffset * NUM_BYTES_FLOAT);
-            glEnableVertexAttribArray(shader.tangentAttributeHandle);
-        }
-
-        if(shader.bitangentAttributeHandle != UNDEFINED_HANDLE && mesh.elementsPerBitangent != 0) {
-            glVertexAttribPointer(shader.bitangentAttributeHandle, mesh.elementsPerBitangent,
-                    GL_FLOAT, false, mesh.stride, mesh.bitangentDataOffset * NUM_BYTES_FLOAT);
-            glEnableVertexAttribArray(shader.bitangentAttributeHandle);
-        }
-
-        // Enable position regardless of shader choice (they all support position)
-        glVertexAttribPointer(shader.positionAttributeHandle,  mesh.elementsPerPosition, GL_FLOAT,
-                false, mesh.stride, mesh.positionDataOffset * NUM_BYTES_FLOAT);
-        glEnableVertexAttribArray(shader.positionAttributeHandle);
+        mesh.setAttributePointers(shader.positionAttributeHandle, shader.textureAttributeHandle,
+                lightingSupport ? shader.normalAttributeHandle : UNDEFINED_HANDLE,
+                shader.tangentAttributeHandle, shader.bitangentAttributeHandle);
 
-        glBindVertexArray(0);
+        GLStateCache.bindVertexArray(0);
         glBindBuffer(GL_ARRAY_BUFFER, 0);
     }
 }
@@ -0,0 +1,236 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import com.crispin.crispinmobile.MeshLoading.MeshData;
+import com.crispin.crispinmobile.Utilities.Logger;
+
+/**
+ * LODGroup holds the levels of detail of a mesh and selects which level to render from the size
+ * that the mesh appears on the screen. The projected size is the fraction of the viewport height
+ * that the bounding sphere of the mesh covers, calculated from the vertical field of view of the
+ * camera and the distance to the mesh.
+ * <p>
+ * Each level has a minimum projected size. By default these are set so that the triangle density
+ * on the screen stays the same as the full detail mesh at <code>FULL_DETAIL_SIZE</code>, i.e. a
+ * level with half of the triangles is used once the mesh is 1/sqrt(2) of the size. To stop the
+ * level changing back and forth when the size is close to a threshold, a level is only left once
+ * the size is further than the hysteresis fraction past its threshold.
+ * <p>
+ * The group is shared between models so the current level is held by each model and passed in to
+ * <code>selectLevel</code>.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see com.crispin.crispinmobile.MeshLoading.MeshSimplifier
+ * @since 1.0
+ */
+public class LODGroup {
+    // Tag used in logging output
+    private static final String TAG = "LODGroup";
+
+    // The projected size at and above which the full detail mesh is used
+    public static final float FULL_DETAIL_SIZE = 0.25f;
+
+    // The default fraction past a threshold that the projected size must move to change level
+    public static final float DEFAULT_HYSTERESIS = 0.1f;
+
+    // The number of vertices that make up a face
+    private static final int POINTS_PER_FACE = 3;
+
+    // The meshes of each level, from the most to the least detailed
+    private final Mesh[] levels;
+
+    // The radius of the bounding sphere of the mesh (around the origin of the mesh)
+    private final float boundingRadius;
+
+    // The projected size that each level is used at or above (the last level has no minimum)
+    private final float[] thresholds;
+
+    // The fraction past a threshold that the projected size must move to change level
+    private float hysteresis;
+
+    /**
+     * Construct a LOD group with the minimum projected size of each level
+     *
+     * @param levels         The meshes of each level, from the most to the least detailed
+     * @param boundingRadius The radius of a sphere around the origin of the meshes that contains
+     *                       all of their vertices
+     * @param thresholds     The projected size that each level (apart from the last) is used at
+     *                       or above. Must be in decreasing order.
+     * @since 1.0
+     */
+    public LODGroup(Mesh[] levels, float boundingRadius, float[] thresholds) {
+        this.levels = levels;
+        this.boundingRadius = boundingRadius;
+        this.thresholds = new float[Math.max(0, levels.length - 1)];
+        this.hysteresis = DEFAULT_HYSTERESIS;
+        setThresholds(thresholds);
+    }
+
+    /**
+     * Construct a LOD group. The minimum projected size of each level is set from the number of
+     * triangles in it.
+     *
+     * @param levels         The meshes of each level, from the most to the least detailed
+     * @param boundingRadius The radius of a sphere around the origin of the meshes that contains
+     *                       all of their vertices
+     * @since 1.0
+     */
+    public LODGroup(Mesh[] levels, float boundingRadius) {
+        this(levels, boundingRadius, calculateThresholds(levels));
+    }
+
+    /**
+     * Construct a LOD group from loaded mesh data. The levels are the mesh followed by the levels
+     * of detail generated when loading.
+     *
+     * @param meshData The mesh data
+     * @since 1.0
+     */
+    public LODGroup(MeshData meshData) {
+        this(combine(meshData.mesh, meshData.lods), meshData.boundingRadius);
+    }
+
+    /**
+     * Set the minimum projected size of each level
+     *
+     * @param thresholds The projected size that each level (apart from the last) is used at or
+     *                   above. Must be in decreasing order.
+     * @since 1.0
+     */
+    public void setThresholds(float[] thresholds) {
+        if(thresholds.length != this.thresholds.length) {
+            Logger.error(TAG, "Expected " + this.thresholds.length + " thresholds but " +
+                    thresholds.length + " were provided");
+            return;
+        }
+        System.arraycopy(thresholds, 0, this.thresholds, 0, thresholds.length);
+    }
+
+    /**
+     * Set the hysteresis
+     *
+     * @param hysteresis The fraction past a threshold that the projected size must move to
+     *                   change level
+     * @since 1.0
+     */
+    public void setHysteresis(float hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * Get the number of levels
+     *
+     * @return The number of levels including the full detail mesh
+     * @since 1.0
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Get the mesh of a level
+     *
+     * @param level The level (0 is full detail)
+     * @return The mesh of the level
+     * @since 1.0
+     */
+    public Mesh getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * Get the radius of the bounding sphere of the meshes
+     *
+     * @return The radius around the origin of the meshes
+     * @since 1.0
+     */
+    public float getBoundingRadius() {
+        return boundingRadius;
+    }
+
+    /**
+     * Select the level to render
+     *
+     * @param currentLevel  The level that was rendered last
+     * @param projectedSize The projected size of the mesh
+     * @return The level to render
+     * @since 1.0
+     */
+    public int selectLevel(int currentLevel, float projectedSize) {
+        int level = Math.min(Math.max(currentLevel, 0), levels.length - 1);
+
+        // Move to a more detailed level once clearly above the threshold of the next level up
+        while(level > 0 && projectedSize > thresholds[level - 1] * (1.0f + hysteresis)) {
+            level--;
+        }
+
+        // Move to a less detailed level once clearly below the threshold of this level
+        while(level < thresholds.length && projectedSize < thresholds[level] *
+                (1.0f - hysteresis)) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Select the level to render for a mesh viewed by a camera
+     *
+     * @param currentLevel The level that was rendered last
+     * @param camera       The camera
+     * @param x            The x position of the origin of the mesh
+     * @param y            The y position of the origin of the mesh
+     * @param z            The z position of the origin of the mesh
+     * @param scale        The largest scale applied to the mesh
+     * @return The level to render
+     * @since 1.0
+     */
+    public int selectLevel(int currentLevel, Camera camera, float x, float y, float z,
+                           float scale) {
+        final float dx = x - camera.getPosition().x;
+        final float dy = y - camera.getPosition().y;
+        final float dz = z - camera.getPosition().z;
+        final float distance = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return selectLevel(currentLevel, getProjectedSize(camera.getFieldOfView(),
+                boundingRadius * scale, distance));
+    }
+
+    /**
+     * Get the fraction of the viewport height that a sphere covers
+     *
+     * @param verticalFov The vertical field of view of the camera in degrees
+     * @param radius      The radius of the sphere
+     * @param distance    The distance from the camera to the centre of the sphere
+     * @return The projected size of the sphere, infinity if the camera is inside it
+     * @since 1.0
+     */
+    public static float getProjectedSize(float verticalFov, float radius, float distance) {
+        if(distance <= radius) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return radius / (distance * (float)Math.tan(Math.toRadians(verticalFov) / 2.0));
+    }
+
+    // Thresholds that keep the triangle density on the screen the same as the full detail mesh at
+    // the full detail size (the number of triangles covering an area scales with size squared)
+    private static float[] calculateThresholds(Mesh[] levels) {
+        final float[] thresholds = new float[Math.max(0, levels.length - 1)];
+        final int fullDetailTriangles = Math.max(1, levels[0].getElementCount() /
+                POINTS_PER_FACE);
+        for(int i = 0; i < thresholds.length; i++) {
+            final int triangles = levels[i + 1].getElementCount() / POINTS_PER_FACE;
+            thresholds[i] = FULL_DETAIL_SIZE *
+                    (float)Math.sqrt((double)triangles / fullDetailTriangles);
+        }
+        return thresholds;
+    }
+
+    private static Mesh[] combine(Mesh mesh, Mesh[] lods) {
+        final int lodCount = lods == null ? 0 : lods.length;
+        final Mesh[] levels = new Mesh[lodCount + 1];
+        levels[0] = mesh;
+        for(int i = 0; i < lodCount; i++) {
+            levels[i + 1] = lods[i];
+        }
+        return levels;
+    }
+}
@@ -30,6 +30,9 @@ public class LightGroup {
     // List of spot lights as multiple can be used for one render target
     private final ArrayList<SpotLight> spotLights;
 
+    // Uniform buffer that the lights are packed in to for the shaders, created when first used
+    private LightUniformBuffer uniformBuffer;
+
     /**
      * Create a light group object to store multiple different types of lights. Useful to store
      * entire scenes of lights to be easily provided to render targets.
@@ -219,4 +222,34 @@ public class LightGroup {
     public final ArrayList<SpotLight> getSpotLights() {
         return spotLights;
     }
+
+    /**
+     * Get the uniform buffer that the lights of the group are packed in to for the shaders. The
+     * buffer is created the first time that it is requested.
+     *
+     * @return The uniform buffer of the group
+     * @author Christian Benner
+     * @version %I%, %G%
+     * @since 1.0
+     */
+    public LightUniformBuffer getUniformBuffer() {
+        if(uniformBuffer == null) {
+            uniformBuffer = new LightUniformBuffer(this);
+        }
+        return uniformBuffer;
+    }
+
+    /**
+     * Remove the uniform buffer of the group from OpenGL ES memory. The lights are kept, so the
+     * buffer is created again if the group is used after this.
+     *
+     * @author Christian Benner
+     * @version %I%, %G%
+     * @since 1.0
+     */
+    public void destroy() {
+        if(uniformBuffer != null) {
+            uniformBuffer.destroy();
+        }
+    }
 }
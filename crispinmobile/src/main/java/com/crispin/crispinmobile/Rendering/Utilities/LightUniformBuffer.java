@@ -0,0 +1,517 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import static android.opengl.GLES30.GL_DYNAMIC_DRAW;
+import static android.opengl.GLES30.GL_UNIFORM_BUFFER;
+
+import android.opengl.GLES30;
+
+import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
+import com.crispin.crispinmobile.Rendering.Entities.EmissiveEdge;
+import com.crispin.crispinmobile.Rendering.Entities.PointLight;
+import com.crispin.crispinmobile.Rendering.Entities.SpotLight;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * LightUniformBuffer holds the lights of a LightGroup in a uniform buffer object that is shared by
+ * every lighting shader. The built in lighting shaders declare the lights in a std140 uniform
+ * block called 'Lights', which is linked to a fixed binding point when the shader is created.
+ * Instead of uploading every light uniform to every shader that draws, the lights are packed in to
+ * the buffer once and the buffer is bound to the binding point, which is skipped if it is already
+ * bound.
+ * <p>
+ * The buffer is only packed and uploaded again when a light is added, removed or replaced, or when
+ * the version of one of the lights has changed (see <code>PointLight.markChanged</code> for
+ * example). The check compares the identity and version of each light, so it is cheap enough to
+ * make on every bind and a light that changes part way through a frame is still picked up. The
+ * storage of the buffer is allocated once, and an upload only replaces the range of the block
+ * from the first to the last member that has changed (e.g. 64 bytes for one moving point light
+ * instead of the whole block).
+ * <p>
+ * The layout of the block (offsets in bytes):
+ * <pre>
+ *     0    int uNumPointLights
+ *     4    int uNumSpotLights
+ *     8    int uNumEmissiveEdges
+ *     16   PointLight uPointLights[MAX_POINT_LIGHTS]         (stride 64)
+ *     2064 DirectionalLight uDirectionalLight                (size 48)
+ *     2112 SpotLight uSpotLights[MAX_SPOT_LIGHTS]            (stride 80)
+ *     2752 EmissiveEdge uEmissiveEdges[MAX_EMISSIVE_EDGES]   (stride 80)
+ *     3392 end
+ * </pre>
+ * A shader may declare the block without the members at the end that it does not use.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see LightGroup
+ * @see Std140Writer
+ * @since 1.0
+ */
+public class LightUniformBuffer {
+    /**
+     * The OpenGL ES buffer calls that the light buffer makes. Allows the buffer to be tested
+     * without an OpenGL ES context. Binding goes through GLStateCache.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        int genBuffer();
+
+        void allocate(int buffer, int size);
+
+        void bufferSubData(int buffer, int offset, ByteBuffer data, int size);
+
+        void deleteBuffer(int buffer);
+    }
+
+    // The backend that makes calls to OpenGL ES
+    private static class GLES30Backend implements Backend {
+        @Override
+        public int genBuffer() {
+            final int[] buffer = new int[1];
+            GLES30.glGenBuffers(1, buffer, 0);
+            return buffer[0];
+        }
+
+        @Override
+        public void allocate(int buffer, int size) {
+            GLES30.glBindBuffer(GL_UNIFORM_BUFFER, buffer);
+            GLES30.glBufferData(GL_UNIFORM_BUFFER, size, null, GL_DYNAMIC_DRAW);
+        }
+
+        @Override
+        public void bufferSubData(int buffer, int offset, ByteBuffer data, int size) {
+            GLES30.glBindBuffer(GL_UNIFORM_BUFFER, buffer);
+            GLES30.glBufferSubData(GL_UNIFORM_BUFFER, offset, size, data);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            GLES30.glDeleteBuffers(1, new int[]{buffer}, 0);
+        }
+    }
+
+    // The name of the uniform block in the shaders
+    public static final String BLOCK_NAME = "Lights";
+
+    // The uniform buffer binding point that the block is linked to
+    public static final int BINDING = 0;
+
+    // The maximum number of each light type. Must match the defines in the shaders.
+    public static final int MAX_POINT_LIGHTS = 32;
+    public static final int MAX_SPOT_LIGHTS = 8;
+    public static final int MAX_EMISSIVE_EDGES = 8;
+
+    // The std140 sizes of the light structs (rounded up to 16 bytes)
+    public static final int POINT_LIGHT_STRIDE = 64;
+    public static final int DIRECTIONAL_LIGHT_SIZE = 48;
+    public static final int SPOT_LIGHT_STRIDE = 80;
+    public static final int EMISSIVE_EDGE_STRIDE = 80;
+
+    // The offsets of the members of the block
+    public static final int NUM_POINT_LIGHTS_OFFSET = 0;
+    public static final int NUM_SPOT_LIGHTS_OFFSET = 4;
+    public static final int NUM_EMISSIVE_EDGES_OFFSET = 8;
+    public static final int POINT_LIGHTS_OFFSET = 16;
+    public static final int DIRECTIONAL_LIGHT_OFFSET = POINT_LIGHTS_OFFSET +
+            MAX_POINT_LIGHTS * POINT_LIGHT_STRIDE;
+    public static final int SPOT_LIGHTS_OFFSET = DIRECTIONAL_LIGHT_OFFSET +
+            DIRECTIONAL_LIGHT_SIZE;
+    public static final int EMISSIVE_EDGES_OFFSET = SPOT_LIGHTS_OFFSET +
+            MAX_SPOT_LIGHTS * SPOT_LIGHT_STRIDE;
+
+    // The size of the block in bytes
+    public static final int SIZE = EMISSIVE_EDGES_OFFSET +
+            MAX_EMISSIVE_EDGES * EMISSIVE_EDGE_STRIDE;
+
+    // The number of lights that are tracked for changes (one directional light and every array
+    // element)
+    private static final int NUM_SLOTS = 1 + MAX_POINT_LIGHTS + MAX_SPOT_LIGHTS +
+            MAX_EMISSIVE_EDGES;
+
+    // The slot of the first light of each type
+    private static final int DIRECTIONAL_SLOT = 0;
+    private static final int POINT_SLOT = 1;
+    private static final int SPOT_SLOT = POINT_SLOT + MAX_POINT_LIGHTS;
+    private static final int EMISSIVE_EDGE_SLOT = SPOT_SLOT + MAX_SPOT_LIGHTS;
+
+    // Value of a buffer that has not been created
+    private static final int NO_BUFFER = 0;
+
+    private static Backend backend = new GLES30Backend();
+
+    // Incremented when the OpenGL ES context is lost so that buffers know to create themselves
+    // again
+    private static int contextGeneration;
+
+    // Buffer bound when drawing without a light group
+    private static LightUniformBuffer emptyBuffer;
+
+    // Uploads in the current frame and the last frame
+    private static int currentFrameUploads;
+    private static int frameUploads;
+
+    // The lights to pack
+    private final LightGroup lightGroup;
+
+    // Direct buffer that the lights are packed in to
+    private final ByteBuffer data;
+
+    // Writes the lights in the std140 layout
+    private final Std140Writer writer;
+
+    // The lights and their versions that were last packed, by slot
+    private final Object[] packedLights;
+    private final int[] packedVersions;
+    private int packedPointLights;
+    private int packedSpotLights;
+    private int packedEmissiveEdges;
+
+    // The OpenGL ES buffer and the context generation that it was created in
+    private int bufferId;
+    private int bufferGeneration;
+
+    // True if the buffer must be packed and uploaded whether the lights have changed or not
+    private boolean dirty;
+
+    // The range of the block that has changed since the lights were last packed, in bytes
+    private int changedStart;
+    private int changedEnd;
+
+    /**
+     * Create a light uniform buffer for a light group. The OpenGL ES buffer is created the first
+     * time that it is bound.
+     *
+     * @param lightGroup The light group
+     * @since 1.0
+     */
+    public LightUniformBuffer(LightGroup lightGroup) {
+        this.lightGroup = lightGroup;
+        this.data = ByteBuffer.allocateDirect(SIZE).order(ByteOrder.nativeOrder());
+        this.writer = new Std140Writer(data);
+        this.packedLights = new Object[NUM_SLOTS];
+        this.packedVersions = new int[NUM_SLOTS];
+        this.bufferId = NO_BUFFER;
+        this.dirty = true;
+    }
+
+    /**
+     * Bind the lights of a light group to the light block binding point, packing and uploading
+     * them first if they have changed. Must be called on the GL thread.
+     *
+     * @param lightGroup The light group, or <code>null</code> to bind a buffer with no lights
+     * @since 1.0
+     */
+    public static void bind(LightGroup lightGroup) {
+        if(lightGroup != null) {
+            lightGroup.getUniformBuffer().bind();
+            return;
+        }
+
+        if(emptyBuffer == null) {
+            emptyBuffer = new LightUniformBuffer(new LightGroup());
+        }
+        emptyBuffer.bind();
+    }
+
+    /**
+     * Bind the buffer to the light block binding point, packing and uploading the lights first if
+     * they have changed. Must be called on the GL thread.
+     *
+     * @since 1.0
+     */
+    public void bind() {
+        if(bufferId == NO_BUFFER || bufferGeneration != contextGeneration) {
+            bufferId = backend.genBuffer();
+            bufferGeneration = contextGeneration;
+            backend.allocate(bufferId, SIZE);
+            dirty = true;
+        }
+
+        if(dirty) {
+            changedStart = 0;
+            changedEnd = SIZE;
+        } else {
+            findChanges();
+        }
+
+        if(changedStart < changedEnd) {
+            writer.reset();
+            pack(lightGroup, writer);
+            record();
+            data.position(changedStart);
+            backend.bufferSubData(bufferId, changedStart, data, changedEnd - changedStart);
+            data.position(0);
+            dirty = false;
+            currentFrameUploads++;
+        }
+
+        GLStateCache.bindUniformBuffer(BINDING, bufferId);
+    }
+
+    /**
+     * Pack and upload the lights on the next bind even if they have not changed
+     *
+     * @since 1.0
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Remove the buffer from OpenGL ES memory. It is created again if the buffer is bound.
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        if(bufferId != NO_BUFFER && bufferGeneration == contextGeneration) {
+            backend.deleteBuffer(bufferId);
+            GLStateCache.onBufferDeleted(bufferId);
+        }
+        bufferId = NO_BUFFER;
+    }
+
+    /**
+     * Get the direct buffer that the lights are packed in to
+     *
+     * @return The packed lights
+     * @since 1.0
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * Pack the lights of a light group in the std140 layout of the light block. Lights beyond the
+     * maximum of each type are left out, and the directional light is written as zeros if the
+     * group does not have one. Array elements that are not used are not written.
+     *
+     * @param lightGroup The light group
+     * @param writer     The writer, at the start of the block
+     * @since 1.0
+     */
+    public static void pack(LightGroup lightGroup, Std140Writer writer) {
+        final int base = writer.getOffset();
+        final ArrayList<PointLight> pointLights = lightGroup.getPointLights();
+        final ArrayList<SpotLight> spotLights = lightGroup.getSpotLights();
+        final ArrayList<EmissiveEdge> emissiveEdges = lightGroup.getEmissiveEdges();
+        final int numPointLights = Math.min(pointLights.size(), MAX_POINT_LIGHTS);
+        final int numSpotLights = Math.min(spotLights.size(), MAX_SPOT_LIGHTS);
+        final int numEmissiveEdges = Math.min(emissiveEdges.size(), MAX_EMISSIVE_EDGES);
+
+        writer.putInt(numPointLights);
+        writer.putInt(numSpotLights);
+        writer.putInt(numEmissiveEdges);
+
+        for(int i = 0; i < numPointLights; i++) {
+            writer.setOffset(base + POINT_LIGHTS_OFFSET + i * POINT_LIGHT_STRIDE);
+            final PointLight light = pointLights.get(i);
+            writer.beginStruct();
+            writer.putVec3(light.x, light.y, light.z);
+            writer.putVec3(light.red, light.green, light.blue);
+            writer.putFloat(light.ambientStrength);
+            writer.putFloat(light.diffuseStrength);
+            writer.putFloat(light.specularStrength);
+            writer.putFloat(light.constantAttenuation);
+            writer.putFloat(light.linearAttenuation);
+            writer.putFloat(light.quadraticAttenuation);
+            writer.endStruct();
+        }
+
+        writer.setOffset(base + DIRECTIONAL_LIGHT_OFFSET);
+        final DirectionalLight directionalLight = lightGroup.getDirectionalLight();
+        if(directionalLight != null) {
+            writer.beginStruct();
+            writer.putVec3(directionalLight.dx, directionalLight.dy, directionalLight.dz);
+            writer.putVec3(directionalLight.red, directionalLight.green, directionalLight.blue);
+            writer.putFloat(directionalLight.ambientStrength);
+            writer.putFloat(directionalLight.diffuseStrength);
+            writer.putFloat(directionalLight.specularStrength);
+            writer.endStruct();
+        } else {
+            // The shaders always apply the directional light, so no light must be all zeros
+            writer.zeroUntil(base + DIRECTIONAL_LIGHT_OFFSET + DIRECTIONAL_LIGHT_SIZE);
+        }
+
+        for(int i = 0; i < numSpotLights; i++) {
+            writer.setOffset(base + SPOT_LIGHTS_OFFSET + i * SPOT_LIGHT_STRIDE);
+            final SpotLight light = spotLights.get(i);
+            writer.beginStruct();
+            writer.putVec3(light.x, light.y, light.z);
+            writer.putVec3(light.dx, light.dy, light.dz);
+            writer.putVec3(light.red, light.green, light.blue);
+            writer.putFloat(light.ambientStrength);
+            writer.putFloat(light.diffuseStrength);
+            writer.putFloat(light.specularStrength);
+            writer.putFloat(light.constantAttenuation);
+            writer.putFloat(light.linearAttenuation);
+            writer.putFloat(light.quadraticAttenuation);
+            writer.putFloat(light.size);
+            writer.putFloat(light.outerSize);
+            writer.endStruct();
+        }
+
+        for(int i = 0; i < numEmissiveEdges; i++) {
+            writer.setOffset(base + EMISSIVE_EDGES_OFFSET + i * EMISSIVE_EDGE_STRIDE);
+            final EmissiveEdge edge = emissiveEdges.get(i);
+            writer.beginStruct();
+            writer.putVec3(edge.ax, edge.ay, edge.az);
+            writer.putVec3(edge.bx, edge.by, edge.bz);
+            writer.putVec3(edge.red, edge.green, edge.blue);
+            writer.putFloat(edge.ambientStrength);
+            writer.putFloat(edge.diffuseStrength);
+            writer.putFloat(edge.specularStrength);
+            writer.putFloat(edge.constantAttenuation);
+            writer.putFloat(edge.linearAttenuation);
+            writer.putFloat(edge.quadraticAttenuation);
+            writer.endStruct();
+        }
+
+        writer.setOffset(base + SIZE);
+    }
+
+    /**
+     * Forget all of the light buffers because the OpenGL ES context has been lost. Each buffer is
+     * created and uploaded again the next time that it is bound. Called by the scene manager when
+     * the surface is created.
+     *
+     * @since 1.0
+     */
+    public static void invalidateAll() {
+        contextGeneration++;
+    }
+
+    /**
+     * Set the backend that makes the OpenGL ES calls. Intended for unit tests that run without an
+     * OpenGL ES context.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        LightUniformBuffer.backend = backend;
+        invalidateAll();
+    }
+
+    /**
+     * Record the number of uploads of the frame that has finished. Called by the scene manager
+     * after each frame.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        frameUploads = currentFrameUploads;
+        currentFrameUploads = 0;
+    }
+
+    /**
+     * Get the number of light buffer uploads in the last frame
+     *
+     * @return The number of uploads in the last frame
+     * @since 1.0
+     */
+    public static int getFrameUploadCount() {
+        return frameUploads;
+    }
+
+    /**
+     * Get the number of light buffer uploads in the current frame
+     *
+     * @return The number of uploads in the current frame
+     * @since 1.0
+     */
+    public static int getUploadCount() {
+        return currentFrameUploads;
+    }
+
+    // Find the range of the block that has changed since the lights were last packed, from the
+    // counts and the lights that have been added, removed, replaced or changed. The range is
+    // empty if nothing has changed.
+    private void findChanges() {
+        changedStart = SIZE;
+        changedEnd = 0;
+
+        final DirectionalLight directionalLight = lightGroup.getDirectionalLight();
+        if(directionalLight != packedLights[DIRECTIONAL_SLOT] || (directionalLight != null &&
+                directionalLight.getVersion() != packedVersions[DIRECTIONAL_SLOT])) {
+            includeChange(DIRECTIONAL_LIGHT_OFFSET, DIRECTIONAL_LIGHT_SIZE);
+        }
+
+        final ArrayList<PointLight> pointLights = lightGroup.getPointLights();
+        final int numPointLights = Math.min(pointLights.size(), MAX_POINT_LIGHTS);
+        for(int i = 0; i < numPointLights; i++) {
+            final PointLight light = pointLights.get(i);
+            if(light != packedLights[POINT_SLOT + i] ||
+                    light.getVersion() != packedVersions[POINT_SLOT + i]) {
+                includeChange(POINT_LIGHTS_OFFSET + i * POINT_LIGHT_STRIDE, POINT_LIGHT_STRIDE);
+            }
+        }
+
+        final ArrayList<SpotLight> spotLights = lightGroup.getSpotLights();
+        final int numSpotLights = Math.min(spotLights.size(), MAX_SPOT_LIGHTS);
+        for(int i = 0; i < numSpotLights; i++) {
+            final SpotLight light = spotLights.get(i);
+            if(light != packedLights[SPOT_SLOT + i] ||
+                    light.getVersion() != packedVersions[SPOT_SLOT + i]) {
+                includeChange(SPOT_LIGHTS_OFFSET + i * SPOT_LIGHT_STRIDE, SPOT_LIGHT_STRIDE);
+            }
+        }
+
+        final ArrayList<EmissiveEdge> emissiveEdges = lightGroup.getEmissiveEdges();
+        final int numEmissiveEdges = Math.min(emissiveEdges.size(), MAX_EMISSIVE_EDGES);
+        for(int i = 0; i < numEmissiveEdges; i++) {
+            final EmissiveEdge edge = emissiveEdges.get(i);
+            if(edge != packedLights[EMISSIVE_EDGE_SLOT + i] ||
+                    edge.getVersion() != packedVersions[EMISSIVE_EDGE_SLOT + i]) {
+                includeChange(EMISSIVE_EDGES_OFFSET + i * EMISSIVE_EDGE_STRIDE,
+                        EMISSIVE_EDGE_STRIDE);
+            }
+        }
+
+        // Lights that are removed are not written, only the counts change
+        if(numPointLights != packedPointLights || numSpotLights != packedSpotLights ||
+                numEmissiveEdges != packedEmissiveEdges) {
+            includeChange(NUM_POINT_LIGHTS_OFFSET, POINT_LIGHTS_OFFSET);
+        }
+    }
+
+    // Grow the changed range to include a member of the block
+    private void includeChange(int offset, int size) {
+        changedStart = Math.min(changedStart, offset);
+        changedEnd = Math.max(changedEnd, offset + size);
+    }
+
+    // Record the lights that have been packed and their versions
+    private void record() {
+        final DirectionalLight directionalLight = lightGroup.getDirectionalLight();
+        packedLights[DIRECTIONAL_SLOT] = directionalLight;
+        packedVersions[DIRECTIONAL_SLOT] = directionalLight == null ? 0 :
+                directionalLight.getVersion();
+
+        final ArrayList<PointLight> pointLights = lightGroup.getPointLights();
+        packedPointLights = Math.min(pointLights.size(), MAX_POINT_LIGHTS);
+        for(int i = 0; i < MAX_POINT_LIGHTS; i++) {
+            final PointLight light = i < packedPointLights ? pointLights.get(i) : null;
+            packedLights[POINT_SLOT + i] = light;
+            packedVersions[POINT_SLOT + i] = light == null ? 0 : light.getVersion();
+        }
+
+        final ArrayList<SpotLight> spotLights = lightGroup.getSpotLights();
+        packedSpotLights = Math.min(spotLights.size(), MAX_SPOT_LIGHTS);
+        for(int i = 0; i < MAX_SPOT_LIGHTS; i++) {
+            final SpotLight light = i < packedSpotLights ? spotLights.get(i) : null;
+            packedLights[SPOT_SLOT + i] = light;
+            packedVersions[SPOT_SLOT + i] = light == null ? 0 : light.getVersion();
+        }
+
+        final ArrayList<EmissiveEdge> emissiveEdges = lightGroup.getEmissiveEdges();
+        packedEmissiveEdges = Math.min(emissiveEdges.size(), MAX_EMISSIVE_EDGES);
+        for(int i = 0; i < MAX_EMISSIVE_EDGES; i++) {
+            final EmissiveEdge edge = i < packedEmissiveEdges ? emissiveEdges.get(i) : null;
+            packedLights[EMISSIVE_EDGE_SLOT + i] = edge;
+            packedVersions[EMISSIVE_EDGE_SLOT + i] = edge == null ? 0 : edge.getVersion();
+        }
+    }
+}
@@ -1,22 +1,38 @@
 package com.crispin.crispinmobile.Rendering.Utilities;
 
-import static android.opengl.GLES30.GL_FLOAT;
+import static android.opengl.GLES30.GL_ELEMENT_ARRAY_BUFFER;
+import static android.opengl.GLES30.GL_LINES;
+import static android.opengl.GLES30.GL_POINTS;
+import static android.opengl.GLES30.GL_TRIANGLES;
+import static android.opengl.GLES30.GL_TRIANGLE_FAN;
+import static android.opengl.GLES30.GL_TRIANGLE_STRIP;
+import static android.opengl.GLES30.GL_UNSIGNED_INT;
+import static android.opengl.GLES30.GL_UNSIGNED_SHORT;
+import static android.opengl.GLES30.glDrawArrays;
+import static android.opengl.GLES30.glDrawArraysInstanced;
+import static android.opengl.GLES30.glDrawElements;
+import static android.opengl.GLES30.glDrawElementsInstanced;
+import static android.opengl.GLES30.glDisableVertexAttribArray;
 import static android.opengl.GLES30.glEnableVertexAttribArray;
+import static android.opengl.GLES30.glVertexAttribDivisor;
 import static android.opengl.GLES30.glVertexAttribPointer;
 import static android.opengl.GLES30.GL_ARRAY_BUFFER;
 import static android.opengl.GLES30.GL_INVALID_INDEX;
 import static android.opengl.GLES30.GL_STATIC_DRAW;
 import static android.opengl.GLES30.glBindBuffer;
-import static android.opengl.GLES30.glBufferData;
-import static android.opengl.GLES30.glGenBuffers;
-import static android.opengl.GLES30.glBindVertexArray;
 import static android.opengl.GLES30.glGenVertexArrays;
 
-import com.crispin.crispinmobile.Geometry.Geometry;
-import com.crispin.crispinmobile.Geometry.Vec2;
-import com.crispin.crispinmobile.Geometry.Vec3;
+import android.opengl.GLES30;
 
-import java.nio.FloatBuffer;
+import com.crispin.crispinmobile.Physics.BoundBox3D;
+import com.crispin.crispinmobile.Physics.BoundSphere;
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
+import com.crispin.crispinmobile.Rendering.Data.VertexLayout;
+import com.crispin.crispinmobile.Rendering.Data.VertexPacker;
+import com.crispin.crispinmobile.Utilities.StagingArena;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 
 /**
  * Mesh is a base class for any graphical object. Vertex data upload to the graphics memory and
@@ -58,18 +74,100 @@ public class Mesh {
         NONE
     }
 
+    /**
+     * The OpenGL ES calls that create and delete the vertex arrays and buffers of meshes. Allows
+     * meshes to be created and destroyed without an OpenGL ES context.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        int genVertexArray();
+
+        int genBuffer();
+
+        void bindBuffer(int target, int buffer);
+
+        void bufferData(int target, int size, Buffer data);
+
+        void bufferSubData(int target, int offset, int size, Buffer data);
+
+        void deleteBuffer(int buffer);
+
+        void deleteVertexArray(int vertexArray);
+    }
+
+    // The backend that makes calls to OpenGL ES
+    private static class GLES30Backend implements Backend {
+        @Override
+        public int genVertexArray() {
+            final int[] vertexArray = new int[1];
+            GLES30.glGenVertexArrays(1, vertexArray, 0);
+            return vertexArray[0];
+        }
+
+        @Override
+        public int genBuffer() {
+            final int[] buffer = new int[1];
+            GLES30.glGenBuffers(1, buffer, 0);
+            return buffer[0];
+        }
+
+        @Override
+        public void bindBuffer(int target, int buffer) {
+            GLES30.glBindBuffer(target, buffer);
+        }
+
+        @Override
+        public void bufferData(int target, int size, Buffer data) {
+            GLES30.glBufferData(target, size, data, GL_STATIC_DRAW);
+        }
+
+        @Override
+        public void bufferSubData(int target, int offset, int size, Buffer data) {
+            GLES30.glBufferSubData(target, offset, size, data);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            GLES30.glDeleteBuffers(1, new int[]{buffer}, 0);
+        }
+
+        @Override
+        public void deleteVertexArray(int vertexArray) {
+            GLES30.glDeleteVertexArrays(1, new int[]{vertexArray}, 0);
+        }
+    }
+
     // Tag used in logging output
     private static final String TAG = "Mesh";
 
+    // Creates and deletes the OpenGL ES objects of meshes
+    private static Backend backend = new GLES30Backend();
+
     // The 'numVerticesPerGroup' if the vertices are not grouped
     public static final int UNGROUPED = 1;
 
     // The number of bytes in a float
     public static final int BYTES_PER_FLOAT = 4;
 
+    // The number of bytes in a short index
+    public static final int BYTES_PER_SHORT = 2;
+
+    // The number of bytes in an int index
+    public static final int BYTES_PER_INT = 4;
+
+    // The largest number of vertices that can be referenced with unsigned short indices
+    public static final int MAX_SHORT_INDEXED_VERTICES = 65536;
+
+    // Value of the element buffer handle if the mesh is not indexed
+    public static final int NO_INDEX_BUFFER = 0;
+
     // Value that represents an invalid OpenGL ES GLSL shader uniform handle
     private static final int INVALID_UNIFORM_HANDLE = -1;
 
+    // An attribute location that has not been set
+    private static final int INVALID_ATTRIBUTE = -1;
+
     // The method to render the data as (e.g. triangles or lines)
     public final RenderMethod renderMethod;
 
@@ -88,7 +186,11 @@ public class Mesh {
     // The number of elements that are in the bi-tangent data
     public int elementsPerBitangent;
 
-    // The position index of the position data in the vertex data buffer
+    // The type and offset of each attribute in the vertex buffer
+    public final VertexLayout vertexLayout;
+
+    // The position index of the position data in the vertex data buffer (in floats, for meshes
+    // that are not compact)
     public int positionDataOffset;
 
     // The position index of the texel data in the vertex data buffer
@@ -109,8 +211,32 @@ public class Mesh {
     // Number of vertices
     public int vertexCount;
 
+    // Number of indices (zero if the mesh is not indexed)
+    public int indexCount;
+
+    // The type of the indices in the element buffer (GL_UNSIGNED_SHORT or GL_UNSIGNED_INT)
+    public int indexType;
+
     public int vao;
     public int vbo;
+    public int ebo;
+
+    // The first vertex of the mesh in its vertex buffer (non-zero if the buffer is shared)
+    public int baseVertex;
+
+    // The shared buffer block that the vertices are stored in (null if the mesh owns its buffer)
+    VertexBufferArena.Block arenaBlock;
+
+    // The shader attribute locations that the VAO was last pointed at (a mesh can be shared by
+    // models whose shaders use different locations)
+    private final int[] attributeLocations = new int[VertexLayout.NUM_ATTRIBUTES];
+
+    // The attribute locations that are enabled on the VAO (INVALID_ATTRIBUTE if not enabled)
+    private final int[] enabledLocations = new int[VertexLayout.NUM_ATTRIBUTES];
+
+    // Bounds of the vertices in model space, set by the model loaders (null if not computed)
+    public BoundBox3D boundBox3D;
+    public BoundSphere boundSphere;
 
     /**
      * Create an object with vertex data comprised of multiple buffers containing different forms of
@@ -130,101 +256,139 @@ public class Mesh {
     public Mesh(float[] positionBuffer, float[] texelBuffer, float[] normalBuffer,
                 Mesh.RenderMethod renderMethod, int elementsPerPosition,
                 int elementsPerTexel, int elementsPerNormal) {
+        this(positionBuffer, texelBuffer, normalBuffer, null, renderMethod, elementsPerPosition,
+                elementsPerTexel, elementsPerNormal);
+    }
+
+    /**
+     * Create an indexed object with vertex data comprised of multiple buffers containing different
+     * forms of vertex data. The buffers contain one entry per unique vertex and the index buffer
+     * describes how the vertices form the primitives of the render method. For the buffers that you
+     * are not providing data for, put <code>null</code>.
+     *
+     * @param positionBuffer      Float buffer containing the position data
+     * @param texelBuffer         Float buffer containing the texel data, or <code>null</code> if
+     *                            no texel data is being provided
+     * @param normalBuffer        Float buffer containing the normal data, or <code>null</code> if
+     *                            no normal data is being provided
+     * @param indexBuffer         Int buffer containing the vertex indices, or <code>null</code> if
+     *                            the vertex data should be drawn in order without an index buffer
+     * @param renderMethod        The method to render the data (e.g. triangles or quads)
+     * @param elementsPerPosition The number of components the position data is comprised of
+     * @param elementsPerTexel    The number of components that the texel data is comprised of
+     * @param elementsPerNormal   The number components that the normal data is comprised of
+     * @since 1.0
+     */
+    public Mesh(float[] positionBuffer, float[] texelBuffer, float[] normalBuffer,
+                int[] indexBuffer, Mesh.RenderMethod renderMethod, int elementsPerPosition,
+                int elementsPerTexel, int elementsPerNormal) {
+        this(new VertexData(positionBuffer, texelBuffer, normalBuffer, indexBuffer,
+                elementsPerPosition, elementsPerTexel, elementsPerNormal), renderMethod);
+    }
+
+    /**
+     * Create an object from vertex data that has already been interleaved. If the vertex data has
+     * indices, the vertices are drawn with an element buffer.
+     *
+     * @param vertexData   The interleaved vertex data and indices
+     * @param renderMethod The method to render the data (e.g. triangles or quads)
+     * @see VertexData
+     * @since 1.0
+     */
+    public Mesh(VertexData vertexData, Mesh.RenderMethod renderMethod) {
+        this(vertexData, renderMethod, false);
+    }
+
+    /**
+     * Create an object from vertex data that has already been interleaved, optionally storing it in
+     * the compact vertex layout. The compact layout uses half floats for positions and texels and
+     * packed integers for normals, tangents and bi-tangents, roughly halving the memory and
+     * bandwidth that the vertices use at the cost of precision.
+     *
+     * @param vertexData   The interleaved vertex data and indices
+     * @param renderMethod The method to render the data (e.g. triangles or quads)
+     * @param compact      True to store the vertices in the compact layout, false to store them as
+     *                     floats
+     * @see VertexLayout
+     * @since 1.0
+     */
+    public Mesh(VertexData vertexData, Mesh.RenderMethod renderMethod, boolean compact) {
         this.renderMethod = renderMethod;
-        this.elementsPerPosition = positionBuffer == null ? 0 : elementsPerPosition;
-        this.elementsPerTexel = texelBuffer == null ? 0 : elementsPerTexel;
-        this.elementsPerNormal = normalBuffer == null ? 0 : elementsPerNormal;
-
-        ////////////////////////////////////////////////////////////////////////////////////////////
-        ////////////////////////////////////////////////////////////////////////////////////////////
-
-        // todo: wip, resolve tangent and bi-tangent
-        // Normal maps require tangent and bi-tangents to be calculated for each face in order to
-        // point the normals on the map in the correct direction. To have a functioning normal map
-        // you must have texture co-ordinates provided and normals on the mesh.
-
-        float[] tangents = null;
-        float[] bitangents = null;
-
-        // todo:       if(elementsPerTexel > 0 && elementsPerNormal > 0) {
-        if(elementsPerPosition == 3 && elementsPerTexel == 2 && elementsPerNormal == 3) { // temporary
-            // todo: below example for 3D and TRIANGLES
-            final int POINTS_PER_FACE = 3; // for triangles
-            int numVertices = positionBuffer.length / elementsPerPosition;
-            int numFaces = positionBuffer.length / (elementsPerPosition * POINTS_PER_FACE);
-            elementsPerTangent = 3;
-            elementsPerBitangent = 3;
-            tangents = new float[numVertices * elementsPerTangent];
-            bitangents = new float[numVertices * elementsPerBitangent];
-
-            // For each face, calculate the tangent and bi-tangent
-            for(int n = 0; n < numFaces; n++) {
-                int pi = n * (elementsPerPosition * POINTS_PER_FACE);
-                Vec3 p1 = new Vec3(positionBuffer[pi], positionBuffer[pi+1], positionBuffer[pi+2]);
-                Vec3 p2 = new Vec3(positionBuffer[pi+3], positionBuffer[pi+4], positionBuffer[pi+5]);
-                Vec3 p3 = new Vec3(positionBuffer[pi+6], positionBuffer[pi+7], positionBuffer[pi+8]);
-
-                int ti = n * (elementsPerTexel * POINTS_PER_FACE);
-                Vec2 uv1 = new Vec2(texelBuffer[ti], texelBuffer[ti+1]);
-                Vec2 uv2 = new Vec2(texelBuffer[ti+2], texelBuffer[ti+3]);
-                Vec2 uv3 = new Vec2(texelBuffer[ti+4], texelBuffer[ti+5]);
-
-                Vec3 edge1 = Geometry.minus(p2, p1);
-                Vec3 edge2 = Geometry.minus(p3, p1);
-                Vec2 deltaUV1 = Geometry.minus(uv2, uv1);
-                Vec2 deltaUV2 = Geometry.minus(uv3, uv1);
-
-                float f = 1.0f / (deltaUV1.x * deltaUV2.y - deltaUV2.x * deltaUV1.y);
-
-                int ri = n * (elementsPerTangent * POINTS_PER_FACE);
-                tangents[ri] = f * (deltaUV2.y * edge1.x - deltaUV1.y * edge2.x);
-                tangents[ri+1] = f * (deltaUV2.y * edge1.y - deltaUV1.y * edge2.y);
-                tangents[ri+2] = f * (deltaUV2.y * edge1.z - deltaUV1.y * edge2.z);
-                tangents[ri+3] = f * (deltaUV2.y * edge1.x - deltaUV1.y * edge2.x);
-                tangents[ri+4] = f * (deltaUV2.y * edge1.y - deltaUV1.y * edge2.y);
-                tangents[ri+5] = f * (deltaUV2.y * edge1.z - deltaUV1.y * edge2.z);
-                tangents[ri+6] = f * (deltaUV2.y * edge1.x - deltaUV1.y * edge2.x);
-                tangents[ri+7] = f * (deltaUV2.y * edge1.y - deltaUV1.y * edge2.y);
-                tangents[ri+8] = f * (deltaUV2.y * edge1.z - deltaUV1.y * edge2.z);
-
-                int bi = n * (elementsPerBitangent * POINTS_PER_FACE);
-                bitangents[bi] = f * (-deltaUV2.x * edge1.x + deltaUV1.x * edge2.x);
-                bitangents[bi+1] = f * (-deltaUV2.x * edge1.y + deltaUV1.x * edge2.y);
-                bitangents[bi+2] = f * (-deltaUV2.x * edge1.z + deltaUV1.x * edge2.z);
-                bitangents[bi+3] = f * (-deltaUV2.x * edge1.x + deltaUV1.x * edge2.x);
-                bitangents[bi+4] = f * (-deltaUV2.x * edge1.y + deltaUV1.x * edge2.y);
-                bitangents[bi+5] = f * (-deltaUV2.x * edge1.z + deltaUV1.x * edge2.z);
-                bitangents[bi+6] = f * (-deltaUV2.x * edge1.x + deltaUV1.x * edge2.x);
-                bitangents[bi+7] = f * (-deltaUV2.x * edge1.y + deltaUV1.x * edge2.y);
-                bitangents[bi+8] = f * (-deltaUV2.x * edge1.z + deltaUV1.x * edge2.z);
+        this.elementsPerPosition = vertexData.elementsPerPosition;
+        this.elementsPerTexel = vertexData.elementsPerTexel;
+        this.elementsPerNormal = vertexData.elementsPerNormal;
+        this.elementsPerTangent = vertexData.elementsPerTangent;
+        this.elementsPerBitangent = vertexData.elementsPerBitangent;
+        vertexLayout = new VertexLayout(vertexData, compact);
+        stride = vertexLayout.stride;
+        vertexCount = vertexData.vertexCount;
+
+        // Indices are stored as unsigned shorts if the vertex count allows it. The data is staged
+        // in direct buffers so that it is not copied again when it is uploaded.
+        final int[] indices = vertexData.indices;
+        Buffer indexData = null;
+        int indexDataSize = 0;
+        if(indices != null) {
+            indexCount = indices.length;
+            if(vertexCount <= MAX_SHORT_INDEXED_VERTICES) {
+                indexType = GL_UNSIGNED_SHORT;
+                indexData = StagingArena.stageShorts(indices);
+            } else {
+                indexType = GL_UNSIGNED_INT;
+                indexData = StagingArena.stage(indices);
             }
+            indexDataSize = indexCount * getIndexSize();
         }
 
-        ////////////////////////////////////////////////////////////////////////////////////////////
-        ////////////////////////////////////////////////////////////////////////////////////////////
-
-        stride = (elementsPerPosition + elementsPerTexel + elementsPerNormal + elementsPerTangent + elementsPerBitangent) * BYTES_PER_FLOAT;
-
-        // Turn the individual component data into vertex data
-        float[] vertexData = toVertexData(positionBuffer, texelBuffer, normalBuffer, tangents,
-                bitangents, elementsPerPosition, elementsPerTexel, elementsPerNormal,
-                elementsPerTangent, elementsPerBitangent);
-        vertexCount = vertexData.length / (elementsPerPosition + elementsPerTexel +
-                elementsPerNormal + elementsPerTangent + elementsPerBitangent);
-        createGLObjects(vertexData);
-
-        // Resolve the attribute order
-        AttributeOrder_t attributeOrder;
-        if (texelBuffer != null && normalBuffer != null) {
-            attributeOrder = AttributeOrder_t.POSITION_THEN_TEXEL_THEN_NORMAL;
-        } else if (texelBuffer != null) {
-            attributeOrder = AttributeOrder_t.POSITION_THEN_TEXEL;
-        } else if (normalBuffer != null) {
-            attributeOrder = AttributeOrder_t.POSITION_THEN_NORMAL;
-        } else {
-            attributeOrder = AttributeOrder_t.POSITION;
+        final Buffer vertices = compact ? VertexPacker.pack(vertexData, vertexLayout,
+                StagingArena.allocate(vertexCount * stride)) :
+                StagingArena.stage(vertexData.vertices);
+        createGLObjects(vertices, vertexCount * stride, indexData, indexDataSize);
+        resolveAttributeOffsets();
+    }
+
+    /**
+     * Create an object from vertex and index data that is already in the layout used in graphics
+     * memory, for example slices of a memory mapped binary mesh file. The remaining bytes of the
+     * buffers are uploaded directly without being copied into float arrays first.
+     *
+     * @param vertexData           Interleaved vertex data (position, texel, normal, tangent then
+     *                             bi-tangent per vertex)
+     * @param indexData            Index data, or <code>null</code> if the vertex data should be
+     *                             drawn in order without an index buffer
+     * @param indexType            The type of the indices (GL_UNSIGNED_SHORT or GL_UNSIGNED_INT)
+     * @param renderMethod         The method to render the data (e.g. triangles or quads)
+     * @param elementsPerPosition  The number of components the position data is comprised of
+     * @param elementsPerTexel     The number of components that the texel data is comprised of
+     * @param elementsPerNormal    The number components that the normal data is comprised of
+     * @param elementsPerTangent   The number components that the tangent data is comprised of
+     * @param elementsPerBitangent The number components that the bi-tangent data is comprised of
+     * @see com.crispin.crispinmobile.MeshLoading.BinaryMeshLoader
+     * @since 1.0
+     */
+    public Mesh(ByteBuffer vertexData, ByteBuffer indexData, int indexType,
+                Mesh.RenderMethod renderMethod, int elementsPerPosition, int elementsPerTexel,
+                int elementsPerNormal, int elementsPerTangent, int elementsPerBitangent) {
+        this.renderMethod = renderMethod;
+        this.elementsPerPosition = elementsPerPosition;
+        this.elementsPerTexel = elementsPerTexel;
+        this.elementsPerNormal = elementsPerNormal;
+        this.elementsPerTangent = elementsPerTangent;
+        this.elementsPerBitangent = elementsPerBitangent;
+        vertexLayout = new VertexLayout(elementsPerPosition, elementsPerTexel, elementsPerNormal,
+                elementsPerTangent, elementsPerBitangent, false);
+        stride = vertexLayout.stride;
+        vertexCount = vertexData.remaining() / stride;
+
+        int indexDataSize = 0;
+        if(indexData != null) {
+            this.indexType = indexType;
+            indexDataSize = indexData.remaining();
+            indexCount = indexDataSize / getIndexSize();
         }
-        resolveAttributeOffsets(attributeOrder);
+
+        createGLObjects(vertexData, vertexData.remaining(), indexData, indexDataSize);
+        resolveAttributeOffsets();
     }
 
     /**
@@ -249,121 +413,209 @@ public class Mesh {
     }
 
     /**
-     * Creates OpenGL objects such as virtual buffer object (VBO) to store the vertex data in VRAM
-     * and a virtual array object (VAO) to specify how OpenGL should utilise that data on draw.
+     * Check if the mesh is drawn using an index buffer
      *
-     * @param vertexData    Float buffer containing the vertex data
+     * @return True if the mesh has an element buffer, else false
      * @since 1.0
      */
-    private void createGLObjects(float[] vertexData) {
-        // Generate VAO
-        int[] vaoTemp = new int[1];
-        glGenVertexArrays(1, vaoTemp, 0);
-        vao = vaoTemp[0];
+    public boolean isIndexed() {
+        return ebo != NO_INDEX_BUFFER;
+    }
 
-        // Generate VBO
-        int[] vboTemp = new int[1];
-        glGenBuffers(1, vboTemp, 0);
-        vbo = vboTemp[0];
+    /**
+     * Get the number of elements that are drawn to render the whole mesh. This is the index count
+     * for indexed meshes and the vertex count otherwise.
+     *
+     * @return The number of elements to draw
+     * @since 1.0
+     */
+    public int getElementCount() {
+        return isIndexed() ? indexCount : vertexCount;
+    }
 
-        FloatBuffer vd = FloatBuffer.allocate(vertexData.length);
-        vd.put(vertexData);
-        vd.position(0);
-        glBindVertexArray(vao);
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, vertexData.length * BYTES_PER_FLOAT, vd, GL_STATIC_DRAW);
-        glBindVertexArray(0);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    /**
+     * Get the number of bytes that the mesh occupies in graphics memory (vertex and index data)
+     *
+     * @return The size of the vertex and index buffers in bytes
+     * @since 1.0
+     */
+    public int getSizeBytes() {
+        return (vertexCount * stride) + (isIndexed() ? indexCount * getIndexSize() : 0);
     }
 
     /**
-     * Turn position, texel and normal buffers into one vertex data buffer. Provide null to buffers
-     * that you do not wish to provide.
+     * Check if the vertices of the mesh are stored in a shared vertex buffer
      *
-     * @param positionBuffer        Array of floats containing position data (or null if not in use)
-     * @param texelBuffer           Array of floats containing texel data (or null if not in use)
-     * @param normalBuffer          Array of floats containing normal data (or null if not in use)
-     * @param tangentBuffer         Array of floats containing tangent data (or null if not in use)
-     * @param bitangentBuffer       Array of floats containing bi-tangent data (or null if not in use)
-     * @param elementsPerPosition   Number of elements per position data e.g. XY = 2 and XYZ = 3
-     * @param elementsPerTexel      Number of elements per texel data e.g. ST = 2
-     * @param elementsPerNormal     Number of elements per normal data e.g. XY = 2 and XYZ = 3
-     * @param elementsPerTangent    Number of elements per tangent data e.g. XY = 2 and XYZ = 3
-     * @param elementsPerBiTangent  Number of elements per bi-tangent data e.g. XY = 2 and XYZ = 3
-     * @return                      Array of floats representing vertex data. The data structure of
-     *                              the array is:
-     *                                  v0: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
-     *                                  v1: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
-     *                                  v2: ...
-     * @since                       1.0
+     * @return True if the vertices are in the vertex buffer arena, else false
+     * @see VertexBufferArena
+     * @since 1.0
      */
-    private float[] toVertexData(float[] positionBuffer, float[] texelBuffer, float[] normalBuffer,
-                                 float[] tangentBuffer, float[] bitangentBuffer,
-                                 int elementsPerPosition, int elementsPerTexel,
-                                 int elementsPerNormal, int elementsPerTangent,
-                                 int elementsPerBiTangent) {
-        final int posBufferLength = positionBuffer == null ? 0 : positionBuffer.length;
-        final int texBufferLength = texelBuffer == null ? 0 : texelBuffer.length;
-        final int norBufferLength = normalBuffer == null ? 0 : normalBuffer.length;
-        final int tanBufferLength = tangentBuffer == null ? 0 : tangentBuffer.length;
-        final int btnBufferLength = bitangentBuffer == null ? 0 : bitangentBuffer.length;
-        final int vertexBufferLength = posBufferLength + texBufferLength + norBufferLength + tanBufferLength + btnBufferLength;
-
-        // Copy the data into the vertex data buffer. This should result in a data structure of:
-        // v0: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
-        // v1: posX, posY, posZ, texU, texV, normX, normY, normZ, tangentX, tangentY, tangentZ, bitangentX, bitangentY, bitangentZ
-        float[] vertexData = new float[vertexBufferLength];
-        int stride = elementsPerPosition + elementsPerTexel + elementsPerNormal + elementsPerTangent + elementsPerBiTangent;
-        int posBufferIndex = 0;
-        int texBufferIndex = 0;
-        int norBufferIndex = 0;
-        int tanBufferIndex = 0;
-        int btnBufferIndex = 0;
-
-        for(int i = 0; i < vertexBufferLength; i += stride) {
-            int offset = 0;
-            if(positionBuffer != null) {
-                for (int pi = 0; pi < elementsPerPosition; pi++) {
-                    vertexData[i + pi] = positionBuffer[posBufferIndex];
-                    posBufferIndex++;
-                }
-                offset += elementsPerPosition;
-            }
+    public boolean isInArena() {
+        return arenaBlock != null;
+    }
 
-            if(texelBuffer != null) {
-                for(int ti = 0; ti < elementsPerTexel; ti++) {
-                    vertexData[i + offset + ti] = texelBuffer[texBufferIndex];
-                    texBufferIndex++;
-                }
-                offset += elementsPerTexel;
-            }
+    /**
+     * Remove the mesh from video memory. The vertex array, vertex buffer and element buffer are
+     * deleted so the mesh can no longer be drawn. If the vertices are in a shared vertex buffer,
+     * their range is freed instead.
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        if(arenaBlock != null) {
+            VertexBufferArena.free(this);
+        } else {
+            backend.deleteBuffer(vbo);
+        }
 
-            if(normalBuffer != null) {
-                for (int ni = 0; ni < elementsPerNormal; ni++) {
-                    vertexData[i + offset + ni] = normalBuffer[norBufferIndex];
-                    norBufferIndex++;
-                }
-                offset += elementsPerNormal;
-            }
+        if(isIndexed()) {
+            backend.deleteBuffer(ebo);
+        }
 
-            if(tangentBuffer != null) {
-                for (int ri = 0; ri < elementsPerTangent; ri++) {
-                    vertexData[i + offset + ri] = tangentBuffer[tanBufferIndex];
-                    tanBufferIndex++;
-                }
-                offset += elementsPerTangent;
-            }
+        backend.deleteVertexArray(vao);
+        GLStateCache.onVertexArrayDeleted(vao);
 
-            if(bitangentBuffer != null) {
-                for (int bi = 0; bi < elementsPerBiTangent; bi++) {
-                    vertexData[i + offset + bi] = bitangentBuffer[btnBufferIndex];
-                    btnBufferIndex++;
-                }
-                offset += elementsPerBiTangent;
-            }
+        vao = 0;
+        vbo = 0;
+        ebo = NO_INDEX_BUFFER;
+        baseVertex = 0;
+    }
+
+    /**
+     * Get the OpenGL primitive type for a render method
+     *
+     * @param renderMethod The render method
+     * @return The OpenGL primitive type (e.g. GL_TRIANGLES)
+     * @since 1.0
+     */
+    public static int getGLRenderMethod(RenderMethod renderMethod) {
+        switch (renderMethod) {
+            case POINTS:
+                return GL_POINTS;
+            case LINES:
+                return GL_LINES;
+            case TRIANGLE_FAN:
+                return GL_TRIANGLE_FAN;
+            case TRIANGLE_STRIP:
+                return GL_TRIANGLE_STRIP;
+            case TRIANGLES:
+            default:
+                return GL_TRIANGLES;
+        }
+    }
+
+    /**
+     * Draw the whole mesh with its render method. The VAO of the mesh must be bound before calling.
+     * Indexed meshes are drawn with glDrawElements, otherwise glDrawArrays is used.
+     *
+     * @since 1.0
+     */
+    public void draw() {
+        if(renderMethod == RenderMethod.NONE) {
+            return;
+        }
+
+        draw(getGLRenderMethod(renderMethod), 0, getElementCount());
+    }
+
+    /**
+     * Draw a range of the mesh with a specific primitive type. The VAO of the mesh must be bound
+     * before calling.
+     *
+     * @param mode  The OpenGL primitive type (e.g. GL_TRIANGLES or GL_LINES)
+     * @param first The first element (index for indexed meshes, vertex otherwise) to draw,
+     *              relative to the start of the mesh
+     * @param count The number of elements to draw
+     * @since 1.0
+     */
+    public void draw(int mode, int first, int count) {
+        if(isIndexed()) {
+            glDrawElements(mode, count, indexType, first * getIndexSize());
+        } else {
+            glDrawArrays(mode, baseVertex + first, count);
+        }
+    }
+
+    /**
+     * Draw multiple instances of the whole mesh. The VAO of the mesh must be bound before calling.
+     *
+     * @param instances The number of instances to draw
+     * @since 1.0
+     */
+    public void drawInstanced(int instances) {
+        final int mode = getGLRenderMethod(renderMethod);
+        if(isIndexed()) {
+            glDrawElementsInstanced(mode, indexCount, indexType, 0, instances);
+        } else {
+            glDrawArraysInstanced(mode, baseVertex, vertexCount, instances);
+        }
+    }
+
+    /**
+     * Creates OpenGL objects such as virtual buffer object (VBO) to store the vertex data in VRAM
+     * and a virtual array object (VAO) to specify how OpenGL should utilise that data on draw. If
+     * index data is provided, an element buffer object (EBO) is also created and attached to the
+     * VAO. Small meshes without index data store their vertices in a shared buffer of the vertex
+     * buffer arena instead of their own VBO.
+     *
+     * @param vertexData     Buffer containing the vertex data
+     * @param vertexDataSize The size of the vertex data in bytes
+     * @param indexData      Buffer containing the index data, or <code>null</code> if the mesh is
+     *                       not indexed
+     * @param indexDataSize  The size of the index data in bytes
+     * @since 1.0
+     */
+    private void createGLObjects(Buffer vertexData, int vertexDataSize, Buffer indexData,
+                                 int indexDataSize) {
+        for(int i = 0; i < VertexLayout.NUM_ATTRIBUTES; i++) {
+            attributeLocations[i] = INVALID_ATTRIBUTE;
+            enabledLocations[i] = INVALID_ATTRIBUTE;
+        }
+
+        // Generate VAO
+        vao = backend.genVertexArray();
+
+        // Use a range of a shared VBO if possible, otherwise generate a VBO
+        if(indexData != null ||
+                !VertexBufferArena.allocate(this, vertexData, vertexDataSize)) {
+            vbo = backend.genBuffer();
+            backend.bindBuffer(GL_ARRAY_BUFFER, vbo);
+            backend.bufferData(GL_ARRAY_BUFFER, vertexDataSize, vertexData);
+        }
+
+        GLStateCache.bindVertexArray(vao);
+
+        if(indexData != null) {
+            // Generate EBO (the element buffer binding is part of the VAO state)
+            ebo = backend.genBuffer();
+            backend.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
+            backend.bufferData(GL_ELEMENT_ARRAY_BUFFER, indexDataSize, indexData);
         }
 
-        return vertexData;
+        GLStateCache.bindVertexArray(0);
+        backend.bindBuffer(GL_ARRAY_BUFFER, 0);
+        backend.bindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Set the backend that creates and deletes the OpenGL ES objects of meshes. Intended for unit
+     * tests that run without an OpenGL ES context.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        Mesh.backend = backend;
+    }
+
+    // The backend, also used by the vertex buffer arena for the shared buffers
+    static Backend getBackend() {
+        return backend;
+    }
+
+    // The number of bytes in each index of the element buffer
+    private int getIndexSize() {
+        return indexType == GL_UNSIGNED_SHORT ? BYTES_PER_SHORT : BYTES_PER_INT;
     }
 
     /**
@@ -382,73 +634,135 @@ public class Mesh {
      */
     public void setAttributePointers(int posAttribLoc, int texelAttribLoc, int normalAttribLoc,
                                      int tangentAttribLoc, int bitangentAttribLoc) {
-        glBindVertexArray(vao);
+        GLStateCache.bindVertexArray(vao);
         glBindBuffer(GL_ARRAY_BUFFER, vbo);
+
+        attributeLocations[VertexLayout.POSITION] = posAttribLoc;
+        attributeLocations[VertexLayout.TEXEL] = texelAttribLoc;
+        attributeLocations[VertexLayout.NORMAL] = normalAttribLoc;
+        attributeLocations[VertexLayout.TANGENT] = tangentAttribLoc;
+        attributeLocations[VertexLayout.BITANGENT] = bitangentAttribLoc;
+
+        // Disable the locations of a previous shader so that only the new ones are enabled
+        for(int i = 0; i < VertexLayout.NUM_ATTRIBUTES; i++) {
+            if(enabledLocations[i] != INVALID_ATTRIBUTE) {
+                glDisableVertexAttribArray(enabledLocations[i]);
+                enabledLocations[i] = INVALID_ATTRIBUTE;
+            }
+        }
+
         if(elementsPerPosition > 0 && posAttribLoc != GL_INVALID_INDEX) {
-            glVertexAttribPointer(posAttribLoc,  elementsPerPosition, GL_FLOAT, false,
-                    stride, positionDataOffset * BYTES_PER_FLOAT);
-            glEnableVertexAttribArray(posAttribLoc);
+            setAttributePointer(posAttribLoc, VertexLayout.POSITION);
         }
 
         if(elementsPerTexel > 0 && texelAttribLoc != GL_INVALID_INDEX) {
-            glVertexAttribPointer(texelAttribLoc, elementsPerTexel, GL_FLOAT, false,
-                    stride, texelDataOffset * BYTES_PER_FLOAT);
-            glEnableVertexAttribArray(texelAttribLoc);
+            setAttributePointer(texelAttribLoc, VertexLayout.TEXEL);
         }
 
         if(elementsPerNormal > 0 && normalAttribLoc != GL_INVALID_INDEX) {
-            glVertexAttribPointer(normalAttribLoc, elementsPerNormal, GL_FLOAT, false,
-                    stride, normalDataOffset * BYTES_PER_FLOAT);
-            glEnableVertexAttribArray(normalAttribLoc);
+            setAttributePointer(normalAttribLoc, VertexLayout.NORMAL);
         }
 
         if(elementsPerTangent > 0 && tangentAttribLoc != GL_INVALID_INDEX) {
-            glVertexAttribPointer(tangentAttribLoc, elementsPerTangent, GL_FLOAT, false,
-                    stride, tangentDataOffset * BYTES_PER_FLOAT);
-            glEnableVertexAttribArray(tangentAttribLoc);
+            setAttributePointer(tangentAttribLoc, VertexLayout.TANGENT);
         }
 
         if(elementsPerBitangent > 0 && bitangentAttribLoc != GL_INVALID_INDEX) {
-            glVertexAttribPointer(bitangentAttribLoc, elementsPerBitangent, GL_FLOAT, false,
-                    stride, bitangentDataOffset * BYTES_PER_FLOAT);
-            glEnableVertexAttribArray(bitangentAttribLoc);
+            setAttributePointer(bitangentAttribLoc, VertexLayout.BITANGENT);
         }
     }
 
     /**
-     * Resolve the data attribute offsets. This is where each data attribute starts looking at the
-     * vertex data.
+     * Bind the VAO of the mesh for drawing with a shader. If the VAO was last pointed at different
+     * attribute locations (because the mesh is shared with a model that uses another shader), the
+     * attribute pointers are set again first.
+     *
+     * @param posAttribLoc          Position attribute location in shader
+     * @param texelAttribLoc        Texel attribute location in shader
+     * @param normalAttribLoc       Normal attribute location in shader
+     * @param tangentAttribLoc      Tangent attribute location in shader
+     * @param bitangentAttribLoc    Bi-tangent attribute location in shader
+     * @since 1.0
+     */
+    public void bind(int posAttribLoc, int texelAttribLoc, int normalAttribLoc,
+                     int tangentAttribLoc, int bitangentAttribLoc) {
+        if(attributeLocations[VertexLayout.POSITION] != posAttribLoc ||
+                attributeLocations[VertexLayout.TEXEL] != texelAttribLoc ||
+                attributeLocations[VertexLayout.NORMAL] != normalAttribLoc ||
+                attributeLocations[VertexLayout.TANGENT] != tangentAttribLoc ||
+                attributeLocations[VertexLayout.BITANGENT] != bitangentAttribLoc) {
+            setAttributePointers(posAttribLoc, texelAttribLoc, normalAttribLoc, tangentAttribLoc,
+                    bitangentAttribLoc);
+        } else {
+            GLStateCache.bindVertexArray(vao);
+        }
+    }
+
+    /**
+     * Create another VAO for the mesh that points at the same vertex (and index) data, for a user
+     * that needs to add its own attributes (such as one VAO for each region of a streamed
+     * instance buffer). The attribute pointers of the mesh VAO are not changed. The caller owns the
+     * VAO and must delete it when it is no longer needed.
      *
+     * @param posAttribLoc          Position attribute location in shader
+     * @param texelAttribLoc        Texel attribute location in shader
+     * @param normalAttribLoc       Normal attribute location in shader
+     * @param tangentAttribLoc      Tangent attribute location in shader
+     * @param bitangentAttribLoc    Bi-tangent attribute location in shader
+     * @return The ID of the new VAO, which is left bound
      * @since 1.0
      */
-    private void resolveAttributeOffsets(AttributeOrder_t attributeOrder) {
-        // Figure out the attribute data offsets depending on the attribute order
-        switch (attributeOrder) {
-            case POSITION:
-                positionDataOffset = 0;
-                break;
-            case POSITION_THEN_TEXEL:
-                positionDataOffset = 0;
-                texelDataOffset = elementsPerPosition;
-                break;
-            case POSITION_THEN_NORMAL:
-                positionDataOffset = 0;
-                normalDataOffset = elementsPerPosition;
-                break;
-            case POSITION_THEN_TEXEL_THEN_NORMAL:
-                positionDataOffset = 0;
-                texelDataOffset = elementsPerPosition;
-                normalDataOffset = texelDataOffset + elementsPerTexel;
-                tangentDataOffset = normalDataOffset + elementsPerNormal;
-                bitangentDataOffset = tangentDataOffset + elementsPerTangent;
-                break;
-            case POSITION_THEN_NORMAL_THEN_TEXEL:
-                positionDataOffset = 0;
-                normalDataOffset = elementsPerPosition;
-                texelDataOffset = normalDataOffset + elementsPerNormal;
-                tangentDataOffset = texelDataOffset + elementsPerTexel;
-                bitangentDataOffset = tangentDataOffset + elementsPerTangent;
-                break;
+    public int createVertexArray(int posAttribLoc, int texelAttribLoc, int normalAttribLoc,
+                                 int tangentAttribLoc, int bitangentAttribLoc) {
+        int[] vaoTemp = new int[1];
+        glGenVertexArrays(1, vaoTemp, 0);
+        GLStateCache.bindVertexArray(vaoTemp[0]);
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        if(isIndexed()) {
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ebo);
         }
+
+        final int[] locations = { posAttribLoc, texelAttribLoc, normalAttribLoc, tangentAttribLoc,
+                bitangentAttribLoc };
+        final int[] elements = { elementsPerPosition, elementsPerTexel, elementsPerNormal,
+                elementsPerTangent, elementsPerBitangent };
+        final int[] attributes = { VertexLayout.POSITION, VertexLayout.TEXEL, VertexLayout.NORMAL,
+                VertexLayout.TANGENT, VertexLayout.BITANGENT };
+        for(int i = 0; i < attributes.length; i++) {
+            if(elements[i] > 0 && locations[i] != GL_INVALID_INDEX) {
+                pointAttribute(locations[i], attributes[i]);
+            }
+        }
+        return vaoTemp[0];
+    }
+
+    // Point a shader attribute at an attribute of the vertex buffer, using its type in the layout
+    private void setAttributePointer(int location, int attribute) {
+        pointAttribute(location, attribute);
+        enabledLocations[attribute] = location;
+    }
+
+    // Set the pointer of an attribute location of the bound VAO. The location may have been a
+    // per-instance attribute of another shader (see RenderBatch), so the divisor is reset.
+    private void pointAttribute(int location, int attribute) {
+        glVertexAttribPointer(location, vertexLayout.getComponents(attribute),
+                vertexLayout.getType(attribute), vertexLayout.isNormalised(attribute), stride,
+                vertexLayout.getOffset(attribute));
+        glVertexAttribDivisor(location, 0);
+        glEnableVertexAttribArray(location);
+    }
+
+    /**
+     * Resolve the data attribute offsets. This is where each data attribute starts looking at the
+     * vertex data (in floats, the vertex layout holds the offsets in bytes).
+     *
+     * @since 1.0
+     */
+    private void resolveAttributeOffsets() {
+        positionDataOffset = vertexLayout.getOffset(VertexLayout.POSITION) / BYTES_PER_FLOAT;
+        texelDataOffset = vertexLayout.getOffset(VertexLayout.TEXEL) / BYTES_PER_FLOAT;
+        normalDataOffset = vertexLayout.getOffset(VertexLayout.NORMAL) / BYTES_PER_FLOAT;
+        tangentDataOffset = vertexLayout.getOffset(VertexLayout.TANGENT) / BYTES_PER_FLOAT;
+        bitangentDataOffset = vertexLayout.getOffset(VertexLayout.BITANGENT) / BYTES_PER_FLOAT;
     }
 }
@@ -1,65 +1,131 @@
 package com.crispin.crispinmobile.Rendering.Utilities;
 
-import static android.opengl.GLES30.GL_LINES;
-import static android.opengl.GLES30.GL_POINTS;
-import static android.opengl.GLES30.glDrawArrays;
-import static android.opengl.GLES30.GL_TEXTURE_2D;
-import static android.opengl.GLES30.GL_TRIANGLES;
-import static android.opengl.GLES30.glBindTexture;
-import static android.opengl.GLES30.glGenBuffers;
-import static android.opengl.GLES30.glUniform1i;
-import static android.opengl.GLES30.glUniform3f;
-import static android.opengl.GLES30.glUniformMatrix4fv;
+import static android.opengl.GLES30.GL_ARRAY_BUFFER;
+import static android.opengl.GLES30.GL_FLOAT;
+import static android.opengl.GLES30.glBindBuffer;
+import static android.opengl.GLES30.glEnableVertexAttribArray;
+import static android.opengl.GLES30.glVertexAttribDivisor;
 import static android.opengl.GLES30.glVertexAttribPointer;
-import static android.opengl.GLES30.glBindVertexArray;
 
 import com.crispin.crispinmobile.Geometry.Vec3;
-import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
-import com.crispin.crispinmobile.Rendering.Entities.PointLight;
-import com.crispin.crispinmobile.Rendering.Entities.SpotLight;
+import com.crispin.crispinmobile.Rendering.Data.Material;
 import com.crispin.crispinmobile.Rendering.Models.ModelProperties;
+import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceColourLightingShader;
+import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceColourLightingTextureShader;
+import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceColourShader;
+import com.crispin.crispinmobile.Rendering.Shaders.InstanceShaders.InstanceColourTextureShader;
 import com.crispin.crispinmobile.Rendering.Shaders.Shader;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 
-public class RenderBatch {
-    // Number of uniform elements to upload in a single GLSL uniform upload
-    private static final int UNIFORM_UPLOAD_COUNT_SINGLE = 1;
+/**
+ * RenderBatch draws many objects that share a mesh. The objects are grouped by material, where
+ * materials that only differ in colour share a group, and each group is drawn with one instanced
+ * draw call. The model matrix and colour of each object are per-instance attributes that are kept
+ * in an instance buffer for each group, and only the objects that have moved or changed colour
+ * since the last frame are uploaded.
+ * <p>
+ * The instanced shader is chosen from the mesh. A custom shader can be set instead; if it does not
+ * have a model matrix attribute (it is not an instanced shader), each object is drawn on its own
+ * with the model matrix and material as uniforms.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see InstanceBuffer
+ * @see Material#isInstanceCompatible(Material)
+ * @since 1.0
+ */
+public class RenderBatch implements RenderQueue.Packet {
+    // The number of floats in a column of the model matrix
+    private static final int NUM_FLOATS_VEC4 = 4;
+
+    // Objects with materials that only differ in colour, drawn with one instanced draw call
+    private static class Group {
+        // The material of the first object in the group, used for everything but the colour
+        final Material material;
+        final InstanceBuffer instances;
+
+        // The version of the material when the objects were last checked against it
+        int materialVersion;
+
+        Group(Material material) {
+            this.material = material;
+            this.instances = new InstanceBuffer();
+            this.materialVersion = material.getVersion();
+        }
+    }
 
     private Mesh renderObject;
-    private HashSet<ModelProperties> batch;
+    private final ArrayList<Group> groups;
+
+    // The group that each object is in
+    private final HashMap<ModelProperties, Group> groupLookup;
 
     private Shader shader;
+    private boolean customShader;
+    private boolean lightingSupport;
     private Camera camera;
     private LightGroup lightGroup;
 
+    /**
+     * Create a render batch that draws a mesh. The mesh is lit if it has normals.
+     *
+     * @param mesh            The mesh to draw for each object
+     * @param lightingSupport If the objects should be lit
+     * @since 1.0
+     */
+    public RenderBatch(Mesh mesh, boolean lightingSupport) {
+        this();
+        this.lightingSupport = lightingSupport;
+        setMesh(mesh);
+    }
+
     public RenderBatch() {
-        batch = new HashSet<>();
+        groups = new ArrayList<>();
+        groupLookup = new HashMap<>();
+        lightingSupport = true;
     }
 
     public void setMesh(Mesh renderObject) {
         this.renderObject = renderObject;
+        determineShader();
+        setVertexAttributeArrays();
     }
 
     public void add(ModelProperties modelProperties) {
-        batch.add(modelProperties);
+        if(groupLookup.containsKey(modelProperties)) {
+            return;
+        }
+
+        addToGroup(modelProperties);
     }
 
     public void remove(ModelProperties modelProperties) {
-        batch.remove(modelProperties);
+        final Group group = groupLookup.remove(modelProperties);
+        if(group == null) {
+            return;
+        }
+
+        group.instances.remove(modelProperties);
+        if(group.instances.size() == 0) {
+            group.instances.destroy();
+            groups.remove(group);
+        }
     }
 
     public void clear() {
-        batch.clear();
+        for(int i = 0; i < groups.size(); i++) {
+            groups.get(i).instances.destroy();
+        }
+        groups.clear();
+        groupLookup.clear();
     }
 
     public void setShader(Shader shader) {
+        this.customShader = true;
         this.shader = shader;
-        renderObject.setAttributePointers(shader.positionAttributeHandle,
-                shader.textureAttributeHandle, shader.normalAttributeHandle,
-                shader.tangentAttributeHandle, shader.bitangentAttributeHandle);
-       // instanceStuff();
+        setVertexAttributeArrays();
     }
 
     public void setCamera(Camera camera) {
@@ -70,91 +136,213 @@ public class RenderBatch {
         this.lightGroup = lightGroup;
     }
 
+    /**
+     * Get the number of groups of objects. Each group is one draw call when the batch is rendered
+     * with an instanced shader.
+     *
+     * @return The number of groups
+     * @since 1.0
+     */
+    public int getGroupCount() {
+        return groups.size();
+    }
+
     public void render() {
-        shader.enable();
+        render(camera, lightGroup);
+    }
 
-        if (lightGroup != null) {
-            final DirectionalLight directionalLight = lightGroup.getDirectionalLight();
-            if (directionalLight != null) {
-                shader.setDirectionalLightUniforms(directionalLight);
-            }
+    /**
+     * Submit the batch to a render queue instead of rendering it straight away. The batch is drawn
+     * with the camera and lights of the queue when the queue is executed (falling back to the ones
+     * set on the batch).
+     *
+     * @param queue The render queue
+     * @see RenderQueue
+     * @since 1.0
+     */
+    public void submit(RenderQueue queue) {
+        queue.submit(RenderKey.opaque(queue.getLayer(), shader.getProgramId(), 0,
+                renderObject.vao, 0), this);
+    }
 
-            final ArrayList<PointLight> pointLights = lightGroup.getPointLights();
-            if (shader.validHandle(shader.getNumPointLightsUniformHandle())) {
-                glUniform1i(shader.getNumPointLightsUniformHandle(), pointLights.size());
-            }
+    /**
+     * Draw the batch as part of an executing render queue
+     *
+     * @param queue The render queue that is executing
+     * @since 1.0
+     */
+    @Override
+    public void draw(RenderQueue queue) {
+        render(queue.getCamera() != null ? queue.getCamera() : camera,
+                queue.getLightGroup() != null ? queue.getLightGroup() : lightGroup);
 
-            // Iterate through point lights, uploading each to the shader
-            for (int i = 0; i < pointLights.size() && i < shader.getMaxPointLights(); i++) {
-                final PointLight pointLight = pointLights.get(i);
-                shader.setPointLightUniforms(i, pointLight);
-            }
+        // Rendering enables and disables the shader itself
+        queue.invalidateState();
+    }
 
-            final ArrayList<SpotLight> spotLights = lightGroup.getSpotLights();
-            if (shader.validHandle(shader.getNumSpotLightsUniformHandle())) {
-                glUniform1i(shader.getNumSpotLightsUniformHandle(), spotLights.size());
-            }
+    private void render(Camera camera, LightGroup lightGroup) {
+        shader.enable();
 
-            // Iterate through spot lights, uploading each to the shader
-            for (int i = 0; i < spotLights.size() && i < shader.getMaxSpotLights(); i++) {
-                final SpotLight spotLight = spotLights.get(i);
-                shader.setSpotLightUniforms(i, spotLight);
-            }
-        }
+        shader.setLightUniforms(lightGroup);
 
         if (shader.validHandle(shader.getViewPositionUniformHandle())) {
             final Vec3 cameraPos = camera.getPosition();
-            glUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x, cameraPos.y,
+            shader.setUniform3f(shader.getViewPositionUniformHandle(), cameraPos.x, cameraPos.y,
                     cameraPos.z);
         }
 
         if (shader.validHandle(shader.getProjectionMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getProjectionMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    camera.getPerspectiveMatrix(),
-                    0);
+            shader.setUniformMatrix4(shader.getProjectionMatrixUniformHandle(),
+                    camera.getPerspectiveMatrix(), 0);
         }
 
         if (shader.validHandle(shader.getViewMatrixUniformHandle())) {
-            glUniformMatrix4fv(shader.getViewMatrixUniformHandle(),
-                    UNIFORM_UPLOAD_COUNT_SINGLE,
-                    false,
-                    camera.getViewMatrix(),
-                    0);
-        }
-
-        glBindVertexArray(renderObject.vao);
-     //   glDrawArraysInstanced(GL_TRIANGLES, 0, renderObject.vertexCount, batch.size());
-
-        for(ModelProperties properties : batch) {
-            if (shader.validHandle(shader.getModelMatrixUniformHandle())) {
-                glUniformMatrix4fv(shader.getModelMatrixUniformHandle(),
-                        UNIFORM_UPLOAD_COUNT_SINGLE,
-                        false,
-                        properties.getModelMatrix().getFloats(),
-                        0);
+            shader.setUniformMatrix4(shader.getViewMatrixUniformHandle(),
+                    camera.getViewMatrix(), 0);
+        }
+
+        // Another shader may have pointed the attributes of the mesh somewhere else
+        renderObject.bind(shader.positionAttributeHandle, shader.textureAttributeHandle,
+                shader.normalAttributeHandle, shader.tangentAttributeHandle,
+                shader.bitangentAttributeHandle);
+
+        if(!shader.validHandle(shader.modelMatrixAttributeHandle)) {
+            renderEach();
+            return;
+        }
+
+        regroupChangedMaterials();
+        for(int i = 0; i < groups.size(); i++) {
+            final Group group = groups.get(i);
+            group.instances.update();
+
+            // Set the material uniforms (the colour comes from the instances)
+            shader.setMaterialUniforms(group.material);
+
+            setInstanceAttributes(group.instances.getBuffer());
+            renderObject.drawInstanced(group.instances.size());
+        }
+    }
+
+    // Draw each object on its own, for shaders that do not have per-instance attributes
+    private void renderEach() {
+        for(int g = 0; g < groups.size(); g++) {
+            final InstanceBuffer instances = groups.get(g).instances;
+            for(int i = 0; i < instances.size(); i++) {
+                final ModelProperties properties = instances.get(i);
+                if (shader.validHandle(shader.getModelMatrixUniformHandle())) {
+                    shader.setUniformMatrix4(shader.getModelMatrixUniformHandle(),
+                            properties.getModelMatrix().getFloats(), 0);
+                }
+
+                // Set all material uniforms
+                shader.setMaterialUniforms(properties.material);
+
+                // Draw the vertex data with the specified render method (uses the index buffer if
+                // the mesh has one)
+                renderObject.draw();
+            }
+        }
+    }
+
+    // Move the objects whose material has been replaced or changed, so that it no longer matches
+    // the group, to another group. If the material of the group itself has changed, every object
+    // in the group is checked.
+    private void regroupChangedMaterials() {
+        for(int g = 0; g < groups.size(); g++) {
+            final Group group = groups.get(g);
+            final boolean checkAll = group.material.getVersion() != group.materialVersion;
+            group.materialVersion = group.material.getVersion();
+
+            // Go backwards because removing an object moves the last one in to its place
+            final InstanceBuffer instances = group.instances;
+            for(int i = instances.size() - 1; i >= 0; i--) {
+                if(!checkAll && !instances.hasMaterialChanged(i)) {
+                    continue;
+                }
+
+                final ModelProperties properties = instances.get(i);
+                if(!group.material.isInstanceCompatible(properties.material)) {
+                    instances.remove(properties);
+                    addToGroup(properties);
+                }
             }
 
-            // Set all material uniforms
-            shader.setMaterialUniforms(properties.material);
-
-            // Draw the vertex data with the specified render method
-            switch (renderObject.renderMethod) {
-                case POINTS:
-                    glDrawArrays(GL_POINTS, 0, renderObject.vertexCount);
-                    break;
-                case LINES:
-                    glDrawArrays(GL_LINES, 0, renderObject.vertexCount);
-                    break;
-                case TRIANGLES:
-                    glDrawArrays(GL_TRIANGLES, 0, renderObject.vertexCount);
-                    break;
+            if(instances.size() == 0) {
+                instances.destroy();
+                groups.remove(g);
+                g--;
             }
         }
-        glBindVertexArray(0);
+    }
+
+    // Add an object to the first group with a compatible material, or to a new group
+    private void addToGroup(ModelProperties modelProperties) {
+        Group group = null;
+        for(int i = 0; i < groups.size() && group == null; i++) {
+            if(groups.get(i).material.isInstanceCompatible(modelProperties.material)) {
+                group = groups.get(i);
+            }
+        }
+
+        if(group == null) {
+            group = new Group(modelProperties.material);
+            groups.add(group);
+        }
+
+        group.instances.add(modelProperties);
+        groupLookup.put(modelProperties, group);
+    }
+
+    // Point the model matrix and colour attributes of the mesh at an instance buffer. The VAO of
+    // the mesh must be bound.
+    private void setInstanceAttributes(int buffer) {
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+
+        final int h = shader.modelMatrixAttributeHandle;
+        for(int column = 0; column < 4; column++) {
+            glEnableVertexAttribArray(h + column);
+            glVertexAttribPointer(h + column, NUM_FLOATS_VEC4, GL_FLOAT, false,
+                    InstanceBuffer.STRIDE, InstanceBuffer.MATRIX_OFFSET +
+                            column * NUM_FLOATS_VEC4 * Mesh.BYTES_PER_FLOAT);
+            glVertexAttribDivisor(h + column, 1);
+        }
+
+        if(shader.validHandle(shader.colourAttributeHandle)) {
+            final int c = shader.colourAttributeHandle;
+            glEnableVertexAttribArray(c);
+            glVertexAttribPointer(c, InstanceBuffer.NUM_FLOATS_COLOUR, GL_FLOAT, false,
+                    InstanceBuffer.STRIDE, InstanceBuffer.COLOUR_OFFSET);
+            glVertexAttribDivisor(c, 1);
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    // Choose the instanced shader for the mesh, unless a custom shader has been set
+    private void determineShader() {
+        if(customShader) {
+            return;
+        }
 
-        glBindTexture(GL_TEXTURE_2D, 0);
-        shader.disable();
+        final boolean lighting = lightingSupport && renderObject.supportsLighting();
+        if(renderObject.supportsTexture()) {
+            shader = lighting ? new InstanceColourLightingTextureShader() :
+                    new InstanceColourTextureShader();
+        } else {
+            shader = lighting ? new InstanceColourLightingShader() : new InstanceColourShader();
+        }
+    }
+
+    // The mesh sets the pointers using the type of each attribute in its vertex layout
+    private void setVertexAttributeArrays() {
+        if(renderObject == null || shader == null) {
+            return;
+        }
+
+        renderObject.setAttributePointers(shader.positionAttributeHandle,
+                shader.textureAttributeHandle, shader.normalAttributeHandle,
+                shader.tangentAttributeHandle, shader.bitangentAttributeHandle);
+        GLStateCache.bindVertexArray(0);
     }
 }
@@ -0,0 +1,184 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+/**
+ * RenderKey packs the state of a draw in to a 64-bit sort key so that a render queue can order its
+ * draws with a single sort over primitive longs. Keys compare as unsigned numbers, most
+ * significant bits first:
+ * <p>
+ * Opaque draws:      layer (4) | 0 (1) | shader (12) | texture (12) | mesh (16) | depth (19)
+ * <p>
+ * Translucent draws: layer (4) | 1 (1) | inverted depth (19) | 0 (40)
+ * <p>
+ * Layers are drawn in order and the opaque draws of a layer are drawn before its translucent
+ * draws. Opaque draws are grouped by shader, then texture, then mesh to minimise state changes,
+ * and drawn front-to-back within a group so that hidden fragments are rejected by the depth test.
+ * Translucent draws must be blended back-to-front, so they are only ordered by depth. Their state
+ * is left out of the key so that draws at the same depth keep the order that they were submitted
+ * in (as long as the sort is stable), which is what 2D scenes rely on.
+ * <p>
+ * IDs and depths that do not fit in their fields are masked or clamped. Two different shaders,
+ * textures or meshes sharing a masked ID only cost an extra state change, never a wrong draw.
+ * The class consists of static only functions and has no OpenGL dependency.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RenderQueue
+ * @since 1.0
+ */
+public class RenderKey {
+    // The number of bits of each field
+    public static final int LAYER_BITS = 4;
+    public static final int SHADER_BITS = 12;
+    public static final int TEXTURE_BITS = 12;
+    public static final int MESH_BITS = 16;
+    public static final int DEPTH_BITS = 19;
+
+    // The number of layers that can be used
+    public static final int NUM_LAYERS = 1 << LAYER_BITS;
+
+    // The largest depth value that can be stored
+    public static final int MAX_DEPTH = (1 << DEPTH_BITS) - 1;
+
+    // The position of the lowest bit of each field
+    private static final int DEPTH_SHIFT = 0;
+    private static final int MESH_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int TEXTURE_SHIFT = MESH_SHIFT + MESH_BITS;
+    private static final int SHADER_SHIFT = TEXTURE_SHIFT + TEXTURE_BITS;
+    private static final int TRANSLUCENT_SHIFT = SHADER_SHIFT + SHADER_BITS;
+    private static final int LAYER_SHIFT = TRANSLUCENT_SHIFT + 1;
+
+    // Translucent draws store their depth just below the translucent bit
+    private static final int TRANSLUCENT_DEPTH_SHIFT = TRANSLUCENT_SHIFT - DEPTH_BITS;
+
+    /**
+     * Create the sort key of an opaque draw
+     *
+     * @param layer     The layer to draw in, lower layers are drawn first
+     * @param shaderId  The ID of the shader program
+     * @param textureId The ID of the texture, or 0 if there is no texture
+     * @param meshId    The ID of the mesh (e.g. its vertex array)
+     * @param depth     The quantised distance from the camera (see <code>quantiseDepth</code>)
+     * @return The sort key
+     * @since 1.0
+     */
+    public static long opaque(int layer, int shaderId, int textureId, int meshId, int depth) {
+        return layerBits(layer) |
+                field(shaderId, SHADER_BITS, SHADER_SHIFT) |
+                field(textureId, TEXTURE_BITS, TEXTURE_SHIFT) |
+                field(meshId, MESH_BITS, MESH_SHIFT) |
+                ((long)clampDepth(depth) << DEPTH_SHIFT);
+    }
+
+    /**
+     * Create the sort key of a translucent (blended) draw. Translucent draws are drawn after the
+     * opaque draws of their layer, furthest first.
+     *
+     * @param layer The layer to draw in, lower layers are drawn first
+     * @param depth The quantised distance from the camera (see <code>quantiseDepth</code>)
+     * @return The sort key
+     * @since 1.0
+     */
+    public static long translucent(int layer, int depth) {
+        return layerBits(layer) | (1L << TRANSLUCENT_SHIFT) |
+                ((long)(MAX_DEPTH - clampDepth(depth)) << TRANSLUCENT_DEPTH_SHIFT);
+    }
+
+    /**
+     * Quantise a distance from the camera to the depth stored in a key
+     *
+     * @param distance    The distance from the camera
+     * @param maxDistance The distance that maps to the largest depth (e.g. the far plane)
+     * @return The depth, from 0 (at the camera) to <code>MAX_DEPTH</code>
+     * @since 1.0
+     */
+    public static int quantiseDepth(float distance, float maxDistance) {
+        if(!(distance > 0.0f) || maxDistance <= 0.0f) {
+            return 0;
+        }
+        return distance >= maxDistance ? MAX_DEPTH : (int)((distance / maxDistance) * MAX_DEPTH);
+    }
+
+    /**
+     * Get the layer of a key
+     *
+     * @param key The sort key
+     * @return The layer
+     * @since 1.0
+     */
+    public static int getLayer(long key) {
+        return (int)(key >>> LAYER_SHIFT);
+    }
+
+    /**
+     * Check if a key is of a translucent draw
+     *
+     * @param key The sort key
+     * @return True if the draw is translucent, else false
+     * @since 1.0
+     */
+    public static boolean isTranslucent(long key) {
+        return ((key >>> TRANSLUCENT_SHIFT) & 1L) != 0;
+    }
+
+    /**
+     * Get the (masked) shader ID of an opaque key
+     *
+     * @param key The sort key
+     * @return The shader ID, or 0 for a translucent key
+     * @since 1.0
+     */
+    public static int getShader(long key) {
+        return isTranslucent(key) ? 0 : getField(key, SHADER_BITS, SHADER_SHIFT);
+    }
+
+    /**
+     * Get the (masked) texture ID of an opaque key
+     *
+     * @param key The sort key
+     * @return The texture ID, or 0 for a translucent key
+     * @since 1.0
+     */
+    public static int getTexture(long key) {
+        return isTranslucent(key) ? 0 : getField(key, TEXTURE_BITS, TEXTURE_SHIFT);
+    }
+
+    /**
+     * Get the (masked) mesh ID of an opaque key
+     *
+     * @param key The sort key
+     * @return The mesh ID, or 0 for a translucent key
+     * @since 1.0
+     */
+    public static int getMesh(long key) {
+        return isTranslucent(key) ? 0 : getField(key, MESH_BITS, MESH_SHIFT);
+    }
+
+    /**
+     * Get the depth of a key
+     *
+     * @param key The sort key
+     * @return The depth
+     * @since 1.0
+     */
+    public static int getDepth(long key) {
+        return isTranslucent(key) ?
+                MAX_DEPTH - getField(key, DEPTH_BITS, TRANSLUCENT_DEPTH_SHIFT) :
+                getField(key, DEPTH_BITS, DEPTH_SHIFT);
+    }
+
+    private static long layerBits(int layer) {
+        return (long)Math.max(0, Math.min(layer, NUM_LAYERS - 1)) << LAYER_SHIFT;
+    }
+
+    private static long field(int value, int bits, int shift) {
+        return ((long)value & ((1L << bits) - 1)) << shift;
+    }
+
+    private static int getField(long key, int bits, int shift) {
+        return (int)((key >>> shift) & ((1L << bits) - 1));
+    }
+
+    private static int clampDepth(int depth) {
+        return Math.max(0, Math.min(depth, MAX_DEPTH));
+    }
+}
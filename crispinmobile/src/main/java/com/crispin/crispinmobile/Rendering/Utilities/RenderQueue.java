@@ -0,0 +1,377 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import com.crispin.crispinmobile.Geometry.Vec3;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Shaders.Shader;
+import com.crispin.crispinmobile.Utilities.RadixSort;
+
+import java.util.Arrays;
+
+/**
+ * RenderQueue defers drawing so that the draws of a frame can be put in the order that needs the
+ * fewest state changes. Instead of rendering straight away, models, instance renderers and render
+ * batches submit a packet with a 64-bit sort key (see RenderKey) built from the current layer,
+ * whether they are translucent, their shader, texture, mesh and distance from the camera. When the
+ * queue is executed the keys are radix sorted and the packets are drawn in order: layer by layer,
+ * opaque draws grouped by state and front-to-back, then translucent draws back-to-front.
+ * <p>
+ * Whilst executing, the queue tracks the shader, material and mesh that are bound. A packet asks
+ * the queue to use its shader, material and mesh and only sets the uniforms or binds the objects
+ * that have changed since the previous packet. The program, vertex array and texture bindings are
+ * left as they are at the end of the queue, they go through GLStateCache like every draw.
+ * <p>
+ * A typical frame:
+ * <pre>
+ *     renderQueue.begin(camera, lightGroup);
+ *     model.submit(renderQueue);
+ *     instanceRenderer.submit(renderQueue);
+ *     renderQueue.setLayer(1);
+ *     overlay.submit(renderQueue);
+ *     renderQueue.execute();
+ * </pre>
+ * The queue does not enable or disable blending, that is still set by the scene.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RenderKey
+ * @since 1.0
+ */
+public class RenderQueue {
+    /**
+     * Something that can be drawn by a render queue
+     *
+     * @since 1.0
+     */
+    public interface Packet {
+        /**
+         * Draw using the camera, lights and state tracking of the queue. Packets that change the
+         * bound shader, material or mesh without going through the queue must call
+         * <code>invalidateState</code> afterwards.
+         *
+         * @param queue The queue that is executing
+         * @since 1.0
+         */
+        void draw(RenderQueue queue);
+    }
+
+    // The initial number of packets that there is space for
+    private static final int DEFAULT_CAPACITY = 256;
+
+    // The sort keys and the index of the packet of each key, with scratch space for the sort
+    private long[] keys;
+    private int[] order;
+    private long[] scratchKeys;
+    private int[] scratchOrder;
+
+    // The counts of each byte of the keys, used by the sort
+    private final int[] sortCounts;
+
+    // The packets in the order that they were submitted
+    private Packet[] packets;
+    private int count;
+
+    // The camera (3D or 2D) and lights of the current frame
+    private Camera camera;
+    private Camera2D camera2D;
+    private LightGroup lightGroup;
+
+    // The layer that packets are submitted to
+    private int layer;
+
+    // The state that is currently bound whilst executing
+    private Shader currentShader;
+    private Material currentMaterial;
+    private Mesh currentMesh;
+
+    // The number of state changes in the last execution
+    private int shaderChanges;
+    private int materialChanges;
+    private int meshChanges;
+
+    /**
+     * Create a render queue
+     *
+     * @since 1.0
+     */
+    public RenderQueue() {
+        keys = new long[DEFAULT_CAPACITY];
+        order = new int[DEFAULT_CAPACITY];
+        scratchKeys = new long[DEFAULT_CAPACITY];
+        scratchOrder = new int[DEFAULT_CAPACITY];
+        sortCounts = new int[RadixSort.COUNTS_LENGTH];
+        packets = new Packet[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Start a frame of 3D draws. Packets submitted until the queue is executed are drawn with the
+     * camera and lights.
+     *
+     * @param camera     The camera to draw with
+     * @param lightGroup The lights to draw with, or <code>null</code>
+     * @since 1.0
+     */
+    public void begin(Camera camera, LightGroup lightGroup) {
+        begin(lightGroup);
+        this.camera = camera;
+    }
+
+    /**
+     * Start a frame of 2D draws. Packets submitted until the queue is executed are drawn with the
+     * camera and lights.
+     *
+     * @param camera2D   The camera to draw with
+     * @param lightGroup The lights to draw with, or <code>null</code>
+     * @since 1.0
+     */
+    public void begin(Camera2D camera2D, LightGroup lightGroup) {
+        begin(lightGroup);
+        this.camera2D = camera2D;
+    }
+
+    /**
+     * Set the layer that packets are submitted to. Lower layers are drawn first. The layer is reset
+     * to 0 by <code>begin</code>.
+     *
+     * @param layer The layer, from 0 to <code>RenderKey.NUM_LAYERS - 1</code>
+     * @since 1.0
+     */
+    public void setLayer(int layer) {
+        this.layer = layer;
+    }
+
+    /**
+     * Get the layer that packets are submitted to
+     *
+     * @return The current layer
+     * @since 1.0
+     */
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * Submit a packet to be drawn when the queue is executed
+     *
+     * @param key    The sort key of the packet (see RenderKey)
+     * @param packet The packet
+     * @since 1.0
+     */
+    public void submit(long key, Packet packet) {
+        if(count == keys.length) {
+            final int capacity = count * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            order = Arrays.copyOf(order, capacity);
+            scratchKeys = new long[capacity];
+            scratchOrder = new int[capacity];
+            packets = Arrays.copyOf(packets, capacity);
+        }
+
+        keys[count] = key;
+        order[count] = count;
+        packets[count] = packet;
+        count++;
+    }
+
+    /**
+     * Get the quantised depth of a position for a sort key. For 3D frames this is the distance from
+     * the camera relative to its far plane. 2D frames have no depth, so their draws are ordered by
+     * layer and state only.
+     *
+     * @param x The x position
+     * @param y The y position
+     * @param z The z position
+     * @return The depth to use in a sort key
+     * @since 1.0
+     */
+    public int getDepth(float x, float y, float z) {
+        if(camera == null) {
+            return 0;
+        }
+
+        final Vec3 cameraPosition = camera.getPosition();
+        final float dx = x - cameraPosition.x;
+        final float dy = y - cameraPosition.y;
+        final float dz = z - cameraPosition.z;
+        return RenderKey.quantiseDepth((float)Math.sqrt(dx * dx + dy * dy + dz * dz),
+                camera.getFar());
+    }
+
+    /**
+     * Sort and draw the submitted packets, then clear the queue. Must be called on the GL thread.
+     *
+     * @since 1.0
+     */
+    public void execute() {
+        RadixSort.sort(keys, order, count, scratchKeys, scratchOrder, sortCounts);
+
+        invalidateState();
+        shaderChanges = 0;
+        materialChanges = 0;
+        meshChanges = 0;
+        for(int i = 0; i < count; i++) {
+            packets[order[i]].draw(this);
+        }
+
+        invalidateState();
+
+        // Drop the references to the packets so that they can be collected
+        Arrays.fill(packets, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * Use a shader for the following draws, enabling it if it is not already in use. Changing the
+     * shader also clears the material and mesh, as their uniforms and attribute pointers belong to
+     * the shader.
+     *
+     * @param shader The shader
+     * @return True if the shader changed and its camera and light uniforms need to be set, else
+     *         false
+     * @since 1.0
+     */
+    public boolean useShader(Shader shader) {
+        if(shader == currentShader) {
+            return false;
+        }
+
+        shader.enable();
+        currentShader = shader;
+        currentMaterial = null;
+        currentMesh = null;
+        shaderChanges++;
+        return true;
+    }
+
+    /**
+     * Use a material for the following draws
+     *
+     * @param material The material
+     * @return True if the material changed and its uniforms need to be set, else false
+     * @since 1.0
+     */
+    public boolean useMaterial(Material material) {
+        if(material == currentMaterial) {
+            return false;
+        }
+
+        currentMaterial = material;
+        materialChanges++;
+        return true;
+    }
+
+    /**
+     * Use a mesh for the following draws
+     *
+     * @param mesh The mesh
+     * @return True if the mesh changed and needs to be bound, else false
+     * @since 1.0
+     */
+    public boolean useMesh(Mesh mesh) {
+        if(mesh == currentMesh) {
+            return false;
+        }
+
+        currentMesh = mesh;
+        meshChanges++;
+        return true;
+    }
+
+    /**
+     * Forget the material that is in use, for example after a draw has changed material uniforms
+     * (such as the colour of a wireframe)
+     *
+     * @since 1.0
+     */
+    public void invalidateMaterial() {
+        currentMaterial = null;
+    }
+
+    /**
+     * Forget the shader, material and mesh that are in use so that the next packet sets all of its
+     * state. Used by packets that draw without going through the queue.
+     *
+     * @since 1.0
+     */
+    public void invalidateState() {
+        currentShader = null;
+        currentMaterial = null;
+        currentMesh = null;
+    }
+
+    /**
+     * Get the 3D camera of the frame
+     *
+     * @return The camera, or <code>null</code> if the frame is 2D
+     * @since 1.0
+     */
+    public Camera getCamera() {
+        return camera;
+    }
+
+    /**
+     * Get the 2D camera of the frame
+     *
+     * @return The camera, or <code>null</code> if the frame is 3D
+     * @since 1.0
+     */
+    public Camera2D getCamera2D() {
+        return camera2D;
+    }
+
+    /**
+     * Get the lights of the frame
+     *
+     * @return The lights, or <code>null</code>
+     * @since 1.0
+     */
+    public LightGroup getLightGroup() {
+        return lightGroup;
+    }
+
+    /**
+     * Get the number of packets that have been submitted since the queue was last executed
+     *
+     * @return The number of packets
+     * @since 1.0
+     */
+    public int getPacketCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of times that the shader changed in the last execution
+     *
+     * @return The number of shader changes
+     * @since 1.0
+     */
+    public int getShaderChangeCount() {
+        return shaderChanges;
+    }
+
+    /**
+     * Get the number of times that the material changed in the last execution
+     *
+     * @return The number of material changes
+     * @since 1.0
+     */
+    public int getMaterialChangeCount() {
+        return materialChanges;
+    }
+
+    /**
+     * Get the number of times that the mesh changed in the last execution
+     *
+     * @return The number of mesh changes
+     * @since 1.0
+     */
+    public int getMeshChangeCount() {
+        return meshChanges;
+    }
+
+    private void begin(LightGroup lightGroup) {
+        this.camera = null;
+        this.camera2D = null;
+        this.lightGroup = lightGroup;
+        this.layer = 0;
+    }
+}
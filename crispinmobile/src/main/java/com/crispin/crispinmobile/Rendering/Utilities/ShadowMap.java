@@ -8,12 +8,10 @@ import static android.opengl.GLES20.GL_TEXTURE_MAG_FILTER;
 import static android.opengl.GLES20.GL_TEXTURE_MIN_FILTER;
 import static android.opengl.GLES20.GL_UNSIGNED_BYTE;
 import static android.opengl.GLES20.glBindFramebuffer;
-import static android.opengl.GLES20.glBindTexture;
 import static android.opengl.GLES20.glFramebufferTexture2D;
 import static android.opengl.GLES20.glGenFramebuffers;
 import static android.opengl.GLES20.glGenTextures;
 import static android.opengl.GLES20.glTexParameteri;
-import static android.opengl.GLES20.glViewport;
 import static android.opengl.GLES30.GL_TEXTURE_2D_ARRAY;
 import static android.opengl.GLES30.glTexImage3D;
 
@@ -38,11 +36,11 @@ public class ShadowMap {
         for(int i = 0; i < MAX_SHADOW_MAPS; i++) {
             glBindFramebuffer(GL_FRAMEBUFFER, framebuffer[i]);
             glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D_ARRAY, fbTexture[0], 0);
-            glBindTexture(GL_TEXTURE_2D_ARRAY, fbTexture[0]);
+            GLStateCache.bindTexture(GL_TEXTURE_2D_ARRAY, fbTexture[0]);
             glTexImage3D(GL_TEXTURE_2D_ARRAY, i, GL_RGB, SHADOW_MAP_SIZE, SHADOW_MAP_SIZE, MAX_SHADOW_MAPS, 0, GL_RGB, GL_UNSIGNED_BYTE, null);
             glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
             glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-            glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+            GLStateCache.bindTexture(GL_TEXTURE_2D_ARRAY, 0);
         }
         glBindFramebuffer(GL_FRAMEBUFFER, 0);
     }
@@ -57,7 +55,7 @@ public class ShadowMap {
         }
 
         glBindFramebuffer(GL_FRAMEBUFFER, framebuffer[n]);
-        glViewport(0, 0, SHADOW_MAP_SIZE, SHADOW_MAP_SIZE);
+        GLStateCache.viewport(0, 0, SHADOW_MAP_SIZE, SHADOW_MAP_SIZE);
         GLES30.glFramebufferTextureLayer(GL_FRAMEBUFFER, GLES30.GL_COLOR_ATTACHMENT0, fbTexture[0], 0, n);
 
         // Todo: does this clear the entire display too? may need to just clear color attachment on framebuffer
@@ -69,6 +67,6 @@ public class ShadowMap {
         glBindFramebuffer(GL_FRAMEBUFFER, 0);
 
         // todo: set back to original?
-        glViewport(0, 0, Crispin.getSurfaceWidth(), Crispin.getSurfaceHeight());
+        GLStateCache.viewport(0, 0, Crispin.getSurfaceWidth(), Crispin.getSurfaceHeight());
     }
 }
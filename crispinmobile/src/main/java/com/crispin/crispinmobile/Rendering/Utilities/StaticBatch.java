@@ -0,0 +1,222 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import static android.opengl.GLES30.GL_TRIANGLES;
+
+import com.crispin.crispinmobile.Physics.BoundBox3D;
+import com.crispin.crispinmobile.Physics.BoundSphere;
+import com.crispin.crispinmobile.Rendering.Data.StaticBatchBuilder;
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
+import com.crispin.crispinmobile.Rendering.Models.Model;
+import com.crispin.crispinmobile.Utilities.Logger;
+
+import java.util.ArrayList;
+
+/**
+ * StaticBatch renders static geometry that has been merged by a <code>StaticBatchBuilder</code>.
+ * Each batch (one per material) is uploaded as one mesh and drawn with one draw call, instead of
+ * one draw call per piece. Pieces can still be hidden by their ID; the visible pieces of a batch
+ * are then drawn in as few index ranges as possible.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see StaticBatchBuilder
+ * @since 1.0
+ */
+public class StaticBatch {
+    // Tag used in logging output
+    private static final String TAG = "StaticBatch";
+
+    // A batch rendered as a model with an identity model matrix (the vertices are in world space)
+    private static class Part extends Model {
+        private final StaticBatchBuilder.Batch batch;
+        private final boolean[] visible;
+        private final int[] rangeFirst;
+        private final int[] rangeCount;
+        private int hiddenCount;
+        private int drawCalls;
+
+        Part(StaticBatchBuilder.Batch batch) {
+            super(createMesh(batch.vertexData), batch.material);
+            this.batch = batch;
+            this.visible = new boolean[batch.pieces.length];
+            this.rangeFirst = new int[batch.pieces.length];
+            this.rangeCount = new int[batch.pieces.length];
+            for(int i = 0; i < visible.length; i++) {
+                visible[i] = true;
+            }
+        }
+
+        void setVisible(int index, boolean state) {
+            if(visible[index] != state) {
+                visible[index] = state;
+                hiddenCount += state ? -1 : 1;
+            }
+        }
+
+        boolean isAnyVisible() {
+            return hiddenCount < visible.length;
+        }
+
+        @Override
+        protected void drawMesh() {
+            if(hiddenCount == 0) {
+                mesh.draw();
+                drawCalls++;
+                return;
+            }
+
+            final int ranges = batch.getDrawRanges(visible, rangeFirst, rangeCount);
+            for(int r = 0; r < ranges; r++) {
+                mesh.draw(GL_TRIANGLES, rangeFirst[r], rangeCount[r]);
+            }
+            drawCalls += ranges;
+        }
+    }
+
+    // The batch of each material
+    private final Part[] parts;
+
+    // The part and position in the part of each piece ID
+    private final int[] piecePart;
+    private final int[] pieceIndex;
+
+    // The number of draw calls made by the last render
+    private int drawCalls;
+
+    /**
+     * Construct a static batch from merged batches. Must be called on the GL thread.
+     *
+     * @param batches The merged batches
+     * @since 1.0
+     */
+    public StaticBatch(ArrayList<StaticBatchBuilder.Batch> batches) {
+        parts = new Part[batches.size()];
+        int pieceCount = 0;
+        for(int b = 0; b < batches.size(); b++) {
+            parts[b] = new Part(batches.get(b));
+            for(int piece : batches.get(b).pieces) {
+                pieceCount = Math.max(pieceCount, piece + 1);
+            }
+        }
+
+        piecePart = new int[pieceCount];
+        pieceIndex = new int[pieceCount];
+        for(int i = 0; i < pieceCount; i++) {
+            piecePart[i] = -1;
+        }
+        for(int b = 0; b < parts.length; b++) {
+            final int[] pieces = batches.get(b).pieces;
+            for(int p = 0; p < pieces.length; p++) {
+                piecePart[pieces[p]] = b;
+                pieceIndex[pieces[p]] = p;
+            }
+        }
+    }
+
+    /**
+     * Merge the pieces of a builder and construct a static batch from them. Must be called on the
+     * GL thread.
+     *
+     * @param builder The builder containing the pieces
+     * @since 1.0
+     */
+    public StaticBatch(StaticBatchBuilder builder) {
+        this(builder.build());
+    }
+
+    /**
+     * Show or hide a piece
+     *
+     * @param piece The ID of the piece returned when it was added to the builder
+     * @param state True to show the piece, false to hide it
+     * @since 1.0
+     */
+    public void setVisible(int piece, boolean state) {
+        if(piece < 0 || piece >= piecePart.length || piecePart[piece] == -1) {
+            Logger.error(TAG, "Piece " + piece + " is not in the batch");
+            return;
+        }
+        parts[piecePart[piece]].setVisible(pieceIndex[piece], state);
+    }
+
+    /**
+     * Check if a piece is visible
+     *
+     * @param piece The ID of the piece returned when it was added to the builder
+     * @return True if the piece is visible, else false
+     * @since 1.0
+     */
+    public boolean isVisible(int piece) {
+        return piece >= 0 && piece < piecePart.length && piecePart[piece] != -1 &&
+                parts[piecePart[piece]].visible[pieceIndex[piece]];
+    }
+
+    /**
+     * Get the number of meshes (one per material and vertex layout)
+     *
+     * @return The number of meshes
+     * @since 1.0
+     */
+    public int getMeshCount() {
+        return parts.length;
+    }
+
+    /**
+     * Get the mesh of a batch
+     *
+     * @param index The index of the batch
+     * @return The mesh of the batch
+     * @since 1.0
+     */
+    public Mesh getMesh(int index) {
+        return parts[index].mesh;
+    }
+
+    /**
+     * Get the number of draw calls made by the last render
+     *
+     * @return The number of draw calls
+     * @since 1.0
+     */
+    public int getDrawCallCount() {
+        return drawCalls;
+    }
+
+    public void render(Camera camera, LightGroup lightGroup) {
+        drawCalls = 0;
+        for(int i = 0; i < parts.length; i++) {
+            final Part part = parts[i];
+            if(part.isAnyVisible()) {
+                part.drawCalls = 0;
+                part.render(camera, lightGroup);
+                drawCalls += part.drawCalls;
+            }
+        }
+    }
+
+    public void render(Camera camera) {
+        render(camera, null);
+    }
+
+    /**
+     * Destroy the meshes of the batch
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        for(int i = 0; i < parts.length; i++) {
+            parts[i].mesh.destroy();
+        }
+    }
+
+    // Upload the merged vertex data with the bounds of the batch in world space
+    private static Mesh createMesh(VertexData vertexData) {
+        final Mesh mesh = new Mesh(vertexData, Mesh.RenderMethod.TRIANGLES);
+        final int elementsPerVertex = vertexData.getElementsPerVertex();
+        mesh.boundBox3D = BoundBox3D.create(vertexData.vertices, 0, elementsPerVertex,
+                vertexData.elementsPerPosition, vertexData.vertexCount);
+        mesh.boundSphere = BoundSphere.create(vertexData.vertices, 0, elementsPerVertex,
+                vertexData.elementsPerPosition, vertexData.vertexCount);
+        return mesh;
+    }
+}
@@ -0,0 +1,250 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Std140Writer writes values in to a byte buffer using the std140 layout rules of GLSL uniform
+ * blocks, so that the buffer can be uploaded to a uniform buffer object as it is. Each value is
+ * aligned to its base alignment before it is written:
+ * <ul>
+ *     <li>int and float: 4 bytes</li>
+ *     <li>vec2: 8 bytes</li>
+ *     <li>vec3 and vec4: 16 bytes (a vec3 only takes 12 bytes, so a float can follow it)</li>
+ *     <li>mat4: 16 bytes per column</li>
+ *     <li>structs and the elements of arrays of structs: 16 bytes, with the size of the struct
+ *     rounded up to 16 bytes</li>
+ * </ul>
+ * Writes are absolute, so the position and limit of the buffer are not changed, and the byte order
+ * of the buffer is used (it should be the native order). The writer does not allocate.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see LightUniformBuffer
+ * @since 1.0
+ */
+public class Std140Writer {
+    // The size of an int or float in bytes
+    private static final int SCALAR_SIZE = 4;
+
+    // The base alignment of vec3, vec4, matrix columns and structs
+    private static final int VEC4_ALIGNMENT = 16;
+
+    // The base alignment of vec2
+    private static final int VEC2_ALIGNMENT = 8;
+
+    // The number of values in a 4x4 matrix
+    private static final int MATRIX_SIZE = 16;
+
+    // The buffer to write to
+    private ByteBuffer buffer;
+
+    // The offset in bytes of the next write
+    private int offset;
+
+    /**
+     * Create a writer that writes to a buffer from the start
+     *
+     * @param buffer The buffer to write to
+     * @since 1.0
+     */
+    public Std140Writer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = 0;
+    }
+
+    /**
+     * Write to another buffer from the start
+     *
+     * @param buffer The buffer to write to
+     * @since 1.0
+     */
+    public void setBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.offset = 0;
+    }
+
+    /**
+     * Get the buffer that is written to
+     *
+     * @return The buffer
+     * @since 1.0
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Go back to the start of the buffer
+     *
+     * @since 1.0
+     */
+    public void reset() {
+        offset = 0;
+    }
+
+    /**
+     * Get the offset in bytes that the next value is written after (before it is aligned)
+     *
+     * @return The offset in bytes
+     * @since 1.0
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Move to an offset, for example the start of a member that is not written
+     *
+     * @param offset The offset in bytes
+     * @since 1.0
+     */
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Align the offset of the next value
+     *
+     * @param alignment The alignment in bytes (a power of two)
+     * @since 1.0
+     */
+    public void align(int alignment) {
+        offset = alignUp(offset, alignment);
+    }
+
+    /**
+     * Write an int
+     *
+     * @param x The value
+     * @since 1.0
+     */
+    public void putInt(int x) {
+        align(SCALAR_SIZE);
+        buffer.putInt(offset, x);
+        offset += SCALAR_SIZE;
+    }
+
+    /**
+     * Write a float
+     *
+     * @param x The value
+     * @since 1.0
+     */
+    public void putFloat(float x) {
+        align(SCALAR_SIZE);
+        buffer.putFloat(offset, x);
+        offset += SCALAR_SIZE;
+    }
+
+    /**
+     * Write a vec2
+     *
+     * @param x The x value
+     * @param y The y value
+     * @since 1.0
+     */
+    public void putVec2(float x, float y) {
+        align(VEC2_ALIGNMENT);
+        buffer.putFloat(offset, x);
+        buffer.putFloat(offset + SCALAR_SIZE, y);
+        offset += SCALAR_SIZE * 2;
+    }
+
+    /**
+     * Write a vec3. A vec3 is aligned like a vec4 but only takes 12 bytes.
+     *
+     * @param x The x value
+     * @param y The y value
+     * @param z The z value
+     * @since 1.0
+     */
+    public void putVec3(float x, float y, float z) {
+        align(VEC4_ALIGNMENT);
+        buffer.putFloat(offset, x);
+        buffer.putFloat(offset + SCALAR_SIZE, y);
+        buffer.putFloat(offset + SCALAR_SIZE * 2, z);
+        offset += SCALAR_SIZE * 3;
+    }
+
+    /**
+     * Write a vec4
+     *
+     * @param x The x value
+     * @param y The y value
+     * @param z The z value
+     * @param w The w value
+     * @since 1.0
+     */
+    public void putVec4(float x, float y, float z, float w) {
+        align(VEC4_ALIGNMENT);
+        buffer.putFloat(offset, x);
+        buffer.putFloat(offset + SCALAR_SIZE, y);
+        buffer.putFloat(offset + SCALAR_SIZE * 2, z);
+        buffer.putFloat(offset + SCALAR_SIZE * 3, w);
+        offset += SCALAR_SIZE * 4;
+    }
+
+    /**
+     * Write a mat4 (column major)
+     *
+     * @param matrix Array containing the matrix
+     * @param index  The index of the first value of the matrix in the array
+     * @since 1.0
+     */
+    public void putMat4(float[] matrix, int index) {
+        align(VEC4_ALIGNMENT);
+        for(int i = 0; i < MATRIX_SIZE; i++) {
+            buffer.putFloat(offset + i * SCALAR_SIZE, matrix[index + i]);
+        }
+        offset += MATRIX_SIZE * SCALAR_SIZE;
+    }
+
+    /**
+     * Start a struct (or an element of an array of structs)
+     *
+     * @since 1.0
+     */
+    public void beginStruct() {
+        align(VEC4_ALIGNMENT);
+    }
+
+    /**
+     * End a struct, padding it so that its size is a multiple of 16 bytes
+     *
+     * @since 1.0
+     */
+    public void endStruct() {
+        align(VEC4_ALIGNMENT);
+    }
+
+    /**
+     * Write zeros up to an offset, for example to clear the elements of an array that are not used
+     *
+     * @param end The offset in bytes to write zeros up to
+     * @since 1.0
+     */
+    public void zeroUntil(int end) {
+        while(offset < end && (offset & (SCALAR_SIZE * 2 - 1)) != 0) {
+            buffer.put(offset++, (byte)0);
+        }
+        while(offset + SCALAR_SIZE * 2 <= end) {
+            buffer.putLong(offset, 0L);
+            offset += SCALAR_SIZE * 2;
+        }
+        while(offset < end) {
+            buffer.put(offset++, (byte)0);
+        }
+    }
+
+    /**
+     * Round an offset up to an alignment
+     *
+     * @param offset    The offset in bytes
+     * @param alignment The alignment in bytes (a power of two)
+     * @return The aligned offset
+     * @since 1.0
+     */
+    public static int alignUp(int offset, int alignment) {
+        return (offset + alignment - 1) & -alignment;
+    }
+}
@@ -0,0 +1,386 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import static android.opengl.GLES30.GL_ARRAY_BUFFER;
+import static android.opengl.GLES30.GL_MAP_INVALIDATE_RANGE_BIT;
+import static android.opengl.GLES30.GL_MAP_UNSYNCHRONIZED_BIT;
+import static android.opengl.GLES30.GL_MAP_WRITE_BIT;
+import static android.opengl.GLES30.GL_STREAM_DRAW;
+import static android.opengl.GLES30.GL_SYNC_FLUSH_COMMANDS_BIT;
+import static android.opengl.GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static android.opengl.GLES30.GL_TIMEOUT_EXPIRED;
+import static android.opengl.GLES30.GL_WAIT_FAILED;
+
+import android.opengl.GLES30;
+
+import com.crispin.crispinmobile.Utilities.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * StreamingBuffer is a ring of regions in one OpenGL ES array buffer, for data that is written
+ * every frame (such as the model matrices of moving instances). Each write goes to the next region
+ * of the ring, which is mapped with glMapBufferRange using GL_MAP_UNSYNCHRONIZED_BIT and
+ * GL_MAP_INVALIDATE_RANGE_BIT. Without them, writing to a buffer that the GPU may still be reading
+ * makes the driver either wait for the GPU or allocate new storage for the buffer.
+ * <p>
+ * Because the mapping is unsynchronised, the buffer has to make sure that the GPU is finished with
+ * a region before it is written again. After the draw calls that read a region, a fence is placed
+ * with <code>fence()</code>. When the ring comes back around to the region, the fence is waited on
+ * (it has normally signalled long before with three or more regions, so the wait is free).
+ * <p>
+ * The position of each region in the buffer never changes (unless the regions have to grow), so
+ * users can set up their attribute pointers once for each region instead of on every write.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see InstanceRenderer#setStreaming(boolean)
+ * @since 1.0
+ */
+public class StreamingBuffer {
+    /**
+     * The OpenGL ES calls that the streaming buffer makes. Allows the buffer to be tested without
+     * an OpenGL ES context.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        int genBuffer();
+
+        void allocate(int buffer, int size);
+
+        ByteBuffer mapRange(int buffer, int offset, int length);
+
+        boolean unmap(int buffer);
+
+        long fenceSync();
+
+        int clientWaitSync(long sync, long timeout);
+
+        void deleteSync(long sync);
+
+        void deleteBuffer(int buffer);
+    }
+
+    // The backend that makes calls to OpenGL ES
+    private static class GLES30Backend implements Backend {
+        @Override
+        public int genBuffer() {
+            final int[] buffer = new int[1];
+            GLES30.glGenBuffers(1, buffer, 0);
+            return buffer[0];
+        }
+
+        @Override
+        public void allocate(int buffer, int size) {
+            GLES30.glBindBuffer(GL_ARRAY_BUFFER, buffer);
+            GLES30.glBufferData(GL_ARRAY_BUFFER, size, null, GL_STREAM_DRAW);
+        }
+
+        @Override
+        public ByteBuffer mapRange(int buffer, int offset, int length) {
+            GLES30.glBindBuffer(GL_ARRAY_BUFFER, buffer);
+            return (ByteBuffer)GLES30.glMapBufferRange(GL_ARRAY_BUFFER, offset, length,
+                    GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT);
+        }
+
+        @Override
+        public boolean unmap(int buffer) {
+            GLES30.glBindBuffer(GL_ARRAY_BUFFER, buffer);
+            final boolean result = GLES30.glUnmapBuffer(GL_ARRAY_BUFFER);
+            GLES30.glBindBuffer(GL_ARRAY_BUFFER, 0);
+            return result;
+        }
+
+        @Override
+        public long fenceSync() {
+            return GLES30.glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        }
+
+        @Override
+        public int clientWaitSync(long sync, long timeout) {
+            return GLES30.glClientWaitSync(sync, GL_SYNC_FLUSH_COMMANDS_BIT, timeout);
+        }
+
+        @Override
+        public void deleteSync(long sync) {
+            GLES30.glDeleteSync(sync);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            GLES30.glDeleteBuffers(1, new int[]{buffer}, 0);
+        }
+    }
+
+    private static final String TAG = "StreamingBuffer";
+
+    // The default number of regions, so the CPU can write one while the GPU reads the other two
+    public static final int DEFAULT_REGIONS = 3;
+
+    // Regions are a multiple of this size in bytes so that every region offset is aligned
+    private static final int REGION_ALIGNMENT = 256;
+
+    // How long to wait for a fence at a time in nanoseconds
+    private static final long WAIT_TIMEOUT_NS = 16000000L;
+
+    // Value of a region without a fence
+    private static final long NO_SYNC = 0L;
+
+    // Value of a buffer that has not been created
+    private static final int NO_BUFFER = 0;
+
+    private static Backend backend = new GLES30Backend();
+
+    // The number of writes that had to wait for the GPU in the current and last frame
+    private static int currentFrameWaits;
+    private static int frameWaits;
+
+    // The fence placed after the GPU commands that read each region
+    private final long[] fences;
+
+    private int bufferId;
+    private int regionSize;
+
+    // The region that was last written
+    private int region;
+
+    /**
+     * Create a streaming buffer. The OpenGL ES buffer is created when the first region size is
+     * reserved.
+     *
+     * @param regions The number of regions in the ring (at least two)
+     * @since 1.0
+     */
+    public StreamingBuffer(int regions) {
+        fences = new long[Math.max(2, regions)];
+        bufferId = NO_BUFFER;
+        region = fences.length - 1;
+    }
+
+    /**
+     * Create a streaming buffer with the default number of regions (triple buffering)
+     *
+     * @since 1.0
+     */
+    public StreamingBuffer() {
+        this(DEFAULT_REGIONS);
+    }
+
+    /**
+     * Make sure that each region can hold a number of bytes. If it cannot, the buffer is allocated
+     * again with larger regions (at least double the size), which moves every region.
+     *
+     * @param bytes The number of bytes that each region must be able to hold
+     * @return <code>true</code> if the buffer was allocated and the region offsets have changed,
+     *         else <code>false</code>
+     * @since 1.0
+     */
+    public boolean reserve(int bytes) {
+        if(bufferId != NO_BUFFER && bytes <= regionSize) {
+            return false;
+        }
+
+        if(bufferId == NO_BUFFER) {
+            bufferId = backend.genBuffer();
+        }
+
+        // The old storage is kept by the driver until the GPU has finished reading it, so the
+        // fences are no longer needed
+        deleteFences();
+        final int size = Math.max(Math.max(bytes, regionSize * 2), REGION_ALIGNMENT);
+        regionSize = (size + REGION_ALIGNMENT - 1) & -REGION_ALIGNMENT;
+        backend.allocate(bufferId, regionSize * fences.length);
+        return true;
+    }
+
+    /**
+     * Map the next region of the ring for writing. If the GPU may still be reading the region, the
+     * fence placed after it was last drawn is waited on first. The region must be unmapped before
+     * it is drawn.
+     *
+     * @param bytes The number of bytes to write (no more than the reserved region size)
+     * @return Buffer in native byte order that writes to the region, or <code>null</code> if the
+     *         region could not be mapped (the current region does not change)
+     * @since 1.0
+     */
+    public ByteBuffer map(int bytes) {
+        final int next = (region + 1) % fences.length;
+        waitForRegion(next);
+
+        final ByteBuffer mapped = backend.mapRange(bufferId, next * regionSize, bytes);
+        if(mapped == null) {
+            Logger.error(TAG, "Failed to map region " + next + " of the streaming buffer");
+            return null;
+        }
+
+        region = next;
+        return mapped.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Finish writing to the mapped region
+     *
+     * @since 1.0
+     */
+    public void unmap() {
+        if(!backend.unmap(bufferId)) {
+            Logger.error(TAG, "The contents of the streaming buffer were lost while mapped");
+        }
+    }
+
+    /**
+     * Place a fence after the commands that read the current region. Call after the draw calls
+     * that use the region.
+     *
+     * @since 1.0
+     */
+    public void fence() {
+        if(fences[region] != NO_SYNC) {
+            backend.deleteSync(fences[region]);
+        }
+        fences[region] = backend.fenceSync();
+    }
+
+    /**
+     * Get the region that was last written
+     *
+     * @return The index of the region
+     * @since 1.0
+     */
+    public int getRegion() {
+        return region;
+    }
+
+    /**
+     * Get the number of regions in the ring
+     *
+     * @return The number of regions
+     * @since 1.0
+     */
+    public int getRegionCount() {
+        return fences.length;
+    }
+
+    /**
+     * Get the offset of a region in the buffer
+     *
+     * @param region The index of the region
+     * @return The offset in bytes
+     * @since 1.0
+     */
+    public int getRegionOffset(int region) {
+        return region * regionSize;
+    }
+
+    /**
+     * Get the size of each region
+     *
+     * @return The size of a region in bytes
+     * @since 1.0
+     */
+    public int getRegionSize() {
+        return regionSize;
+    }
+
+    /**
+     * Get the OpenGL ES buffer
+     *
+     * @return The ID of the OpenGL ES buffer
+     * @since 1.0
+     */
+    public int getBuffer() {
+        return bufferId;
+    }
+
+    /**
+     * Delete the fences and the OpenGL ES buffer
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        deleteFences();
+        if(bufferId != NO_BUFFER) {
+            backend.deleteBuffer(bufferId);
+            bufferId = NO_BUFFER;
+        }
+        regionSize = 0;
+    }
+
+    /**
+     * Set the backend that makes the OpenGL ES calls. Intended for unit tests that run without an
+     * OpenGL ES context.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        StreamingBuffer.backend = backend;
+    }
+
+    /**
+     * Record the number of writes that waited for the GPU in the frame that has finished. Called
+     * by the scene manager after each frame.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        frameWaits = currentFrameWaits;
+        currentFrameWaits = 0;
+    }
+
+    /**
+     * Get the number of writes that had to wait for the GPU in the last frame. If this is often
+     * above zero, the ring needs more regions.
+     *
+     * @return The number of writes that waited in the last frame
+     * @since 1.0
+     */
+    public static int getFrameWaitCount() {
+        return frameWaits;
+    }
+
+    /**
+     * Get the number of writes that had to wait for the GPU in the current frame
+     *
+     * @return The number of writes that waited in the current frame
+     * @since 1.0
+     */
+    public static int getWaitCount() {
+        return currentFrameWaits;
+    }
+
+    // Wait until the GPU has finished the commands that read a region
+    private void waitForRegion(int index) {
+        final long sync = fences[index];
+        if(sync == NO_SYNC) {
+            return;
+        }
+
+        // Check without waiting first so that only real waits are counted
+        int status = backend.clientWaitSync(sync, 0);
+        if(status == GL_TIMEOUT_EXPIRED) {
+            currentFrameWaits++;
+            do {
+                status = backend.clientWaitSync(sync, WAIT_TIMEOUT_NS);
+            } while(status == GL_TIMEOUT_EXPIRED);
+        }
+
+        if(status == GL_WAIT_FAILED) {
+            Logger.error(TAG, "Failed to wait for a streaming buffer fence");
+        }
+
+        backend.deleteSync(sync);
+        fences[index] = NO_SYNC;
+    }
+
+    // Delete the fences of all of the regions
+    private void deleteFences() {
+        for(int i = 0; i < fences.length; i++) {
+            if(fences[i] != NO_SYNC) {
+                backend.deleteSync(fences[i]);
+                fences[i] = NO_SYNC;
+            }
+        }
+    }
+}
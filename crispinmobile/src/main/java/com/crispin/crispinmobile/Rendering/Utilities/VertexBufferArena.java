@@ -0,0 +1,297 @@
+package com.crispin.crispinmobile.Rendering.Utilities;
+
+import static android.opengl.GLES30.GL_ARRAY_BUFFER;
+import static android.opengl.GLES30.GL_COPY_READ_BUFFER;
+import static android.opengl.GLES30.GL_COPY_WRITE_BUFFER;
+import static android.opengl.GLES30.GL_STATIC_DRAW;
+import static android.opengl.GLES30.glBindBuffer;
+import static android.opengl.GLES30.glBufferData;
+import static android.opengl.GLES30.glCopyBufferSubData;
+import static android.opengl.GLES30.glDeleteBuffers;
+import static android.opengl.GLES30.glGenBuffers;
+
+import com.crispin.crispinmobile.Utilities.Logger;
+import com.crispin.crispinmobile.Utilities.RangeAllocator;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * VertexBufferArena stores the vertices of small meshes (e.g. squares, cubes and the characters
+ * of text) in a few large shared vertex buffers instead of one vertex buffer per mesh. There is a
+ * list of blocks for each vertex format (stride), each block being one vertex buffer with space
+ * for <code>BLOCK_BYTES</code> of vertices. A mesh is given a range of vertices in a block and
+ * draws from its base vertex, its vertex array still points at the start of the shared buffer.
+ * <p>
+ * Only meshes without an index buffer of at most <code>MAX_MESH_BYTES</code> are stored in the
+ * arena because OpenGL ES 3.0 has no way to offset the indices of an indexed draw by a base
+ * vertex. Freed ranges are merged and reused. If no block has a free range that fits a mesh but a
+ * block has enough free space in total, that block is compacted: the live ranges are copied to
+ * the start of the buffer on the GPU and the base vertex of each moved mesh is updated. Blocks
+ * that become empty are deleted as long as another block of the same format exists.
+ * <p>
+ * The arena must only be used from the GL thread. The class consists of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see RangeAllocator
+ * @see Mesh
+ * @since 1.0
+ */
+public class VertexBufferArena {
+    // Tag used in logging output
+    private static final String TAG = "VertexBufferArena";
+
+    // The size of the vertex buffer of each block in bytes
+    public static final int BLOCK_BYTES = 256 * 1024;
+
+    // The largest mesh (vertex data in bytes) that is stored in the arena
+    public static final int MAX_MESH_BYTES = 16 * 1024;
+
+    // Blocks are compacted by compact() if their free space is more fragmented than this
+    public static final float COMPACT_FRAGMENTATION = 0.5f;
+
+    // A shared vertex buffer and the ranges allocated in it (in vertices)
+    static class Block {
+        final int stride;
+        final RangeAllocator allocator;
+
+        // The mesh at the base vertex of each allocated range
+        final HashMap<Integer, Mesh> meshes;
+
+        int vbo;
+
+        // False once the OpenGL context that the buffer was created in has been lost
+        boolean valid;
+
+        Block(int stride) {
+            this.stride = stride;
+            this.allocator = new RangeAllocator(BLOCK_BYTES / stride);
+            this.meshes = new HashMap<>();
+            this.valid = true;
+
+            final Mesh.Backend backend = Mesh.getBackend();
+            vbo = backend.genBuffer();
+            backend.bindBuffer(GL_ARRAY_BUFFER, vbo);
+            backend.bufferData(GL_ARRAY_BUFFER, allocator.getCapacity() * stride, null);
+        }
+    }
+
+    // The blocks of each vertex format, keyed by stride
+    private static final HashMap<Integer, ArrayList<Block>> blocks = new HashMap<>();
+
+    /**
+     * Store the vertices of a mesh in the arena if it is small enough. On success the mesh's
+     * vertex buffer and base vertex are set to its range in a shared buffer. Called by the mesh
+     * when it creates its OpenGL objects.
+     *
+     * @param mesh           The mesh, with its stride and vertex count set
+     * @param vertexData     Buffer containing the vertex data
+     * @param vertexDataSize The size of the vertex data in bytes
+     * @return True if the vertices were stored in the arena, false if the mesh needs its own
+     *         vertex buffer
+     * @since 1.0
+     */
+    static boolean allocate(Mesh mesh, Buffer vertexData, int vertexDataSize) {
+        if(mesh.stride <= 0 || mesh.vertexCount == 0 || vertexDataSize > MAX_MESH_BYTES) {
+            return false;
+        }
+
+        ArrayList<Block> formatBlocks = blocks.get(mesh.stride);
+        if(formatBlocks == null) {
+            formatBlocks = new ArrayList<>();
+            blocks.put(mesh.stride, formatBlocks);
+        }
+
+        // Try the free ranges of the existing blocks first
+        Block block = null;
+        int baseVertex = RangeAllocator.INVALID_OFFSET;
+        for(int i = 0; i < formatBlocks.size() && block == null; i++) {
+            baseVertex = formatBlocks.get(i).allocator.allocate(mesh.vertexCount);
+            if(baseVertex != RangeAllocator.INVALID_OFFSET) {
+                block = formatBlocks.get(i);
+            }
+        }
+
+        // Then a block that only has room once its ranges have been compacted
+        for(int i = 0; i < formatBlocks.size() && block == null; i++) {
+            if(formatBlocks.get(i).allocator.getFree() >= mesh.vertexCount) {
+                compact(formatBlocks.get(i));
+                baseVertex = formatBlocks.get(i).allocator.allocate(mesh.vertexCount);
+                block = formatBlocks.get(i);
+            }
+        }
+
+        if(block == null) {
+            block = new Block(mesh.stride);
+            formatBlocks.add(block);
+            baseVertex = block.allocator.allocate(mesh.vertexCount);
+            Logger.debug(TAG, "Created block " + formatBlocks.size() + " for stride " +
+                    mesh.stride);
+        }
+
+        final Mesh.Backend backend = Mesh.getBackend();
+        backend.bindBuffer(GL_ARRAY_BUFFER, block.vbo);
+        backend.bufferSubData(GL_ARRAY_BUFFER, baseVertex * block.stride, vertexDataSize,
+                vertexData);
+
+        block.meshes.put(baseVertex, mesh);
+        mesh.arenaBlock = block;
+        mesh.vbo = block.vbo;
+        mesh.baseVertex = baseVertex;
+        return true;
+    }
+
+    /**
+     * Free the range of a mesh that is stored in the arena. Called by the mesh when it is
+     * destroyed.
+     *
+     * @param mesh The mesh
+     * @since 1.0
+     */
+    static void free(Mesh mesh) {
+        final Block block = mesh.arenaBlock;
+        mesh.arenaBlock = null;
+        if(block == null || !block.valid) {
+            return;
+        }
+
+        block.meshes.remove(mesh.baseVertex);
+        block.allocator.free(mesh.baseVertex);
+
+        // Delete empty blocks, keeping one per format so that it is not recreated straight away
+        final ArrayList<Block> formatBlocks = blocks.get(block.stride);
+        if(block.allocator.getAllocationCount() == 0 && formatBlocks.size() > 1) {
+            formatBlocks.remove(block);
+            Mesh.getBackend().deleteBuffer(block.vbo);
+            block.vbo = 0;
+        }
+    }
+
+    /**
+     * Compact the blocks whose free space is more fragmented than
+     * <code>COMPACT_FRAGMENTATION</code>, for example after a level has been unloaded. Fragmented
+     * blocks are also compacted when a mesh does not fit otherwise, so this is only needed to
+     * compact at a convenient time (e.g. during a loading screen).
+     *
+     * @since 1.0
+     */
+    public static void compact() {
+        for(ArrayList<Block> formatBlocks : blocks.values()) {
+            for(int i = 0; i < formatBlocks.size(); i++) {
+                final Block block = formatBlocks.get(i);
+                if(block.allocator.getFragmentation() > COMPACT_FRAGMENTATION) {
+                    compact(block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget every block without deleting their buffers. Called when the OpenGL context has been
+     * lost, the buffers no longer exist and the meshes that used them must be recreated.
+     *
+     * @since 1.0
+     */
+    public static void invalidateAll() {
+        for(ArrayList<Block> formatBlocks : blocks.values()) {
+            for(int i = 0; i < formatBlocks.size(); i++) {
+                formatBlocks.get(i).valid = false;
+            }
+        }
+        blocks.clear();
+    }
+
+    /**
+     * Get the number of shared vertex buffers
+     *
+     * @return The number of blocks
+     * @since 1.0
+     */
+    public static int getBlockCount() {
+        int count = 0;
+        for(ArrayList<Block> formatBlocks : blocks.values()) {
+            count += formatBlocks.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of meshes stored in the arena
+     *
+     * @return The number of meshes
+     * @since 1.0
+     */
+    public static int getMeshCount() {
+        int count = 0;
+        for(ArrayList<Block> formatBlocks : blocks.values()) {
+            for(int i = 0; i < formatBlocks.size(); i++) {
+                count += formatBlocks.get(i).meshes.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of bytes of the shared vertex buffers that are used by meshes
+     *
+     * @return The used size in bytes
+     * @since 1.0
+     */
+    public static int getUsedBytes() {
+        int used = 0;
+        for(ArrayList<Block> formatBlocks : blocks.values()) {
+            for(int i = 0; i < formatBlocks.size(); i++) {
+                final Block block = formatBlocks.get(i);
+                used += block.allocator.getUsed() * block.stride;
+            }
+        }
+        return used;
+    }
+
+    // Pack the ranges of a block to the start of its buffer. The ranges are packed in to a
+    // temporary buffer and copied back in one go, because a range can overlap its new position and
+    // copies within a buffer must not overlap.
+    private static void compact(Block block) {
+        final int[] moves = block.allocator.compact();
+        if(moves.length == 0) {
+            return;
+        }
+
+        // The ranges that did not move already sit in their packed positions at the start of the
+        // buffer, so only the bytes from the first moved range onwards are copied
+        final int start = moves[1] * block.stride;
+        final int size = block.allocator.getUsed() * block.stride - start;
+
+        int[] tempTemp = new int[1];
+        glGenBuffers(1, tempTemp, 0);
+        final int temp = tempTemp[0];
+        glBindBuffer(GL_COPY_WRITE_BUFFER, temp);
+        glBufferData(GL_COPY_WRITE_BUFFER, size, null, GL_STATIC_DRAW);
+
+        glBindBuffer(GL_COPY_READ_BUFFER, block.vbo);
+        final HashMap<Integer, Mesh> moved = new HashMap<>();
+        for(int i = 0; i < moves.length; i += 3) {
+            glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER,
+                    moves[i] * block.stride, moves[i + 1] * block.stride - start,
+                    moves[i + 2] * block.stride);
+
+            final Mesh mesh = block.meshes.remove(moves[i]);
+            mesh.baseVertex = moves[i + 1];
+            moved.put(moves[i + 1], mesh);
+        }
+        block.meshes.putAll(moved);
+
+        glBindBuffer(GL_COPY_READ_BUFFER, temp);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, block.vbo);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, start, size);
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+
+        int[] buffers = {temp};
+        glDeleteBuffers(1, buffers, 0);
+        Logger.debug(TAG, "Compacted block for stride " + block.stride + ", moved " +
+                (moves.length / 3) + " meshes");
+    }
+}
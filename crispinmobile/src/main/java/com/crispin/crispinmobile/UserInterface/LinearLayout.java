@@ -1,13 +1,12 @@
 package com.crispin.crispinmobile.UserInterface;
 
 import static android.opengl.GLES20.GL_DEPTH_TEST;
-import static android.opengl.GLES20.glDisable;
-import static android.opengl.GLES20.glEnable;
 
 import com.crispin.crispinmobile.Geometry.Scale2D;
 import com.crispin.crispinmobile.Geometry.Vec2;
 import com.crispin.crispinmobile.Rendering.Data.Colour;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 
 import java.util.ArrayList;
 
@@ -263,7 +262,7 @@ public class LinearLayout extends Plane {
 
     @Override
     public void draw(Camera2D camera) {
-        glDisable(GL_DEPTH_TEST);
+        GLStateCache.disable(GL_DEPTH_TEST);
 
         if (showBackground) {
             super.draw(camera);
@@ -274,7 +273,7 @@ public class LinearLayout extends Plane {
             uiObjects.get(i).draw(camera);
         }
 
-        glEnable(GL_DEPTH_TEST);
+        GLStateCache.enable(GL_DEPTH_TEST);
     }
 
     public enum Orientation {
@@ -2,7 +2,6 @@ package com.crispin.crispinmobile.UserInterface;
 
 import static android.opengl.GLES20.GL_DEPTH_TEST;
 
-import android.opengl.GLES30;
 
 import com.crispin.crispinmobile.Geometry.Scale2D;
 import com.crispin.crispinmobile.Geometry.Vec2;
@@ -10,6 +9,7 @@ import com.crispin.crispinmobile.Rendering.Data.Colour;
 import com.crispin.crispinmobile.Rendering.Models.Square;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
 import com.crispin.crispinmobile.Rendering.Data.Texture;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 import com.crispin.crispinmobile.Utilities.TextureCache;
 
 public class Plane implements UIElement {
@@ -328,9 +328,9 @@ public class Plane implements UIElement {
     @Override
     public void draw(Camera2D camera) {
         // Check if depth is enabled, and disable it
-        final boolean DEPTH_ENABLED = GLES30.glIsEnabled(GL_DEPTH_TEST);
+        final boolean DEPTH_ENABLED = GLStateCache.isEnabled(GL_DEPTH_TEST);
         if(DEPTH_ENABLED) {
-            GLES30.glDisable(GL_DEPTH_TEST);
+            GLStateCache.disable(GL_DEPTH_TEST);
         }
 
         if (borderEnabled) {
@@ -340,7 +340,7 @@ public class Plane implements UIElement {
 
         // If depth was enabled before this call, re-enable
         if(DEPTH_ENABLED) {
-            GLES30.glEnable(GL_DEPTH_TEST);
+            GLStateCache.enable(GL_DEPTH_TEST);
         }
     }
 }
@@ -1,9 +1,7 @@
 package com.crispin.crispinmobile.UserInterface;
 
 import static android.opengl.GLES20.GL_DEPTH_TEST;
-import static android.opengl.GLES20.glEnable;
 
-import android.opengl.GLES30;
 
 import com.crispin.crispinmobile.Geometry.Geometry;
 import com.crispin.crispinmobile.Geometry.Scale2D;
@@ -16,6 +14,7 @@ import com.crispin.crispinmobile.Rendering.Shaders.Shader;
 import com.crispin.crispinmobile.Rendering.Shaders.TextShader;
 import com.crispin.crispinmobile.Rendering.Utilities.Camera2D;
 import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
 import com.crispin.crispinmobile.Utilities.Logger;
 import com.crispin.crispinmobile.Utilities.ShaderCache;
 
@@ -402,7 +401,6 @@ public class Text implements UIElement {
             }
         }
 
-        squares = new ArrayList<>();
         float theY = 0.0f;
 
         // Iterate through the lines (starting from the end of the array). Add each line
@@ -519,7 +517,6 @@ public class Text implements UIElement {
             lines.add(currentLine);
         }
 
-        squares = new ArrayList<>();
         float cursorY = 0.0f;
 
         // Iterate through the lines, creating characters that can be rendered (iterate from the end
@@ -712,7 +709,7 @@ public class Text implements UIElement {
 
         width = 0.0f;
 
-        squares.clear();
+        destroySquares();
 
         float spaceLeft = maxLineWidth;
         String[] words = textString.split("\\s+");
@@ -923,9 +920,9 @@ public class Text implements UIElement {
     @Override
     public void draw(Camera2D camera) {
         // Check if depth is enabled, and disable it
-        final boolean DEPTH_ENABLED = GLES30.glIsEnabled(GL_DEPTH_TEST);
+        final boolean DEPTH_ENABLED = GLStateCache.isEnabled(GL_DEPTH_TEST);
         if(DEPTH_ENABLED) {
-            GLES30.glDisable(GL_DEPTH_TEST);
+            GLStateCache.disable(GL_DEPTH_TEST);
         }
 
         // If show bounds is enabled, render the boundary
@@ -959,8 +956,26 @@ public class Text implements UIElement {
 
         // If depth was enabled before calling the function then re-enable it
         if (DEPTH_ENABLED) {
-            glEnable(GL_DEPTH_TEST);
+            GLStateCache.enable(GL_DEPTH_TEST);
+        }
+    }
+
+    /**
+     * Destroy the text. Releases the shared meshes of the character squares. The text must not be
+     * drawn afterwards.
+     *
+     * @since 1.0
+     */
+    public void destroy() {
+        destroySquares();
+    }
+
+    // Release the shared meshes of the character squares and remove them
+    private void destroySquares() {
+        for (int i = 0; i < squares.size(); i++) {
+            squares.get(i).destroy();
         }
+        squares.clear();
     }
 
     // Speed of the wiggle motion
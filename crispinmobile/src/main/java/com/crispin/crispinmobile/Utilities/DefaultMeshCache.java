@@ -0,0 +1,181 @@
+package com.crispin.crispinmobile.Utilities;
+
+import com.crispin.crispinmobile.Rendering.DefaultMesh.CubeMesh;
+import com.crispin.crispinmobile.Rendering.DefaultMesh.SquareMesh;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Share the meshes of the default shapes (squares, cubes and the square shadow) between every
+ * model that uses them. Each variant (e.g. a square with or without texels) is uploaded to
+ * graphics memory once per OpenGL ES context, so a square, a UI plane or a character of text only
+ * holds its own transform and material instead of its own copy of the vertices.
+ * <p>
+ * Each get adds a reference to the mesh and <code>release</code> removes one, which is done when
+ * a square or cube is destroyed. Once a new scene has been constructed the meshes without
+ * references are destroyed. A model that is never destroyed keeps its reference, so its mesh is
+ * kept rather than destroyed from under it. The meshes are shared, so they must not be destroyed
+ * or modified by the models that use them. The class consists of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see OBJModelCache
+ * @see SceneManager
+ * @since 1.0
+ */
+public class DefaultMeshCache {
+    // Tag used in logging output
+    private static final String TAG = "DefaultMeshCache";
+
+    // Keys of the shapes, combined with the flags of the vertex data they have
+    private static final int SQUARE = 0;
+    private static final int CUBE = 1;
+    private static final int SQUARE_SHADOW = 2;
+    private static final int TEXELS = 4;
+    private static final int NORMALS = 8;
+
+    // A shared mesh and the number of references to it
+    private static class Entry {
+        final Mesh mesh;
+        int references;
+
+        Entry(Mesh mesh) {
+            this.mesh = mesh;
+        }
+    }
+
+    // The meshes that have been created in the current context
+    private static final HashMap<Integer, Entry> meshes = new HashMap<>();
+
+    /**
+     * Get the shared mesh of a square
+     *
+     * @param texels True to get the square with texel data, else false
+     * @return The shared square mesh
+     * @see SquareMesh
+     * @since 1.0
+     */
+    public static synchronized Mesh getSquare(boolean texels) {
+        final int key = SQUARE | (texels ? TEXELS : 0);
+        Entry entry = meshes.get(key);
+        if(entry == null) {
+            entry = add(key, new SquareMesh(texels));
+        }
+        entry.references++;
+        return entry.mesh;
+    }
+
+    /**
+     * Get the shared mesh of a cube
+     *
+     * @param texels  True to get the cube with texel data, else false
+     * @param normals True to get the cube with normal data, else false
+     * @return The shared cube mesh
+     * @see CubeMesh
+     * @since 1.0
+     */
+    public static synchronized Mesh getCube(boolean texels, boolean normals) {
+        final int key = CUBE | (texels ? TEXELS : 0) | (normals ? NORMALS : 0);
+        Entry entry = meshes.get(key);
+        if(entry == null) {
+            entry = add(key, new CubeMesh(texels, normals));
+        }
+        entry.references++;
+        return entry.mesh;
+    }
+
+    /**
+     * Get the shared 2D shadow mesh of a square
+     *
+     * @return The shared square shadow mesh
+     * @since 1.0
+     */
+    public static synchronized Mesh getSquareShadow() {
+        Entry entry = meshes.get(SQUARE_SHADOW);
+        if(entry == null) {
+            entry = add(SQUARE_SHADOW, SquareMesh.createShadowMesh());
+        }
+        entry.references++;
+        return entry.mesh;
+    }
+
+    /**
+     * Remove a reference from a shared mesh. The mesh is destroyed once it has no references when
+     * the cache is next trimmed.
+     *
+     * @param mesh The shared mesh
+     * @since 1.0
+     */
+    public static synchronized void release(Mesh mesh) {
+        for(Entry entry : meshes.values()) {
+            if(entry.mesh == mesh) {
+                if(entry.references == 0) {
+                    break;
+                }
+                entry.references--;
+                return;
+            }
+        }
+        Logger.error(TAG, "Failed to release mesh, it is not a referenced default mesh");
+    }
+
+    /**
+     * Get the number of shared meshes
+     *
+     * @return The number of meshes in the cache
+     * @since 1.0
+     */
+    public static synchronized int getMeshCount() {
+        return meshes.size();
+    }
+
+    /**
+     * Get the number of references to the shared meshes
+     *
+     * @return The total number of references
+     * @since 1.0
+     */
+    public static synchronized int getReferenceCount() {
+        int references = 0;
+        for(Entry entry : meshes.values()) {
+            references += entry.references;
+        }
+        return references;
+    }
+
+    /**
+     * Destroy the meshes that have no references. Called by the SceneManager once a new scene has
+     * been constructed so that the meshes it shares with the previous scene are not rebuilt.
+     *
+     * @since 1.0
+     */
+    public static synchronized void trim() {
+        Iterator<Map.Entry<Integer, Entry>> iterator = meshes.entrySet().iterator();
+        while(iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            if(entry.references == 0) {
+                entry.mesh.destroy();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget all of the meshes without deleting them from graphics memory. Used when the OpenGL ES
+     * context has been lost and the buffers of the meshes no longer exist.
+     *
+     * @since 1.0
+     */
+    public static synchronized void invalidateAll() {
+        meshes.clear();
+    }
+
+    private static Entry add(int key, Mesh mesh) {
+        final Entry entry = new Entry(mesh);
+        meshes.put(key, entry);
+        return entry;
+    }
+}
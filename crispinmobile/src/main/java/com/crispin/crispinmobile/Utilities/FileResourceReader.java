@@ -4,7 +4,9 @@ import android.content.res.Resources;
 
 import com.crispin.crispinmobile.Crispin;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * FileResourceReader is a class comprised of only static function designed to read resource files.
@@ -17,6 +19,9 @@ public class FileResourceReader {
     // Tag used for logging
     private static final String TAG = "FileResourceReader";
 
+    // Size of the buffer used when reading a stream whose size is unknown
+    private static final int READ_BUFFER_SIZE = 8192;
+
     /**
      * Read a file from a resource ID.
      *
@@ -30,12 +35,15 @@ public class FileResourceReader {
             Resources resources = Crispin.getApplicationContext().getResources();
             InputStream inputStream = resources.openRawResource(resourceId);
 
-            final int SIZE_BYTES = inputStream.available();
-            byte[] bytes = new byte[SIZE_BYTES];
-            inputStream.read(bytes);
+            byte[] bytes;
+            try {
+                bytes = readBytes(inputStream);
+            } finally {
+                inputStream.close();
+            }
 
             Logger.debug(TAG, "Read resource file: ID[" + resourceId + "], Bytes[" +
-                    SIZE_BYTES + "], Name[" + resources.getResourceEntryName(resourceId) + "]");
+                    bytes.length + "], Name[" + resources.getResourceEntryName(resourceId) + "]");
 
             return bytes;
         } catch (Exception e) {
@@ -44,4 +52,26 @@ public class FileResourceReader {
 
         return null;
     }
+
+    /**
+     * Read all of the bytes from an input stream. The size reported by <code>available()</code> is
+     * only used as a starting capacity as it is not guaranteed to be the size of the stream.
+     *
+     * @param inputStream The stream to read
+     * @return The contents of the stream
+     * @throws IOException If the stream could not be read
+     * @since 1.0
+     */
+    public static byte[] readBytes(InputStream inputStream) throws IOException {
+        byte[] bytes = new byte[Math.max(inputStream.available(), READ_BUFFER_SIZE)];
+        int size = 0;
+        int read;
+        while((read = inputStream.read(bytes, size, bytes.length - size)) != -1) {
+            size += read;
+            if(size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+        return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+    }
 }
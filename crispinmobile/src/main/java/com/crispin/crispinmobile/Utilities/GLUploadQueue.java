@@ -0,0 +1,267 @@
+package com.crispin.crispinmobile.Utilities;
+
+import com.crispin.crispinmobile.Crispin;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queue of work that has to be done on the GL thread, such as creating the buffers of meshes that
+ * have been built on a background thread. Uploads can be added from any thread and are run on the
+ * GL thread (through the event queue of the backend) before a frame is drawn. Only as many uploads
+ * as fit in the per frame budget (bytes and time) are run each frame so that loading does not cause
+ * frames to be dropped. The rest are continued on the next frame. At least one upload is always run
+ * per frame so an upload that is larger than the budget is not stuck in the queue. The class
+ * consists of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see com.crispin.crispinmobile.MeshLoading.AsyncModelLoader
+ * @since 1.0
+ */
+public class GLUploadQueue {
+    /**
+     * Work that has to be done on the GL thread
+     *
+     * @since 1.0
+     */
+    public interface Upload {
+        /**
+         * Get the number of bytes that the upload sends to graphics memory
+         *
+         * @return The size of the upload in bytes
+         * @since 1.0
+         */
+        int getSizeBytes();
+
+        /**
+         * Run the upload. Called on the GL thread.
+         *
+         * @since 1.0
+         */
+        void upload();
+    }
+
+    /**
+     * The calls that the upload queue makes to run work on the GL thread and to time it. Allows the
+     * queue to be tested without an OpenGL ES context.
+     *
+     * @since 1.0
+     */
+    public interface Backend {
+        void queueEvent(Runnable event);
+
+        long nanoTime();
+    }
+
+    // The backend that runs events on the GL thread of the engine
+    private static class CrispinBackend implements Backend {
+        @Override
+        public void queueEvent(Runnable event) {
+            Crispin.queueEvent(event);
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    }
+
+    // The default number of bytes that can be uploaded per frame
+    public static final int DEFAULT_FRAME_BUDGET_BYTES = 1024 * 1024;
+
+    // The default amount of time that can be spent uploading per frame
+    public static final float DEFAULT_FRAME_BUDGET_MS = 4.0f;
+
+    // The number to multiply milliseconds by to get nanoseconds
+    private static final int MILLISECONDS_TO_NANOSECONDS_MULTIPLY = 1000000;
+
+    // Uploads in the order that they were added
+    private static final ConcurrentLinkedQueue<Upload> uploads = new ConcurrentLinkedQueue<>();
+
+    // If the queue has been processed in the current frame and still has uploads left
+    private static final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    // Runs the queue on the GL thread
+    private static final Runnable processRunnable = GLUploadQueue::process;
+
+    // Runs events on the GL thread
+    private static volatile Backend backend = new CrispinBackend();
+
+    // If the queue should be processed again after the current frame (GL thread only)
+    private static boolean resumeNextFrame;
+
+    // The thread that the uploads run on
+    private static volatile Thread glThread;
+
+    // The number of bytes that can be uploaded per frame
+    private static volatile int frameBudgetBytes = DEFAULT_FRAME_BUDGET_BYTES;
+
+    // The amount of time that can be spent uploading per frame in nanoseconds
+    private static volatile long frameBudgetNanos =
+            (long) (DEFAULT_FRAME_BUDGET_MS * MILLISECONDS_TO_NANOSECONDS_MULTIPLY);
+
+    /**
+     * Add an upload to the queue. Can be called from any thread.
+     *
+     * @param upload The upload to run on the GL thread
+     * @since 1.0
+     */
+    public static void add(Upload upload) {
+        uploads.add(upload);
+        if (scheduled.compareAndSet(false, true)) {
+            backend.queueEvent(processRunnable);
+        }
+    }
+
+    /**
+     * Run an event on the GL thread before the next frame is drawn. Unlike an upload, an event is
+     * not limited by the frame budget. Can be called from any thread.
+     *
+     * @param event The event to run on the GL thread
+     * @since 1.0
+     */
+    public static void queueEvent(Runnable event) {
+        backend.queueEvent(event);
+    }
+
+    /**
+     * Set the amount of uploading that can be done per frame. The uploads of a frame stop once
+     * either budget has been used.
+     *
+     * @param bytes        The number of bytes that can be uploaded per frame
+     * @param milliseconds The amount of time that can be spent uploading per frame
+     * @since 1.0
+     */
+    public static void setFrameBudget(int bytes, float milliseconds) {
+        frameBudgetBytes = bytes;
+        frameBudgetNanos = (long) (milliseconds * MILLISECONDS_TO_NANOSECONDS_MULTIPLY);
+    }
+
+    /**
+     * Get the number of bytes that can be uploaded per frame
+     *
+     * @return The frame budget in bytes
+     * @since 1.0
+     */
+    public static int getFrameBudgetBytes() {
+        return frameBudgetBytes;
+    }
+
+    /**
+     * Get the amount of time that can be spent uploading per frame
+     *
+     * @return The frame budget in milliseconds
+     * @since 1.0
+     */
+    public static float getFrameBudgetMs() {
+        return (float) frameBudgetNanos / MILLISECONDS_TO_NANOSECONDS_MULTIPLY;
+    }
+
+    /**
+     * Get the number of uploads that are waiting to be run
+     *
+     * @return The number of queued uploads
+     * @since 1.0
+     */
+    public static int getPendingCount() {
+        return uploads.size();
+    }
+
+    /**
+     * Run every upload in the queue straight away, ignoring the frame budget. Used when the GL
+     * thread has to wait for uploads that would otherwise never run because it is waiting (e.g.
+     * when the result of a model load is waited for on the GL thread). Must be called on the GL
+     * thread.
+     *
+     * @since 1.0
+     */
+    public static void drain() {
+        Upload upload;
+        while ((upload = uploads.poll()) != null) {
+            upload.upload();
+        }
+    }
+
+    /**
+     * Check if the calling thread is the GL thread that the uploads run on
+     *
+     * @return <code>true</code> if called on the GL thread, else <code>false</code>
+     * @since 1.0
+     */
+    public static boolean isGLThread() {
+        return Thread.currentThread() == glThread;
+    }
+
+    /**
+     * Record the thread that the uploads run on. Called by the SceneManager when the surface is
+     * created.
+     *
+     * @since 1.0
+     */
+    static void onSurfaceCreated() {
+        glThread = Thread.currentThread();
+    }
+
+    /**
+     * Continue the uploads that did not fit in the budget of the frame. Called by the SceneManager
+     * at the end of each frame so that the queue is processed once before the next frame is drawn.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        if (resumeNextFrame) {
+            resumeNextFrame = false;
+            backend.queueEvent(processRunnable);
+        }
+    }
+
+    /**
+     * Set the backend that runs events on the GL thread. Intended for unit tests that run without
+     * an OpenGL ES context. The uploads that are waiting are forgotten.
+     *
+     * @param backend The backend
+     * @since 1.0
+     */
+    public static void setBackend(Backend backend) {
+        GLUploadQueue.backend = backend;
+        uploads.clear();
+        scheduled.set(false);
+        resumeNextFrame = false;
+    }
+
+    // Run the uploads that fit in the frame budget (GL thread only)
+    private static void process() {
+        final long start = backend.nanoTime();
+        final int budgetBytes = frameBudgetBytes;
+        final long budgetNanos = frameBudgetNanos;
+        int uploadedBytes = 0;
+        boolean first = true;
+
+        Upload upload;
+        while ((upload = uploads.peek()) != null) {
+            final int size = upload.getSizeBytes();
+            if (!first && (uploadedBytes + size > budgetBytes ||
+                    backend.nanoTime() - start >= budgetNanos)) {
+                break;
+            }
+
+            uploads.poll();
+            upload.upload();
+            uploadedBytes += size;
+            first = false;
+        }
+
+        if (!uploads.isEmpty()) {
+            resumeNextFrame = true;
+            return;
+        }
+
+        // An upload may have been added after the queue was found to be empty but before it was
+        // marked as not scheduled, in which case the add would not have scheduled it
+        scheduled.set(false);
+        if (!uploads.isEmpty() && scheduled.compareAndSet(false, true)) {
+            resumeNextFrame = true;
+        }
+    }
+}
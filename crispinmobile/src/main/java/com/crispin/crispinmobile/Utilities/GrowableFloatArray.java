@@ -0,0 +1,152 @@
+package com.crispin.crispinmobile.Utilities;
+
+import java.util.Arrays;
+
+/**
+ * GrowableFloatArray is a primitive float array that grows as data is added to it. It is used in
+ * place of an ArrayList of Float objects where large amounts of data are collected (e.g. when
+ * loading models) so that no boxing takes place and the data can be handed to OpenGL without a
+ * conversion.
+ *
+ * @see GrowableIntArray
+ * @since 1.0
+ */
+public class GrowableFloatArray {
+    // The default capacity of the array if one is not specified
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // The underlying data (may be larger than the number of elements added)
+    private float[] data;
+
+    // The number of elements that have been added
+    private int size;
+
+    /**
+     * Create a growable float array with an initial capacity
+     *
+     * @param initialCapacity The number of elements that can be added before the array has to grow
+     * @since 1.0
+     */
+    public GrowableFloatArray(int initialCapacity) {
+        this.data = new float[Math.max(initialCapacity, 1)];
+        this.size = 0;
+    }
+
+    /**
+     * Create a growable float array with the default initial capacity
+     *
+     * @since 1.0
+     */
+    public GrowableFloatArray() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Add a value to the end of the array
+     *
+     * @param value The value to add
+     * @since 1.0
+     */
+    public void add(float value) {
+        if(size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    /**
+     * Add a range of values to the end of the array
+     *
+     * @param values The source array
+     * @param offset The index of the first value in the source array
+     * @param length The number of values to add
+     * @since 1.0
+     */
+    public void add(float[] values, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+    }
+
+    /**
+     * Get a value from the array
+     *
+     * @param index The index of the value
+     * @return The value at the given index
+     * @since 1.0
+     */
+    public float get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Set a value in the array. The index must be less than the size of the array.
+     *
+     * @param index The index of the value
+     * @param value The new value
+     * @since 1.0
+     */
+    public void set(int index, float value) {
+        data[index] = value;
+    }
+
+    /**
+     * Get the number of values that have been added to the array
+     *
+     * @return The number of values in the array
+     * @since 1.0
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all of the values from the array. The capacity of the array is retained so that it
+     * can be re-used without allocating.
+     *
+     * @since 1.0
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Make sure that the array can hold at least the given number of values without growing
+     *
+     * @param capacity The required capacity
+     * @since 1.0
+     */
+    public void ensureCapacity(int capacity) {
+        if(capacity > data.length) {
+            grow(capacity);
+        }
+    }
+
+    /**
+     * Get the underlying array. The array may be larger than the number of values added so it
+     * should be used together with <code>size()</code>. The returned array is only valid until the
+     * next value is added.
+     *
+     * @return The underlying float array
+     * @since 1.0
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /**
+     * Copy the values into a new array that is exactly the size of the data
+     *
+     * @return A new float array containing the values
+     * @since 1.0
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    // Grow the underlying array by at least half of its current size
+    private void grow(int minimumCapacity) {
+        int newCapacity = Math.max(minimumCapacity, data.length + (data.length >> 1));
+        data = Arrays.copyOf(data, newCapacity);
+    }
+}
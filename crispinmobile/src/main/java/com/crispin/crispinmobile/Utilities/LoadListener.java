@@ -1,9 +1,67 @@
 package com.crispin.crispinmobile.Utilities;
 
+import com.crispin.crispinmobile.MeshLoading.MeshData;
 import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
 
+import java.util.ArrayList;
 import java.util.EventListener;
 
+/**
+ * Listens to the events of a model that is loaded in the background. The events are called on the
+ * GL thread so meshes and models can be used straight away. Only <code>onLoad</code> has to be
+ * implemented.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see com.crispin.crispinmobile.MeshLoading.AsyncModelLoader
+ * @since 1.0
+ */
 public interface LoadListener extends EventListener {
+    /**
+     * Called when the model has loaded
+     *
+     * @param mesh The first mesh of the model, or <code>null</code> if the model has no meshes
+     * @since 1.0
+     */
     void onLoad(Mesh mesh);
+
+    /**
+     * Called when the model has loaded. By default the first mesh is passed to
+     * <code>onLoad(Mesh)</code>, override to receive every mesh of the model.
+     *
+     * @param meshes The mesh data of the model
+     * @since 1.0
+     */
+    default void onLoadModel(ArrayList<MeshData> meshes) {
+        onLoad(meshes.isEmpty() ? null : meshes.get(0).mesh);
+    }
+
+    /**
+     * Called as the model loads
+     *
+     * @param progress The fraction of the model that has loaded (0 to 1)
+     * @since 1.0
+     */
+    default void onProgress(float progress) {
+
+    }
+
+    /**
+     * Called when the load has been cancelled. Any meshes that had already been uploaded have been
+     * removed from graphics memory.
+     *
+     * @since 1.0
+     */
+    default void onCancel() {
+
+    }
+
+    /**
+     * Called when the model failed to load
+     *
+     * @since 1.0
+     */
+    default void onFail() {
+
+    }
 }
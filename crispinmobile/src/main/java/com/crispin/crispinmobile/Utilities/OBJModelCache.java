@@ -1,4 +1,583 @@
 package com.crispin.crispinmobile.Utilities;
 
+import com.crispin.crispinmobile.MeshLoading.MeshData;
+import com.crispin.crispinmobile.MeshLoading.MeshLoadProperties;
+import com.crispin.crispinmobile.MeshLoading.OBJModelLoader;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache OBJ models so that a model file is only read and uploaded to graphics memory once no matter
+ * how many times it is loaded. Models are cached by resource ID and mesh load properties, and the
+ * same MeshData and Mesh instances are returned to every caller. Both <code>read</code> and the
+ * AsyncModelLoader load their models through the cache.
+ * <p>
+ * Each load adds a reference to the model and <code>release</code> removes one. When a scene
+ * changes the references held by the previous scene are dropped, but the models remain cached so
+ * that the next scene can re-use them without rebuilding them. Models without references are
+ * evicted (least recently used first) once the graphics memory used by the cache exceeds the
+ * budget. The cache is only locked to look up and publish models, not whilst a model is loaded,
+ * so a slow load does not hold up lookups of other models. Loads of a model that is already being
+ * loaded wait for that load instead. The cache can be used from any thread. The meshes of evicted
+ * models are destroyed on the GL thread, through the GLUploadQueue if they are evicted on another
+ * thread. The class consists of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see OBJModelLoader
+ * @see com.crispin.crispinmobile.MeshLoading.AsyncModelLoader
+ * @see SceneManager
+ * @since 1.0
+ */
 public class OBJModelCache {
+    // Tag used for logging
+    private static final String TAG = "OBJModelCache";
+
+    // The default amount of graphics memory that the cached models can use (in bytes)
+    public static final long DEFAULT_BUDGET_BYTES = 32L * 1024L * 1024L;
+
+    // How often the GL thread runs the queued uploads whilst it waits for a model to load
+    private static final long GL_THREAD_WAIT_MS = 1;
+
+    // Cache key made up of the resource ID and a copy of the load properties
+    private static final class Key {
+        final int resourceId;
+        final MeshLoadProperties properties;
+
+        Key(int resourceId, MeshLoadProperties properties) {
+            this.resourceId = resourceId;
+            this.properties = properties;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return resourceId == other.resourceId && (properties == null ?
+                    other.properties == null : properties.equals(other.properties));
+        }
+
+        @Override
+        public int hashCode() {
+            return (resourceId * 31) + (properties == null ? 0 : properties.hashCode());
+        }
+    }
+
+    // A cached model. The entry is added to the cache before the model is loaded so that other
+    // loads of the same model wait for it instead of loading it again.
+    private static final class Entry {
+        ArrayList<MeshData> meshes;
+        long sizeBytes;
+        int references;
+
+        // If the model is still being loaded (guarded by the entry, not the cache)
+        private boolean loading = true;
+
+        // If the load was cancelled, in which case the waiters look the model up again
+        private boolean cancelled;
+
+        // Set the loaded meshes (or null if the model failed to load) and wake up the waiters
+        synchronized void publish(ArrayList<MeshData> meshes, boolean cancelled) {
+            this.meshes = meshes;
+            this.cancelled = cancelled;
+            loading = false;
+            notifyAll();
+        }
+
+        // Wait for the model to load. The load may be waiting for uploads that run on the GL
+        // thread, so on the GL thread the uploads are run whilst waiting.
+        ArrayList<MeshData> await() {
+            final boolean glThread = GLUploadQueue.isGLThread();
+            boolean interrupted = false;
+            while (true) {
+                synchronized (this) {
+                    if (!loading) {
+                        break;
+                    }
+
+                    try {
+                        wait(glThread ? GL_THREAD_WAIT_MS : 0L);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+
+                if (glThread) {
+                    GLUploadQueue.drain();
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            synchronized (this) {
+                return meshes;
+            }
+        }
+
+        synchronized boolean isLoading() {
+            return loading;
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * The result of looking up a model. Either the model is cached (or being loaded by someone
+     * else) and can be waited for, or it has been reserved for the caller to load, in which case
+     * the caller must publish or cancel it. A reference to the model is held by the lookup until it
+     * is released, or until the caller takes it on by using the loaded model.
+     *
+     * @see #lookup(int, MeshLoadProperties)
+     * @since 1.0
+     */
+    public static final class Lookup {
+        private final Key key;
+        private final Entry entry;
+        private final boolean reserved;
+
+        private Lookup(Key key, Entry entry, boolean reserved) {
+            this.key = key;
+            this.entry = entry;
+            this.reserved = reserved;
+        }
+
+        /**
+         * Check if the model has been reserved for the caller to load
+         *
+         * @return True if the caller must load the model and publish it, false if the model is
+         * cached or being loaded by someone else
+         * @since 1.0
+         */
+        public boolean isReserved() {
+            return reserved;
+        }
+
+        /**
+         * Wait for the model to load. On the GL thread the queued uploads are run whilst waiting.
+         *
+         * @return The meshes of the model, or <code>null</code> if the load failed or was
+         * cancelled
+         * @since 1.0
+         */
+        public ArrayList<MeshData> await() {
+            return entry.await();
+        }
+
+        /**
+         * Check if the load that was waited for was cancelled. The model is no longer cached and
+         * should be looked up again.
+         *
+         * @return True if the load was cancelled, else false
+         * @since 1.0
+         */
+        public boolean isCancelled() {
+            return entry.isCancelled();
+        }
+
+        /**
+         * Publish the result of a reserved load and wake up the callers waiting for it. A model
+         * that failed to load is removed so that it can be tried again.
+         *
+         * @param meshes The loaded meshes, or <code>null</code> if the model failed to load
+         * @since 1.0
+         */
+        public void publish(ArrayList<MeshData> meshes) {
+            OBJModelCache.publish(key, entry, meshes, false);
+        }
+
+        /**
+         * Give up a reserved load. The model is removed and the callers waiting for it look it up
+         * again. The meshes of the load must be destroyed by the caller.
+         *
+         * @since 1.0
+         */
+        public void cancel() {
+            OBJModelCache.publish(key, entry, null, true);
+        }
+
+        /**
+         * Remove the reference that the lookup added to a model that was not reserved
+         *
+         * @since 1.0
+         */
+        public void release() {
+            synchronized (OBJModelCache.class) {
+                if (models.get(key) == entry && entry.references > 0) {
+                    entry.references--;
+                    trim();
+                }
+            }
+        }
+    }
+
+    // Cached models in least recently used order (access ordered)
+    private static final LinkedHashMap<Key, Entry> models = new LinkedHashMap<>(16, 0.75f, true);
+
+    // The amount of graphics memory that unreferenced models can use before they are evicted
+    private static long budgetBytes = DEFAULT_BUDGET_BYTES;
+
+    // The amount of graphics memory that the cached models use
+    private static long sizeBytes;
+
+    // Statistics
+    private static int hitCount;
+    private static int missCount;
+    private static int evictionCount;
+
+    /**
+     * Load an OBJ model through the cache. If the model has already been loaded with the same
+     * properties the cached meshes are returned, otherwise the model is loaded with the
+     * OBJModelLoader. A reference is added to the model. A model that is loaded here is uploaded
+     * on the calling thread, so it must be called on the GL thread.
+     *
+     * @param resourceId         The OBJ model file resource ID
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @return Array of mesh data containing name, material and mesh (shared, do not modify), or
+     * <code>null</code> if the model could not be loaded
+     * @see OBJModelLoader#read(int, MeshLoadProperties)
+     * @since 1.0
+     */
+    public static ArrayList<MeshData> read(int resourceId,
+                                           MeshLoadProperties meshLoadProperties) {
+        while (true) {
+            final Lookup lookup = lookup(resourceId, meshLoadProperties);
+            if (!lookup.isReserved()) {
+                // Cached, or being loaded by another thread. A cancelled load is tried again.
+                final ArrayList<MeshData> meshes = lookup.await();
+                if (!lookup.isCancelled()) {
+                    return meshes;
+                }
+                continue;
+            }
+
+            ArrayList<MeshData> meshes = null;
+            try {
+                meshes = OBJModelLoader.read(resourceId, meshLoadProperties);
+            } finally {
+                lookup.publish(meshes);
+            }
+            return meshes;
+        }
+    }
+
+    /**
+     * Look up a model without waiting for it. If the model is neither cached nor being loaded, it
+     * is reserved for the caller to load. A reference is added to the model. Used by loads that
+     * can not wait on the calling thread, such as the AsyncModelLoader.
+     *
+     * @param resourceId         The OBJ model file resource ID
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @return The lookup of the model
+     * @since 1.0
+     */
+    public static Lookup lookup(int resourceId, MeshLoadProperties meshLoadProperties) {
+        // Find or reserve the entry under the lock, the model is loaded outside of it so that
+        // lookups of other models do not wait for the load
+        final Key key = createKey(resourceId, meshLoadProperties);
+        synchronized (OBJModelCache.class) {
+            Entry entry = models.get(key);
+            final boolean reserved = entry == null;
+            if (reserved) {
+                missCount++;
+                entry = new Entry();
+                models.put(key, entry);
+            } else {
+                hitCount++;
+            }
+            entry.references++;
+            return new Lookup(key, entry, reserved);
+        }
+    }
+
+    public static HashMap<String, MeshData> read(int resourceId) {
+        return readToMap(resourceId, null);
+    }
+
+    /**
+     * Load an OBJ model through the cache
+     *
+     * @param resourceId         The OBJ model file resource ID
+     * @param meshLoadProperties Properties of the meshes to load, or <code>null</code> to load
+     *                           every mesh
+     * @return HashMap of mesh data allowing easy retrieval of specific mesh names
+     * @see #read(int, MeshLoadProperties)
+     * @since 1.0
+     */
+    public static HashMap<String, MeshData> readToMap(int resourceId,
+                                                      MeshLoadProperties meshLoadProperties) {
+        ArrayList<MeshData> meshes = read(resourceId, meshLoadProperties);
+        HashMap<String, MeshData> map = new HashMap<>();
+        if (meshes != null) {
+            for (int i = 0; i < meshes.size(); i++) {
+                MeshData meshData = meshes.get(i);
+                map.put(meshData.name, meshData);
+            }
+        }
+        return map;
+    }
+
+    public static HashMap<String, MeshData> readToMap(int resourceId) {
+        return readToMap(resourceId, null);
+    }
+
+    /**
+     * Remove a reference from a cached model. The model stays cached but can be evicted once it
+     * has no references.
+     *
+     * @param resourceId         The OBJ model file resource ID
+     * @param meshLoadProperties The properties that the model was loaded with
+     * @since 1.0
+     */
+    public static synchronized void release(int resourceId, MeshLoadProperties meshLoadProperties) {
+        Entry entry = models.get(createKey(resourceId, meshLoadProperties));
+        if (entry == null || entry.references == 0) {
+            Logger.error(TAG, "Failed to release model " + resourceId + ", it is not referenced");
+            return;
+        }
+
+        entry.references--;
+        trim();
+    }
+
+    public static void release(int resourceId) {
+        release(resourceId, null);
+    }
+
+    /**
+     * Set the amount of graphics memory that the cached models can use. Models without references
+     * are evicted until the cache fits the budget. Referenced models are never evicted so the cache
+     * can exceed the budget.
+     *
+     * @param bytes The budget in bytes
+     * @since 1.0
+     */
+    public static synchronized void setBudget(long bytes) {
+        budgetBytes = bytes;
+        trim();
+    }
+
+    /**
+     * Get the amount of graphics memory that the cached models can use
+     *
+     * @return The budget in bytes
+     * @since 1.0
+     */
+    public static synchronized long getBudget() {
+        return budgetBytes;
+    }
+
+    /**
+     * Get the amount of graphics memory that the cached models use (vertex and index buffers)
+     *
+     * @return The size of the cached models in bytes
+     * @since 1.0
+     */
+    public static synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Get the number of models in the cache
+     *
+     * @return The number of cached models
+     * @since 1.0
+     */
+    public static synchronized int getModelCount() {
+        return models.size();
+    }
+
+    /**
+     * Get the number of loads that returned a cached model
+     *
+     * @return The number of cache hits
+     * @since 1.0
+     */
+    public static synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get the number of loads that had to read the model file
+     *
+     * @return The number of cache misses
+     * @since 1.0
+     */
+    public static synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get the number of models that have been evicted to keep the cache within its budget
+     *
+     * @return The number of evictions
+     * @since 1.0
+     */
+    public static synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Reset the hit, miss and eviction counters
+     *
+     * @since 1.0
+     */
+    public static synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Drop the references held by the previous scene. Called by the SceneManager when the scene
+     * changes. The models remain cached so that they do not have to be rebuilt if the next scene
+     * uses them.
+     *
+     * @since 1.0
+     */
+    public static synchronized void releaseAll() {
+        for (Entry entry : models.values()) {
+            entry.references = 0;
+        }
+    }
+
+    /**
+     * Evict models that have no references (least recently used first) until the cache fits the
+     * budget. Called by the SceneManager once a new scene has been constructed so that the models
+     * it uses are referenced before anything is evicted.
+     *
+     * @since 1.0
+     */
+    public static synchronized void trim() {
+        Iterator<Map.Entry<Key, Entry>> iterator = models.entrySet().iterator();
+        while (sizeBytes > budgetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.references == 0 && !entry.isLoading()) {
+                destroy(entry);
+                sizeBytes -= entry.sizeBytes;
+                evictionCount++;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all of the models from the cache and graphics memory
+     *
+     * @since 1.0
+     */
+    public static synchronized void removeAll() {
+        for (Entry entry : models.values()) {
+            destroy(entry);
+        }
+
+        models.clear();
+        sizeBytes = 0;
+    }
+
+    /**
+     * Forget all of the models without deleting them from graphics memory. Used when the OpenGL ES
+     * context has been lost and the buffers of the models no longer exist.
+     *
+     * @since 1.0
+     */
+    public static synchronized void invalidateAll() {
+        models.clear();
+        sizeBytes = 0;
+    }
+
+    // Publish the result of a load to the entry reserved for it. Failed and cancelled loads are
+    // removed so that they can be tried again. If the cache was cleared during the load, the meshes
+    // are returned to the callers but are not cached.
+    private static synchronized void publish(Key key, Entry entry, ArrayList<MeshData> meshes,
+                                             boolean cancelled) {
+        final boolean cached = models.get(key) == entry;
+        if (meshes == null) {
+            if (cached) {
+                models.remove(key);
+            }
+        } else {
+            entry.sizeBytes = calculateSizeBytes(meshes);
+            if (cached) {
+                sizeBytes += entry.sizeBytes;
+            }
+        }
+
+        entry.publish(meshes, cancelled);
+        if (cached) {
+            trim();
+        }
+    }
+
+    private static Key createKey(int resourceId, MeshLoadProperties meshLoadProperties) {
+        return new Key(resourceId, meshLoadProperties == null ? null :
+                new MeshLoadProperties(meshLoadProperties));
+    }
+
+    private static long calculateSizeBytes(ArrayList<MeshData> meshes) {
+        long size = 0;
+        for (int i = 0; i < meshes.size(); i++) {
+            MeshData meshData = meshes.get(i);
+            if (meshData.mesh != null) {
+                size += meshData.mesh.getSizeBytes();
+            }
+
+            if (meshData.shadowMesh != null) {
+                size += meshData.shadowMesh.getSizeBytes();
+            }
+
+            if (meshData.lods != null) {
+                for (Mesh lod : meshData.lods) {
+                    size += lod.getSizeBytes();
+                }
+            }
+        }
+        return size;
+    }
+
+    // Destroy the meshes of an evicted model on the GL thread
+    private static void destroy(Entry entry) {
+        final ArrayList<MeshData> meshes = entry.meshes;
+        if (meshes == null) {
+            return;
+        }
+
+        if (GLUploadQueue.isGLThread()) {
+            destroy(meshes);
+        } else {
+            GLUploadQueue.queueEvent(() -> destroy(meshes));
+        }
+    }
+
+    private static void destroy(ArrayList<MeshData> meshes) {
+        for (int i = 0; i < meshes.size(); i++) {
+            MeshData meshData = meshes.get(i);
+            destroy(meshData.mesh);
+            destroy(meshData.shadowMesh);
+            if (meshData.lods != null) {
+                for (Mesh lod : meshData.lods) {
+                    destroy(lod);
+                }
+            }
+        }
+    }
+
+    private static void destroy(Mesh mesh) {
+        if (mesh != null) {
+            mesh.destroy();
+        }
+    }
 }
@@ -0,0 +1,102 @@
+package com.crispin.crispinmobile.Utilities;
+
+import java.util.Arrays;
+
+/**
+ * Sort 64-bit keys, with a value carried along with each key, using a least significant digit
+ * radix sort. The keys are sorted as unsigned numbers one byte at a time, so sorting takes a fixed
+ * eight passes over the data however the keys are distributed, and passes where every key has the
+ * same byte are skipped. The sort is stable: keys that are equal keep their original order.
+ * <p>
+ * The caller provides scratch arrays at least as long as the data and a table of counts, which
+ * can be kept and reused every frame, so sorting does not allocate. The class consists of static
+ * only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class RadixSort {
+    // The number of bits sorted in each pass
+    private static final int RADIX_BITS = 8;
+
+    // The number of buckets in each pass
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    // The number of passes needed to sort a 64-bit key
+    private static final int NUM_PASSES = Long.SIZE / RADIX_BITS;
+
+    // The length of the table of counts that the caller provides
+    public static final int COUNTS_LENGTH = NUM_PASSES * RADIX;
+
+    /**
+     * Sort keys in ascending unsigned order, moving each value with its key
+     *
+     * @param keys          The keys to sort
+     * @param values        The values of the keys (e.g. indices of the items the keys belong to)
+     * @param count         The number of keys to sort from the start of the arrays
+     * @param scratchKeys   Scratch space for at least <code>count</code> keys
+     * @param scratchValues Scratch space for at least <code>count</code> values
+     * @param counts        Scratch space for the counts of each byte, of length
+     *                      <code>COUNTS_LENGTH</code>
+     * @since 1.0
+     */
+    public static void sort(long[] keys, int[] values, int count, long[] scratchKeys,
+                            int[] scratchValues, int[] counts) {
+        if(count < 2) {
+            return;
+        }
+
+        // Count every byte of every key in one pass over the keys
+        Arrays.fill(counts, 0, COUNTS_LENGTH, 0);
+        for(int i = 0; i < count; i++) {
+            long key = keys[i];
+            for(int pass = 0; pass < NUM_PASSES; pass++) {
+                counts[pass * RADIX + (int)(key & (RADIX - 1))]++;
+                key >>>= RADIX_BITS;
+            }
+        }
+
+        long[] sourceKeys = keys;
+        int[] sourceValues = values;
+        long[] targetKeys = scratchKeys;
+        int[] targetValues = scratchValues;
+        for(int pass = 0; pass < NUM_PASSES; pass++) {
+            final int base = pass * RADIX;
+            final int shift = pass * RADIX_BITS;
+
+            // Skip the pass if every key has the same byte, it would not move anything
+            if(counts[base + (int)((sourceKeys[0] >>> shift) & (RADIX - 1))] == count) {
+                continue;
+            }
+
+            // Turn the counts in to the position that each bucket starts at
+            int offset = 0;
+            for(int bucket = 0; bucket < RADIX; bucket++) {
+                final int bucketCount = counts[base + bucket];
+                counts[base + bucket] = offset;
+                offset += bucketCount;
+            }
+
+            for(int i = 0; i < count; i++) {
+                final long key = sourceKeys[i];
+                final int position = counts[base + (int)((key >>> shift) & (RADIX - 1))]++;
+                targetKeys[position] = key;
+                targetValues[position] = sourceValues[i];
+            }
+
+            final long[] swapKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = swapKeys;
+            final int[] swapValues = sourceValues;
+            sourceValues = targetValues;
+            targetValues = swapValues;
+        }
+
+        // Make sure that the result ends up in the arrays that were passed in
+        if(sourceKeys != keys) {
+            System.arraycopy(sourceKeys, 0, keys, 0, count);
+            System.arraycopy(sourceValues, 0, values, 0, count);
+        }
+    }
+}
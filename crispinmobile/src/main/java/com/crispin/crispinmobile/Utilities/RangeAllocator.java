@@ -0,0 +1,274 @@
+package com.crispin.crispinmobile.Utilities;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * RangeAllocator hands out ranges of a fixed size space (e.g. the vertices of a shared vertex
+ * buffer) by offset. It only does the bookkeeping, the memory itself is owned by the user of the
+ * allocator. Ranges are allocated best fit (the smallest free range that the request fits in) so
+ * that large free ranges are kept for large requests, and freed ranges are merged with the free
+ * ranges either side of them.
+ * <p>
+ * Freeing ranges out of order leaves holes in the space. The allocator can report how fragmented
+ * the free space is and can be compacted, which packs the allocated ranges to the start of the
+ * space and returns where each range was moved from and to so that the memory can be moved to
+ * match.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class RangeAllocator {
+    // Tag used in logging output
+    private static final String TAG = "RangeAllocator";
+
+    // Returned when a range cannot be allocated
+    public static final int INVALID_OFFSET = -1;
+
+    // The size of the space that ranges are allocated from
+    private final int capacity;
+
+    // Offset to size of the free ranges (never adjacent, adjacent ranges are merged)
+    private final TreeMap<Integer, Integer> freeRanges;
+
+    // Offset to size of the allocated ranges
+    private final TreeMap<Integer, Integer> allocatedRanges;
+
+    // The total size of the allocated ranges
+    private int used;
+
+    /**
+     * Create an allocator for a space with nothing allocated
+     *
+     * @param capacity The size of the space
+     * @since 1.0
+     */
+    public RangeAllocator(int capacity) {
+        this.capacity = capacity;
+        this.freeRanges = new TreeMap<>();
+        this.allocatedRanges = new TreeMap<>();
+        if(capacity > 0) {
+            freeRanges.put(0, capacity);
+        }
+    }
+
+    /**
+     * Allocate a range from the smallest free range that it fits in
+     *
+     * @param size The size of the range
+     * @return The offset of the range, or <code>INVALID_OFFSET</code> if no free range is large
+     *         enough
+     * @since 1.0
+     */
+    public int allocate(int size) {
+        if(size <= 0) {
+            Logger.error(TAG, "Cannot allocate a range of size " + size);
+            return INVALID_OFFSET;
+        }
+
+        int bestOffset = INVALID_OFFSET;
+        int bestSize = Integer.MAX_VALUE;
+        for(Map.Entry<Integer, Integer> range : freeRanges.entrySet()) {
+            final int rangeSize = range.getValue();
+            if(rangeSize >= size && rangeSize < bestSize) {
+                bestOffset = range.getKey();
+                bestSize = rangeSize;
+                if(rangeSize == size) {
+                    break;
+                }
+            }
+        }
+
+        if(bestOffset == INVALID_OFFSET) {
+            return INVALID_OFFSET;
+        }
+
+        // Take the range from the start of the free range
+        freeRanges.remove(bestOffset);
+        if(bestSize > size) {
+            freeRanges.put(bestOffset + size, bestSize - size);
+        }
+        allocatedRanges.put(bestOffset, size);
+        used += size;
+        return bestOffset;
+    }
+
+    /**
+     * Free an allocated range, merging it with the free ranges either side of it
+     *
+     * @param offset The offset of the range returned by <code>allocate</code>
+     * @return True if the range was freed, false if no range is allocated at the offset
+     * @since 1.0
+     */
+    public boolean free(int offset) {
+        final Integer size = allocatedRanges.remove(offset);
+        if(size == null) {
+            Logger.error(TAG, "No range is allocated at offset " + offset);
+            return false;
+        }
+        used -= size;
+
+        int start = offset;
+        int end = offset + size;
+
+        final Map.Entry<Integer, Integer> before = freeRanges.floorEntry(offset);
+        if(before != null && before.getKey() + before.getValue() == start) {
+            start = before.getKey();
+            freeRanges.remove(start);
+        }
+
+        final Integer afterSize = freeRanges.remove(end);
+        if(afterSize != null) {
+            end += afterSize;
+        }
+
+        freeRanges.put(start, end - start);
+        return true;
+    }
+
+    /**
+     * Pack the allocated ranges to the start of the space (keeping their order) so that the free
+     * space is one range at the end. The memory of each moved range must be moved from its old
+     * offset to its new offset; because the ranges keep their order, copying them in the order
+     * returned never overwrites a range that has not been copied yet.
+     *
+     * @return The moves as a flat array of (old offset, new offset, size) triplets, empty if no
+     *         range moved
+     * @since 1.0
+     */
+    public int[] compact() {
+        int moveCount = 0;
+        int next = 0;
+        for(Map.Entry<Integer, Integer> range : allocatedRanges.entrySet()) {
+            if(range.getKey() != next) {
+                moveCount++;
+            }
+            next += range.getValue();
+        }
+
+        final int[] moves = new int[moveCount * 3];
+        if(moveCount == 0) {
+            return moves;
+        }
+
+        final TreeMap<Integer, Integer> packed = new TreeMap<>();
+        int move = 0;
+        next = 0;
+        final Iterator<Map.Entry<Integer, Integer>> iterator =
+                allocatedRanges.entrySet().iterator();
+        while(iterator.hasNext()) {
+            final Map.Entry<Integer, Integer> range = iterator.next();
+            final int offset = range.getKey();
+            final int size = range.getValue();
+            if(offset != next) {
+                moves[move++] = offset;
+                moves[move++] = next;
+                moves[move++] = size;
+            }
+            packed.put(next, size);
+            next += size;
+        }
+
+        allocatedRanges.clear();
+        allocatedRanges.putAll(packed);
+        freeRanges.clear();
+        if(next < capacity) {
+            freeRanges.put(next, capacity - next);
+        }
+        return moves;
+    }
+
+    /**
+     * Get the size of an allocated range
+     *
+     * @param offset The offset of the range
+     * @return The size of the range, or zero if no range is allocated at the offset
+     * @since 1.0
+     */
+    public int getSize(int offset) {
+        final Integer size = allocatedRanges.get(offset);
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * Get the size of the space that ranges are allocated from
+     *
+     * @return The capacity
+     * @since 1.0
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the total size of the allocated ranges
+     *
+     * @return The used size
+     * @since 1.0
+     */
+    public int getUsed() {
+        return used;
+    }
+
+    /**
+     * Get the total size of the free ranges
+     *
+     * @return The free size
+     * @since 1.0
+     */
+    public int getFree() {
+        return capacity - used;
+    }
+
+    /**
+     * Get the number of allocated ranges
+     *
+     * @return The number of allocated ranges
+     * @since 1.0
+     */
+    public int getAllocationCount() {
+        return allocatedRanges.size();
+    }
+
+    /**
+     * Get the number of free ranges. Free space in more than one range is fragmented.
+     *
+     * @return The number of free ranges
+     * @since 1.0
+     */
+    public int getFreeRangeCount() {
+        return freeRanges.size();
+    }
+
+    /**
+     * Get the size of the largest free range. This is the largest range that can be allocated.
+     *
+     * @return The size of the largest free range
+     * @since 1.0
+     */
+    public int getLargestFreeRange() {
+        int largest = 0;
+        for(Integer size : freeRanges.values()) {
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    /**
+     * Get how fragmented the free space is, from zero if all of the free space is in one range to
+     * almost one if it is split in to many small ranges. Calculated as one minus the size of the
+     * largest free range over the total free size.
+     *
+     * @return The fragmentation of the free space between 0 and 1
+     * @since 1.0
+     */
+    public float getFragmentation() {
+        final int free = getFree();
+        if(free == 0) {
+            return 0.0f;
+        }
+        return 1.0f - ((float)getLargestFreeRange() / free);
+    }
+}
@@ -10,9 +10,6 @@ import static android.opengl.GLES30.GL_SRC_ALPHA;
 import static android.opengl.GLES30.glBlendFunc;
 import static android.opengl.GLES30.glClear;
 import static android.opengl.GLES30.glClearColor;
-import static android.opengl.GLES30.glDisable;
-import static android.opengl.GLES30.glEnable;
-import static android.opengl.GLES30.glViewport;
 
 import android.content.Context;
 import android.opengl.GLSurfaceView;
@@ -21,7 +18,15 @@ import android.view.MotionEvent;
 
 import com.crispin.crispinmobile.Crispin;
 import com.crispin.crispinmobile.Geometry.Vec2;
+import com.crispin.crispinmobile.MeshLoading.AsyncModelLoader;
 import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Shaders.UniformCache;
+import com.crispin.crispinmobile.Rendering.Utilities.DynamicMesh;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+import com.crispin.crispinmobile.Rendering.Utilities.InstanceBuffer;
+import com.crispin.crispinmobile.Rendering.Utilities.LightUniformBuffer;
+import com.crispin.crispinmobile.Rendering.Utilities.StreamingBuffer;
+import com.crispin.crispinmobile.Rendering.Utilities.VertexBufferArena;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -219,10 +224,17 @@ public class SceneManager implements GLSurfaceView.Renderer {
 
             // Clear the cache that are associated with individual scenes. The memory in the
             // previous scene is no longer relevant so it should be freed.
+            AsyncModelLoader.cancelAll();
             UIHandler.removeAll();
             ShaderCache.removeAll();
             TextureCache.removeAll();
             FontCache.removeAll();
+
+            // Models are kept so that the ones shared with the next scene do not have to be
+            // rebuilt. Only the references of the previous scene are dropped, models that the next
+            // scene does not use are evicted once it has been constructed. The default meshes
+            // keep their references until the squares and cubes holding them are destroyed.
+            OBJModelCache.releaseAll();
         }
     }
 
@@ -387,12 +399,29 @@ public class SceneManager implements GLSurfaceView.Renderer {
      */
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        // The context is new so none of the tracked OpenGL ES state is known
+        GLStateCache.invalidate();
+
+        // Uploads run on the thread that owns the context
+        GLUploadQueue.onSurfaceCreated();
+
+        // The light buffers no longer exist, they are created again when they are next bound
+        LightUniformBuffer.invalidateAll();
+
+        // So do the instance buffers of render batches, they are created again when next updated
+        InstanceBuffer.invalidateAll();
+
         // Check if there is currently a scene bound (before attempting to re-initialise its
         // OpenGL ES memory components)
         if (currentScene != null) {
             // Re-initialise the shaders and textures because there memory no longer exists
             ShaderCache.reinitialiseAll();
             TextureCache.reinitialiseAll();
+
+            // The buffers of the cached models no longer exist
+            OBJModelCache.invalidateAll();
+            DefaultMeshCache.invalidateAll();
+            VertexBufferArena.invalidateAll();
         }
 
         resetTimingValues();
@@ -420,7 +449,7 @@ public class SceneManager implements GLSurfaceView.Renderer {
         resetTimingValues();
 
         // Set the OpenGL viewport to fill the entire surface
-        glViewport(0, 0, width, height);
+        GLStateCache.viewport(0, 0, width, height);
     }
 
     /**
@@ -460,7 +489,16 @@ public class SceneManager implements GLSurfaceView.Renderer {
             frameCalcStartMs = System.currentTimeMillis();
             fps = frames;
             if (printFps) {
-                Logger.info("FPS: " + fps);
+                Logger.info("FPS: " + fps + ", buffer re-creations per frame: " +
+                        DynamicMesh.getFrameRecreationCount() + ", dynamic uploads per frame: " +
+                        DynamicMesh.getFrameUpdateCount() + ", GL state calls issued/skipped: " +
+                        GLStateCache.getFrameIssuedCount() + "/" +
+                        GLStateCache.getFrameSkippedCount() + ", uniform uploads issued/skipped: " +
+                        UniformCache.getFrameIssuedCount() + "/" +
+                        UniformCache.getFrameSkippedCount() + ", light buffer uploads: " +
+                        LightUniformBuffer.getFrameUploadCount() + ", instances uploaded: " +
+                        InstanceBuffer.getFrameUploadCount() + ", streaming waits: " +
+                        StreamingBuffer.getFrameWaitCount());
             }
             frames = 0;
         }
@@ -495,9 +533,9 @@ public class SceneManager implements GLSurfaceView.Renderer {
         // disable in OpenGL ES
         if (isDepthEnabled()) {
             glClear(GL_DEPTH_BUFFER_BIT);
-            glEnable(GL_DEPTH_TEST);
+            GLStateCache.enable(GL_DEPTH_TEST);
         } else {
-            glDisable(GL_DEPTH_TEST);
+            GLStateCache.disable(GL_DEPTH_TEST);
         }
 
         // Clear the graphics surface to the background colour
@@ -507,23 +545,47 @@ public class SceneManager implements GLSurfaceView.Renderer {
         // If alpha is enabled, enable blend functionality in OpenGL ES and supply a blend function.
         // Otherwise disable in OpenGL ES
         if (isAlphaEnabled()) {
-            glEnable(GL_BLEND);
+            GLStateCache.enable(GL_BLEND);
             glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
         } else {
-            glDisable(GL_BLEND);
+            GLStateCache.disable(GL_BLEND);
         }
 
         // If cull face is enabled, enable cull face in OpenGL ES, otherwise disable in OpenGL ES.
         if (isCullFaceEnabled()) {
-            glEnable(GL_CULL_FACE);
+            GLStateCache.enable(GL_CULL_FACE);
         } else {
-            glDisable(GL_CULL_FACE);
+            GLStateCache.disable(GL_CULL_FACE);
         }
 
         // If the current scene exists, render it
         if (currentScene != null) {
             currentScene.render();
         }
+
+        // Continue any uploads that did not fit in the budget of this frame on the next frame
+        GLUploadQueue.onFrameEnd();
+
+        // Everything staged this frame has been uploaded so the staging memory can be reused
+        StagingArena.onFrameEnd();
+
+        // Record the dynamic buffer updates of the frame for the frame statistics
+        DynamicMesh.onFrameEnd();
+
+        // Record the issued and skipped state calls of the frame for the frame statistics
+        GLStateCache.onFrameEnd();
+
+        // Record the issued and skipped uniform uploads of the frame for the frame statistics
+        UniformCache.onFrameEnd();
+
+        // Record the light buffer uploads of the frame for the frame statistics
+        LightUniformBuffer.onFrameEnd();
+
+        // Record the instances uploaded by render batches in the frame for the frame statistics
+        InstanceBuffer.onFrameEnd();
+
+        // Record the streaming writes that waited for the GPU for the frame statistics
+        StreamingBuffer.onFrameEnd();
     }
 
     /**
@@ -539,6 +601,10 @@ public class SceneManager implements GLSurfaceView.Renderer {
         if (currentSceneConstructor != null) {
             // Create the scene via its constructor lambda and then set it as the current scene
             currentScene = currentSceneConstructor.init();
+
+            // Evict the cached models and default meshes that the new scene has not referenced
+            OBJModelCache.trim();
+            DefaultMeshCache.trim();
         } else {
             Logger.error(TAG, "Cannot construct the current scene because no scene " +
                     "constructor has been provided");
@@ -0,0 +1,404 @@
+package com.crispin.crispinmobile.Utilities;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+
+/**
+ * Reusable staging memory for data that is sent to OpenGL (e.g. with glBufferData). OpenGL can
+ * only read a direct buffer in place, heap buffers (<code>FloatBuffer.allocate</code> or
+ * <code>FloatBuffer.wrap</code>) are copied again by the JNI layer on every call. The arena
+ * holds direct pages in native byte order and hands out space in them with a bump pointer that
+ * is reset at the end of every frame, so uploading each frame does not allocate once the pages
+ * have grown to the size needed.
+ * <p>
+ * Pages come in power of two size classes starting at <code>MIN_PAGE_BYTES</code>. A request
+ * takes space from the smallest page that has room, otherwise a page of the size class that fits
+ * it is allocated. Pages that have not been used for <code>RELEASE_AFTER_FRAMES</code> frames
+ * are released so that memory that is no longer needed is given back. On top of that, no more
+ * than <code>getMaxRetainedBytes</code> are kept from one frame to the next: if a frame needed
+ * more (e.g. a scene that uploads all of its models whilst it is constructed), the largest pages
+ * are released at the end of the frame. The number of pages allocated is counted so that it can be
+ * checked that no buffers are allocated per frame.
+ * <p>
+ * The buffers returned are views of memory shared with other requests. The float, short and int
+ * buffers of a page are shared by every request of the same type, so each must be uploaded
+ * before the next request of that type is made, and none can be used after the end of the frame.
+ * The arena must only be used from the GL thread. The class consists of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @see GLUploadQueue
+ * @since 1.0
+ */
+public class StagingArena {
+    // Tag used in logging output
+    private static final String TAG = "StagingArena";
+
+    // The size of the smallest page in bytes
+    public static final int MIN_PAGE_BYTES = 64 * 1024;
+
+    // The number of frames that a page can go unused before it is released
+    public static final int RELEASE_AFTER_FRAMES = 300;
+
+    // The default number of bytes of pages that can be kept from one frame to the next
+    public static final int DEFAULT_MAX_RETAINED_BYTES = 4 * 1024 * 1024;
+
+    // Each request starts on a multiple of this many bytes (so any primitive type is aligned)
+    private static final int ALIGNMENT = 16;
+
+    // The number of bytes in a float
+    private static final int BYTES_PER_FLOAT = 4;
+
+    // The number of bytes in a short
+    private static final int BYTES_PER_SHORT = 2;
+
+    // The number of bytes in an int
+    private static final int BYTES_PER_INT = 4;
+
+    // A direct buffer and views of it for each primitive type
+    private static class Page {
+        final ByteBuffer bytes;
+        final FloatBuffer floats;
+        final ShortBuffer shorts;
+        final IntBuffer ints;
+
+        // The number of bytes used in the current frame
+        int offset;
+
+        // The last frame that the page was used in
+        long lastUsedFrame;
+
+        Page(int capacity) {
+            bytes = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+            floats = bytes.asFloatBuffer();
+            shorts = bytes.asShortBuffer();
+            ints = bytes.asIntBuffer();
+        }
+    }
+
+    // Pages that are retained between frames
+    private static final ArrayList<Page> pages = new ArrayList<>();
+
+    // The number of bytes of pages that can be kept from one frame to the next
+    private static int maxRetainedBytes = DEFAULT_MAX_RETAINED_BYTES;
+
+    // The total capacity of the pages in bytes
+    private static long retainedBytes;
+
+    // The current frame
+    private static long frame;
+
+    // The number of pages allocated since the application started
+    private static int allocationCount;
+
+    // The number of pages allocated and bytes requested in the current frame
+    private static int currentFrameAllocations;
+    private static int currentFrameBytes;
+
+    // The number of pages allocated and bytes requested in the last frame
+    private static int frameAllocations;
+    private static int frameBytes;
+
+    /**
+     * Get space for a number of bytes. The buffer returned is positioned at the start of the
+     * space and limited to its end, so absolute puts must be offset by its position.
+     *
+     * @param bytes The number of bytes
+     * @return Direct buffer in native byte order, valid until the next request for bytes
+     * @since 1.0
+     */
+    public static ByteBuffer allocate(int bytes) {
+        final Page page = findPage(bytes);
+        final int start = page.offset;
+        page.offset += align(bytes);
+        page.bytes.clear();
+        page.bytes.position(start);
+        page.bytes.limit(start + bytes);
+        return page.bytes;
+    }
+
+    /**
+     * Get space for a number of floats. The buffer returned is positioned at the start of the
+     * space and limited to its end. Once the floats have been put, move the position back to the
+     * start before uploading.
+     *
+     * @param length The number of floats
+     * @return Direct float buffer, valid until the next request for floats
+     * @since 1.0
+     */
+    public static FloatBuffer allocateFloats(int length) {
+        final Page page = findPage(length * BYTES_PER_FLOAT);
+        final int start = page.offset / BYTES_PER_FLOAT;
+        page.offset += align(length * BYTES_PER_FLOAT);
+
+        final FloatBuffer floats = page.floats;
+        floats.clear();
+        floats.position(start);
+        floats.limit(start + length);
+        return floats;
+    }
+
+    /**
+     * Stage a range of floats
+     *
+     * @param data   The floats
+     * @param offset The index of the first float to stage
+     * @param length The number of floats to stage
+     * @return Direct buffer containing the floats, valid until the next request for floats
+     * @since 1.0
+     */
+    public static FloatBuffer stage(float[] data, int offset, int length) {
+        final FloatBuffer floats = allocateFloats(length);
+        floats.put(data, offset, length);
+        floats.position(floats.position() - length);
+        return floats;
+    }
+
+    /**
+     * Stage floats
+     *
+     * @param data The floats
+     * @return Direct buffer containing the floats, valid until the next request for floats
+     * @since 1.0
+     */
+    public static FloatBuffer stage(float[] data) {
+        return stage(data, 0, data.length);
+    }
+
+    /**
+     * Stage the floats at the start of a float buffer (e.g. a heap buffer that OpenGL would copy).
+     * The position and limit of the buffer are not changed.
+     *
+     * @param data   The float buffer
+     * @param length The number of floats to stage from index 0
+     * @return Direct buffer containing the floats, valid until the next request for floats
+     * @since 1.0
+     */
+    public static FloatBuffer stage(FloatBuffer data, int length) {
+        final int position = data.position();
+        final int limit = data.limit();
+        data.limit(length);
+        data.position(0);
+
+        final FloatBuffer floats = allocateFloats(length);
+        floats.put(data);
+        floats.position(floats.position() - length);
+
+        data.limit(limit);
+        data.position(position);
+        return floats;
+    }
+
+    /**
+     * Stage ints as unsigned shorts (e.g. indices of a mesh with at most 65536 vertices)
+     *
+     * @param data The ints, each must fit in an unsigned short
+     * @return Direct buffer containing the shorts, valid until the next request for shorts
+     * @since 1.0
+     */
+    public static ShortBuffer stageShorts(int[] data) {
+        final Page page = findPage(data.length * BYTES_PER_SHORT);
+        final int start = page.offset / BYTES_PER_SHORT;
+        page.offset += align(data.length * BYTES_PER_SHORT);
+
+        final ShortBuffer shorts = page.shorts;
+        shorts.clear();
+        for(int i = 0; i < data.length; i++) {
+            shorts.put(start + i, (short)data[i]);
+        }
+        shorts.position(start);
+        shorts.limit(start + data.length);
+        return shorts;
+    }
+
+    /**
+     * Stage ints
+     *
+     * @param data The ints
+     * @return Direct buffer containing the ints, valid until the next request for ints
+     * @since 1.0
+     */
+    public static IntBuffer stage(int[] data) {
+        final Page page = findPage(data.length * BYTES_PER_INT);
+        final int start = page.offset / BYTES_PER_INT;
+        page.offset += align(data.length * BYTES_PER_INT);
+
+        final IntBuffer ints = page.ints;
+        ints.clear();
+        ints.position(start);
+        ints.limit(start + data.length);
+        ints.put(data);
+        ints.position(start);
+        return ints;
+    }
+
+    /**
+     * Reset the arena at the end of a frame so that its memory is reused by the next frame. Pages
+     * that have not been used recently are released, then the largest pages are released until
+     * no more than the maximum retained bytes are kept. Called by the scene manager after each
+     * frame.
+     *
+     * @since 1.0
+     */
+    public static void onFrameEnd() {
+        for(int i = pages.size() - 1; i >= 0; i--) {
+            final Page page = pages.get(i);
+            if(page.offset != 0) {
+                page.lastUsedFrame = frame;
+                page.offset = 0;
+            } else if(frame - page.lastUsedFrame >= RELEASE_AFTER_FRAMES) {
+                removePage(i);
+            }
+        }
+
+        while(retainedBytes > maxRetainedBytes) {
+            removePage(findLargestPage());
+        }
+
+        frameAllocations = currentFrameAllocations;
+        frameBytes = currentFrameBytes;
+        currentFrameAllocations = 0;
+        currentFrameBytes = 0;
+        frame++;
+    }
+
+    /**
+     * Release every page (e.g. when the application is low on memory). Must not be called whilst
+     * a staged buffer is still in use.
+     *
+     * @since 1.0
+     */
+    public static void release() {
+        pages.clear();
+        retainedBytes = 0;
+    }
+
+    /**
+     * Set the number of bytes of pages that can be kept from one frame to the next. A frame can
+     * still stage more than this, but the memory is given back at the end of the frame. If more
+     * than this is staged every frame, raise it so that pages are not allocated every frame.
+     *
+     * @param bytes The number of bytes
+     * @since 1.0
+     */
+    public static void setMaxRetainedBytes(int bytes) {
+        maxRetainedBytes = bytes;
+    }
+
+    /**
+     * Get the number of bytes of pages that can be kept from one frame to the next
+     *
+     * @return The number of bytes
+     * @since 1.0
+     */
+    public static int getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Get the total size of the pages that are retained
+     *
+     * @return The number of bytes of direct memory held by the arena
+     * @since 1.0
+     */
+    public static long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Get the number of pages that have been allocated since the application started
+     *
+     * @return The total number of direct buffers allocated by the arena
+     * @since 1.0
+     */
+    public static int getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Get the number of pages that were allocated in the last frame. This is zero once the arena
+     * has grown to fit the data that is uploaded each frame.
+     *
+     * @return The number of direct buffers allocated in the last frame
+     * @since 1.0
+     */
+    public static int getFrameAllocationCount() {
+        return frameAllocations;
+    }
+
+    /**
+     * Get the number of bytes that were staged in the last frame
+     *
+     * @return The number of bytes requested in the last frame
+     * @since 1.0
+     */
+    public static int getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * Get the number of pages that are retained
+     *
+     * @return The number of pages
+     * @since 1.0
+     */
+    public static int getPageCount() {
+        return pages.size();
+    }
+
+    // Find the smallest page with room for the bytes, allocating one if none have room
+    private static Page findPage(int bytes) {
+        currentFrameBytes += bytes;
+        Page best = null;
+        for(int i = 0; i < pages.size(); i++) {
+            final Page page = pages.get(i);
+            if(page.bytes.capacity() - page.offset >= bytes &&
+                    (best == null || page.bytes.capacity() < best.bytes.capacity())) {
+                best = page;
+            }
+        }
+
+        if(best == null) {
+            best = new Page(getSizeClass(bytes));
+            best.lastUsedFrame = frame;
+            pages.add(best);
+            retainedBytes += best.bytes.capacity();
+            allocationCount++;
+            currentFrameAllocations++;
+            Logger.debug(TAG, "Allocated staging page of " + best.bytes.capacity() + " bytes");
+        }
+        return best;
+    }
+
+    // Release a page
+    private static void removePage(int index) {
+        retainedBytes -= pages.remove(index).bytes.capacity();
+    }
+
+    // Find the index of the largest page
+    private static int findLargestPage() {
+        int largest = 0;
+        for(int i = 1; i < pages.size(); i++) {
+            if(pages.get(i).bytes.capacity() > pages.get(largest).bytes.capacity()) {
+                largest = i;
+            }
+        }
+        return largest;
+    }
+
+    // The smallest power of two page size that fits the bytes
+    private static int getSizeClass(int bytes) {
+        if(bytes <= MIN_PAGE_BYTES) {
+            return MIN_PAGE_BYTES;
+        }
+        return Integer.highestOneBit(bytes - 1) << 1;
+    }
+
+    private static int align(int bytes) {
+        return (bytes + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
@@ -48,6 +48,21 @@ public class TextureCache {
         textures.put(resourceId, texture);
     }
 
+    /**
+     * Remove a texture from graphics memory and from the cache. The cache is left unchanged if a
+     * different texture is registered for the resource.
+     *
+     * @param resourceId The resource ID that the texture was registered with
+     * @param texture    The texture to remove
+     * @since 1.0
+     */
+    public static void removeTexture(int resourceId, Texture texture) {
+        if (textures.get(resourceId) == texture) {
+            textures.remove(resourceId);
+        }
+        texture.destroy();
+    }
+
     /**
      * Remove all of the textures from the cache
      *
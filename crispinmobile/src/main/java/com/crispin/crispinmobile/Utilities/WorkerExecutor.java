@@ -0,0 +1,166 @@
+package com.crispin.crispinmobile.Utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The background threads that the engine does its work on, such as loading models, decoding
+ * textures and splitting large meshes across cores. Sharing one pool means that the number of
+ * threads does not grow with every feature that runs work in the background.
+ * <p>
+ * Work that is submitted may itself submit work and wait for it (e.g. a model load that parses
+ * its file in chunks). To make sure that this can not use up every thread and stall, a thread
+ * that waits through <code>invokeAll</code> or <code>get</code> runs the work that no worker has
+ * started yet itself. The threads are daemons and run just below normal priority so that they do
+ * not compete with the GL thread. The class consists of static only functions.
+ *
+ * @author Christian Benner
+ * @version %I%, %G%
+ * @since 1.0
+ */
+public class WorkerExecutor {
+    // The number of threads to split work that uses the CPU across
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    // At least two threads so that a background load can continue whilst another waits on I/O
+    private static final int NUM_THREADS = Math.max(2, PARALLELISM);
+
+    // The threads, created on first use
+    private static ExecutorService executor;
+
+    /**
+     * Get the number of parts that work which uses the CPU should be split in to. This is the
+     * number of processors, so on a single core device work should not be split at all.
+     *
+     * @return The number of processors available
+     * @since 1.0
+     */
+    public static int getParallelism() {
+        return PARALLELISM;
+    }
+
+    /**
+     * Get the number of threads in the pool
+     *
+     * @return The number of worker threads
+     * @since 1.0
+     */
+    public static int getNumThreads() {
+        return NUM_THREADS;
+    }
+
+    /**
+     * Run work in the background
+     *
+     * @param runnable The work to run
+     * @since 1.0
+     */
+    public static void execute(Runnable runnable) {
+        getExecutor().execute(runnable);
+    }
+
+    /**
+     * Run work in the background. The result should be waited for with <code>get</code> so that
+     * the work is run by the waiting thread if it has not started.
+     *
+     * @param callable The work to run
+     * @param <T>      The type of the result
+     * @return The result of the work
+     * @see #get(Future)
+     * @since 1.0
+     */
+    public static <T> Future<T> submit(Callable<T> callable) {
+        final RunnableFuture<T> future = new FutureTask<>(callable);
+        getExecutor().execute(future);
+        return future;
+    }
+
+    /**
+     * Wait for the result of work that was submitted. If no worker has started the work yet, it
+     * is run on the calling thread instead of waiting for it.
+     *
+     * @param future The result of the work
+     * @param <T>    The type of the result
+     * @return The result
+     * @throws InterruptedException If the thread was interrupted whilst waiting
+     * @throws ExecutionException   If the work threw an exception
+     * @since 1.0
+     */
+    public static <T> T get(Future<T> future) throws InterruptedException, ExecutionException {
+        // Running a future that has already started or finished does nothing
+        if(future instanceof RunnableFuture) {
+            ((RunnableFuture<T>)future).run();
+        }
+        return future.get();
+    }
+
+    /**
+     * Run tasks in parallel and wait for all of them to finish. The calling thread runs the tasks
+     * that no worker has started, so it does useful work rather than only waiting.
+     *
+     * @param tasks       The tasks to run
+     * @param description What the tasks do, for the message of the exception if one fails (e.g.
+     *                    "building tangents")
+     * @param <T>         The type of the results
+     * @return The result of each task, in the same order as the tasks
+     * @throws RuntimeException If a task threw an exception or the thread was interrupted
+     * @since 1.0
+     */
+    public static <T> ArrayList<T> invokeAll(List<? extends Callable<T>> tasks,
+                                             String description) {
+        final ArrayList<RunnableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for(int i = 0; i < tasks.size(); i++) {
+            final RunnableFuture<T> future = new FutureTask<>(tasks.get(i));
+            futures.add(future);
+
+            // The last task is run on the calling thread
+            if(i != tasks.size() - 1) {
+                getExecutor().execute(future);
+            }
+        }
+
+        // Run from the end so that the tasks the workers are least likely to have started are
+        // taken first
+        for(int i = futures.size() - 1; i >= 0; i--) {
+            futures.get(i).run();
+        }
+
+        final ArrayList<T> results = new ArrayList<>(futures.size());
+        try {
+            for(int i = 0; i < futures.size(); i++) {
+                results.add(futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted whilst " + description, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed whilst " + description, e.getCause());
+        }
+        return results;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if(executor == null) {
+            executor = Executors.newFixedThreadPool(NUM_THREADS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Worker-" + count++);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
@@ -17,7 +17,7 @@ struct PointLight {
     float quadratic;
 };
 
-#define MAX_NUM_POINT_LIGHTS 10
+#define MAX_NUM_POINT_LIGHTS 32
 
 in vec3 vFragPos;
 in vec4 vColour;
@@ -25,8 +25,16 @@ in vec4 vColour;
 out vec4 FragColor;
 
 uniform Material uMaterial;
-uniform PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
-uniform int uNumPointLights;
+
+// Lights shared by all of the lighting shaders, written by LightUniformBuffer in the std140
+// layout. The order of the members must not change, but members at the end that the shader does
+// not use can be left out.
+layout(std140) uniform Lights {
+    int uNumPointLights;
+    int uNumSpotLights;
+    int uNumEmissiveEdges;
+    PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
+};
 
 vec3 CalculatePointLight(PointLight light, vec3 fragPos);
 
@@ -44,8 +44,8 @@ struct SpotLight {
     float outerSize;
 };
 
-#define MAX_NUM_POINT_LIGHTS 10
-#define MAX_NUM_SPOT_LIGHTS 5
+#define MAX_NUM_POINT_LIGHTS 32
+#define MAX_NUM_SPOT_LIGHTS 8
 
 in vec3 vFragPos;
 in vec3 vNormal;
@@ -56,11 +56,18 @@ out vec4 FragColor;
 
 uniform vec3 uViewPosition;
 uniform Material uMaterial;
-uniform DirectionalLight uDirectionalLight;
-uniform PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
-uniform int uNumPointLights;
-uniform SpotLight uSpotLights[MAX_NUM_SPOT_LIGHTS];
-uniform int uNumSpotLights;
+
+// Lights shared by all of the lighting shaders, written by LightUniformBuffer in the std140
+// layout. The order of the members must not change, but members at the end that the shader does
+// not use can be left out.
+layout(std140) uniform Lights {
+    int uNumPointLights;
+    int uNumSpotLights;
+    int uNumEmissiveEdges;
+    PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
+    DirectionalLight uDirectionalLight;
+    SpotLight uSpotLights[MAX_NUM_SPOT_LIGHTS];
+};
 
 vec3 CalculateDirectionalLight(DirectionalLight light, vec3 normal, vec3 viewDirection, float specularModifier, vec3 diffuseModifier);
 vec3 CalculatePointLight(PointLight light, vec3 normal, vec3 fragPos, vec3 viewDirection, float specularModifier, vec3 diffuseModifier);
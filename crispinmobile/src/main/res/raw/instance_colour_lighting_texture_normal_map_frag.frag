@@ -48,24 +48,36 @@ struct SpotLight {
     float outerSize;
 };
 
-#define MAX_NUM_POINT_LIGHTS 10
-#define MAX_NUM_SPOT_LIGHTS 5
+#define MAX_NUM_POINT_LIGHTS 32
+#define MAX_NUM_SPOT_LIGHTS 8
+
+// Point light positions are passed to the fragment shader in tangent space, which takes a varying
+// per light. Only this many point lights are used so that the varyings stay within the 15 vectors
+// that OpenGL ES 3.0 guarantees.
+#define MAX_NUM_TANGENT_POINT_LIGHTS 10
 
 in vec3 vFragPos;
 in vec2 vTextureCoordinates;
 in vec3 vTangentViewPos;
 in vec3 vTangentFragPos;
-in vec3 vTangentPointLightPos[MAX_NUM_POINT_LIGHTS];
+in vec3 vTangentPointLightPos[MAX_NUM_TANGENT_POINT_LIGHTS];
 in vec4 vColour;
 
 out vec4 FragColor;
 
 uniform Material uMaterial;
-uniform DirectionalLight uDirectionalLight;
-uniform PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
-uniform int uNumPointLights;
-uniform SpotLight uSpotLights[MAX_NUM_SPOT_LIGHTS];
-uniform int uNumSpotLights;
+
+// Lights shared by all of the lighting shaders, written by LightUniformBuffer in the std140
+// layout. The order of the members must not change, but members at the end that the shader does
+// not use can be left out.
+layout(std140) uniform Lights {
+    int uNumPointLights;
+    int uNumSpotLights;
+    int uNumEmissiveEdges;
+    PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
+    DirectionalLight uDirectionalLight;
+    SpotLight uSpotLights[MAX_NUM_SPOT_LIGHTS];
+};
 
 vec3 CalculateDirectionalLight(DirectionalLight light, vec3 normal, vec3 viewDirection, float specularModifier, vec3 diffuseModifier);
 vec3 CalculatePointLight(PointLight light, vec3 normal, vec3 fragPos, vec3 lightPos, vec3 viewDirection, float specularModifier, vec3 diffuseModifier);
@@ -86,7 +98,7 @@ void main()
     lightCalc = CalculateDirectionalLight(uDirectionalLight, normal, viewDirection, specularModifier, diffuseModifier);
 
     // Calculate all the point lights
-    for(int i = 0; i < MAX_NUM_POINT_LIGHTS && i < uNumPointLights; i++) {
+    for(int i = 0; i < MAX_NUM_TANGENT_POINT_LIGHTS && i < uNumPointLights; i++) {
         lightCalc += CalculatePointLight(uPointLights[i], normal, vTangentFragPos, vTangentPointLightPos[i], viewDirection, specularModifier, diffuseModifier);
     }
 
@@ -4,7 +4,13 @@ precision mediump float;
 precision mediump int;
 #endif
 
-#define MAX_NUM_POINT_LIGHTS 10
+#define MAX_NUM_POINT_LIGHTS 32
+#define MAX_NUM_SPOT_LIGHTS 8
+
+// Point light positions are passed to the fragment shader in tangent space, which takes a varying
+// per light. Only this many point lights are used so that the varyings stay within the 15 vectors
+// that OpenGL ES 3.0 guarantees.
+#define MAX_NUM_TANGENT_POINT_LIGHTS 10
 
 layout (location = 0) in vec4 aPosition;
 layout (location = 1) in vec3 aNormal;
@@ -14,6 +20,14 @@ layout (location = 5) in vec3 aBiTangent;
 layout (location = 6) in vec4 aColour;
 layout (location = 7) in mat4 aModel;
 
+struct DirectionalLight {
+    vec3 direction;
+    vec3 colour;
+    float ambient;
+    float diffuse;
+    float specular;
+};
+
 struct PointLight {
     vec3 position;
     vec3 colour;
@@ -25,18 +39,42 @@ struct PointLight {
     float quadratic;
 };
 
+struct SpotLight {
+    vec3 position;
+    vec3 direction;
+    vec3 colour;
+    float ambient;
+    float diffuse;
+    float specular;
+    float constant;
+    float linear;
+    float quadratic;
+    float size;
+    float outerSize;
+};
+
 uniform mat4 uProjection;
 uniform mat4 uView;
 uniform vec2 uUvMultiplier;
 uniform vec3 uViewPosition;
-uniform int uNumPointLights;
-uniform PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
+
+// Lights shared by all of the lighting shaders, written by LightUniformBuffer in the std140
+// layout. The order of the members must not change, but members at the end that the shader does
+// not use can be left out.
+layout(std140) uniform Lights {
+    int uNumPointLights;
+    int uNumSpotLights;
+    int uNumEmissiveEdges;
+    PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
+    DirectionalLight uDirectionalLight;
+    SpotLight uSpotLights[MAX_NUM_SPOT_LIGHTS];
+};
 
 out vec3 vFragPos;
 out vec2 vTextureCoordinates;
 out vec3 vTangentViewPos;
 out vec3 vTangentFragPos;
-out vec3 vTangentPointLightPos[MAX_NUM_POINT_LIGHTS];
+out vec3 vTangentPointLightPos[MAX_NUM_TANGENT_POINT_LIGHTS];
 out vec4 vColour;
 
 void main()
@@ -54,7 +92,7 @@ void main()
     vTangentViewPos = tbn * uViewPosition;
     vTangentFragPos = tbn * vFragPos;
 
-    for(int i = 0; i < MAX_NUM_POINT_LIGHTS && i < uNumPointLights; i++) {
+    for(int i = 0; i < MAX_NUM_TANGENT_POINT_LIGHTS && i < uNumPointLights; i++) {
         vTangentPointLightPos[i] = tbn * uPointLights[i].position;
     }
 
@@ -29,7 +29,7 @@ struct DirectionalLight {
     float specular;
 };
 
-#define MAX_NUM_POINT_LIGHTS 10
+#define MAX_NUM_POINT_LIGHTS 32
 
 in vec3 vFragPos;
 in vec3 vNormal;
@@ -43,9 +43,16 @@ uniform sampler2D uTexture;
 uniform sampler2DArray uShadow;
 uniform Material uMaterial;
 
-uniform DirectionalLight uDirectionalLight;
-uniform PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
-uniform int uNumPointLights;
+// Lights shared by all of the lighting shaders, written by LightUniformBuffer in the std140
+// layout. The order of the members must not change, but members at the end that the shader does
+// not use can be left out.
+layout(std140) uniform Lights {
+    int uNumPointLights;
+    int uNumSpotLights;
+    int uNumEmissiveEdges;
+    PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
+    DirectionalLight uDirectionalLight;
+};
 
 vec3 CalculateDirectionalLight(DirectionalLight light);
 vec3 CalculatePointLight(PointLight light, vec3 fragPos, float shadow);
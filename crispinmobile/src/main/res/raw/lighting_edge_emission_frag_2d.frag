@@ -18,6 +18,20 @@ struct PointLight {
     float quadratic;
 };
 
+struct SpotLight {
+    vec3 position;
+    vec3 direction;
+    vec3 colour;
+    float ambient;
+    float diffuse;
+    float specular;
+    float constant;
+    float linear;
+    float quadratic;
+    float size;
+    float outerSize;
+};
+
 struct EmissiveEdge {
     vec3 pointA;
     vec3 pointB;
@@ -38,20 +52,27 @@ struct DirectionalLight {
     float specular;
 };
 
-#define MAX_NUM_POINT_LIGHTS 10
-#define MAX_NUM_EMISSIVE_EDGES 10
+#define MAX_NUM_POINT_LIGHTS 32
+#define MAX_NUM_SPOT_LIGHTS 8
+#define MAX_NUM_EMISSIVE_EDGES 8
 
 in vec3 vFragPos;
 
 uniform vec4 uColour;
 uniform Material uMaterial;
 
-uniform DirectionalLight uDirectionalLight;
-uniform PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
-uniform int uNumPointLights;
-
-uniform EmissiveEdge uEmissiveEdges[MAX_NUM_EMISSIVE_EDGES];
-uniform int uNumEmissiveEdges;
+// Lights shared by all of the lighting shaders, written by LightUniformBuffer in the std140
+// layout. The order of the members must not change, but members at the end that the shader does
+// not use can be left out.
+layout(std140) uniform Lights {
+    int uNumPointLights;
+    int uNumSpotLights;
+    int uNumEmissiveEdges;
+    PointLight uPointLights[MAX_NUM_POINT_LIGHTS];
+    DirectionalLight uDirectionalLight;
+    SpotLight uSpotLights[MAX_NUM_SPOT_LIGHTS];
+    EmissiveEdge uEmissiveEdges[MAX_NUM_EMISSIVE_EDGES];
+};
 
 out vec4 FragColor;
 
@@ -0,0 +1,139 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.crispin.crispinmobile.MeshLoading.BinaryMeshEntry;
+import com.crispin.crispinmobile.MeshLoading.BinaryMeshFormat;
+import com.crispin.crispinmobile.MeshLoading.BinaryMeshWriter;
+import com.crispin.crispinmobile.MeshLoading.IndexedGeometry;
+import com.crispin.crispinmobile.MeshLoading.OBJData;
+import com.crispin.crispinmobile.MeshLoading.OBJParser;
+import com.crispin.crispinmobile.MeshLoading.VertexIndexMap;
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+public class BinaryMeshFormatTest {
+    private static final int NUM_RUNS = 5;
+
+    private static final String QUAD_OBJ = "mtllib scene.mtl\no quad\nv 0 0 0\nv 1 0 0\n" +
+            "v 1 1 0\nv 0 1 0\nvt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\nvn 0 0 1\nusemtl red\n" +
+            "f 1/1/1 2/2/1 3/3/1 4/4/1\no line\nv 2 2 0\nf 1 5\n";
+
+    private static ByteBuffer write(OBJData data, boolean outlines) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryMeshWriter.write(data, outlines, outputStream);
+        return ByteBuffer.wrap(outputStream.toByteArray());
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        OBJData data = OBJParser.parse(QUAD_OBJ.getBytes(Charset.forName("UTF-8")));
+        ArrayList<BinaryMeshEntry> entries = BinaryMeshFormat.parse(write(data, true));
+        assertEquals(2, entries.size());
+
+        BinaryMeshEntry quad = entries.get(0);
+        assertEquals("quad", quad.name);
+        assertEquals("scene.mtl", quad.materialLibrary);
+        assertEquals("red", quad.materialName);
+        assertEquals(BinaryMeshFormat.RENDER_TRIANGLES, quad.renderMethod);
+        assertEquals(3, quad.elementsPerTangent);
+        assertEquals(4, quad.vertexCount);
+        assertEquals(2, quad.indexSize);
+        assertEquals(6, quad.indexCount);
+        assertArrayEquals(new float[]{0f, 0f, 1f, 1f}, quad.boundBox, 0f);
+
+        // The vertex data must match what the mesh would have uploaded from the OBJ
+        IndexedGeometry geometry = data.resolveIndexed(data.objects.get(0),
+                new VertexIndexMap(4));
+        VertexData expected = new VertexData(geometry.positions, geometry.texels,
+                geometry.normals, geometry.indices, 3, 2, 3);
+        float[] vertices = new float[expected.vertices.length];
+        quad.vertexData.asFloatBuffer().get(vertices);
+        assertEquals(expected.vertices.length * 4, quad.vertexData.remaining());
+        assertArrayEquals(expected.vertices, vertices, 0f);
+        assertArrayEquals(geometry.positions, quad.getPositions(), 0f);
+
+        short[] indices = new short[quad.indexCount];
+        quad.indexData.asShortBuffer().get(indices);
+        assertArrayEquals(new short[]{0, 1, 2, 0, 2, 3}, indices);
+
+        // Outline contains the xy of every face corner
+        float[] outline = quad.getOutline();
+        assertEquals(12, outline.length);
+        assertArrayEquals(new float[]{1f, 1f}, new float[]{outline[4], outline[5]}, 0f);
+
+        // Line object has a different render method and shares no vertices
+        BinaryMeshEntry line = entries.get(1);
+        assertEquals("line", line.name);
+        assertEquals(BinaryMeshFormat.RENDER_LINES, line.renderMethod);
+        assertEquals(BinaryMeshFormat.NO_INDICES, line.indexSize);
+        assertNull(line.indexData);
+        assertEquals(2, line.vertexCount);
+    }
+
+    @Test
+    public void withoutOutlinesTest() throws IOException {
+        OBJData data = OBJParser.parse(QUAD_OBJ.getBytes(Charset.forName("UTF-8")));
+        BinaryMeshEntry quad = BinaryMeshFormat.parse(write(data, false)).get(0);
+        assertNull(quad.getOutline());
+        assertNotNull(quad.boundBox);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFileTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x12345678).putInt(1).putInt(0).position(0);
+        BinaryMeshFormat.parse(buffer);
+    }
+
+    // Compares the CPU side of loading the demo models: parsing, indexing and interleaving the OBJ
+    // against parsing the binary mesh file (the GPU upload is the same for both)
+    @Test
+    public void BinaryLoadPerformanceCheck() throws IOException {
+        for(File file : DemoModels.getAll()) {
+            byte[] obj = Files.readAllBytes(file.toPath());
+            byte[] binary = write(OBJParser.parse(obj), false).array();
+
+            long objTime = Long.MAX_VALUE;
+            long binaryTime = Long.MAX_VALUE;
+            for(int i = 0; i < NUM_RUNS; i++) {
+                long timeStart = System.nanoTime();
+                OBJData data = OBJParser.parse(obj);
+                VertexIndexMap vertexIndexMap = new VertexIndexMap(data.getPositionCount());
+                for(int o = 0; o < data.objects.size(); o++) {
+                    IndexedGeometry geometry = data.resolveIndexed(data.objects.get(o),
+                            vertexIndexMap);
+                    new VertexData(geometry.positions, geometry.texels, geometry.normals,
+                            geometry.indices, geometry.positionComponents,
+                            geometry.texelComponents, geometry.normalComponents);
+                }
+                long timeMiddle = System.nanoTime();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(binary.length);
+                buffer.put(binary).position(0);
+                BinaryMeshFormat.parse(buffer);
+                long timeEnd = System.nanoTime();
+
+                objTime = Math.min(objTime, timeMiddle - timeStart);
+                binaryTime = Math.min(binaryTime, timeEnd - timeMiddle);
+            }
+
+            System.out.println(file.getName() + " (" + (obj.length / 1024) + "KB OBJ, " +
+                    (binary.length / 1024) + "KB binary):");
+            System.out.println("\tOBJ US: " + (objTime / 1000));
+            System.out.println("\tBinary US: " + (binaryTime / 1000));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Physics.BoundBox3D;
+import com.crispin.crispinmobile.Physics.BoundSphere;
+import com.crispin.crispinmobile.Rendering.Utilities.ModelMatrix;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BoundsTest {
+    // Random points in a box that is not centred on the origin
+    private static float[] createPoints(int count, long seed) {
+        Random random = new Random(seed);
+        float[] points = new float[count * 3];
+        for(int i = 0; i < points.length; i += 3) {
+            points[i] = 5.0f + random.nextFloat() * 2.0f;
+            points[i + 1] = -3.0f + random.nextFloat() * 4.0f;
+            points[i + 2] = random.nextFloat();
+        }
+        return points;
+    }
+
+    // Column major matrix: rotate 30 degrees around z, scale (2, 1, 3), then translate
+    private static ModelMatrix createMatrix() {
+        final float cos = (float)Math.cos(Math.toRadians(30.0));
+        final float sin = (float)Math.sin(Math.toRadians(30.0));
+        return new ModelMatrix(new float[]{
+                cos * 2.0f, sin * 2.0f, 0.0f, 0.0f,
+                -sin, cos, 0.0f, 0.0f,
+                0.0f, 0.0f, 3.0f, 0.0f,
+                10.0f, -4.0f, 2.0f, 1.0f});
+    }
+
+    private static float[] transform(float[] m, float x, float y, float z) {
+        return new float[]{m[0] * x + m[4] * y + m[8] * z + m[12],
+                m[1] * x + m[5] * y + m[9] * z + m[13],
+                m[2] * x + m[6] * y + m[10] * z + m[14]};
+    }
+
+    @Test
+    public void boundBoxTest() {
+        float[] points = createPoints(1000, 1);
+        BoundBox3D box = BoundBox3D.create(points, 0, 3, 3, 1000);
+        float maxX = -Float.MAX_VALUE;
+        for(int i = 0; i < points.length; i += 3) {
+            assertTrue(box.contains(points[i], points[i + 1], points[i + 2]));
+            maxX = Math.max(maxX, points[i]);
+        }
+
+        // The box is tight
+        assertEquals(maxX, box.x + box.w, 1e-5f);
+
+        // Interleaved vertices (position then texel) and 2D positions
+        float[] interleaved = {1.0f, 2.0f, 0.5f, 0.5f, -1.0f, 4.0f, 0.0f, 1.0f};
+        BoundBox3D box2D = BoundBox3D.create(interleaved, 0, 4, 2, 2);
+        assertEquals(-1.0f, box2D.x, 0.0f);
+        assertEquals(2.0f, box2D.y, 0.0f);
+        assertEquals(2.0f, box2D.w, 0.0f);
+        assertEquals(2.0f, box2D.h, 0.0f);
+        assertEquals(0.0f, box2D.l, 0.0f);
+    }
+
+    @Test
+    public void boundSphereTest() {
+        float[] points = createPoints(1000, 2);
+        BoundSphere sphere = BoundSphere.create(points, 0, 3, 3, 1000);
+        for(int i = 0; i < points.length; i += 3) {
+            assertTrue(sphere.contains(points[i], points[i + 1], points[i + 2]));
+        }
+
+        // Within 10% of the smallest sphere, which is at least half the diagonal of the box
+        BoundBox3D box = BoundBox3D.create(points, 0, 3, 3, 1000);
+        final float halfDiagonal = (float)Math.sqrt(box.w * box.w + box.h * box.h +
+                box.l * box.l) / 2.0f;
+        assertTrue(sphere.radius <= halfDiagonal * 1.1f);
+
+        // Points on a sphere give (nearly) that sphere
+        Random random = new Random(3);
+        float[] spherePoints = new float[3000];
+        for(int i = 0; i < spherePoints.length; i += 3) {
+            final double theta = Math.acos(random.nextDouble() * 2.0 - 1.0);
+            final double phi = random.nextDouble() * Math.PI * 2.0;
+            spherePoints[i] = 1.0f + (float)(Math.sin(theta) * Math.cos(phi));
+            spherePoints[i + 1] = (float)(Math.sin(theta) * Math.sin(phi));
+            spherePoints[i + 2] = (float)Math.cos(theta);
+        }
+        BoundSphere unit = BoundSphere.create(spherePoints, 0, 3, 3, 1000);
+        assertEquals(1.0f, unit.radius, 0.05f);
+        assertEquals(1.0f, unit.x, 0.05f);
+    }
+
+    @Test
+    public void transformTest() {
+        float[] points = createPoints(500, 4);
+        BoundBox3D box = BoundBox3D.create(points, 0, 3, 3, 500);
+        BoundSphere sphere = BoundSphere.create(points, 0, 3, 3, 500);
+        ModelMatrix modelMatrix = createMatrix();
+        float[] m = modelMatrix.getFloats();
+
+        BoundBox3D worldBox = new BoundBox3D();
+        BoundSphere worldSphere = new BoundSphere();
+        assertSame(worldBox, box.transform(modelMatrix, worldBox));
+        assertSame(worldSphere, sphere.transform(modelMatrix, worldSphere));
+
+        // Every transformed point is inside the transformed bounds
+        for(int i = 0; i < points.length; i += 3) {
+            float[] p = transform(m, points[i], points[i + 1], points[i + 2]);
+            assertTrue(worldBox.contains(p[0], p[1], p[2]));
+            final float dx = p[0] - worldSphere.x;
+            final float dy = p[1] - worldSphere.y;
+            final float dz = p[2] - worldSphere.z;
+            assertTrue(Math.sqrt(dx * dx + dy * dy + dz * dz) <= worldSphere.radius * 1.0001f);
+        }
+
+        // The box contains each transformed corner exactly, so it is as tight as an axis aligned
+        // box of the corners
+        float maxX = -Float.MAX_VALUE;
+        for(int corner = 0; corner < 8; corner++) {
+            float[] p = transform(m, box.x + ((corner & 1) != 0 ? box.w : 0.0f),
+                    box.y + ((corner & 2) != 0 ? box.h : 0.0f),
+                    box.z + ((corner & 4) != 0 ? box.l : 0.0f));
+            maxX = Math.max(maxX, p[0]);
+        }
+        assertEquals(maxX, worldBox.x + worldBox.w, 1e-4f);
+
+        // Transforming in place
+        BoundBox3D inPlace = new BoundBox3D(box);
+        inPlace.transform(modelMatrix, inPlace);
+        assertEquals(worldBox.x, inPlace.x, 0.0f);
+        assertEquals(worldBox.l, inPlace.l, 0.0f);
+    }
+
+    @Test
+    public void collisionTest() {
+        BoundBox3D box = new BoundBox3D(0.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f);
+        assertTrue(box.collidesWith(new BoundBox3D(0.5f, 0.5f, 0.5f, 1.0f, 1.0f, 1.0f)));
+        assertFalse(box.collidesWith(new BoundBox3D(0.5f, 0.5f, 1.5f, 1.0f, 1.0f, 1.0f)));
+
+        BoundSphere sphere = new BoundSphere(2.0f, 0.5f, 0.5f, 1.1f);
+        assertTrue(sphere.collidesWith(box));
+        assertTrue(box.collidesWith(sphere));
+        assertFalse(new BoundSphere(2.0f, 2.0f, 0.5f, 1.1f).collidesWith(box));
+        assertTrue(sphere.collidesWith(new BoundSphere(4.0f, 0.5f, 0.5f, 1.0f)));
+        assertFalse(sphere.collidesWith(new BoundSphere(4.5f, 0.5f, 0.5f, 1.0f)));
+    }
+}
@@ -0,0 +1,42 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+
+// Finds the OBJ models of the demos app for the tests that run against real meshes. The tests run
+// from the library directory, which the demos are a part of. If the models can not be found the
+// test is reported as skipped rather than passing without checking anything.
+class DemoModels {
+    private static final String DIRECTORY = "demos/src/main/res/raw";
+
+    // Every OBJ file of the demos
+    static ArrayList<File> getAll() {
+        File[] files = getDirectory().listFiles();
+        assumeTrue("Could not list the demo models in " + DIRECTORY, files != null);
+
+        ArrayList<File> models = new ArrayList<>();
+        for(File file : files) {
+            if(file.getName().endsWith(".obj")) {
+                models.add(file);
+            }
+        }
+        assumeTrue("There are no demo models in " + DIRECTORY, !models.isEmpty());
+        return models;
+    }
+
+    // A single OBJ file of the demos, by the name of its resource (e.g. "monkey")
+    static File get(String name) {
+        File file = new File(getDirectory(), name + ".obj");
+        assumeTrue("Could not find the demo model " + file.getPath(), file.isFile());
+        return file;
+    }
+
+    private static File getDirectory() {
+        File directory = new File(DIRECTORY);
+        assumeTrue("Could not find the demo models in " + directory.getAbsolutePath(),
+                directory.isDirectory());
+        return directory;
+    }
+}
@@ -0,0 +1,266 @@
+package com.crispin.crispinmobile;
+
+import static android.opengl.GLES30.GL_BLEND;
+import static android.opengl.GLES30.GL_DEPTH_TEST;
+import static android.opengl.GLES30.GL_STENCIL_TEST;
+import static android.opengl.GLES30.GL_TEXTURE0;
+import static android.opengl.GLES30.GL_TEXTURE_2D;
+import static android.opengl.GLES30.GL_TEXTURE_2D_ARRAY;
+import static android.opengl.GLES30.GL_UNIFORM_BUFFER;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class GLStateCacheTest {
+    // Records the calls that reach OpenGL ES
+    private static class FakeBackend implements GLStateCache.Backend {
+        final ArrayList<String> calls = new ArrayList<>();
+        boolean depthEnabled = true;
+
+        @Override
+        public void useProgram(int program) {
+            calls.add("useProgram " + program);
+        }
+
+        @Override
+        public void bindVertexArray(int vertexArray) {
+            calls.add("bindVertexArray " + vertexArray);
+        }
+
+        @Override
+        public void activeTexture(int textureUnit) {
+            calls.add("activeTexture " + (textureUnit - GL_TEXTURE0));
+        }
+
+        @Override
+        public void bindTexture(int target, int texture) {
+            calls.add("bindTexture " + target + " " + texture);
+        }
+
+        @Override
+        public void enable(int capability) {
+            calls.add("enable " + capability);
+        }
+
+        @Override
+        public void disable(int capability) {
+            calls.add("disable " + capability);
+        }
+
+        @Override
+        public boolean isEnabled(int capability) {
+            calls.add("isEnabled " + capability);
+            return depthEnabled;
+        }
+
+        @Override
+        public void viewport(int x, int y, int width, int height) {
+            calls.add("viewport " + x + " " + y + " " + width + " " + height);
+        }
+
+        @Override
+        public void bindBufferBase(int target, int index, int buffer) {
+            calls.add("bindBufferBase " + target + " " + index + " " + buffer);
+        }
+    }
+
+    private FakeBackend backend;
+
+    @Before
+    public void setUp() {
+        backend = new FakeBackend();
+        GLStateCache.setBackend(backend);
+        GLStateCache.onFrameEnd();
+    }
+
+    @Test
+    public void programTest() {
+        GLStateCache.useProgram(3);
+        GLStateCache.useProgram(3);
+        GLStateCache.useProgram(4);
+        GLStateCache.useProgram(4);
+        assertEquals(2, backend.calls.size());
+        assertEquals(2, GLStateCache.getIssuedCount());
+        assertEquals(2, GLStateCache.getSkippedCount());
+
+        // A deleted program ID may be reused, so the next use must be issued
+        GLStateCache.onProgramDeleted(4);
+        GLStateCache.useProgram(4);
+        assertEquals(3, backend.calls.size());
+    }
+
+    @Test
+    public void vertexArrayTest() {
+        GLStateCache.bindVertexArray(7);
+        GLStateCache.bindVertexArray(7);
+        assertEquals(1, backend.calls.size());
+        assertEquals(7, GLStateCache.getVertexArray());
+
+        // Deleting the bound vertex array binds 0
+        GLStateCache.onVertexArrayDeleted(7);
+        assertEquals(0, GLStateCache.getVertexArray());
+        GLStateCache.bindVertexArray(0);
+        assertEquals(1, backend.calls.size());
+    }
+
+    @Test
+    public void textureUnitTest() {
+        GLStateCache.bindTexture(0, GL_TEXTURE_2D, 10);
+        GLStateCache.bindTexture(1, GL_TEXTURE_2D, 11);
+        assertEquals(4, backend.calls.size());
+
+        // Both are already bound, so not even the active unit changes
+        GLStateCache.bindTexture(0, GL_TEXTURE_2D, 10);
+        GLStateCache.bindTexture(1, GL_TEXTURE_2D, 11);
+        assertEquals(4, backend.calls.size());
+
+        // Targets are tracked separately
+        GLStateCache.bindTexture(1, GL_TEXTURE_2D_ARRAY, 10);
+        assertEquals("bindTexture " + GL_TEXTURE_2D_ARRAY + " 10",
+                backend.calls.get(backend.calls.size() - 1));
+        assertEquals(5, backend.calls.size());
+
+        GLStateCache.bindTexture(0, GL_TEXTURE_2D, 12);
+        assertEquals("activeTexture 0", backend.calls.get(5));
+        assertEquals("bindTexture " + GL_TEXTURE_2D + " 12", backend.calls.get(6));
+    }
+
+    @Test
+    public void activeUnitBindTest() {
+        // Binding to the active unit is only cached once the active unit is known
+        GLStateCache.bindTexture(GL_TEXTURE_2D, 5);
+        GLStateCache.bindTexture(GL_TEXTURE_2D, 5);
+        assertEquals(2, backend.calls.size());
+
+        GLStateCache.activeTexture(2);
+        GLStateCache.bindTexture(GL_TEXTURE_2D, 5);
+        GLStateCache.bindTexture(GL_TEXTURE_2D, 5);
+        assertEquals(4, backend.calls.size());
+
+        // The binding made on the active unit is known when binding for a draw
+        GLStateCache.bindTexture(2, GL_TEXTURE_2D, 5);
+        assertEquals(4, backend.calls.size());
+    }
+
+    @Test
+    public void textureDeletedTest() {
+        GLStateCache.bindTexture(0, GL_TEXTURE_2D, 9);
+        GLStateCache.bindTexture(3, GL_TEXTURE_2D, 9);
+        GLStateCache.onTextureDeleted(9);
+        final int calls = backend.calls.size();
+
+        // The units now have 0 bound
+        GLStateCache.bindTexture(0, GL_TEXTURE_2D, 0);
+        GLStateCache.bindTexture(3, GL_TEXTURE_2D, 0);
+        assertEquals(calls, backend.calls.size());
+    }
+
+    @Test
+    public void capabilityTest() {
+        // The first query asks the driver, after that the cached state is used
+        assertTrue(GLStateCache.isEnabled(GL_DEPTH_TEST));
+        assertTrue(GLStateCache.isEnabled(GL_DEPTH_TEST));
+        assertEquals(1, backend.calls.size());
+
+        GLStateCache.enable(GL_DEPTH_TEST);
+        assertEquals(1, backend.calls.size());
+
+        GLStateCache.disable(GL_DEPTH_TEST);
+        GLStateCache.disable(GL_DEPTH_TEST);
+        assertFalse(GLStateCache.isEnabled(GL_DEPTH_TEST));
+        assertEquals(2, backend.calls.size());
+
+        // Capabilities are tracked separately
+        GLStateCache.enable(GL_BLEND);
+        GLStateCache.enable(GL_BLEND);
+        assertEquals(3, backend.calls.size());
+    }
+
+    @Test
+    public void untrackedCapabilityTest() {
+        GLStateCache.enable(GL_STENCIL_TEST);
+        GLStateCache.enable(GL_STENCIL_TEST);
+        GLStateCache.isEnabled(GL_STENCIL_TEST);
+        GLStateCache.isEnabled(GL_STENCIL_TEST);
+        assertEquals(4, backend.calls.size());
+    }
+
+    @Test
+    public void viewportTest() {
+        int[] viewport = new int[4];
+        assertFalse(GLStateCache.getViewport(viewport));
+
+        GLStateCache.viewport(0, 0, 640, 480);
+        GLStateCache.viewport(0, 0, 640, 480);
+        assertEquals(1, backend.calls.size());
+        assertTrue(GLStateCache.getViewport(viewport));
+        assertArrayEquals(new int[]{0, 0, 640, 480}, viewport);
+
+        GLStateCache.viewport(0, 0, 1024, 1024);
+        assertEquals(2, backend.calls.size());
+    }
+
+    @Test
+    public void uniformBufferTest() {
+        GLStateCache.bindUniformBuffer(0, 5);
+        GLStateCache.bindUniformBuffer(0, 5);
+        assertEquals(1, backend.calls.size());
+        assertEquals("bindBufferBase " + GL_UNIFORM_BUFFER + " 0 5", backend.calls.get(0));
+
+        // Binding points are tracked separately
+        GLStateCache.bindUniformBuffer(1, 5);
+        assertEquals(2, backend.calls.size());
+
+        // Deleting the buffer unbinds it from every binding point
+        GLStateCache.onBufferDeleted(5);
+        GLStateCache.bindUniformBuffer(0, 0);
+        GLStateCache.bindUniformBuffer(1, 0);
+        assertEquals(2, backend.calls.size());
+
+        // Binding points that are not tracked are always bound
+        GLStateCache.bindUniformBuffer(GLStateCache.MAX_UNIFORM_BUFFER_BINDINGS, 5);
+        GLStateCache.bindUniformBuffer(GLStateCache.MAX_UNIFORM_BUFFER_BINDINGS, 5);
+        assertEquals(4, backend.calls.size());
+    }
+
+    @Test
+    public void invalidateTest() {
+        GLStateCache.useProgram(1);
+        GLStateCache.bindVertexArray(2);
+        GLStateCache.bindTexture(0, GL_TEXTURE_2D, 3);
+        GLStateCache.enable(GL_DEPTH_TEST);
+        GLStateCache.viewport(0, 0, 1, 1);
+        GLStateCache.bindUniformBuffer(0, 4);
+        final int calls = backend.calls.size();
+
+        // After a new context every call must be issued again
+        GLStateCache.invalidate();
+        GLStateCache.useProgram(1);
+        GLStateCache.bindVertexArray(2);
+        GLStateCache.bindTexture(0, GL_TEXTURE_2D, 3);
+        GLStateCache.enable(GL_DEPTH_TEST);
+        GLStateCache.viewport(0, 0, 1, 1);
+        GLStateCache.bindUniformBuffer(0, 4);
+        assertEquals(calls * 2, backend.calls.size());
+    }
+
+    @Test
+    public void frameCountsTest() {
+        GLStateCache.useProgram(1);
+        GLStateCache.useProgram(1);
+        GLStateCache.useProgram(1);
+        GLStateCache.onFrameEnd();
+        assertEquals(1, GLStateCache.getFrameIssuedCount());
+        assertEquals(2, GLStateCache.getFrameSkippedCount());
+        assertEquals(0, GLStateCache.getIssuedCount());
+        assertEquals(0, GLStateCache.getSkippedCount());
+    }
+}
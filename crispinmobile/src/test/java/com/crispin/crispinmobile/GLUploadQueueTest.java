@@ -0,0 +1,194 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+
+import com.crispin.crispinmobile.Utilities.GLUploadQueue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class GLUploadQueueTest {
+    // The number to multiply milliseconds by to get nanoseconds
+    private static final long MILLISECONDS_TO_NANOSECONDS_MULTIPLY = 1000000L;
+
+    // Keeps the events that would be run on the GL thread and the time they would be run at
+    private static class FakeBackend implements GLUploadQueue.Backend {
+        final ArrayList<Runnable> events = new ArrayList<>();
+        long time;
+
+        @Override
+        public void queueEvent(Runnable event) {
+            events.add(event);
+        }
+
+        @Override
+        public long nanoTime() {
+            return time;
+        }
+
+        // Run the events that were queued before the frame, then end the frame
+        void runFrame() {
+            final ArrayList<Runnable> frameEvents = new ArrayList<>(events);
+            events.clear();
+            for(Runnable event : frameEvents) {
+                event.run();
+            }
+            GLUploadQueue.onFrameEnd();
+        }
+    }
+
+    // Records when it is run and takes a set amount of time
+    private class FakeUpload implements GLUploadQueue.Upload {
+        final String name;
+        final int sizeBytes;
+        final long durationNanos;
+
+        FakeUpload(String name, int sizeBytes, float durationMs) {
+            this.name = name;
+            this.sizeBytes = sizeBytes;
+            this.durationNanos = (long) (durationMs * MILLISECONDS_TO_NANOSECONDS_MULTIPLY);
+        }
+
+        @Override
+        public int getSizeBytes() {
+            return sizeBytes;
+        }
+
+        @Override
+        public void upload() {
+            uploaded.add(name);
+            backend.time += durationNanos;
+        }
+    }
+
+    private FakeBackend backend;
+    private ArrayList<String> uploaded;
+
+    @Before
+    public void setUp() {
+        backend = new FakeBackend();
+        uploaded = new ArrayList<>();
+        GLUploadQueue.setBackend(backend);
+        GLUploadQueue.setFrameBudget(GLUploadQueue.DEFAULT_FRAME_BUDGET_BYTES,
+                GLUploadQueue.DEFAULT_FRAME_BUDGET_MS);
+    }
+
+    @After
+    public void tearDown() {
+        GLUploadQueue.setFrameBudget(GLUploadQueue.DEFAULT_FRAME_BUDGET_BYTES,
+                GLUploadQueue.DEFAULT_FRAME_BUDGET_MS);
+    }
+
+    @Test
+    public void scheduleOnceTest() {
+        for(int i = 0; i < 3; i++) {
+            GLUploadQueue.add(new FakeUpload("upload " + i, 10, 0.0f));
+        }
+
+        // The queue is processed by one event however many uploads are added
+        assertEquals(1, backend.events.size());
+        assertEquals(3, GLUploadQueue.getPendingCount());
+
+        backend.runFrame();
+        assertEquals(3, uploaded.size());
+        assertEquals("upload 0", uploaded.get(0));
+        assertEquals("upload 2", uploaded.get(2));
+        assertEquals(0, GLUploadQueue.getPendingCount());
+        assertEquals(0, backend.events.size());
+
+        // Once the queue is empty the next upload schedules it again
+        GLUploadQueue.add(new FakeUpload("upload 3", 10, 0.0f));
+        assertEquals(1, backend.events.size());
+    }
+
+    @Test
+    public void byteBudgetTest() {
+        GLUploadQueue.setFrameBudget(100, 1000.0f);
+        for(int i = 0; i < 5; i++) {
+            GLUploadQueue.add(new FakeUpload("upload " + i, 40, 0.0f));
+        }
+
+        // Only the uploads that fit in the budget are run, the rest continue on the next frame
+        backend.runFrame();
+        assertEquals(2, uploaded.size());
+        assertEquals(3, GLUploadQueue.getPendingCount());
+        assertEquals(1, backend.events.size());
+
+        backend.runFrame();
+        assertEquals(4, uploaded.size());
+
+        backend.runFrame();
+        assertEquals(5, uploaded.size());
+        assertEquals("upload 4", uploaded.get(4));
+        assertEquals(0, GLUploadQueue.getPendingCount());
+        assertEquals(0, backend.events.size());
+    }
+
+    @Test
+    public void timeBudgetTest() {
+        GLUploadQueue.setFrameBudget(1024 * 1024, 4.0f);
+        for(int i = 0; i < 5; i++) {
+            GLUploadQueue.add(new FakeUpload("upload " + i, 10, 3.0f));
+        }
+
+        // The second upload starts 3ms in to the frame, the third would start after the budget
+        backend.runFrame();
+        assertEquals(2, uploaded.size());
+
+        backend.runFrame();
+        assertEquals(4, uploaded.size());
+
+        backend.runFrame();
+        assertEquals(5, uploaded.size());
+        assertEquals(0, GLUploadQueue.getPendingCount());
+    }
+
+    @Test
+    public void atLeastOneUploadTest() {
+        GLUploadQueue.setFrameBudget(100, 4.0f);
+        GLUploadQueue.add(new FakeUpload("large", 500, 0.0f));
+        GLUploadQueue.add(new FakeUpload("slow", 10, 10.0f));
+        GLUploadQueue.add(new FakeUpload("small", 10, 0.0f));
+
+        // An upload larger than the byte budget is still run on its own
+        backend.runFrame();
+        assertEquals(1, uploaded.size());
+        assertEquals("large", uploaded.get(0));
+
+        // As is an upload that takes longer than the time budget
+        backend.runFrame();
+        assertEquals(2, uploaded.size());
+        assertEquals("slow", uploaded.get(1));
+
+        backend.runFrame();
+        assertEquals(3, uploaded.size());
+        assertEquals(0, GLUploadQueue.getPendingCount());
+    }
+
+    @Test
+    public void drainTest() {
+        GLUploadQueue.setFrameBudget(1, 0.0f);
+        for(int i = 0; i < 5; i++) {
+            GLUploadQueue.add(new FakeUpload("upload " + i, 40, 1.0f));
+        }
+
+        // Every upload is run straight away, ignoring the budget
+        GLUploadQueue.drain();
+        assertEquals(5, uploaded.size());
+        assertEquals("upload 4", uploaded.get(4));
+        assertEquals(0, GLUploadQueue.getPendingCount());
+
+        // The event that was scheduled finds the queue empty and nothing is left to resume
+        backend.runFrame();
+        assertEquals(5, uploaded.size());
+        assertEquals(0, backend.events.size());
+
+        GLUploadQueue.add(new FakeUpload("upload 5", 40, 0.0f));
+        assertEquals(1, backend.events.size());
+        backend.runFrame();
+        assertEquals(6, uploaded.size());
+    }
+}
@@ -0,0 +1,190 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Models.ModelProperties;
+import com.crispin.crispinmobile.Rendering.Utilities.InstanceBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+public class InstanceBufferTest {
+    // Records the buffer calls that reach OpenGL ES
+    private static class FakeBackend implements InstanceBuffer.Backend {
+        final ArrayList<String> calls = new ArrayList<>();
+        int nextBuffer = 1;
+
+        @Override
+        public int genBuffer() {
+            calls.add("gen " + nextBuffer);
+            return nextBuffer++;
+        }
+
+        @Override
+        public void bufferData(int buffer, int size, FloatBuffer data) {
+            calls.add("data " + buffer + " " + size);
+        }
+
+        @Override
+        public void bufferSubData(int buffer, int offset, int size, FloatBuffer data) {
+            calls.add("sub " + buffer + " " + offset + " " + size);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            calls.add("delete " + buffer);
+        }
+    }
+
+    private FakeBackend backend;
+    private InstanceBuffer instances;
+
+    @Before
+    public void setUp() {
+        backend = new FakeBackend();
+        InstanceBuffer.setBackend(backend);
+        InstanceBuffer.onFrameEnd();
+        instances = new InstanceBuffer();
+    }
+
+    @Test
+    public void uploadOnlyChangedTest() {
+        final ModelProperties[] properties = add(4);
+
+        // Created and uploaded in full the first time
+        instances.update();
+        assertEquals(2, backend.calls.size());
+        assertEquals("gen 1", backend.calls.get(0));
+        assertEquals(4, InstanceBuffer.getUploadCount());
+
+        // Nothing has changed
+        instances.update();
+        assertEquals(2, backend.calls.size());
+
+        // One run for each group of neighbouring changes
+        properties[1].setPosition(1.0f, 2.0f, 3.0f);
+        properties[2].setScale(2.0f);
+        properties[0].setColour(Colour.RED);
+        instances.update();
+        assertEquals(3, backend.calls.size());
+        assertEquals("sub 1 0 " + 3 * InstanceBuffer.STRIDE, backend.calls.get(2));
+        assertEquals(7, InstanceBuffer.getUploadCount());
+
+        properties[3].translate(1.0f, 0.0f, 0.0f);
+        properties[1].material.markChanged();
+        instances.update();
+        assertEquals(5, backend.calls.size());
+        assertEquals("sub 1 " + InstanceBuffer.STRIDE + " " + InstanceBuffer.STRIDE,
+                backend.calls.get(3));
+        assertEquals("sub 1 " + 3 * InstanceBuffer.STRIDE + " " + InstanceBuffer.STRIDE,
+                backend.calls.get(4));
+    }
+
+    @Test
+    public void dataTest() {
+        final ModelProperties properties = new ModelProperties(new Material(
+                new Colour(0.25f, 0.5f, 0.75f, 1.0f)));
+        properties.setPosition(1.0f, 2.0f, 3.0f);
+        instances.add(properties);
+        instances.update();
+
+        // The matrix columns then the colour
+        final float[] data = instances.getData();
+        assertEquals(1.0f, data[12], 0.0f);
+        assertEquals(3.0f, data[14], 0.0f);
+        assertEquals(0.25f, data[InstanceBuffer.NUM_FLOATS_MATRIX], 0.0f);
+        assertEquals(1.0f, data[InstanceBuffer.NUM_FLOATS_MATRIX + 3], 0.0f);
+    }
+
+    @Test
+    public void swapRemoveTest() {
+        final ModelProperties[] properties = add(3);
+        instances.update();
+
+        // The last instance moves in to the gap and is uploaded there
+        assertTrue(instances.remove(properties[0]));
+        assertFalse(instances.remove(properties[0]));
+        assertEquals(2, instances.size());
+        assertSame(properties[2], instances.get(0));
+        assertFalse(instances.contains(properties[0]));
+        instances.update();
+        assertEquals("sub 1 0 " + InstanceBuffer.STRIDE, backend.calls.get(2));
+
+        // The moved instance can still be removed
+        assertTrue(instances.remove(properties[2]));
+        assertSame(properties[1], instances.get(0));
+        assertEquals(1, instances.size());
+    }
+
+    @Test
+    public void growTest() {
+        add(16);
+        instances.update();
+        add(1);
+
+        // Grows past the size of the buffer so the whole buffer is uploaded again
+        instances.update();
+        assertEquals(3, backend.calls.size());
+        assertTrue(backend.calls.get(2).startsWith("data 1 "));
+        assertEquals(33, InstanceBuffer.getUploadCount());
+    }
+
+    @Test
+    public void materialChangeTest() {
+        final ModelProperties properties = add(1)[0];
+        assertTrue(instances.hasMaterialChanged(0));
+        instances.update();
+        assertFalse(instances.hasMaterialChanged(0));
+
+        properties.setMaterial(new Material());
+        assertTrue(instances.hasMaterialChanged(0));
+        instances.update();
+        assertFalse(instances.hasMaterialChanged(0));
+    }
+
+    @Test
+    public void instanceCompatibleTest() {
+        final Material a = new Material(Colour.RED);
+        final Material b = new Material(Colour.BLUE);
+        assertTrue(a.isInstanceCompatible(b));
+
+        // Anything but the colour is shared by the whole draw
+        b.shininess = 2.0f;
+        assertFalse(a.isInstanceCompatible(b));
+        final Material c = new Material(Colour.RED);
+        c.setUvMultiplier(2.0f, 2.0f);
+        assertFalse(a.isInstanceCompatible(c));
+    }
+
+    @Test
+    public void contextLostTest() {
+        add(2);
+        instances.update();
+
+        // After the context is lost the buffer is created and uploaded again
+        InstanceBuffer.invalidateAll();
+        instances.update();
+        assertEquals("gen 2", backend.calls.get(2));
+        assertEquals(4, backend.calls.size());
+
+        instances.destroy();
+        assertEquals("delete 2", backend.calls.get(4));
+    }
+
+    private ModelProperties[] add(int count) {
+        final ModelProperties[] properties = new ModelProperties[count];
+        for(int i = 0; i < count; i++) {
+            properties[i] = new ModelProperties();
+            instances.add(properties[i]);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,274 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+
+import com.crispin.crispinmobile.Rendering.Entities.DirectionalLight;
+import com.crispin.crispinmobile.Rendering.Entities.EmissiveEdge;
+import com.crispin.crispinmobile.Rendering.Entities.PointLight;
+import com.crispin.crispinmobile.Rendering.Entities.SpotLight;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+import com.crispin.crispinmobile.Rendering.Utilities.LightGroup;
+import com.crispin.crispinmobile.Rendering.Utilities.LightUniformBuffer;
+import com.crispin.crispinmobile.Rendering.Utilities.Std140Writer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+public class LightUniformBufferTest {
+    // Records the buffer calls that reach OpenGL ES
+    private static class FakeBackend implements LightUniformBuffer.Backend {
+        final ArrayList<String> calls = new ArrayList<>();
+        int nextBuffer = 1;
+
+        @Override
+        public int genBuffer() {
+            calls.add("gen " + nextBuffer);
+            return nextBuffer++;
+        }
+
+        @Override
+        public void allocate(int buffer, int size) {
+            calls.add("allocate " + buffer + " " + size);
+        }
+
+        @Override
+        public void bufferSubData(int buffer, int offset, ByteBuffer data, int size) {
+            assertEquals(offset, data.position());
+            calls.add("sub " + buffer + " " + offset + " " + size);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            calls.add("delete " + buffer);
+        }
+    }
+
+    // Records the uniform buffer bindings
+    private static class FakeStateBackend implements GLStateCache.Backend {
+        final ArrayList<String> binds = new ArrayList<>();
+
+        @Override
+        public void useProgram(int program) {
+        }
+
+        @Override
+        public void bindVertexArray(int vertexArray) {
+        }
+
+        @Override
+        public void activeTexture(int textureUnit) {
+        }
+
+        @Override
+        public void bindTexture(int target, int texture) {
+        }
+
+        @Override
+        public void enable(int capability) {
+        }
+
+        @Override
+        public void disable(int capability) {
+        }
+
+        @Override
+        public boolean isEnabled(int capability) {
+            return false;
+        }
+
+        @Override
+        public void viewport(int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void bindBufferBase(int target, int index, int buffer) {
+            binds.add(index + " " + buffer);
+        }
+    }
+
+    private FakeBackend backend;
+    private FakeStateBackend stateBackend;
+
+    @Before
+    public void setUp() {
+        backend = new FakeBackend();
+        stateBackend = new FakeStateBackend();
+        LightUniformBuffer.setBackend(backend);
+        GLStateCache.setBackend(stateBackend);
+        LightUniformBuffer.onFrameEnd();
+    }
+
+    @Test
+    public void layoutTest() {
+        // The offsets of the std140 block declared in the shaders
+        assertEquals(16, LightUniformBuffer.POINT_LIGHTS_OFFSET);
+        assertEquals(2064, LightUniformBuffer.DIRECTIONAL_LIGHT_OFFSET);
+        assertEquals(2112, LightUniformBuffer.SPOT_LIGHTS_OFFSET);
+        assertEquals(2752, LightUniformBuffer.EMISSIVE_EDGES_OFFSET);
+        assertEquals(3392, LightUniformBuffer.SIZE);
+    }
+
+    @Test
+    public void packTest() {
+        final LightGroup lightGroup = new LightGroup();
+        final PointLight pointLight = new PointLight(1.0f, 2.0f, 3.0f, 0.5f, 0.25f, 0.125f);
+        lightGroup.add(new PointLight());
+        lightGroup.add(pointLight);
+        final SpotLight spotLight = new SpotLight(4.0f, 5.0f, 6.0f, 0.0f, -1.0f, 0.0f);
+        lightGroup.add(spotLight);
+        final DirectionalLight directionalLight = new DirectionalLight();
+        lightGroup.add(directionalLight);
+        final EmissiveEdge emissiveEdge = new EmissiveEdge(1.0f, 1.0f, 2.0f, 2.0f);
+        lightGroup.add(emissiveEdge);
+
+        final ByteBuffer data = pack(lightGroup);
+        assertEquals(2, data.getInt(LightUniformBuffer.NUM_POINT_LIGHTS_OFFSET));
+        assertEquals(1, data.getInt(LightUniformBuffer.NUM_SPOT_LIGHTS_OFFSET));
+        assertEquals(1, data.getInt(LightUniformBuffer.NUM_EMISSIVE_EDGES_OFFSET));
+
+        // Second point light: position, colour at 16, then ambient to quadratic from 28
+        final int point = LightUniformBuffer.POINT_LIGHTS_OFFSET +
+                LightUniformBuffer.POINT_LIGHT_STRIDE;
+        assertEquals(3.0f, data.getFloat(point + 8), 0.0f);
+        assertEquals(0.125f, data.getFloat(point + 24), 0.0f);
+        assertEquals(pointLight.getAmbientStrength(), data.getFloat(point + 28), 0.0f);
+        assertEquals(pointLight.getQuadraticAttenuation(), data.getFloat(point + 48), 0.0f);
+
+        final int directional = LightUniformBuffer.DIRECTIONAL_LIGHT_OFFSET;
+        assertEquals(directionalLight.dy, data.getFloat(directional + 4), 0.0f);
+        assertEquals(directionalLight.getSpecularStrength(), data.getFloat(directional + 36),
+                0.0f);
+
+        // Spot light: position, direction at 16, colour at 32, then ambient to outer size from 44
+        final int spot = LightUniformBuffer.SPOT_LIGHTS_OFFSET;
+        assertEquals(6.0f, data.getFloat(spot + 8), 0.0f);
+        assertEquals(-1.0f, data.getFloat(spot + 20), 0.0f);
+        assertEquals(spotLight.getAmbientStrength(), data.getFloat(spot + 44), 0.0f);
+        assertEquals(spotLight.size, data.getFloat(spot + 68), 0.0f);
+        assertEquals(spotLight.outerSize, data.getFloat(spot + 72), 0.0f);
+
+        // Emissive edge: point A, point B at 16, colour at 32, then ambient to quadratic from 44
+        final int edge = LightUniformBuffer.EMISSIVE_EDGES_OFFSET;
+        assertEquals(1.0f, data.getFloat(edge), 0.0f);
+        assertEquals(2.0f, data.getFloat(edge + 16), 0.0f);
+        assertEquals(emissiveEdge.getQuadraticAttenuation(), data.getFloat(edge + 64), 0.0f);
+    }
+
+    @Test
+    public void noDirectionalLightTest() {
+        final ByteBuffer data = ByteBuffer.allocate(LightUniformBuffer.SIZE)
+                .order(ByteOrder.nativeOrder());
+        for(int i = 0; i < LightUniformBuffer.SIZE; i += 4) {
+            data.putInt(i, -1);
+        }
+
+        LightUniformBuffer.pack(new LightGroup(), new Std140Writer(data));
+        for(int i = 0; i < LightUniformBuffer.DIRECTIONAL_LIGHT_SIZE; i += 4) {
+            assertEquals(0, data.getInt(LightUniformBuffer.DIRECTIONAL_LIGHT_OFFSET + i));
+        }
+    }
+
+    @Test
+    public void maxLightsTest() {
+        final LightGroup lightGroup = new LightGroup();
+        for(int i = 0; i < LightUniformBuffer.MAX_POINT_LIGHTS + 5; i++) {
+            lightGroup.add(new PointLight());
+        }
+
+        final ByteBuffer data = pack(lightGroup);
+        assertEquals(LightUniformBuffer.MAX_POINT_LIGHTS,
+                data.getInt(LightUniformBuffer.NUM_POINT_LIGHTS_OFFSET));
+    }
+
+    @Test
+    public void uploadOnlyWhenChangedTest() {
+        final LightGroup lightGroup = new LightGroup();
+        final PointLight pointLight = new PointLight();
+        lightGroup.add(pointLight);
+
+        // Created, allocated, uploaded and bound the first time
+        LightUniformBuffer.bind(lightGroup);
+        LightUniformBuffer.bind(lightGroup);
+        assertEquals(3, backend.calls.size());
+        assertEquals("allocate 1 " + LightUniformBuffer.SIZE, backend.calls.get(1));
+        assertEquals("sub 1 0 " + LightUniformBuffer.SIZE, backend.calls.get(2));
+        assertEquals(1, stateBackend.binds.size());
+        assertEquals(LightUniformBuffer.BINDING + " 1", stateBackend.binds.get(0));
+
+        // A light that changes is uploaded again, and only that light
+        pointLight.translate(1.0f, 0.0f, 0.0f);
+        LightUniformBuffer.bind(lightGroup);
+        assertEquals(4, backend.calls.size());
+        assertEquals("sub 1 " + LightUniformBuffer.POINT_LIGHTS_OFFSET + " " +
+                LightUniformBuffer.POINT_LIGHT_STRIDE, backend.calls.get(3));
+
+        // Adding a light uploads the counts up to the new light
+        final SpotLight spotLight = new SpotLight();
+        lightGroup.add(spotLight);
+        LightUniformBuffer.bind(lightGroup);
+        assertEquals("sub 1 0 " + (LightUniformBuffer.SPOT_LIGHTS_OFFSET +
+                LightUniformBuffer.SPOT_LIGHT_STRIDE), backend.calls.get(4));
+
+        // Removing a light only uploads the counts
+        lightGroup.remove(spotLight);
+        LightUniformBuffer.bind(lightGroup);
+        assertEquals("sub 1 0 " + LightUniformBuffer.POINT_LIGHTS_OFFSET, backend.calls.get(5));
+        assertEquals(6, backend.calls.size());
+        assertEquals(4, LightUniformBuffer.getUploadCount());
+
+        // Replacing a light with one that has the same version is still a change
+        lightGroup.clearPointLights();
+        lightGroup.add(new PointLight());
+        LightUniformBuffer.bind(lightGroup);
+        assertEquals(7, backend.calls.size());
+
+        // Marking the buffer dirty uploads the whole block without allocating it again
+        lightGroup.getUniformBuffer().markDirty();
+        LightUniformBuffer.bind(lightGroup);
+        assertEquals("sub 1 0 " + LightUniformBuffer.SIZE, backend.calls.get(7));
+    }
+
+    @Test
+    public void sharedBindingTest() {
+        final LightGroup a = new LightGroup();
+        final LightGroup b = new LightGroup();
+        LightUniformBuffer.bind(a);
+        LightUniformBuffer.bind(b);
+        LightUniformBuffer.bind(b);
+        LightUniformBuffer.bind(a);
+
+        // Each group has its own buffer, which is only bound when the group changes
+        assertEquals(3, stateBackend.binds.size());
+        assertEquals(6, backend.calls.size());
+    }
+
+    @Test
+    public void contextLostTest() {
+        final LightGroup lightGroup = new LightGroup();
+        LightUniformBuffer.bind(lightGroup);
+
+        // After the context is lost the buffer is created and uploaded again
+        LightUniformBuffer.invalidateAll();
+        GLStateCache.invalidate();
+        LightUniformBuffer.bind(lightGroup);
+        assertEquals(6, backend.calls.size());
+        assertEquals("gen 2", backend.calls.get(3));
+        assertEquals("allocate 2 " + LightUniformBuffer.SIZE, backend.calls.get(4));
+
+        lightGroup.destroy();
+        assertEquals("delete 2", backend.calls.get(6));
+    }
+
+    private static ByteBuffer pack(LightGroup lightGroup) {
+        final ByteBuffer data = ByteBuffer.allocate(LightUniformBuffer.SIZE)
+                .order(ByteOrder.nativeOrder());
+        final Std140Writer writer = new Std140Writer(data);
+        LightUniformBuffer.pack(lightGroup, writer);
+        assertEquals(LightUniformBuffer.SIZE, writer.getOffset());
+        return data;
+    }
+}
@@ -0,0 +1,66 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.MeshLoading.MaterialData;
+import com.crispin.crispinmobile.MeshLoading.MaterialTemplateLibrary;
+import com.crispin.crispinmobile.MeshLoading.MaterialTemplateLibraryLoader;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class MaterialTemplateLibraryLoaderTest {
+    private static MaterialTemplateLibrary parse(String mtl) throws IOException {
+        return MaterialTemplateLibraryLoader.parse(mtl.getBytes(Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void parseTest() throws IOException {
+        MaterialTemplateLibrary library = parse("# Exported material\nKd 9 9 9\n\n" +
+                "newmtl Brick\n  Kd 0.5 0.25 1.0\nNs 32\nmap_Kd -s 1 1 1 Textures/Brick.png\n" +
+                "norm Brick_Normal.png\r\nnewmtl Plain\nKd 1 1 1\n");
+        assertEquals(2, library.size());
+
+        // Statements before the first material are ignored
+        MaterialData brick = library.get("Brick");
+        assertEquals("Brick", brick.name);
+        assertEquals(0.5f, brick.diffuseColour.red, 0.0f);
+        assertEquals(0.25f, brick.diffuseColour.green, 0.0f);
+        assertEquals(1.0f, brick.diffuseColour.blue, 0.0f);
+        assertEquals(32.0f, brick.specularExponent, 0.0f);
+
+        // Options before the file name of a texture map are skipped
+        assertEquals("Textures/Brick.png", brick.diffuseTextureMap);
+        assertEquals("Brick_Normal.png", brick.normalTextureMap);
+
+        MaterialData plain = library.get("Plain");
+        assertEquals(1.0f, plain.diffuseColour.red, 0.0f);
+        assertTrue(plain.diffuseTextureMap.isEmpty());
+    }
+
+    @Test
+    public void getTextureMapsTest() throws IOException {
+        MaterialTemplateLibrary library = parse("newmtl a\nmap_Kd wall.png\nnorm wall_n.png\n" +
+                "newmtl b\nmap_Kd wall.png\nmap_Ks wall_s.png\n");
+        ArrayList<String> textureMaps = MaterialTemplateLibraryLoader.getTextureMaps(library);
+        assertEquals(3, textureMaps.size());
+        assertEquals(3, new HashSet<>(textureMaps).size());
+        assertTrue(textureMaps.containsAll(Arrays.asList("wall.png", "wall_n.png",
+                "wall_s.png")));
+    }
+
+    @Test
+    public void getResourceNameTest() {
+        assertEquals("brick_wall",
+                MaterialTemplateLibraryLoader.getResourceName("Textures/Brick-Wall.png"));
+        assertEquals("cube", MaterialTemplateLibraryLoader.getResourceName("cube.mtl"));
+        assertEquals("stone_2",
+                MaterialTemplateLibraryLoader.getResourceName("C:\\models\\Stone 2.jpg"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.MeshLoading.MeshLoadProperties;
+import com.crispin.crispinmobile.MeshLoading.MeshLoadProperty;
+
+import org.junit.Test;
+
+// The model cache uses the load properties as part of its key, so equal properties must load the
+// same meshes and a copy must not change when the original does
+public class MeshLoadPropertiesTest {
+    private static MeshLoadProperties create() {
+        MeshLoadProperty property = new MeshLoadProperty();
+        property.loadMesh = true;
+        property.createHitbox = true;
+
+        MeshLoadProperties properties = new MeshLoadProperties();
+        properties.put("monkey", property);
+        properties.createBoundBox = true;
+        return properties;
+    }
+
+    @Test
+    public void equalsTest() {
+        MeshLoadProperties a = create();
+        MeshLoadProperties b = create();
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+
+        // The parallel flag does not change the loaded meshes
+        b.parallel = true;
+        assertEquals(a, b);
+
+        b.loadAll = true;
+        assertNotEquals(a, b);
+
+        b = create();
+        b.get("monkey").loadShadowMesh = true;
+        assertNotEquals(a, b);
+
+        // The compact layout creates different meshes
+        b = create();
+        b.compactVertices = true;
+        assertNotEquals(a, b);
+
+        // Levels of detail create additional meshes
+        b = create();
+        b.lodLevels = 2;
+        assertNotEquals(a, b);
+
+        // Kept vertex data is part of the loaded mesh data
+        b = create();
+        b.keepVertexData = true;
+        assertNotEquals(a, b);
+
+        // Loaded materials are part of the loaded mesh data
+        b = create();
+        b.loadMaterials = true;
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    public void copyTest() {
+        MeshLoadProperties original = create();
+        MeshLoadProperties copy = new MeshLoadProperties(original);
+        assertEquals(original, copy);
+
+        original.get("monkey").createHitbox = false;
+        original.put("torch", new MeshLoadProperty());
+        assertTrue(copy.get("monkey").createHitbox);
+        assertFalse(copy.containsKey("torch"));
+        assertNotEquals(original, copy);
+    }
+}
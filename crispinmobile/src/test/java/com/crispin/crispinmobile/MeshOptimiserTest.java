@@ -0,0 +1,192 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.MeshLoading.IndexedGeometry;
+import com.crispin.crispinmobile.MeshLoading.MeshOptimiser;
+import com.crispin.crispinmobile.MeshLoading.OBJData;
+import com.crispin.crispinmobile.MeshLoading.OBJParser;
+import com.crispin.crispinmobile.MeshLoading.VertexCacheStatistics;
+import com.crispin.crispinmobile.MeshLoading.VertexIndexMap;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MeshOptimiserTest {
+    private static final int CACHE_SIZE = MeshOptimiser.DEFAULT_CACHE_SIZE;
+
+    // A grid of vertices, triangulated row by row (a typical export order)
+    private static IndexedGeometry createGrid(int size) {
+        final int vertexCount = size * size;
+        float[] positions = new float[vertexCount * 3];
+        float[] texels = new float[vertexCount * 2];
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                final int v = y * size + x;
+                positions[v * 3] = x;
+                positions[v * 3 + 1] = y;
+                texels[v * 2] = (float)x / size;
+                texels[v * 2 + 1] = (float)y / size;
+            }
+        }
+
+        int[] indices = new int[(size - 1) * (size - 1) * 6];
+        int i = 0;
+        for(int y = 0; y < size - 1; y++) {
+            for(int x = 0; x < size - 1; x++) {
+                final int v = y * size + x;
+                indices[i++] = v;
+                indices[i++] = v + 1;
+                indices[i++] = v + size + 1;
+                indices[i++] = v;
+                indices[i++] = v + size + 1;
+                indices[i++] = v + size;
+            }
+        }
+        return new IndexedGeometry(positions, texels, null, indices, 3, 2, 0, 3);
+    }
+
+    // Shuffle the triangle order (keeping the winding of each triangle)
+    private static int[] shuffleTriangles(int[] indices, long seed) {
+        Random random = new Random(seed);
+        int[] shuffled = indices.clone();
+        for(int t = shuffled.length / 3 - 1; t > 0; t--) {
+            final int other = random.nextInt(t + 1);
+            for(int c = 0; c < 3; c++) {
+                final int temp = shuffled[t * 3 + c];
+                shuffled[t * 3 + c] = shuffled[other * 3 + c];
+                shuffled[other * 3 + c] = temp;
+            }
+        }
+        return shuffled;
+    }
+
+    // Describe each triangle by the positions and texels of its corners, rotated so that the
+    // description does not depend on which corner is first (the winding is kept), then sort them
+    private static String[] describeTriangles(IndexedGeometry geometry) {
+        final int[] indices = geometry.indices;
+        String[] triangles = new String[indices.length / 3];
+        for(int t = 0; t < triangles.length; t++) {
+            String[] corners = new String[3];
+            for(int c = 0; c < 3; c++) {
+                final int v = indices[t * 3 + c];
+                corners[c] = Arrays.toString(Arrays.copyOfRange(geometry.positions, v * 3,
+                        v * 3 + 3)) + Arrays.toString(Arrays.copyOfRange(geometry.texels,
+                        v * 2, v * 2 + 2));
+            }
+
+            int first = 0;
+            for(int c = 1; c < 3; c++) {
+                if(corners[c].compareTo(corners[first]) < 0) {
+                    first = c;
+                }
+            }
+            triangles[t] = corners[first] + corners[(first + 1) % 3] + corners[(first + 2) % 3];
+        }
+        Arrays.sort(triangles);
+        return triangles;
+    }
+
+    @Test
+    public void cacheStatisticsTest() {
+        // One triangle: every vertex is a miss
+        VertexCacheStatistics single = VertexCacheStatistics.measure(new int[]{0, 1, 2}, 3, 16);
+        assertEquals(3.0f, single.getACMR(), 0.0f);
+        assertEquals(1.0f, single.getATVR(), 0.0f);
+
+        // Two triangles sharing an edge: the shared vertices hit
+        VertexCacheStatistics quad = VertexCacheStatistics.measure(
+                new int[]{0, 1, 2, 0, 2, 3}, 4, 16);
+        assertEquals(4, quad.misses);
+        assertEquals(2.0f, quad.getACMR(), 0.0f);
+
+        // A cache of three vertices: vertex 0 is evicted by vertex 3 (FIFO, hits do not refresh)
+        VertexCacheStatistics fifo = VertexCacheStatistics.measure(
+                new int[]{0, 1, 2, 0, 2, 3, 0, 3, 1}, 4, 3);
+        assertEquals(6, fifo.misses);
+    }
+
+    @Test
+    public void gridTest() {
+        IndexedGeometry grid = createGrid(64);
+        IndexedGeometry shuffled = new IndexedGeometry(grid.positions, grid.texels, null,
+                shuffleTriangles(grid.indices, 1), 3, 2, 0, 3);
+
+        IndexedGeometry[] inputs = {grid, shuffled};
+        for(IndexedGeometry input : inputs) {
+            final int vertexCount = input.getVertexCount();
+            VertexCacheStatistics before = VertexCacheStatistics.measure(input.indices,
+                    vertexCount, CACHE_SIZE);
+            IndexedGeometry optimised = MeshOptimiser.optimise(input);
+            VertexCacheStatistics after = VertexCacheStatistics.measure(optimised.indices,
+                    vertexCount, CACHE_SIZE);
+
+            // The same triangles are drawn
+            assertEquals(input.indices.length, optimised.indices.length);
+            assertArrayEquals(describeTriangles(input), describeTriangles(optimised));
+
+            assertTrue(after.getACMR() < before.getACMR());
+            assertTrue(after.getACMR() < 0.8f);
+            assertTrue(after.getATVR() < 1.6f);
+        }
+    }
+
+    @Test
+    public void vertexOrderTest() {
+        IndexedGeometry grid = createGrid(16);
+        int[] shuffled = shuffleTriangles(grid.indices, 2);
+        IndexedGeometry reordered = MeshOptimiser.reorderVertices(grid, shuffled);
+
+        // Vertices are in the order that they are first used
+        int next = 0;
+        for(int index : reordered.indices) {
+            assertTrue(index <= next);
+            if(index == next) {
+                next++;
+            }
+        }
+        assertEquals(grid.getVertexCount(), next);
+
+        // Each index still references the same vertex data
+        for(int i = 0; i < shuffled.length; i++) {
+            assertArrayEquals(Arrays.copyOfRange(grid.positions, shuffled[i] * 3,
+                    shuffled[i] * 3 + 3), Arrays.copyOfRange(reordered.positions,
+                    reordered.indices[i] * 3, reordered.indices[i] * 3 + 3), 0.0f);
+        }
+    }
+
+    @Test
+    public void demoModelsTest() throws IOException {
+        for(File file : DemoModels.getAll()) {
+            OBJData data = OBJParser.parse(Files.readAllBytes(file.toPath()));
+            VertexIndexMap vertexIndexMap = new VertexIndexMap(data.getPositionCount());
+            for(int o = 0; o < data.objects.size(); o++) {
+                IndexedGeometry geometry = data.resolveIndexed(data.objects.get(o),
+                        vertexIndexMap);
+                if(geometry.indices == null || geometry.verticesPerFace != 3) {
+                    continue;
+                }
+
+                final int vertexCount = geometry.getVertexCount();
+                VertexCacheStatistics before = VertexCacheStatistics.measure(geometry.indices,
+                        vertexCount, CACHE_SIZE);
+                long start = System.nanoTime();
+                IndexedGeometry optimised = MeshOptimiser.optimise(geometry);
+                long time = System.nanoTime() - start;
+                VertexCacheStatistics after = VertexCacheStatistics.measure(optimised.indices,
+                        vertexCount, CACHE_SIZE);
+                System.out.println(file.getName() + " (" + geometry.indices.length / 3 +
+                        " triangles): " + before + " -> " + after + " in " + time / 1000 +
+                        "us");
+                assertTrue(after.getACMR() <= before.getACMR());
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.MeshLoading.IndexedGeometry;
+import com.crispin.crispinmobile.MeshLoading.MeshSimplifier;
+import com.crispin.crispinmobile.MeshLoading.OBJData;
+import com.crispin.crispinmobile.MeshLoading.OBJParser;
+import com.crispin.crispinmobile.MeshLoading.VertexIndexMap;
+import com.crispin.crispinmobile.Rendering.Utilities.LODGroup;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class MeshSimplifierTest {
+    // A flat grid in the xy plane. If seam is true, the vertices of the middle column are split
+    // so that the triangles either side of it have different texels (like a UV seam).
+    private static IndexedGeometry createGrid(int size, boolean seam) {
+        final int seamColumn = size / 2;
+        final int vertexCount = size * size + (seam ? size : 0);
+        float[] positions = new float[vertexCount * 3];
+        float[] texels = new float[vertexCount * 2];
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                final int v = y * size + x;
+                positions[v * 3] = x;
+                positions[v * 3 + 1] = y;
+                texels[v * 2] = (float)x / size;
+                texels[v * 2 + 1] = (float)y / size;
+            }
+
+            if(seam) {
+                final int v = size * size + y;
+                positions[v * 3] = seamColumn;
+                positions[v * 3 + 1] = y;
+                texels[v * 2] = 1.0f;
+                texels[v * 2 + 1] = (float)y / size;
+            }
+        }
+
+        int[] indices = new int[(size - 1) * (size - 1) * 6];
+        int i = 0;
+        for(int y = 0; y < size - 1; y++) {
+            for(int x = 0; x < size - 1; x++) {
+                int[] quad = {y * size + x, y * size + x + 1, (y + 1) * size + x + 1,
+                        (y + 1) * size + x};
+                if(seam && x == seamColumn) {
+                    quad[0] = size * size + y;
+                    quad[3] = size * size + y + 1;
+                }
+                indices[i++] = quad[0];
+                indices[i++] = quad[1];
+                indices[i++] = quad[2];
+                indices[i++] = quad[0];
+                indices[i++] = quad[2];
+                indices[i++] = quad[3];
+            }
+        }
+        return new IndexedGeometry(positions, texels, null, indices, 3, 2, 0, 3);
+    }
+
+    // A sphere of radius one made of rings and segments
+    private static IndexedGeometry createSphere(int rings, int segments) {
+        final int vertexCount = (rings + 1) * (segments + 1);
+        float[] positions = new float[vertexCount * 3];
+        float[] normals = new float[vertexCount * 3];
+        for(int r = 0; r <= rings; r++) {
+            final double theta = Math.PI * r / rings;
+            for(int s = 0; s <= segments; s++) {
+                // The last segment shares the positions of the first (a seam)
+                final double phi = 2.0 * Math.PI * (s % segments) / segments;
+                final int v = r * (segments + 1) + s;
+                positions[v * 3] = (float)(Math.sin(theta) * Math.cos(phi));
+                positions[v * 3 + 1] = (float)Math.cos(theta);
+                positions[v * 3 + 2] = (float)(Math.sin(theta) * Math.sin(phi));
+                System.arraycopy(positions, v * 3, normals, v * 3, 3);
+            }
+        }
+
+        // The poles are shared by every segment so they have the same position
+        for(int s = 0; s <= segments; s++) {
+            positions[s * 3] = 0.0f;
+            positions[s * 3 + 2] = 0.0f;
+            positions[(rings * (segments + 1) + s) * 3] = 0.0f;
+            positions[(rings * (segments + 1) + s) * 3 + 2] = 0.0f;
+        }
+
+        int[] indices = new int[rings * segments * 6];
+        int i = 0;
+        for(int r = 0; r < rings; r++) {
+            for(int s = 0; s < segments; s++) {
+                final int a = r * (segments + 1) + s;
+                final int b = a + segments + 1;
+                if(r != 0) {
+                    indices[i++] = a;
+                    indices[i++] = a + 1;
+                    indices[i++] = b;
+                }
+                if(r != rings - 1) {
+                    indices[i++] = a + 1;
+                    indices[i++] = b + 1;
+                    indices[i++] = b;
+                }
+            }
+        }
+        return new IndexedGeometry(positions, null, normals, java.util.Arrays.copyOf(indices, i),
+                3, 0, 3, 3);
+    }
+
+    // The total signed area of the triangles in the xy plane (counter-clockwise is positive)
+    private static double signedArea(IndexedGeometry geometry) {
+        double area = 0.0;
+        final float[] p = geometry.positions;
+        for(int t = 0; t < geometry.indices.length; t += 3) {
+            final int a = geometry.indices[t] * 3;
+            final int b = geometry.indices[t + 1] * 3;
+            final int c = geometry.indices[t + 2] * 3;
+            area += ((p[b] - p[a]) * (p[c + 1] - p[a + 1]) -
+                    (p[c] - p[a]) * (p[b + 1] - p[a + 1])) / 2.0;
+        }
+        return area;
+    }
+
+    @Test
+    public void flatGridTest() {
+        final int size = 32;
+        final boolean[] seams = {false, true};
+        for(boolean seam : seams) {
+            IndexedGeometry grid = createGrid(size, seam);
+            final int target = 100;
+            MeshSimplifier simplifier = new MeshSimplifier(grid);
+            IndexedGeometry simplified = simplifier.simplify(target, 0.001f);
+
+            // A flat grid can be simplified to the target without any error
+            assertTrue(simplifier.getTriangleCount() <= target);
+            assertEquals(simplifier.getTriangleCount() * 3, simplified.indices.length);
+            assertEquals(0.0f, simplifier.getError(), 1e-5f);
+
+            // No triangles have flipped and there are no holes, so the area is the same and the
+            // outline has not moved
+            assertEquals(signedArea(grid), signedArea(simplified), 1e-3);
+            for(int v = 0; v < simplified.getVertexCount(); v++) {
+                assertEquals(0.0f, simplified.positions[v * 3 + 2], 0.0f);
+                assertTrue(simplified.positions[v * 3] >= 0 &&
+                        simplified.positions[v * 3] <= size - 1);
+                assertTrue(simplified.positions[v * 3 + 1] >= 0 &&
+                        simplified.positions[v * 3 + 1] <= size - 1);
+            }
+
+            // Vertices keep the texels of one of the original vertices at the same position
+            for(int v = 0; v < simplified.getVertexCount(); v++) {
+                final float x = simplified.positions[v * 3];
+                final float u = simplified.texels[v * 2];
+                assertTrue(u == x / size || (seam && x == size / 2 && u == 1.0f));
+            }
+        }
+    }
+
+    @Test
+    public void errorBoundTest() {
+        IndexedGeometry sphere = createSphere(32, 64);
+        final int triangles = sphere.indices.length / 3;
+        final float maxError = 0.01f;
+        MeshSimplifier simplifier = new MeshSimplifier(sphere);
+        IndexedGeometry simplified = simplifier.simplify(0, maxError);
+
+        // Simplification stops at the error limit before removing every triangle
+        assertTrue(simplifier.getError() <= maxError);
+        assertTrue(simplifier.getTriangleCount() < triangles);
+        assertTrue(simplifier.getTriangleCount() > 100);
+
+        // Every vertex is an original vertex (on the sphere) and the middle of every triangle is
+        // close to the sphere
+        for(int v = 0; v < simplified.getVertexCount(); v++) {
+            final float x = simplified.positions[v * 3];
+            final float y = simplified.positions[v * 3 + 1];
+            final float z = simplified.positions[v * 3 + 2];
+            assertEquals(1.0f, Math.sqrt(x * x + y * y + z * z), 1e-5f);
+        }
+
+        for(int t = 0; t < simplified.indices.length; t += 3) {
+            double x = 0.0;
+            double y = 0.0;
+            double z = 0.0;
+            for(int c = 0; c < 3; c++) {
+                final int v = simplified.indices[t + c] * 3;
+                x += simplified.positions[v] / 3.0;
+                y += simplified.positions[v + 1] / 3.0;
+                z += simplified.positions[v + 2] / 3.0;
+            }
+            assertEquals(1.0, Math.sqrt(x * x + y * y + z * z), 0.05);
+        }
+
+        // A larger error allows more triangles to be removed
+        simplifier.simplify(0, maxError * 10.0f);
+        assertTrue(simplifier.getError() <= maxError * 10.0f);
+        assertTrue(simplifier.getTriangleCount() < simplified.indices.length / 3);
+    }
+
+    @Test
+    public void lodTargetTest() {
+        IndexedGeometry sphere = createSphere(32, 64);
+        final int triangles = sphere.indices.length / 3;
+        IndexedGeometry[] lods = MeshSimplifier.generateLODs(sphere, 4,
+                MeshSimplifier.DEFAULT_LOD_RATIO, Float.MAX_VALUE);
+        assertEquals(4, lods.length);
+
+        int target = triangles;
+        for(IndexedGeometry lod : lods) {
+            target /= 2;
+            final int lodTriangles = lod.indices.length / 3;
+
+            // Each collapse removes one or two triangles so the target is met closely
+            assertTrue(lodTriangles <= target);
+            assertTrue(lodTriangles >= target - 2);
+            assertTrue(lod.getVertexCount() < sphere.getVertexCount());
+        }
+    }
+
+    @Test
+    public void determinismTest() {
+        IndexedGeometry sphere = createSphere(24, 48);
+        IndexedGeometry first = new MeshSimplifier(sphere).simplify(300, Float.MAX_VALUE);
+        IndexedGeometry second = new MeshSimplifier(sphere).simplify(300, Float.MAX_VALUE);
+        assertArrayEquals(first.indices, second.indices);
+        assertArrayEquals(first.positions, second.positions, 0.0f);
+        assertArrayEquals(first.normals, second.normals, 0.0f);
+    }
+
+    @Test
+    public void lodSelectionTest() {
+        LODGroup lodGroup = new LODGroup(new Mesh[3], 1.0f, new float[]{0.2f, 0.1f});
+
+        // Large on the screen uses full detail
+        assertEquals(0, lodGroup.selectLevel(0, 0.5f));
+        assertEquals(0, lodGroup.selectLevel(2, Float.POSITIVE_INFINITY));
+
+        // The level is kept until the size is past the threshold by the hysteresis
+        assertEquals(0, lodGroup.selectLevel(0, 0.19f));
+        assertEquals(1, lodGroup.selectLevel(0, 0.17f));
+        assertEquals(1, lodGroup.selectLevel(1, 0.21f));
+        assertEquals(0, lodGroup.selectLevel(1, 0.23f));
+        assertEquals(1, lodGroup.selectLevel(1, 0.095f));
+        assertEquals(2, lodGroup.selectLevel(1, 0.085f));
+
+        // Multiple levels can change at once
+        assertEquals(2, lodGroup.selectLevel(0, 0.05f));
+        assertEquals(0, lodGroup.selectLevel(2, 1.0f));
+
+        // With a 90 degree field of view the viewport height at a distance is twice the distance
+        assertEquals(0.25f, LODGroup.getProjectedSize(90.0f, 1.0f, 4.0f), 1e-6f);
+        assertEquals(Float.POSITIVE_INFINITY, LODGroup.getProjectedSize(59.0f, 1.0f, 0.5f), 0.0f);
+    }
+
+    @Test
+    public void demoModelsTest() throws IOException {
+        for(File file : DemoModels.getAll()) {
+            OBJData data = OBJParser.parse(Files.readAllBytes(file.toPath()));
+            VertexIndexMap vertexIndexMap = new VertexIndexMap(data.getPositionCount());
+            for(int o = 0; o < data.objects.size(); o++) {
+                IndexedGeometry geometry = data.resolveIndexed(data.objects.get(o),
+                        vertexIndexMap);
+                if(geometry.indices == null || geometry.verticesPerFace != 3) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                IndexedGeometry[] lods = MeshSimplifier.generateLODs(geometry, 3,
+                        MeshSimplifier.DEFAULT_LOD_RATIO, Float.MAX_VALUE);
+                long time = System.nanoTime() - start;
+
+                StringBuilder counts = new StringBuilder();
+                int previous = geometry.indices.length / 3;
+                counts.append(previous);
+                for(IndexedGeometry lod : lods) {
+                    final int lodTriangles = lod.indices.length / 3;
+                    assertTrue(lodTriangles < previous);
+                    previous = lodTriangles;
+                    counts.append(" -> ").append(lodTriangles);
+                }
+                System.out.println(file.getName() + ": " + counts + " triangles in " +
+                        time / 1000 + "us");
+            }
+        }
+    }
+}
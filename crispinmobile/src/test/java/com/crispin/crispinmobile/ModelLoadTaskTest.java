@@ -0,0 +1,329 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.crispin.crispinmobile.MeshLoading.AsyncModelLoader;
+import com.crispin.crispinmobile.MeshLoading.MeshData;
+import com.crispin.crispinmobile.MeshLoading.ModelLoadTask;
+import com.crispin.crispinmobile.MeshLoading.OBJModelLoader;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.GLUploadQueue;
+import com.crispin.crispinmobile.Utilities.LoadListener;
+import com.crispin.crispinmobile.Utilities.OBJModelCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+
+public class ModelLoadTaskTest {
+    // The resource ID of the test model
+    private static final int RESOURCE_ID = 1;
+
+    // The number of objects in the test model
+    private static final int NUM_OBJECTS = 3;
+
+    // The longest time to wait for the background work of a load
+    private static final long TIMEOUT_MS = 10000;
+
+    // A model with three triangles, each in its own object
+    private static final String MODEL = "o A\n" +
+            "v 0 0 0\nv 1 0 0\nv 0 1 0\n" +
+            "f 1 2 3\n" +
+            "o B\n" +
+            "v 0 0 1\nv 1 0 1\nv 0 1 1\n" +
+            "f 4 5 6\n" +
+            "o C\n" +
+            "v 0 0 2\nv 1 0 2\nv 0 1 2\n" +
+            "f 7 8 9\n";
+
+    // Keeps the events that would be run on the GL thread
+    private static class FakeQueueBackend implements GLUploadQueue.Backend {
+        final ArrayList<Runnable> events = new ArrayList<>();
+
+        @Override
+        public synchronized void queueEvent(Runnable event) {
+            events.add(event);
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        // Run the events that were queued before the frame, then end the frame
+        void runFrame() {
+            final ArrayList<Runnable> frameEvents;
+            synchronized(this) {
+                frameEvents = new ArrayList<>(events);
+                events.clear();
+            }
+
+            for(Runnable event : frameEvents) {
+                event.run();
+            }
+            GLUploadQueue.onFrameEnd();
+        }
+    }
+
+    // Records the vertex arrays of the meshes that are created and deleted
+    private static class FakeMeshBackend implements Mesh.Backend {
+        final ArrayList<Integer> vertexArrays = new ArrayList<>();
+        final ArrayList<Integer> deletedVertexArrays = new ArrayList<>();
+        int nextObject = 1;
+
+        @Override
+        public int genVertexArray() {
+            vertexArrays.add(nextObject);
+            return nextObject++;
+        }
+
+        @Override
+        public int genBuffer() {
+            return nextObject++;
+        }
+
+        @Override
+        public void bindBuffer(int target, int buffer) {
+        }
+
+        @Override
+        public void bufferData(int target, int size, Buffer data) {
+        }
+
+        @Override
+        public void bufferSubData(int target, int offset, int size, Buffer data) {
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+        }
+
+        @Override
+        public void deleteVertexArray(int vertexArray) {
+            deletedVertexArrays.add(vertexArray);
+        }
+    }
+
+    // Ignores the state changes of the meshes
+    private static class FakeStateBackend implements GLStateCache.Backend {
+        @Override
+        public void useProgram(int program) {
+        }
+
+        @Override
+        public void bindVertexArray(int vertexArray) {
+        }
+
+        @Override
+        public void activeTexture(int textureUnit) {
+        }
+
+        @Override
+        public void bindTexture(int target, int texture) {
+        }
+
+        @Override
+        public void enable(int capability) {
+        }
+
+        @Override
+        public void disable(int capability) {
+        }
+
+        @Override
+        public boolean isEnabled(int capability) {
+            return false;
+        }
+
+        @Override
+        public void viewport(int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void bindBufferBase(int target, int index, int buffer) {
+        }
+    }
+
+    // Records the events of a load
+    private static class RecordingListener implements LoadListener {
+        final ArrayList<String> events = new ArrayList<>();
+
+        @Override
+        public void onLoad(Mesh mesh) {
+        }
+
+        @Override
+        public void onLoadModel(ArrayList<MeshData> meshes) {
+            events.add("load " + meshes.size());
+        }
+
+        @Override
+        public void onCancel() {
+            events.add("cancel");
+        }
+
+        @Override
+        public void onFail() {
+            events.add("fail");
+        }
+    }
+
+    private FakeQueueBackend queueBackend;
+    private FakeMeshBackend meshBackend;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() {
+        queueBackend = new FakeQueueBackend();
+        meshBackend = new FakeMeshBackend();
+        listener = new RecordingListener();
+        GLUploadQueue.setBackend(queueBackend);
+        Mesh.setBackend(meshBackend);
+        GLStateCache.setBackend(new FakeStateBackend());
+        OBJModelLoader.setBackend(resourceId -> MODEL.getBytes(StandardCharsets.US_ASCII));
+        OBJModelCache.invalidateAll();
+
+        // One mesh is uploaded per frame
+        GLUploadQueue.setFrameBudget(1, GLUploadQueue.DEFAULT_FRAME_BUDGET_MS);
+    }
+
+    @After
+    public void tearDown() {
+        OBJModelCache.setBudget(OBJModelCache.DEFAULT_BUDGET_BYTES);
+        GLUploadQueue.setFrameBudget(GLUploadQueue.DEFAULT_FRAME_BUDGET_BYTES,
+                GLUploadQueue.DEFAULT_FRAME_BUDGET_MS);
+    }
+
+    @Test
+    public void loadTest() throws Exception {
+        final ModelLoadTask task = AsyncModelLoader.load(RESOURCE_ID, listener);
+        awaitUploads();
+
+        // The meshes are uploaded over one frame each
+        queueBackend.runFrame();
+        assertEquals(1, meshBackend.vertexArrays.size());
+        assertFalse(task.isDone());
+
+        runUntilDone(task);
+        assertEquals(NUM_OBJECTS, meshBackend.vertexArrays.size());
+        assertEquals(0, meshBackend.deletedVertexArrays.size());
+        assertEquals(NUM_OBJECTS, task.get().size());
+        assertNotNull(task.get().get(0).mesh);
+        assertEquals(1.0f, task.getProgress(), 0.0f);
+        assertEquals("load " + NUM_OBJECTS, listener.events.get(listener.events.size() - 1));
+    }
+
+    @Test
+    public void cachedLoadTest() throws Exception {
+        final ModelLoadTask task = AsyncModelLoader.load(RESOURCE_ID, listener);
+        awaitUploads();
+        runUntilDone(task);
+        assertEquals(1, OBJModelCache.getModelCount());
+
+        // The second load shares the meshes of the first instead of uploading them again
+        final RecordingListener cachedListener = new RecordingListener();
+        final ModelLoadTask cachedTask = AsyncModelLoader.load(RESOURCE_ID, cachedListener);
+        runUntilDone(cachedTask);
+        assertEquals(NUM_OBJECTS, meshBackend.vertexArrays.size());
+        assertEquals(NUM_OBJECTS, cachedTask.get().size());
+        assertSame(task.get().get(0).mesh, cachedTask.get().get(0).mesh);
+        assertEquals("load " + NUM_OBJECTS,
+                cachedListener.events.get(cachedListener.events.size() - 1));
+
+        // Evicted once neither load holds a reference
+        OBJModelCache.setBudget(0);
+        assertEquals(1, OBJModelCache.getModelCount());
+        OBJModelCache.release(RESOURCE_ID, null);
+        OBJModelCache.release(RESOURCE_ID, null);
+        runUntilIdle();
+        assertEquals(0, OBJModelCache.getModelCount());
+        assertEquals(meshBackend.vertexArrays, meshBackend.deletedVertexArrays);
+    }
+
+    @Test
+    public void cancelTest() throws Exception {
+        final ModelLoadTask task = AsyncModelLoader.load(RESOURCE_ID, listener);
+        awaitUploads();
+        queueBackend.runFrame();
+        assertEquals(1, meshBackend.vertexArrays.size());
+
+        assertTrue(task.cancel(false));
+        assertFalse(task.cancel(false));
+        assertTrue(task.isCancelled());
+        assertTrue(task.isDone());
+
+        // The mesh that was uploaded is destroyed and the rest are skipped
+        runUntilIdle();
+        assertEquals(1, meshBackend.vertexArrays.size());
+        assertEquals(meshBackend.vertexArrays, meshBackend.deletedVertexArrays);
+        assertEquals(0, GLUploadQueue.getPendingCount());
+        assertEquals(0, OBJModelCache.getModelCount());
+        assertTrue(listener.events.contains("cancel"));
+        assertFalse(listener.events.contains("load " + NUM_OBJECTS));
+
+        try {
+            task.get();
+            fail("A cancelled load has no result");
+        } catch(CancellationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void failTest() throws Exception {
+        OBJModelLoader.setBackend(resourceId -> {
+            throw new IOException("No resource " + resourceId);
+        });
+
+        final ModelLoadTask task = AsyncModelLoader.load(RESOURCE_ID, listener);
+
+        // The listener is notified on the GL thread after the task has failed
+        final long end = System.currentTimeMillis() + TIMEOUT_MS;
+        while(!listener.events.contains("fail")) {
+            assertTrue("The load did not fail", System.currentTimeMillis() < end);
+            queueBackend.runFrame();
+            Thread.sleep(1);
+        }
+
+        assertTrue(task.isDone());
+        assertEquals(0, meshBackend.vertexArrays.size());
+        assertEquals(0, OBJModelCache.getModelCount());
+    }
+
+    // Wait for the background work to queue the uploads of the meshes
+    private void awaitUploads() throws InterruptedException {
+        final long end = System.currentTimeMillis() + TIMEOUT_MS;
+        while(GLUploadQueue.getPendingCount() < NUM_OBJECTS) {
+            assertTrue("The uploads were not queued", System.currentTimeMillis() < end);
+            Thread.sleep(1);
+        }
+    }
+
+    private void runUntilDone(ModelLoadTask task) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TIMEOUT_MS;
+        while(!task.isDone()) {
+            assertTrue("The load did not finish", System.currentTimeMillis() < end);
+            queueBackend.runFrame();
+            Thread.sleep(1);
+        }
+    }
+
+    // Run frames until there are no events left
+    private void runUntilIdle() {
+        while(!queueBackend.events.isEmpty()) {
+            queueBackend.runFrame();
+        }
+    }
+}
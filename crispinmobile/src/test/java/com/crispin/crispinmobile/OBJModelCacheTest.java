@@ -0,0 +1,243 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.MeshLoading.MeshData;
+import com.crispin.crispinmobile.MeshLoading.OBJModelLoader;
+import com.crispin.crispinmobile.Rendering.Utilities.GLStateCache;
+import com.crispin.crispinmobile.Rendering.Utilities.Mesh;
+import com.crispin.crispinmobile.Utilities.GLUploadQueue;
+import com.crispin.crispinmobile.Utilities.OBJModelCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.Buffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class OBJModelCacheTest {
+    // Keeps the events that would be run on the GL thread
+    private static class FakeQueueBackend implements GLUploadQueue.Backend {
+        final ArrayList<Runnable> events = new ArrayList<>();
+
+        @Override
+        public void queueEvent(Runnable event) {
+            events.add(event);
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        void runEvents() {
+            final ArrayList<Runnable> queuedEvents = new ArrayList<>(events);
+            events.clear();
+            for(Runnable event : queuedEvents) {
+                event.run();
+            }
+        }
+    }
+
+    // Records the vertex arrays of the meshes that are created and deleted
+    private static class FakeMeshBackend implements Mesh.Backend {
+        final ArrayList<Integer> vertexArrays = new ArrayList<>();
+        final ArrayList<Integer> deletedVertexArrays = new ArrayList<>();
+        int nextObject = 1;
+
+        @Override
+        public int genVertexArray() {
+            vertexArrays.add(nextObject);
+            return nextObject++;
+        }
+
+        @Override
+        public int genBuffer() {
+            return nextObject++;
+        }
+
+        @Override
+        public void bindBuffer(int target, int buffer) {
+        }
+
+        @Override
+        public void bufferData(int target, int size, Buffer data) {
+        }
+
+        @Override
+        public void bufferSubData(int target, int offset, int size, Buffer data) {
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+        }
+
+        @Override
+        public void deleteVertexArray(int vertexArray) {
+            deletedVertexArrays.add(vertexArray);
+        }
+    }
+
+    // Ignores the state changes of the meshes
+    private static class FakeStateBackend implements GLStateCache.Backend {
+        @Override
+        public void useProgram(int program) {
+        }
+
+        @Override
+        public void bindVertexArray(int vertexArray) {
+        }
+
+        @Override
+        public void activeTexture(int textureUnit) {
+        }
+
+        @Override
+        public void bindTexture(int target, int texture) {
+        }
+
+        @Override
+        public void enable(int capability) {
+        }
+
+        @Override
+        public void disable(int capability) {
+        }
+
+        @Override
+        public boolean isEnabled(int capability) {
+            return false;
+        }
+
+        @Override
+        public void viewport(int x, int y, int width, int height) {
+        }
+
+        @Override
+        public void bindBufferBase(int target, int index, int buffer) {
+        }
+    }
+
+    private FakeQueueBackend queueBackend;
+    private FakeMeshBackend meshBackend;
+
+    @Before
+    public void setUp() {
+        queueBackend = new FakeQueueBackend();
+        meshBackend = new FakeMeshBackend();
+        GLUploadQueue.setBackend(queueBackend);
+        Mesh.setBackend(meshBackend);
+        GLStateCache.setBackend(new FakeStateBackend());
+
+        // Every resource is a model with a single triangle, offset by the resource ID
+        OBJModelLoader.setBackend(resourceId -> ("o " + resourceId + "\n" +
+                "v 0 0 " + resourceId + "\nv 1 0 " + resourceId + "\nv 0 1 " + resourceId +
+                "\nf 1 2 3\n").getBytes(StandardCharsets.US_ASCII));
+
+        OBJModelCache.invalidateAll();
+        OBJModelCache.resetStatistics();
+        OBJModelCache.setBudget(OBJModelCache.DEFAULT_BUDGET_BYTES);
+    }
+
+    @After
+    public void tearDown() {
+        OBJModelCache.invalidateAll();
+        OBJModelCache.setBudget(OBJModelCache.DEFAULT_BUDGET_BYTES);
+    }
+
+    @Test
+    public void referenceCountTest() {
+        final ArrayList<MeshData> first = OBJModelCache.read(1, null);
+        final ArrayList<MeshData> second = OBJModelCache.read(1, null);
+
+        // The model is only loaded once and shared
+        assertSame(first, second);
+        assertEquals(1, meshBackend.vertexArrays.size());
+        assertEquals(1, OBJModelCache.getMissCount());
+        assertEquals(1, OBJModelCache.getHitCount());
+
+        // A referenced model is kept even when it is over the budget
+        OBJModelCache.setBudget(0);
+        OBJModelCache.release(1, null);
+        assertEquals(1, OBJModelCache.getModelCount());
+
+        // Once the last reference has gone it is evicted, the meshes are destroyed on the GL thread
+        OBJModelCache.release(1, null);
+        assertEquals(0, OBJModelCache.getModelCount());
+        assertEquals(0, OBJModelCache.getSizeBytes());
+        assertEquals(1, OBJModelCache.getEvictionCount());
+        assertTrue(meshBackend.deletedVertexArrays.isEmpty());
+        queueBackend.runEvents();
+        assertEquals(meshBackend.vertexArrays, meshBackend.deletedVertexArrays);
+
+        // Releasing a model that is not referenced is ignored
+        OBJModelCache.release(1, null);
+        assertEquals(1, OBJModelCache.getEvictionCount());
+
+        // The next read loads the model again
+        assertNotSame(first, OBJModelCache.read(1, null));
+        assertEquals(2, meshBackend.vertexArrays.size());
+    }
+
+    @Test
+    public void byteBudgetTest() {
+        OBJModelCache.read(1, null);
+        final long modelBytes = OBJModelCache.getSizeBytes();
+        assertTrue(modelBytes > 0);
+
+        // Room for two models
+        OBJModelCache.setBudget(modelBytes * 2);
+        OBJModelCache.read(2, null);
+        OBJModelCache.read(3, null);
+        assertEquals(3, OBJModelCache.getModelCount());
+
+        // Models are only evicted once they are released, and only as far as the budget
+        OBJModelCache.release(1, null);
+        OBJModelCache.release(2, null);
+        OBJModelCache.release(3, null);
+        assertEquals(2, OBJModelCache.getModelCount());
+        assertEquals(modelBytes * 2, OBJModelCache.getSizeBytes());
+        assertEquals(1, OBJModelCache.getEvictionCount());
+
+        // Lowering the budget evicts straight away
+        OBJModelCache.setBudget(modelBytes);
+        assertEquals(1, OBJModelCache.getModelCount());
+        assertEquals(modelBytes, OBJModelCache.getSizeBytes());
+        assertEquals(2, OBJModelCache.getEvictionCount());
+
+        queueBackend.runEvents();
+        assertEquals(2, meshBackend.deletedVertexArrays.size());
+    }
+
+    @Test
+    public void lruOrderTest() {
+        OBJModelCache.read(1, null);
+        OBJModelCache.read(2, null);
+        OBJModelCache.read(3, null);
+        OBJModelCache.release(1, null);
+        OBJModelCache.release(2, null);
+        OBJModelCache.release(3, null);
+        final long modelBytes = OBJModelCache.getSizeBytes() / 3;
+
+        // Using the first model makes the second the least recently used
+        OBJModelCache.read(1, null);
+        OBJModelCache.release(1, null);
+
+        OBJModelCache.setBudget(modelBytes);
+        queueBackend.runEvents();
+        assertEquals(Arrays.asList(meshBackend.vertexArrays.get(1),
+                meshBackend.vertexArrays.get(2)), meshBackend.deletedVertexArrays);
+
+        // The first model is still cached
+        final int hits = OBJModelCache.getHitCount();
+        OBJModelCache.read(1, null);
+        assertEquals(hits + 1, OBJModelCache.getHitCount());
+        assertEquals(3, meshBackend.vertexArrays.size());
+    }
+}
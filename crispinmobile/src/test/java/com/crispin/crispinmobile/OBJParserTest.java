@@ -0,0 +1,534 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.MeshLoading.IndexedGeometry;
+import com.crispin.crispinmobile.MeshLoading.OBJData;
+import com.crispin.crispinmobile.MeshLoading.OBJObjectData;
+import com.crispin.crispinmobile.MeshLoading.OBJParser;
+import com.crispin.crispinmobile.MeshLoading.ParallelOBJParser;
+import com.crispin.crispinmobile.MeshLoading.StreamingOBJParser;
+import com.crispin.crispinmobile.MeshLoading.VertexIndexMap;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class OBJParserTest {
+    private static final int NUM_RUNS = 3;
+    private static final int[] BENCHMARK_FACES = {10000, 100000, 1000000};
+    private static final int SCALING_BENCHMARK_FACES = 1000000;
+    private static final int STREAMING_OBJECTS = 100;
+    private static final int STREAMING_VERTICES_PER_OBJECT = 1000;
+    private static final int STREAMING_FACES_PER_OBJECT = 20000;
+
+    private static OBJData parse(String obj) {
+        return OBJParser.parse(obj.getBytes(Charset.forName("UTF-8")));
+    }
+
+    private static void assertCorner(OBJData data, int corner, int position, int texel, int normal) {
+        int index = corner * OBJData.INDICES_PER_CORNER;
+        assertEquals(position, data.faceIndices.get(index + OBJData.CORNER_POSITION));
+        assertEquals(texel, data.faceIndices.get(index + OBJData.CORNER_TEXEL));
+        assertEquals(normal, data.faceIndices.get(index + OBJData.CORNER_NORMAL));
+    }
+
+    @Test
+    public void parseFloatsTest() {
+        OBJData data = parse("v 1.5 -2.25 +3e2\nv 0.0001 -1.5E-3 123456789.0\r\nv .5 -.5 7\n");
+        assertEquals(3, data.positionComponents);
+        assertEquals(3, data.getPositionCount());
+
+        float[] expected = {1.5f, -2.25f, 300f, 0.0001f, -0.0015f, 123456789f, 0.5f, -0.5f, 7f};
+        for(int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], data.positions.get(i), Math.ulp(expected[i]));
+        }
+    }
+
+    @Test
+    public void parseFaceFormatsTest() {
+        OBJData data = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nvt 1 0\nvt 1 1\nvn 0 0 1\n" +
+                "f 1 2 3\nf 1/1 2/2 3/3\nf 1//1 2//1 3//1\nf 1/1/1 2/2/1 3/3/1\n");
+        assertEquals(2, data.texelComponents);
+        assertEquals(12, data.getCornerCount());
+
+        assertCorner(data, 0, 0, OBJParser.UNDEFINED_INDEX, OBJParser.UNDEFINED_INDEX);
+        assertCorner(data, 4, 1, 1, OBJParser.UNDEFINED_INDEX);
+        assertCorner(data, 8, 2, OBJParser.UNDEFINED_INDEX, 0);
+        assertCorner(data, 11, 2, 2, 0);
+    }
+
+    @Test
+    public void parseNegativeIndicesTest() {
+        OBJData data = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nf -3 -2 -1\n");
+        assertCorner(data, 0, 0, OBJParser.UNDEFINED_INDEX, OBJParser.UNDEFINED_INDEX);
+        assertCorner(data, 2, 2, OBJParser.UNDEFINED_INDEX, OBJParser.UNDEFINED_INDEX);
+    }
+
+    @Test
+    public void triangulateQuadTest() {
+        OBJData data = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nf 1 2 3 4\n");
+        OBJObjectData object = data.objects.get(0);
+        assertEquals(6, object.cornerCount);
+        assertEquals(3, object.verticesPerFace);
+
+        // Fan triangulation: (1, 2, 3) and (1, 3, 4)
+        int[] expected = {0, 1, 2, 0, 2, 3};
+        for(int i = 0; i < expected.length; i++) {
+            assertCorner(data, i, expected[i], OBJParser.UNDEFINED_INDEX,
+                    OBJParser.UNDEFINED_INDEX);
+        }
+    }
+
+    @Test
+    public void parseObjectsAndMaterialsTest() {
+        OBJData data = parse("# comment\nmtllib scene.mtl\no first\nv 0 0 0\nv 1 0 0\nv 1 1 0\n" +
+                "usemtl red\ns off\nf 1 2 3\no second\nusemtl blue\nf 3 2 1\nf 1 2 3\n");
+        assertEquals(2, data.objects.size());
+
+        OBJObjectData first = data.objects.get(0);
+        assertEquals("first", first.name);
+        assertEquals("scene.mtl", first.materialLibrary);
+        assertEquals("red", first.materialName);
+        assertEquals(0, first.cornerStart);
+        assertEquals(3, first.cornerCount);
+
+        OBJObjectData second = data.objects.get(1);
+        assertEquals("second", second.name);
+        assertEquals("blue", second.materialName);
+        assertEquals(3, second.cornerStart);
+        assertEquals(6, second.cornerCount);
+    }
+
+    @Test
+    public void findMaterialLibraryTest() {
+        Charset utf8 = Charset.forName("UTF-8");
+        assertEquals("scene.mtl", OBJParser.findMaterialLibrary(
+                "# comment\r\nmtllib scene.mtl\r\no first\r\nv 0 0 0\r\n".getBytes(utf8)));
+
+        // Only the lines before the geometry are searched
+        assertNull(OBJParser.findMaterialLibrary(
+                "o first\nv 0 0 0\nmtllib scene.mtl\n".getBytes(utf8)));
+        assertNull(OBJParser.findMaterialLibrary("o first\nv 0 0 0\nf 1 1 1\n".getBytes(utf8)));
+        assertNull(OBJParser.findMaterialLibrary(new byte[0]));
+    }
+
+    @Test
+    public void facesWithoutObjectTest() {
+        OBJData data = parse("v 0 0\nv 1 0\nv 1 1\nf 1 2 3");
+        assertEquals(2, data.positionComponents);
+        assertEquals(1, data.objects.size());
+        assertNull(data.objects.get(0).name);
+        assertEquals(3, data.objects.get(0).cornerCount);
+    }
+
+    @Test
+    public void resolveIndexedTest() {
+        // Two triangles sharing an edge, the shared corners have the same texel and normal
+        OBJData data = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nvt 0 0\nvt 1 0\nvt 1 1\n" +
+                "vt 0 1\nvn 0 0 1\nf 1/1/1 2/2/1 3/3/1\nf 1/1/1 3/3/1 4/4/1\n");
+        IndexedGeometry geometry = data.resolveIndexed(data.objects.get(0),
+                new VertexIndexMap(1));
+        assertEquals(4, geometry.getVertexCount());
+        assertEquals(6, geometry.getElementCount());
+        assertNotNull(geometry.indices);
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, geometry.indices);
+        assertArrayEquals(new float[]{1f, 1f, 0f}, Arrays.copyOfRange(
+                geometry.positions, 6, 9), 0f);
+
+        // A corner with the same position but a different texel is a different vertex
+        data = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nvt 1 0\nf 1/1 2/1 3/1\nf 1/2 2/1 3/1\n");
+        geometry = data.resolveIndexed(data.objects.get(0), new VertexIndexMap(1));
+        assertEquals(4, geometry.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 1, 2}, geometry.indices);
+
+        // No shared vertices results in no index buffer
+        data = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nf 1 2 3\n");
+        geometry = data.resolveIndexed(data.objects.get(0), new VertexIndexMap(1));
+        assertNull(geometry.indices);
+        assertEquals(9, geometry.getExpandedPositions().length);
+    }
+
+    // Faces before the first object, materials and libraries that apply across chunks, relative
+    // indices that reference vertices in earlier chunks and a vertex with extra components
+    private static byte[] generateChunkedOBJ() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nvn 0 0 1\nf 1 2 3\n");
+        builder.append("mtllib first.mtl\nusemtl a\n");
+        for(int i = 0; i < 40; i++) {
+            if(i % 10 == 0) {
+                builder.append("o object").append(i).append('\n');
+            }
+            if(i % 7 == 0) {
+                builder.append("usemtl m").append(i).append('\n');
+            }
+            if(i == 25) {
+                builder.append("mtllib second.mtl\n");
+            }
+            builder.append("v ").append(i).append(" 1 2").append(i == 13 ? " 1\n" : "\n");
+            builder.append("vt 0.5 0.").append(i).append('\n');
+            builder.append("f -1/-1/1 -2/1/-1 2/-2/1 -4/-1/1\n");
+        }
+        return builder.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void parallelParseTest() {
+        byte[] obj = generateChunkedOBJ();
+
+        OBJData expected = OBJParser.parse(obj);
+        for(int threads = 2; threads <= 9; threads++) {
+            ParallelOBJParser parser = new ParallelOBJParser(threads, 1, 1);
+            OBJData data = parser.parse(obj);
+            assertArrayEquals(expected.positions.toArray(), data.positions.toArray(), 0f);
+            assertArrayEquals(expected.texels.toArray(), data.texels.toArray(), 0f);
+            assertArrayEquals(expected.normals.toArray(), data.normals.toArray(), 0f);
+            assertArrayEquals(expected.faceIndices.toArray(), data.faceIndices.toArray());
+            assertEquals(expected.positionComponents, data.positionComponents);
+            assertEquals(expected.objects.size(), data.objects.size());
+            for(int o = 0; o < expected.objects.size(); o++) {
+                OBJObjectData expectedObject = expected.objects.get(o);
+                OBJObjectData object = data.objects.get(o);
+                assertEquals(expectedObject.name, object.name);
+                assertEquals(expectedObject.materialLibrary, object.materialLibrary);
+                assertEquals(expectedObject.materialName, object.materialName);
+                assertEquals(expectedObject.cornerStart, object.cornerStart);
+                assertEquals(expectedObject.cornerCount, object.cornerCount);
+                assertEquals(expectedObject.verticesPerFace, object.verticesPerFace);
+            }
+
+            // Parallel resolve produces the same geometry as resolving one object at a time
+            IndexedGeometry[] geometries = parser.resolveIndexed(data, data.objects);
+            for(int o = 0; o < data.objects.size(); o++) {
+                IndexedGeometry geometry = expected.resolveIndexed(expected.objects.get(o),
+                        new VertexIndexMap(1));
+                assertArrayEquals(geometry.positions, geometries[o].positions, 0f);
+                assertArrayEquals(geometry.indices, geometries[o].indices);
+            }
+        }
+    }
+
+    @Test
+    public void parallelParseSmallFileTest() {
+        // Files smaller than two chunks are parsed on the calling thread
+        ParallelOBJParser parser = new ParallelOBJParser(4);
+        OBJData data = parser.parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nf 1 2 3\n"
+                .getBytes(Charset.forName("UTF-8")));
+        assertEquals(3, data.getCornerCount());
+        assertEquals(1, data.objects.size());
+    }
+
+    @Test
+    public void streamingParseTest() throws IOException {
+        byte[] obj = generateChunkedOBJ();
+        OBJData expected = OBJParser.parse(obj);
+
+        // Buffers smaller than a line force lines to be carried over and the buffer to grow
+        for(int bufferSize : new int[]{1, 7, 16, 64, 4096}) {
+            final ArrayList<OBJObjectData> objects = new ArrayList<>();
+            final ArrayList<IndexedGeometry> geometries = new ArrayList<>();
+            StreamingOBJParser parser = new StreamingOBJParser((data, object) -> {
+                objects.add(object);
+                geometries.add(data.resolveIndexed(object, new VertexIndexMap(1)));
+            }, bufferSize);
+            parser.parse(new ByteArrayInputStream(obj));
+
+            assertEquals(expected.objects.size(), objects.size());
+            for(int o = 0; o < expected.objects.size(); o++) {
+                OBJObjectData expectedObject = expected.objects.get(o);
+                OBJObjectData object = objects.get(o);
+                assertEquals(expectedObject.name, object.name);
+                assertEquals(expectedObject.materialLibrary, object.materialLibrary);
+                assertEquals(expectedObject.materialName, object.materialName);
+                assertEquals(expectedObject.cornerCount, object.cornerCount);
+                assertEquals(expectedObject.verticesPerFace, object.verticesPerFace);
+
+                IndexedGeometry geometry = expected.resolveIndexed(expectedObject,
+                        new VertexIndexMap(1));
+                assertArrayEquals(geometry.positions, geometries.get(o).positions, 0f);
+                assertArrayEquals(geometry.texels, geometries.get(o).texels, 0f);
+                assertArrayEquals(geometry.indices, geometries.get(o).indices);
+            }
+        }
+    }
+
+    @Test
+    public void streamingParseWithoutTrailingNewLineTest() throws IOException {
+        final int[] corners = new int[1];
+        StreamingOBJParser.parse(new ByteArrayInputStream("v 0 0 0\nv 1 0 0\nv 1 1 0\nf 1 2 3"
+                .getBytes(Charset.forName("UTF-8"))), (data, object) ->
+                corners[0] += object.cornerCount);
+        assertEquals(3, corners[0]);
+    }
+
+    // Streams a large generated OBJ file and measures the live heap after each object has been
+    // parsed. The text of the file and the faces of completed objects are not kept, only the
+    // vertices and the faces of one object, so the peak should be a fraction of the file size
+    // (reading the whole file would need at least the file size for the text alone).
+    @Test
+    public void streamingPeakMemoryTest() throws IOException {
+        final Runtime runtime = Runtime.getRuntime();
+        final long[] peak = new long[1];
+        final int[] numObjects = new int[1];
+        GeneratedOBJStream stream = new GeneratedOBJStream(STREAMING_OBJECTS,
+                STREAMING_VERTICES_PER_OBJECT, STREAMING_FACES_PER_OBJECT);
+
+        StreamingOBJParser.parse(stream, (data, object) -> {
+            data.resolveIndexed(object, new VertexIndexMap(object.cornerCount));
+            numObjects[0]++;
+            System.gc();
+            peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+        });
+
+        // Measure what is left once the parser is gone so that only the parse is counted
+        System.gc();
+        peak[0] -= runtime.totalMemory() - runtime.freeMemory();
+        System.out.println("STREAMING OBJ " + (stream.getSize() / 1024) + "KB: peak live heap " +
+                (peak[0] / 1024) + "KB");
+        assertEquals(STREAMING_OBJECTS, numObjects[0]);
+        assertTrue(peak[0] < stream.getSize() / 4);
+    }
+
+    // Input stream that generates an OBJ file one object at a time so that the test itself does
+    // not hold the whole file. Each object has its own vertices and faces that cycle over them.
+    private static class GeneratedOBJStream extends InputStream {
+        private final int numObjects;
+        private final int verticesPerObject;
+        private final int facesPerObject;
+        private int object;
+        private byte[] current = new byte[0];
+        private int position;
+        private long size;
+
+        GeneratedOBJStream(int numObjects, int verticesPerObject, int facesPerObject) {
+            this.numObjects = numObjects;
+            this.verticesPerObject = verticesPerObject;
+            this.facesPerObject = facesPerObject;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if(position == current.length) {
+                if(object == numObjects) {
+                    return -1;
+                }
+                current = generateObject(object++);
+                position = 0;
+                size += current.length;
+            }
+
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private byte[] generateObject(int index) {
+            StringBuilder builder = new StringBuilder(facesPerObject * 24);
+            builder.append("o object").append(index).append('\n');
+            for(int i = 0; i < verticesPerObject; i++) {
+                builder.append("v ").append(index).append(' ').append(i).append(" 0.5\n");
+            }
+
+            final int first = (index * verticesPerObject) + 1;
+            for(int i = 0; i < facesPerObject; i++) {
+                int a = first + (i % (verticesPerObject - 2));
+                builder.append("f ").append(a).append(' ').append(a + 1).append(' ')
+                        .append(a + 2).append('\n');
+            }
+            return builder.toString().getBytes(Charset.forName("UTF-8"));
+        }
+    }
+
+    @Test
+    public void ParallelParseScalingPerformanceCheck() {
+        byte[] obj = generateOBJ(SCALING_BENCHMARK_FACES);
+        System.out.println("PARALLEL OBJ " + SCALING_BENCHMARK_FACES + " FACES (" +
+                (obj.length / 1024) + "KB):");
+
+        final int maxThreads = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+        for(int threads = 1; threads <= maxThreads; threads++) {
+            ParallelOBJParser parser = new ParallelOBJParser(threads);
+            long parseTime = Long.MAX_VALUE;
+            long resolveTime = Long.MAX_VALUE;
+            for(int i = 0; i < NUM_RUNS; i++) {
+                long timeStart = System.nanoTime();
+                OBJData data = parser.parse(obj);
+                long timeMiddle = System.nanoTime();
+                // Split the grid into objects so that there is something to resolve in parallel
+                ArrayList<OBJObjectData> objects = splitObjects(data, threads);
+                parser.resolveIndexed(data, objects);
+                long timeEnd = System.nanoTime();
+
+                assertEquals(SCALING_BENCHMARK_FACES * 3, data.getCornerCount());
+                parseTime = Math.min(parseTime, timeMiddle - timeStart);
+                resolveTime = Math.min(resolveTime, timeEnd - timeMiddle);
+            }
+
+            System.out.println("\t" + threads + " THREADS parse MS: " + (parseTime / 1000000) +
+                    ", resolve MS: " + (resolveTime / 1000000));
+        }
+    }
+
+    // Split the corners of the first object into a number of objects
+    private static ArrayList<OBJObjectData> splitObjects(OBJData data, int numObjects) {
+        OBJObjectData source = data.objects.get(0);
+        int facesPerObject = (source.cornerCount / 3 + numObjects - 1) / numObjects;
+        ArrayList<OBJObjectData> objects = new ArrayList<>();
+        for(int start = 0; start < source.cornerCount; start += facesPerObject * 3) {
+            OBJObjectData object = new OBJObjectData();
+            object.cornerStart = source.cornerStart + start;
+            object.cornerCount = Math.min(facesPerObject * 3, source.cornerCount - start);
+            object.verticesPerFace = 3;
+            objects.add(object);
+        }
+        return objects;
+    }
+
+    @Test
+    public void ParsePerformanceCheck() throws IOException {
+        for(int faces : BENCHMARK_FACES) {
+            byte[] obj = generateOBJ(faces);
+            System.out.println("OBJ " + faces + " FACES (" + (obj.length / 1024) + "KB):");
+
+            long legacyTime = Long.MAX_VALUE;
+            long parserTime = Long.MAX_VALUE;
+            for(int i = 0; i < NUM_RUNS; i++) {
+                long timeStart = System.nanoTime();
+                int legacyCorners = legacyParse(obj);
+                long timeMiddle = System.nanoTime();
+                OBJData data = OBJParser.parse(obj);
+                long timeEnd = System.nanoTime();
+
+                assertEquals(legacyCorners, data.getCornerCount());
+                if(i == 0) {
+                    IndexedGeometry geometry = data.resolveIndexed(data.objects.get(0),
+                            new VertexIndexMap(data.getPositionCount()));
+                    System.out.println("\tIndexed vertices: " + geometry.getVertexCount() +
+                            " of " + geometry.getElementCount());
+                }
+                legacyTime = Math.min(legacyTime, timeMiddle - timeStart);
+                parserTime = Math.min(parserTime, timeEnd - timeMiddle);
+            }
+
+            System.out.println("\tStringSplitParse MS: " + (legacyTime / 1000000));
+            System.out.println("\tOBJParser MS: " + (parserTime / 1000000));
+        }
+    }
+
+    // Generate a grid mesh with the given number of triangle faces (positions, texels and normals)
+    private static byte[] generateOBJ(int numFaces) {
+        int quads = (numFaces + 1) / 2;
+        int gridSize = (int)Math.ceil(Math.sqrt(quads));
+        int verticesPerRow = gridSize + 1;
+
+        StringBuilder builder = new StringBuilder(numFaces * 64);
+        builder.append("o grid\n");
+        for(int y = 0; y < verticesPerRow; y++) {
+            for(int x = 0; x < verticesPerRow; x++) {
+                float u = (float)x / gridSize;
+                float v = (float)y / gridSize;
+                builder.append("v ").append(u * 10f).append(' ').append(v * 10f).append(' ')
+                        .append((float)Math.sin(u * 6f)).append('\n');
+                builder.append("vt ").append(u).append(' ').append(v).append('\n');
+            }
+        }
+        builder.append("vn 0.0 0.0 1.0\n");
+
+        int written = 0;
+        for(int y = 0; y < gridSize && written < numFaces; y++) {
+            for(int x = 0; x < gridSize && written < numFaces; x++) {
+                int a = (y * verticesPerRow) + x + 1;
+                int b = a + 1;
+                int c = a + verticesPerRow;
+                int d = c + 1;
+                appendFace(builder, a, b, d);
+                written++;
+                if(written < numFaces) {
+                    appendFace(builder, a, d, c);
+                    written++;
+                }
+            }
+        }
+        return builder.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static void appendFace(StringBuilder builder, int a, int b, int c) {
+        builder.append("f ")
+                .append(a).append('/').append(a).append("/1 ")
+                .append(b).append('/').append(b).append("/1 ")
+                .append(c).append('/').append(c).append("/1\n");
+    }
+
+    // The previous String.split based parse stage of OBJModelLoader, kept to compare against
+    private static int legacyParse(byte[] obj) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(obj)));
+        ArrayList<float[]> positionData = new ArrayList<>();
+        ArrayList<float[]> texelData = new ArrayList<>();
+        ArrayList<float[]> normalData = new ArrayList<>();
+        ArrayList<int[][]> faceData = new ArrayList<>();
+
+        while(reader.ready()) {
+            String[] split = reader.readLine().split(" ");
+            switch (split[0]) {
+                case "v":
+                    positionData.add(getFloats(split));
+                    break;
+                case "vt":
+                    texelData.add(getFloats(split));
+                    break;
+                case "vn":
+                    normalData.add(getFloats(split));
+                    break;
+                case "f":
+                    int[][] face = new int[3][split.length - 1];
+                    for(int i = 1; i < split.length; i++) {
+                        String[] elements = split[i].split("/");
+                        for(int n = 0; n < elements.length && n < 3; n++) {
+                            if(!elements[n].isEmpty()) {
+                                face[n][i - 1] = Integer.parseInt(elements[n]);
+                            }
+                        }
+                    }
+                    faceData.add(face);
+                    break;
+            }
+        }
+
+        int corners = 0;
+        for(int i = 0; i < faceData.size(); i++) {
+            corners += faceData.get(i)[0].length;
+        }
+        return corners;
+    }
+
+    private static float[] getFloats(String[] split) {
+        float[] floats = new float[split.length - 1];
+        for(int i = 1; i < split.length; i++) {
+            floats[i - 1] = Float.parseFloat(split[i]);
+        }
+        return floats;
+    }
+}
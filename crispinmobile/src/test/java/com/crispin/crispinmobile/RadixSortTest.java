@@ -0,0 +1,129 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Utilities.RadixSort;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class RadixSortTest {
+    private static final int NUM_KEYS = 10000;
+
+    private static void sort(long[] keys, int[] values) {
+        RadixSort.sort(keys, values, keys.length, new long[keys.length], new int[keys.length],
+                new int[RadixSort.COUNTS_LENGTH]);
+    }
+
+    @Test
+    public void sortRandomKeysTest() {
+        Random random = new Random(42);
+        long[] keys = new long[NUM_KEYS];
+        int[] values = new int[NUM_KEYS];
+        for(int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = random.nextLong();
+            values[i] = i;
+        }
+        long[] original = keys.clone();
+
+        sort(keys, values);
+
+        for(int i = 1; i < NUM_KEYS; i++) {
+            assertTrue(Long.compareUnsigned(keys[i - 1], keys[i]) <= 0);
+        }
+
+        // Every value must still be with its key
+        for(int i = 0; i < NUM_KEYS; i++) {
+            assertEquals(original[values[i]], keys[i]);
+        }
+    }
+
+    @Test
+    public void sortMatchesArraysSortTest() {
+        // Non-negative keys sort the same whether signed or unsigned
+        Random random = new Random(7);
+        long[] keys = new long[NUM_KEYS];
+        for(int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = random.nextLong() >>> 1;
+        }
+        long[] expected = keys.clone();
+        Arrays.sort(expected);
+
+        sort(keys, new int[NUM_KEYS]);
+        assertArrayEquals(expected, keys);
+    }
+
+    @Test
+    public void stableTest() {
+        // Few distinct keys so that there are many ties
+        Random random = new Random(3);
+        long[] keys = new long[NUM_KEYS];
+        int[] values = new int[NUM_KEYS];
+        for(int i = 0; i < NUM_KEYS; i++) {
+            keys[i] = (long)random.nextInt(8) << 40;
+            values[i] = i;
+        }
+
+        sort(keys, values);
+
+        for(int i = 1; i < NUM_KEYS; i++) {
+            if(keys[i - 1] == keys[i]) {
+                assertTrue(values[i - 1] < values[i]);
+            }
+        }
+    }
+
+    @Test
+    public void partialCountTest() {
+        long[] keys = {5L, 3L, 1L, 0L};
+        int[] values = {0, 1, 2, 3};
+        RadixSort.sort(keys, values, 3, new long[3], new int[3],
+                new int[RadixSort.COUNTS_LENGTH]);
+        assertArrayEquals(new long[]{1L, 3L, 5L, 0L}, keys);
+        assertArrayEquals(new int[]{2, 1, 0, 3}, values);
+    }
+
+    @Test
+    public void reuseScratchTest() {
+        // The same scratch arrays and counts are used every frame by the render queue
+        long[] scratchKeys = new long[NUM_KEYS];
+        int[] scratchValues = new int[NUM_KEYS];
+        int[] counts = new int[RadixSort.COUNTS_LENGTH];
+        Random random = new Random(11);
+        for(int run = 0; run < 3; run++) {
+            long[] keys = new long[NUM_KEYS - run * 100];
+            for(int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextLong() >>> 1;
+            }
+            long[] expected = keys.clone();
+            Arrays.sort(expected);
+
+            RadixSort.sort(keys, new int[keys.length], keys.length, scratchKeys, scratchValues,
+                    counts);
+            assertArrayEquals(expected, keys);
+        }
+    }
+
+    @Test
+    public void smallCountTest() {
+        long[] keys = {9L};
+        int[] values = {4};
+        sort(keys, values);
+        assertArrayEquals(new long[]{9L}, keys);
+        assertArrayEquals(new int[]{4}, values);
+
+        sort(new long[0], new int[0]);
+    }
+
+    @Test
+    public void equalKeysTest() {
+        long[] keys = {-1L, -1L, -1L};
+        int[] values = {0, 1, 2};
+        sort(keys, values);
+        assertArrayEquals(new int[]{0, 1, 2}, values);
+    }
+}
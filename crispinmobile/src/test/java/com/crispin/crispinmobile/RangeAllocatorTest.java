@@ -0,0 +1,181 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Utilities.RangeAllocator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+public class RangeAllocatorTest {
+    @Test
+    public void allocateFreeTest() {
+        RangeAllocator allocator = new RangeAllocator(100);
+        assertEquals(0, allocator.allocate(10));
+        assertEquals(10, allocator.allocate(20));
+        assertEquals(30, allocator.allocate(70));
+        assertEquals(RangeAllocator.INVALID_OFFSET, allocator.allocate(1));
+        assertEquals(100, allocator.getUsed());
+        assertEquals(20, allocator.getSize(10));
+
+        assertTrue(allocator.free(10));
+        assertFalse(allocator.free(10));
+        assertEquals(80, allocator.getUsed());
+        assertEquals(0, allocator.getSize(10));
+
+        // The freed range is reused
+        assertEquals(10, allocator.allocate(15));
+        assertEquals(RangeAllocator.INVALID_OFFSET, allocator.allocate(6));
+        assertEquals(25, allocator.allocate(5));
+    }
+
+    @Test
+    public void coalesceTest() {
+        RangeAllocator allocator = new RangeAllocator(40);
+        for(int i = 0; i < 4; i++) {
+            assertEquals(i * 10, allocator.allocate(10));
+        }
+
+        // Freeing every other range leaves two holes that cannot hold a range of 20
+        allocator.free(0);
+        allocator.free(20);
+        assertEquals(2, allocator.getFreeRangeCount());
+        assertEquals(10, allocator.getLargestFreeRange());
+        assertEquals(0.5f, allocator.getFragmentation(), 0.0001f);
+        assertEquals(RangeAllocator.INVALID_OFFSET, allocator.allocate(20));
+
+        // Freeing the range between them merges all three in to one
+        allocator.free(10);
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(30, allocator.getLargestFreeRange());
+        assertEquals(0.0f, allocator.getFragmentation(), 0.0f);
+        assertEquals(0, allocator.allocate(30));
+    }
+
+    @Test
+    public void bestFitTest() {
+        RangeAllocator allocator = new RangeAllocator(100);
+        final int a = allocator.allocate(30);
+        allocator.allocate(5);
+        final int b = allocator.allocate(10);
+        allocator.allocate(5);
+
+        // Holes of 30 and 10 (and 50 at the end), a request of 8 takes the hole of 10
+        allocator.free(a);
+        allocator.free(b);
+        assertEquals(b, allocator.allocate(8));
+
+        // The hole of 30 is kept whole for a request that needs it
+        assertEquals(a, allocator.allocate(30));
+    }
+
+    @Test
+    public void compactTest() {
+        RangeAllocator allocator = new RangeAllocator(60);
+        allocator.allocate(10);
+        final int b = allocator.allocate(10);
+        allocator.allocate(20);
+        final int d = allocator.allocate(10);
+        allocator.allocate(10);
+        allocator.free(b);
+        allocator.free(d);
+        assertEquals(RangeAllocator.INVALID_OFFSET, allocator.allocate(20));
+
+        // The ranges after the first hole move down, keeping their order
+        final int[] moves = allocator.compact();
+        assertArrayEquals(new int[]{20, 10, 20, 50, 30, 10}, moves);
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(20, allocator.getSize(10));
+        assertEquals(10, allocator.getSize(30));
+        assertEquals(40, allocator.getUsed());
+        assertEquals(40, allocator.allocate(20));
+
+        // Nothing moves when the ranges are already packed
+        assertEquals(0, allocator.compact().length);
+    }
+
+    @Test
+    public void fragmentationTest() {
+        // Allocate and free meshes of mixed sizes in a random order (as text and UI are rebuilt),
+        // keeping the space nearly full so that it fragments
+        final Random random = new Random(7);
+        final RangeAllocator allocator = new RangeAllocator(1 << 16);
+        final ArrayList<Integer> live = new ArrayList<>();
+        int allocations = 0;
+        int compactions = 0;
+        for(int i = 0; i < 20000; i++) {
+            if(!live.isEmpty() && (random.nextInt(3) == 0 || allocator.getFree() < 4096)) {
+                final int index = random.nextInt(live.size());
+                assertTrue(allocator.free(live.get(index)));
+                live.set(index, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+            } else {
+                final int size = random.nextBoolean() ? 6 : 6 + random.nextInt(200);
+                int offset = allocator.allocate(size);
+                if(offset == RangeAllocator.INVALID_OFFSET) {
+                    // The free space is too fragmented, compact it and move the live ranges
+                    assertTrue(allocator.getFree() >= size);
+                    assertTrue(allocator.getLargestFreeRange() < size);
+                    final int[] moves = allocator.compact();
+                    final HashMap<Integer, Integer> moved = new HashMap<>();
+                    for(int m = 0; m < moves.length; m += 3) {
+                        assertTrue(moves[m + 1] < moves[m]);
+                        moved.put(moves[m], moves[m + 1]);
+                    }
+                    for(int l = 0; l < live.size(); l++) {
+                        final Integer to = moved.get(live.get(l));
+                        if(to != null) {
+                            live.set(l, to);
+                        }
+                    }
+                    compactions++;
+                    offset = allocator.allocate(size);
+                }
+                assertTrue(offset != RangeAllocator.INVALID_OFFSET);
+                live.add(offset);
+                allocations++;
+            }
+
+            // The free ranges never touch, so there are at most as many as live ranges plus one
+            assertTrue(allocator.getFreeRangeCount() <= live.size() + 1);
+        }
+
+        // Best fit and merging keep most requests out of compaction even with the space full
+        assertTrue(compactions * 100 < allocations);
+        for(int l = 0; l < live.size(); l++) {
+            assertTrue(allocator.getSize(live.get(l)) > 0);
+        }
+
+        // Compacting leaves the free space in one range without losing any live range
+        final int used = allocator.getUsed();
+        allocator.compact();
+        assertEquals(used, allocator.getUsed());
+        assertEquals(live.size(), allocator.getAllocationCount());
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(0.0f, allocator.getFragmentation(), 0.0f);
+        assertEquals(allocator.getFree(), allocator.getLargestFreeRange());
+
+        // Freeing everything merges the space back in to a single range
+        final int[] offsets = new int[allocator.getAllocationCount()];
+        int next = 0;
+        for(int i = 0; i < offsets.length; i++) {
+            offsets[i] = next;
+            next += allocator.getSize(next);
+        }
+        for(int i = offsets.length - 1; i >= 0; i -= 2) {
+            assertTrue(allocator.free(offsets[i]));
+        }
+        for(int i = offsets.length - 2; i >= 0; i -= 2) {
+            assertTrue(allocator.free(offsets[i]));
+        }
+        assertEquals(0, allocator.getUsed());
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(allocator.getCapacity(), allocator.getLargestFreeRange());
+    }
+}
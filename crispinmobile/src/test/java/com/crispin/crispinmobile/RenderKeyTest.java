@@ -0,0 +1,88 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Rendering.Utilities.RenderKey;
+
+import org.junit.Test;
+
+public class RenderKeyTest {
+    @Test
+    public void packOpaqueTest() {
+        long key = RenderKey.opaque(3, 7, 11, 4000, 12345);
+        assertEquals(3, RenderKey.getLayer(key));
+        assertFalse(RenderKey.isTranslucent(key));
+        assertEquals(7, RenderKey.getShader(key));
+        assertEquals(11, RenderKey.getTexture(key));
+        assertEquals(4000, RenderKey.getMesh(key));
+        assertEquals(12345, RenderKey.getDepth(key));
+    }
+
+    @Test
+    public void packTranslucentTest() {
+        long key = RenderKey.translucent(15, 100);
+        assertEquals(15, RenderKey.getLayer(key));
+        assertTrue(RenderKey.isTranslucent(key));
+        assertEquals(100, RenderKey.getDepth(key));
+        assertEquals(0, RenderKey.getShader(key));
+    }
+
+    @Test
+    public void layerOrderTest() {
+        // Anything in a lower layer comes first, including translucent draws
+        assertTrue(Long.compareUnsigned(RenderKey.translucent(0, 0),
+                RenderKey.opaque(1, 0, 0, 0, 0)) < 0);
+        // The top layer must not be treated as negative
+        assertTrue(Long.compareUnsigned(RenderKey.opaque(7, 4095, 4095, 65535,
+                RenderKey.MAX_DEPTH), RenderKey.opaque(15, 0, 0, 0, 0)) < 0);
+    }
+
+    @Test
+    public void opaqueBeforeTranslucentTest() {
+        assertTrue(Long.compareUnsigned(RenderKey.opaque(2, 4095, 4095, 65535,
+                RenderKey.MAX_DEPTH), RenderKey.translucent(2, RenderKey.MAX_DEPTH)) < 0);
+    }
+
+    @Test
+    public void opaqueStateOrderTest() {
+        // Shader is more significant than texture, texture more than mesh, mesh more than depth
+        assertTrue(RenderKey.opaque(0, 1, 9, 9, 9) < RenderKey.opaque(0, 2, 0, 0, 0));
+        assertTrue(RenderKey.opaque(0, 1, 1, 9, 9) < RenderKey.opaque(0, 1, 2, 0, 0));
+        assertTrue(RenderKey.opaque(0, 1, 1, 1, 9) < RenderKey.opaque(0, 1, 1, 2, 0));
+
+        // Front-to-back within the same state
+        assertTrue(RenderKey.opaque(0, 1, 1, 1, 10) < RenderKey.opaque(0, 1, 1, 1, 20));
+    }
+
+    @Test
+    public void translucentBackToFrontTest() {
+        assertTrue(RenderKey.translucent(0, 20) < RenderKey.translucent(0, 10));
+    }
+
+    @Test
+    public void clampAndMaskTest() {
+        long key = RenderKey.opaque(99, 4096 + 5, -1, 65536 + 3, RenderKey.MAX_DEPTH + 10);
+        assertEquals(RenderKey.NUM_LAYERS - 1, RenderKey.getLayer(key));
+        assertEquals(5, RenderKey.getShader(key));
+        assertEquals(4095, RenderKey.getTexture(key));
+        assertEquals(3, RenderKey.getMesh(key));
+        assertEquals(RenderKey.MAX_DEPTH, RenderKey.getDepth(key));
+
+        key = RenderKey.opaque(-1, 0, 0, 0, -5);
+        assertEquals(0, RenderKey.getLayer(key));
+        assertEquals(0, RenderKey.getDepth(key));
+    }
+
+    @Test
+    public void quantiseDepthTest() {
+        assertEquals(0, RenderKey.quantiseDepth(0f, 100f));
+        assertEquals(0, RenderKey.quantiseDepth(-5f, 100f));
+        assertEquals(0, RenderKey.quantiseDepth(Float.NaN, 100f));
+        assertEquals(RenderKey.MAX_DEPTH, RenderKey.quantiseDepth(100f, 100f));
+        assertEquals(RenderKey.MAX_DEPTH, RenderKey.quantiseDepth(500f, 100f));
+        assertEquals(RenderKey.MAX_DEPTH / 2, RenderKey.quantiseDepth(50f, 100f), 1);
+        assertTrue(RenderKey.quantiseDepth(10f, 100f) < RenderKey.quantiseDepth(11f, 100f));
+    }
+}
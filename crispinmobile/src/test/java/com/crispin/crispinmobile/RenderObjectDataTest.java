@@ -0,0 +1,191 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+
+import com.crispin.crispinmobile.Rendering.Data.RenderObjectData;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+public class RenderObjectDataTest {
+    private static final int NUM_RUNS = 3;
+    private static final int BENCHMARK_GRID_SIZE = 409;
+
+    private static ByteBuffer writeVertices(RenderObjectData data) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.getVertexCount() *
+                data.getVertexSize()).order(ByteOrder.nativeOrder());
+        data.writeVertices(buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void writeInterleavedVerticesTest() {
+        RenderObjectData data = new RenderObjectData();
+        data.setFaceDataType(RenderObjectData.FaceData.POSITION_AND_TEXEL_AND_NORMAL);
+        data.addPositionData(new float[]{0f, 0f, 0f, 1f, 0f, 0f, 1f, 1f, 0f});
+        data.addTexelData(new float[]{0f, 0f, 1f, 1f});
+        data.addNormalData(new float[]{0f, 0f, 1f});
+        int[] faces = {3, 2, 1, 1, 1, 1, 2, 1, 1};
+        for(int face : faces) {
+            data.addFaceData(face);
+        }
+
+        assertEquals(3, data.getVertexCount());
+        assertEquals(8 * 4, data.getVertexSize());
+
+        ByteBuffer buffer = writeVertices(data);
+        float[] expected = {
+                1f, 1f, 0f, 1f, 1f, 0f, 0f, 1f,
+                0f, 0f, 0f, 0f, 0f, 0f, 0f, 1f,
+                1f, 0f, 0f, 0f, 0f, 0f, 0f, 1f
+        };
+        for(int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], buffer.getFloat(), 0.0f);
+        }
+    }
+
+    @Test
+    public void writePositionOnlyVerticesTest() {
+        RenderObjectData data = new RenderObjectData();
+        data.setFaceDataType(RenderObjectData.FaceData.POSITION_ONLY);
+        data.setNumPositionComponents((byte)2);
+        data.addPositionData(new float[]{0f, 0f, 5f, 0f});
+        data.addPositionData(6f);
+        data.addPositionData(7f);
+        data.addFaceData(3);
+        data.addFaceData(1);
+
+        // Texel and normal components are ignored when the face data has none
+        assertEquals(2, data.getVertexCount());
+        assertEquals(2 * 4, data.getVertexSize());
+
+        ByteBuffer buffer = writeVertices(data);
+        assertEquals(6f, buffer.getFloat(), 0.0f);
+        assertEquals(7f, buffer.getFloat(), 0.0f);
+        assertEquals(0f, buffer.getFloat(), 0.0f);
+        assertEquals(0f, buffer.getFloat(), 0.0f);
+    }
+
+    @Test
+    public void BuildPerformanceCheck() {
+        int verticesPerRow = BENCHMARK_GRID_SIZE + 1;
+        int vertexCount = BENCHMARK_GRID_SIZE * BENCHMARK_GRID_SIZE * 6;
+        System.out.println("RENDER OBJECT DATA " + vertexCount + " VERTICES:");
+
+        long boxedTime = Long.MAX_VALUE;
+        long builderTime = Long.MAX_VALUE;
+        for(int i = 0; i < NUM_RUNS; i++) {
+            long timeStart = System.nanoTime();
+            float[] boxed = boxedBuild(verticesPerRow);
+            long timeMiddle = System.nanoTime();
+            RenderObjectData data = new RenderObjectData();
+            data.setFaceDataType(RenderObjectData.FaceData.POSITION_AND_TEXEL_AND_NORMAL);
+            generateGrid(verticesPerRow, data);
+            ByteBuffer buffer = writeVertices(data);
+            long timeEnd = System.nanoTime();
+
+            assertEquals(vertexCount, data.getVertexCount());
+            assertEquals(boxed.length * 4, buffer.limit());
+            for(int v = 0; v < boxed.length; v += 997) {
+                assertEquals(boxed[v], buffer.getFloat(v * 4), 0.0f);
+            }
+            boxedTime = Math.min(boxedTime, timeMiddle - timeStart);
+            builderTime = Math.min(builderTime, timeEnd - timeMiddle);
+        }
+
+        System.out.println("\tBoxed ArrayList MS: " + (boxedTime / 1000000));
+        System.out.println("\tRenderObjectData MS: " + (builderTime / 1000000));
+    }
+
+    // Add a procedural grid of quads (two triangles each) with positions, texels and normals
+    private static void generateGrid(int verticesPerRow, RenderObjectData data) {
+        int gridSize = verticesPerRow - 1;
+        for(int y = 0; y < verticesPerRow; y++) {
+            for(int x = 0; x < verticesPerRow; x++) {
+                float u = (float)x / gridSize;
+                float v = (float)y / gridSize;
+                data.addPositionData(u * 10f);
+                data.addPositionData(v * 10f);
+                data.addPositionData((float)Math.sin(u * 6f));
+                data.addTexelData(u);
+                data.addTexelData(v);
+                data.addNormalData(u);
+                data.addNormalData(v);
+                data.addNormalData(1f);
+            }
+        }
+
+        for(int y = 0; y < gridSize; y++) {
+            for(int x = 0; x < gridSize; x++) {
+                int a = y * verticesPerRow + x + 1;
+                int b = a + 1;
+                int c = a + verticesPerRow;
+                int d = c + 1;
+                int[] corners = {a, b, d, a, d, c};
+                for(int corner : corners) {
+                    data.addFaceData(corner);
+                    data.addFaceData(corner);
+                    data.addFaceData(corner);
+                }
+            }
+        }
+    }
+
+    // The boxed ArrayList approach the builder replaced, for comparison
+    private static float[] boxedBuild(int verticesPerRow) {
+        int gridSize = verticesPerRow - 1;
+        ArrayList<Float> positions = new ArrayList<>();
+        ArrayList<Float> texels = new ArrayList<>();
+        ArrayList<Float> normals = new ArrayList<>();
+        ArrayList<Integer> faces = new ArrayList<>();
+        for(int y = 0; y < verticesPerRow; y++) {
+            for(int x = 0; x < verticesPerRow; x++) {
+                float u = (float)x / gridSize;
+                float v = (float)y / gridSize;
+                positions.add(u * 10f);
+                positions.add(v * 10f);
+                positions.add((float)Math.sin(u * 6f));
+                texels.add(u);
+                texels.add(v);
+                normals.add(u);
+                normals.add(v);
+                normals.add(1f);
+            }
+        }
+
+        for(int y = 0; y < gridSize; y++) {
+            for(int x = 0; x < gridSize; x++) {
+                int a = y * verticesPerRow + x + 1;
+                int b = a + 1;
+                int c = a + verticesPerRow;
+                int d = c + 1;
+                int[] corners = {a, b, d, a, d, c};
+                for(int corner : corners) {
+                    faces.add(corner);
+                    faces.add(corner);
+                    faces.add(corner);
+                }
+            }
+        }
+
+        float[] vertices = new float[(faces.size() / 3) * 8];
+        int index = 0;
+        for(int f = 0; f < faces.size(); f += 3) {
+            for(int p = 0; p < 3; p++) {
+                vertices[index++] = positions.get((faces.get(f) - 1) * 3 + p);
+            }
+            for(int t = 0; t < 2; t++) {
+                vertices[index++] = texels.get((faces.get(f + 1) - 1) * 2 + t);
+            }
+            for(int n = 0; n < 3; n++) {
+                vertices[index++] = normals.get((faces.get(f + 2) - 1) * 3 + n);
+            }
+        }
+        return vertices;
+    }
+}
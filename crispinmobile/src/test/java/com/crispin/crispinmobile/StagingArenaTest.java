@@ -0,0 +1,133 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Utilities.StagingArena;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+public class StagingArenaTest {
+    @Before
+    public void setUp() {
+        StagingArena.onFrameEnd();
+        StagingArena.release();
+        StagingArena.setMaxRetainedBytes(StagingArena.DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    @Test
+    public void stageTest() {
+        float[] data = {1.0f, 2.0f, 3.0f, 4.0f, 5.0f};
+        FloatBuffer first = StagingArena.stage(data, 1, 3);
+        assertTrue(first.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), first.order());
+        assertEquals(3, first.remaining());
+        final int firstPosition = first.position();
+        assertEquals(2.0f, first.get(firstPosition), 0.0f);
+        assertEquals(4.0f, first.get(firstPosition + 2), 0.0f);
+
+        // A second request is placed after the first (aligned) and does not overwrite it
+        FloatBuffer second = StagingArena.stage(new float[]{9.0f});
+        assertEquals(0, second.position() % 4);
+        assertTrue(second.position() >= firstPosition + 3);
+        assertEquals(2.0f, second.get(firstPosition), 0.0f);
+        assertEquals(9.0f, second.get(second.position()), 0.0f);
+
+        // Indices are narrowed to unsigned shorts
+        ShortBuffer shorts = StagingArena.stageShorts(new int[]{0, 1, 65535});
+        assertEquals(3, shorts.remaining());
+        assertEquals(65535, shorts.get(shorts.position() + 2) & 0xFFFF);
+
+        // Heap buffers are copied from the start without changing their position or limit
+        FloatBuffer heap = FloatBuffer.wrap(new float[]{7.0f, 8.0f, 9.0f});
+        heap.position(2);
+        FloatBuffer staged = StagingArena.stage(heap, 2);
+        assertEquals(2, heap.position());
+        assertEquals(3, heap.limit());
+        assertEquals(2, staged.remaining());
+        assertEquals(8.0f, staged.get(staged.position() + 1), 0.0f);
+
+        ByteBuffer bytes = StagingArena.allocate(10);
+        assertEquals(10, bytes.remaining());
+        assertEquals(0, bytes.position() % 16);
+    }
+
+    @Test
+    public void noAllocationPerFrameTest() {
+        // Upload the matrices and colours of 2000 instances each frame
+        final float[] matrices = new float[2000 * 16];
+        final float[] colours = new float[2000 * 4];
+        StagingArena.stage(matrices);
+        StagingArena.stage(colours);
+        StagingArena.onFrameEnd();
+        assertTrue(StagingArena.getFrameAllocationCount() > 0);
+
+        final int allocations = StagingArena.getAllocationCount();
+        for(int frame = 0; frame < 100; frame++) {
+            FloatBuffer buffer = StagingArena.allocateFloats(matrices.length);
+            buffer.put(matrices);
+            StagingArena.stage(colours);
+            StagingArena.onFrameEnd();
+            assertEquals(0, StagingArena.getFrameAllocationCount());
+            assertEquals((matrices.length + colours.length) * 4, StagingArena.getFrameBytes());
+        }
+        assertEquals(allocations, StagingArena.getAllocationCount());
+    }
+
+    @Test
+    public void sizeClassTest() {
+        // Small requests share the smallest page
+        ByteBuffer small = StagingArena.allocate(100);
+        assertEquals(StagingArena.MIN_PAGE_BYTES, small.capacity());
+        assertSame(small, StagingArena.allocate(100));
+        assertEquals(1, StagingArena.getPageCount());
+
+        // Larger requests take a page of the next power of two
+        ByteBuffer large = StagingArena.allocate(StagingArena.MIN_PAGE_BYTES + 1);
+        assertNotSame(small, large);
+        assertEquals(StagingArena.MIN_PAGE_BYTES * 2, large.capacity());
+        assertEquals(2, StagingArena.getPageCount());
+        StagingArena.onFrameEnd();
+
+        // Pages that are not used are released, pages that are used are kept
+        for(int frame = 0; frame < StagingArena.RELEASE_AFTER_FRAMES + 1; frame++) {
+            StagingArena.allocate(100);
+            StagingArena.onFrameEnd();
+        }
+        assertEquals(1, StagingArena.getPageCount());
+        assertEquals(StagingArena.MIN_PAGE_BYTES, StagingArena.allocate(100).capacity());
+    }
+
+    @Test
+    public void maxRetainedBytesTest() {
+        // A scene that uploads its models whilst it is constructed stages them all in one frame
+        StagingArena.allocate(100);
+        for(int i = 0; i < 5; i++) {
+            StagingArena.allocate(2 * 1024 * 1024);
+        }
+        assertTrue(StagingArena.getRetainedBytes() > StagingArena.getMaxRetainedBytes());
+
+        // Only the largest pages are given back, the pages that fit under the cap are kept
+        StagingArena.onFrameEnd();
+        assertTrue(StagingArena.getRetainedBytes() <= StagingArena.getMaxRetainedBytes());
+        assertEquals(2, StagingArena.getPageCount());
+        assertEquals(StagingArena.MIN_PAGE_BYTES, StagingArena.allocate(100).capacity());
+
+        // Frames that stage less than the cap keep their pages
+        StagingArena.setMaxRetainedBytes(64 * 1024 * 1024);
+        StagingArena.allocate(8 * 1024 * 1024);
+        StagingArena.onFrameEnd();
+        final int allocations = StagingArena.getAllocationCount();
+        StagingArena.allocate(8 * 1024 * 1024);
+        StagingArena.onFrameEnd();
+        assertEquals(allocations, StagingArena.getAllocationCount());
+    }
+}
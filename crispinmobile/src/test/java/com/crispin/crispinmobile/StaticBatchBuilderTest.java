@@ -0,0 +1,320 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.MeshLoading.IndexedGeometry;
+import com.crispin.crispinmobile.MeshLoading.MeshData;
+import com.crispin.crispinmobile.MeshLoading.OBJData;
+import com.crispin.crispinmobile.MeshLoading.OBJParser;
+import com.crispin.crispinmobile.MeshLoading.VertexIndexMap;
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Data.StaticBatchBuilder;
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
+import com.crispin.crispinmobile.Rendering.Utilities.ModelMatrix;
+import com.crispin.crispinmobile.Utilities.WorkerExecutor;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+public class StaticBatchBuilderTest {
+    // Column major matrix that scales then translates
+    private static ModelMatrix createMatrix(float sx, float sy, float sz, float tx, float ty,
+                                            float tz) {
+        return new ModelMatrix(new float[]{
+                sx, 0.0f, 0.0f, 0.0f,
+                0.0f, sy, 0.0f, 0.0f,
+                0.0f, 0.0f, sz, 0.0f,
+                tx, ty, tz, 1.0f});
+    }
+
+    // A triangle on a plane tilted around the x axis, with the normal of the plane
+    private static VertexData createTriangle() {
+        final float n = (float)Math.sqrt(0.5);
+        return new VertexData(new float[]{0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 0.0f, 1.0f, 1.0f},
+                null, new float[]{0.0f, -n, n, 0.0f, -n, n, 0.0f, -n, n}, new int[]{0, 1, 2}, 3, 0,
+                3);
+    }
+
+    // A grid of quads with texels and normals (so it has tangents)
+    private static VertexData createGrid(int size) {
+        final int vertices = (size + 1) * (size + 1);
+        float[] positions = new float[vertices * 3];
+        float[] texels = new float[vertices * 2];
+        float[] normals = new float[vertices * 3];
+        for(int y = 0, v = 0; y <= size; y++) {
+            for(int x = 0; x <= size; x++, v++) {
+                positions[v * 3] = x;
+                positions[v * 3 + 1] = y;
+                positions[v * 3 + 2] = (x * y) % 3 * 0.1f;
+                texels[v * 2] = (float)x / size;
+                texels[v * 2 + 1] = (float)y / size;
+                normals[v * 3 + 2] = 1.0f;
+            }
+        }
+
+        int[] indices = new int[size * size * 6];
+        for(int y = 0, i = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                final int corner = y * (size + 1) + x;
+                indices[i++] = corner;
+                indices[i++] = corner + 1;
+                indices[i++] = corner + size + 2;
+                indices[i++] = corner;
+                indices[i++] = corner + size + 2;
+                indices[i++] = corner + size + 1;
+            }
+        }
+        return new VertexData(positions, texels, normals, indices, 3, 2, 3);
+    }
+
+    private static float[] getVector(VertexData data, int vertex, int offset) {
+        final int i = vertex * data.getElementsPerVertex() + offset;
+        return new float[]{data.vertices[i], data.vertices[i + 1], data.vertices[i + 2]};
+    }
+
+    // The face normal of a triangle in the merged data (from its winding)
+    private static float[] getFaceNormal(VertexData data, int face) {
+        float[] a = getVector(data, data.indices[face * 3], 0);
+        float[] b = getVector(data, data.indices[face * 3 + 1], 0);
+        float[] c = getVector(data, data.indices[face * 3 + 2], 0);
+        final float ux = b[0] - a[0], uy = b[1] - a[1], uz = b[2] - a[2];
+        final float vx = c[0] - a[0], vy = c[1] - a[1], vz = c[2] - a[2];
+        return new float[]{uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx};
+    }
+
+    private static float dot(float[] a, float[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    @Test
+    public void mergeTest() {
+        Material materialA = new Material();
+        Material materialB = new Material();
+        VertexData triangle = createTriangle();
+
+        StaticBatchBuilder builder = new StaticBatchBuilder();
+        assertEquals(0, builder.add(triangle, createMatrix(1.0f, 1.0f, 1.0f, 10.0f, 0.0f, 0.0f),
+                materialA));
+        assertEquals(1, builder.add(triangle, createMatrix(1.0f, 1.0f, 1.0f, 0.0f, 0.0f, 0.0f),
+                materialB));
+        assertEquals(2, builder.add(triangle, createMatrix(2.0f, 2.0f, 2.0f, 0.0f, 5.0f, 0.0f),
+                materialA));
+
+        MeshData noVertexData = new MeshData();
+        assertEquals(-1, builder.add(noVertexData, new ModelMatrix(new float[16]), materialA));
+        assertEquals(3, builder.getPieceCount());
+
+        ArrayList<StaticBatchBuilder.Batch> batches = builder.build();
+        assertEquals(2, batches.size());
+
+        // Pieces are grouped by material in the order they were added
+        StaticBatchBuilder.Batch batchA = batches.get(0);
+        assertSame(materialA, batchA.material);
+        assertArrayEquals(new int[]{0, 2}, batchA.pieces);
+        assertArrayEquals(new int[]{0, 3}, batchA.firstIndex);
+        assertArrayEquals(new int[]{3, 3}, batchA.indexCount);
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, batchA.vertexData.indices);
+        assertEquals(6, batchA.vertexData.vertexCount);
+        assertSame(materialB, batches.get(1).material);
+        assertArrayEquals(new int[]{1}, batches.get(1).pieces);
+
+        // Positions are in world space
+        assertArrayEquals(new float[]{11.0f, 0.0f, 0.0f}, getVector(batchA.vertexData, 1, 0),
+                0.0f);
+        assertArrayEquals(new float[]{0.0f, 7.0f, 2.0f}, getVector(batchA.vertexData, 5, 0),
+                0.0f);
+
+        // A uniform scale does not change the normals
+        final float n = (float)Math.sqrt(0.5);
+        assertArrayEquals(new float[]{0.0f, -n, n}, getVector(batchA.vertexData, 4, 3), 1e-6f);
+    }
+
+    @Test
+    public void normalTransformTest() {
+        // A non-uniform scale and a mirror in x
+        StaticBatchBuilder builder = new StaticBatchBuilder();
+        builder.add(createTriangle(), createMatrix(1.0f, 3.0f, 1.0f, 0.0f, 0.0f, 0.0f),
+                new Material());
+        builder.add(createTriangle(), createMatrix(-1.0f, 1.0f, 1.0f, 0.0f, 0.0f, 0.0f),
+                new Material());
+        ArrayList<StaticBatchBuilder.Batch> batches = builder.build();
+
+        for(StaticBatchBuilder.Batch batch : batches) {
+            VertexData data = batch.vertexData;
+            float[] faceNormal = getFaceNormal(data, 0);
+            float[] normal = getVector(data, 0, 3);
+
+            // The normal is still unit length, perpendicular to the transformed triangle and on
+            // the same side as its (front facing) winding
+            assertEquals(1.0f, dot(normal, normal), 1e-5f);
+            final float faceLength = (float)Math.sqrt(dot(faceNormal, faceNormal));
+            assertEquals(1.0f, dot(normal, faceNormal) / faceLength, 1e-5f);
+        }
+
+        // The winding of the mirrored piece is reversed
+        assertArrayEquals(new int[]{0, 2, 1}, batches.get(1).vertexData.indices);
+    }
+
+    @Test
+    public void parallelTest() {
+        VertexData grid = createGrid(32);
+        Material[] materials = {new Material(), new Material(), new Material()};
+
+        StaticBatchBuilder builder = new StaticBatchBuilder();
+        for(int i = 0; i < 50; i++) {
+            builder.add(grid, createMatrix(1.0f + i * 0.1f, 1.0f, i % 2 == 0 ? 1.0f : -1.0f,
+                    i, -i, 0.5f * i), materials[i % materials.length]);
+        }
+
+        ArrayList<StaticBatchBuilder.Batch> serial = builder.build(1);
+        ArrayList<StaticBatchBuilder.Batch> parallel = builder.build(4);
+        assertEquals(materials.length, serial.size());
+        for(int b = 0; b < serial.size(); b++) {
+            assertArrayEquals(serial.get(b).vertexData.vertices,
+                    parallel.get(b).vertexData.vertices, 0.0f);
+            assertArrayEquals(serial.get(b).vertexData.indices,
+                    parallel.get(b).vertexData.indices);
+            assertEquals(grid.elementsPerTangent, serial.get(b).vertexData.elementsPerTangent);
+        }
+    }
+
+    @Test
+    public void drawRangesTest() {
+        VertexData triangle = createTriangle();
+        Material material = new Material();
+        StaticBatchBuilder builder = new StaticBatchBuilder();
+        for(int i = 0; i < 5; i++) {
+            builder.add(triangle, createMatrix(1.0f, 1.0f, 1.0f, i, 0.0f, 0.0f), material);
+        }
+        StaticBatchBuilder.Batch batch = builder.build().get(0);
+
+        int[] first = new int[5];
+        int[] count = new int[5];
+        assertEquals(1, batch.getDrawRanges(new boolean[]{true, true, true, true, true}, first,
+                count));
+        assertEquals(0, first[0]);
+        assertEquals(15, count[0]);
+
+        // Hiding pieces splits the range around them
+        assertEquals(2, batch.getDrawRanges(new boolean[]{true, false, true, true, false}, first,
+                count));
+        assertArrayEquals(new int[]{0, 3}, new int[]{first[0], count[0]});
+        assertArrayEquals(new int[]{6, 6}, new int[]{first[1], count[1]});
+        assertEquals(0, batch.getDrawRanges(new boolean[5], first, count));
+    }
+
+    // The triangle meshes of the objects in a demo model, by object name
+    private static LinkedHashMap<String, VertexData> loadDemoModel(File file) throws IOException {
+        OBJData data = OBJParser.parse(Files.readAllBytes(file.toPath()));
+        VertexIndexMap vertexIndexMap = new VertexIndexMap(data.getPositionCount());
+        LinkedHashMap<String, VertexData> meshes = new LinkedHashMap<>();
+        for(int o = 0; o < data.objects.size(); o++) {
+            IndexedGeometry geometry = data.resolveIndexed(data.objects.get(o), vertexIndexMap);
+            if(geometry.verticesPerFace == 3) {
+                meshes.put(data.objects.get(o).name, new VertexData(geometry.positions,
+                        geometry.texels, geometry.normals, geometry.indices,
+                        data.positionComponents, data.texelComponents, data.normalComponents));
+            }
+        }
+        return meshes;
+    }
+
+    // The monkey of the ObjLoadDemo scene. The file is a single unnamed object.
+    private static VertexData loadDemoMonkey() throws IOException {
+        LinkedHashMap<String, VertexData> meshes = loadDemoModel(DemoModels.get("monkey"));
+        assertEquals(1, meshes.size());
+        return meshes.values().iterator().next();
+    }
+
+    // The ObjLoadDemo scene as it is set up by the demo: the monkey scaled by half with a single
+    // colour. It is one object, so batching it can not save a draw call, but the batch must
+    // still be the monkey in world space.
+    @Test
+    public void objLoadDemoSceneTest() throws IOException {
+        VertexData monkey = loadDemoMonkey();
+
+        StaticBatchBuilder builder = new StaticBatchBuilder();
+        Material material = new Material(new Colour(1.0f, 0.5f, 0.31f));
+        builder.add(monkey, createMatrix(0.5f, 0.5f, 0.5f, 0.0f, 0.0f, 0.0f), material);
+        ArrayList<StaticBatchBuilder.Batch> batches = builder.build();
+
+        assertEquals(1, batches.size());
+        StaticBatchBuilder.Batch batch = batches.get(0);
+        assertSame(material, batch.material);
+        assertEquals(monkey.vertexCount, batch.vertexData.vertexCount);
+        final int elementsPerVertex = monkey.getElementsPerVertex();
+        for(int v = 0; v < monkey.vertexCount; v++) {
+            for(int p = 0; p < monkey.elementsPerPosition; p++) {
+                final int i = v * elementsPerVertex + p;
+                assertEquals(monkey.vertices[i] * 0.5f, batch.vertexData.vertices[i], 1e-6f);
+            }
+        }
+    }
+
+    // The ObjLoadDemo scene is a single monkey, so this measures the draw call reduction on a
+    // stand-in instead: the monkey of the scene repeated across a level alongside the other
+    // demo models, with a few materials shared between them as in an OBJ exported level
+    @Test
+    public void demoModelLevelBenchmark() throws IOException {
+        ArrayList<VertexData> meshes = new ArrayList<>();
+        meshes.add(loadDemoMonkey());
+        for(File file : DemoModels.getAll()) {
+            if(!file.getName().equals("monkey.obj")) {
+                meshes.addAll(loadDemoModel(file).values());
+            }
+        }
+
+        final int size = 12;
+        Material[] materials = {new Material(), new Material(), new Material(), new Material()};
+        StaticBatchBuilder builder = new StaticBatchBuilder();
+        HashSet<String> batchKeys = new HashSet<>();
+        int vertices = 0;
+        for(int z = 0; z < size; z++) {
+            for(int x = 0; x < size; x++) {
+                final int i = z * size + x;
+                VertexData mesh = meshes.get(i % meshes.size());
+                builder.add(mesh, createMatrix(0.5f, 0.5f, 0.5f, x * 3.0f, 0.0f, z * -3.0f),
+                        materials[i % materials.length]);
+                batchKeys.add(i % materials.length + ":" + mesh.elementsPerPosition + ":" +
+                        mesh.elementsPerTexel + ":" + mesh.elementsPerNormal);
+                vertices += mesh.vertexCount;
+            }
+        }
+
+        // Warm up both paths before timing them
+        final int threads = WorkerExecutor.getParallelism();
+        builder.build(1);
+        builder.build(threads);
+
+        long start = System.nanoTime();
+        builder.build(1);
+        final long serialTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ArrayList<StaticBatchBuilder.Batch> batches = builder.build(threads);
+        final long parallelTime = System.nanoTime() - start;
+
+        // One draw call per material and vertex layout, holding every vertex of the level
+        assertEquals(batchKeys.size(), batches.size());
+        int batchedVertices = 0;
+        for(StaticBatchBuilder.Batch batch : batches) {
+            batchedVertices += batch.vertexData.vertexCount;
+        }
+        assertEquals(vertices, batchedVertices);
+
+        System.out.println("Static batch of " + builder.getPieceCount() + " objects (" +
+                vertices + " vertices): " + builder.getPieceCount() + " -> " + batches.size() +
+                " draw calls, merged in " + serialTime / 1000 + "us on one thread, " +
+                parallelTime / 1000 + "us on " + threads);
+    }
+}
@@ -0,0 +1,111 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+
+import com.crispin.crispinmobile.Rendering.Utilities.Std140Writer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class Std140WriterTest {
+    private ByteBuffer buffer;
+    private Std140Writer writer;
+
+    @Before
+    public void setUp() {
+        buffer = ByteBuffer.allocate(256).order(ByteOrder.nativeOrder());
+        writer = new Std140Writer(buffer);
+    }
+
+    @Test
+    public void scalarTest() {
+        writer.putInt(7);
+        writer.putFloat(2.5f);
+        assertEquals(8, writer.getOffset());
+        assertEquals(7, buffer.getInt(0));
+        assertEquals(2.5f, buffer.getFloat(4), 0.0f);
+    }
+
+    @Test
+    public void vectorAlignmentTest() {
+        // A vec2 is aligned to 8 bytes, vec3 and vec4 to 16 bytes
+        writer.putFloat(1.0f);
+        writer.putVec2(2.0f, 3.0f);
+        assertEquals(16, writer.getOffset());
+        assertEquals(2.0f, buffer.getFloat(8), 0.0f);
+
+        writer.putVec3(4.0f, 5.0f, 6.0f);
+        assertEquals(4.0f, buffer.getFloat(16), 0.0f);
+        assertEquals(28, writer.getOffset());
+
+        writer.putVec4(7.0f, 8.0f, 9.0f, 10.0f);
+        assertEquals(7.0f, buffer.getFloat(32), 0.0f);
+        assertEquals(48, writer.getOffset());
+    }
+
+    @Test
+    public void vec3FollowedByFloatTest() {
+        // A float packs in to the last four bytes of a vec3
+        writer.putVec3(1.0f, 2.0f, 3.0f);
+        writer.putFloat(4.0f);
+        assertEquals(16, writer.getOffset());
+        assertEquals(4.0f, buffer.getFloat(12), 0.0f);
+    }
+
+    @Test
+    public void structTest() {
+        // struct { vec3 position; vec3 colour; float a, b, c, d, e, f; } is 52 bytes, padded to 64
+        writer.putInt(1);
+        writer.beginStruct();
+        assertEquals(16, writer.getOffset());
+        writer.putVec3(1.0f, 1.0f, 1.0f);
+        writer.putVec3(2.0f, 2.0f, 2.0f);
+        assertEquals(2.0f, buffer.getFloat(32), 0.0f);
+        for(int i = 0; i < 6; i++) {
+            writer.putFloat(i);
+        }
+        assertEquals(68, writer.getOffset());
+        writer.endStruct();
+        assertEquals(80, writer.getOffset());
+    }
+
+    @Test
+    public void matrixTest() {
+        final float[] matrix = new float[16];
+        for(int i = 0; i < matrix.length; i++) {
+            matrix[i] = i;
+        }
+
+        writer.putFloat(1.0f);
+        writer.putMat4(matrix, 0);
+        assertEquals(80, writer.getOffset());
+        assertEquals(0.0f, buffer.getFloat(16), 0.0f);
+        assertEquals(15.0f, buffer.getFloat(76), 0.0f);
+    }
+
+    @Test
+    public void zeroUntilTest() {
+        for(int i = 0; i < 64; i += 4) {
+            buffer.putInt(i, -1);
+        }
+
+        writer.setOffset(2);
+        writer.zeroUntil(61);
+        assertEquals(61, writer.getOffset());
+        assertEquals(0xFFFF, buffer.getInt(0) & 0xFFFF);
+        assertEquals(0, buffer.getInt(4));
+        assertEquals(0, buffer.getInt(56));
+        assertEquals((byte)-1, buffer.get(61));
+    }
+
+    @Test
+    public void alignUpTest() {
+        assertEquals(0, Std140Writer.alignUp(0, 16));
+        assertEquals(16, Std140Writer.alignUp(1, 16));
+        assertEquals(16, Std140Writer.alignUp(16, 16));
+        assertEquals(8, Std140Writer.alignUp(5, 8));
+    }
+}
@@ -0,0 +1,188 @@
+package com.crispin.crispinmobile;
+
+import static android.opengl.GLES30.GL_ALREADY_SIGNALED;
+import static android.opengl.GLES30.GL_CONDITION_SATISFIED;
+import static android.opengl.GLES30.GL_TIMEOUT_EXPIRED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Rendering.Utilities.StreamingBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+public class StreamingBufferTest {
+    // Records the calls that reach OpenGL ES
+    private static class FakeBackend implements StreamingBuffer.Backend {
+        final ArrayList<String> calls = new ArrayList<>();
+        long nextSync = 1;
+
+        // The number of waits on a fence that time out before it signals
+        int timeouts;
+        boolean failMap;
+
+        @Override
+        public int genBuffer() {
+            calls.add("gen");
+            return 1;
+        }
+
+        @Override
+        public void allocate(int buffer, int size) {
+            calls.add("allocate " + size);
+        }
+
+        @Override
+        public ByteBuffer mapRange(int buffer, int offset, int length) {
+            calls.add("map " + offset + " " + length);
+            return failMap ? null : ByteBuffer.allocate(length);
+        }
+
+        @Override
+        public boolean unmap(int buffer) {
+            calls.add("unmap");
+            return true;
+        }
+
+        @Override
+        public long fenceSync() {
+            calls.add("fence " + nextSync);
+            return nextSync++;
+        }
+
+        @Override
+        public int clientWaitSync(long sync, long timeout) {
+            calls.add("wait " + sync + " " + timeout);
+            if(timeouts > 0) {
+                timeouts--;
+                return GL_TIMEOUT_EXPIRED;
+            }
+            return timeout == 0 ? GL_ALREADY_SIGNALED : GL_CONDITION_SATISFIED;
+        }
+
+        @Override
+        public void deleteSync(long sync) {
+            calls.add("delete sync " + sync);
+        }
+
+        @Override
+        public void deleteBuffer(int buffer) {
+            calls.add("delete buffer");
+        }
+    }
+
+    private FakeBackend backend;
+    private StreamingBuffer stream;
+
+    @Before
+    public void setUp() {
+        backend = new FakeBackend();
+        StreamingBuffer.setBackend(backend);
+        StreamingBuffer.onFrameEnd();
+        stream = new StreamingBuffer();
+    }
+
+    @Test
+    public void ringTest() {
+        // Regions are aligned and only allocated when they have to grow
+        assertTrue(stream.reserve(100));
+        assertFalse(stream.reserve(200));
+        assertEquals(256, stream.getRegionSize());
+        assertEquals("allocate 768", backend.calls.get(1));
+
+        // Each write goes to the next region around the ring
+        for(int i = 0; i < 4; i++) {
+            assertNotNull(stream.map(100));
+            stream.unmap();
+            assertEquals(i % 3, stream.getRegion());
+        }
+        assertEquals("map 0 100", backend.calls.get(2));
+        assertEquals("map 256 100", backend.calls.get(4));
+        assertEquals("map 512 100", backend.calls.get(6));
+        assertEquals("map 0 100", backend.calls.get(8));
+    }
+
+    @Test
+    public void fenceTest() {
+        stream.reserve(64);
+        for(int i = 0; i < 3; i++) {
+            stream.map(64);
+            stream.unmap();
+            stream.fence();
+        }
+
+        // The fence of a region is checked before it is written again, without waiting if the GPU
+        // has finished with it
+        backend.calls.clear();
+        stream.map(64);
+        assertEquals("wait 1 0", backend.calls.get(0));
+        assertEquals("delete sync 1", backend.calls.get(1));
+        assertEquals(0, StreamingBuffer.getWaitCount());
+        stream.unmap();
+        stream.fence();
+
+        // A region that the GPU is still reading is waited on until its fence signals
+        backend.timeouts = 2;
+        stream.map(64);
+        assertEquals(1, StreamingBuffer.getWaitCount());
+        StreamingBuffer.onFrameEnd();
+        assertEquals(1, StreamingBuffer.getFrameWaitCount());
+        assertEquals(0, StreamingBuffer.getWaitCount());
+    }
+
+    @Test
+    public void refenceTest() {
+        stream.reserve(64);
+        stream.map(64);
+        stream.unmap();
+
+        // Drawing a region again replaces its fence
+        stream.fence();
+        stream.fence();
+        assertEquals("delete sync 1", backend.calls.get(5));
+        assertEquals("fence 2", backend.calls.get(6));
+    }
+
+    @Test
+    public void growTest() {
+        stream.reserve(64);
+        stream.map(64);
+        stream.unmap();
+        stream.fence();
+
+        // Growing allocates new storage so the fences are no longer needed
+        assertTrue(stream.reserve(1000));
+        assertEquals(1024, stream.getRegionSize());
+        assertEquals(1024, stream.getRegionOffset(1));
+        assertTrue(backend.calls.contains("delete sync 1"));
+        assertEquals("allocate 3072", backend.calls.get(backend.calls.size() - 1));
+    }
+
+    @Test
+    public void mapFailTest() {
+        stream.reserve(64);
+        stream.map(64);
+        stream.unmap();
+
+        backend.failMap = true;
+        assertNull(stream.map(64));
+        assertEquals(0, stream.getRegion());
+    }
+
+    @Test
+    public void destroyTest() {
+        stream.reserve(64);
+        stream.map(64);
+        stream.unmap();
+        stream.fence();
+        stream.destroy();
+        assertEquals("delete buffer", backend.calls.get(backend.calls.size() - 1));
+        assertTrue(backend.calls.contains("delete sync 1"));
+    }
+}
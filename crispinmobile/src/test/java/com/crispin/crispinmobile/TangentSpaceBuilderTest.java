@@ -0,0 +1,304 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.crispin.crispinmobile.Geometry.Geometry;
+import com.crispin.crispinmobile.Geometry.Vec2;
+import com.crispin.crispinmobile.Geometry.Vec3;
+import com.crispin.crispinmobile.Rendering.Data.TangentSpaceBuilder;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TangentSpaceBuilderTest {
+    private static final float EPSILON = 0.0001f;
+    private static final int NUM_RUNS = 20;
+
+    // Two triangles making up a unit quad on the XY plane, sharing the diagonal vertices
+    private static final float[] QUAD_POSITIONS = {
+            0.0f, 0.0f, 0.0f,
+            1.0f, 0.0f, 0.0f,
+            1.0f, 1.0f, 0.0f,
+            0.0f, 1.0f, 0.0f
+    };
+    private static final float[] QUAD_TEXELS = {
+            0.0f, 0.0f,
+            1.0f, 0.0f,
+            1.0f, 1.0f,
+            0.0f, 1.0f
+    };
+    private static final float[] QUAD_NORMALS = {
+            0.0f, 0.0f, 1.0f,
+            0.0f, 0.0f, 1.0f,
+            0.0f, 0.0f, 1.0f,
+            0.0f, 0.0f, 1.0f
+    };
+    private static final int[] QUAD_INDICES = {0, 1, 2, 0, 2, 3};
+
+    private static void assertVector(float x, float y, float z, float[] vectors, int vertex) {
+        assertEquals(x, vectors[vertex * 3], EPSILON);
+        assertEquals(y, vectors[vertex * 3 + 1], EPSILON);
+        assertEquals(z, vectors[vertex * 3 + 2], EPSILON);
+    }
+
+    private static float dot(float[] a, float[] b, int vertex) {
+        final int i = vertex * 3;
+        return a[i] * b[i] + a[i + 1] * b[i + 1] + a[i + 2] * b[i + 2];
+    }
+
+    @Test
+    public void quadTest() {
+        float[] tangents = new float[12];
+        float[] bitangents = new float[12];
+        TangentSpaceBuilder.build(QUAD_POSITIONS, 3, QUAD_TEXELS, 2, QUAD_NORMALS, 3,
+                QUAD_INDICES, 4, tangents, bitangents);
+        for(int v = 0; v < 4; v++) {
+            assertVector(1.0f, 0.0f, 0.0f, tangents, v);
+            assertVector(0.0f, 1.0f, 0.0f, bitangents, v);
+        }
+    }
+
+    @Test
+    public void mirroredTest() {
+        // Texture mirrored horizontally, the bi-tangent must keep its direction
+        float[] texels = {1.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f};
+        float[] tangents = new float[12];
+        float[] bitangents = new float[12];
+        TangentSpaceBuilder.build(QUAD_POSITIONS, 3, texels, 2, QUAD_NORMALS, 3, QUAD_INDICES,
+                4, tangents, bitangents);
+        for(int v = 0; v < 4; v++) {
+            assertVector(-1.0f, 0.0f, 0.0f, tangents, v);
+            assertVector(0.0f, 1.0f, 0.0f, bitangents, v);
+        }
+    }
+
+    @Test
+    public void orthonormalTest() {
+        // Bent quad with a skewed mapping, shared vertices average the tangents of both faces
+        float[] positions = {
+                0.0f, 0.0f, 0.0f,
+                1.0f, 0.0f, 0.3f,
+                1.0f, 1.0f, 0.0f,
+                0.0f, 1.0f, 0.5f
+        };
+        float[] texels = {0.0f, 0.0f, 0.8f, 0.1f, 1.0f, 1.0f, 0.1f, 0.9f};
+        float[] normals = {
+                0.1f, 0.2f, 1.0f,
+                -0.3f, 0.0f, 1.0f,
+                0.0f, 0.0f, 1.0f,
+                0.2f, -0.4f, 1.0f
+        };
+        float[] tangents = new float[12];
+        float[] bitangents = new float[12];
+        TangentSpaceBuilder.build(positions, 3, texels, 2, normals, 3, QUAD_INDICES, 4,
+                tangents, bitangents);
+        for(int v = 0; v < 4; v++) {
+            assertEquals(1.0f, dot(tangents, tangents, v), EPSILON);
+            assertEquals(1.0f, dot(bitangents, bitangents, v), EPSILON);
+            assertEquals(0.0f, dot(tangents, bitangents, v), EPSILON);
+            assertEquals(0.0f, dot(tangents, normals, v), EPSILON);
+            assertEquals(0.0f, dot(bitangents, normals, v), EPSILON);
+        }
+    }
+
+    @Test
+    public void mesh2DTest() {
+        float[] positions = {0.0f, 0.0f, 2.0f, 0.0f, 2.0f, 2.0f, 0.0f, 2.0f};
+        float[] tangents = new float[12];
+        float[] bitangents = new float[12];
+        TangentSpaceBuilder.build(positions, 2, QUAD_TEXELS, 2, null, 0, QUAD_INDICES, 4,
+                tangents, bitangents);
+        for(int v = 0; v < 4; v++) {
+            assertVector(1.0f, 0.0f, 0.0f, tangents, v);
+            assertVector(0.0f, 1.0f, 0.0f, bitangents, v);
+        }
+    }
+
+    @Test
+    public void degenerateTexelTest() {
+        // Every vertex has the same texture co-ordinate so there is no texture area
+        float[] texels = new float[8];
+        float[] tangents = new float[12];
+        float[] bitangents = new float[12];
+        TangentSpaceBuilder.build(QUAD_POSITIONS, 3, texels, 2, QUAD_NORMALS, 3, QUAD_INDICES,
+                4, tangents, bitangents);
+        for(int i = 0; i < tangents.length; i++) {
+            assertFalse(Float.isNaN(tangents[i]) || Float.isInfinite(tangents[i]));
+            assertFalse(Float.isNaN(bitangents[i]) || Float.isInfinite(bitangents[i]));
+        }
+
+        for(int v = 0; v < 4; v++) {
+            assertEquals(1.0f, dot(tangents, tangents, v), EPSILON);
+            assertEquals(0.0f, dot(tangents, QUAD_NORMALS, v), EPSILON);
+        }
+    }
+
+    // A grid of vertices on a bumpy surface, indexed so that each vertex is shared by up to six
+    // triangles
+    private static class Grid {
+        final float[] positions;
+        final float[] texels;
+        final float[] normals;
+        final int[] indices;
+        final int numVertices;
+
+        Grid(int size) {
+            Random random = new Random(size);
+            numVertices = size * size;
+            positions = new float[numVertices * 3];
+            texels = new float[numVertices * 2];
+            normals = new float[numVertices * 3];
+            for(int y = 0; y < size; y++) {
+                for(int x = 0; x < size; x++) {
+                    final int v = y * size + x;
+                    positions[v * 3] = x;
+                    positions[v * 3 + 1] = y;
+                    positions[v * 3 + 2] = random.nextFloat() * 0.2f;
+                    texels[v * 2] = (float)x / size;
+                    texels[v * 2 + 1] = (float)y / size;
+                    normals[v * 3] = random.nextFloat() * 0.2f - 0.1f;
+                    normals[v * 3 + 1] = random.nextFloat() * 0.2f - 0.1f;
+                    normals[v * 3 + 2] = 1.0f;
+                }
+            }
+
+            indices = new int[(size - 1) * (size - 1) * 6];
+            int i = 0;
+            for(int y = 0; y < size - 1; y++) {
+                for(int x = 0; x < size - 1; x++) {
+                    final int v = y * size + x;
+                    indices[i++] = v;
+                    indices[i++] = v + 1;
+                    indices[i++] = v + size + 1;
+                    indices[i++] = v;
+                    indices[i++] = v + size + 1;
+                    indices[i++] = v + size;
+                }
+            }
+        }
+
+        // Expand the grid into draw order (no shared vertices)
+        Grid(Grid grid) {
+            numVertices = grid.indices.length;
+            positions = new float[numVertices * 3];
+            texels = new float[numVertices * 2];
+            normals = new float[numVertices * 3];
+            indices = null;
+            for(int i = 0; i < numVertices; i++) {
+                final int v = grid.indices[i];
+                System.arraycopy(grid.positions, v * 3, positions, i * 3, 3);
+                System.arraycopy(grid.texels, v * 2, texels, i * 2, 2);
+                System.arraycopy(grid.normals, v * 3, normals, i * 3, 3);
+            }
+        }
+
+        void build(float[] tangents, float[] bitangents, int threads) {
+            TangentSpaceBuilder.build(positions, 3, texels, 2, normals, 3, indices, numVertices,
+                    tangents, bitangents, threads);
+        }
+    }
+
+    @Test
+    public void parallelTest() {
+        Grid indexed = new Grid(64);
+        Grid expanded = new Grid(indexed);
+        Grid[] grids = {indexed, expanded};
+        for(Grid grid : grids) {
+            float[] serialTangents = new float[grid.numVertices * 3];
+            float[] serialBitangents = new float[grid.numVertices * 3];
+            grid.build(serialTangents, serialBitangents, 1);
+
+            // Ranges that do not line up with the rows of the grid share faces
+            for(int threads : new int[]{2, 3, 7}) {
+                float[] parallelTangents = new float[grid.numVertices * 3];
+                float[] parallelBitangents = new float[grid.numVertices * 3];
+                grid.build(parallelTangents, parallelBitangents, threads);
+
+                assertArrayEquals(serialTangents, parallelTangents, EPSILON);
+                assertArrayEquals(serialBitangents, parallelBitangents, EPSILON);
+            }
+        }
+    }
+
+    // The tangent calculation that Mesh used before the tangent space builder, allocating vectors
+    // for every face and writing the face tangent to each of its vertices
+    private static void legacyBuild(float[] positionBuffer, float[] texelBuffer,
+                                    float[] tangents, float[] bitangents) {
+        final int POINTS_PER_FACE = 3;
+        int numFaces = positionBuffer.length / (3 * POINTS_PER_FACE);
+        for(int n = 0; n < numFaces; n++) {
+            int pi = n * (3 * POINTS_PER_FACE);
+            Vec3 p1 = new Vec3(positionBuffer[pi], positionBuffer[pi+1], positionBuffer[pi+2]);
+            Vec3 p2 = new Vec3(positionBuffer[pi+3], positionBuffer[pi+4], positionBuffer[pi+5]);
+            Vec3 p3 = new Vec3(positionBuffer[pi+6], positionBuffer[pi+7], positionBuffer[pi+8]);
+
+            int ti = n * (2 * POINTS_PER_FACE);
+            Vec2 uv1 = new Vec2(texelBuffer[ti], texelBuffer[ti+1]);
+            Vec2 uv2 = new Vec2(texelBuffer[ti+2], texelBuffer[ti+3]);
+            Vec2 uv3 = new Vec2(texelBuffer[ti+4], texelBuffer[ti+5]);
+
+            Vec3 edge1 = Geometry.minus(p2, p1);
+            Vec3 edge2 = Geometry.minus(p3, p1);
+            Vec2 deltaUV1 = Geometry.minus(uv2, uv1);
+            Vec2 deltaUV2 = Geometry.minus(uv3, uv1);
+
+            float f = 1.0f / (deltaUV1.x * deltaUV2.y - deltaUV2.x * deltaUV1.y);
+
+            int ri = n * (3 * POINTS_PER_FACE);
+            for(int i = 0; i < POINTS_PER_FACE; i++) {
+                tangents[ri + i * 3] = f * (deltaUV2.y * edge1.x - deltaUV1.y * edge2.x);
+                tangents[ri + i * 3 + 1] = f * (deltaUV2.y * edge1.y - deltaUV1.y * edge2.y);
+                tangents[ri + i * 3 + 2] = f * (deltaUV2.y * edge1.z - deltaUV1.y * edge2.z);
+                bitangents[ri + i * 3] = f * (-deltaUV2.x * edge1.x + deltaUV1.x * edge2.x);
+                bitangents[ri + i * 3 + 1] = f * (-deltaUV2.x * edge1.y + deltaUV1.x * edge2.y);
+                bitangents[ri + i * 3 + 2] = f * (-deltaUV2.x * edge1.z + deltaUV1.x * edge2.z);
+            }
+        }
+    }
+
+    // Compare the legacy calculation with the builder on one and multiple threads
+    @Test
+    public void TangentPerformanceCheck() {
+        Grid indexed = new Grid(512);
+        Grid expanded = new Grid(indexed);
+        final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        long legacyTime = Long.MAX_VALUE;
+        long expandedTime = Long.MAX_VALUE;
+        long indexedTime = Long.MAX_VALUE;
+        long parallelTime = Long.MAX_VALUE;
+        for(int i = 0; i < NUM_RUNS; i++) {
+            float[] tangents = new float[expanded.numVertices * 3];
+            float[] bitangents = new float[expanded.numVertices * 3];
+            long timeStart = System.nanoTime();
+            legacyBuild(expanded.positions, expanded.texels, tangents, bitangents);
+            legacyTime = Math.min(legacyTime, System.nanoTime() - timeStart);
+
+            tangents = new float[expanded.numVertices * 3];
+            bitangents = new float[expanded.numVertices * 3];
+            timeStart = System.nanoTime();
+            expanded.build(tangents, bitangents, 1);
+            expandedTime = Math.min(expandedTime, System.nanoTime() - timeStart);
+
+            tangents = new float[indexed.numVertices * 3];
+            bitangents = new float[indexed.numVertices * 3];
+            timeStart = System.nanoTime();
+            indexed.build(tangents, bitangents, 1);
+            indexedTime = Math.min(indexedTime, System.nanoTime() - timeStart);
+
+            tangents = new float[indexed.numVertices * 3];
+            bitangents = new float[indexed.numVertices * 3];
+            timeStart = System.nanoTime();
+            indexed.build(tangents, bitangents, threads);
+            parallelTime = Math.min(parallelTime, System.nanoTime() - timeStart);
+        }
+
+        System.out.println("Tangents of " + indexed.indices.length / 3 + " faces: legacy " +
+                legacyTime / 1000 + "us, builder " + expandedTime / 1000 + "us, indexed " +
+                indexedTime / 1000 + "us, indexed on " + threads + " threads " +
+                parallelTime / 1000 + "us");
+    }
+}
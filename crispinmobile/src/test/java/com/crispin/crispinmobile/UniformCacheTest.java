@@ -0,0 +1,232 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Rendering.Data.Colour;
+import com.crispin.crispinmobile.Rendering.Data.Material;
+import com.crispin.crispinmobile.Rendering.Entities.PointLight;
+import com.crispin.crispinmobile.Rendering.Shaders.Handles.MaterialHandles;
+import com.crispin.crispinmobile.Rendering.Shaders.Handles.PointLightHandles;
+import com.crispin.crispinmobile.Rendering.Shaders.UniformCache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class UniformCacheTest {
+    // Records the uniform uploads that reach OpenGL ES
+    private static class FakeBackend implements UniformCache.Backend {
+        final ArrayList<String> calls = new ArrayList<>();
+
+        @Override
+        public void uniform1i(int location, int x) {
+            calls.add("1i " + location + " " + x);
+        }
+
+        @Override
+        public void uniform1f(int location, float x) {
+            calls.add("1f " + location + " " + x);
+        }
+
+        @Override
+        public void uniform2f(int location, float x, float y) {
+            calls.add("2f " + location + " " + x + " " + y);
+        }
+
+        @Override
+        public void uniform3f(int location, float x, float y, float z) {
+            calls.add("3f " + location + " " + x + " " + y + " " + z);
+        }
+
+        @Override
+        public void uniform4f(int location, float x, float y, float z, float w) {
+            calls.add("4f " + location + " " + x + " " + y + " " + z + " " + w);
+        }
+
+        @Override
+        public void uniformMatrix4fv(int location, float[] matrix, int offset) {
+            calls.add("matrix " + location + " " + matrix[offset]);
+        }
+    }
+
+    private FakeBackend backend;
+    private UniformCache uniforms;
+
+    @Before
+    public void setUp() {
+        backend = new FakeBackend();
+        UniformCache.setBackend(backend);
+        UniformCache.onFrameEnd();
+        uniforms = new UniformCache();
+    }
+
+    @Test
+    public void skipUnchangedTest() {
+        uniforms.set1i(0, 0);
+        uniforms.set1i(0, 0);
+        uniforms.set1f(1, 2.0f);
+        uniforms.set1f(1, 2.0f);
+        uniforms.set3f(2, 1.0f, 2.0f, 3.0f);
+        uniforms.set3f(2, 1.0f, 2.0f, 3.0f);
+        uniforms.set4f(3, 1.0f, 2.0f, 3.0f, 4.0f);
+        uniforms.set4f(3, 1.0f, 2.0f, 3.0f, 4.0f);
+
+        // The first value of each location is unknown so it is always uploaded, even if it is zero
+        assertEquals(4, backend.calls.size());
+        assertEquals("1i 0 0", backend.calls.get(0));
+        assertEquals(4, UniformCache.getIssuedCount());
+        assertEquals(4, UniformCache.getSkippedCount());
+    }
+
+    @Test
+    public void changedValueTest() {
+        uniforms.set2f(5, 1.0f, 2.0f);
+        uniforms.set2f(5, 1.0f, 3.0f);
+        uniforms.set2f(5, 1.0f, 3.0f);
+        uniforms.set4f(6, 0.0f, 0.0f, 0.0f, 1.0f);
+        uniforms.set4f(6, 0.0f, 0.0f, 0.0f, 0.5f);
+
+        assertEquals(4, backend.calls.size());
+        assertEquals("2f 5 1.0 3.0", backend.calls.get(1));
+        assertEquals("4f 6 0.0 0.0 0.0 0.5", backend.calls.get(3));
+    }
+
+    @Test
+    public void bitwiseCompareTest() {
+        uniforms.set1f(0, 0.0f);
+        uniforms.set1f(0, -0.0f);
+        uniforms.set1f(0, Float.NaN);
+        uniforms.set1f(0, Float.NaN);
+
+        // -0.0 is equal to 0.0 as a float but not bitwise, and NaN is never equal to itself as a
+        // float but is bitwise
+        assertEquals(3, backend.calls.size());
+    }
+
+    @Test
+    public void matrixTest() {
+        final float[] matrices = new float[32];
+        for(int i = 0; i < matrices.length; i++) {
+            matrices[i] = i % 16;
+        }
+
+        uniforms.setMatrix4(0, matrices, 0);
+        uniforms.setMatrix4(0, matrices, 16);
+        assertEquals(1, backend.calls.size());
+
+        matrices[31] = 100.0f;
+        uniforms.setMatrix4(0, matrices, 16);
+        uniforms.setMatrix4(0, matrices, 16);
+        assertEquals(2, backend.calls.size());
+        assertEquals(2, UniformCache.getSkippedCount());
+    }
+
+    @Test
+    public void locationsAreSeparateTest() {
+        uniforms.set1f(0, 1.0f);
+        uniforms.set1f(1, 1.0f);
+
+        // The same value at a location of a different program is still uploaded
+        new UniformCache().set1f(0, 1.0f);
+        assertEquals(3, backend.calls.size());
+    }
+
+    @Test
+    public void typeChangeTest() {
+        uniforms.set3f(4, 1.0f, 1.0f, 1.0f);
+        uniforms.set1f(4, 1.0f);
+        assertEquals(2, backend.calls.size());
+    }
+
+    @Test
+    public void invalidateTest() {
+        uniforms.set1i(3, 7);
+        uniforms.invalidate();
+        uniforms.set1i(3, 7);
+        assertEquals(2, backend.calls.size());
+    }
+
+    @Test
+    public void uncachedLocationTest() {
+        uniforms.set1f(-1, 1.0f);
+        uniforms.set1f(-1, 1.0f);
+        uniforms.set1f(5000, 1.0f);
+        uniforms.set1f(5000, 1.0f);
+        assertEquals(4, backend.calls.size());
+    }
+
+    @Test
+    public void frameCountTest() {
+        uniforms.set1i(0, 1);
+        uniforms.set1i(0, 1);
+        uniforms.set1i(0, 1);
+        UniformCache.onFrameEnd();
+
+        assertEquals(1, UniformCache.getFrameIssuedCount());
+        assertEquals(2, UniformCache.getFrameSkippedCount());
+        assertEquals(0, UniformCache.getIssuedCount());
+        assertEquals(0, UniformCache.getSkippedCount());
+    }
+
+    @Test
+    public void materialFieldTest() {
+        final MaterialHandles handles = new MaterialHandles();
+        handles.colourUniformHandle = 0;
+        handles.shininessUniformHandle = 1;
+
+        final Material material = new Material(new Colour(1.0f, 0.0f, 0.0f));
+        handles.setUniforms(uniforms, material);
+        assertEquals(2, backend.calls.size());
+
+        // An unchanged material is compared but not uploaded
+        handles.setUniforms(uniforms, material);
+        assertEquals(2, backend.calls.size());
+        assertEquals(2, UniformCache.getSkippedCount());
+
+        material.setColour(new Colour(0.0f, 1.0f, 0.0f));
+        handles.setUniforms(uniforms, material);
+        assertEquals(3, backend.calls.size());
+        assertTrue(backend.calls.get(2).startsWith("4f 0 0.0 1.0"));
+
+        // Writing a field directly is uploaded on the next call
+        material.shininess = 8.0f;
+        material.colour.red = 0.5f;
+        handles.setUniforms(uniforms, material);
+        assertEquals(5, backend.calls.size());
+        assertTrue(backend.calls.get(3).startsWith("4f 0 0.5 1.0"));
+        assertEquals("1f 1 8.0", backend.calls.get(4));
+
+        // A colour set directly by another draw is replaced by the material colour
+        uniforms.set4f(0, 0.0f, 0.0f, 0.0f, 1.0f);
+        handles.setUniforms(uniforms, material);
+        assertEquals(7, backend.calls.size());
+        assertTrue(backend.calls.get(6).startsWith("4f 0 0.5 1.0"));
+    }
+
+    @Test
+    public void lightVersionTest() {
+        final PointLightHandles handles = new PointLightHandles();
+        handles.positionUniformHandle = 0;
+
+        final PointLight a = new PointLight(1.0f, 2.0f, 3.0f);
+        final PointLight b = new PointLight(1.0f, 2.0f, 3.0f);
+        handles.setUniforms(uniforms, a);
+        handles.setUniforms(uniforms, a);
+        assertEquals(1, backend.calls.size());
+
+        // A different light with the same values is compared but not uploaded
+        handles.setUniforms(uniforms, b);
+        assertEquals(1, backend.calls.size());
+        assertEquals(1, UniformCache.getSkippedCount());
+
+        b.translate(1.0f, 0.0f, 0.0f);
+        handles.setUniforms(uniforms, b);
+        assertEquals("3f 0 2.0 2.0 3.0", backend.calls.get(1));
+
+        handles.invalidate();
+        handles.setUniforms(uniforms, b);
+        assertEquals(2, UniformCache.getSkippedCount());
+    }
+}
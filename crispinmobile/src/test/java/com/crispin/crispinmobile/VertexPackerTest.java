@@ -0,0 +1,141 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.crispin.crispinmobile.Rendering.Data.VertexData;
+import com.crispin.crispinmobile.Rendering.Data.VertexLayout;
+import com.crispin.crispinmobile.Rendering.Data.VertexPacker;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class VertexPackerTest {
+    // Half floats have 11 bits of precision so rounding is at most half of 2^-10 relative
+    private static final float HALF_RELATIVE_ERROR = 1.0f / 2048.0f;
+
+    // Largest error of a packed 10-bit normalised component (half of 1/511)
+    private static final float PACKED_ERROR = 0.5f / 511.0f;
+
+    @Test
+    public void halfRoundTripTest() {
+        // Every half float (apart from NaNs) converts to a float and back exactly
+        for(int bits = 0; bits <= 0xFFFF; bits++) {
+            final short half = (short)bits;
+            final float value = VertexPacker.toFloat(half);
+            if(!Float.isNaN(value)) {
+                assertEquals(half, VertexPacker.toHalf(value));
+            }
+        }
+    }
+
+    @Test
+    public void halfPrecisionTest() {
+        assertEquals(0.0f, VertexPacker.toFloat(VertexPacker.toHalf(0.0f)), 0.0f);
+        assertEquals(1.0f, VertexPacker.toFloat(VertexPacker.toHalf(1.0f)), 0.0f);
+        assertEquals(-2.5f, VertexPacker.toFloat(VertexPacker.toHalf(-2.5f)), 0.0f);
+        assertEquals(65504.0f, VertexPacker.toFloat(VertexPacker.toHalf(65504.0f)), 0.0f);
+        assertEquals(Float.POSITIVE_INFINITY,
+                VertexPacker.toFloat(VertexPacker.toHalf(100000.0f)), 0.0f);
+        assertTrue(Float.isNaN(VertexPacker.toFloat(VertexPacker.toHalf(Float.NaN))));
+
+        // Smallest sub-normal half float
+        final float smallest = (float)Math.pow(2, -24);
+        assertEquals(smallest, VertexPacker.toFloat(VertexPacker.toHalf(smallest)), 0.0f);
+        assertEquals(0.0f, VertexPacker.toFloat(VertexPacker.toHalf(smallest / 4.0f)), 0.0f);
+
+        Random random = new Random(1);
+        for(int i = 0; i < 100000; i++) {
+            final float value = (random.nextFloat() - 0.5f) * 2000.0f;
+            final float result = VertexPacker.toFloat(VertexPacker.toHalf(value));
+            assertEquals(value, result, Math.abs(value) * HALF_RELATIVE_ERROR);
+        }
+    }
+
+    @Test
+    public void packedNormalPrecisionTest() {
+        Random random = new Random(2);
+        for(int i = 0; i < 100000; i++) {
+            final float x = random.nextFloat() * 2.0f - 1.0f;
+            final float y = random.nextFloat() * 2.0f - 1.0f;
+            final float z = random.nextFloat() * 2.0f - 1.0f;
+            final int packed = VertexPacker.packNormalised(x, y, z, -1.0f);
+            assertEquals(x, VertexPacker.unpackNormalised(packed, 0), PACKED_ERROR);
+            assertEquals(y, VertexPacker.unpackNormalised(packed, 1), PACKED_ERROR);
+            assertEquals(z, VertexPacker.unpackNormalised(packed, 2), PACKED_ERROR);
+            assertEquals(-1.0f, VertexPacker.unpackNormalised(packed, 3), 0.0f);
+        }
+
+        // Values are clamped
+        final int packed = VertexPacker.packNormalised(2.0f, -2.0f, 0.0f, 1.0f);
+        assertEquals(1.0f, VertexPacker.unpackNormalised(packed, 0), 0.0f);
+        assertEquals(-1.0f, VertexPacker.unpackNormalised(packed, 1), 0.0f);
+        assertEquals(0.0f, VertexPacker.unpackNormalised(packed, 2), 0.0f);
+        assertEquals(1.0f, VertexPacker.unpackNormalised(packed, 3), 0.0f);
+    }
+
+    @Test
+    public void layoutTest() {
+        VertexLayout floats = new VertexLayout(3, 2, 3, 0, 0, false);
+        VertexLayout compact = new VertexLayout(3, 2, 3, 0, 0, true);
+        assertEquals(32, floats.stride);
+        assertEquals(16, compact.stride);
+        assertEquals(VertexLayout.TYPE_HALF_FLOAT, compact.getType(VertexLayout.POSITION));
+        assertEquals(4, compact.getComponents(VertexLayout.POSITION));
+        assertEquals(8, compact.getOffset(VertexLayout.TEXEL));
+        assertEquals(12, compact.getOffset(VertexLayout.NORMAL));
+        assertEquals(VertexLayout.TYPE_INT_2_10_10_10_REV, compact.getType(VertexLayout.NORMAL));
+        assertTrue(compact.isNormalised(VertexLayout.NORMAL));
+
+        // Normal mapped vertices
+        assertEquals(56, new VertexLayout(3, 2, 3, 3, 3, false).stride);
+        assertEquals(24, new VertexLayout(3, 2, 3, 3, 3, true).stride);
+
+        // 2D vertices
+        assertEquals(16, new VertexLayout(2, 2, 0, 0, 0, false).stride);
+        assertEquals(8, new VertexLayout(2, 2, 0, 0, 0, true).stride);
+    }
+
+    @Test
+    public void packTest() {
+        float[] positions = {-1.5f, 0.25f, 3.0f, 100.0f, -0.001f, 0.5f, 0.0f, 1.0f, -7.75f};
+        float[] texels = {0.0f, 1.0f, 0.5f, 0.125f, 0.9f, 0.3f};
+        float[] normals = {0.0f, 0.0f, 1.0f, 0.6f, 0.8f, 0.0f, 0.0f, -2.0f, 0.0f};
+        VertexData vertexData = new VertexData(positions, texels, normals, null, 3, 2, 3);
+        VertexLayout layout = new VertexLayout(vertexData, true);
+        ByteBuffer buffer = VertexPacker.pack(vertexData, layout);
+        assertEquals(vertexData.vertexCount * layout.stride, buffer.capacity());
+        assertEquals(vertexData.getSizeBytes(true), buffer.capacity());
+
+        final int elementsPerVertex = vertexData.getElementsPerVertex();
+        for(int v = 0; v < vertexData.vertexCount; v++) {
+            final int vertex = v * layout.stride;
+            final int source = v * elementsPerVertex;
+            for(int i = 0; i < 3; i++) {
+                final float position = vertexData.vertices[source + i];
+                assertEquals(position, VertexPacker.toFloat(buffer.getShort(vertex + i * 2)),
+                        Math.abs(position) * HALF_RELATIVE_ERROR);
+            }
+            assertEquals(1.0f, VertexPacker.toFloat(buffer.getShort(vertex + 6)), 0.0f);
+
+            final int texel = vertex + layout.getOffset(VertexLayout.TEXEL);
+            for(int i = 0; i < 2; i++) {
+                final float value = vertexData.vertices[source + 3 + i];
+                assertEquals(value, VertexPacker.toFloat(buffer.getShort(texel + i * 2)),
+                        value * HALF_RELATIVE_ERROR);
+            }
+
+            // Normals are normalised before they are packed
+            final int packed = buffer.getInt(vertex + layout.getOffset(VertexLayout.NORMAL));
+            final float nx = normals[v * 3];
+            final float ny = normals[v * 3 + 1];
+            final float nz = normals[v * 3 + 2];
+            final float length = (float)Math.sqrt(nx * nx + ny * ny + nz * nz);
+            assertEquals(nx / length, VertexPacker.unpackNormalised(packed, 0), PACKED_ERROR);
+            assertEquals(ny / length, VertexPacker.unpackNormalised(packed, 1), PACKED_ERROR);
+            assertEquals(nz / length, VertexPacker.unpackNormalised(packed, 2), PACKED_ERROR);
+        }
+    }
+}
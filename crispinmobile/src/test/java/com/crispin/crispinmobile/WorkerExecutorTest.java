@@ -0,0 +1,111 @@
+package com.crispin.crispinmobile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.crispin.crispinmobile.Utilities.WorkerExecutor;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+public class WorkerExecutorTest {
+    @Test
+    public void orderTest() {
+        ArrayList<Callable<Integer>> tasks = new ArrayList<>();
+        for(int i = 0; i < 16; i++) {
+            final int value = i;
+            tasks.add(() -> value * 2);
+        }
+
+        ArrayList<Integer> results = WorkerExecutor.invokeAll(tasks, "testing");
+        for(int i = 0; i < 16; i++) {
+            assertEquals(i * 2, (int)results.get(i));
+        }
+    }
+
+    // Every worker waits on work that is queued behind it. The waiting threads run the queued
+    // work themselves, so this finishes however few threads there are.
+    @Test(timeout = 10000)
+    public void nestedTest() {
+        assertEquals(729, count(6));
+    }
+
+    private static int count(int depth) {
+        if(depth == 0) {
+            return 1;
+        }
+
+        ArrayList<Callable<Integer>> tasks = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            tasks.add(() -> count(depth - 1));
+        }
+
+        int total = 0;
+        for(int result : WorkerExecutor.invokeAll(tasks, "counting")) {
+            total += result;
+        }
+        return total;
+    }
+
+    @Test(timeout = 10000)
+    public void submitTest() throws Exception {
+        // Occupy every worker so that the submitted work can only run on the waiting thread
+        final Object lock = new Object();
+        final boolean[] release = new boolean[1];
+        for(int i = 0; i < WorkerExecutor.getNumThreads(); i++) {
+            WorkerExecutor.execute(() -> {
+                synchronized(lock) {
+                    while(!release[0]) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+
+        try {
+            Future<Thread> future = WorkerExecutor.submit(Thread::currentThread);
+            assertSame(Thread.currentThread(), WorkerExecutor.get(future));
+        } finally {
+            synchronized(lock) {
+                release[0] = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @Test
+    public void failureTest() throws InterruptedException {
+        ArrayList<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(() -> null);
+        tasks.add(() -> {
+            throw new IllegalStateException("task failed");
+        });
+
+        try {
+            WorkerExecutor.invokeAll(tasks, "testing");
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Failed whilst testing", e.getMessage());
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+
+        Future<Void> future = WorkerExecutor.submit(() -> {
+            throw new IllegalStateException("task failed");
+        });
+        try {
+            WorkerExecutor.get(future);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+    }
+}